@@ -48,9 +48,11 @@ import com.salas.bb.installation.wizard.WelcomePage;
 import com.salas.bb.persistence.IPersistenceManager;
 import com.salas.bb.persistence.PersistenceException;
 import com.salas.bb.persistence.PersistenceManagerConfig;
+import com.salas.bb.persistence.backend.DatabaseMaintenance;
 import com.salas.bb.plugins.Manager;
 import com.salas.bb.service.ServicePreferences;
 import com.salas.bb.utils.*;
+import com.salas.bb.utils.concurrency.PhaseGraph;
 import com.salas.bb.utils.i18n.Strings;
 import com.salas.bb.utils.ipc.IPC;
 import com.salas.bb.utils.locker.Locker;
@@ -63,6 +65,7 @@ import com.salas.bb.utils.uif.UifUtilities;
 import com.salas.bb.utils.uif.images.Cache;
 import com.salas.bb.utils.uif.images.ImageFetcher;
 import com.salas.bb.utils.watchdogs.EventQueueWithWD;
+import com.salas.bb.utils.watchdogs.StallProfiler;
 import com.salas.bb.views.mainframe.MainFrame;
 import com.salas.bb.views.stylesheets.StylesheetManager;
 import com.salas.bbutilities.VersionUtils;
@@ -115,6 +118,24 @@ public class ApplicationLauncher extends DefaultApplicationStarter
     private static final int LOGGING_LIMIT                  = 50000;
     private static final int LOGGING_LOOP_COUNT             = 5;
 
+    /** Maximum number of startup phases running in parallel. */
+    private static final int STARTUP_THREADS                = 4;
+
+    /** Startup phase: loading of plug-ins. */
+    public static final String PHASE_PLUGINS                = "plugins";
+    /** Startup phase: restoring of preferences. */
+    public static final String PHASE_PREFERENCES            = "preferences";
+    /** Startup phase: construction and display of the main frame. */
+    public static final String PHASE_USER_INTERFACE         = "user interface";
+    /** Startup phase: opening of the database. */
+    public static final String PHASE_DATABASE               = "database";
+    /** Startup phase: indexing of the images cache. */
+    public static final String PHASE_IMAGE_CACHE            = "image cache";
+    /** Startup phase: start of the connection checker. */
+    public static final String PHASE_CONNECTION_CHECKER     = "connection checker";
+    /** Startup phase: tip of the day. */
+    public static final String PHASE_TIP_OF_THE_DAY         = "tip of the day";
+
     /**
      * Properties key for installation ID.
      * @noinspection HardCodedStringLiteral
@@ -177,6 +198,7 @@ public class ApplicationLauncher extends DefaultApplicationStarter
 
     private static FileLock instanceLock;
     private static IPC ipc;
+    private static volatile Cache imagesCache;
     private static File socketFile;
     private static String urlToOpen;
 
@@ -456,8 +478,10 @@ public class ApplicationLauncher extends DefaultApplicationStarter
         {
             EventQueueWithWD queue = EventQueueWithWD.install();
 
+            StallProfiler profiler = queue.installProfiler(500, 50);
+
             queue.addWatchdog(2000, new EDTOverloadReporter(Level.WARNING), false);
-            queue.addWatchdog(3 * 60 * 1000, new EDTLockupHandler(), true);
+            queue.addWatchdog(3 * 60 * 1000, new EDTLockupHandler(profiler), true);
         }
     }
 
@@ -516,10 +540,6 @@ public class ApplicationLauncher extends DefaultApplicationStarter
         // Configure Mac OS X dock icon (we had problems with JWS dock icon: ugly and cannot be badged)
         if (isMac()) OSXSupport.setApplicationIcon();
 
-        // Images cache
-        Cache imagesCache = new Cache(new File(getContextPath() + "cache"), 20000000);
-        ImageFetcher.setCache(imagesCache);
-
         // Stylesheets
         try
         {
@@ -798,7 +818,11 @@ public class ApplicationLauncher extends DefaultApplicationStarter
     }
 
     /**
-     * Works that needs to be done *after* MainFrame has been displayed.
+     * Works that needs to be done *after* MainFrame has been displayed. The startup is run
+     * as the graph of phases, so that the work which doesn't depend on each other (like
+     * opening the database, indexing the images cache and constructing the user interface)
+     * goes in parallel. The splash is closed as soon as the main frame is up, while the
+     * guides, articles and counts are loaded in the background.
      */
     protected void launchApplication()
     {
@@ -809,12 +833,6 @@ public class ApplicationLauncher extends DefaultApplicationStarter
 
         configureSecurityManager();
 
-        // Start plug-ins
-        Splash.setNote(Strings.message("startup.loading.plugins"), 2);
-        File f = new File(getContextPath(), "plugins");
-        Manager.initialize(f, Application.getUserPreferences());
-        Manager.loadPackages();
-
         disableSSLHostNameVerification();
         disableSSLCertificates();
 
@@ -827,46 +845,113 @@ public class ApplicationLauncher extends DefaultApplicationStarter
         Splash.setNote(Strings.message("startup.installing.performance.timers"), 15);
         installWatchdogs();
 
+        // The installer may reset the database, so it goes before anything else
         Splash.setNote(Strings.message("startup.checking.model"), 20);
         GlobalModel newVersionModel = checkForNewVersion();
 
-        GlobalController.SINGLETON.restorePreferences();
+        PhaseGraph startup = new PhaseGraph("Startup", STARTUP_THREADS);
+        addStartupPhases(startup);
+        GlobalController.SINGLETON.restorePersistentState(startup, newVersionModel);
+        startup.start();
 
-        UifUtilities.invokeAndWait(new Runnable()
+        try
+        {
+            startup.await(PHASE_USER_INTERFACE);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        splashEnsureOpenClosed(false);
+        Splash.setProvider(null);
+    }
+
+    /**
+     * Adds the phases of the application startup to the graph.
+     *
+     * @param startup startup graph.
+     */
+    private void addStartupPhases(PhaseGraph startup)
+    {
+        startup.add(PHASE_PLUGINS, new Runnable()
         {
             public void run()
             {
-                ApplicationLauncher.super.launchApplication();
+                Splash.setNote(Strings.message("startup.loading.plugins"), 25);
+                File f = new File(getContextPath(), "plugins");
+                Manager.initialize(f, Application.getUserPreferences());
+                Manager.loadPackages();
             }
-        }, MSG_PARENT_APP_LAUNCHER_ERROR, Level.SEVERE);
+        });
 
-        Splash.setNote(Strings.message("startup.opening.database"), 40);
-        IPersistenceManager manager = PersistenceManagerConfig.getManager();
-        try
+        startup.add(PHASE_PREFERENCES, new Runnable()
         {
-            manager.init();
-        } catch (PersistenceException e)
+            public void run()
+            {
+                GlobalController.SINGLETON.restorePreferences();
+            }
+        }, PHASE_PLUGINS);
+
+        startup.add(PHASE_USER_INTERFACE, new Runnable()
         {
-            LOG.log(Level.SEVERE, Strings.error("failed.to.initialize.database"), e);
+            public void run()
+            {
+                UifUtilities.invokeAndWait(new Runnable()
+                {
+                    public void run()
+                    {
+                        ApplicationLauncher.super.launchApplication();
+                    }
+                }, MSG_PARENT_APP_LAUNCHER_ERROR, Level.SEVERE);
+            }
+        }, PHASE_PREFERENCES);
 
-            // It's not possible to continue working with database failing.
-            System.exit(1);
-        }
+        startup.add(PHASE_DATABASE, new Runnable()
+        {
+            public void run()
+            {
+                Splash.setNote(Strings.message("startup.opening.database"), 40);
+                IPersistenceManager manager = PersistenceManagerConfig.getManager();
+                try
+                {
+                    manager.init();
+                } catch (PersistenceException e)
+                {
+                    LOG.log(Level.SEVERE, Strings.error("failed.to.initialize.database"), e);
 
-        configureShutdownHook();
+                    // It's not possible to continue working with database failing.
+                    System.exit(1);
+                }
 
-        Splash.setNote(Strings.message("startup.restoring.state.from.database"), 80);
-        // Restore last saved persistent state. If none, then gen fake data.
-        GlobalController.SINGLETON.restorePersistentState(newVersionModel);
+                configureShutdownHook();
+            }
+        });
 
-        Splash.setNote(Strings.message("startup.starting.connection.checking"), 85);
-        startConnectionChecker();
+        startup.add(PHASE_IMAGE_CACHE, new Runnable()
+        {
+            public void run()
+            {
+                imagesCache = new Cache(new File(getContextPath() + "cache"), 20000000);
+                ImageFetcher.setCache(imagesCache);
+            }
+        });
 
-        Splash.setNote(Strings.message("startup.loading.tip.of.the.day"), 90);
-        checkForOpenTipOfTheDayDailog();
+        startup.add(PHASE_CONNECTION_CHECKER, new Runnable()
+        {
+            public void run()
+            {
+                Splash.setNote(Strings.message("startup.starting.connection.checking"), 85);
+                startConnectionChecker();
+            }
+        }, PHASE_USER_INTERFACE);
 
-        splashEnsureOpenClosed(false);
-        Splash.setProvider(null);
+        startup.add(PHASE_TIP_OF_THE_DAY, new Runnable()
+        {
+            public void run()
+            {
+                checkForOpenTipOfTheDayDailog();
+            }
+        }, PHASE_USER_INTERFACE);
     }
 
     /**
@@ -912,6 +997,8 @@ public class ApplicationLauncher extends DefaultApplicationStarter
             public void run()
             {
                 // Closing database before termination
+                DatabaseMaintenance maintenance = GlobalController.SINGLETON.getDatabaseMaintenance();
+                if (maintenance != null) maintenance.stop();
                 PersistenceManagerConfig.getManager().shutdown();
 
                 try
@@ -924,6 +1011,10 @@ public class ApplicationLauncher extends DefaultApplicationStarter
 
                 // Close IPC channel
                 ipc.close();
+
+                // Write the recent reads of images to the cache journal
+                Cache cache = imagesCache;
+                if (cache != null) cache.close();
             }
         });
     }
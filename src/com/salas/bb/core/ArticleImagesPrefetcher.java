@@ -0,0 +1,124 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+
+package com.salas.bb.core;
+
+import com.salas.bb.domain.DataFeed;
+import com.salas.bb.domain.IArticle;
+import com.salas.bb.domain.IFeed;
+import com.salas.bb.domain.prefs.UserPreferences;
+import com.salas.bb.domain.utils.DomainAdapter;
+import com.salas.bb.utils.Constants;
+import com.salas.bb.utils.uif.images.ImagePrefetcher;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+
+/**
+ * Prefetches images of the new articles arriving to data feeds when it's
+ * enabled in the preferences, so that the articles are displayed from cache.
+ */
+public class ArticleImagesPrefetcher extends DomainAdapter implements PropertyChangeListener
+{
+    /** Maximum number of simultaneous downloads from a single host. */
+    private static final int MAX_PER_HOST = 2;
+    /** Maximum number of bytes to download per polling cycle. */
+    private static final long BUDGET = 10 * 1024 * 1024;
+
+    private UserPreferences prefs;
+    private ImagePrefetcher prefetcher;
+    private volatile boolean enabled;
+
+    /**
+     * Sets user preferences object.
+     *
+     * @param aPrefs preferences.
+     */
+    public void setUserPreferences(UserPreferences aPrefs)
+    {
+        if (prefs != null) prefs.removePropertyChangeListener(this);
+
+        prefs = aPrefs;
+
+        if (prefs != null) prefs.addPropertyChangeListener(this);
+
+        onPreferencesChange();
+    }
+
+    @Override
+    public void articleAdded(IFeed feed, IArticle article)
+    {
+        if (enabled && feed instanceof DataFeed && article.isNew())
+        {
+            getPrefetcher().prefetch(ImagePrefetcher.collectImageURLs(article.getLink(), article.getHtmlText()));
+        }
+    }
+
+    /**
+     * Invoked when preferences change.
+     *
+     * @param evt event.
+     */
+    public void propertyChange(PropertyChangeEvent evt)
+    {
+        String prop = evt.getPropertyName();
+        if (UserPreferences.PROP_PREFETCH_IMAGES.equals(prop) ||
+            UserPreferences.PROP_RSS_POLL_MIN.equals(prop))
+        {
+            onPreferencesChange();
+        }
+    }
+
+    /**
+     * Updates the state from preferences.
+     */
+    private void onPreferencesChange()
+    {
+        enabled = prefs != null && prefs.isPrefetchImages();
+        if (enabled) getPrefetcher().setCyclePeriod(getCyclePeriod());
+    }
+
+    /**
+     * Returns the polling cycle period.
+     *
+     * @return period (ms).
+     */
+    private long getCyclePeriod()
+    {
+        return (prefs == null ? UserPreferences.DEFAULT_RSS_POLL_MIN : prefs.getRssPollInterval()) *
+            Constants.MILLIS_IN_MINUTE;
+    }
+
+    /**
+     * Returns the prefetcher creating it if necessary.
+     *
+     * @return prefetcher.
+     */
+    private synchronized ImagePrefetcher getPrefetcher()
+    {
+        if (prefetcher == null) prefetcher = new ImagePrefetcher(MAX_PER_HOST, BUDGET, getCyclePeriod());
+        return prefetcher;
+    }
+}
@@ -29,15 +29,14 @@ import com.salas.bb.domain.IFeed;
 import com.salas.bb.domain.IGuide;
 import com.salas.bb.domain.prefs.UserPreferences;
 import com.salas.bb.utils.Constants;
-import com.salas.bb.utils.concurrency.ThreadExecutor;
+import com.salas.bb.utils.concurrency.Lane;
+import com.salas.bb.utils.concurrency.ScheduledTask;
+import com.salas.bb.utils.concurrency.Scheduler;
 import com.salas.bb.views.feeds.IFeedDisplayListener;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.net.URL;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 
 /**
@@ -66,7 +65,6 @@ public final class ArticleMarker extends ControllerAdapter
     private IFeed       currentFeed;
     private IGuide      currentGuideForGuide;
 
-    private Timer       timer;
     private MarkerTask  task;
 
     private int         markInterval;
@@ -79,7 +77,6 @@ public final class ArticleMarker extends ControllerAdapter
     {
         listener = new FeedDisplayListener();
 
-        timer = new Timer(true);
         markInterval = DEFAULT_INTERVAL;
         intervalMarkingEnabled = true;
     }
@@ -143,7 +140,7 @@ public final class ArticleMarker extends ControllerAdapter
         currentGuideForGuide = guide;
     }
 
-    private static final Executor MARK_EXECUTOR = new ThreadExecutor("Article Marker", 5000);
+    private static final Lane MARK_EXECUTOR = Scheduler.lane("Article Marker", 1, Thread.NORM_PRIORITY);
 
     /**
      * Returns current mark interval in seconds.
@@ -204,7 +201,7 @@ public final class ArticleMarker extends ControllerAdapter
     /**
      * Marker which marks currently selected article as read.
      */
-    private static class MarkerTask extends TimerTask
+    private static class MarkerTask extends ScheduledTask
     {
         private IArticle article;
 
@@ -330,7 +327,7 @@ public final class ArticleMarker extends ControllerAdapter
             if (lead != null && intervalMarkingEnabled && !lead.isRead())
             {
                 task = new MarkerTask(lead);
-                timer.schedule(task, getMarkInterval() * Constants.MILLIS_IN_SECOND);
+                MARK_EXECUTOR.schedule(task, getMarkInterval() * Constants.MILLIS_IN_SECOND);
             }
         }
 
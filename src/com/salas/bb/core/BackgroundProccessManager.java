@@ -24,24 +24,31 @@
 
 package com.salas.bb.core;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import com.salas.bb.utils.concurrency.Lane;
+import com.salas.bb.utils.concurrency.ScheduledTask;
+import com.salas.bb.utils.concurrency.Scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Manager of background processes.
+ * Manager of background processes. The processes run in the background lane of the
+ * {@link Scheduler}, so that a slow one doesn't hold others back.
  */
 public class BackgroundProccessManager
 {
     private static final int MILLIS_IN_SEC = 1000;
 
-    private Timer    daemon;
+    private final Lane lane;
+    private final List<ScheduledTask> tasks;
 
     /**
      * Constructs manager.
      */
     BackgroundProccessManager()
     {
-        daemon = new Timer(true);
+        lane = Scheduler.backgroundLane();
+        tasks = new ArrayList<ScheduledTask>();
     }
 
     /**
@@ -54,9 +61,10 @@ public class BackgroundProccessManager
     /**
      * Request a gracefull exit from the background tasks.
      */
-    void requestExit()
+    synchronized void requestExit()
     {
-        if (daemon != null) daemon.cancel();
+        for (ScheduledTask task : tasks) task.cancel();
+        tasks.clear();
     }
 
     /**
@@ -67,11 +75,11 @@ public class BackgroundProccessManager
      *
      * @return task.
      */
-    public RunnableTask scheduleOnce(Runnable task, long delay)
+    public synchronized ScheduledTask scheduleOnce(Runnable task, long delay)
     {
-        RunnableTask tt = new RunnableTask(task);
-        daemon.schedule(tt, delay * MILLIS_IN_SEC);
-        return tt;
+        ScheduledTask st = lane.schedule(task, delay * MILLIS_IN_SEC);
+        tasks.add(st);
+        return st;
     }
 
     /**
@@ -82,7 +90,7 @@ public class BackgroundProccessManager
      *
      * @return timer task.
      */
-    public RunnableTask schedule(Runnable aTask, long aPeriod)
+    public ScheduledTask schedule(Runnable aTask, long aPeriod)
     {
         return schedule(aTask, 1, aPeriod);
     }
@@ -96,34 +104,10 @@ public class BackgroundProccessManager
      *
      * @return timer task.
      */
-    public RunnableTask schedule(Runnable aTask, long aDelay, long aPeriod)
-    {
-        RunnableTask timerTask = new RunnableTask(aTask);
-        daemon.schedule(timerTask, aDelay * MILLIS_IN_SEC, aPeriod * MILLIS_IN_SEC);
-        return timerTask;
-    }
-
-    /**
-     * Timer task wrapping some runnable.
-     */
-    private static class RunnableTask extends TimerTask
+    public synchronized ScheduledTask schedule(Runnable aTask, long aDelay, long aPeriod)
     {
-        private Runnable runnable;
-
-        /**
-         * Creates timer task wrapping some runnable.
-         *
-         * @param aRunnable runnable.
-         */
-        public RunnableTask(Runnable aRunnable)
-        {
-            runnable = aRunnable;
-        }
-
-        /** The action to be performed by this timer task. */
-        public void run()
-        {
-            runnable.run();
-        }
+        ScheduledTask st = lane.schedule(aTask, aDelay * MILLIS_IN_SEC, aPeriod * MILLIS_IN_SEC);
+        tasks.add(st);
+        return st;
     }
 }
@@ -29,6 +29,8 @@ import com.salas.bb.domain.*;
 import com.salas.bb.domain.prefs.UserPreferences;
 import com.salas.bb.domain.utils.DomainAdapter;
 import com.salas.bb.utils.Sound;
+import com.salas.bb.utils.concurrency.ScheduledTask;
+import com.salas.bb.utils.concurrency.Scheduler;
 import com.salas.bb.utils.i18n.Strings;
 import com.salas.bb.utils.notification.NotificationArea;
 
@@ -36,7 +38,6 @@ import javax.swing.*;
 import java.net.URL;
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.TimerTask;
 import java.util.logging.Logger;
 
 /**
@@ -57,9 +58,6 @@ public class EventsNotifier extends DomainAdapter
     /** New feeds and articles event name. */
     private static final String EVENT_NEW_FEEDS_AND_ARTICLES = Strings.message("event.new.feeds.and.articles");
 
-    /** The timer we use to schedule checks. */
-    private final java.util.Timer timer;
-
     /** The frame we look after. If it's focused, we don't do anything. */
     private JFrame frame;
 
@@ -100,7 +98,6 @@ public class EventsNotifier extends DomainAdapter
 
         NotificationArea.init(APP_NAME, events, bigImage);
 
-        timer = new java.util.Timer();
         updatedGuides = new ArrayList<String>();
         soundResourceID = null;
 
@@ -249,7 +246,7 @@ public class EventsNotifier extends DomainAdapter
         if (task == null)
         {
             task = new CheckTimerTask();
-            timer.schedule(task, CHECK_PERIOD, CHECK_PERIOD);
+            Scheduler.interfaceLane().schedule(task, CHECK_PERIOD, CHECK_PERIOD);
         }
     }
 
@@ -313,7 +310,7 @@ public class EventsNotifier extends DomainAdapter
     /**
      * Checker for events and firer of notifications.
      */
-    private class CheckTimerTask extends TimerTask
+    private class CheckTimerTask extends ScheduledTask
     {
         private boolean isNothingToReport()
         {
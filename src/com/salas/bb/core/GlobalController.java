@@ -31,7 +31,9 @@ import com.jgoodies.uif.application.ApplicationEvent;
 import com.jgoodies.uif.util.ResourceUtils;
 import com.jgoodies.uif.util.SystemUtils;
 import com.salas.bb.core.actions.feed.FeedLinkPostToBlogAction;
+import com.salas.bb.core.actions.guide.ExportGuidesAction;
 import com.salas.bb.core.actions.guide.SubscribeToReadingListAction;
+import com.salas.bb.core.actions.guide.UndoMarkingAction;
 import com.salas.bb.core.autosave.AutoSaver;
 import com.salas.bb.dialogs.*;
 import com.salas.bb.discovery.*;
@@ -53,7 +55,12 @@ import com.salas.bb.imageblocker.ImageBlocker;
 import com.salas.bb.networking.manager.NetManager;
 import com.salas.bb.persistence.ChangesMonitor;
 import com.salas.bb.persistence.IPersistenceManager;
+import com.salas.bb.persistence.PersistenceException;
 import com.salas.bb.persistence.PersistenceManagerConfig;
+import com.salas.bb.persistence.WriteQueue;
+import com.salas.bb.persistence.backend.DatabaseMaintenance;
+import com.salas.bb.persistence.backend.HsqlPersistenceManager;
+import com.salas.bb.persistence.backend.IMaintenanceListener;
 import com.salas.bb.plugins.Manager;
 import com.salas.bb.plugins.domain.AdvancedPreferencesPlugin;
 import com.salas.bb.plugins.domain.IPlugin;
@@ -65,14 +72,20 @@ import com.salas.bb.sentiments.DomainListener;
 import com.salas.bb.sentiments.SentimentsConfig;
 import com.salas.bb.service.ServerService;
 import com.salas.bb.service.ServicePreferences;
+import com.salas.bb.service.sync.DeltaSync;
+import com.salas.bb.service.sync.ServiceDeltaSyncService;
 import com.salas.bb.service.sync.SyncFull;
 import com.salas.bb.service.sync.SyncFullAction;
+import com.salas.bb.service.sync.SyncJournal;
+import com.salas.bb.service.sync.SyncJournalMonitor;
 import com.salas.bb.service.sync.SyncOut;
 import com.salas.bb.tags.TagsRepository;
 import com.salas.bb.tags.TagsSaver;
 import com.salas.bb.tags.net.*;
 import com.salas.bb.updates.FullCheckCycle;
 import com.salas.bb.utils.*;
+import com.salas.bb.utils.concurrency.PhaseGraph;
+import com.salas.bb.utils.concurrency.Scheduler;
 import com.salas.bb.utils.discovery.DiscoveryResult;
 import com.salas.bb.utils.discovery.UrlDiscovererException;
 import com.salas.bb.utils.discovery.detector.XMLFormat;
@@ -80,6 +93,8 @@ import com.salas.bb.utils.discovery.detector.XMLFormatDetector;
 import com.salas.bb.utils.discovery.impl.DirectDiscoverer;
 import com.salas.bb.utils.i18n.Strings;
 import com.salas.bb.utils.ipc.IIPCListener;
+import com.salas.bb.utils.metrics.Metrics;
+import com.salas.bb.utils.opml.Converter;
 import com.salas.bb.utils.notification.NotificationArea;
 import com.salas.bb.utils.poller.Poller;
 import com.salas.bb.utils.uif.UifUtilities;
@@ -89,9 +104,11 @@ import com.salas.bb.views.feeds.IFeedDisplay;
 import com.salas.bb.views.mainframe.MainFrame;
 import com.salas.bb.views.mainframe.UnreadButton;
 import com.salas.bb.views.stylesheets.StylesheetManager;
+import org.jdom.output.XMLOutputter;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.AWTEventListener;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
@@ -100,6 +117,7 @@ import java.text.MessageFormat;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.prefs.Preferences;
@@ -123,8 +141,26 @@ public final class GlobalController implements IIPCListener
     /** Number of last backups to keep in backups directory. */
     private static final int LAST_BACKUPS_TO_KEEP = 10;
 
+    /** Maximum number of articles returned by the IPC search. */
+    private static final int MAX_IPC_SEARCH_RESULTS = 1000;
+
     private static final String THREAD_NAME_SEARCH_QUERY = "Run Search Feed Query";
 
+    /** Startup phase: loading of the synchronization journal. */
+    private static final String PHASE_SYNC_JOURNAL = "sync journal";
+    /** Startup phase: loading of the feeds meta-data. */
+    private static final String PHASE_META_DATA = "meta-data";
+    /** Startup phase: loading of the guides set. */
+    private static final String PHASE_GUIDES = "guides";
+    /** Startup phase: calculation of counters derived from the guides set. */
+    private static final String PHASE_COUNTS = "counts";
+    /** Startup phase: restoring of the selection. */
+    private static final String PHASE_SELECTION = "selection";
+    /** Startup phase: synchronization on startup. */
+    private static final String PHASE_STARTUP_SYNC = "startup sync";
+    /** Startup phase: start of the background processes. */
+    private static final String PHASE_BACKGROUND_PROCESSES = "background processes";
+
     /**
      * Minimum number of feeds to have saved during previous sync-out to start looking for
      * suspicious decreases.
@@ -136,6 +172,10 @@ public final class GlobalController implements IIPCListener
      */
     static final int CHANGE_CHECK_DIFF_TIMES = 3;
 
+    /** The last change of the read state of articles which can be undone. */
+    private static final AtomicReference<ReadStateChange> LAST_READ_CHANGE =
+        new AtomicReference<ReadStateChange>();
+
     /**
      * Singleton instance.
      */
@@ -163,6 +203,7 @@ public final class GlobalController implements IIPCListener
     private MainFrame                   mainFrame;
     private SelectedFeedListener        selectedFeedListener;
     private DeletedObjectsRepository deletedObjectsRepository;
+    private DeltaSync                   deltaSync;
 
     private SearchFeedsManager          searchFeedsManager;
     private DomainEventsListener        domainEventsListener;
@@ -185,6 +226,8 @@ public final class GlobalController implements IIPCListener
     private GuidesListModel             guidesListModel;
     private PinTagger                   pinTagger;
     private AutoSaver autoSaver;
+    private ArticleImagesPrefetcher imagesPrefetcher;
+    private volatile DatabaseMaintenance databaseMaintenance;
 
     /** A link that should be highlighted in an article when found. */
     private String                      highlightedArticleLink;
@@ -217,13 +260,17 @@ public final class GlobalController implements IIPCListener
         }
         searchEngine = new SearchEngine();
         backManager = new BackgroundProccessManager();
+        Metrics.registerMBean();
 
         pinTagger = new PinTagger(this);
         autoSaver = new AutoSaver();
+        imagesPrefetcher = new ArticleImagesPrefetcher();
 
         if (SystemUtils.IS_OS_MAC) dockIconUnreadMonitor = new DockIconUnreadMonitor();
         selectedFeedListener = new SelectedFeedListener();
         deletedObjectsRepository = new DeletedObjectsRepository(PersistenceManagerConfig.getManager());
+        deltaSync = new DeltaSync(new SyncJournal(new File(ApplicationLauncher.getContextPath() + "sync.journal")),
+            new ServiceDeltaSyncService());
 
         searchHighlightsCalculator = new HighlightsCalculator();
         currentSearchKeywords = "";
@@ -292,6 +339,16 @@ public final class GlobalController implements IIPCListener
         return deletedObjectsRepository;
     }
 
+    /**
+     * Returns incremental synchronization.
+     *
+     * @return instance.
+     */
+    public DeltaSync getDeltaSync()
+    {
+        return deltaSync;
+    }
+
     /**
      * Reselect currently selected feed in the midnight to let it regroup the articles.
      */
@@ -354,6 +411,7 @@ public final class GlobalController implements IIPCListener
     {
         tagsStorage = new WrappingStorage(new EmptyStorage());
         tagsSaver = new TagsSaver(tagsStorage);
+        tagsSaver.setPendingFile(new File(ApplicationLauncher.getContextPath() + "tags.pending"));
     }
 
     /**
@@ -467,11 +525,18 @@ public final class GlobalController implements IIPCListener
 
         // This listener should go after the searchFeedsManager
         addDomainListener(autoSaver);
+        autoSaver.setUserPreferences(userPreferences);
+        autoSaver.resumeDownloads();
+
+        imagesPrefetcher.setUserPreferences(userPreferences);
+        addDomainListener(imagesPrefetcher);
 
         tagsSaver.setGuidesSet(guidesSet);
+        addDomainListener(tagsSaver.getDomainListener());
         changeTagsStorage(userPreferences.getTagsStorage());
 
         metaDataUpdater.setGuidesSet(guidesSet);
+        addDomainListener(metaDataUpdater.getDomainListener());
 
         poller.setGuidesSet(guidesSet);
         poller.update();
@@ -504,6 +569,7 @@ public final class GlobalController implements IIPCListener
         navigator.guideSelected(null);
         navigator.feedSelected(null);
 
+        removeDomainListener(tagsSaver.getDomainListener());
         tagsSaver.setGuidesSet(null);
         searchEngine.setGuidesSet(null);
 
@@ -899,7 +965,7 @@ public final class GlobalController implements IIPCListener
             {
                 searchFeedsManager.runAllQueries();
             }
-        }, 20); 
+        }, 20);
     }
 
     /**
@@ -1038,6 +1104,42 @@ public final class GlobalController implements IIPCListener
         return poller;
     }
 
+    /**
+     * Returns the database maintenance service.
+     *
+     * @return service or <code>NULL</code> if the database isn't open yet.
+     */
+    public DatabaseMaintenance getDatabaseMaintenance()
+    {
+        return databaseMaintenance;
+    }
+
+    /**
+     * Starts the online maintenance of the database. The user input is watched so that
+     * the operations run when the user is idle, and their progress is displayed in the
+     * activity indicator.
+     *
+     * @param manager   database manager.
+     * @param queue     queue of writes in front of the manager.
+     */
+    private void startDatabaseMaintenance(HsqlPersistenceManager manager, WriteQueue queue)
+    {
+        final DatabaseMaintenance maintenance = new DatabaseMaintenance(manager, queue);
+        maintenance.addListener(new MaintenanceIndicator());
+
+        Toolkit.getDefaultToolkit().addAWTEventListener(new AWTEventListener()
+        {
+            public void eventDispatched(AWTEvent event)
+            {
+                maintenance.userActive();
+            }
+        }, AWTEvent.KEY_EVENT_MASK | AWTEvent.MOUSE_EVENT_MASK | AWTEvent.MOUSE_MOTION_EVENT_MASK |
+            AWTEvent.MOUSE_WHEEL_EVENT_MASK);
+
+        maintenance.start();
+        databaseMaintenance = maintenance;
+    }
+
     /**
      * Deletes guides and selects appropriate guide after that.
      *
@@ -1261,6 +1363,105 @@ public final class GlobalController implements IIPCListener
         });
     }
 
+    /**
+     * Starts updating of the feed. The feed is looked up in EDT.
+     *
+     * @param url XML URL of the feed.
+     *
+     * @return <code>TRUE</code> if the feed is known.
+     */
+    public boolean update(final URL url)
+    {
+        final boolean[] known = new boolean[1];
+
+        UifUtilities.invokeAndWait(new Runnable()
+        {
+            public void run()
+            {
+                DirectFeed feed = getModel().getGuidesSet().findDirectFeed(url);
+                if (feed != null) updateFeed(feed);
+
+                known[0] = feed != null;
+            }
+        }, "Failed to update the feed.", Level.WARNING);
+
+        return known[0];
+    }
+
+    /**
+     * Marks all articles of the feed as read. The articles are marked in EDT.
+     *
+     * @param url XML URL of the feed.
+     *
+     * @return <code>TRUE</code> if the feed is known.
+     */
+    public boolean markRead(final URL url)
+    {
+        final boolean[] known = new boolean[1];
+
+        UifUtilities.invokeAndWait(new Runnable()
+        {
+            public void run()
+            {
+                DirectFeed feed = getModel().getGuidesSet().findDirectFeed(url);
+                if (feed != null) readFeeds(true, null, feed);
+
+                known[0] = feed != null;
+            }
+        }, "Failed to mark the feed read.", Level.WARNING);
+
+        return known[0];
+    }
+
+    /**
+     * Finds articles matching the text. The articles are searched in EDT.
+     *
+     * @param text text to search for.
+     *
+     * @return matching articles as the lines with the link and the title separated by tab.
+     */
+    public List<String> search(final String text)
+    {
+        final List<String> lines = new ArrayList<String>();
+
+        UifUtilities.invokeAndWait(new Runnable()
+        {
+            public void run()
+            {
+                GuidesSet set = getModel().getGuidesSet();
+                for (IArticle article : SearchEngine.findArticles(set, text, MAX_IPC_SEARCH_RESULTS))
+                {
+                    URL link = article.getLink();
+                    lines.add((link == null ? "" : link.toString()) + "\t" + article.getTitle());
+                }
+            }
+        }, "Failed to search articles.", Level.WARNING);
+
+        return lines;
+    }
+
+    /**
+     * Exports all guides. The guides are taken in EDT.
+     *
+     * @return OPML document.
+     */
+    public String export()
+    {
+        final String[] opml = new String[1];
+
+        UifUtilities.invokeAndWait(new Runnable()
+        {
+            public void run()
+            {
+                StandardGuide[] guides = getModel().getGuidesSet().getStandardGuides(null);
+                opml[0] = new XMLOutputter().outputString(
+                    ExportGuidesAction.export(Converter.convertToOPML(guides), true));
+            }
+        }, "Failed to export guides.", Level.WARNING);
+
+        return opml[0];
+    }
+
     /**
      * Subscribes to a given URL with known format.
      *
@@ -1296,33 +1497,114 @@ public final class GlobalController implements IIPCListener
     }
 
     /**
-     * Thread class which performs the slow accessing of the persistent database with all the saved
-     * channels and items in the background.
+     * Loader of the persistent state. The loading is split in the phases of the startup graph.
+     * The guides set is loaded and shown as soon as the database and the main frame are ready,
+     * while the meta-data storage is attached in parallel. The phases working with the loaded
+     * model -- counts, selection and startup sync -- run one after another, as the selection
+     * and sync change the model. The search feeds are scanned by the background processes
+     * a while after they start.
      */
-    private class OpenDBinBackground extends Thread
+    private class PersistentStateLoader
     {
         private static final String THREAD_TITLE = "Load used tags";
 
         private GlobalModel installationModel;
 
         /**
-         * Create database thread.
+         * Creates loader.
          *
          * @param aInstallationModel model from installer.
          */
-        OpenDBinBackground(GlobalModel aInstallationModel)
+        PersistentStateLoader(GlobalModel aInstallationModel)
         {
-            super("OpenDBinBackground");
-
             installationModel = aInstallationModel;
+        }
+
+        /**
+         * Adds the phases of loading to the startup graph.
+         *
+         * @param startup startup graph.
+         */
+        void addPhases(PhaseGraph startup)
+        {
+            startup.add(PHASE_SYNC_JOURNAL, new Runnable()
+            {
+                public void run()
+                {
+                    deltaSync.getJournal().load();
+                }
+            });
+
+            startup.add(PHASE_META_DATA, new Runnable()
+            {
+                public void run()
+                {
+                    IPersistenceManager manager = PersistenceManagerConfig.getManager();
+                    metaDataManager.setStorage(manager.getMetaDataStorage());
+                }
+            }, ApplicationLauncher.PHASE_DATABASE);
+
+            startup.add(PHASE_GUIDES, new Runnable()
+            {
+                public void run()
+                {
+                    loadGuides();
+                }
+            }, ApplicationLauncher.PHASE_DATABASE, ApplicationLauncher.PHASE_USER_INTERFACE,
+                PHASE_SYNC_JOURNAL);
+
+            startup.add(PHASE_COUNTS, new Runnable()
+            {
+                public void run()
+                {
+                    GuidesSet guidesSet = getModel().getGuidesSet();
+
+                    initMaxViewsAndClickthroughs(guidesSet);
+                    startLoadingUsedTags(guidesSet);
+
+                    if (dockIconUnreadMonitor != null) dockIconUnreadMonitor.update();
+                }
+            }, PHASE_GUIDES);
+
+            startup.add(PHASE_SELECTION, new Runnable()
+            {
+                public void run()
+                {
+                    model.initTransientState();
+                    restoreFeedSelection();
 
-            setPriority(Thread.MIN_PRIORITY);
+                    // Extra repainting of highlights to show links to existing feeds correctly
+                    repaintArticlesListHighlights();
+                }
+            }, PHASE_COUNTS);
+
+            startup.add(PHASE_STARTUP_SYNC, new Runnable()
+            {
+                public void run()
+                {
+                    // Perform sync-on-startup only if the database was OK
+                    if (!PersistenceManagerConfig.getManager().isDatabaseReset())
+                    {
+                        // check if it's time for full sync on startup
+                        SyncFull syncFull = new SyncFull(model);
+                        if (syncFull.isSyncTime()) SyncFullAction.getInstance().doSync(null);
+                    }
+                }
+            }, PHASE_SELECTION);
+
+            startup.add(PHASE_BACKGROUND_PROCESSES, new Runnable()
+            {
+                public void run()
+                {
+                    startBackground();
+                }
+            }, PHASE_META_DATA, PHASE_STARTUP_SYNC);
         }
 
         /**
-         * Runs the task.
+         * Loads the guides set and lets the guides list show it.
          */
-        public void run()
+        private void loadGuides()
         {
             if (LOG.isLoggable(Level.FINE)) LOG.fine("Loading persistent state from DB.");
             ActivityTicket actTicket = ActivityIndicatorView.startOpeningDatabase();
@@ -1337,10 +1619,19 @@ public final class GlobalController implements IIPCListener
                 IPersistenceManager manager = PersistenceManagerConfig.getManager();
                 manager.loadGuidesSet(guidesSet);
 
-                // Connect persistence listeners
-                ChangesMonitor changesMonitor = new ChangesMonitor(guidesSet, manager);
+                // Connect persistence listeners through the queue holding writes during maintenance
+                WriteQueue writeQueue = new WriteQueue(manager);
+                ChangesMonitor changesMonitor = new ChangesMonitor(guidesSet, writeQueue.getManager());
                 domainEventsListener.addDomainListener(changesMonitor);
 
+                if (manager instanceof HsqlPersistenceManager)
+                {
+                    startDatabaseMaintenance((HsqlPersistenceManager)manager, writeQueue);
+                }
+
+                // Journal the same changes for incremental synchronization
+                domainEventsListener.addDomainListener(new SyncJournalMonitor(deltaSync.getJournal()));
+
                 // Copy guides and preferences from installer model if it is present
                 if (installationModel != null)
                 {
@@ -1362,48 +1653,33 @@ public final class GlobalController implements IIPCListener
                 {
                     DatabaseRecoverer.performRecovery(model, ApplicationLauncher.getBackupsPath());
                 }
-
-                initMaxViewsAndClickthroughs(guidesSet);
-
-                startLoadingUsedTags(guidesSet);
-
-                if (dockIconUnreadMonitor != null) dockIconUnreadMonitor.update();
-
-                model.loadingFinished();
-
-                // Perform sync-on-startup only if the database was OK
-                if (!manager.isDatabaseReset())
-                {
-                    // check if it's time for full sync on startup
-                    SyncFull syncFull = new SyncFull(model);
-                    if (syncFull.isSyncTime()) SyncFullAction.getInstance().doSync(null);
-                }
-
-                model.initTransientState();
-                restoreFeedSelection();
-
-                // Extra repainting of highlights to show links to existing feeds correctly
-                repaintArticlesListHighlights();
             } catch (Exception e)
             {
                 LOG.log(Level.SEVERE, Strings.error("exception.during.opening.db.in.background"), e);
-                model.loadingFinished();
             } finally
             {
+                model.loadingFinished();
+
                 getMainFrame().setCursor(Cursor.getDefaultCursor());
                 ActivityIndicatorView.finishActivity(actTicket);
+            }
+        }
 
-                ApplicationLauncher.enableIPC();
+        /**
+         * Finishes the initialization and starts background processes.
+         */
+        private void startBackground()
+        {
+            ApplicationLauncher.enableIPC();
 
-                fireInitializationFinished();
+            fireInitializationFinished();
 
-                checkForWarnings();
+            checkForWarnings();
 
-                startBackgroundProcesses();
-                autosubscribeIfNecessary();
+            startBackgroundProcesses();
+            autosubscribeIfNecessary();
 
-                checkForNewVersion();
-            }
+            checkForNewVersion();
 
             if (LOG.isLoggable(Level.FINE)) LOG.fine("Done loading persistent state from DB.");
 
@@ -1450,9 +1726,9 @@ public final class GlobalController implements IIPCListener
          */
         private void startLoadingUsedTags(final GuidesSet aGuidesSet)
         {
-            Thread loadUsedTagsThread = new Thread(THREAD_TITLE)
+            Scheduler.lane(THREAD_TITLE, 1, Thread.NORM_PRIORITY).execute(new Runnable()
             {
-                /** Invoked when running the thread. */
+                /** Invoked when running the task. */
                 public void run()
                 {
                     final TagsRepository repository = TagsRepository.getInstance();
@@ -1473,9 +1749,7 @@ public final class GlobalController implements IIPCListener
                         }
                     }
                 }
-            };
-
-            loadUsedTagsThread.start();
+            });
         }
 
         /**
@@ -1680,18 +1954,18 @@ public final class GlobalController implements IIPCListener
     }
 
     /**
-     * Reads in the last saved persistent state and restores the Model to that state. If there's
-     * something wrong with the persisted state then we start over with a default state.
+     * Adds the phases reading in the last saved persistent state and restoring the Model to that
+     * state to the startup graph. If there's something wrong with the persisted state then we
+     * start over with a default state.
      *
-     * @param aModel model of new version if it was detected or <code>null</code> in common case.
+     * @param startup   startup graph with the phases of the application launcher.
+     * @param aModel    model of new version if it was detected or <code>null</code> in common case.
      */
-    public void restorePersistentState(GlobalModel aModel)
+    public void restorePersistentState(PhaseGraph startup, GlobalModel aModel)
     {
         registerAppCloseEventListener();
 
-        new OpenDBinBackground(aModel).start();
-
-        if (LOG.isLoggable(Level.FINE)) LOG.fine("Done loading persistent state...");
+        new PersistentStateLoader(aModel).addPhases(startup);
     }
 
     /**
@@ -1747,6 +2021,7 @@ public final class GlobalController implements IIPCListener
             }
 
             if (!emergencyExit) syncOutOnExit();
+            deltaSync.getJournal().store();
 
             model.prepareForApplicationExit();
             storePreferences();
@@ -2035,14 +2310,9 @@ public final class GlobalController implements IIPCListener
     {
         if (articles == null || articles.length == 0) return;
 
-        int cnt = 0;
-
-        // Mark and count
-        for (IArticle article : articles)
-        {
-            if (article.isRead() != read) cnt++;
-            article.setRead(read);
-        }
+        // Mark in batches by feed and count
+        ReadStateChange change = new ReadStateChange(read);
+        int cnt = change.addArticles(articles);
         
         // Record stats if it's reading and the count is greater than 0
         if (read && cnt > 0)
@@ -2050,6 +2320,8 @@ public final class GlobalController implements IIPCListener
             IPersistenceManager pm = PersistenceManagerConfig.getManager();
             pm.getStatisticsManager().articlesRead(guide, feed, cnt);
         }
+
+        setLastReadChange(change);
     }
 
     /**
@@ -2063,17 +2335,25 @@ public final class GlobalController implements IIPCListener
     {
         if (feeds == null || feeds.length == 0) return;
 
+        ReadStateChange change = new ReadStateChange(read);
+        readFeeds(change, guide, feeds);
+        setLastReadChange(change);
+    }
+
+    /**
+     * Marks feeds as (un)read as a part of the bigger change and updates stats.
+     *
+     * @param change    change to mark feeds with.
+     * @param guide     guide to associate with reading (NULLable).
+     * @param feeds     feeds to mark.
+     */
+    private static void readFeeds(ReadStateChange change, IGuide guide, IFeed ... feeds)
+    {
         for (IFeed feed : feeds)
         {
-            int cnt = 0;
+            int cnt = change.addFeeds(feed);
 
-            synchronized (feed)
-            {
-                if (read) cnt = feed.getUnreadArticlesCount();
-                feed.setRead(read);
-            }
-
-            if (cnt > 0)
+            if (change.isRead() && cnt > 0)
             {
                 IPersistenceManager pm = PersistenceManagerConfig.getManager();
                 pm.getStatisticsManager().articlesRead(guide, feed, cnt);
@@ -2091,11 +2371,45 @@ public final class GlobalController implements IIPCListener
     {
         if (guides == null || guides.length == 0) return;
 
+        ReadStateChange change = new ReadStateChange(read);
         for (IGuide guide : guides)
         {
             IFeed[] feeds = GlobalModel.SINGLETON.getVisibleFeeds(guide);
-            readFeeds(read, guide, feeds);
+            readFeeds(change, guide, feeds);
         }
+
+        setLastReadChange(change);
+    }
+
+    /**
+     * Remembers the change to let the user undo it.
+     *
+     * @param change change.
+     */
+    private static void setLastReadChange(ReadStateChange change)
+    {
+        if (change.getCount() > 0)
+        {
+            LAST_READ_CHANGE.set(change);
+            UndoMarkingAction.getInstance().setEnabled(true);
+        }
+    }
+
+    /**
+     * Reverts the last change of the read state of articles made through
+     * <code>readArticles</code>, <code>readFeeds</code> or <code>readGuides</code>.
+     *
+     * @return <code>TRUE</code> if there was a change to revert.
+     */
+    public static boolean undoLastReadChange()
+    {
+        ReadStateChange change = LAST_READ_CHANGE.getAndSet(null);
+        if (change == null) return false;
+
+        UndoMarkingAction.getInstance().setEnabled(false);
+        change.undo();
+
+        return true;
     }
 
     /**
@@ -2564,7 +2878,7 @@ public final class GlobalController implements IIPCListener
     }
 
     /**
-     * Runs a thread updating the given search feed.
+     * Submits the task updating the given search feed.
      *
      * @param sfeed feed.
      */
@@ -2572,13 +2886,13 @@ public final class GlobalController implements IIPCListener
     {
         if (sfeed == null) return;
         
-        new Thread(THREAD_NAME_SEARCH_QUERY)
+        Scheduler.lane(THREAD_NAME_SEARCH_QUERY, 2, Thread.NORM_PRIORITY).execute(new Runnable()
         {
             public void run()
             {
                 searchFeedsManager.runQuery(sfeed);
             }
-        }.start();
+        });
     }
 
     /**
@@ -2908,6 +3222,30 @@ public final class GlobalController implements IIPCListener
         return processingDone;
     }
 
+    /**
+     * Displays the progress of database maintenance in the activity indicator.
+     */
+    private static class MaintenanceIndicator implements IMaintenanceListener
+    {
+        private ActivityTicket ticket;
+
+        public synchronized void maintenanceStarted(String operation)
+        {
+            ticket = ActivityIndicatorView.startDatabaseMaintenance(operation);
+        }
+
+        public synchronized void maintenanceProgress(String operation, int percent)
+        {
+            if (ticket != null) ActivityIndicatorView.updateDatabaseMaintenance(ticket, operation, percent);
+        }
+
+        public synchronized void maintenanceFinished(String operation, PersistenceException error)
+        {
+            if (ticket != null) ActivityIndicatorView.finishActivity(ticket);
+            ticket = null;
+        }
+    }
+
     /**
      * Temporary dialog results holder.
      */
@@ -31,6 +31,7 @@ import com.salas.bb.domain.prefs.UserPreferences;
 import com.salas.bb.domain.utils.DomainAdapter;
 import com.salas.bb.domain.utils.DomainEventsListener;
 import com.salas.bb.service.ServicePreferences;
+import com.salas.bb.utils.concurrency.Scheduler;
 import com.salas.bb.utils.dnd.DNDListContext;
 import com.salas.bb.views.settings.DefaultFRS;
 import com.salas.bb.views.settings.FeedRenderingSettings;
@@ -85,6 +86,13 @@ public class GlobalModel
 
     private boolean                         blockChannelUpdated;
 
+    /** Lock guarding the batch update state. */
+    private final Object                    batchLock = new Object();
+    /** Number of batch updates in progress. */
+    private int                             batchUpdates;
+    /** <code>TRUE</code> when the guide model has to be rebuilt at the end of the batch. */
+    private boolean                         batchRebuildNeeded;
+
     // We use this info block to record the fact of selecteed feed change not passing feed change
     // event to the model. Doing this we avoid refiltering and resorting basing on new feed
     // state, which may result in change of feed position or visibility. These changes break
@@ -560,6 +568,65 @@ public class GlobalModel
         }
     }
     
+    /**
+     * Called before a batch of changes to the guides set (like the synchronization)
+     * starts. Until the batch is finished, the changes to the feeds of the selected guide
+     * aren't reported to the guide model one by one, but collected and reported once with
+     * a single rebuild. Batches can be nested.
+     */
+    public void batchUpdateStarted()
+    {
+        synchronized (batchLock)
+        {
+            batchUpdates++;
+        }
+    }
+
+    /**
+     * Called when the batch of changes finishes. When the outermost batch finishes and
+     * there were changes to the selected guide, the guide model is rebuilt once.
+     */
+    public void batchUpdateFinished()
+    {
+        synchronized (batchLock)
+        {
+            if (batchUpdates == 0 || --batchUpdates > 0 || !batchRebuildNeeded) return;
+            batchRebuildNeeded = false;
+        }
+
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                guideModel.fullRebuild();
+
+                // Move the selection off the feed which is gone
+                IGuide guide = guideModel.getCurrentGuide();
+                if (selectedFeed != null && guide != null && guide.indexOf(selectedFeed) == -1)
+                {
+                    IFeed feedToSelect = guideModel.getSize() > 0
+                        ? (IFeed)guideModel.getElementAt(0) : null;
+                    GlobalController.SINGLETON.selectFeed(feedToSelect);
+                }
+            }
+        });
+    }
+
+    /**
+     * Registers the change to the selected guide within the batch update.
+     *
+     * @return <code>TRUE</code> if the batch update is in progress and the change
+     *         will be reported at its end.
+     */
+    private boolean deferToBatchUpdate()
+    {
+        synchronized (batchLock)
+        {
+            if (batchUpdates > 0) batchRebuildNeeded = true;
+            return batchUpdates > 0;
+        }
+    }
+
     /**
      * Given a guide, return a list of feeds which would be displayed
      * in that guide given current filter settings and options.
@@ -767,7 +834,7 @@ public class GlobalModel
             IArticle[] articles = feed.getArticles();
             for (IArticle article : articles) articleAdded(feed, article);
 
-            if (selectedGuide == guide)
+            if (selectedGuide == guide && !deferToBatchUpdate())
             {
                 final int index = guide.indexOf(feed);
                 SwingUtilities.invokeLater(new Runnable()
@@ -793,7 +860,7 @@ public class GlobalModel
             // Do common processing
             feedRemovedCommon(guide, feed);
 
-            if (selectedGuide == guide && event.isLastEvent())
+            if (selectedGuide == guide && event.isLastEvent() && !deferToBatchUpdate())
             {
                 final int visibleIndex = guideModel.indexOf(feed);
 
@@ -834,7 +901,7 @@ public class GlobalModel
          */
         public void feedRepositioned(final IGuide guide, final IFeed feed, int oldPosition, int newPosition)
         {
-            if (guideModel.getCurrentGuide() == guide)
+            if (guideModel.getCurrentGuide() == guide && !deferToBatchUpdate())
             {
                 SwingUtilities.invokeLater(new Runnable()
                 {
@@ -879,10 +946,10 @@ public class GlobalModel
             final DataFeed feed = (DataFeed)article.getFeed();
             final boolean autoDiscovery = feed.isAutoFeedsDiscovery();
 
-            // Span new thread only if at least one of the functions is required.
+            // Submit the task only if at least one of the functions is required.
             if (autoDiscovery)
             {
-                Thread thread = new Thread(THREAD_NAME_ARTICLE_SPECIAL_FUNCTIONS)
+                Scheduler.lane(THREAD_NAME_ARTICLE_SPECIAL_FUNCTIONS, 1, Thread.NORM_PRIORITY).execute(new Runnable()
                 {
                     public void run()
                     {
@@ -892,9 +959,7 @@ public class GlobalModel
                             GlobalController.SINGLETON.discoverFeedsIn(article, feed);
                         }
                     }
-                };
-
-                thread.start();
+                });
             }
         }
 
@@ -906,7 +971,7 @@ public class GlobalModel
          */
         private void updateScores(final IFeed feed, final boolean updateHighlights)
         {
-            Thread thread = new Thread(THREAD_NAME_UPDATE_SCORES)
+            Scheduler.lane(THREAD_NAME_UPDATE_SCORES, 2, Thread.NORM_PRIORITY).execute(new Runnable()
             {
                 public void run()
                 {
@@ -928,9 +993,7 @@ public class GlobalModel
                     // Repaint feed
                     feedUpdated(feed);
                 }
-            };
-
-            thread.start();
+            });
         }
 
         /**
@@ -33,6 +33,8 @@ import com.salas.bb.utils.Constants;
 import com.salas.bb.utils.Sort;
 
 import javax.swing.*;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  * This list indirectly forwards various requests to the
@@ -48,6 +50,14 @@ import javax.swing.*;
  * ({@link #calculateScore(com.salas.bb.domain.IFeed, int, int)}). Later when sorting is
  * required the scores are compared as regular integers and position of feed items in the
  * list is evaluated.</p>
+ *
+ * <h2>Updates</h2>
+ *
+ * <p>The sorted list is always ordered by scores and then by positions of feeds in the
+ * guide, so a feed can be found in it with binary search. When some feed changes, it's
+ * taken out of the list and put back at its new place, without touching the others.
+ * The changes reported during one event dispatching cycle are applied together and
+ * only the rows which really moved are reported to the list.</p>
  */
 public class GuideModel extends AbstractListModel
 {
@@ -58,6 +68,7 @@ public class GuideModel extends AbstractListModel
     private JList                   listComponent;
 
     private IFeed[]                 feeds;
+    private Map<IFeed, Integer>     dataIndices;
     private int[]                   channelsClasses;
     private int[]                   channelsScores;
 
@@ -82,6 +93,15 @@ public class GuideModel extends AbstractListModel
 
     private IFeed                   selectedFeed;
 
+    /** Feeds changed since the last repositioning. */
+    private final Map<IFeed, IFeed> changedFeeds = new IdentityHashMap<IFeed, IFeed>();
+    /** <code>TRUE</code> when the repositioning task is queued. */
+    private boolean                 repositioningScheduled;
+
+    /** The range of rows changed, but not reported yet, or <code>-1</code>. */
+    private int                     changedFrom = -1;
+    private int                     changedTo = -1;
+
     /**
      * Creates model and initializes it with calculator of feeds scores.
      *
@@ -172,6 +192,9 @@ public class GuideModel extends AbstractListModel
         // TODO: on the screen.
 
         feeds = feedsList;
+        dataIndices = new IdentityHashMap<IFeed, Integer>(feeds.length);
+        for (int i = 0; i < feeds.length; i++) dataIndices.put(feeds[i], i);
+
         rebuild0(newGuide, true);
     }
 
@@ -313,55 +336,252 @@ public class GuideModel extends AbstractListModel
             }
         }
 
-        // TODO Potential concurrency problem !!!
+        // Let the changed feed cell repaint itself and reposition all feeds changed
+        // by then at once
+        changedFeeds.put(feed, feed);
+        if (!repositioningScheduled)
+        {
+            repositioningScheduled = true;
+            SwingUtilities.invokeLater(new Runnable()
+            {
+                public void run()
+                {
+                    repositionChangedFeeds();
+                }
+            });
+        }
+    }
+
+    /**
+     * Recalculates classes and scores of the changed feeds and moves them to their new
+     * places in the list. The selection stays with the selected feed.
+     */
+    synchronized void repositionChangedFeeds()
+    {
+        repositioningScheduled = false;
+        if (changedFeeds.isEmpty()) return;
+
+        int selectedViewIndex = getSelectedChannelIndex();
+        int selectedDataIndex = selectedViewIndex == -1 || selectedViewIndex >= sortedChannelsCount
+            ? -1 : sortedChannels[selectedViewIndex];
+
+        for (IFeed feed : changedFeeds.keySet()) reposition(feed);
+        changedFeeds.clear();
+        fireRowsChanged();
+
+        if (selectedDataIndex != -1 && listComponent != null)
+        {
+            int newViewIndex = viewIndexOf(selectedDataIndex);
+            if (newViewIndex != -1 && newViewIndex != listComponent.getSelectedIndex())
+            {
+                listComponent.setSelectedIndex(newViewIndex);
+            }
+        }
+    }
+
+    /**
+     * Recalculates class and score of the feed and moves it to its new place in the list.
+     * It's also added to the list or removed from it if its visibility changes.
+     *
+     * @param feed feed.
+     */
+    private void reposition(IFeed feed)
+    {
+        Integer index = dataIndices.get(feed);
+        if (index == null) return;
+
+        int dataIndex = index;
+        int viewIndex = viewIndexOf(dataIndex);
+
+        int newClass = FeedClassifier.classify(feed);
+        int newScore = calculateScore(feed, newClass, -1);
+        boolean changed = channelsClasses[dataIndex] != newClass || channelsScores[dataIndex] != newScore;
+        boolean display = shouldBeDisplayed(feed, newClass);
+
+        if (viewIndex != -1 && (!changed || !display))
+        {
+            if (display) return;
+
+            // The feed becomes hidden
+            removeAt(viewIndex);
+            channelsClasses[dataIndex] = newClass;
+            channelsScores[dataIndex] = newScore;
+
+            if (!nonVisual)
+            {
+                fireRowsChanged();
+                fireIntervalRemoved(this, viewIndex, viewIndex);
+            }
+        } else if (viewIndex != -1)
+        {
+            // The feed moves
+            removeAt(viewIndex);
+            channelsClasses[dataIndex] = newClass;
+            channelsScores[dataIndex] = newScore;
+            int newViewIndex = insert(dataIndex);
 
-        // Run this code in another event to let the changed feed cell repaint itself
-        SwingUtilities.invokeLater(new Runnable()
+            if (!nonVisual) rowsChanged(Math.min(viewIndex, newViewIndex), Math.max(viewIndex, newViewIndex));
+        } else
         {
-            public void run()
+            channelsClasses[dataIndex] = newClass;
+            channelsScores[dataIndex] = newScore;
+
+            if (display)
             {
-                final int viewIndex = indexOf(feed);
-                final int dataIndex = viewIndex > -1 ? viewToData(viewIndex) : dataIndexOf(feed);
+                // The feed becomes visible
+                int newViewIndex = insert(dataIndex);
 
-                // If feed belongs to this guide then we need to recalculate its
-                // class and score and rebuild the list.
-                if (dataIndex != -1)
+                if (!nonVisual)
                 {
-                    IFeed channel = feeds[dataIndex];
-
-                    int newClass = FeedClassifier.classify(channel);
-                    int newScore = calculateScore(channel, newClass, -1);
-                    int oldClass = channelsClasses[dataIndex];
-
-                    boolean doRebuild = false;
-                    boolean doFiltering = false;
-
-                    if (oldClass != newClass || channelsScores[dataIndex] != newScore)
-                    {
-                        channelsClasses[dataIndex] = newClass;
-                        channelsScores[dataIndex] = newScore;
-                        doRebuild = true;
-                        doFiltering = true;
-                    }
-
-                    // If this channel became visible add it to the list of filtered channels
-                    boolean shouldBeDisplayed = shouldBeDisplayed(channel, newClass);
-
-                    if (viewIndex == -1 && shouldBeDisplayed)
-                    {
-                        filteredChannels[filteredChannelsCount++] = dataIndex;
-                        doRebuild = true;
-                        doFiltering = false;
-                    } else if (viewIndex != -1 && !shouldBeDisplayed)
-                    {
-                        doRebuild = true;
-                        doFiltering = true;
-                    }
-
-                    if (doRebuild) rebuild(doFiltering);
+                    fireRowsChanged();
+                    fireIntervalAdded(this, newViewIndex, newViewIndex);
                 }
             }
-        });
+        }
+    }
+
+    /**
+     * Compares positions of two feeds in the sorted list.
+     *
+     * @param dataIndex1    index of the first feed.
+     * @param dataIndex2    index of the second feed.
+     *
+     * @return negative if the first feed goes first, zero if it's the same feed, positive otherwise.
+     */
+    private int compareViewOrder(int dataIndex1, int dataIndex2)
+    {
+        if (sortingEnabled)
+        {
+            int s1 = channelsScores[dataIndex1];
+            int s2 = channelsScores[dataIndex2];
+            if (s1 != s2) return s1 < s2 ? -1 : 1;
+        }
+
+        return dataIndex1 - dataIndex2;
+    }
+
+    /**
+     * Finds the feed in the sorted list.
+     *
+     * @param dataIndex index of the feed.
+     *
+     * @return view index or <code>-(insertion point) - 1</code> if the feed isn't in the list.
+     */
+    private int searchView(int dataIndex)
+    {
+        int low = 0;
+        int high = sortedChannelsCount - 1;
+
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int cmp = compareViewOrder(sortedChannels[mid], dataIndex);
+
+            if (cmp < 0)
+            {
+                low = mid + 1;
+            } else if (cmp > 0)
+            {
+                high = mid - 1;
+            } else return mid;
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     * Returns the view index of the feed.
+     *
+     * @param dataIndex index of the feed.
+     *
+     * @return view index or <code>-1</code> if the feed isn't in the list.
+     */
+    private int viewIndexOf(int dataIndex)
+    {
+        int viewIndex = searchView(dataIndex);
+        return viewIndex < 0 ? -1 : viewIndex;
+    }
+
+    /**
+     * Removes the feed from the sorted and filtered lists.
+     *
+     * @param viewIndex view index of the feed.
+     */
+    private void removeAt(int viewIndex)
+    {
+        int dataIndex = sortedChannels[viewIndex];
+
+        sortedChannelsCount--;
+        System.arraycopy(sortedChannels, viewIndex + 1, sortedChannels, viewIndex,
+            sortedChannelsCount - viewIndex);
+
+        int filteredIndex = binarySearch(filteredChannels, filteredChannelsCount, dataIndex);
+        if (filteredIndex >= 0)
+        {
+            filteredChannelsCount--;
+            System.arraycopy(filteredChannels, filteredIndex + 1, filteredChannels, filteredIndex,
+                filteredChannelsCount - filteredIndex);
+        }
+    }
+
+    /**
+     * Inserts the feed into the sorted and filtered lists.
+     *
+     * @param dataIndex index of the feed.
+     *
+     * @return view index.
+     */
+    private int insert(int dataIndex)
+    {
+        int viewIndex = -searchView(dataIndex) - 1;
+
+        System.arraycopy(sortedChannels, viewIndex, sortedChannels, viewIndex + 1,
+            sortedChannelsCount - viewIndex);
+        sortedChannels[viewIndex] = dataIndex;
+        sortedChannelsCount++;
+
+        int filteredIndex = binarySearch(filteredChannels, filteredChannelsCount, dataIndex);
+        if (filteredIndex < 0)
+        {
+            filteredIndex = -filteredIndex - 1;
+            System.arraycopy(filteredChannels, filteredIndex, filteredChannels, filteredIndex + 1,
+                filteredChannelsCount - filteredIndex);
+            filteredChannels[filteredIndex] = dataIndex;
+            filteredChannelsCount++;
+        }
+
+        return viewIndex;
+    }
+
+    /**
+     * Finds the value in the sorted beginning of the array.
+     *
+     * @param list      array.
+     * @param length    number of first elements to look at.
+     * @param value     value to find.
+     *
+     * @return index or <code>-(insertion point) - 1</code> if the value isn't there.
+     */
+    private static int binarySearch(int[] list, int length, int value)
+    {
+        int low = 0;
+        int high = length - 1;
+
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int midValue = list[mid];
+
+            if (midValue < value)
+            {
+                low = mid + 1;
+            } else if (midValue > value)
+            {
+                high = mid - 1;
+            } else return mid;
+        }
+
+        return -(low + 1);
     }
 
     /**
@@ -402,17 +622,8 @@ public class GuideModel extends AbstractListModel
      */
     public synchronized int indexOf(IFeed feed)
     {
-        int viewIndex = -1;
-
-        if (feed != null)
-        {
-            for (int i = 0; viewIndex == -1 && i < sortedChannelsCount; i++)
-            {
-                if (feeds[viewToData(i)] == feed) viewIndex = i;
-            }
-        }
-
-        return viewIndex;
+        Integer dataIndex = feed == null ? null : dataIndices.get(feed);
+        return dataIndex == null ? -1 : viewIndexOf(dataIndex);
     }
 
     // Converts data index into view index using the specified list and looking into
@@ -428,18 +639,6 @@ public class GuideModel extends AbstractListModel
         return viewIndex;
     }
 
-    // Returns index of feed in original data (-1 if feed isn't present)
-    private synchronized int dataIndexOf(IFeed channel)
-    {
-        int index = -1;
-        for (int i = 0; index == -1 && i < feeds.length; i++)
-        {
-            if (feeds[i] == channel) index = i;
-        }
-
-        return index;
-    }
-
     /**
      * Converts view index into data.
      *
@@ -982,6 +1181,40 @@ public class GuideModel extends AbstractListModel
         if (o > 0) fireContentsChanged(this, offset, offset + o - 1);
     }
 
+    /**
+     * Adds the rows to the range of changed rows which will be reported later.
+     *
+     * @param from  first row.
+     * @param to    last row.
+     */
+    private void rowsChanged(int from, int to)
+    {
+        if (changedFrom == -1)
+        {
+            changedFrom = from;
+            changedTo = to;
+        } else
+        {
+            changedFrom = Math.min(changedFrom, from);
+            changedTo = Math.max(changedTo, to);
+        }
+    }
+
+    /**
+     * Reports the range of changed rows.
+     */
+    private void fireRowsChanged()
+    {
+        if (changedFrom == -1) return;
+
+        int from = changedFrom;
+        int to = changedTo;
+        changedFrom = -1;
+        changedTo = -1;
+
+        fireContentsChanged(this, from, to);
+    }
+
     // ---------------------------------------------------------------------------------------------
     // Making sure that all events are fired from EDT
     // ---------------------------------------------------------------------------------------------
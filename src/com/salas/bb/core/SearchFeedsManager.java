@@ -30,7 +30,9 @@ import com.salas.bb.domain.*;
 import com.salas.bb.domain.events.FeedRemovedEvent;
 import com.salas.bb.domain.query.articles.Query;
 import com.salas.bb.domain.utils.DomainAdapter;
-import com.salas.bb.utils.concurrency.ExecutorFactory;
+import com.salas.bb.utils.concurrency.Scheduler;
+import com.salas.bb.utils.metrics.Histogram;
+import com.salas.bb.utils.metrics.Metrics;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -43,7 +45,8 @@ import java.util.prefs.Preferences;
  */
 public class SearchFeedsManager extends DomainAdapter
 {
-    private static final int KEEP_ALIVE_TIME = 10000;
+    /** Time spent rescanning all articles for a search feed. */
+    private static final Histogram RESCAN_TIME = Metrics.histogram("search.rescan.time");
 
     private static Boolean dontUpdateAutomatically;
 
@@ -62,7 +65,7 @@ public class SearchFeedsManager extends DomainAdapter
         guidesSet = aSet;
         searchFeeds = new CopyOnWriteArraySet<SearchFeed>();
 
-        executor = ExecutorFactory.createPooledExecutor("Search Feeds", 1, Thread.MIN_PRIORITY, KEEP_ALIVE_TIME);
+        executor = Scheduler.lane("Search Feeds", 1, Thread.MIN_PRIORITY);
 
         loadCurrentSearchFeedsInMap();
     }
@@ -176,6 +179,7 @@ public class SearchFeedsManager extends DomainAdapter
      */
     public void runQuery(SearchFeed aSearchFeed)
     {
+        long start = RESCAN_TIME.start();
         aSearchFeed.processingStarted();
         try
         {
@@ -185,6 +189,7 @@ public class SearchFeedsManager extends DomainAdapter
         } finally
         {
             aSearchFeed.processingFinished();
+            RESCAN_TIME.stop(start);
         }
     }
 
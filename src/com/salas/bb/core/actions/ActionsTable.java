@@ -86,6 +86,7 @@ public final class ActionsTable
     public static final String CMD_GUIDE_MARK_UNREAD_SM             = "guide.mark.unread.submenu";
     public static final String CMD_GUIDE_MARK_ALL_READ              = "guide.mark.all.read";
     public static final String CMD_GUIDE_MARK_ALL_UNREAD            = "guide.mark.all.unread";
+    public static final String CMD_GUIDE_UNDO_MARKING               = "guide.undo.marking";
     public static final String CMD_GUIDE_GOTO_NEXT_UNREAD           = "guide.goto.next.unread";
     public static final String CMD_GUIDE_SORT_BY_TITLE              = "guide.sort.by.title";
     public static final String CMD_GUIDE_SUBSCRIBE_READINGLIST      = "guide.subscribe.readinglist";
@@ -179,6 +180,7 @@ public final class ActionsTable
     public static final String CMD_BB_DATABASE_COMPACT              = "bb.database.compact";
     public static final String CMD_BB_DATABASE_BACKUP               = "bb.database.backup";
     public static final String CMD_BB_ACTIVITY                      = "bb.activity";
+    public static final String CMD_BB_DIAGNOSTICS                   = "bb.diagnostics";
     public static final String CMD_BB_SERVICE                       = "bb.service";
     public static final String CMD_BB_PREFERENCES                   = "bb.preferences";
     public static final String CMD_BB_CLEANUP_WIZARD                = "bb.cleanup.wizard";
@@ -224,6 +226,7 @@ public final class ActionsTable
         ActionManager.register(CMD_BB_EXIT, ExitAction.getInstance());
         ActionManager.register(CMD_BB_BLOGSTARZ, ShowBlogStarzDialogAction.getInstance());
         ActionManager.register(CMD_BB_ACTIVITY, ShowActivityWindowAction.getInstance());
+        ActionManager.register(CMD_BB_DIAGNOSTICS, ShowDiagnosticsAction.getInstance());
         ActionManager.register(CMD_BB_ONLINEOFFLINE, ConnectionStateSwitchAction.getInstance());
         ActionManager.register(CMD_BB_PLUGIN_MANAGER, ManagerAction.getInstance());
         ActionManager.register(CMD_BB_DATABASE_COMPACT, DatabaseCompactAction.getInstance());
@@ -437,6 +440,7 @@ public final class ActionsTable
         ActionManager.register(CMD_GUIDE_MARK_UNREAD_SM, new ActionAlias(MarkGuideUnreadAction.getInstance()));
         ActionManager.register(CMD_GUIDE_MARK_ALL_READ, MarkAllGuidesReadAction.getInstance());
         ActionManager.register(CMD_GUIDE_MARK_ALL_UNREAD, MarkAllGuidesUnreadAction.getInstance());
+        ActionManager.register(CMD_GUIDE_UNDO_MARKING, UndoMarkingAction.getInstance());
         ActionManager.register(CMD_GUIDE_RELOAD, UpdateGuideAction.getInstance());
         ActionManager.register(CMD_GUIDE_RELOAD_SM, new ActionAlias(UpdateGuideAction.getInstance()));
         ActionManager.register(CMD_GUIDE_GOTO_NEXT_UNREAD, GotoNextGuideWithUnreadAction.getInstance());
@@ -27,6 +27,8 @@ package com.salas.bb.core.actions;
 import com.salas.bb.core.GlobalController;
 import com.salas.bb.persistence.PersistenceException;
 import com.salas.bb.persistence.PersistenceManagerConfig;
+import com.salas.bb.persistence.backend.DatabaseMaintenance;
+import com.salas.bb.utils.concurrency.Scheduler;
 
 import javax.swing.*;
 import java.awt.event.ActionEvent;
@@ -73,14 +75,13 @@ public class DatabaseBackupAction extends AbstractAction
         {
             final File directory = chooser.getSelectedFile();
 
-            new Thread("Database Backup")
+            Scheduler.lane("Database Backup", 1, Thread.NORM_PRIORITY).execute(new Runnable()
             {
-                @Override
                 public void run()
                 {
                     doBackup(directory);
                 }
-            }.start();
+            });
         }
     }
 
@@ -89,9 +90,16 @@ public class DatabaseBackupAction extends AbstractAction
         String message;
         int type;
         try
+        {
+            DatabaseMaintenance maintenance = GlobalController.SINGLETON.getDatabaseMaintenance();
+            if (maintenance != null)
+            {
+                maintenance.backup(directory);
+            } else
             {
                 PersistenceManagerConfig.getManager().backup(directory);
-                message = "Backup is complete";
+            }
+            message = "Backup is complete";
             type = JOptionPane.INFORMATION_MESSAGE;
         } catch (PersistenceException e)
         {
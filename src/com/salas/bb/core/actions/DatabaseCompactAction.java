@@ -27,6 +27,7 @@ package com.salas.bb.core.actions;
 import com.salas.bb.core.GlobalController;
 import com.salas.bb.persistence.PersistenceException;
 import com.salas.bb.persistence.PersistenceManagerConfig;
+import com.salas.bb.persistence.backend.DatabaseMaintenance;
 import com.salas.bb.utils.ThreadedAction;
 
 import javax.swing.*;
@@ -71,7 +72,14 @@ public class DatabaseCompactAction extends ThreadedAction
         int type;
         try
         {
-            PersistenceManagerConfig.getManager().compact();
+            DatabaseMaintenance maintenance = GlobalController.SINGLETON.getDatabaseMaintenance();
+            if (maintenance != null)
+            {
+                maintenance.compact(true);
+            } else
+            {
+                PersistenceManagerConfig.getManager().compact();
+            }
             message = "Compacting is complete";
             type = JOptionPane.INFORMATION_MESSAGE;
         } catch (PersistenceException e)
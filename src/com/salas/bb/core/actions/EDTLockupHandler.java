@@ -25,6 +25,7 @@
 package com.salas.bb.core.actions;
 
 import com.salas.bb.utils.i18n.Strings;
+import com.salas.bb.utils.watchdogs.StallProfiler;
 
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -36,6 +37,7 @@ import java.util.logging.Logger;
  * <ul>
  *  <li>VM version information.</li>
  *  <li>Running threads.</li>
+ *  <li>Recent slow events and hot spots reported by the stall profiler.</li>
  * </ul>
  *
  * Then it posts the information to service and dumps in the log.
@@ -52,8 +54,19 @@ public class EDTLockupHandler extends AbstractLockupHandler
 {
     private static final Logger LOG = Logger.getLogger(EDTLockupHandler.class.getName());
 
+    private final StallProfiler profiler;
     private int occurances = 0;
 
+    /**
+     * Creates handler.
+     *
+     * @param aProfiler stall profiler to take the recent slow events from or <code>NULL</code>.
+     */
+    public EDTLockupHandler(StallProfiler aProfiler)
+    {
+        profiler = aProfiler;
+    }
+
     /**
      * Returns logger to user for logging.
      *
@@ -79,7 +92,10 @@ public class EDTLockupHandler extends AbstractLockupHandler
         {
             AWTEvent event = (AWTEvent)e.getSource();
 
-            report(Strings.error("edt.lockup.detected"), collectDetails(event));
+            String details = collectDetails(event);
+            if (profiler != null) details += "\n" + profiler.getReport();
+
+            report(Strings.error("edt.lockup.detected"), details);
         }
 
         terminate(occurances == 1);
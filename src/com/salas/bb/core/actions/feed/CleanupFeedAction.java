@@ -94,6 +94,8 @@ public final class CleanupFeedAction extends ThreadedAction
 
         if (articlesToDelete != null)
         {
+            // Group the articles by feeds to remove them in batches
+            Map<DataFeed, List<IArticle>> feedsToArticles = new IdentityHashMap<DataFeed, List<IArticle>>();
             for (IArticle article : articlesToDelete)
             {
                 long aid = article.getID();
@@ -102,11 +104,23 @@ public final class CleanupFeedAction extends ThreadedAction
 
                 if (aid != -1 && fid != -1)
                 {
-//                    System.out.println("Remove " + article + " from " + feed);
-                    ((DataFeed)feed).removeArticle(article);
+                    List<IArticle> articles = feedsToArticles.get(feed);
+                    if (articles == null)
+                    {
+                        articles = new ArrayList<IArticle>();
+                        feedsToArticles.put((DataFeed)feed, articles);
+                    }
+
+                    articles.add(article);
                 }
             }
 
+            for (Map.Entry<DataFeed, List<IArticle>> entry : feedsToArticles.entrySet())
+            {
+                List<IArticle> articles = entry.getValue();
+                entry.getKey().removeArticles(articles.toArray(new IArticle[articles.size()]));
+            }
+
             articlesToDelete = null;
         }
     }
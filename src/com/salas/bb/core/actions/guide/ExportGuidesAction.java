@@ -156,8 +156,7 @@ public final class ExportGuidesAction extends ThreadedAction
      */
     void processExport(OPMLGuide[] opmlGuides, String filename, boolean extended)
     {
-        Exporter exporter = new Exporter(extended);
-        Document doc = exporter.export(Converter.convertToOPML(opmlGuides, OPML_TITLE));
+        Document doc = export(opmlGuides, extended);
 
         try
         {
@@ -171,6 +170,20 @@ public final class ExportGuidesAction extends ThreadedAction
         }
     }
     
+    /**
+     * Converts guides into OPML document.
+     *
+     * @param opmlGuides    guide(s) to export
+     * @param extended      TRUE to perform export in the extended mode.
+     *
+     * @return document.
+     */
+    public static Document export(OPMLGuide[] opmlGuides, boolean extended)
+    {
+        Exporter exporter = new Exporter(extended);
+        return exporter.export(Converter.convertToOPML(opmlGuides, OPML_TITLE));
+    }
+
     /**
      * Shows appropriate warning / error dialog.
      *
@@ -27,11 +27,17 @@ package com.salas.bb.core.actions.guide;
 import com.salas.bb.core.GlobalController;
 import com.salas.bb.core.GlobalModel;
 import com.salas.bb.dialogs.guide.ImportGuidesDialog;
+import com.salas.bb.domain.FeedsList;
 import com.salas.bb.domain.GuidesSet;
 import com.salas.bb.domain.IFeed;
 import com.salas.bb.domain.IGuide;
 import com.salas.bb.domain.utils.GuideIcons;
+import com.salas.bb.persistence.IPersistenceManager;
+import com.salas.bb.persistence.PersistenceException;
+import com.salas.bb.persistence.PersistenceManagerConfig;
 import com.salas.bb.utils.StringUtils;
+import com.salas.bb.utils.concurrency.Lane;
+import com.salas.bb.utils.concurrency.Scheduler;
 import com.salas.bb.utils.i18n.Strings;
 import com.salas.bb.utils.opml.BloglinesImporter;
 import com.salas.bb.utils.opml.Helper;
@@ -51,13 +57,24 @@ import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Import guide from OPML resource to the list.
  *
  * SHOULD ALWAYS BE EXCUTED FROM EDT!
+ *
+ * <p>The OPML is fetched and parsed, and the guides with all their feeds are built in a
+ * separate thread without touching the live model. Then they are published in one batch:
+ * in EDT the guides get unique titles and their feeds are shared with existing ones through
+ * the hash lookups of the guides set, then the guides are written to the database in one
+ * transaction in the import thread, and finally in EDT the guides list is updated once.
+ * New feeds are let in the polling gradually.</p>
  */
 public final class ImportGuidesAction extends AbstractAction
 {
@@ -68,6 +85,8 @@ public final class ImportGuidesAction extends AbstractAction
     /** @noinspection HardCodedStringLiteral*/
     private static final String BLOGLINES_SERVICE_URL = "http://rpc.bloglines.com/listsubs";
 
+    private static final String LANE_IMPORT = "Import Guides";
+
     private static ImportGuidesAction instance;
 
     /**
@@ -149,16 +168,24 @@ public final class ImportGuidesAction extends AbstractAction
             importer = createBloglinesImporter(email, password);
         }
 
-        // Span thread to read data separately
-        Thread thread = new Thread()
+        // Read data separately
+        importLane().execute(new Runnable()
         {
             public void run()
             {
                 doImport(importer, url, isSingle, isAppending, GlobalModel.SINGLETON, true);
             }
-        };
+        });
+    }
 
-        thread.start();
+    /**
+     * Returns the lane reading and storing the imported guides.
+     *
+     * @return lane.
+     */
+    static Lane importLane()
+    {
+        return Scheduler.lane(LANE_IMPORT, 1, Thread.NORM_PRIORITY);
     }
 
     /**
@@ -196,7 +223,9 @@ public final class ImportGuidesAction extends AbstractAction
         if (guideSet != null)
         {
             final OPMLGuide[] aGuides = guideSet.getGuides();
-            final URL aBaseUrl = baseUrl;
+
+            // Build guides and feeds out of the live model while still in this thread
+            final IGuide[] staged = stageGuides(baseUrl, aGuides);
 
             // Do actual addition of data in EDT
             SwingUtilities.invokeLater(new Runnable()
@@ -205,7 +234,8 @@ public final class ImportGuidesAction extends AbstractAction
                 {
                     if (aGuides.length > 0)
                     {
-                        processImportedGuides(aModel, aBaseUrl, aGuides, aSingle || aAppending, isConfirmationRequired);
+                        processImportedGuides(aModel, aGuides, staged, aSingle || aAppending,
+                            isConfirmationRequired);
                     } else
                     {
                         JOptionPane.showMessageDialog(GlobalController.SINGLETON.getMainFrame(),
@@ -271,12 +301,12 @@ public final class ImportGuidesAction extends AbstractAction
      * appends or replaces the guides.
      *
      * @param model       data model.
-     * @param baseURL     base URL of OPML resource.
      * @param guides      guides.
+     * @param staged      guides built from OPML guides, but not yet added.
      * @param isAppending TRUE if user decided to append new guides.
      * @param isConfirmationRequired TRUE to ask for confirmation before importing feeds.
      */
-    private static void processImportedGuides(GlobalModel model, URL baseURL, OPMLGuide[] guides,
+    private static void processImportedGuides(GlobalModel model, OPMLGuide[] guides, IGuide[] staged,
                                               boolean isAppending, boolean isConfirmationRequired)
     {
         int result = JOptionPane.YES_OPTION;
@@ -304,14 +334,7 @@ public final class ImportGuidesAction extends AbstractAction
 
         if (result == JOptionPane.YES_OPTION)
         {
-            final GuidesSet cgs = model.getGuidesSet();
-            if (isAppending)
-            {
-                appendGuides(baseURL, guides, cgs);
-            } else
-            {
-                replaceGuides(baseURL, guides, cgs);
-            }
+            publishGuidesLater(model, staged, model.getGuidesSet(), !isAppending);
         }
     }
 
@@ -356,15 +379,228 @@ public final class ImportGuidesAction extends AbstractAction
      */
     static void appendGuides(URL baseURL, OPMLGuide[] guides, GuidesSet set)
     {
-        // Load array list with titles already present in CGS
-        final Set<String> titles = set.getGuidesTitles();
+        IGuide[] staged = stageGuides(baseURL, guides);
+        publishGuides(GlobalModel.SINGLETON, staged, set, false);
+        GlobalController.SINGLETON.getPoller().rampUp(staged);
+    }
+
+    /**
+     * Creates guides with all their feeds and reading lists from OPML guides. The guides
+     * aren't connected to the model, so it's safe to call it from any thread.
+     *
+     * @param baseURL   base URL of OPML resource.
+     * @param guides    OPML guides.
+     *
+     * @return guides.
+     */
+    static IGuide[] stageGuides(URL baseURL, OPMLGuide[] guides)
+    {
+        IGuide[] staged = new IGuide[guides.length];
+        for (int i = 0; i < guides.length; i++) staged[i] = Helper.createGuide(baseURL, guides[i], null);
+
+        return staged;
+    }
+
+    /**
+     * Adds staged guides to the set in one batch in the calling thread. All database writes
+     * go in one transaction and the guides list is notified once, when the last guide is
+     * added. The feeds of the guides should be then let in the polling with
+     * <code>Poller.rampUp()</code>.
+     *
+     * @param model     data model.
+     * @param guides    staged guides.
+     * @param set       guides set to add guides to.
+     * @param replacing <code>TRUE</code> to remove all current guides first.
+     */
+    static void publishGuides(GlobalModel model, IGuide[] guides, GuidesSet set, boolean replacing)
+    {
+        int position = prepareGuides(guides, set, replacing);
+        if (isPersistent(model)) storeGuides(guides, position);
+        swapGuides(model, guides, set, replacing);
+    }
+
+    /**
+     * Adds staged guides to the set in one batch. Must be called from EDT. The guides are
+     * prepared right away, written to the database in the import thread and then added to
+     * the set in EDT. Their feeds are let in the polling after that.
+     *
+     * @param model     data model.
+     * @param guides    staged guides.
+     * @param set       guides set to add guides to.
+     * @param replacing <code>TRUE</code> to remove all current guides first.
+     */
+    private static void publishGuidesLater(final GlobalModel model, final IGuide[] guides,
+                                           final GuidesSet set, final boolean replacing)
+    {
+        final int position = prepareGuides(guides, set, replacing);
+
+        importLane().execute(new Runnable()
+        {
+            public void run()
+            {
+                if (isPersistent(model)) storeGuides(guides, position);
+
+                SwingUtilities.invokeLater(new Runnable()
+                {
+                    public void run()
+                    {
+                        swapGuides(model, guides, set, replacing);
+                        GlobalController.SINGLETON.getPoller().rampUp(guides);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Gives staged guides unique titles and unused icons and shares their feeds with the
+     * feeds of the set and with each other. The guides aren't added to the set.
+     *
+     * @param guides    staged guides.
+     * @param set       guides set the guides will be added to.
+     * @param replacing <code>TRUE</code> if the current guides will be removed first.
+     *
+     * @return position of the first guide in the set after adding.
+     */
+    private static int prepareGuides(IGuide[] guides, GuidesSet set, boolean replacing)
+    {
+        Set<String> titles = replacing ? new HashSet<String>() : set.getGuidesTitles();
+        Set<String> icons = replacing ? new HashSet<String>() : set.getGuidesIconKeys();
+
+        // New feeds of the guides prepared so far
+        FeedsList newFeeds = new FeedsList();
+        try
+        {
+            for (IGuide guide : guides)
+            {
+                String title = getUniqueTitle(guide.getTitle(), titles);
+                guide.setTitle(title);
+                titles.add(title);
+
+                String icon = guide.getIconKey();
+                if (StringUtils.isEmpty(icon))
+                {
+                    icon = getUnusedIcon(icons);
+                    guide.setIconKey(icon);
+                }
+                if (icon != null) icons.add(icon);
+
+                for (IFeed feed : guide.getFeeds())
+                {
+                    IFeed existing = replacing ? null : set.findFeed(feed);
+                    if (existing == null) existing = newFeeds.findFeed(feed);
+
+                    if (existing == null)
+                    {
+                        newFeeds.add(feed);
+                    } else if (existing != feed)
+                    {
+                        GuidesSet.replaceFeed(feed, existing);
+                    }
+                }
+            }
+        } finally
+        {
+            for (IFeed feed : new ArrayList<IFeed>(newFeeds.getFeeds())) newFeeds.remove(feed);
+        }
+
+        return replacing ? 0 : set.getGuidesCount();
+    }
+
+    /**
+     * Returns <code>TRUE</code> if the guides of the model are kept in the database.
+     * The installer builds the guides in its own model, which is copied into the
+     * application model later.
+     *
+     * @param model data model.
+     *
+     * @return <code>TRUE</code> if the guides of the model are kept in the database.
+     */
+    private static boolean isPersistent(GlobalModel model)
+    {
+        return model == GlobalModel.SINGLETON;
+    }
+
+    /**
+     * Writes prepared guides to the database in one transaction. The guides which fail
+     * to be written are written again when they are added to the set.
+     *
+     * @param guides    prepared guides.
+     * @param position  position of the first guide in the set.
+     */
+    private static void storeGuides(IGuide[] guides, int position)
+    {
+        IPersistenceManager manager = PersistenceManagerConfig.getManager();
+        if (manager == null) return;
+
+        boolean databaseBatch = beginDatabaseBatch();
+        try
+        {
+            for (int i = 0; i < guides.length; i++)
+            {
+                try
+                {
+                    manager.insertGuide(guides[i], position + i);
+                } catch (PersistenceException e)
+                {
+                    LOG.log(Level.WARNING, Strings.error("db.persistent.operation.has.failed"), e);
+                }
+            }
+        } finally
+        {
+            if (databaseBatch) manager.endBatch();
+        }
+    }
+
+    /**
+     * Adds prepared guides to the set notifying the guides list once.
+     *
+     * @param model     data model.
+     * @param guides    prepared guides.
+     * @param set       guides set to add guides to.
+     * @param replacing <code>TRUE</code> to remove all current guides first.
+     */
+    private static void swapGuides(GlobalModel model, IGuide[] guides, GuidesSet set,
+                                   boolean replacing)
+    {
+        model.batchUpdateStarted();
+        try
+        {
+            if (replacing) set.clear();
+
+            for (int i = 0; i < guides.length; i++)
+            {
+                set.add(-1, guides[i], i == guides.length - 1);
+            }
+        } finally
+        {
+            model.batchUpdateFinished();
+        }
+    }
+
+    /**
+     * Starts the database batch, so that all writes go in one transaction.
+     *
+     * @return <code>TRUE</code> if the batch has been started.
+     */
+    private static boolean beginDatabaseBatch()
+    {
+        boolean started = false;
 
-        for (final OPMLGuide guide : guides)
+        IPersistenceManager manager = PersistenceManagerConfig.getManager();
+        if (manager != null)
         {
-            String title = getUniqueTitle(guide.getTitle(), titles);
-            appendGuide(baseURL, guide, title, set);
-            titles.add(title);
+            try
+            {
+                manager.beginBatch();
+                started = true;
+            } catch (PersistenceException e)
+            {
+                LOG.log(Level.WARNING, Strings.error("db.persistent.operation.has.failed"), e);
+            }
         }
+
+        return started;
     }
 
     /**
@@ -381,6 +617,25 @@ public final class ImportGuidesAction extends AbstractAction
                            GuidesSet guidesSet)
     {
         IGuide guide = Helper.createGuide(baseURL, opmlGuide, null);
+        addGuide(guide, uniqueTitle, guidesSet, true);
+
+        GlobalController.SINGLETON.getPoller().rampUp(new IGuide[] { guide });
+
+        return guide.getFeedsCount();
+    }
+
+    /**
+     * Gives the guide unique title and unused icon, shares its feeds with existing and
+     * adds it to the set.
+     *
+     * @param guide         guide to add.
+     * @param uniqueTitle   unique title created on basis of original title.
+     * @param guidesSet     guide set to append guides to.
+     * @param lastInBatch   <code>TRUE</code> if it's the last guide in the batch.
+     */
+    private static void addGuide(IGuide guide, String uniqueTitle, GuidesSet guidesSet,
+                                 boolean lastInBatch)
+    {
         guide.setTitle(uniqueTitle);
         String icon = guide.getIconKey();
         if (StringUtils.isEmpty(icon))
@@ -393,11 +648,7 @@ public final class ImportGuidesAction extends AbstractAction
         replaceFeedsWithShares(guidesSet, guide);
 
         // Finally add the guide
-        guidesSet.add(guide);
-
-        GlobalController.SINGLETON.getPoller().update(guide);
-
-        return guide.getFeedsCount();
+        guidesSet.add(-1, guide, lastInBatch);
     }
 
     /**
@@ -428,10 +679,22 @@ public final class ImportGuidesAction extends AbstractAction
      * @return icon key.
      */
     static String getUnusedIcon(GuidesSet set)
+    {
+        return getUnusedIcon(set.getGuidesIconKeys());
+    }
+
+    /**
+     * Returns first unused icon.
+     *
+     * @param usedIcons keys of used icons.
+     *
+     * @return icon key.
+     */
+    private static String getUnusedIcon(Collection<String> usedIcons)
     {
         String icon = null;
 
-        int unusedIconIndex = GuideIcons.findUnusedIconName(set.getGuidesIconKeys());
+        int unusedIconIndex = GuideIcons.findUnusedIconName(usedIcons);
         if (unusedIconIndex != -1) icon = GuideIcons.getIconsNames()[unusedIconIndex];
 
         return icon;
@@ -472,9 +735,9 @@ public final class ImportGuidesAction extends AbstractAction
      */
     public static void replaceGuides(URL baseURL, OPMLGuide[] guides, GuidesSet set)
     {
-        set.clear();
-
-        appendGuides(baseURL, guides, set);
+        IGuide[] staged = stageGuides(baseURL, guides);
+        publishGuides(GlobalModel.SINGLETON, staged, set, true);
+        GlobalController.SINGLETON.getPoller().rampUp(staged);
     }
 
     /**
@@ -27,21 +27,18 @@ package com.salas.bb.core.autosave;
 import com.salas.bb.domain.IArticle;
 import com.salas.bb.domain.IFeed;
 import com.salas.bb.utils.StringUtils;
+import com.salas.bb.utils.concurrency.Lane;
+import com.salas.bb.utils.concurrency.Scheduler;
 
 import java.io.File;
 import java.text.MessageFormat;
 import java.util.Date;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
 
 /**
  * Abstract implementation of the saver.
  */
 abstract class AbstractAutoSaver
 {
-    private ExecutorService executor;
-
     /**
      * Prepares the file using the given information.
      *
@@ -134,27 +131,9 @@ abstract class AbstractAutoSaver
      *
      * @return executor.
      */
-    protected synchronized ExecutorService getExecutor()
+    protected Lane getExecutor()
     {
-        if (executor == null)
-        {
-            executor = Executors.newFixedThreadPool(getExecutorThreadsNumber(), new ThreadFactory()
-            {
-                /**
-                 * Constructs a new <tt>Thread</tt>.  Implementations may also initialize priority, name, daemon status,
-                 * <tt>ThreadGroup</tt>, etc.
-                 *
-                 * @param r a runnable to be executed by new thread instance
-                 *
-                 * @return constructed thread
-                 */
-                public Thread newThread(Runnable r)
-                {
-                    return new Thread(r, getExecutorThreadName());
-                }
-            });
-        }
-        return executor;
+        return Scheduler.lane(getExecutorThreadName(), getExecutorThreadsNumber(), Thread.NORM_PRIORITY);
     }
 
     /**
@@ -28,15 +28,51 @@ import com.salas.bb.core.GlobalController;
 import com.salas.bb.domain.IArticle;
 import com.salas.bb.domain.IFeed;
 import com.salas.bb.domain.SearchFeed;
+import com.salas.bb.domain.prefs.UserPreferences;
 import com.salas.bb.domain.utils.DomainAdapter;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+
 /**
  * Auto-saver monitors new articles and invokes saving routines.
  */
-public class AutoSaver extends DomainAdapter
+public class AutoSaver extends DomainAdapter implements PropertyChangeListener
 {
     private ArticleAutoSaver articleAutoSaver;
     private EnclosureAutoSaver enclosureAutoSaver;
+    private UserPreferences prefs;
+
+    /**
+     * Sets user preferences object to take the enclosure downloads bandwidth from.
+     *
+     * @param aPrefs preferences.
+     */
+    public void setUserPreferences(UserPreferences aPrefs)
+    {
+        if (prefs != null) prefs.removePropertyChangeListener(this);
+
+        prefs = aPrefs;
+
+        if (prefs != null)
+        {
+            prefs.addPropertyChangeListener(this);
+            getEnclosureAutoSaver().setBandwidth(prefs.getEnclosuresBandwidth());
+        }
+    }
+
+    /**
+     * Invoked when preferences change.
+     *
+     * @param evt event.
+     */
+    public void propertyChange(PropertyChangeEvent evt)
+    {
+        if (UserPreferences.PROP_ENCLOSURES_BANDWIDTH.equals(evt.getPropertyName()))
+        {
+            getEnclosureAutoSaver().setBandwidth(prefs.getEnclosuresBandwidth());
+        }
+    }
 
     @Override
     public void articleAdded(IFeed feed, IArticle article)
@@ -61,6 +97,14 @@ public class AutoSaver extends DomainAdapter
         }
     }
 
+    /**
+     * Resumes enclosure downloads which weren't finished during the previous session.
+     */
+    public void resumeDownloads()
+    {
+        getEnclosureAutoSaver().resumeDownloads();
+    }
+
     @Override
     public void articleAddedToSearchFeed(SearchFeed feed, IArticle article)
     {
@@ -0,0 +1,313 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2007 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+
+package com.salas.bb.core.autosave;
+
+import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent journal of unfinished downloads. For each download it keeps the source,
+ * the target file, the total length and the progress of every segment, so that the
+ * downloads are resumed from where they stopped after the application restart.
+ * <p/>
+ * The journal is a text file with a line per download followed by the lines of its
+ * segments:
+ * <pre>
+ * D &lt;tab&gt; length &lt;tab&gt; attempts &lt;tab&gt; source URL &lt;tab&gt; target path
+ * S &lt;tab&gt; start &lt;tab&gt; position &lt;tab&gt; end
+ * </pre>
+ * It's rewritten completely on every save through the temporary file.
+ */
+class DownloadJournal
+{
+    private static final Logger LOG = Logger.getLogger(DownloadJournal.class.getName());
+
+    /** Minimum period between progress checkpoints (ms). */
+    private static final long CHECKPOINT_PERIOD = 2000;
+
+    private final File file;
+    private final List<Download> downloads;
+    private long lastSave;
+
+    /**
+     * Creates the journal.
+     *
+     * @param aFile journal file.
+     */
+    DownloadJournal(File aFile)
+    {
+        file = aFile;
+        downloads = new ArrayList<Download>();
+    }
+
+    /**
+     * Returns <code>TRUE</code> if there are unfinished downloads recorded.
+     *
+     * @return <code>TRUE</code> if the journal file exists.
+     */
+    boolean exists()
+    {
+        return file.exists();
+    }
+
+    /**
+     * Reads the downloads from the journal file. Damaged records are skipped.
+     *
+     * @return downloads.
+     */
+    synchronized List<Download> load()
+    {
+        downloads.clear();
+        if (!file.exists()) return new ArrayList<Download>();
+
+        try
+        {
+            BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try
+            {
+                Download download = null;
+                String line;
+                while ((line = in.readLine()) != null)
+                {
+                    String[] fields = line.split("\t");
+                    try
+                    {
+                        if (fields.length == 5 && "D".equals(fields[0]))
+                        {
+                            download = new Download(new URL(fields[3]), new File(fields[4]));
+                            download.length = Long.parseLong(fields[1]);
+                            download.attempts = Integer.parseInt(fields[2]);
+                            downloads.add(download);
+                        } else if (fields.length == 4 && "S".equals(fields[0]) && download != null)
+                        {
+                            download.segments.add(new Segment(Long.parseLong(fields[1]),
+                                Long.parseLong(fields[2]), Long.parseLong(fields[3])));
+                        }
+                    } catch (NumberFormatException e)
+                    {
+                        LOG.warning("Damaged journal record: " + line);
+                    } catch (MalformedURLException e)
+                    {
+                        LOG.warning("Damaged journal record: " + line);
+                    }
+                }
+            } finally
+            {
+                in.close();
+            }
+        } catch (IOException e)
+        {
+            LOG.log(Level.WARNING, "Failed to read downloads journal", e);
+        }
+
+        // Downloads without segments can't be resumed
+        List<Download> loaded = new ArrayList<Download>();
+        for (Download download : downloads)
+        {
+            if (!download.segments.isEmpty()) loaded.add(download);
+        }
+        downloads.retainAll(loaded);
+
+        return loaded;
+    }
+
+    /**
+     * Registers new download and saves the journal.
+     *
+     * @param download download.
+     */
+    synchronized void add(Download download)
+    {
+        downloads.add(download);
+        save();
+    }
+
+    /**
+     * Removes the download and saves the journal.
+     *
+     * @param download download.
+     */
+    synchronized void remove(Download download)
+    {
+        if (downloads.remove(download)) save();
+    }
+
+    /**
+     * Saves the journal if enough time passed since the last save.
+     */
+    synchronized void checkpoint()
+    {
+        if (System.currentTimeMillis() - lastSave >= CHECKPOINT_PERIOD) save();
+    }
+
+    /**
+     * Saves the journal. When there are no downloads, the file is removed.
+     */
+    synchronized void save()
+    {
+        lastSave = System.currentTimeMillis();
+
+        if (downloads.isEmpty())
+        {
+            file.delete();
+            return;
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try
+        {
+            Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8"));
+            try
+            {
+                for (Download download : downloads)
+                {
+                    synchronized (download)
+                    {
+                        out.write("D\t" + download.length + "\t" + download.attempts + "\t" +
+                            download.source + "\t" + download.target.getPath() + "\n");
+                        for (Segment segment : download.segments)
+                        {
+                            out.write("S\t" + segment.start + "\t" + segment.position + "\t" + segment.end + "\n");
+                        }
+                    }
+                }
+            } finally
+            {
+                out.close();
+            }
+
+            if (!temp.renameTo(file))
+            {
+                file.delete();
+                if (!temp.renameTo(file)) LOG.warning("Failed to replace downloads journal");
+            }
+        } catch (IOException e)
+        {
+            LOG.log(Level.WARNING, "Failed to save downloads journal", e);
+            temp.delete();
+        }
+    }
+
+    /**
+     * Single download.
+     */
+    static class Download
+    {
+        /** Source URL. */
+        final URL source;
+        /** Target file. */
+        final File target;
+        /** Segments. Modified only under the lock of this object. */
+        final List<Segment> segments;
+        /** Total length or <code>-1</code> if not known yet. */
+        volatile long length;
+        /** Number of failed attempts. */
+        volatile int attempts;
+        /** Set when the download is canceled. */
+        volatile boolean canceled;
+        /** Number of running segment tasks. Guarded by the lock of this object. */
+        int running;
+        /** Set when a segment fails. Guarded by the lock of this object. */
+        boolean failed;
+
+        /**
+         * Creates a download.
+         *
+         * @param aSource   source URL.
+         * @param aTarget   target file.
+         */
+        Download(URL aSource, File aTarget)
+        {
+            source = aSource;
+            target = aTarget;
+            segments = new ArrayList<Segment>();
+            length = -1;
+        }
+
+        /**
+         * Returns the file the data is written to until the download completes.
+         *
+         * @return part file.
+         */
+        File getPartFile()
+        {
+            return new File(target.getPath() + ".part");
+        }
+
+        /**
+         * Returns <code>TRUE</code> if all segments are complete.
+         *
+         * @return <code>TRUE</code> if complete.
+         */
+        synchronized boolean isComplete()
+        {
+            for (Segment segment : segments) if (!segment.isComplete()) return false;
+            return !segments.isEmpty();
+        }
+    }
+
+    /**
+     * The range of bytes downloaded over a single connection.
+     */
+    static class Segment
+    {
+        /** First byte. */
+        final long start;
+        /** Next byte to download. Modified only by the downloading thread. */
+        volatile long position;
+        /** Byte after the last or <code>-1</code> when downloaded to the end of the stream. */
+        volatile long end;
+
+        /**
+         * Creates a segment.
+         *
+         * @param aStart    first byte.
+         * @param aPosition next byte to download.
+         * @param aEnd      byte after the last or <code>-1</code> if unknown.
+         */
+        Segment(long aStart, long aPosition, long aEnd)
+        {
+            start = aStart;
+            position = aPosition;
+            end = aEnd;
+        }
+
+        /**
+         * Returns <code>TRUE</code> if all bytes of the segment are downloaded.
+         *
+         * @return <code>TRUE</code> if complete.
+         */
+        boolean isComplete()
+        {
+            return end != -1 && position >= end;
+        }
+    }
+}
@@ -24,19 +24,15 @@
 
 package com.salas.bb.core.autosave;
 
-import com.jgoodies.uif.application.Application;
+import com.salas.bb.core.ApplicationLauncher;
 import com.salas.bb.domain.IArticle;
 import com.salas.bb.domain.IFeed;
+import com.salas.bb.domain.StandardArticle;
 import com.salas.bb.utils.StringUtils;
-import com.salas.bb.utils.i18n.Strings;
-import com.salas.bb.utils.net.Downloader;
 
-import javax.swing.*;
 import java.io.File;
-import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -47,9 +43,14 @@ import java.util.regex.Pattern;
  */
 class EnclosureAutoSaver extends AbstractAutoSaver
 {
-    private static final int EXECUTOR_THREADS_NUMBER = 5;
+    /** Name of the downloads journal file in the working folder. */
+    private static final String JOURNAL = "enclosures.journal";
     private static Pattern patEnclosures;
 
+    private EnclosureDownloader downloader;
+    /** Total bandwidth of the downloads (KB/s, 0 for unlimited). */
+    private int bandwidth;
+
     /**
      * Invoked when a new article is added.
      *
@@ -67,6 +68,56 @@ class EnclosureAutoSaver extends AbstractAutoSaver
         downloadEnclosures(article, feed);
     }
 
+    /**
+     * Resumes the downloads which weren't finished during the previous session.
+     */
+    void resumeDownloads()
+    {
+        getDownloader().resume();
+    }
+
+    /**
+     * Returns the downloader creating it if necessary.
+     *
+     * @return downloader.
+     */
+    private synchronized EnclosureDownloader getDownloader()
+    {
+        if (downloader == null)
+        {
+            downloader = new EnclosureDownloader(new File(ApplicationLauncher.getContextPath() + JOURNAL),
+                bandwidth * 1024L);
+        }
+
+        return downloader;
+    }
+
+    /**
+     * Sets the total bandwidth of the downloads.
+     *
+     * @param kbps bandwidth in KB/s or <code>0</code> for unlimited.
+     */
+    synchronized void setBandwidth(int kbps)
+    {
+        bandwidth = kbps;
+        if (downloader != null) downloader.getBudget().setBandwidth(kbps * 1024L);
+    }
+
+    /**
+     * Returns the enclosures of the article. The enclosures recorded from the feed
+     * item are preferred, and the HTML text is scanned only if they are unknown.
+     *
+     * @param article article.
+     *
+     * @return enclosure URL's.
+     */
+    static String[] getEnclosures(IArticle article)
+    {
+        String[] encs = null;
+        if (article instanceof StandardArticle) encs = ((StandardArticle)article).getEnclosures();
+        return encs != null ? encs : getEnclosures(article.getHtmlText());
+    }
+
     /**
      * Gets the enclosures in the article.
      *
@@ -121,7 +172,7 @@ class EnclosureAutoSaver extends AbstractAutoSaver
     private void downloadEnclosures(IArticle article, IFeed feed)
     {
         URL context = article.getLink();
-        String[] enclosures = getEnclosures(article.getHtmlText());
+        String[] enclosures = getEnclosures(article);
 
         for (String enclosure : enclosures)
         {
@@ -134,7 +185,7 @@ class EnclosureAutoSaver extends AbstractAutoSaver
                     feed.getAutoSaveEnclosuresNameFormat(),
                     feed, parts.name, parts.extension);
 
-                getExecutor().execute(new DownloadTask(link, target));
+                getDownloader().download(link, target);
             } catch (MalformedURLException e)
             {
                 e.printStackTrace();
@@ -191,60 +242,6 @@ class EnclosureAutoSaver extends AbstractAutoSaver
         }
     }
 
-    /**
-     * Downloads task scheduled.
-     */
-    private class DownloadTask implements Runnable
-    {
-        private final URL source;
-        private final File target;
-
-        /**
-         * Creates a download task.
-         *
-         * @param source    source URL.
-         * @param target    target file.
-         */
-        public DownloadTask(URL source, File target)
-        {
-            this.source = source;
-            this.target = target;
-        }
-
-        /**
-         * Invoked when downloading starts.
-         */
-        public void run()
-        {
-            Downloader d = new Downloader(null);
-
-            ensureAllDirsPresent(target);
-            
-            File dir = target.getParentFile();
-            final String filename = target.getName();
-
-            try
-            {
-                d.download(source, dir, filename);
-            } catch (InterruptedException e)
-            {
-                // fall through
-            } catch (IOException e)
-            {
-                SwingUtilities.invokeLater(new Runnable()
-                {
-                    public void run()
-                    {
-                        JOptionPane.showMessageDialog(Application.getDefaultParentFrame(),
-                                MessageFormat.format(Strings.message("net.download.failed"), filename),
-                                "Automatic Enclosure Saving",
-                                JOptionPane.ERROR_MESSAGE);
-                    }
-                });
-            }
-        }
-    }
-
     /**
      * Returns the name of the executor thread.
      *
@@ -254,10 +251,4 @@ class EnclosureAutoSaver extends AbstractAutoSaver
     {
         return "Enclosure Auto Saver";
     }
-
-    @Override
-    protected int getExecutorThreadsNumber()
-    {
-        return EXECUTOR_THREADS_NUMBER;
-    }
 }
@@ -0,0 +1,576 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2007 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+
+package com.salas.bb.core.autosave;
+
+import EDU.oswego.cs.dl.util.concurrent.Executor;
+import com.jgoodies.uif.application.Application;
+import com.salas.bb.networking.manager.NetManager;
+import com.salas.bb.utils.concurrency.Scheduler;
+import com.salas.bb.utils.i18n.Strings;
+import com.salas.bb.utils.net.BandwidthBudget;
+import com.salas.bb.utils.net.ClientErrorException;
+import com.salas.bb.utils.net.URLInputStream;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Downloads enclosures in several segments in parallel. The first connection learns the
+ * length of the file and whether the server can start from the middle of it. If it can,
+ * the rest of the file is split into segments downloaded over their own connections
+ * started with <code>Range</code> requests by <code>ResumingSupport</code>. Broken
+ * connections are resumed from the last received byte by <code>URLInputStream</code>.
+ * <p/>
+ * The progress of each segment is recorded in the journal, so that the downloads which
+ * weren't finished before exit or failed are resumed on the next start. All streams
+ * share the single bandwidth budget.
+ */
+class EnclosureDownloader
+{
+    private static final Logger LOG = Logger.getLogger(EnclosureDownloader.class.getName());
+
+    /** Number of downloading threads. */
+    private static final int THREADS = 6;
+    /** Maximum number of segments per download. */
+    static final int MAX_SEGMENTS = 4;
+    /** Minimum size of segment. */
+    static final long MIN_SEGMENT_SIZE = 512 * 1024;
+    /** Number of attempts before the download is given up. */
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final Executor executor;
+    private final DownloadJournal journal;
+    private final BandwidthBudget budget;
+
+    /** Target file to the download writing to it. */
+    private final Map<File, DownloadJournal.Download> active;
+
+    /**
+     * Creates the downloader.
+     *
+     * @param journalFile   file to keep the journal in.
+     * @param bandwidth     total bandwidth of all downloads (bytes/sec) or <code>0</code> for unlimited.
+     */
+    EnclosureDownloader(File journalFile, long bandwidth)
+    {
+        journal = new DownloadJournal(journalFile);
+        budget = new BandwidthBudget(bandwidth);
+        active = new HashMap<File, DownloadJournal.Download>();
+
+        executor = Scheduler.lane("Enclosure Downloader", THREADS, Thread.NORM_PRIORITY);
+    }
+
+    /**
+     * Resumes all unfinished downloads recorded in the journal.
+     */
+    void resume()
+    {
+        if (!journal.exists()) return;
+
+        for (DownloadJournal.Download download : journal.load())
+        {
+            synchronized (active)
+            {
+                if (active.containsKey(download.target)) continue;
+                active.put(download.target, download);
+            }
+
+            // If the data is lost, start over
+            File part = download.getPartFile();
+            synchronized (download)
+            {
+                for (DownloadJournal.Segment segment : download.segments)
+                {
+                    if (!part.exists()) segment.position = segment.start;
+                }
+            }
+
+            scheduleIncomplete(download);
+        }
+    }
+
+    /**
+     * Starts the download unless the target file already exists or is being downloaded.
+     *
+     * @param source    source URL.
+     * @param target    target file.
+     */
+    void download(URL source, File target)
+    {
+        if (target.exists()) return;
+
+        DownloadJournal.Download download = new DownloadJournal.Download(source, target);
+        DownloadJournal.Segment segment = new DownloadJournal.Segment(0, 0, -1);
+        download.segments.add(segment);
+
+        synchronized (active)
+        {
+            if (active.containsKey(target)) return;
+            active.put(target, download);
+        }
+
+        journal.add(download);
+        schedule(download, segment);
+    }
+
+    /**
+     * Returns the shared bandwidth budget.
+     *
+     * @return budget.
+     */
+    BandwidthBudget getBudget()
+    {
+        return budget;
+    }
+
+    /**
+     * Returns <code>TRUE</code> if there are downloads in progress.
+     *
+     * @return <code>TRUE</code> if busy.
+     */
+    boolean isBusy()
+    {
+        synchronized (active)
+        {
+            return !active.isEmpty();
+        }
+    }
+
+    /**
+     * Schedules all incomplete segments of the download.
+     *
+     * @param download download.
+     */
+    private void scheduleIncomplete(DownloadJournal.Download download)
+    {
+        List<DownloadJournal.Segment> incomplete = new ArrayList<DownloadJournal.Segment>();
+        synchronized (download)
+        {
+            for (DownloadJournal.Segment segment : download.segments)
+            {
+                if (!segment.isComplete()) incomplete.add(segment);
+            }
+        }
+
+        if (incomplete.isEmpty())
+        {
+            finish(download);
+        } else
+        {
+            for (DownloadJournal.Segment segment : incomplete) schedule(download, segment);
+        }
+    }
+
+    /**
+     * Schedules the download of a segment.
+     *
+     * @param download  download.
+     * @param segment   segment.
+     */
+    private void schedule(DownloadJournal.Download download, DownloadJournal.Segment segment)
+    {
+        synchronized (download)
+        {
+            download.running++;
+        }
+
+        try
+        {
+            executor.execute(new SegmentTask(download, segment));
+        } catch (InterruptedException e)
+        {
+            // The segment stays in the journal and is resumed on the next start
+            Thread.currentThread().interrupt();
+            segmentEnded(download);
+        }
+    }
+
+    /**
+     * Splits the rest of the download after the first segment into several segments
+     * when the length is known, the source allows starting from the middle and the
+     * first segment hasn't started yet.
+     *
+     * @param download  download.
+     * @param first     the first segment.
+     * @param seekable  <code>TRUE</code> if the source supports starting from the middle.
+     *
+     * @return new segments.
+     */
+    static List<DownloadJournal.Segment> split(DownloadJournal.Download download, DownloadJournal.Segment first,
+                                               boolean seekable)
+    {
+        List<DownloadJournal.Segment> segments = new ArrayList<DownloadJournal.Segment>();
+        long length = download.length;
+
+        synchronized (download)
+        {
+            if (length <= 0) return segments;
+
+            int count = (int)Math.min(MAX_SEGMENTS, length / MIN_SEGMENT_SIZE);
+            if (!seekable || count < 2 || first.position > first.start)
+            {
+                first.end = length;
+            } else
+            {
+                long size = length / count;
+                first.end = size;
+                for (int i = 1; i < count; i++)
+                {
+                    long start = i * size;
+                    long end = i == count - 1 ? length : start + size;
+                    segments.add(new DownloadJournal.Segment(start, start, end));
+                }
+
+                download.segments.addAll(segments);
+            }
+        }
+
+        return segments;
+    }
+
+    /**
+     * Invoked when a segment task ends. Completes the download when all segments are
+     * complete.
+     *
+     * @param download download.
+     */
+    private void segmentEnded(DownloadJournal.Download download)
+    {
+        boolean last;
+        synchronized (download)
+        {
+            last = --download.running == 0;
+        }
+
+        if (!last) return;
+
+        if (download.canceled)
+        {
+            journal.remove(download);
+            download.getPartFile().delete();
+            release(download);
+        } else if (download.isComplete())
+        {
+            finish(download);
+        } else
+        {
+            // Some segment has failed, we'll continue on the next start
+            journal.save();
+            release(download);
+        }
+    }
+
+    /**
+     * Moves the downloaded data to the target file and forgets the download.
+     *
+     * @param download download.
+     */
+    private void finish(DownloadJournal.Download download)
+    {
+        File part = download.getPartFile();
+        if (!download.target.exists() && !part.renameTo(download.target))
+        {
+            LOG.warning("Failed to rename " + part + " to " + download.target);
+        }
+        part.delete();
+
+        journal.remove(download);
+        release(download);
+    }
+
+    /**
+     * Removes the download from the list of active.
+     *
+     * @param download download.
+     */
+    private void release(DownloadJournal.Download download)
+    {
+        synchronized (active)
+        {
+            active.remove(download.target);
+        }
+    }
+
+    /**
+     * Invoked when a segment fails. The download is given up when the error is
+     * permanent or after several failed attempts, otherwise it stays in the journal.
+     *
+     * @param download  download.
+     * @param e         error.
+     */
+    private void segmentFailed(DownloadJournal.Download download, IOException e)
+    {
+        boolean first;
+        synchronized (download)
+        {
+            first = !download.failed;
+            download.failed = true;
+        }
+
+        if (!first) return;
+
+        LOG.log(Level.FINE, "Failed to download " + download.source, e);
+
+        if (e instanceof FileNotFoundException || e instanceof ClientErrorException ||
+            ++download.attempts >= MAX_ATTEMPTS)
+        {
+            download.canceled = true;
+            reportFailure(download);
+        }
+    }
+
+    /**
+     * Tells the user about the failed download.
+     *
+     * @param download download.
+     */
+    void reportFailure(DownloadJournal.Download download)
+    {
+        final String filename = download.target.getName();
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                JOptionPane.showMessageDialog(Application.getDefaultParentFrame(),
+                        MessageFormat.format(Strings.message("net.download.failed"), filename),
+                        "Automatic Enclosure Saving",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        });
+    }
+
+    /**
+     * Downloads single segment.
+     */
+    private class SegmentTask implements Runnable
+    {
+        private final DownloadJournal.Download download;
+        private final DownloadJournal.Segment segment;
+
+        /**
+         * Creates the task.
+         *
+         * @param aDownload download.
+         * @param aSegment  segment to download.
+         */
+        SegmentTask(DownloadJournal.Download aDownload, DownloadJournal.Segment aSegment)
+        {
+            download = aDownload;
+            segment = aSegment;
+        }
+
+        /**
+         * Invoked when downloading starts.
+         */
+        public void run()
+        {
+            SegmentStream in = null;
+            RandomAccessFile out = null;
+            try
+            {
+                if (download.canceled) return;
+
+                in = new SegmentStream(download.source, segment.position);
+                in.setBandwidthBudget(budget);
+                NetManager.register(NetManager.TYPE_DOWNLOADS, download.target.getName(), null, in);
+                in.connect();
+
+                // The first connection defines the segments
+                if (download.length == -1)
+                {
+                    download.length = in.getTotalLength();
+                    if (in.isCompressed()) download.length = -1;
+
+                    List<DownloadJournal.Segment> segments = split(download, segment, in.isSeekable());
+                    journal.save();
+                    for (DownloadJournal.Segment s : segments) schedule(download, s);
+                } else if (in.isCompressed())
+                {
+                    throw new IOException("Can't resume compressed stream");
+                }
+
+                File part = download.getPartFile();
+                File dir = part.getParentFile();
+                if (dir != null && !dir.exists()) dir.mkdirs();
+
+                out = new RandomAccessFile(part, "rw");
+                out.seek(segment.position);
+
+                byte[] buf = new byte[16384];
+                while (!download.canceled && (segment.end == -1 || segment.position < segment.end))
+                {
+                    int len = segment.end == -1 ? buf.length : (int)Math.min(buf.length, segment.end - segment.position);
+                    int read = in.read(buf, 0, len);
+                    if (read == -1) break;
+
+                    out.write(buf, 0, read);
+                    segment.position += read;
+                    journal.checkpoint();
+                }
+
+                if (segment.end == -1)
+                {
+                    segment.end = segment.position;
+                } else if (!download.canceled && segment.position < segment.end)
+                {
+                    throw new IOException("Premature end of stream: " + download.source);
+                }
+            } catch (IOException e)
+            {
+                // The stream is closed when the user aborts the download
+                if (in != null && in.isClosed()) download.canceled = true; else segmentFailed(download, e);
+            } finally
+            {
+                close(in, out);
+                segmentEnded(download);
+            }
+        }
+
+        /**
+         * Closes the streams.
+         *
+         * @param in    input stream.
+         * @param out   output file.
+         */
+        private void close(SegmentStream in, RandomAccessFile out)
+        {
+            try
+            {
+                if (out != null) out.close();
+            } catch (IOException e)
+            {
+                LOG.log(Level.WARNING, "Failed to close " + download.getPartFile(), e);
+            }
+
+            try
+            {
+                if (in != null && !in.isClosed()) in.close();
+            } catch (IOException e)
+            {
+                // Not important
+            }
+        }
+    }
+
+    /**
+     * The stream which learns the total length of the resource and whether it can
+     * be started from the middle.
+     */
+    private static class SegmentStream extends URLInputStream
+    {
+        private long totalLength = -1;
+        private boolean seekable;
+        private boolean compressed;
+
+        /**
+         * Creates the stream.
+         *
+         * @param source    source URL.
+         * @param position  position to start from.
+         */
+        SegmentStream(URL source, long position)
+        {
+            super(source, position, -1);
+        }
+
+        @Override
+        protected int resolveContentLength(URLConnection aCon)
+        {
+            int length = super.resolveContentLength(aCon);
+
+            String encoding = aCon.getContentEncoding();
+            compressed = encoding != null && !"identity".equalsIgnoreCase(encoding);
+
+            String range = aCon.getHeaderField("Content-Range");
+            if (aCon instanceof HttpURLConnection)
+            {
+                seekable = range != null || "bytes".equalsIgnoreCase(aCon.getHeaderField("Accept-Ranges"));
+            } else
+            {
+                // Other sources are positioned by skipping
+                seekable = true;
+            }
+
+            totalLength = length;
+            int slash = range == null ? -1 : range.lastIndexOf('/');
+            if (slash != -1)
+            {
+                try
+                {
+                    totalLength = Long.parseLong(range.substring(slash + 1).trim());
+                } catch (NumberFormatException e)
+                {
+                    totalLength = -1;
+                }
+            }
+
+            return length;
+        }
+
+        /**
+         * Returns the total length of the resource.
+         *
+         * @return length or <code>-1</code> if unknown.
+         */
+        long getTotalLength()
+        {
+            return totalLength;
+        }
+
+        /**
+         * Returns <code>TRUE</code> if the source can be started from the middle.
+         *
+         * @return <code>TRUE</code> if seekable.
+         */
+        boolean isSeekable()
+        {
+            return seekable;
+        }
+
+        /**
+         * Returns <code>TRUE</code> if the data is compressed for the transfer.
+         *
+         * @return <code>TRUE</code> if compressed.
+         */
+        boolean isCompressed()
+        {
+            return compressed;
+        }
+    }
+}
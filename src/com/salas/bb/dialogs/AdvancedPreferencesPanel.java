@@ -87,6 +87,8 @@ public class AdvancedPreferencesPanel extends JPanel
     private int                         initHightlightsLimit;
 
     private JCheckBox                   chAAText;
+    private JCheckBox                   chPrefetchImages;
+    private JSpinner                    spinEnclosuresBandwidth;
     
     private JCheckBox                   chShowUnreadButtonMenu;
 
@@ -187,6 +189,16 @@ public class AdvancedPreferencesPanel extends JPanel
 
         chAAText = createCheckBox(userPrefs, Strings.message("userprefs.tab.advanced.antialiased.fonts"),
             UserPreferences.PROP_AA_TEXT);
+        chPrefetchImages = createCheckBox(userPrefs, Strings.message("userprefs.tab.advanced.prefetch.images"),
+            UserPreferences.PROP_PREFETCH_IMAGES);
+
+        SpinnerModelAdapter spinModelEnclosuresBandwidth =
+            new SpinnerModelAdapter(new BoundedRangeAdapter(
+                new BufferedValueModel(new PropertyAdapter(userPrefs,
+                    UserPreferences.PROP_ENCLOSURES_BANDWIDTH),
+                    triggerChannel), 0, 0, UserPreferences.MAX_ENCLOSURES_BANDWIDTH));
+        spinModelEnclosuresBandwidth.setStepSize(10);
+        spinEnclosuresBandwidth = new JSpinner(spinModelEnclosuresBandwidth);
 
         // The following code registers listener on Apply/Accept actions to track down
         // changes in BlogStarz limits. If changes are detected then channel list is
@@ -399,6 +411,9 @@ public class AdvancedPreferencesPanel extends JPanel
         builder.append(lbProxyExclusions);
         builder.append(tfProxyExclusions, 2);
         tfProxyExclusions.setToolTipText(Strings.message("userprefs.tab.advanced.no.proxy.for.notes"));
+        builder.append(chPrefetchImages, 4);
+        builder.append(Strings.message("userprefs.tab.advanced.enclosures.bandwidth"), spinEnclosuresBandwidth);
+        builder.nextLine();
 
         builder.appendSeparator(Strings.message("userprefs.tab.advanced.separator.interface"));
         builder.nextLine();
@@ -38,6 +38,8 @@ import com.salas.bb.domain.utils.GuidesUtils;
 import com.salas.bb.utils.DateUtils;
 import com.salas.bb.utils.FilterableList;
 import com.salas.bb.utils.TimeRange;
+import com.salas.bb.utils.concurrency.ScheduledTask;
+import com.salas.bb.utils.concurrency.Scheduler;
 import com.salas.bb.utils.i18n.Strings;
 import com.salas.bb.utils.uif.BBFormBuilder;
 import com.salas.bb.utils.uif.HeaderPanelExt;
@@ -58,8 +60,7 @@ import java.awt.event.ItemListener;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.*;
 import java.util.List;
 
 /**
@@ -114,6 +115,8 @@ public final class CleanupWizardDialog extends AbstractDialog
     // caching of articles to remove number
     private List<IArticle>          articlesToDelete;
     private int                     feedsToDelete;
+    // search of articles to delete in progress
+    private PreviewTask             previewTask;
     // delete options number
     private int                     deleteOptionsNumber;
 
@@ -471,6 +474,14 @@ public final class CleanupWizardDialog extends AbstractDialog
      */
     public void doAccept()
     {
+        // Don't wait for the search in progress
+        if (previewTask != null)
+        {
+            PreviewTask task = previewTask;
+            onPreviewReady(task, task.findArticlesToDelete());
+            task.cancel();
+        }
+
         int result = JOptionPane.YES_OPTION;
 
         if (feedsToDelete > 0 || (articlesToDelete != null && articlesToDelete.size() > 0))
@@ -757,7 +768,9 @@ public final class CleanupWizardDialog extends AbstractDialog
     }
 
     /**
-     * Updates selection info.
+     * Updates selection info. The feeds are counted right away, while the articles to
+     * delete are found in background. The previous search is cancelled as the selection
+     * changes.
      */
     private void updateSelectionInfo()
     {
@@ -765,71 +778,50 @@ public final class CleanupWizardDialog extends AbstractDialog
         {
             Counters counters = countFeedsToDelete();
             feedsToDelete = counters.feeds;
-            articlesToDelete = findArticlesToDelete();
+            articlesToDelete = null;
 
-            // Count articles in feeds to delete
+            if (previewTask != null) previewTask.cancel();
+            previewTask = null;
 
-            lblInfo.setText(MessageFormat.format(Strings.message("cleanup.wizard.summary"),
-                feedsToDelete, feedsAll.size(),
-                counters.articles + (articlesToDelete == null ? 0 : articlesToDelete.size())));
+            if (purgeLimit == -1 && articleAge == -1)
+            {
+                showSelectionInfo(counters.articles);
+            } else
+            {
+                lblInfo.setText(MessageFormat.format(Strings.message("cleanup.wizard.summary.counting"),
+                    feedsToDelete, feedsAll.size()));
+
+                previewTask = new PreviewTask(counters);
+                Scheduler.interfaceLane().submit(previewTask);
+            }
         }
     }
 
     /**
-     * Find articles to delete for specified article purge limit.
-     * 
-     * @return articles to delete.
+     * Shows the summary of the selection.
+     *
+     * @param articlesInFeeds number of articles in the feeds to delete.
      */
-    private List<IArticle> findArticlesToDelete()
+    private void showSelectionInfo(int articlesInFeeds)
     {
-        if (purgeLimit == -1 && articleAge == -1) return null;
-
-        List<IArticle> articlesToDelete = new LinkedList<IArticle>();
-        long now = DateUtils.getTodayTime();
-
-        // Find the selected guide
-        IGuide guide = (IGuide)cbGuides.getSelectedItem();
-        boolean inAllGuides = guide == allGuides;
-
-        LinkedList<IArticle> removeReserve = new LinkedList<IArticle>();
-
-        for (IFeed feed : feedsAll)
-        {
-            if (feed instanceof DataFeed && (inAllGuides || feed.belongsTo(guide)) && !isSelectedForRemoval(feed))
-            {
-                int count = feed.getOwnArticlesCount();
-                int minDelete = Math.max(0, count - (purgeLimit == -1 ? count : purgeLimit));
-
-                removeReserve.clear();
-
-                int deleted = 0;
-
-                IArticle[] articles = feed.getArticles();
-                for (IArticle article : articles)
-                {
-                    if ((!notPinned || !article.isPinned()) && (!notUnread || article.isRead()))
-                    {
-                        // We can remove this article if we need
-                        if (articleAge != -1 &&
-                            DateUtils.dayDiff(now, article.getPublicationDate().getTime()) > articleAge)
-                        {
-                            articlesToDelete.add(article);
-                            deleted++;
-                        } else removeReserve.add(article);
-                    }
-                }
+        lblInfo.setText(MessageFormat.format(Strings.message("cleanup.wizard.summary"),
+            feedsToDelete, feedsAll.size(),
+            articlesInFeeds + (articlesToDelete == null ? 0 : articlesToDelete.size())));
+    }
 
-                // Add more articles from the reserve
-                int toDelete = Math.min(minDelete - deleted, removeReserve.size());
-                while (toDelete > 0)
-                {
-                    articlesToDelete.add(removeReserve.removeLast());
-                    toDelete--;
-                }
-            }
-        }
+    /**
+     * Invoked when the articles to delete are found.
+     *
+     * @param task      task which has found them.
+     * @param articles  articles to delete.
+     */
+    private void onPreviewReady(PreviewTask task, List<IArticle> articles)
+    {
+        if (task != previewTask) return;
 
-        return articlesToDelete;
+        previewTask = null;
+        articlesToDelete = articles;
+        showSelectionInfo(task.articlesInFeeds);
     }
 
     /**
@@ -839,19 +831,21 @@ public final class CleanupWizardDialog extends AbstractDialog
      */
     private Counters countFeedsToDelete()
     {
-        int feedsCount = 0;
-        int articlesCount = 0;
+        Map<IFeed, IFeed> unselected = new IdentityHashMap<IFeed, IFeed>();
+        for (IFeed feed : unselectedFeeds) unselected.put(feed, feed);
 
+        Counters counters = new Counters();
         for (IFeed feed : feeds)
         {
-            if (!unselectedFeeds.contains(feed))
+            if (!unselected.containsKey(feed))
             {
-                feedsCount++;
-                if (feed instanceof DataFeed) articlesCount += feed.getArticlesCount();
+                counters.feeds++;
+                counters.selected.put(feed, feed);
+                if (feed instanceof DataFeed) counters.articles += feed.getArticlesCount();
             }
         }
 
-        return new Counters(feedsCount, articlesCount);
+        return counters;
     }
 
     /**
@@ -861,23 +855,96 @@ public final class CleanupWizardDialog extends AbstractDialog
     {
         int feeds;
         int articles;
-
-        private Counters(int feeds, int articles)
-        {
-            this.feeds = feeds;
-            this.articles = articles;
-        }
+        /** Feeds selected for removal. */
+        final Map<IFeed, IFeed> selected = new IdentityHashMap<IFeed, IFeed>();
     }
 
     /**
-     * Is feed selected for removal.
-     *
-     * @param aFeed feed.
-     * @return <code>true</code> if the feed is selected for removal.
+     * Finds the articles to delete for the selected purge limit and article age in
+     * background. Each feed gives its oldest articles allowed for removal from its date
+     * index, so the articles aren't scanned. The search stops as soon as the task is
+     * cancelled and the results are passed to the dialog in EDT.
      */
-    private boolean isSelectedForRemoval(final IFeed aFeed)
+    private final class PreviewTask extends ScheduledTask
     {
-        return feeds.contains(aFeed) && !unselectedFeeds.contains(aFeed);
+        private final IGuide                guide;
+        private final Map<IFeed, IFeed>     feedsToRemove;
+        private final int                   articlesInFeeds;
+        private final int                   limit;
+        private final long                  olderThan;
+        private final boolean               purgeUnread;
+        private final boolean               purgePinned;
+
+        /**
+         * Creates the task taking the current selection.
+         *
+         * @param counters counters of the feeds to delete.
+         */
+        PreviewTask(Counters counters)
+        {
+            IGuide selected = (IGuide)cbGuides.getSelectedItem();
+            guide = selected == allGuides ? null : selected;
+
+            feedsToRemove = counters.selected;
+            articlesInFeeds = counters.articles;
+            limit = purgeLimit;
+            purgeUnread = !notUnread;
+            purgePinned = !notPinned;
+
+            if (articleAge == -1)
+            {
+                olderThan = -1;
+            } else
+            {
+                // Articles published before the start of this day are older than the age
+                Calendar cal = new GregorianCalendar();
+                cal.setTimeInMillis(DateUtils.getTodayTime());
+                cal.add(Calendar.DAY_OF_MONTH, -articleAge);
+                olderThan = cal.getTimeInMillis();
+            }
+        }
+
+        /**
+         * Finds the articles and passes them to the dialog.
+         */
+        public void run()
+        {
+            final List<IArticle> articles = findArticlesToDelete();
+            if (articles == null) return;
+
+            SwingUtilities.invokeLater(new Runnable()
+            {
+                public void run()
+                {
+                    onPreviewReady(PreviewTask.this, articles);
+                }
+            });
+        }
+
+        /**
+         * Finds articles to delete in the feeds which aren't deleted themselves.
+         *
+         * @return articles to delete or <code>NULL</code> if the task was cancelled.
+         */
+        List<IArticle> findArticlesToDelete()
+        {
+            List<IArticle> articles = new ArrayList<IArticle>();
+
+            for (IFeed feed : feedsAll)
+            {
+                if (isCancelled()) return null;
+
+                if (feed instanceof DataFeed && (guide == null || feed.belongsTo(guide)) &&
+                    !feedsToRemove.containsKey(feed))
+                {
+                    IArticle[] found = ((DataFeed)feed).findArticlesToPurge(limit, olderThan,
+                        purgeUnread, purgePinned);
+                    articles.addAll(Arrays.asList(found));
+                }
+            }
+
+            return articles;
+        }
     }
 
     /**
@@ -0,0 +1,217 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.dialogs;
+
+import com.jgoodies.forms.factories.ButtonBarFactory;
+import com.jgoodies.uif.AbstractDialog;
+import com.jgoodies.uif.util.Resizer;
+import com.salas.bb.utils.Constants;
+import com.salas.bb.utils.ResourceID;
+import com.salas.bb.utils.i18n.Strings;
+import com.salas.bb.utils.metrics.Metrics;
+import com.salas.bb.utils.uif.HeaderPanelExt;
+import com.salas.bb.utils.uif.IconSource;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shows the current values of all runtime metrics and lets the user save them to a file.
+ * The values are refreshed every second while the dialog is open.
+ */
+public class DiagnosticsDialog extends AbstractDialog
+{
+    private static final Logger LOG = Logger.getLogger(DiagnosticsDialog.class.getName());
+
+    /** Refresh period in ms. */
+    private static final int REFRESH_PERIOD = 1000;
+
+    private final MetricsTableModel model;
+    private final Timer refreshTimer;
+
+    /**
+     * Creates the dialog.
+     *
+     * @param parent parent frame.
+     */
+    public DiagnosticsDialog(Frame parent)
+    {
+        super(parent, Strings.message("diagnostics.dialog.title"));
+
+        model = new MetricsTableModel();
+        refreshTimer = new Timer(REFRESH_PERIOD, new ActionListener()
+        {
+            public void actionPerformed(ActionEvent e)
+            {
+                model.refresh();
+            }
+        });
+    }
+
+    @Override
+    protected JComponent buildHeader()
+    {
+        return new HeaderPanelExt(
+            Strings.message("diagnostics.dialog.title"),
+            Strings.message("diagnostics.dialog.header"),
+            IconSource.getIcon(ResourceID.ICON_PREFERENCES));
+    }
+
+    /**
+     * Builds the content pane.
+     *
+     * @return pane.
+     */
+    protected JComponent buildContent()
+    {
+        JTable table = new JTable(model);
+        table.getColumnModel().getColumn(0).setPreferredWidth(150);
+        table.getColumnModel().getColumn(1).setPreferredWidth(350);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+        panel.add(buildButtonBar(), BorderLayout.SOUTH);
+        return panel;
+    }
+
+    private JComponent buildButtonBar()
+    {
+        JButton btnSave = new JButton(Strings.message("diagnostics.save"));
+        btnSave.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent e)
+            {
+                onSave();
+            }
+        });
+
+        JComponent panel = ButtonBarFactory.buildRightAlignedBar(btnSave, createCloseButton(true));
+        panel.setBorder(Constants.DIALOG_BUTTON_BAR_BORDER);
+        return panel;
+    }
+
+    @Override
+    protected void resizeHook(JComponent cont)
+    {
+        Resizer.FOUR2THREE.resizeDialogContent(cont);
+    }
+
+    /**
+     * Opens the dialog and starts refreshing the values.
+     */
+    public void open()
+    {
+        model.refresh();
+        refreshTimer.start();
+        try
+        {
+            super.open();
+        } finally
+        {
+            refreshTimer.stop();
+        }
+    }
+
+    /**
+     * Asks for the file and dumps the metrics into it.
+     */
+    private void onSave()
+    {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogType(JFileChooser.SAVE_DIALOG);
+        chooser.setSelectedFile(new File("metrics.txt"));
+
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        try
+        {
+            Metrics.dump(chooser.getSelectedFile());
+        } catch (IOException e)
+        {
+            LOG.log(Level.WARNING, Strings.error("metrics.failed.to.dump"), e);
+            JOptionPane.showMessageDialog(this, Strings.error("metrics.failed.to.dump"),
+                Strings.message("diagnostics.dialog.title"), JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    /**
+     * The name / value table of the metrics report.
+     */
+    private static class MetricsTableModel extends AbstractTableModel
+    {
+        private List<String> names = new ArrayList<String>();
+        private List<String> values = new ArrayList<String>();
+
+        /**
+         * Reads the fresh report.
+         */
+        public void refresh()
+        {
+            List<String> newNames = new ArrayList<String>();
+            List<String> newValues = new ArrayList<String>();
+            for (Map.Entry<String, String> entry : Metrics.getReport().entrySet())
+            {
+                newNames.add(entry.getKey());
+                newValues.add(entry.getValue());
+            }
+
+            boolean structureChanged = !newNames.equals(names);
+            names = newNames;
+            values = newValues;
+
+            if (structureChanged) fireTableDataChanged(); else fireTableRowsUpdated(0, names.size() - 1);
+        }
+
+        public int getRowCount()
+        {
+            return names.size();
+        }
+
+        public int getColumnCount()
+        {
+            return 2;
+        }
+
+        public String getColumnName(int column)
+        {
+            return Strings.message(column == 0 ? "diagnostics.name" : "diagnostics.value");
+        }
+
+        public Object getValueAt(int row, int column)
+        {
+            return column == 0 ? names.get(row) : values.get(row);
+        }
+    }
+}
@@ -25,10 +25,11 @@
 package com.salas.bb.discovery;
 
 import EDU.oswego.cs.dl.util.concurrent.Executor;
-import EDU.oswego.cs.dl.util.concurrent.FJTaskRunnerGroup;
 import com.salas.bb.domain.FeedMetaDataHolder;
 import com.salas.bb.utils.ConnectionState;
-import com.salas.bb.utils.concurrency.ExecutorFactory;
+import com.salas.bb.utils.concurrency.Lane;
+import com.salas.bb.utils.concurrency.ScheduledTask;
+import com.salas.bb.utils.concurrency.Scheduler;
 import com.salas.bb.utils.i18n.Strings;
 
 import java.net.URL;
@@ -49,22 +50,21 @@ class MDDiscoverer
     // The name of discoverer threads group
     private static final String THREAD_NAME = "Discoverer";
 
+    // The name of the lane firing events
+    private static final String EVENTS_LANE = "Discoverer Events";
+
     // Maximum number of threads to spawn
     private static final int MAX_THREADS = 5;
 
     // Time to wait before rescheduling task
     private static final int RESCHEDULE_DELAY_MS = 15000;
 
-    // Time to keep discovery threads in pool active
-    private static final int THREAD_KEEP_ALIVE_TIME_MS = 60000;
-
     // The list of protocols allowed to discovery
     private static final List ALLOWED_PROTOCOLS;
 
-    private final FJTaskRunnerGroup eventsRunner;
+    private final Lane              eventsRunner;
     private final Executor          executor;
     private final Set<String>       schedule;
-    private final Timer             rescheduleTimer;
     private final List<IDiscoveryListener> listeners;
     private final ConnectionState   connectionState;
 
@@ -80,8 +80,7 @@ class MDDiscoverer
      */
     public MDDiscoverer(ConnectionState aConnectionState)
     {
-        this(ExecutorFactory.createPooledExecutor(THREAD_NAME,
-            MAX_THREADS, THREAD_KEEP_ALIVE_TIME_MS), aConnectionState);
+        this(Scheduler.lane(THREAD_NAME, MAX_THREADS, Thread.NORM_PRIORITY), aConnectionState);
     }
 
     /**
@@ -93,10 +92,9 @@ class MDDiscoverer
     MDDiscoverer(Executor anExecutor, ConnectionState aConnectionState)
     {
         connectionState = aConnectionState;
-        eventsRunner = new FJTaskRunnerGroup(1);
+        eventsRunner = Scheduler.lane(EVENTS_LANE, 1, Thread.NORM_PRIORITY);
         executor = anExecutor;
         schedule = new HashSet<String>();
-        rescheduleTimer = new Timer(true);
         listeners = new CopyOnWriteArrayList<IDiscoveryListener>();
     }
 
@@ -158,7 +156,7 @@ class MDDiscoverer
 
     /**
      * Reschedules discovery after some delay defined at {@link #RESCHEDULE_DELAY_MS}.
-     * The call isn't blocking. It puts the timer task and continues.
+     * The call isn't blocking. It schedules the task and continues.
      *
      * @param request request to reschedule.
      */
@@ -167,7 +165,7 @@ class MDDiscoverer
         if (LOG.isLoggable(Level.FINE)) LOG.fine("Discovery rescheduled: " + request.getUrl());
 
         request.addAttemptCount();
-        rescheduleTimer.schedule(new ScheduleRequestTimerTask(request), RESCHEDULE_DELAY_MS);
+        Scheduler.backgroundLane().schedule(new ScheduleRequestTask(request), RESCHEDULE_DELAY_MS);
     }
 
     /**
@@ -312,13 +310,7 @@ class MDDiscoverer
      */
     private void runFireEventTask(FireEventTask aTask)
     {
-        try
-        {
-            eventsRunner.execute(aTask);
-        } catch (InterruptedException e)
-        {
-            aTask.run();
-        }
+        eventsRunner.execute(aTask);
     }
 
     /**
@@ -358,7 +350,7 @@ class MDDiscoverer
     /**
      * Task to schedule discovery request.
      */
-    private class ScheduleRequestTimerTask extends TimerTask
+    private class ScheduleRequestTask extends ScheduledTask
     {
         private final MDDiscoveryRequest request;
 
@@ -367,7 +359,7 @@ class MDDiscoverer
          *
          * @param aRequest request to schedule.
          */
-        public ScheduleRequestTimerTask(MDDiscoveryRequest aRequest)
+        public ScheduleRequestTask(MDDiscoveryRequest aRequest)
         {
             request = aRequest;
         }
@@ -65,11 +65,25 @@ public final class MDManager
         discoverer = aDiscoverer;
         repository = aRepository;
         connectionState = aConnectionState;
+
+        discoverer.addListener(new RecordingListener());
+    }
+
+    /**
+     * Sets the persistent storage of the discovered meta-data and loads everything
+     * discovered earlier from it.
+     *
+     * @param aStorage storage.
+     */
+    public void setStorage(IMDStorage aStorage)
+    {
+        repository.setStorage(aStorage);
     }
 
     /**
      * Looks up the meta-data for a given URL or starts new discovery if it is not
-     * present in repository yet.
+     * present in repository yet. If the meta-data is present, but stale, it is returned
+     * and the discovery is started to revalidate it.
      *
      * @param url   URL to lookup.
      *
@@ -84,6 +98,9 @@ public final class MDManager
             holder = new FeedMetaDataHolder();
             repository.record(holder, url);
             discoverer.scheduleDiscovery(url, holder);
+        } else if (repository.isStale(url))
+        {
+            discoverer.scheduleDiscovery(url, holder);
         }
 
         return holder;
@@ -145,4 +162,39 @@ public final class MDManager
     {
         discoverer.addListener(aListener);
     }
+
+    /**
+     * Writes complete discoveries to the repository storage.
+     */
+    private class RecordingListener implements IDiscoveryListener
+    {
+        /**
+         * Invoked when discovery of some meta-data object started.
+         *
+         * @param url URL being discovered.
+         */
+        public void discoveryStarted(URL url)
+        {
+        }
+
+        /**
+         * Invoked when discovery of some meta-data object successfully finished.
+         *
+         * @param url       URL has been discovered.
+         * @param complete  <code>TRUE</code> when discovery is complete.
+         */
+        public void discoveryFinished(URL url, boolean complete)
+        {
+            if (complete) repository.discovered(url);
+        }
+
+        /**
+         * Invoked when discovery of some meta-data object failed.
+         *
+         * @param url URL which was being discovered.
+         */
+        public void discoveryFailed(URL url)
+        {
+        }
+    }
 }
@@ -0,0 +1,104 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.discovery;
+
+import com.salas.bb.domain.FeedMetaDataHolder;
+
+/**
+ * Record of discovered meta-data kept in the persistent storage. Each record knows
+ * when it was checked last time and for how long it is considered fresh.
+ */
+public final class MDRecord
+{
+    private final String                url;
+    private final FeedMetaDataHolder    holder;
+    private final long                  ttl;
+
+    /**
+     * Creates record.
+     *
+     * @param aUrl      URL the meta-data was discovered for.
+     * @param aHolder   meta-data. Its last update time is the time of the last check.
+     * @param aTtl      time (ms) the meta-data is considered fresh after the last check.
+     */
+    public MDRecord(String aUrl, FeedMetaDataHolder aHolder, long aTtl)
+    {
+        url = aUrl;
+        holder = aHolder;
+        ttl = aTtl;
+    }
+
+    /**
+     * Returns the URL the meta-data was discovered for.
+     *
+     * @return URL.
+     */
+    public String getUrl()
+    {
+        return url;
+    }
+
+    /**
+     * Returns meta-data.
+     *
+     * @return meta-data.
+     */
+    public FeedMetaDataHolder getHolder()
+    {
+        return holder;
+    }
+
+    /**
+     * Returns the time (ms) the meta-data is considered fresh after the last check.
+     *
+     * @return time to live.
+     */
+    public long getTtl()
+    {
+        return ttl;
+    }
+
+    /**
+     * Returns the time of the last check.
+     *
+     * @return time.
+     */
+    public long getLastChecked()
+    {
+        return holder.getLastUpdateTime();
+    }
+
+    /**
+     * Returns <code>TRUE</code> if meta-data should be checked again.
+     *
+     * @param time current time.
+     *
+     * @return <code>TRUE</code> if meta-data should be checked again.
+     */
+    public boolean isStale(long time)
+    {
+        return getLastChecked() + ttl <= time;
+    }
+}
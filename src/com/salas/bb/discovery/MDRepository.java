@@ -25,24 +25,59 @@
 package com.salas.bb.discovery;
 
 import com.salas.bb.domain.FeedMetaDataHolder;
+import com.salas.bb.utils.Constants;
 
 import java.net.URL;
 import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Repository of discovered meta-data information. Plays role of run-time
- * cache.
+ * cache. When the persistent storage is set, complete discoveries are written
+ * to it and read back on the next start, so that only the records which
+ * outlived their time to live are discovered again.
  */
 final class MDRepository
 {
-    private final Map repository;
+    private static final Logger LOG = Logger.getLogger(MDRepository.class.getName());
+
+    /** Time to live of valid discovery results. */
+    static final long TTL_VALID = Constants.MILLIS_IN_WEEK;
+    /** Time to live of invalid discovery results. */
+    static final long TTL_INVALID = Constants.MILLIS_IN_DAY;
+
+    private final Map<String, MDRecord> repository;
+    private IMDStorage storage;
 
     /**
      * Creates repository.
      */
     public MDRepository()
     {
-        repository = new HashMap();
+        repository = new HashMap<String, MDRecord>();
+    }
+
+    /**
+     * Sets the persistent storage and loads all records from it.
+     *
+     * @param aStorage storage or <code>NULL</code> to stop persisting.
+     */
+    public void setStorage(IMDStorage aStorage)
+    {
+        List<MDRecord> records = aStorage == null
+            ? Collections.<MDRecord>emptyList() : aStorage.load();
+
+        synchronized (repository)
+        {
+            storage = aStorage;
+            for (MDRecord record : records)
+            {
+                if (!repository.containsKey(record.getUrl())) repository.put(record.getUrl(), record);
+            }
+        }
+
+        if (LOG.isLoggable(Level.FINE)) LOG.fine("Loaded meta-data records: " + records.size());
     }
 
     /**
@@ -54,18 +89,46 @@ final class MDRepository
      */
     public FeedMetaDataHolder lookup(URL url)
     {
-        FeedMetaDataHolder holder = null;
+        MDRecord record = lookupRecord(url);
+        return record == null ? null : record.getHolder();
+    }
+
+    /**
+     * Returns <code>TRUE</code> if there's the meta-data for a given URL which
+     * needs to be checked again.
+     *
+     * @param url URL.
+     *
+     * @return <code>TRUE</code> if meta-data is stale.
+     */
+    public boolean isStale(URL url)
+    {
+        MDRecord record = lookupRecord(url);
+        return record != null && record.getHolder().isComplete() &&
+            record.isStale(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the record for a given URL.
+     *
+     * @param url URL.
+     *
+     * @return record or <code>NULL</code>.
+     */
+    private MDRecord lookupRecord(URL url)
+    {
+        MDRecord record = null;
 
         if (url != null)
         {
             String urlString = url.toString();
             synchronized (repository)
             {
-                holder = (FeedMetaDataHolder)repository.get(urlString);
+                record = repository.get(urlString);
             }
         }
 
-        return holder;
+        return record;
     }
 
     /**
@@ -75,27 +138,25 @@ final class MDRepository
      */
     public FeedMetaDataHolder[] lookupValid()
     {
-        FeedMetaDataHolder[] holders;
+        MDRecord[] records;
 
         synchronized (repository)
         {
-            Collection holdersCol = repository.values();
-            holders = (FeedMetaDataHolder[])holdersCol.toArray(
-                new FeedMetaDataHolder[holdersCol.size()]);
+            Collection<MDRecord> recordsCol = repository.values();
+            records = recordsCol.toArray(new MDRecord[recordsCol.size()]);
         }
 
-        List holdersList = new ArrayList(holders.length);
-        for (int i = 0; i < holders.length; i++)
+        List<FeedMetaDataHolder> holdersList = new ArrayList<FeedMetaDataHolder>(records.length);
+        for (MDRecord record : records)
         {
-            FeedMetaDataHolder holder = holders[i];
+            FeedMetaDataHolder holder = record.getHolder();
             if (holder.isComplete() && holder.isDiscoveredValid() && !holdersList.contains(holder))
             {
                 holdersList.add(holder);
             }
         }
 
-        return (FeedMetaDataHolder[])holdersList.toArray(
-            new FeedMetaDataHolder[holdersList.size()]);
+        return holdersList.toArray(new FeedMetaDataHolder[holdersList.size()]);
     }
 
     /**
@@ -112,11 +173,37 @@ final class MDRepository
         {
             if (!repository.containsKey(urlString))
             {
-                repository.put(urlString, holder);
+                repository.put(urlString, new MDRecord(urlString, holder, 0));
             }
         }
     }
 
+    /**
+     * Invoked when the discovery of the URL is complete. Writes the results to the
+     * storage with the time to live depending on the validity of the results.
+     *
+     * @param url URL.
+     */
+    public void discovered(URL url)
+    {
+        String urlString = url.toString();
+
+        MDRecord record;
+        IMDStorage st;
+        synchronized (repository)
+        {
+            record = repository.get(urlString);
+            if (record == null || !record.getHolder().isComplete()) return;
+
+            FeedMetaDataHolder holder = record.getHolder();
+            record = new MDRecord(urlString, holder, holder.isDiscoveredInvalid() ? TTL_INVALID : TTL_VALID);
+            repository.put(urlString, record);
+            st = storage;
+        }
+
+        if (st != null) st.store(record);
+    }
+
     /**
      * Orders the repository to forget anything about given holders.
      *
@@ -124,32 +211,28 @@ final class MDRepository
      */
     public void forget(FeedMetaDataHolder[] aHolders)
     {
-        List holdersList = Arrays.asList(aHolders);
+        List<FeedMetaDataHolder> holdersList = Arrays.asList(aHolders);
 
-        Map.Entry[] entries;
+        MDRecord[] records;
+        IMDStorage st;
         synchronized (repository)
         {
-            Set entriesSet = repository.entrySet();
-            entries = (Map.Entry[])entriesSet.toArray(new Map.Entry[entriesSet.size()]);
+            Collection<MDRecord> recordsCol = repository.values();
+            records = recordsCol.toArray(new MDRecord[recordsCol.size()]);
+            st = storage;
         }
 
-        List keysToRemove = new ArrayList();
-        for (int i = 0; i < entries.length; i++)
+        List<String> keysToRemove = new ArrayList<String>();
+        for (MDRecord record : records)
         {
-            Map.Entry entry = entries[i];
-            FeedMetaDataHolder holder = (FeedMetaDataHolder)entry.getValue();
-
-            if (holdersList.contains(holder)) keysToRemove.add(entry.getKey());
+            if (holdersList.contains(record.getHolder())) keysToRemove.add(record.getUrl());
         }
 
-        Iterator iterator = keysToRemove.iterator();
         synchronized (repository)
         {
-            while (iterator.hasNext())
-            {
-                Object key = iterator.next();
-                repository.remove(key);
-            }
+            for (String key : keysToRemove) repository.remove(key);
         }
+
+        if (st != null && !keysToRemove.isEmpty()) st.remove(keysToRemove);
     }
 }
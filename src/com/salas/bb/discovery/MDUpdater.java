@@ -28,20 +28,27 @@ import com.salas.bb.domain.DirectFeed;
 import com.salas.bb.domain.FeedMetaDataHolder;
 import com.salas.bb.domain.GuidesSet;
 import com.salas.bb.domain.IFeed;
+import com.salas.bb.domain.IGuide;
 import com.salas.bb.domain.prefs.UserPreferences;
+import com.salas.bb.domain.utils.DomainAdapter;
+import com.salas.bb.domain.utils.IDomainListener;
 import com.salas.bb.utils.ConnectionState;
 import com.salas.bb.utils.i18n.Strings;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.net.URL;
+import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Updater is a background task which is walking through the list of subscriptions
- * and updates their meta-data.
+ * Updater is a background task which updates meta-data of subscriptions. Feeds are
+ * kept in the queue ordered by the time their meta-data becomes outdated, so that
+ * each run looks only at the feeds which are due.
  */
 public final class MDUpdater implements Runnable
 {
@@ -52,6 +59,9 @@ public final class MDUpdater implements Runnable
 
     private final MDManager metaDataManager;
     private final ConnectionState connectionState;
+    private final PriorityQueue<DueFeed> queue;
+    private final Set<DirectFeed> queued;
+    private final IDomainListener domainListener;
 
     private GuidesSet       guidesSet;
 
@@ -69,6 +79,9 @@ public final class MDUpdater implements Runnable
         metaDataManager = aMetaDataManager;
         connectionState = aConnectionState;
         guidesSet = null;
+        queue = new PriorityQueue<DueFeed>();
+        queued = new HashSet<DirectFeed>();
+        domainListener = new FeedsListener();
 
         skippedUpdateDuringOffline = false;
         aConnectionState.addPropertyChangeListener(ConnectionState.PROP_SERVICE_ACCESSIBLE,
@@ -76,13 +89,56 @@ public final class MDUpdater implements Runnable
     }
 
     /**
-     * Sets new guides set to use.
+     * Returns the listener which should be registered to receive domain events to
+     * schedule the feeds added after the guides set was set.
+     *
+     * @return listener.
+     */
+    public IDomainListener getDomainListener()
+    {
+        return domainListener;
+    }
+
+    /**
+     * Sets new guides set to use and puts all of its direct feeds in the queue.
      *
      * @param aGuidesSet guides set.
      */
     public synchronized void setGuidesSet(GuidesSet aGuidesSet)
     {
         guidesSet = aGuidesSet;
+
+        queue.clear();
+        queued.clear();
+        if (guidesSet != null)
+        {
+            List<IFeed> feeds = guidesSet.getFeeds();
+            for (IFeed feed : feeds) schedule(feed);
+        }
+    }
+
+    /**
+     * Puts the feed in the queue if it's a direct feed, which isn't there yet.
+     *
+     * @param aFeed feed.
+     */
+    private synchronized void schedule(IFeed aFeed)
+    {
+        if (aFeed instanceof DirectFeed)
+        {
+            DirectFeed feed = (DirectFeed)aFeed;
+            enqueue(feed, feed.getLastMetaDataUpdateTime() + getUpdatePeriod());
+        }
+    }
+
+    /**
+     * Returns the number of feeds in the queue.
+     *
+     * @return number of feeds.
+     */
+    synchronized int getQueueSize()
+    {
+        return queue.size();
     }
 
     /**
@@ -106,29 +162,61 @@ public final class MDUpdater implements Runnable
     }
 
     /**
-     * This operation scans the guides set for all direct feeds with outdated meta-data
-     * information and asks {@link #metaDataManager} to update them.
+     * This operation takes all feeds with outdated meta-data information from the queue
+     * and asks {@link #metaDataManager} to update them. The feeds are put back in the queue
+     * with the time of the next update.
      */
     public void update()
     {
-        List<IFeed> feeds;
+        long time = System.currentTimeMillis();
+        long updateTimeThreshold = time - getUpdatePeriod();
 
-        synchronized (this)
+        DirectFeed feed;
+        while ((feed = nextDueFeed(time)) != null)
         {
-            feeds = guidesSet == null ? null : guidesSet.getFeeds();
+            // The feed could have been updated since it was queued
+            if (feed.getLastMetaDataUpdateTime() < updateTimeThreshold)
+            {
+                update(feed);
+                enqueue(feed, time + getUpdatePeriod());
+            } else
+            {
+                schedule(feed);
+            }
         }
+    }
 
-        if (feeds != null)
+    /**
+     * Takes the next feed which is due from the queue. The feeds which were removed
+     * from all guides are dropped.
+     *
+     * @param time current time.
+     *
+     * @return feed or <code>NULL</code> if nothing is due.
+     */
+    private synchronized DirectFeed nextDueFeed(long time)
+    {
+        DirectFeed feed = null;
+
+        while (feed == null && !queue.isEmpty() && queue.peek().due <= time)
         {
-            long updateTimeThreshold = System.currentTimeMillis() - getUpdatePeriod();
-            for (IFeed feed : feeds)
-            {
-                if (feed instanceof DirectFeed)
-                {
-                    update((DirectFeed)feed, updateTimeThreshold);
-                }
-            }
+            feed = queue.poll().feed;
+            queued.remove(feed);
+            if (feed.getParentGuides().length == 0) feed = null;
         }
+
+        return feed;
+    }
+
+    /**
+     * Puts the feed in the queue if it isn't there yet.
+     *
+     * @param aFeed feed.
+     * @param aDue  time when the feed is due.
+     */
+    private synchronized void enqueue(DirectFeed aFeed, long aDue)
+    {
+        if (queued.add(aFeed)) queue.add(new DueFeed(aFeed, aDue));
     }
 
     /**
@@ -152,24 +240,18 @@ public final class MDUpdater implements Runnable
     }
 
     /**
-     * Updates given feed if necessary.
+     * Updates given feed.
      *
-     * @param aFeed                 feed to check and update.
-     * @param updateTimeThreshold   maximum last update time. If feed has update time
-     *                              older than this one it will be updated.
+     * @param aFeed feed to update.
      */
-    private void update(DirectFeed aFeed, long updateTimeThreshold)
+    private void update(DirectFeed aFeed)
     {
-        long lastUpdate = aFeed.getLastMetaDataUpdateTime();
-        if (lastUpdate < updateTimeThreshold)
+        URL baseURL = getBaseURL(aFeed);
+        FeedMetaDataHolder holder = aFeed.getMetaDataHolder();
+        if (baseURL != null && holder != null)
         {
-            URL baseURL = getBaseURL(aFeed);
-            FeedMetaDataHolder holder = aFeed.getMetaDataHolder();
-            if (baseURL != null && holder != null)
-            {
-                if (LOG.isLoggable(Level.FINE)) LOG.fine("Updating meta-data of " + aFeed);
-                metaDataManager.update(holder, baseURL);
-            }
+            if (LOG.isLoggable(Level.FINE)) LOG.fine("Updating meta-data of " + aFeed);
+            metaDataManager.update(holder, baseURL);
         }
     }
 
@@ -189,6 +271,65 @@ public final class MDUpdater implements Runnable
         return baseURL;
     }
 
+    /** Feed in the queue. */
+    private static class DueFeed implements Comparable<DueFeed>
+    {
+        private final DirectFeed    feed;
+        private final long          due;
+
+        /**
+         * Creates the queue entry.
+         *
+         * @param aFeed feed.
+         * @param aDue  time when the feed is due.
+         */
+        public DueFeed(DirectFeed aFeed, long aDue)
+        {
+            feed = aFeed;
+            due = aDue;
+        }
+
+        /**
+         * Compares the due times.
+         *
+         * @param o other entry.
+         *
+         * @return comparison result.
+         */
+        public int compareTo(DueFeed o)
+        {
+            return due < o.due ? -1 : due == o.due ? 0 : 1;
+        }
+    }
+
+    /** Schedules new feeds. */
+    private class FeedsListener extends DomainAdapter
+    {
+        /**
+         * Invoked when new guide has been added to the set. The guides are added this way
+         * when the set is loaded from database.
+         *
+         * @param set           guides set.
+         * @param guide         added guide.
+         * @param lastInBatch   <code>TRUE</code> when this is the last even in batch.
+         */
+        public void guideAdded(GuidesSet set, IGuide guide, boolean lastInBatch)
+        {
+            if (guidesSet != null) for (IFeed feed : guide.getFeeds()) schedule(feed);
+        }
+
+        /**
+         * Invoked when new feed has been added to the guide.
+         *
+         * @param guide parent guide.
+         * @param feed  added feed.
+         */
+        public void feedAdded(IGuide guide, IFeed feed)
+        {
+            if (guidesSet != null) schedule(feed);
+        }
+    }
+
     /** Listens to the updates in service accessibility. */
     private class ServiceAccessibilityListener implements PropertyChangeListener
     {
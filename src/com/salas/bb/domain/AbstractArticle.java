@@ -300,6 +300,56 @@ public abstract class AbstractArticle implements IArticle
         }
     }
 
+    /**
+     * Sets the value of read flag as a part of the bulk change. The listeners taking bulk
+     * changes are collected with their articles to be notified once for the whole batch.
+     * The others aren't notified here, see {@link #fireReadChanged(boolean)}.
+     *
+     * @param aRead TRUE if the article is read.
+     * @param batch bulk listeners to the lists of their changed articles.
+     *
+     * @return TRUE if the state has changed.
+     */
+    boolean setRead(boolean aRead, Map<IArticlesReadListener, List<IArticle>> batch)
+    {
+        if (aRead == read) return false;
+
+        read = aRead;
+        for (IArticleListener listener : listeners)
+        {
+            if (listener instanceof IArticlesReadListener)
+            {
+                IArticlesReadListener bulkListener = (IArticlesReadListener)listener;
+                List<IArticle> articles = batch.get(bulkListener);
+                if (articles == null)
+                {
+                    articles = new ArrayList<IArticle>();
+                    batch.put(bulkListener, articles);
+                }
+                articles.add(this);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Notifies the listeners which don't take bulk changes about the read flag set
+     * with {@link #setRead(boolean, Map)}.
+     *
+     * @param aRead TRUE if the article has become read.
+     */
+    void fireReadChanged(boolean aRead)
+    {
+        for (IArticleListener listener : listeners)
+        {
+            if (!(listener instanceof IArticlesReadListener))
+            {
+                listener.propertyChanged(this, PROP_READ, !aRead, aRead);
+            }
+        }
+    }
+
     /**
      * Returns the pin flag state.
      *
@@ -467,6 +467,26 @@ public abstract class AbstractFeed implements IFeed
         for (IFeedListener listener : listeners) listener.articleRemoved(this, article);
     }
 
+    /**
+     * Fires event about many articles removed at once. The listeners capable of taking
+     * bulk removals get single notification, the rest get one per article.
+     *
+     * @param articles articles which were removed.
+     */
+    protected void fireArticlesRemoved(IArticle[] articles)
+    {
+        for (IFeedListener listener : listeners)
+        {
+            if (listener instanceof IArticlesRemovedListener)
+            {
+                ((IArticlesRemovedListener)listener).articlesRemoved(this, articles);
+            } else
+            {
+                for (IArticle article : articles) listener.articleRemoved(this, article);
+            }
+        }
+    }
+
     /**
      * Returns string representation of this feed object.
      *
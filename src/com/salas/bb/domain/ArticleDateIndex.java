@@ -0,0 +1,167 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.domain;
+
+import java.util.*;
+
+/**
+ * Index of the feed articles ordered by publication date, older first. Articles without
+ * date go last, as {@link com.salas.bb.domain.utils.ArticleDateComparator} puts them, and
+ * the articles of the same date are kept in the order they were indexed. The date is taken
+ * when the article is indexed, so the order doesn't change if the article gets new date
+ * later. The index isn't thread-safe and is guarded by the owning feed.
+ */
+final class ArticleDateIndex
+{
+    /** Entries in the date order. */
+    private final SortedSet<Entry> entries = new TreeSet<Entry>();
+    /** Article to its entry. */
+    private final Map<IArticle, Entry> byArticle = new IdentityHashMap<IArticle, Entry>();
+
+    /** Sequence number of the next indexed article. */
+    private long sequence;
+
+    /**
+     * Adds the article to the index. Indexed articles are ignored.
+     *
+     * @param article article.
+     */
+    void add(IArticle article)
+    {
+        if (byArticle.containsKey(article)) return;
+
+        Date date = article.getPublicationDate();
+        Entry entry = new Entry(date == null ? Long.MAX_VALUE : date.getTime(), sequence++, article);
+
+        entries.add(entry);
+        byArticle.put(article, entry);
+    }
+
+    /**
+     * Removes the article from the index.
+     *
+     * @param article article.
+     *
+     * @return <code>TRUE</code> if the article was indexed.
+     */
+    boolean remove(IArticle article)
+    {
+        Entry entry = byArticle.remove(article);
+        if (entry != null) entries.remove(entry);
+
+        return entry != null;
+    }
+
+    /**
+     * Returns <code>TRUE</code> if the article is indexed.
+     *
+     * @param article article.
+     *
+     * @return <code>TRUE</code> if the article is indexed.
+     */
+    boolean contains(IArticle article)
+    {
+        return byArticle.containsKey(article);
+    }
+
+    /**
+     * Returns the number of indexed articles.
+     *
+     * @return number of articles.
+     */
+    int size()
+    {
+        return byArticle.size();
+    }
+
+    /**
+     * Selects the oldest articles passing the flags. The walk starts from the oldest article
+     * and takes the articles until there are at least <code>count</code> of them and the
+     * rest is not older than the given time. The articles which don't pass the flags are
+     * skipped and don't count.
+     *
+     * @param count         minimal number of articles to take.
+     * @param olderThan     time to take all articles published before or <code>-1</code>.
+     * @param unread        <code>TRUE</code> to take unread articles.
+     * @param pinned        <code>TRUE</code> to take pinned articles.
+     *
+     * @return articles, older first.
+     */
+    List<IArticle> selectOldest(int count, long olderThan, boolean unread, boolean pinned)
+    {
+        List<IArticle> selected = new ArrayList<IArticle>();
+
+        for (Entry entry : entries)
+        {
+            boolean old = olderThan != -1 && entry.time < olderThan;
+            if (selected.size() >= count && !old) break;
+
+            IArticle article = entry.article;
+            if ((unread || article.isRead()) && (pinned || !article.isPinned())) selected.add(article);
+        }
+
+        return selected;
+    }
+
+    /**
+     * Index entry.
+     */
+    private static final class Entry implements Comparable<Entry>
+    {
+        /** Publication time or <code>Long.MAX_VALUE</code> if there's no date. */
+        private final long time;
+        /** Sequence number to order the articles of the same time. */
+        private final long seq;
+        /** Article. */
+        private final IArticle article;
+
+        /**
+         * Creates entry.
+         *
+         * @param aTime     publication time.
+         * @param aSeq      sequence number.
+         * @param anArticle article.
+         */
+        Entry(long aTime, long aSeq, IArticle anArticle)
+        {
+            time = aTime;
+            seq = aSeq;
+            article = anArticle;
+        }
+
+        /**
+         * Compares entries by time and then by sequence number.
+         *
+         * @param o other entry.
+         *
+         * @return negative, zero or positive integer.
+         */
+        public int compareTo(Entry o)
+        {
+            if (time != o.time) return time < o.time ? -1 : 1;
+            return seq < o.seq ? -1 : seq == o.seq ? 0 : 1;
+        }
+    }
+}
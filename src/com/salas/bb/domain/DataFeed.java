@@ -27,7 +27,6 @@ package com.salas.bb.domain;
 import EDU.oswego.cs.dl.util.concurrent.ReadWriteLock;
 import EDU.oswego.cs.dl.util.concurrent.ReaderPreferenceReadWriteLock;
 import com.salas.bb.core.FeedDisplayModeManager;
-import com.salas.bb.domain.utils.ArticleDateComparator;
 import com.salas.bb.utils.Constants;
 import com.salas.bb.utils.StringUtils;
 import com.salas.bb.utils.i18n.Strings;
@@ -48,6 +47,9 @@ public abstract class DataFeed extends AbstractFeed
 {
     private static final Logger LOG = Logger.getLogger(DataFeed.class.getName());
 
+    /** Snapshot of the feed without articles. */
+    private static final IArticle[] NO_ARTICLES = new IArticle[0];
+
     public static final String PROP_PURGE_LIMIT             = "purgeLimit";
     public static final String PROP_LAST_POLL_TIME          = "lastPollTime";
     public static final String PROP_LAST_UPDATE_SERVER_TIME = "lastUpdateServerTime";
@@ -95,9 +97,40 @@ public abstract class DataFeed extends AbstractFeed
     private long initTime;
 
     /**
-     * List of all articles in the feed.
+     * Snapshot of all articles in the feed. The array is never modified, but replaced with
+     * the new one when the change is applied, so it can be read without locking.
+     */
+    private volatile IArticle[] articles;
+
+    /**
+     * The change of articles being applied by the thread holding the lock or <code>NULL</code>.
      */
-    private final List<IArticle> articles;
+    private ArticlesChange change;
+
+    /**
+     * Events of the applied changes waiting to be fired in the order of the changes.
+     */
+    private final LinkedList<ArticlesEvent> pendingEvents;
+
+    /**
+     * The thread firing the pending events or <code>NULL</code>.
+     */
+    private Thread dispatcher;
+
+    /**
+     * Number of events queued for firing so far.
+     */
+    private long queuedEvents;
+
+    /**
+     * Number of queued events which have been fired so far.
+     */
+    private long firedEvents;
+
+    /**
+     * Articles ordered by publication date. Used to pick the articles to purge.
+     */
+    private final ArticleDateIndex dateIndex;
 
     /**
      * List of simple match keys of all articles which should be marked as read on addition.
@@ -184,7 +217,9 @@ public abstract class DataFeed extends AbstractFeed
      */
     protected DataFeed()
     {
-        articles = new ArrayList<IArticle>();
+        articles = NO_ARTICLES;
+        pendingEvents = new LinkedList<ArticlesEvent>();
+        dateIndex = new ArticleDateIndex();
 
         unreadArticlesCount = 0;
         unreadArticlesCountLock = new ReaderPreferenceReadWriteLock();
@@ -223,9 +258,10 @@ public abstract class DataFeed extends AbstractFeed
      *
      * @return article object.
      */
-    public synchronized IArticle getArticleAt(int index)
+    public IArticle getArticleAt(int index)
     {
-        return articles.get(index);
+        ArticlesChange current = getChange();
+        return current == null ? articles[index] : current.view().get(index);
     }
 
     /**
@@ -233,9 +269,10 @@ public abstract class DataFeed extends AbstractFeed
      *
      * @return number of articles.
      */
-    public synchronized int getArticlesCount()
+    public int getArticlesCount()
     {
-        return articles.size();
+        ArticlesChange current = getChange();
+        return current == null ? articles.length : current.view().size();
     }
 
     /**
@@ -249,23 +286,253 @@ public abstract class DataFeed extends AbstractFeed
     }
 
     /**
-     * Returns the list of all articles which are currently in the feed.
+     * Returns the list of all articles which are currently in the feed. The array is
+     * the shared snapshot and must not be modified.
      *
      * @return all articles at this moment.
      */
-    public synchronized IArticle[] getArticles()
+    public IArticle[] getArticles()
+    {
+        ArticlesChange current = getChange();
+        return current == null ? articles : current.toArray();
+    }
+
+    /**
+     * Returns the change being applied if the calling thread applies it. All other threads
+     * see the last published snapshot.
+     *
+     * @return the change or <code>NULL</code>.
+     */
+    private ArticlesChange getChange()
+    {
+        return Thread.holdsLock(this) ? change : null;
+    }
+
+    /**
+     * Returns current articles as they are seen by the calling thread.
+     *
+     * @return articles.
+     */
+    private List<IArticle> getCurrentArticles()
+    {
+        ArticlesChange current = getChange();
+        return current == null ? Arrays.asList(articles) : current.view();
+    }
+
+    /**
+     * Marks all articles of this feed read or unread at once.
+     *
+     * @param read TRUE if mark as read.
+     */
+    public void setRead(boolean read)
+    {
+        setArticlesRead(read, getArticles());
+    }
+
+    /**
+     * Marks the articles of this feed read or unread at once. The listeners capable of taking
+     * bulk changes get single notification for the whole batch, so the unread articles counter
+     * is updated and persisted once.
+     *
+     * @param read      TRUE to mark the articles read.
+     * @param articles  articles of this feed. Articles of other feeds are skipped.
+     *
+     * @return articles which have changed their state.
+     */
+    public IArticle[] setArticlesRead(boolean read, IArticle ... articles)
     {
-        return articles.toArray(new IArticle[articles.size()]);
+        List<IArticle> changed = new ArrayList<IArticle>();
+        List<IArticle> others = new ArrayList<IArticle>();
+        Map<IArticlesReadListener, List<IArticle>> batch =
+            new LinkedHashMap<IArticlesReadListener, List<IArticle>>();
+
+        synchronized (this)
+        {
+            for (IArticle article : articles)
+            {
+                if (article.getFeed() != this) continue;
+
+                if (article instanceof AbstractArticle)
+                {
+                    if (((AbstractArticle)article).setRead(read, batch)) changed.add(article);
+                } else others.add(article);
+            }
+        }
+
+        // The listeners are notified outside of the lock
+        for (IArticle article : changed) ((AbstractArticle)article).fireReadChanged(read);
+        for (IArticle article : others) article.setRead(read);
+
+        for (Map.Entry<IArticlesReadListener, List<IArticle>> entry : batch.entrySet())
+        {
+            List<IArticle> list = entry.getValue();
+            entry.getKey().articlesReadChanged(this, list.toArray(new IArticle[list.size()]), read);
+        }
+
+        return changed.toArray(new IArticle[changed.size()]);
     }
 
     /**
      * Returns the articles list to the child.
      *
-     * @return articles list.
+     * @return unmodifiable articles list.
      */
     protected List<IArticle> getArticlesList()
     {
-        return articles;
+        return Collections.unmodifiableList(getCurrentArticles());
+    }
+
+    /**
+     * Starts the change of articles unless the calling thread is applying one already.
+     * Must be called under the lock.
+     *
+     * @return <code>TRUE</code> if the change was started and should be finished by the caller.
+     */
+    private boolean beginChange()
+    {
+        if (change != null) return false;
+
+        change = new ArticlesChange(articles);
+        return true;
+    }
+
+    /**
+     * Finishes the change started by the caller. The new snapshot is published at once and
+     * the events are queued for firing. Must be called under the lock.
+     *
+     * @param started <code>TRUE</code> if the caller has started the change.
+     */
+    private void endChange(boolean started)
+    {
+        if (!started) return;
+
+        ArticlesChange finished = change;
+        change = null;
+
+        if (finished.isModified()) articles = finished.toArray();
+        pendingEvents.addAll(finished.events);
+        queuedEvents += finished.events.size();
+    }
+
+    /**
+     * Fires the pending events in the order of changes and returns when all events queued
+     * so far are fired. It does nothing when called from inside of the change, because the
+     * events aren't queued yet, or from the listener, because the events queued meanwhile
+     * are fired by the same loop. When the other thread is firing, the caller waits for it
+     * to fire the events of the caller, or takes over if it stops earlier. This way the
+     * listeners aren't called while the change is applied and never get the events out of
+     * order, and the caller finds its events handled when it returns.
+     * <p/>
+     * The failure of the listener doesn't stop the firing. The first failure is thrown
+     * when all events are fired.
+     */
+    private void fireArticlesEvents()
+    {
+        Thread thread = Thread.currentThread();
+
+        synchronized (this)
+        {
+            if (change != null || dispatcher == thread) return;
+
+            long target = queuedEvents;
+            while (firedEvents < target && dispatcher != null)
+            {
+                try
+                {
+                    wait();
+                } catch (InterruptedException e)
+                {
+                    thread.interrupt();
+                    return;
+                }
+            }
+
+            if (firedEvents >= target) return;
+            dispatcher = thread;
+        }
+
+        RuntimeException failure = null;
+        ArticlesEvent event = null;
+        try
+        {
+            while ((event = nextArticlesEvent(event)) != null)
+            {
+                try
+                {
+                    fireArticlesEvent(event);
+                } catch (RuntimeException e)
+                {
+                    if (failure == null) failure = e;
+                }
+            }
+        } finally
+        {
+            // Stopped by an error, let the waiting threads fire the rest
+            if (event != null)
+            {
+                synchronized (this)
+                {
+                    firedEvents++;
+                    dispatcher = null;
+                    notifyAll();
+                }
+            }
+        }
+
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Counts the fired event, takes the next pending event and finishes firing when there
+     * are no more events. The waiting threads are notified of the progress.
+     *
+     * @param fired event fired last or <code>NULL</code> if it's the first one.
+     *
+     * @return event or <code>NULL</code> if there are no more.
+     */
+    private synchronized ArticlesEvent nextArticlesEvent(ArticlesEvent fired)
+    {
+        if (fired != null) firedEvents++;
+
+        ArticlesEvent event = pendingEvents.poll();
+        if (event == null) dispatcher = null;
+
+        notifyAll();
+        return event;
+    }
+
+    /**
+     * Fires the event to the feed listeners.
+     *
+     * @param event event.
+     */
+    private void fireArticlesEvent(ArticlesEvent event)
+    {
+        switch (event.type)
+        {
+            case ArticlesEvent.ADDED:
+                IArticle article = event.articles[0];
+                article.setNew(true);
+                try
+                {
+                    fireArticleAdded(article);
+                } finally
+                {
+                    article.setNew(false);
+                }
+                break;
+
+            case ArticlesEvent.REMOVED:
+                fireArticleRemoved(event.articles[0]);
+                break;
+
+            case ArticlesEvent.BULK_REMOVED:
+                fireArticlesRemoved(event.articles);
+                break;
+
+            default:
+                firePropertyChanged(PROP_UNREAD_ARTICLES_COUNT, event.oldCount, event.newCount, false, true);
+        }
     }
 
     /**
@@ -278,17 +545,30 @@ public abstract class DataFeed extends AbstractFeed
      * @throws NullPointerException if article is null.
      * @throws IllegalStateException if article belongs to the other feed already.
      */
-    public synchronized boolean appendArticle(IArticle article)
+    public boolean appendArticle(IArticle article)
     {
         if (article == null) throw new NullPointerException(Strings.error("unspecified.article"));
 
-        // Register this feed as candidate to have proper key checks
-        article.setCandidateFeed(this);
+        boolean result;
+        synchronized (this)
+        {
+            boolean started = beginChange();
+            try
+            {
+                // Register this feed as candidate to have proper key checks
+                article.setCandidateFeed(this);
 
-        boolean result = insertArticle(getArticlesCount(), article);
+                result = insertArticle(getArticlesCount(), article);
 
-        // Release candidate feed
-        article.setCandidateFeed(null);
+                // Release candidate feed
+                article.setCandidateFeed(null);
+            } finally
+            {
+                endChange(started);
+            }
+        }
+
+        fireArticlesEvents();
 
         return result;
     }
@@ -305,7 +585,35 @@ public abstract class DataFeed extends AbstractFeed
      * @throws IndexOutOfBoundsException if article index points to missing position.
      * @throws IllegalStateException     if article belongs to the other feed already.
      */
-    public synchronized boolean insertArticle(int index, IArticle article)
+    public boolean insertArticle(int index, IArticle article)
+    {
+        boolean added;
+        synchronized (this)
+        {
+            boolean started = beginChange();
+            try
+            {
+                added = insertArticle0(index, article);
+            } finally
+            {
+                endChange(started);
+            }
+        }
+
+        fireArticlesEvents();
+
+        return added;
+    }
+
+    /**
+     * Inserts article in the current change.
+     *
+     * @param index     index to add article at.
+     * @param article   article to add.
+     *
+     * @return TRUE if added article.
+     */
+    private boolean insertArticle0(int index, IArticle article)
     {
         if (article == null) throw new NullPointerException(Strings.error("unspecified.article"));
         if (article.getFeed() != null)
@@ -317,9 +625,10 @@ public abstract class DataFeed extends AbstractFeed
 
         boolean added = false;
 
-        if (article.getID() > 0 || !articles.contains(article))
+        if (article.getID() > 0 || !change.view().contains(article))
         {
-            articles.add(index, article);
+            change.edit().add(index, article);
+            dateIndex.add(article);
             article.setFeed(this);
             added = true;
 
@@ -335,14 +644,7 @@ public abstract class DataFeed extends AbstractFeed
             article.addListener(articlesListener);
             if (!article.isRead()) setUnreadArticlesCount(unreadArticlesCount + 1);
 
-            article.setNew(true);
-            try
-            {
-                fireArticleAdded(article);
-            } finally
-            {
-                article.setNew(false);
-            }
+            change.events.add(new ArticlesEvent(ArticlesEvent.ADDED, article));
         }
 
         return added;
@@ -357,24 +659,129 @@ public abstract class DataFeed extends AbstractFeed
      *
      * @throws NullPointerException if article is null.
      */
-    public synchronized boolean removeArticle(IArticle article)
+    public boolean removeArticle(IArticle article)
     {
         if (article == null) throw new NullPointerException(Strings.error("unspecified.article"));
 
         boolean removed;
-
-        removed = articles.remove(article);
-        if (removed)
+        synchronized (this)
         {
-            article.removeListener(articlesListener);
-            if (!article.isRead()) setUnreadArticlesCount(unreadArticlesCount - 1);
+            boolean started = beginChange();
+            try
+            {
+                removed = change.view().contains(article) && change.edit().remove(article);
+                if (removed)
+                {
+                    dateIndex.remove(article);
+                    article.removeListener(articlesListener);
+                    if (!article.isRead()) setUnreadArticlesCount(unreadArticlesCount - 1);
 
-            fireArticleRemoved(article);
+                    change.events.add(new ArticlesEvent(ArticlesEvent.REMOVED, article));
+                }
+            } finally
+            {
+                endChange(started);
+            }
         }
 
+        fireArticlesEvents();
+
         return removed;
     }
 
+    /**
+     * Removes the articles from the list at once. The listeners capable of taking bulk
+     * removals get single notification for the whole batch, so the articles are removed
+     * from the database in one transaction.
+     *
+     * @param toRemove articles of this feed. Other articles are skipped.
+     *
+     * @return articles which have been removed.
+     */
+    public IArticle[] removeArticles(IArticle ... toRemove)
+    {
+        IArticle[] result;
+        synchronized (this)
+        {
+            boolean started = beginChange();
+            try
+            {
+                result = removeArticles0(toRemove);
+            } finally
+            {
+                endChange(started);
+            }
+        }
+
+        fireArticlesEvents();
+
+        return result;
+    }
+
+    /**
+     * Removes the articles in the current change.
+     *
+     * @param toRemove articles of this feed. Other articles are skipped.
+     *
+     * @return articles which have been removed.
+     */
+    private IArticle[] removeArticles0(IArticle ... toRemove)
+    {
+        Map<IArticle, IArticle> removed = new IdentityHashMap<IArticle, IArticle>();
+        int unread = 0;
+
+        for (IArticle article : toRemove)
+        {
+            if (article != null && dateIndex.remove(article))
+            {
+                removed.put(article, article);
+                article.removeListener(articlesListener);
+                if (!article.isRead()) unread++;
+            }
+        }
+
+        if (removed.isEmpty()) return NO_ARTICLES;
+
+        // Rebuild the list in one pass instead of shifting it on every removal
+        List<IArticle> current = change.view();
+        List<IArticle> kept = new ArrayList<IArticle>(current.size() - removed.size());
+        List<IArticle> victims = new ArrayList<IArticle>(removed.size());
+        for (IArticle article : current)
+        {
+            if (removed.containsKey(article)) victims.add(article); else kept.add(article);
+        }
+
+        change.setArticles(kept);
+
+        if (unread > 0) setUnreadArticlesCount(unreadArticlesCount - unread);
+
+        IArticle[] result = victims.toArray(new IArticle[victims.size()]);
+        change.events.add(new ArticlesEvent(ArticlesEvent.BULK_REMOVED, result));
+
+        return result;
+    }
+
+    /**
+     * Finds the articles the cleanup would remove. These are the oldest articles passing the
+     * flags, as many as necessary to leave no more than <code>limit</code> articles, and all
+     * articles published before the given time.
+     *
+     * @param limit         number of articles to leave or <code>-1</code> to ignore.
+     * @param olderThan     time to remove all articles published before or <code>-1</code>.
+     * @param purgeUnread   <code>TRUE</code> to allow removal of unread articles.
+     * @param purgePinned   <code>TRUE</code> to allow removal of pinned articles.
+     *
+     * @return articles, older first.
+     */
+    public synchronized IArticle[] findArticlesToPurge(int limit, long olderThan,
+                                                       boolean purgeUnread, boolean purgePinned)
+    {
+        int count = limit == -1 ? 0 : Math.max(0, getArticlesCount() - limit);
+        List<IArticle> found = dateIndex.selectOldest(count, olderThan, purgeUnread, purgePinned);
+
+        return found.toArray(new IArticle[found.size()]);
+    }
+
     /**
      * Returns unread articles count.
      *
@@ -404,12 +811,12 @@ public abstract class DataFeed extends AbstractFeed
     private int getPinnedArticlesCount()
     {
         int count = 0;
-        for (IArticle article : articles) if (article.isPinned()) count++;
+        for (IArticle article : getCurrentArticles()) if (article.isPinned()) count++;
         return count;
     }
 
     /**
-     * Sets new unread articles count.
+     * Sets new unread articles count. The event is fired when the current change is finished.
      *
      * @param count new unread articles count.
      *
@@ -430,7 +837,7 @@ public abstract class DataFeed extends AbstractFeed
             unreadArticlesCount = count;
             unreadArticlesCountLock.writeLock().release();
 
-            firePropertyChanged(PROP_UNREAD_ARTICLES_COUNT, oldValue, count, false, true);
+            change.events.add(new ArticlesEvent(oldValue, count));
         } catch (InterruptedException e)
         {
             LOG.log(Level.SEVERE, Strings.error("interrupted"), e);
@@ -464,9 +871,8 @@ public abstract class DataFeed extends AbstractFeed
         } else
         {
             List<String> keysList = new ArrayList<String>(getUnreadArticlesCount());
-            for (int i = 0; i < getArticlesCount(); i++)
+            for (IArticle a : getArticles())
             {
-                final IArticle a = getArticleAt(i);
                 if (a.isRead()) keysList.add(a.getSimpleMatchKey());
             }
 
@@ -503,9 +909,8 @@ public abstract class DataFeed extends AbstractFeed
         } else
         {
             List<String> keysList = new ArrayList<String>();
-            for (int i = 0; i < getArticlesCount(); i++)
+            for (IArticle a : getArticles())
             {
-                final IArticle a = getArticleAt(i);
                 if (a.isPinned()) keysList.add(a.getSimpleMatchKey());
             }
 
@@ -522,22 +927,33 @@ public abstract class DataFeed extends AbstractFeed
      *
      * @param keys list of keys. Null is ok.
      */
-    public synchronized void setReadArticlesKeys(String keys)
+    public void setReadArticlesKeys(String keys)
     {
-        readArticlesKeys.clear();
-
-        if (keys != null)
+        synchronized (this)
         {
-            // parse list of keys
-            readArticlesKeys = parseKeysToList(keys);
+            boolean started = beginChange();
+            try
+            {
+                readArticlesKeys.clear();
 
-            // check if we have articles to mark already
-            for (int i = 0; i < getArticlesCount(); i++)
+                if (keys != null)
+                {
+                    // parse list of keys
+                    readArticlesKeys = parseKeysToList(keys);
+
+                    // check if we have articles to mark already
+                    for (IArticle article : getCurrentArticles())
+                    {
+                        if (isArticleOnReadList(article)) article.setRead(true);
+                    }
+                }
+            } finally
             {
-                IArticle article = getArticleAt(i);
-                if (isArticleOnReadList(article)) article.setRead(true);
+                endChange(started);
             }
         }
+
+        fireArticlesEvents();
     }
 
     /**
@@ -557,9 +973,8 @@ public abstract class DataFeed extends AbstractFeed
             pinnedArticlesKeys = parseKeysToList(keys);
 
             // check if we have articles to mark already
-            for (int i = 0; i < getArticlesCount(); i++)
+            for (IArticle article : getArticles())
             {
-                IArticle article = getArticleAt(i);
                 if (isArticleOnPinnedList(article)) article.setPinned(true);
             }
         }
@@ -837,20 +1252,30 @@ public abstract class DataFeed extends AbstractFeed
             for (int i = 0; i < articles.length; i++) articles[i] = createArticle(channel.getItemAt(i));
         }
 
+        // All new and purged articles are published as one change
         synchronized (this)
         {
-            if (channel != null)
+            boolean started = beginChange();
+            try
             {
-                updateFeed(channel);
-                updateArticles(articles);
-                clean();
-            }
+                if (channel != null)
+                {
+                    updateFeed(channel);
+                    updateArticles(articles);
+                    clean();
+                }
 
-            setLastPollTime(updateTime);
-            setInitTime(updateTime);
-            setRetrievals(getRetrievals() + 1);
+                setLastPollTime(updateTime);
+                setInitTime(updateTime);
+                setRetrievals(getRetrievals() + 1);
+            } finally
+            {
+                endChange(started);
+            }
         }
 
+        fireArticlesEvents();
+
         // Release candidate feed references after the checks
         if (articles != null)
         {
@@ -867,43 +1292,37 @@ public abstract class DataFeed extends AbstractFeed
      * @param overridePurgeUnread <code>TRUE</code> to override purge unread setting
      *                            and allow removing of unread articles.
      */
-    public synchronized void clean(final int limit, boolean overridePurgeUnread)
+    public void clean(final int limit, boolean overridePurgeUnread)
     {
-        // Calculate number of articles we need to remove
-        boolean purgeUnread = overridePurgeUnread || isPurgeUnread();
-        int total = getArticlesCount();
-        int unread = getUnreadArticlesCount();
-        int pinned = getPinnedArticlesCount();
-        int toRemove = calcArticlesToRemove(total, unread, pinned, limit, purgeUnread);
-
-        if (toRemove > 0)
+        synchronized (this)
         {
-            processingStarted();
-
-            // Choose articles that can potentially be deleted
-            List<IArticle> canBeDeleted = new ArrayList<IArticle>();
-            for (int i = 0; i < total; i++)
+            boolean started = beginChange();
+            try
             {
-                IArticle article = getArticleAt(i);
-                if ((purgeUnread || article.isRead()) && !article.isPinned()) canBeDeleted.add(article);
-            }
+                // Calculate number of articles we need to remove
+                boolean purgeUnread = overridePurgeUnread || isPurgeUnread();
+                int total = getArticlesCount();
+                int unread = getUnreadArticlesCount();
+                int pinned = getPinnedArticlesCount();
+                int toRemove = calcArticlesToRemove(total, unread, pinned, limit, purgeUnread);
+
+                if (toRemove > 0)
+                {
+                    processingStarted();
 
-            if (canBeDeleted.size() > 0)
-            {
-                // Sort article by pubdate
-                Collections.sort(canBeDeleted, new ArticleDateComparator());
+                    // Take the oldest articles allowed for removal and remove them in one batch
+                    List<IArticle> victims = dateIndex.selectOldest(toRemove, -1, purgeUnread, false);
+                    if (victims.size() > 0) removeArticles(victims.toArray(new IArticle[victims.size()]));
 
-                // Move on from the tail and remove only allowed articles
-                toRemove = Math.min(toRemove, canBeDeleted.size());
-                for (int i = 0; i < toRemove; i++)
-                {
-                    IArticle article = canBeDeleted.get(i);
-                    removeArticle(article);
+                    processingFinished();
                 }
+            } finally
+            {
+                endChange(started);
             }
-
-            processingFinished();
         }
+
+        fireArticlesEvents();
     }
 
     /**
@@ -911,7 +1330,7 @@ public abstract class DataFeed extends AbstractFeed
      * If removal of unread articles isn't allowed then the read articles may be
      * removed even if they are in the head of the feed to match the limit setting.
      */
-    public synchronized void clean()
+    public void clean()
     {
         clean(getPurgeLimitCombined(), false);
     }
@@ -1184,6 +1603,7 @@ public abstract class DataFeed extends AbstractFeed
         article.setLink(item.getLink());
         article.setPublicationDate(item.getPublicationDate());
         article.setSubject(StringUtils.unescape(item.getSubject()));
+        article.setEnclosures(item.getEnclosures());
         article.getPlainText(); // stimulate plain text creation
 
         // Register this feed as candidate to have proper key checks
@@ -1383,7 +1803,7 @@ public abstract class DataFeed extends AbstractFeed
     /**
      * Listens to changes in contained articles and updates own state.
      */
-    private class ArticlesListener implements IArticleListener
+    private class ArticlesListener implements IArticlesReadListener
     {
         /**
          * Invoked when the property of the article has been changed.
@@ -1398,12 +1818,171 @@ public abstract class DataFeed extends AbstractFeed
         {
             if (IArticle.PROP_READ.equals(property))
             {
-                synchronized (DataFeed.this)
+                boolean readNow = (Boolean)newValue;
+                unreadArticlesChanged(readNow ? -1 : 1);
+            }
+        }
+
+        /**
+         * Invoked when articles have changed their read state in bulk.
+         *
+         * @param feed      feed the articles belong to.
+         * @param articles  articles which changed the state.
+         * @param read      <code>TRUE</code> if they are read now.
+         */
+        public void articlesReadChanged(IFeed feed, IArticle[] articles, boolean read)
+        {
+            unreadArticlesChanged(read ? -articles.length : articles.length);
+        }
+
+        /**
+         * Updates the unread articles counter and fires the event when the lock is released.
+         *
+         * @param delta number of articles which became unread (negative for read).
+         */
+        private void unreadArticlesChanged(int delta)
+        {
+            synchronized (DataFeed.this)
+            {
+                boolean started = beginChange();
+                try
+                {
+                    setUnreadArticlesCount(unreadArticlesCount + delta);
+                } finally
                 {
-                    boolean readNow = (Boolean)newValue;
-                    setUnreadArticlesCount(unreadArticlesCount + (readNow ? -1 : 1));
+                    endChange(started);
                 }
             }
+
+            fireArticlesEvents();
+        }
+    }
+
+    /**
+     * The change of articles applied under the lock. The articles are edited in the working
+     * copy of the snapshot, which is published at the end of the change, and the events are
+     * collected to be fired after the lock is released.
+     */
+    private static final class ArticlesChange
+    {
+        /** Snapshot the change is based on. */
+        private final IArticle[] base;
+        /** Working copy or <code>NULL</code> if nothing has been changed yet. */
+        private List<IArticle> working;
+        /** Events of the change. */
+        final List<ArticlesEvent> events = new ArrayList<ArticlesEvent>();
+
+        /**
+         * Creates the change.
+         *
+         * @param base snapshot the change is based on.
+         */
+        ArticlesChange(IArticle[] base)
+        {
+            this.base = base;
+        }
+
+        /**
+         * Returns current articles for reading.
+         *
+         * @return articles.
+         */
+        List<IArticle> view()
+        {
+            return working == null ? Arrays.asList(base) : working;
+        }
+
+        /**
+         * Returns current articles for editing.
+         *
+         * @return articles.
+         */
+        List<IArticle> edit()
+        {
+            if (working == null) working = new ArrayList<IArticle>(Arrays.asList(base));
+            return working;
+        }
+
+        /**
+         * Replaces current articles.
+         *
+         * @param list new articles.
+         */
+        void setArticles(List<IArticle> list)
+        {
+            working = list;
+        }
+
+        /**
+         * Returns <code>TRUE</code> if the articles were edited.
+         *
+         * @return <code>TRUE</code> if the articles were edited.
+         */
+        boolean isModified()
+        {
+            return working != null;
+        }
+
+        /**
+         * Returns current articles as the new snapshot.
+         *
+         * @return articles.
+         */
+        IArticle[] toArray()
+        {
+            return working == null ? base : working.toArray(new IArticle[working.size()]);
+        }
+    }
+
+    /**
+     * The event of applied change.
+     */
+    private static final class ArticlesEvent
+    {
+        /** Article added. */
+        static final int ADDED          = 0;
+        /** Article removed. */
+        static final int REMOVED        = 1;
+        /** Articles removed in batch. */
+        static final int BULK_REMOVED   = 2;
+        /** Unread articles count changed. */
+        static final int UNREAD_COUNT   = 3;
+
+        /** Type of the event. */
+        final int type;
+        /** Articles of the event. */
+        final IArticle[] articles;
+        /** Old unread articles count. */
+        final int oldCount;
+        /** New unread articles count. */
+        final int newCount;
+
+        /**
+         * Creates the event about articles.
+         *
+         * @param type      type of the event.
+         * @param articles  articles.
+         */
+        ArticlesEvent(int type, IArticle ... articles)
+        {
+            this.type = type;
+            this.articles = articles;
+            oldCount = 0;
+            newCount = 0;
+        }
+
+        /**
+         * Creates the event about unread articles count.
+         *
+         * @param oldCount  old count.
+         * @param newCount  new count.
+         */
+        ArticlesEvent(int oldCount, int newCount)
+        {
+            type = UNREAD_COUNT;
+            articles = null;
+            this.oldCount = oldCount;
+            this.newCount = newCount;
         }
     }
 }
@@ -29,24 +29,72 @@ import com.salas.bb.domain.querytypes.QueryType;
 import com.salas.bb.utils.IdentityList;
 
 import java.net.URL;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * Flat list of all feeds in the system.
+ * Flat list of all feeds in the system. Direct feeds are indexed by their XML URLs, query
+ * feeds by their types and parameters, and all feeds by their IDs. The indexes follow the
+ * changes of the feeds and can be used from any thread.
  */
 public class FeedsList
 {
     private final List<IFeed> feeds = new IdentityList<IFeed>();
+    /** Feeds in the list. Guarded by this. */
+    private final Map<IFeed, Boolean> members = new IdentityHashMap<IFeed, Boolean>();
+
+    /** Direct feeds by lower-case XML URL. */
+    private final KeyIndex<DirectFeed> directFeeds = new KeyIndex<DirectFeed>()
+    {
+        protected String keyOf(DirectFeed feed)
+        {
+            URL xmlURL = feed.getXmlURL();
+            return xmlURL == null ? null : urlKey(xmlURL.toString());
+        }
+    };
+
+    /** Query feeds by type and parameter. */
+    private final KeyIndex<QueryFeed> queryFeeds = new KeyIndex<QueryFeed>()
+    {
+        protected String keyOf(QueryFeed feed)
+        {
+            QueryType type = feed.getQueryType();
+            return type == null ? null : queryKey(type, feed.getParameter());
+        }
+    };
+
+    /** Search feeds in the order of addition. */
+    private final List<SearchFeed> searchFeeds = new CopyOnWriteArrayList<SearchFeed>();
+
+    /** All feeds by ID. */
+    private final IdIndex<IFeed> feedsByID = new IdIndex<IFeed>()
+    {
+        protected long getID(IFeed feed)
+        {
+            return feed.getID();
+        }
+    };
+
+    private final IFeedListener indexUpdater = new IndexUpdater();
 
     /**
      * Adds a feed.
      *
      * @param feed feed.
      */
-    public void add(IFeed feed)
+    public synchronized void add(IFeed feed)
     {
-        if (!feeds.contains(feed)) feeds.add(feed);
+        if (members.put(feed, Boolean.TRUE) == null)
+        {
+            feeds.add(feed);
+
+            // Listen before indexing to catch the changes made in between
+            feed.addListener(indexUpdater);
+            if (feed instanceof DirectFeed) directFeeds.add((DirectFeed)feed);
+            if (feed instanceof QueryFeed) queryFeeds.add((QueryFeed)feed);
+            if (feed instanceof SearchFeed) searchFeeds.add((SearchFeed)feed);
+            feedsByID.add(feed);
+        }
     }
 
     /**
@@ -54,9 +102,18 @@ public class FeedsList
      *
      * @param feed feed.
      */
-    public void remove(IFeed feed)
+    public synchronized void remove(IFeed feed)
     {
-        feeds.remove(feed);
+        if (members.remove(feed) != null)
+        {
+            feeds.remove(feed);
+
+            feed.removeListener(indexUpdater);
+            if (feed instanceof DirectFeed) directFeeds.remove((DirectFeed)feed);
+            if (feed instanceof QueryFeed) queryFeeds.remove((QueryFeed)feed);
+            if (feed instanceof SearchFeed) searchFeeds.remove(feed);
+            feedsByID.remove(feed);
+        }
     }
 
     /**
@@ -95,6 +152,32 @@ public class FeedsList
     // Finding feeds
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Returns feed similar to that specified.
+     *
+     * @param feed feed.
+     *
+     * @return feed or <code>NULL</code> if not found.
+     */
+    public IFeed findFeed(IFeed feed)
+    {
+        IFeed result;
+
+        if (feed instanceof DirectFeed)
+        {
+            result = findDirectFeed(((DirectFeed)feed).getXmlURL());
+        } else if (feed instanceof SearchFeed)
+        {
+            result = findSearchFeed(((SearchFeed)feed).getQuery());
+        } else
+        {
+            QueryFeed qfeed = (QueryFeed)feed;
+            result = findQueryFeed(qfeed.getQueryType(), qfeed.getParameter());
+        }
+
+        return result;
+    }
+
     /**
      * Returns static direct feed by its XML URL.
      *
@@ -120,21 +203,16 @@ public class FeedsList
         DirectFeed feed = null;
         String xmlUrlS = xmlUrl == null ? null : xmlUrl.toString();
 
-        for (int i = 0; feed == null && i < feeds.size(); i++)
+        for (DirectFeed dfeed : directFeeds.get(xmlUrlS == null ? null : urlKey(xmlUrlS)))
         {
-            IFeed ifeed = feeds.get(i);
-            if (ifeed instanceof DirectFeed)
-            {
-                DirectFeed dfeed = ((DirectFeed)ifeed);
-                URL feedUrl = dfeed.getXmlURL();
-                String feedUrlS = feedUrl == null ? null : feedUrl.toString();
-
-                if ((xmlUrlS == null && feedUrlS == null) ||
-                    (xmlUrlS != null &&
-                        (ignoreCase
-                            ? xmlUrlS.equalsIgnoreCase(feedUrlS)
-                            : xmlUrlS.equals(feedUrlS)))) feed = dfeed;
-            }
+            URL feedUrl = dfeed.getXmlURL();
+            String feedUrlS = feedUrl == null ? null : feedUrl.toString();
+
+            if ((xmlUrlS == null && feedUrlS == null) ||
+                (xmlUrlS != null &&
+                    (ignoreCase
+                        ? xmlUrlS.equalsIgnoreCase(feedUrlS)
+                        : xmlUrlS.equals(feedUrlS)))) feed = first(feed, dfeed);
         }
 
         return feed;
@@ -154,20 +232,14 @@ public class FeedsList
         
         QueryFeed feed = null;
 
-        for (int i = 0; feed == null && i < feeds.size(); i++)
+        for (QueryFeed qfeed : queryFeeds.get(queryKey(type, parameter)))
         {
-            IFeed ifeed = feeds.get(i);
-            if (ifeed instanceof QueryFeed)
-            {
-                QueryFeed qfeed = (QueryFeed)ifeed;
-
-                QueryType qfeedType = qfeed.getQueryType();
-                String qfeedParameter = qfeed.getParameter();
+            QueryType qfeedType = qfeed.getQueryType();
+            String qfeedParameter = qfeed.getParameter();
 
-                if (qfeedType != null && type.getType() == qfeedType.getType() &&
-                    ((parameter == null && qfeedParameter == null) ||
-                     (parameter != null && parameter.equals(qfeedParameter)))) feed = qfeed;
-            }
+            if (qfeedType != null && type.getType() == qfeedType.getType() &&
+                ((parameter == null && qfeedParameter == null) ||
+                 (parameter != null && parameter.equals(qfeedParameter)))) feed = first(feed, qfeed);
         }
 
         return feed;
@@ -184,20 +256,96 @@ public class FeedsList
     {
         SearchFeed feed = null;
 
-        for (int i = 0; feed == null && i < feeds.size(); i++)
+        for (Iterator<SearchFeed> it = searchFeeds.iterator(); feed == null && it.hasNext();)
         {
-            IFeed ifeed = feeds.get(i);
-            if (ifeed instanceof SearchFeed)
-            {
-                SearchFeed sfeed = (SearchFeed)ifeed;
-
-                Query sfeedQuery = sfeed.getQuery();
+            SearchFeed sfeed = it.next();
+            Query sfeedQuery = sfeed.getQuery();
 
-                if ((query == null && sfeedQuery == null) ||
-                    (query != null && query.equals(sfeedQuery))) feed = sfeed;
-            }
+            if ((query == null && sfeedQuery == null) ||
+                (query != null && query.equals(sfeedQuery))) feed = sfeed;
         }
 
         return feed;
     }
+
+    /**
+     * Returns a feed by its ID.
+     *
+     * @param id feed ID.
+     *
+     * @return feed or <code>NULL</code> if not found.
+     */
+    public IFeed findFeedByID(long id)
+    {
+        return feedsByID.get(id);
+    }
+
+    /**
+     * Returns the one of two matching feeds which goes first in the list.
+     *
+     * @param found     the feed found earlier or <code>NULL</code>.
+     * @param candidate another matching feed.
+     *
+     * @return the first of feeds.
+     */
+    private <T extends IFeed> T first(T found, T candidate)
+    {
+        if (found == null) return candidate;
+
+        synchronized (this)
+        {
+            return feeds.indexOf(candidate) < feeds.indexOf(found) ? candidate : found;
+        }
+    }
+
+    /**
+     * Returns the index key of the XML URL.
+     *
+     * @param xmlUrl URL.
+     *
+     * @return key.
+     */
+    private static String urlKey(String xmlUrl)
+    {
+        return xmlUrl.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Returns the index key of the query type and parameter.
+     *
+     * @param type      type of the query.
+     * @param parameter query parameter.
+     *
+     * @return key.
+     */
+    private static String queryKey(QueryType type, String parameter)
+    {
+        return type.getType() + ":" + (parameter == null ? "" : parameter);
+    }
+
+    /**
+     * Moves the feeds in the indexes when their keys change.
+     */
+    private class IndexUpdater extends FeedAdapter
+    {
+        /**
+         * Called when information in feed changed.
+         *
+         * @param feed     feed.
+         * @param property property of the feed.
+         * @param oldValue old property value.
+         * @param newValue new property value.
+         */
+        public void propertyChanged(IFeed feed, String property, Object oldValue, Object newValue)
+        {
+            if (feed instanceof DirectFeed && DirectFeed.PROP_XML_URL.equals(property))
+            {
+                directFeeds.update((DirectFeed)feed);
+            } else if (feed instanceof QueryFeed &&
+                (QueryFeed.PROP_QUERY_TYPE.equals(property) || QueryFeed.PROP_PARAMETER.equals(property)))
+            {
+                queryFeeds.update((QueryFeed)feed);
+            }
+        }
+    }
 }
@@ -40,6 +40,8 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * Set of guides. The guides are presented in an order. Each time the guide is added, removed
  * or moved the event is fired to notify the listeners.
  *
+ * Guides are indexed by their titles and IDs for the quick lookups.
+ *
  * This implementation is completely thread-safe.
  */
 public class GuidesSet
@@ -49,6 +51,34 @@ public class GuidesSet
     private final List<IGuidesSetListener> listeners;
     private final GuidesListener guidesListener;
 
+    /** Guides by title. */
+    private final KeyIndex<IGuide> guidesByTitle = new KeyIndex<IGuide>()
+    {
+        protected String keyOf(IGuide guide)
+        {
+            return guide.getTitle();
+        }
+    };
+
+    /** Guides by lower-case publishing title. */
+    private final KeyIndex<IGuide> guidesByPublishingTitle = new KeyIndex<IGuide>()
+    {
+        protected String keyOf(IGuide guide)
+        {
+            String title = guide.getPublishingTitle();
+            return title == null ? null : publishingTitleKey(title);
+        }
+    };
+
+    /** Guides by ID. */
+    private final IdIndex<IGuide> guidesByID = new IdIndex<IGuide>()
+    {
+        protected long getID(IGuide guide)
+        {
+            return guide.getID();
+        }
+    };
+
     /**
      * Creates empty guides set.
      */
@@ -113,6 +143,9 @@ public class GuidesSet
             if (index > -1) guides.add(index, guide); else guides.add(guide);
 
             guide.addListener(guidesListener);
+            guidesByTitle.add(guide);
+            guidesByPublishingTitle.add(guide);
+            guidesByID.add(guide);
 
             // move all feeds from the guide to the feeds list
             int count = guide.getFeedsCount();
@@ -144,6 +177,9 @@ public class GuidesSet
             guide.removeChildren();
             guides.remove(guide);
             guide.removeListener(guidesListener);
+            guidesByTitle.remove(guide);
+            guidesByPublishingTitle.remove(guide);
+            guidesByID.remove(guide);
             fireGuideRemoved(guide, index);
         }
 
@@ -276,21 +312,7 @@ public class GuidesSet
      */
     public IFeed findFeed(IFeed feed)
     {
-        IFeed result;
-
-        if (feed instanceof DirectFeed)
-        {
-            result = findDirectFeed(((DirectFeed)feed).getXmlURL());
-        } else if (feed instanceof SearchFeed)
-        {
-            result = findSearchFeed(((SearchFeed)feed).getQuery());
-        } else
-        {
-            QueryFeed qfeed = (QueryFeed)feed;
-            result = findQueryFeed(qfeed.getQueryType(), qfeed.getParameter());
-        }
-
-        return result;
+        return feedsList.findFeed(feed);
     }
 
     /**
@@ -333,11 +355,20 @@ public class GuidesSet
 
         List<IGuide> guidesCol = new ArrayList<IGuide>();
 
-        for (IGuide guide : guides)
+        for (IGuide guide : guidesByTitle.get(title))
         {
-            if (guide.getTitle().equals(title)) guidesCol.add(guide);
+            if (title.equals(guide.getTitle())) guidesCol.add(guide);
         }
 
+        // Guides could be moved since they were indexed
+        if (guidesCol.size() > 1) Collections.sort(guidesCol, new Comparator<IGuide>()
+        {
+            public int compare(IGuide g1, IGuide g2)
+            {
+                return guides.indexOf(g1) - guides.indexOf(g2);
+            }
+        });
+
         return guidesCol;
     }
 
@@ -507,13 +538,15 @@ public class GuidesSet
      */
     public IGuide getGuideByPublishingTitle(String publishingTitle)
     {
+        if (publishingTitle == null) return null;
+
         IGuide guide = null;
 
-        for (int i = 0; guide == null && i < guides.size(); i++)
+        for (IGuide iguide : guidesByPublishingTitle.get(publishingTitleKey(publishingTitle)))
         {
-            IGuide iguide = guides.get(i);
             String title = iguide.getPublishingTitle();
-            if (title != null && title.equalsIgnoreCase(publishingTitle)) guide = iguide;
+            if (title != null && title.equalsIgnoreCase(publishingTitle) &&
+                (guide == null || isBefore(iguide, guide))) guide = iguide;
         }
 
         return guide;
@@ -645,15 +678,9 @@ public class GuidesSet
      */
     public StandardGuide findGuideByID(Long id)
     {
-        if (id != null)
-        {
-            for (IGuide g : guides)
-            {
-                if (g.getID() == id && (g instanceof StandardGuide)) return (StandardGuide)g;
-            }
-        }
+        IGuide guide = id == null ? null : guidesByID.get(id);
 
-        return null;
+        return guide instanceof StandardGuide ? (StandardGuide)guide : null;
     }
 
     /**
@@ -665,13 +692,32 @@ public class GuidesSet
      */
     public IFeed findFeedByID(long id)
     {
-        List<IFeed> feeds = getFeedsList().getFeeds();
-        for (IFeed feed : feeds)
-        {
-            if (id == feed.getID()) return feed;
-        }
+        return feedsList.findFeedByID(id);
+    }
 
-        return null;
+    /**
+     * Checks if one guide goes before the other in the list.
+     *
+     * @param guide first guide.
+     * @param other other guide.
+     *
+     * @return <code>TRUE</code> if the first guide goes before the other.
+     */
+    private synchronized boolean isBefore(IGuide guide, IGuide other)
+    {
+        return guides.indexOf(guide) < guides.indexOf(other);
+    }
+
+    /**
+     * Returns the index key of the publishing title.
+     *
+     * @param publishingTitle publishing title.
+     *
+     * @return key.
+     */
+    private static String publishingTitleKey(String publishingTitle)
+    {
+        return publishingTitle.toLowerCase(Locale.ENGLISH);
     }
 
     /**
@@ -704,5 +750,24 @@ public class GuidesSet
 
             if (!feed.isDynamic() && feed.getParentGuides().length == 0) feedsList.remove(feed);
         }
+
+        /**
+         * Invoked when the property of the guide has been changed.
+         *
+         * @param guide    guide owning the property.
+         * @param property property name.
+         * @param oldValue old property value.
+         * @param newValue new property value.
+         */
+        public void propertyChanged(IGuide guide, String property, Object oldValue, Object newValue)
+        {
+            if (IGuide.PROP_TITLE.equals(property))
+            {
+                guidesByTitle.update(guide);
+            } else if (IGuide.PROP_PUBLISHING_TITLE.equals(property))
+            {
+                guidesByPublishingTitle.update(guide);
+            }
+        }
     }
 }
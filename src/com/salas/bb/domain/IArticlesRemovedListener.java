@@ -0,0 +1,41 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.domain;
+
+/**
+ * Listener of feed events which can take the removal of many articles at once. When
+ * a feed purges a batch of articles such listener gets single notification with all
+ * of them instead of separate <code>articleRemoved</code> calls.
+ */
+public interface IArticlesRemovedListener extends IFeedListener
+{
+    /**
+     * Invoked when articles have been removed from the feed in bulk.
+     *
+     * @param feed      feed.
+     * @param articles  removed articles.
+     */
+    void articlesRemoved(IFeed feed, IArticle[] articles);
+}
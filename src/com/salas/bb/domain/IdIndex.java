@@ -0,0 +1,142 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.domain;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hash index of objects by their database ID. The objects get their IDs from the
+ * persistence layer after they are added to the index and without any events, so
+ * the objects without an ID are kept aside and checked on the first lookup miss.
+ * Lookups of indexed IDs go without locking.
+ *
+ * @param <V> type of indexed objects.
+ */
+abstract class IdIndex<V>
+{
+    /** ID of the object not saved to the database yet. */
+    private static final long NO_ID = -1;
+
+    /** ID to the object. */
+    private final ConcurrentMap<Long, V> values = new ConcurrentHashMap<Long, V>();
+    /** Object to the ID it is indexed under. Guarded by this. */
+    private final Map<V, Long> ids = new IdentityHashMap<V, Long>();
+    /** Objects which aren't indexed by ID yet. Guarded by this. */
+    private final Map<V, Boolean> pending = new IdentityHashMap<V, Boolean>();
+
+    /**
+     * Returns the current ID of the object.
+     *
+     * @param value object.
+     *
+     * @return ID.
+     */
+    protected abstract long getID(V value);
+
+    /**
+     * Adds the object to the index.
+     *
+     * @param value object.
+     */
+    synchronized void add(V value)
+    {
+        if (!ids.containsKey(value) && !pending.containsKey(value) && !index(value))
+        {
+            pending.put(value, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Removes the object from the index.
+     *
+     * @param value object.
+     */
+    synchronized void remove(V value)
+    {
+        pending.remove(value);
+
+        Long id = ids.remove(value);
+        if (id != null) values.remove(id, value);
+    }
+
+    /**
+     * Returns the object with the given ID.
+     *
+     * @param id ID.
+     *
+     * @return object or <code>NULL</code> if not found.
+     */
+    V get(long id)
+    {
+        V value = values.get(id);
+        return value != null && getID(value) == id ? value : lookup(id);
+    }
+
+    /**
+     * Brings the index up to date with current object IDs and looks for the object again.
+     *
+     * @param id ID.
+     *
+     * @return object or <code>NULL</code> if not found.
+     */
+    private synchronized V lookup(long id)
+    {
+        // The object got a different ID since it was indexed
+        V value = values.get(id);
+        if (value != null && getID(value) != id)
+        {
+            values.remove(id);
+            ids.remove(value);
+            pending.put(value, Boolean.TRUE);
+        }
+
+        Iterator<V> it = pending.keySet().iterator();
+        while (it.hasNext()) if (index(it.next())) it.remove();
+
+        value = values.get(id);
+        return value != null && getID(value) == id ? value : null;
+    }
+
+    /**
+     * Puts the object in the index by its current ID unless it has no ID or the ID is
+     * already taken.
+     *
+     * @param value object.
+     *
+     * @return <code>TRUE</code> if indexed.
+     */
+    private boolean index(V value)
+    {
+        long id = getID(value);
+        if (id == NO_ID || values.putIfAbsent(id, value) != null) return false;
+
+        ids.put(value, id);
+        return true;
+    }
+}
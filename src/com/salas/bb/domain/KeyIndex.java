@@ -0,0 +1,159 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.domain;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hash index of objects by a string key. Several objects can share the same key. The
+ * lists of objects under a key are copied on every change and never modified once
+ * published, so lookups go without locking and may run concurrently with the updates.
+ * The objects sharing a key are listed in the order they were indexed.
+ *
+ * @param <V> type of indexed objects.
+ */
+abstract class KeyIndex<V>
+{
+    /** Key of objects which have no key of their own. */
+    static final String NO_KEY = "";
+
+    /** Key to the immutable list of objects indexed under it. */
+    private final ConcurrentMap<String, List<V>> values = new ConcurrentHashMap<String, List<V>>();
+    /** Object to the key it is currently indexed under. Guarded by this. */
+    private final Map<V, String> keys = new IdentityHashMap<V, String>();
+
+    /**
+     * Returns the current key of the object.
+     *
+     * @param value object.
+     *
+     * @return key or <code>NULL</code> to use <code>NO_KEY</code>.
+     */
+    protected abstract String keyOf(V value);
+
+    /**
+     * Adds the object to the index under its current key.
+     *
+     * @param value object.
+     */
+    synchronized void add(V value)
+    {
+        if (keys.containsKey(value)) return;
+
+        String key = currentKey(value);
+        keys.put(value, key);
+        link(key, value);
+    }
+
+    /**
+     * Moves the object under its current key if it changed since the last time. Does
+     * nothing if the object isn't in the index.
+     *
+     * @param value object.
+     */
+    synchronized void update(V value)
+    {
+        String oldKey = keys.get(value);
+        if (oldKey == null) return;
+
+        String key = currentKey(value);
+        if (!oldKey.equals(key))
+        {
+            unlink(oldKey, value);
+            keys.put(value, key);
+            link(key, value);
+        }
+    }
+
+    /**
+     * Removes the object from the index.
+     *
+     * @param value object.
+     */
+    synchronized void remove(V value)
+    {
+        String key = keys.remove(value);
+        if (key != null) unlink(key, value);
+    }
+
+    /**
+     * Returns all objects indexed under the key.
+     *
+     * @param key key.
+     *
+     * @return immutable list of objects.
+     */
+    List<V> get(String key)
+    {
+        List<V> list = values.get(key == null ? NO_KEY : key);
+        return list == null ? Collections.<V>emptyList() : list;
+    }
+
+    /**
+     * Returns the current key of the object.
+     *
+     * @param value object.
+     *
+     * @return key.
+     */
+    private String currentKey(V value)
+    {
+        String key = keyOf(value);
+        return key == null ? NO_KEY : key;
+    }
+
+    /**
+     * Publishes the new list of objects with the given object appended.
+     *
+     * @param key   key.
+     * @param value object.
+     */
+    private void link(String key, V value)
+    {
+        List<V> oldList = values.get(key);
+        List<V> list = oldList == null ? new ArrayList<V>(1) : new ArrayList<V>(oldList);
+        list.add(value);
+        values.put(key, Collections.unmodifiableList(list));
+    }
+
+    /**
+     * Publishes the new list of objects without the given object.
+     *
+     * @param key   key.
+     * @param value object.
+     */
+    private void unlink(String key, V value)
+    {
+        List<V> oldList = values.get(key);
+        if (oldList == null) return;
+
+        List<V> list = new ArrayList<V>(oldList.size());
+        for (V v : oldList) if (v != value) list.add(v);
+
+        if (list.isEmpty()) values.remove(key); else values.put(key, Collections.unmodifiableList(list));
+    }
+}
@@ -294,10 +294,10 @@ public class QueryFeed extends NetworkFeed
     {
         if (checkDup && !isDedupEnabled()) return;
 
-        int count = getArticlesCount();
-        for (int i = 0; i < count; i++)
+        IArticle[] articles = getArticles();
+        for (int i = articles.length - 1; i >= 0; i--)
         {
-            IArticle article = getArticleAt(count - i - 1);
+            IArticle article = articles[i];
             if (!article.isPinned() && (!checkDup ||
                 isDuplicate(article, getDedupFrom(), getDedupTo(), getArticlesList())))
             {
@@ -0,0 +1,198 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.domain;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bulk change of the read state of articles. The articles are marked by the feeds they
+ * belong to, one batch per feed, so that each feed fires single aggregate event instead
+ * of one event per article. The articles which actually changed their state are
+ * remembered to let the change be undone.
+ */
+public class ReadStateChange
+{
+    private final boolean read;
+
+    /** Feeds to the articles which changed the state. Guarded by this. */
+    private final Map<DataFeed, List<IArticle>> changes;
+    /** Articles out of data feeds which changed the state. Guarded by this. */
+    private final List<IArticle> looseArticles;
+    /** Number of articles which changed the state. Guarded by this. */
+    private int count;
+
+    /**
+     * Creates the change.
+     *
+     * @param read <code>TRUE</code> to mark articles read, <code>FALSE</code> -- unread.
+     */
+    public ReadStateChange(boolean read)
+    {
+        this.read = read;
+
+        changes = new LinkedHashMap<DataFeed, List<IArticle>>();
+        looseArticles = new ArrayList<IArticle>();
+        count = 0;
+    }
+
+    /**
+     * Returns <code>TRUE</code> if the change marks articles read.
+     *
+     * @return <code>TRUE</code> if the change marks articles read.
+     */
+    public boolean isRead()
+    {
+        return read;
+    }
+
+    /**
+     * Returns the number of articles which changed their state.
+     *
+     * @return number of articles.
+     */
+    public synchronized int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Marks all articles of the feeds.
+     *
+     * @param feeds feeds.
+     *
+     * @return number of articles which changed their state.
+     */
+    public int addFeeds(IFeed ... feeds)
+    {
+        int changed = 0;
+
+        for (IFeed feed : feeds)
+        {
+            if (feed instanceof DataFeed)
+            {
+                DataFeed dfeed = (DataFeed)feed;
+                changed += record(dfeed, dfeed.setArticlesRead(read, dfeed.getArticles()));
+            } else changed += addArticles(feed.getArticles());
+        }
+
+        return changed;
+    }
+
+    /**
+     * Marks the articles. Articles are grouped by their feeds.
+     *
+     * @param articles articles.
+     *
+     * @return number of articles which changed their state.
+     */
+    public int addArticles(IArticle ... articles)
+    {
+        int changed = 0;
+        Map<DataFeed, List<IArticle>> groups = new LinkedHashMap<DataFeed, List<IArticle>>();
+
+        for (IArticle article : articles)
+        {
+            IFeed feed = article.getFeed();
+            if (feed instanceof DataFeed)
+            {
+                List<IArticle> group = groups.get(feed);
+                if (group == null)
+                {
+                    group = new ArrayList<IArticle>();
+                    groups.put((DataFeed)feed, group);
+                }
+                group.add(article);
+            } else if (article.isRead() != read)
+            {
+                article.setRead(read);
+                synchronized (this)
+                {
+                    looseArticles.add(article);
+                    count++;
+                }
+                changed++;
+            }
+        }
+
+        for (Map.Entry<DataFeed, List<IArticle>> entry : groups.entrySet())
+        {
+            DataFeed feed = entry.getKey();
+            List<IArticle> group = entry.getValue();
+            changed += record(feed, feed.setArticlesRead(read, group.toArray(new IArticle[group.size()])));
+        }
+
+        return changed;
+    }
+
+    /**
+     * Reverts the read state of all articles which were changed.
+     *
+     * @return the change which has reverted this one.
+     */
+    public synchronized ReadStateChange undo()
+    {
+        ReadStateChange reverse = new ReadStateChange(!read);
+
+        for (Map.Entry<DataFeed, List<IArticle>> entry : changes.entrySet())
+        {
+            DataFeed feed = entry.getKey();
+            List<IArticle> articles = entry.getValue();
+            reverse.record(feed, feed.setArticlesRead(!read, articles.toArray(new IArticle[articles.size()])));
+        }
+
+        reverse.addArticles(looseArticles.toArray(new IArticle[looseArticles.size()]));
+
+        return reverse;
+    }
+
+    /**
+     * Records the articles of the feed which changed their state.
+     *
+     * @param feed      feed.
+     * @param articles  changed articles.
+     *
+     * @return number of articles.
+     */
+    private synchronized int record(DataFeed feed, IArticle[] articles)
+    {
+        if (articles.length > 0)
+        {
+            List<IArticle> list = changes.get(feed);
+            if (list == null)
+            {
+                list = new ArrayList<IArticle>(articles.length);
+                changes.put(feed, list);
+            }
+
+            for (IArticle article : articles) list.add(article);
+            count += articles.length;
+        }
+
+        return articles.length;
+    }
+}
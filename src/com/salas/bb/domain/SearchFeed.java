@@ -52,6 +52,8 @@ public class SearchFeed extends AbstractFeed
     public static final String PROP_DEDUP_UPDATED = "dedupUpdated";
 
     private final List<IArticle>  articles;
+    /** Snapshot of visible articles which can be read without locking. */
+    private volatile IArticle[]   visibleArticles;
 
     private String      baseTitle;
     private int         articlesLimit;
@@ -78,6 +80,7 @@ public class SearchFeed extends AbstractFeed
         // The LinkedList was replaced by the ArrayList because of EDT locks and
         // performance issues
         articles = new ArrayList<IArticle>();
+        visibleArticles = new IArticle[0];
         articlesListener = new ArticlesListener();
 
         super.setCustomViewModeEnabled(true);
@@ -94,9 +97,9 @@ public class SearchFeed extends AbstractFeed
      *
      * @return article object.
      */
-    public synchronized IArticle getArticleAt(int index)
+    public IArticle getArticleAt(int index)
     {
-        return articles.get(index);
+        return visibleArticles[index];
     }
 
     /**
@@ -104,9 +107,9 @@ public class SearchFeed extends AbstractFeed
      *
      * @return number of articles.
      */
-    public synchronized int getArticlesCount()
+    public int getArticlesCount()
     {
-        return Math.min(articles.size(), articlesLimit);
+        return visibleArticles.length;
     }
 
     /**
@@ -121,26 +124,24 @@ public class SearchFeed extends AbstractFeed
     }
 
     /**
-     * Returns the list of all articles which are currently in the feed.
+     * Returns the list of all articles which are currently in the feed. The array is
+     * the shared snapshot and must not be modified.
      *
      * @return all articles at this moment.
      */
     public IArticle[] getArticles()
     {
-        int visibleArticlesCount;
-        IArticle[] fullList;
-
-        synchronized (this)
-        {
-            visibleArticlesCount = getArticlesCount();
-            fullList = articles.toArray(new IArticle[articles.size()]);
-        }
-
-        // Leave only visible articles in the list.
-        IArticle[] cropped = new IArticle[visibleArticlesCount];
-        System.arraycopy(fullList, 0, cropped, 0, visibleArticlesCount);
+        return visibleArticles;
+    }
 
-        return cropped;
+    /**
+     * Publishes the new snapshot of visible articles. Must be called under the lock
+     * after every change to the list of articles or the limit.
+     */
+    private void publishArticles()
+    {
+        int count = Math.min(articles.size(), articlesLimit);
+        visibleArticles = articles.subList(0, count).toArray(new IArticle[count]);
     }
 
     /**
@@ -203,20 +204,21 @@ public class SearchFeed extends AbstractFeed
 
         int oldLimit = articlesLimit;
         articlesLimit = anArticlesLimit;
+        publishArticles();
 
         if (isVisible(oldLimit))
         {
             int end = Math.min(articles.size(), articlesLimit);
             for (int i = oldLimit; i < end; i++)
             {
-                fireArticleAdded(getArticleAt(i));
+                fireArticleAdded(articles.get(i));
             }
         } else
         {
             int size = articles.size();
             for (int i = size - 1; i >= articlesLimit; i--)
             {
-                fireArticleRemoved(getArticleAt(i));
+                fireArticleRemoved(articles.get(i));
             }
         }
 
@@ -305,12 +307,13 @@ public class SearchFeed extends AbstractFeed
 
         articles.add(insertionIndex, anArticle);
         anArticle.addListener(articlesListener);
+        publishArticles();
 
         if (isVisible(insertionIndex))
         {
             fireArticleAdded(anArticle);
 
-            if (articles.size() > articlesLimit) removeArticle(getArticleAt(articlesLimit));
+            if (articles.size() > articlesLimit) removeArticle(articles.get(articlesLimit));
         }
 
         int newUnread = getUnreadArticlesCount();
@@ -335,6 +338,7 @@ public class SearchFeed extends AbstractFeed
         if (articles.remove(anArticle))
         {
             anArticle.removeListener(articlesListener);
+            publishArticles();
             fireArticleRemoved(anArticle);
 
             int newUnread = getUnreadArticlesCount();
@@ -354,7 +358,7 @@ public class SearchFeed extends AbstractFeed
         for (int i = 0; i < count; i++)
         {
             int index = count - i - 1;
-            IArticle article = getArticleAt(index);
+            IArticle article = articles.get(index);
             if (feed == null || article.getFeed() == feed) reviewArticle(article);
         }
     }
@@ -370,11 +374,22 @@ public class SearchFeed extends AbstractFeed
 // instead of deleted one.
             if (isVisible(index) && articles.size() >= articlesLimit)
             {
-                fireArticleAdded(getArticleAt(articlesLimit - 1));
+                fireArticleAdded(articles.get(articlesLimit - 1));
             }
         }
     }
 
+    /**
+     * Marks all articles of this feed read or unread. The articles are marked in batches by
+     * the feeds they belong to.
+     *
+     * @param read TRUE if mark as read.
+     */
+    public void setRead(boolean read)
+    {
+        new ReadStateChange(read).addArticles(getArticles());
+    }
+
     /**
      * Removes all listener registrations.
      */
@@ -386,7 +401,7 @@ public class SearchFeed extends AbstractFeed
     /**
      * Listens for changes in all articles, this feed is referring to.
      */
-    private class ArticlesListener implements IArticleListener
+    private class ArticlesListener implements IArticlesReadListener
     {
         /**
          * Invoked when the property of the article has been changed.
@@ -416,6 +431,26 @@ public class SearchFeed extends AbstractFeed
                     new Integer(unread));
             }
         }
+
+        /**
+         * Invoked when articles have changed their read state in bulk.
+         *
+         * @param feed      feed the articles belong to.
+         * @param articles  articles which changed the state.
+         * @param read      <code>TRUE</code> if they are read now.
+         */
+        public void articlesReadChanged(IFeed feed, IArticle[] articles, boolean read)
+        {
+            synchronized (SearchFeed.this)
+            {
+                for (IArticle article : articles) reviewArticle(article);
+            }
+
+            int unread = getUnreadArticlesCount();
+            firePropertyChanged(PROP_UNREAD_ARTICLES_COUNT,
+                new Integer(read ? unread + articles.length : unread - articles.length),
+                new Integer(unread));
+        }
     }
 
     /**
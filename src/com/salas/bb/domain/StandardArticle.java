@@ -44,6 +44,8 @@ public class StandardArticle extends AbstractArticle implements ITaggable
     private String          tagsDescription;
     private String          tagsExtended;
 
+    private String[]        enclosures;
+
     /**
      * Creates standard article.
      *
@@ -92,6 +94,27 @@ public class StandardArticle extends AbstractArticle implements ITaggable
         return plainText;
     }
 
+    /**
+     * Returns the enclosure locations taken from the feed item. They are known only
+     * for articles created from freshly parsed items and aren't stored in the database.
+     *
+     * @return enclosure URLs (can be relative to the article link) or <code>NULL</code> if unknown.
+     */
+    public String[] getEnclosures()
+    {
+        return enclosures;
+    }
+
+    /**
+     * Sets the enclosure locations taken from the feed item.
+     *
+     * @param aEnclosures enclosure URLs.
+     */
+    public void setEnclosures(String[] aEnclosures)
+    {
+        enclosures = aEnclosures;
+    }
+
     // ---------------------------------------------------------------------------------------------
     // ITaggable implementation
     // ---------------------------------------------------------------------------------------------
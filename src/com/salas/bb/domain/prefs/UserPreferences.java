@@ -130,6 +130,12 @@ public final class UserPreferences extends Model
     /** Show all text anti-aliased. */
     public static final String PROP_AA_TEXT = "antiAliasText";
 
+    /** Prefetch images of new articles in background. */
+    public static final String PROP_PREFETCH_IMAGES = "prefetchImages";
+
+    /** Total bandwidth of enclosure downloads in KB/s. */
+    public static final String PROP_ENCLOSURES_BANDWIDTH = "enclosuresBandwidth";
+
     /** Tags storage property name. */
     public static final String PROP_TAGS_STORAGE = "tagsStorage";
     /** Tagging system auto-fetch. */
@@ -201,6 +207,8 @@ public final class UserPreferences extends Model
     private static final boolean DEFAULT_USE_PERSISTENCE            = true;
     private static final boolean DEFAULT_COPY_LINKS_IN_HREF_FORMAT  = false;
     private static final boolean DEFAULT_AA_TEXT                    = false;
+    private static final boolean DEFAULT_PREFETCH_IMAGES            = false;
+    private static final int DEFAULT_ENCLOSURES_BANDWIDTH           = 0;
     private static final int DEFAULT_TAGS_STORAGE                   = TAGS_STORAGE_BB_SERVICE;
     private static final boolean DEFAULT_TAGS_AUTOFETCH             = false;
     private static final String DEFAULT_TAGS_DELICIOUS_PASSWORD     = Constants.EMPTY_STRING;
@@ -251,6 +259,9 @@ public final class UserPreferences extends Model
     /** Maximum for feed import limitation. */
     public static final int MAX_FEED_IMPORT_LIMITATION = 500;
 
+    /** Maximum for enclosure downloads bandwidth (KB/s). */
+    public static final int MAX_ENCLOSURES_BANDWIDTH = 102400;
+
     // If TRUE, then whenever selection moves to another Channel, we mark all Articles read.
     private boolean markReadWhenChangingChannels = DEFAULT_MARK_READ_WHEN_CHANGING_CHANNELS;
 
@@ -318,6 +329,12 @@ public final class UserPreferences extends Model
     // Show all text anti-aliased
     private boolean antiAliasText = DEFAULT_AA_TEXT;
 
+    /** Prefetch images of new articles in background. */
+    private boolean prefetchImages = DEFAULT_PREFETCH_IMAGES;
+
+    /** Total bandwidth of enclosure downloads in KB/s (0 for unlimited). */
+    private int enclosuresBandwidth = DEFAULT_ENCLOSURES_BANDWIDTH;
+
     /**
      * Tags storage type.
      *
@@ -1181,6 +1198,52 @@ public final class UserPreferences extends Model
         firePropertyChange(PROP_TAGS_STORAGE, oldValue, tagsStorage);
     }
 
+    /**
+     * Returns <code>TRUE</code> if images of new articles should be prefetched in background.
+     *
+     * @return <code>TRUE</code> to prefetch.
+     */
+    public boolean isPrefetchImages()
+    {
+        return prefetchImages;
+    }
+
+    /**
+     * Enables / disables prefetching of images of new articles in background.
+     *
+     * @param value <code>TRUE</code> to prefetch.
+     */
+    public void setPrefetchImages(boolean value)
+    {
+        boolean old = prefetchImages;
+        prefetchImages = value;
+
+        firePropertyChange(PROP_PREFETCH_IMAGES, old, value);
+    }
+
+    /**
+     * Returns the total bandwidth of enclosure downloads.
+     *
+     * @return bandwidth in KB/s or <code>0</code> for unlimited.
+     */
+    public int getEnclosuresBandwidth()
+    {
+        return enclosuresBandwidth;
+    }
+
+    /**
+     * Sets the total bandwidth of enclosure downloads.
+     *
+     * @param value bandwidth in KB/s or <code>0</code> for unlimited.
+     */
+    public void setEnclosuresBandwidth(int value)
+    {
+        int old = enclosuresBandwidth;
+        enclosuresBandwidth = value;
+
+        firePropertyChange(PROP_ENCLOSURES_BANDWIDTH, old, value);
+    }
+
     /**
      * Returns <code>TRUE</code> if shared tags should be fetched automatically
      * upon tags window opening.
@@ -2262,6 +2325,8 @@ public final class UserPreferences extends Model
         setCopyLinksInHrefFormat(prefs.getBoolean(PROP_COPY_LINKS_IN_HREF_FORMAT,
             DEFAULT_COPY_LINKS_IN_HREF_FORMAT));
         setAntiAliasText(prefs.getBoolean(PROP_AA_TEXT, DEFAULT_AA_TEXT));
+        setPrefetchImages(prefs.getBoolean(PROP_PREFETCH_IMAGES, DEFAULT_PREFETCH_IMAGES));
+        setEnclosuresBandwidth(prefs.getInt(PROP_ENCLOSURES_BANDWIDTH, DEFAULT_ENCLOSURES_BANDWIDTH));
 
         setTagsStorage(prefs.getInt(PROP_TAGS_STORAGE, DEFAULT_TAGS_STORAGE));
         setTagsDeliciousUser(prefs.get(PROP_TAGS_DELICIOUS_USER, DEFAULT_TAGS_DELICIOUS_USER));
@@ -2391,6 +2456,8 @@ public final class UserPreferences extends Model
         prefs.putBoolean(PROP_PRESERVE_UNREAD, isPreserveUnread());
         prefs.putBoolean(PROP_COPY_LINKS_IN_HREF_FORMAT, isCopyLinksInHrefFormat());
         prefs.putBoolean(PROP_AA_TEXT, isAntiAliasText());
+        prefs.putBoolean(PROP_PREFETCH_IMAGES, isPrefetchImages());
+        prefs.putInt(PROP_ENCLOSURES_BANDWIDTH, getEnclosuresBandwidth());
 
         prefs.putInt(PROP_TAGS_STORAGE, getTagsStorage());
         prefs.put(PROP_TAGS_DELICIOUS_USER, getTagsDeliciousUser());
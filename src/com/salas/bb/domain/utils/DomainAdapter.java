@@ -210,6 +210,18 @@ public class DomainAdapter implements IDomainListener
     {
     }
 
+    /**
+     * Invoked when articles have been removed from the feed in bulk. By default reports
+     * each article as a separate removal.
+     *
+     * @param feed      feed.
+     * @param articles  removed articles.
+     */
+    public void articlesRemoved(IFeed feed, IArticle[] articles)
+    {
+        for (IArticle article : articles) articleRemoved(feed, article);
+    }
+
     /**
      * Invoked when the property of the feed has been changed.
      *
@@ -234,6 +246,19 @@ public class DomainAdapter implements IDomainListener
     {
     }
 
+    /**
+     * Invoked when articles have changed their read state in bulk. By default reports each
+     * article as a separate change of the read property.
+     *
+     * @param feed      feed the articles belong to.
+     * @param articles  articles which changed the state.
+     * @param read      <code>TRUE</code> if they are read now.
+     */
+    public void articlesReadChanged(IFeed feed, IArticle[] articles, boolean read)
+    {
+        for (IArticle article : articles) propertyChanged(article, IArticle.PROP_READ, !read, read);
+    }
+
     /**
      * Invoked when new feed has been added to the reading list.
      *
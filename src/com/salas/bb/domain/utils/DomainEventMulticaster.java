@@ -326,6 +326,18 @@ public class DomainEventMulticaster implements IDomainListener
         second.articleRemoved(feed, article);
     }
 
+    /**
+     * Invoked when articles have been removed from the feed in bulk.
+     *
+     * @param feed      feed.
+     * @param articles  removed articles.
+     */
+    public void articlesRemoved(IFeed feed, IArticle[] articles)
+    {
+        first.articlesRemoved(feed, articles);
+        second.articlesRemoved(feed, articles);
+    }
+
     /**
      * Invoked when the property of the feed has been changed.
      *
@@ -354,6 +366,19 @@ public class DomainEventMulticaster implements IDomainListener
         second.propertyChanged(article,  property, oldValue, newValue);
     }
 
+    /**
+     * Invoked when articles have changed their read state in bulk.
+     *
+     * @param feed      feed the articles belong to.
+     * @param articles  articles which changed the state.
+     * @param read      <code>TRUE</code> if they are read now.
+     */
+    public void articlesReadChanged(IFeed feed, IArticle[] articles, boolean read)
+    {
+        first.articlesReadChanged(feed, articles, read);
+        second.articlesReadChanged(feed, articles, read);
+    }
+
     /**
      * Invoked when new feed has been added to the reading list.
      *
@@ -27,6 +27,9 @@ package com.salas.bb.domain.utils;
 import com.salas.bb.domain.*;
 import com.salas.bb.domain.events.FeedRemovedEvent;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * This small utility allows to listen to changes in domain without actually
  * taking care of subscribing/unsubscribing the listeners when the objects are
@@ -386,6 +389,30 @@ public class DomainEventsListener extends DomainAdapter
         }
     }
 
+    /**
+     * Invoked when articles have been removed from the feed in bulk.
+     *
+     * @param feed      feed.
+     * @param articles  removed articles.
+     */
+    public void articlesRemoved(IFeed feed, IArticle[] articles)
+    {
+        List<IArticle> own = new ArrayList<IArticle>(articles.length);
+        for (IArticle article : articles)
+        {
+            if (article.getFeed() == feed)
+            {
+                article.removeListener(this);
+                own.add(article);
+            }
+        }
+
+        if (multicaster != null && own.size() > 0)
+        {
+            multicaster.articlesRemoved(feed, own.toArray(new IArticle[own.size()]));
+        }
+    }
+
     /**
      * Invoked when the property of the article has been changed.
      *
@@ -399,6 +426,18 @@ public class DomainEventsListener extends DomainAdapter
         if (multicaster != null) multicaster.propertyChanged(article, property, oldValue, newValue);
     }
 
+    /**
+     * Invoked when articles have changed their read state in bulk.
+     *
+     * @param feed      feed the articles belong to.
+     * @param articles  articles which changed the state.
+     * @param read      <code>TRUE</code> if they are read now.
+     */
+    public void articlesReadChanged(IFeed feed, IArticle[] articles, boolean read)
+    {
+        if (multicaster != null) multicaster.articlesReadChanged(feed, articles, read);
+    }
+
     /**
      * Invoked after new reading list is added to the guide.
      *
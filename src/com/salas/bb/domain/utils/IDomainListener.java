@@ -30,7 +30,7 @@ import com.salas.bb.domain.*;
  * Listener of all domain objects.
  */
 public interface IDomainListener extends IGuidesSetListener, IGuideListener,
-    IFeedListener, IArticleListener, IReadingListListener
+    IArticlesRemovedListener, IArticlesReadListener, IReadingListListener
 {
     /**
      * Invoked when a search feed adds some article to its list.
@@ -82,7 +82,9 @@ public final class ChangesMonitor extends DomainAdapter
     }
 
     /**
-     * Invoked when new guide has been added to the set.
+     * Invoked when new guide has been added to the set. The guides written to the database
+     * before adding, like imported ones, only get their positions updated with the last
+     * guide of the batch.
      *
      * @param set           guides set.
      * @param guide         added guide.
@@ -92,7 +94,13 @@ public final class ChangesMonitor extends DomainAdapter
     {
         try
         {
-            manager.insertGuide(guide, set.indexOf(guide));
+            if (guide.getID() == -1)
+            {
+                manager.insertGuide(guide, set.indexOf(guide));
+            } else if (lastInBatch)
+            {
+                manager.updateGuidePositions(set);
+            }
         } catch (PersistenceException e)
         {
             LOG.log(Level.SEVERE, MSG_PERS_OP_FAILED, e);
@@ -389,6 +397,26 @@ public final class ChangesMonitor extends DomainAdapter
         }
     }
 
+    /**
+     * Called when articles have been removed from the feed in bulk. All of them are
+     * removed from database in one transaction.
+     *
+     * @param feed      feed.
+     * @param articles  removed articles.
+     */
+    public void articlesRemoved(IFeed feed, IArticle[] articles)
+    {
+        if (feed instanceof SearchFeed) return;
+
+        try
+        {
+            manager.removeArticles(articles);
+        } catch (PersistenceException e)
+        {
+            LOG.log(Level.SEVERE, MSG_PERS_OP_FAILED, e);
+        }
+    }
+
     /**
      * Called when information in feed changed.
      *
@@ -444,4 +472,23 @@ public final class ChangesMonitor extends DomainAdapter
             LOG.log(Level.SEVERE, MSG_PERS_OP_FAILED, e);
         }
     }
+
+    /**
+     * Invoked when articles have changed their read state in bulk. The state of all of them
+     * is written at once.
+     *
+     * @param feed      feed the articles belong to.
+     * @param articles  articles which changed the state.
+     * @param read      <code>TRUE</code> if they are read now.
+     */
+    public void articlesReadChanged(IFeed feed, IArticle[] articles, boolean read)
+    {
+        try
+        {
+            manager.updateArticlesRead(articles, read);
+        } catch (PersistenceException e)
+        {
+            LOG.log(Level.SEVERE, MSG_PERS_OP_FAILED, e);
+        }
+    }
 }
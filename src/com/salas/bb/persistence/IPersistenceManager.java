@@ -24,6 +24,7 @@
 
 package com.salas.bb.persistence;
 
+import com.salas.bb.discovery.IMDStorage;
 import com.salas.bb.domain.*;
 import com.salas.bb.utils.net.auth.IPasswordsRepository;
 
@@ -196,6 +197,15 @@ public interface IPersistenceManager
      */
     void removeArticle(IArticle article) throws PersistenceException;
 
+    /**
+     * Removes many articles from database at once. Articles not in database are skipped.
+     *
+     * @param articles articles to remove.
+     *
+     * @throws PersistenceException if database operation fails.
+     */
+    void removeArticles(IArticle[] articles) throws PersistenceException;
+
     /**
      * Updates article in database.
      *
@@ -220,6 +230,16 @@ public interface IPersistenceManager
      */
     void updateArticleProperties(IArticle article) throws PersistenceException;
 
+    /**
+     * Updates the read state of many articles at once. Articles not in database are skipped.
+     *
+     * @param articles  articles to update.
+     * @param read      <code>TRUE</code> if the articles are read.
+     *
+     * @throws PersistenceException if database operation fails.
+     */
+    void updateArticlesRead(IArticle[] articles, boolean read) throws PersistenceException;
+
     /**
      * <p>Performs single-time initialization before the actual work. This method
      * can be used to prepare the database or perform a migration of data or for
@@ -239,6 +259,13 @@ public interface IPersistenceManager
      */
     IPasswordsRepository getPasswordsRepository();
 
+    /**
+     * Returns storage of discovered meta-data.
+     *
+     * @return meta-data storage.
+     */
+    IMDStorage getMetaDataStorage();
+
     /**
      * Shutdown the storage.
      */
@@ -362,6 +389,28 @@ public interface IPersistenceManager
      */
     void purgeDeletedObjectRecords() throws PersistenceException;
 
+    /**
+     * Starts the batch of updates. All operations performed by the calling thread until
+     * the batch is finished go into a single transaction. Batches can be nested. Other
+     * threads wait for the batch to finish before using the database.
+     *
+     * @throws PersistenceException if database operation fails.
+     */
+    void beginBatch() throws PersistenceException;
+
+    /**
+     * Finishes the batch of updates started by the calling thread.
+     */
+    void endBatch();
+
+    /**
+     * Returns <code>TRUE</code> if the calling thread runs a batch of updates. Never waits
+     * for the database.
+     *
+     * @return <code>TRUE</code> if in batch.
+     */
+    boolean isInBatch();
+
     /**
      * Compacts database.
      *
@@ -0,0 +1,251 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.persistence;
+
+import com.salas.bb.utils.i18n.Strings;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Front of the persistence manager which can hold the writes back while the database is
+ * busy with maintenance. When the queue is paused, the calls of manager methods returning
+ * nothing (updates and removals) are recorded and return immediately. When it's resumed,
+ * they are passed to the manager in the same order.
+ * <p/>
+ * The other calls can't be recorded. Inserts assign IDs the caller reads right away and the
+ * methods returning values need the writes recorded before them, so they wait until the
+ * queue is resumed and then go to the manager. So does the start of the batch. The calls
+ * of the thread running the batch always go straight to the manager, as the maintenance
+ * lets the batch finish first and the writes of the batch have to stay within it.
+ * <p/>
+ * Since the recorded calls return before they are performed, their failures can only be
+ * logged, which is what the callers do with them anyway.
+ */
+public final class WriteQueue implements InvocationHandler
+{
+    private static final Logger LOG = Logger.getLogger(WriteQueue.class.getName());
+
+    /** Methods which are never queued. */
+    private static final Set<String> DIRECT_METHODS = new HashSet<String>(Arrays.asList(
+        "init", "shutdown", "loadGuidesSet", "beginBatch", "endBatch", "compact", "backup"));
+    /** Prefix of the methods assigning IDs. */
+    private static final String INSERT_PREFIX = "insert";
+
+    /** Manager performing the writes. */
+    private final IPersistenceManager manager;
+    /** Front of the manager given to the writers. */
+    private final IPersistenceManager front;
+
+    /** Recorded calls. Guarded by this. */
+    private final LinkedList<Call> pending = new LinkedList<Call>();
+    /** <code>TRUE</code> while the writes are recorded. Guarded by this. */
+    private boolean paused;
+
+    /**
+     * Creates the queue in front of the manager.
+     *
+     * @param aManager manager performing the writes.
+     */
+    public WriteQueue(IPersistenceManager aManager)
+    {
+        manager = aManager;
+        front = (IPersistenceManager)Proxy.newProxyInstance(IPersistenceManager.class.getClassLoader(),
+            new Class[] { IPersistenceManager.class }, this);
+    }
+
+    /**
+     * Returns the front of the manager which should be given to the writers.
+     *
+     * @return manager front.
+     */
+    public IPersistenceManager getManager()
+    {
+        return front;
+    }
+
+    /**
+     * Starts recording the writes.
+     */
+    public synchronized void pause()
+    {
+        paused = true;
+    }
+
+    /**
+     * Returns <code>TRUE</code> if the writes are recorded.
+     *
+     * @return <code>TRUE</code> if the writes are recorded.
+     */
+    public synchronized boolean isPaused()
+    {
+        return paused;
+    }
+
+    /**
+     * Returns the number of recorded writes.
+     *
+     * @return number of writes.
+     */
+    public synchronized int getPendingCount()
+    {
+        return pending.size();
+    }
+
+    /**
+     * Performs the recorded writes and stops recording. The writes coming while the recorded
+     * ones are performed are queued behind them, so the order is kept. The calls waiting
+     * for the queue proceed when it's empty.
+     *
+     * @return number of performed writes.
+     */
+    public int resume()
+    {
+        int count = 0;
+
+        while (true)
+        {
+            Call call;
+            synchronized (this)
+            {
+                if (pending.isEmpty())
+                {
+                    paused = false;
+                    notifyAll();
+                    return count;
+                }
+
+                call = pending.removeFirst();
+            }
+
+            try
+            {
+                call.method.invoke(manager, call.args);
+            } catch (Exception e)
+            {
+                Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+                LOG.log(Level.SEVERE, Strings.error("db.queued.write.failed"), cause);
+            }
+
+            count++;
+        }
+    }
+
+    /**
+     * Records the write if paused, or passes the call to the manager waiting for the recorded
+     * writes first if necessary.
+     *
+     * @param proxy     manager front.
+     * @param method    called method.
+     * @param args      arguments.
+     *
+     * @return result.
+     *
+     * @throws Throwable if the manager fails.
+     */
+    public Object invoke(Object proxy, Method method, Object[] args)
+        throws Throwable
+    {
+        String name = method.getName();
+        if (method.getDeclaringClass() == Object.class)
+        {
+            if (name.equals("equals")) return proxy == args[0];
+            if (name.equals("hashCode")) return System.identityHashCode(proxy);
+            return "WriteQueue(" + manager + ")";
+        }
+
+        if (!name.equals("isInBatch") && !manager.isInBatch())
+        {
+            synchronized (this)
+            {
+                if (method.getReturnType() == Void.TYPE && !DIRECT_METHODS.contains(name) &&
+                    !name.startsWith(INSERT_PREFIX))
+                {
+                    if (paused)
+                    {
+                        pending.add(new Call(method, args));
+                        return null;
+                    }
+                } else waitForResume();
+            }
+        }
+
+        try
+        {
+            return method.invoke(manager, args);
+        } catch (InvocationTargetException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Waits until the queue is resumed and the recorded writes are performed. When interrupted
+     * lets the call go to the manager, where it waits for the maintenance to finish anyway.
+     */
+    private synchronized void waitForResume()
+    {
+        while (paused)
+        {
+            try
+            {
+                wait();
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Recorded call.
+     */
+    private static final class Call
+    {
+        private final Method    method;
+        private final Object[]  args;
+
+        /**
+         * Creates the call.
+         *
+         * @param aMethod   method.
+         * @param aArgs     arguments.
+         */
+        Call(Method aMethod, Object[] aArgs)
+        {
+            method = aMethod;
+            args = aArgs;
+        }
+    }
+}
@@ -0,0 +1,539 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.persistence.backend;
+
+import com.salas.bb.domain.IFeed;
+import com.salas.bb.domain.IGuide;
+import com.salas.bb.persistence.IStatisticsManager;
+import com.salas.bb.persistence.PersistenceException;
+import com.salas.bb.persistence.domain.CountStats;
+import com.salas.bb.persistence.domain.ReadStats;
+import com.salas.bb.persistence.domain.VisitStats;
+import com.salas.bb.utils.DateUtils;
+import com.salas.bb.utils.concurrency.ScheduledTask;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Statistics manager which aggregates all counts in memory and writes them to the
+ * database in one transaction periodically and on close. Recording is lock-free for
+ * the callers (no database access at all) and reports merge the counts which aren't
+ * written yet, so the results are always exact.
+ */
+class AggregatingStatisticsManager implements IStatisticsManager
+{
+    /** Default period between flushes (ms). */
+    static final long FLUSH_PERIOD = 30000;
+
+    /** Persistence manager doing the real writes and queries. */
+    private final HsqlPersistenceManager man;
+
+    /**
+     * Guards the swapping of the delta. Recorders take shared lock, the flush takes
+     * the exclusive lock only for the moment of swap.
+     */
+    private final ReadWriteLock deltaLock = new ReentrantReadWriteLock();
+
+    /**
+     * Serializes writing of deltas with reports and resets, so that a report never
+     * sees the delta which is written and is still unflushed at the same time.
+     */
+    private final Object flushLock = new Object();
+
+    /** Counts which aren't written yet. */
+    private StatisticsDelta delta;
+
+    /** Task performing periodic flushes. */
+    private final ScheduledTask flushTask;
+
+    /**
+     * Creates the manager over the persistence manager.
+     *
+     * @param man           persistence manager.
+     * @param flushPeriod   period between flushes (ms).
+     */
+    AggregatingStatisticsManager(HsqlPersistenceManager man, long flushPeriod)
+    {
+        this.man = man;
+        delta = new StatisticsDelta();
+
+        flushTask = HsqlPersistenceManager.maintenanceLane().schedule(new Runnable()
+        {
+            public void run()
+            {
+                flush();
+            }
+        }, flushPeriod, flushPeriod);
+    }
+
+    // --------------------------------------------------------------------------------------------
+    // Recording
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Records visit to a guide.
+     *
+     * @param guide guide.
+     */
+    public void guideVisited(IGuide guide)
+    {
+        if (guide == null || guide.getID() == -1) return;
+
+        deltaLock.readLock().lock();
+        try
+        {
+            delta.guideVisited(guide.getID());
+        } finally
+        {
+            deltaLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records visit to a feed.
+     *
+     * @param feed feed.
+     */
+    public void feedVisited(IFeed feed)
+    {
+        if (feed == null || feed.getID() == -1) return;
+
+        deltaLock.readLock().lock();
+        try
+        {
+            delta.feedVisited(feed.getID());
+        } finally
+        {
+            deltaLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records marking articles as read.
+     *
+     * @param guide guide where articles were marked as read (NULLable).
+     * @param feed  feed where articles were marked as read (NULLable).
+     * @param count number of articles.
+     */
+    public void articlesRead(IGuide guide, IFeed feed, int count)
+    {
+        Calendar c = new GregorianCalendar();
+        int hour = c.get(Calendar.HOUR_OF_DAY);
+        int day = c.get(Calendar.DAY_OF_WEEK) - Calendar.SUNDAY;
+        long today = DateUtils.getTodayTime();
+
+        deltaLock.readLock().lock();
+        try
+        {
+            delta.articlesRead(hour, day, count);
+            if (feed != null && feed.getID() != -1) delta.feedRead(feed.getID(), feed.getTitle(), today, count);
+            if (guide != null && guide.getID() != -1) delta.guideRead(guide.getID(), guide.getTitle(), today, count);
+        } finally
+        {
+            deltaLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records marking articles as pinned.
+     *
+     * @param guide guide where articles were marked (NULLable).
+     * @param feed  feed where articles were marked (NULLable).
+     * @param count number of articles pinned.
+     */
+    public void articlesPinned(IGuide guide, IFeed feed, int count)
+    {
+        long today = DateUtils.getTodayTime();
+
+        deltaLock.readLock().lock();
+        try
+        {
+            if (feed != null && feed.getID() != -1) delta.feedPinned(feed.getID(), feed.getTitle(), today, count);
+            if (guide != null && guide.getID() != -1) delta.guidePinned(guide.getID(), guide.getTitle(), today, count);
+        } finally
+        {
+            deltaLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Resets the statistics. All counts recorded so far are written before the reset.
+     */
+    public void reset()
+    {
+        synchronized (flushLock)
+        {
+            flush();
+            man.reset();
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------
+    // Flushing
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Writes all counts recorded so far to the database in one transaction. If writing
+     * fails, the counts are kept for the next attempt.
+     */
+    void flush()
+    {
+        synchronized (flushLock)
+        {
+            StatisticsDelta pending;
+
+            deltaLock.writeLock().lock();
+            try
+            {
+                pending = delta;
+                if (pending.isEmpty()) return;
+                delta = new StatisticsDelta();
+            } finally
+            {
+                deltaLock.writeLock().unlock();
+            }
+
+            if (!man.flushStatistics(pending))
+            {
+                deltaLock.readLock().lock();
+                try
+                {
+                    delta.addAll(pending);
+                } finally
+                {
+                    deltaLock.readLock().unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops periodic flushes and writes everything recorded so far.
+     */
+    void close()
+    {
+        flushTask.cancel();
+        flush();
+    }
+
+    // --------------------------------------------------------------------------------------------
+    // Reports
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the list of top most visited guides.
+     *
+     * @param max maximum number to return.
+     *
+     * @return records.
+     *
+     * @throws PersistenceException if fails to query records from database.
+     */
+    public List<VisitStats> getMostVisitedGuides(int max) throws PersistenceException
+    {
+        synchronized (flushLock)
+        {
+            Map<Long, AtomicLong> visits = delta.getGuideVisits();
+            return visits.isEmpty()
+                ? man.getMostVisitedGuides(max)
+                : mergeVisits(man.getMostVisitedGuides(Integer.MAX_VALUE, true), visits, max);
+        }
+    }
+
+    /**
+     * Returns the list of top most visited feeds.
+     *
+     * @param max maximum number to return.
+     *
+     * @return records.
+     *
+     * @throws PersistenceException if fails to query records from database.
+     */
+    public List<VisitStats> getMostVisitedFeeds(int max) throws PersistenceException
+    {
+        synchronized (flushLock)
+        {
+            Map<Long, AtomicLong> visits = delta.getFeedVisits();
+            return visits.isEmpty()
+                ? man.getMostVisitedFeeds(max)
+                : mergeVisits(man.getMostVisitedFeeds(Integer.MAX_VALUE, true), visits, max);
+        }
+    }
+
+    /**
+     * Returns the list of count stats for hours of a day.
+     *
+     * @return stats for hours of a day.
+     *
+     * @throws PersistenceException if fails to query records from database.
+     */
+    public CountStats[] getItemsReadPerHour() throws PersistenceException
+    {
+        synchronized (flushLock)
+        {
+            return mergeCounts(man.getItemsReadPerHour(), delta.getReadsPerHour());
+        }
+    }
+
+    /**
+     * Returns the list of count stats for days of a week.
+     *
+     * @return stats for days of a week.
+     *
+     * @throws PersistenceException if fails to query records from database.
+     */
+    public CountStats[] getItemsReadPerWeekday() throws PersistenceException
+    {
+        synchronized (flushLock)
+        {
+            return mergeCounts(man.getItemsReadPerWeekday(), delta.getReadsPerWeekday());
+        }
+    }
+
+    /**
+     * Returns the list of read stats for all guides.
+     *
+     * @return guides stats.
+     *
+     * @throws PersistenceException if fails to query records from database.
+     */
+    public List<ReadStats> getGuidesReadStats() throws PersistenceException
+    {
+        synchronized (flushLock)
+        {
+            return mergeDays(man.getGuidesReadStats(), delta.getGuideReads(), delta.getGuideTitles());
+        }
+    }
+
+    /**
+     * Returns the list of read stats for all feeds.
+     *
+     * @return feeds stats.
+     *
+     * @throws PersistenceException if fails to query records from database.
+     */
+    public List<ReadStats> getFeedsReadStats() throws PersistenceException
+    {
+        synchronized (flushLock)
+        {
+            return mergeDays(man.getFeedsReadStats(), delta.getFeedReads(), delta.getFeedTitles());
+        }
+    }
+
+    /**
+     * Returns the list of pin stats for all guides.
+     *
+     * @return guides stats.
+     *
+     * @throws PersistenceException if fails to query records from database.
+     */
+    public List<ReadStats> getGuidesPinStats() throws PersistenceException
+    {
+        synchronized (flushLock)
+        {
+            return mergeDays(man.getGuidesPinStats(), delta.getGuidePins(), delta.getGuideTitles());
+        }
+    }
+
+    /**
+     * Returns the list of pin stats for all feeds.
+     *
+     * @return feeds stats.
+     *
+     * @throws PersistenceException if fails to query records from database.
+     */
+    public List<ReadStats> getFeedsPinStats() throws PersistenceException
+    {
+        synchronized (flushLock)
+        {
+            return mergeDays(man.getFeedsPinStats(), delta.getFeedPins(), delta.getFeedTitles());
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------
+    // Merging
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Adds unwritten visits to the complete list of stats, sorts it in the same order
+     * the database does and crops it.
+     *
+     * @param stats     all stats records.
+     * @param visits    unwritten visits.
+     * @param max       maximum number of records to return.
+     *
+     * @return top records.
+     */
+    static List<VisitStats> mergeVisits(List<VisitStats> stats, Map<Long, AtomicLong> visits, int max)
+    {
+        final long now = System.currentTimeMillis();
+
+        List<VisitStats> merged = new ArrayList<VisitStats>(stats.size());
+        for (VisitStats st : stats)
+        {
+            AtomicLong cnt = visits.get((long)st.getObjectId());
+            long add = cnt == null ? 0 : cnt.get();
+            if (add == 0 && st.getCountTotal() == 0 && st.getCountReset() == 0) continue;
+
+            merged.add(add == 0 ? st : new VisitStats(st.getObjectId(), st.getObjectTitle(),
+                st.getCountTotal() + add, st.getCountReset() + add, st.getInitTime(), st.getResetTime()));
+        }
+
+        Collections.sort(merged, new Comparator<VisitStats>()
+        {
+            public int compare(VisitStats a, VisitStats b)
+            {
+                int res = Double.compare(rate(b, now), rate(a, now));
+                if (res == 0) res = compareLongs(b.getCountReset(), a.getCountReset());
+                if (res == 0) res = compareLongs(b.getCountTotal(), a.getCountTotal());
+                if (res == 0) res = compareTitles(a.getObjectTitle(), b.getObjectTitle());
+                return res;
+            }
+        });
+
+        return merged.size() > max ? new LinkedList<VisitStats>(merged.subList(0, max)) : merged;
+    }
+
+    /**
+     * Calculates the visit rate the same way the database query does.
+     *
+     * @param st    stats.
+     * @param now   current time.
+     *
+     * @return rate.
+     */
+    private static double rate(VisitStats st, long now)
+    {
+        return st.getCountReset() * 10000.0 / (now - st.getResetTime());
+    }
+
+    /**
+     * Compares two longs.
+     *
+     * @param a first.
+     * @param b second.
+     *
+     * @return comparison result.
+     */
+    private static int compareLongs(long a, long b)
+    {
+        return a < b ? -1 : a == b ? 0 : 1;
+    }
+
+    /**
+     * Compares titles putting <code>NULL</code>'s first like the database does.
+     *
+     * @param a first.
+     * @param b second.
+     *
+     * @return comparison result.
+     */
+    private static int compareTitles(String a, String b)
+    {
+        return a == null ? (b == null ? 0 : -1) : b == null ? 1 : a.compareTo(b);
+    }
+
+    /**
+     * Adds unwritten counts to the count stats.
+     *
+     * @param stats     stats from the database.
+     * @param counts    unwritten counts.
+     *
+     * @return merged stats.
+     */
+    private static CountStats[] mergeCounts(CountStats[] stats, AtomicLongArray counts)
+    {
+        for (int i = 0; i < stats.length; i++)
+        {
+            long add = counts.get(i);
+            if (add != 0 && stats[i] != null)
+            {
+                stats[i] = new CountStats(stats[i].getCountTotal() + add, stats[i].getCountReset() + add);
+            }
+        }
+
+        return stats;
+    }
+
+    /**
+     * Adds unwritten per-day counts to the read / pin stats.
+     *
+     * @param stats     stats from the database.
+     * @param counts    unwritten counts.
+     * @param titles    titles of objects which can be missing from the database stats.
+     *
+     * @return merged stats.
+     */
+    static List<ReadStats> mergeDays(List<ReadStats> stats, Map<StatisticsDelta.DayKey, AtomicLong> counts,
+                                     Map<Long, String> titles)
+    {
+        if (counts.isEmpty()) return stats;
+
+        long[] times = HsqlPersistenceManager.getStatTimes();
+
+        Map<Long, int[]> adds = new HashMap<Long, int[]>();
+        for (Map.Entry<StatisticsDelta.DayKey, AtomicLong> entry : counts.entrySet())
+        {
+            StatisticsDelta.DayKey key = entry.getKey();
+            int index = Arrays.binarySearch(times, key.day);
+            if (index < 0) continue;
+
+            int[] cnts = adds.get(key.id);
+            if (cnts == null)
+            {
+                cnts = new int[times.length];
+                adds.put(key.id, cnts);
+            }
+            cnts[index] += (int)entry.getValue().get();
+        }
+
+        List<ReadStats> merged = new LinkedList<ReadStats>();
+        for (ReadStats st : stats)
+        {
+            int[] cnts = adds.remove(st.getObjectId());
+            if (cnts == null)
+            {
+                merged.add(st);
+            } else
+            {
+                int[] old = st.getCounts();
+                for (int i = 0; i < cnts.length; i++) cnts[i] += old[i];
+                merged.add(new ReadStats(st.getObjectId(), st.getObjectTitle(), cnts, times));
+            }
+        }
+
+        for (Map.Entry<Long, int[]> entry : adds.entrySet())
+        {
+            long id = entry.getKey();
+            merged.add(new ReadStats(id, titles.get(id), entry.getValue(), times));
+        }
+
+        return merged;
+    }
+}
@@ -0,0 +1,496 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.persistence.backend;
+
+import com.salas.bb.persistence.PersistenceException;
+import com.salas.bb.persistence.WriteQueue;
+import com.salas.bb.utils.Constants;
+import com.salas.bb.utils.FileUtils;
+import com.salas.bb.utils.concurrency.ScheduledTask;
+import com.salas.bb.utils.i18n.Strings;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Online database maintenance. The service measures the share of lost space in the data
+ * file and the size of the log, and when the user is idle runs compaction or checkpoint
+ * as they grow over the thresholds. It also makes periodic backups.
+ * <p/>
+ * The database can't be used while the operation runs, so the updates and removals coming
+ * through the write queue are held back and performed right after it. Other calls wait.
+ * The operations run one at a time. Backups report the progress of copying to the listeners,
+ * while checkpoint and compaction are single statements and only start and finish.
+ */
+public final class DatabaseMaintenance
+{
+    private static final Logger LOG = Logger.getLogger(DatabaseMaintenance.class.getName());
+
+    /** Time without user input after which the user is idle (ms). */
+    public static final long DEFAULT_IDLE_TIME = 5 * Constants.MILLIS_IN_MINUTE;
+    /** Share of lost space in the data file which calls for compaction. */
+    public static final double DEFAULT_FRAGMENTATION = 0.25;
+    /** Size of the log which calls for checkpoint (bytes). */
+    public static final long DEFAULT_LOG_SIZE = 20 * 1024 * 1024;
+    /** Period of automatic backups (ms). */
+    public static final long DEFAULT_BACKUP_PERIOD = Constants.MILLIS_IN_WEEK;
+
+    /** Period of checks (ms). */
+    private static final long CHECK_PERIOD = 5 * Constants.MILLIS_IN_MINUTE;
+
+    /** Name of the automatic backup folder within the context folder. */
+    static final String BACKUP_FOLDER = "backup-maintenance";
+    /** Application property holding the time of the last automatic backup. */
+    static final String AP_LAST_BACKUP = "maintenance.lastBackup";
+
+    /** Checkpoint operation. */
+    public static final String OP_CHECKPOINT = Strings.message("db.maintenance.checkpoint");
+    /** Compaction operation. */
+    public static final String OP_COMPACT = Strings.message("db.maintenance.compact");
+    /** Backup operation. */
+    public static final String OP_BACKUP = Strings.message("db.maintenance.backup");
+
+    private final HsqlPersistenceManager    manager;
+    private final WriteQueue                queue;
+
+    private final long                      idleTime;
+    private final double                    fragmentation;
+    private final long                      logSize;
+    private final long                      backupPeriod;
+
+    private final List<IMaintenanceListener> listeners = new CopyOnWriteArrayList<IMaintenanceListener>();
+
+    /** Lock making the operations run one at a time. */
+    private final Object                    operationLock = new Object();
+
+    /** Time of the last user input. */
+    private volatile long                   lastUserActivity;
+    /** Periodic check task. */
+    private ScheduledTask                   checkTask;
+
+    /**
+     * Creates the service with default thresholds.
+     *
+     * @param aManager  manager of the database.
+     * @param aQueue    queue of writes in front of the manager.
+     */
+    public DatabaseMaintenance(HsqlPersistenceManager aManager, WriteQueue aQueue)
+    {
+        this(aManager, aQueue, DEFAULT_IDLE_TIME, DEFAULT_FRAGMENTATION, DEFAULT_LOG_SIZE,
+            DEFAULT_BACKUP_PERIOD);
+    }
+
+    /**
+     * Creates the service.
+     *
+     * @param aManager          manager of the database.
+     * @param aQueue            queue of writes in front of the manager.
+     * @param aIdleTime         time without user input after which the user is idle (ms).
+     * @param aFragmentation    share of lost space in the data file which calls for compaction.
+     * @param aLogSize          size of the log which calls for checkpoint (bytes).
+     * @param aBackupPeriod     period of automatic backups (ms) or <code>0</code> to disable.
+     */
+    DatabaseMaintenance(HsqlPersistenceManager aManager, WriteQueue aQueue, long aIdleTime,
+                        double aFragmentation, long aLogSize, long aBackupPeriod)
+    {
+        manager = aManager;
+        queue = aQueue;
+        idleTime = aIdleTime;
+        fragmentation = aFragmentation;
+        logSize = aLogSize;
+        backupPeriod = aBackupPeriod;
+
+        lastUserActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Adds the listener.
+     *
+     * @param l listener.
+     */
+    public void addListener(IMaintenanceListener l)
+    {
+        listeners.add(l);
+    }
+
+    /**
+     * Removes the listener.
+     *
+     * @param l listener.
+     */
+    public void removeListener(IMaintenanceListener l)
+    {
+        listeners.remove(l);
+    }
+
+    /**
+     * Starts periodic checks.
+     */
+    public synchronized void start()
+    {
+        if (checkTask != null) return;
+
+        checkTask = HsqlPersistenceManager.maintenanceLane().schedule(new Runnable()
+        {
+            public void run()
+            {
+                check();
+            }
+        }, CHECK_PERIOD, CHECK_PERIOD);
+    }
+
+    /**
+     * Stops periodic checks.
+     */
+    public synchronized void stop()
+    {
+        if (checkTask != null) checkTask.cancel();
+        checkTask = null;
+    }
+
+    /**
+     * Records the user input.
+     */
+    public void userActive()
+    {
+        lastUserActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns <code>TRUE</code> if there was no user input for the idle time.
+     *
+     * @return <code>TRUE</code> if the user is idle.
+     */
+    public boolean isUserIdle()
+    {
+        return System.currentTimeMillis() - lastUserActivity >= idleTime;
+    }
+
+    /**
+     * Measures the data file and the log.
+     *
+     * @return measurement.
+     *
+     * @throws PersistenceException if database operation fails.
+     */
+    public Measurement measure()
+        throws PersistenceException
+    {
+        long lostBytes = 0;
+
+        synchronized (manager)
+        {
+            Statement stmt = null;
+            try
+            {
+                stmt = manager.getConnection().createStatement();
+                ResultSet rs = stmt.executeQuery(
+                    "SELECT FILE_FREE_BYTES FROM INFORMATION_SCHEMA.SYSTEM_CACHEINFO");
+                while (rs.next()) lostBytes += rs.getLong(1);
+            } catch (SQLException e)
+            {
+                throw new PersistenceException(Strings.error("db.failed.to.measure.database"), e);
+            } finally
+            {
+                close(stmt);
+            }
+        }
+
+        String path = manager.getContextPath();
+        return new Measurement(new File(path + "blogbridge.data").length(), lostBytes,
+            new File(path + "blogbridge.log").length());
+    }
+
+    /**
+     * Runs the operations the database needs if the user is idle.
+     *
+     * @return <code>TRUE</code> if something was done.
+     */
+    public boolean check()
+    {
+        if (!isUserIdle()) return false;
+
+        boolean done = false;
+        try
+        {
+            Measurement m = measure();
+            if (m.getFragmentation() >= fragmentation)
+            {
+                compact(true);
+                done = true;
+            } else if (m.getLogSize() >= logSize)
+            {
+                compact(false);
+                done = true;
+            }
+
+            if (isUserIdle() && isBackupDue())
+            {
+                backup(new File(manager.getContextPath() + BACKUP_FOLDER));
+                manager.setApplicationProperty(AP_LAST_BACKUP, Long.toString(System.currentTimeMillis()));
+                manager.commit();
+                done = true;
+            }
+        } catch (PersistenceException e)
+        {
+            LOG.log(Level.WARNING, e.getMessage(), e);
+        }
+
+        return done;
+    }
+
+    /**
+     * Returns <code>TRUE</code> if it's time for the automatic backup.
+     *
+     * @return <code>TRUE</code> if it's time for the automatic backup.
+     *
+     * @throws PersistenceException if database operation fails.
+     */
+    private boolean isBackupDue()
+        throws PersistenceException
+    {
+        if (backupPeriod <= 0) return false;
+
+        String last = manager.getApplicationProperty(AP_LAST_BACKUP);
+        long time = 0;
+        try
+        {
+            if (last != null) time = Long.parseLong(last);
+        } catch (NumberFormatException e)
+        {
+            LOG.warning(last);
+        }
+
+        return System.currentTimeMillis() - time >= backupPeriod;
+    }
+
+    /**
+     * Writes all changes to the data file and clears the log. The writes coming meanwhile
+     * are queued and performed afterwards. There's no progress to report.
+     *
+     * @param defrag <code>TRUE</code> to defragment the data file as well.
+     *
+     * @throws PersistenceException if database operation fails.
+     */
+    public void compact(boolean defrag)
+        throws PersistenceException
+    {
+        String operation = defrag ? OP_COMPACT : OP_CHECKPOINT;
+
+        synchronized (operationLock)
+        {
+            PersistenceException error = null;
+
+            fireStarted(operation);
+            manager.holdSnapshots();
+            queue.pause();
+            try
+            {
+                manager.checkpoint(defrag);
+            } catch (PersistenceException e)
+            {
+                error = e;
+                throw e;
+            } finally
+            {
+                queue.resume();
+                manager.releaseSnapshots();
+                fireFinished(operation, error);
+            }
+        }
+    }
+
+    /**
+     * Copies the database files into the directory. The database stays open and the writes
+     * coming meanwhile are queued and performed afterwards.
+     *
+     * @param directory destination directory.
+     *
+     * @throws PersistenceException if database operation fails.
+     */
+    public void backup(File directory)
+        throws PersistenceException
+    {
+        synchronized (operationLock)
+        {
+            PersistenceException error = null;
+
+            fireStarted(OP_BACKUP);
+            manager.holdSnapshots();
+            queue.pause();
+            try
+            {
+                synchronized (manager)
+                {
+                    manager.checkpoint(false);
+                    copyFiles(manager.getDatabaseFiles(), directory);
+                }
+            } catch (PersistenceException e)
+            {
+                error = e;
+                throw e;
+            } catch (IOException e)
+            {
+                error = new PersistenceException(Strings.error("db.failed.to.backup.database"), e);
+                throw error;
+            } finally
+            {
+                queue.resume();
+                manager.releaseSnapshots();
+                fireFinished(OP_BACKUP, error);
+            }
+        }
+    }
+
+    /**
+     * Copies the files reporting the progress.
+     *
+     * @param files     files.
+     * @param directory destination directory.
+     *
+     * @throws IOException if copying fails.
+     */
+    private void copyFiles(File[] files, File directory)
+        throws IOException
+    {
+        if (!directory.exists() && !directory.mkdirs())
+        {
+            throw new IOException(Strings.error("db.failed.to.backup.database"));
+        }
+
+        long total = 0;
+        for (File file : files) total += file.length();
+
+        long copied = 0;
+        for (File file : files)
+        {
+            FileUtils.copyFileToDir(file, directory);
+            copied += file.length();
+            fireProgress(OP_BACKUP, total == 0 ? 100 : (int)(copied * 100 / total));
+        }
+    }
+
+    /**
+     * Closes the statement.
+     *
+     * @param stmt statement or <code>NULL</code>.
+     */
+    private static void close(Statement stmt)
+    {
+        try
+        {
+            if (stmt != null) stmt.close();
+        } catch (SQLException e)
+        {
+            LOG.log(Level.WARNING, "Failed to close the statement.", e);
+        }
+    }
+
+    private void fireStarted(String operation)
+    {
+        for (IMaintenanceListener l : listeners) l.maintenanceStarted(operation);
+    }
+
+    private void fireProgress(String operation, int percent)
+    {
+        for (IMaintenanceListener l : listeners) l.maintenanceProgress(operation, percent);
+    }
+
+    private void fireFinished(String operation, PersistenceException error)
+    {
+        for (IMaintenanceListener l : listeners) l.maintenanceFinished(operation, error);
+    }
+
+    /**
+     * Sizes of the database files.
+     */
+    public static final class Measurement
+    {
+        private final long dataSize;
+        private final long lostBytes;
+        private final long logSize;
+
+        /**
+         * Creates measurement.
+         *
+         * @param aDataSize     size of the data file.
+         * @param aLostBytes    lost space in the data file.
+         * @param aLogSize      size of the log.
+         */
+        Measurement(long aDataSize, long aLostBytes, long aLogSize)
+        {
+            dataSize = aDataSize;
+            lostBytes = aLostBytes;
+            logSize = aLogSize;
+        }
+
+        /**
+         * Returns the size of the data file.
+         *
+         * @return bytes.
+         */
+        public long getDataSize()
+        {
+            return dataSize;
+        }
+
+        /**
+         * Returns the lost space in the data file.
+         *
+         * @return bytes.
+         */
+        public long getLostBytes()
+        {
+            return lostBytes;
+        }
+
+        /**
+         * Returns the size of the log.
+         *
+         * @return bytes.
+         */
+        public long getLogSize()
+        {
+            return logSize;
+        }
+
+        /**
+         * Returns the share of lost space in the data file.
+         *
+         * @return share [0 - 1].
+         */
+        public double getFragmentation()
+        {
+            return dataSize == 0 ? 0 : Math.min(1.0, (double)lostBytes / dataSize);
+        }
+    }
+}
@@ -45,6 +45,9 @@ final class HsqlArticlesPM
 {
     private static final Logger LOG = Logger.getLogger(HsqlArticlesPM.class.getName());
 
+    /** Maximum number of IDs listed in one delete or update statement. */
+    private static final int ID_BATCH_SIZE = 500;
+
     /** Persistence manager context. */
     private final HsqlPersistenceManager context;
 
@@ -187,6 +190,56 @@ final class HsqlArticlesPM
         }
     }
 
+    /**
+     * Removes many articles from database with a few statements, deleting up to
+     * {@link #ID_BATCH_SIZE} articles with each. Articles not in database are skipped.
+     * The removed articles become transient.
+     *
+     * @param articles articles to remove.
+     *
+     * @return number of removed rows.
+     *
+     * @throws SQLException if database operation fails.
+     */
+    public int removeArticles(IArticle[] articles)
+        throws SQLException
+    {
+        int rows = 0;
+        int count = 0;
+        StringBuilder ids = new StringBuilder();
+
+        for (int i = 0; i < articles.length; i++)
+        {
+            long id = articles[i].getID();
+            if (id != -1L)
+            {
+                if (count > 0) ids.append(',');
+                ids.append(id);
+                count++;
+            }
+
+            if (count > 0 && (count == ID_BATCH_SIZE || i == articles.length - 1))
+            {
+                PreparedStatement stmt = context.getPreparedStatement(
+                    "DELETE FROM ARTICLES WHERE ID IN (" + ids + ")");
+                try
+                {
+                    rows += stmt.executeUpdate();
+                } finally
+                {
+                    stmt.close();
+                }
+
+                ids.setLength(0);
+                count = 0;
+            }
+        }
+
+        for (IArticle article : articles) article.setID(-1L);
+
+        return rows;
+    }
+
     /**
      * Updates article in database.
      *
@@ -243,6 +296,55 @@ final class HsqlArticlesPM
         }
     }
 
+    /**
+     * Updates the read state of many articles with a few statements, updating up to
+     * {@link #ID_BATCH_SIZE} articles with each. Articles not in database are skipped.
+     *
+     * @param articles  articles to update.
+     * @param read      <code>TRUE</code> if the articles are read.
+     *
+     * @return number of updated rows.
+     *
+     * @throws SQLException if database operation fails.
+     */
+    public int updateArticlesRead(IArticle[] articles, boolean read)
+        throws SQLException
+    {
+        int rows = 0;
+        int count = 0;
+        StringBuilder ids = new StringBuilder();
+
+        for (int i = 0; i < articles.length; i++)
+        {
+            long id = articles[i].getID();
+            if (id != -1L)
+            {
+                if (count > 0) ids.append(',');
+                ids.append(id);
+                count++;
+            }
+
+            if (count > 0 && (count == ID_BATCH_SIZE || i == articles.length - 1))
+            {
+                PreparedStatement stmt = context.getPreparedStatement(
+                    "UPDATE ARTICLES SET READ=? WHERE ID IN (" + ids + ")");
+                try
+                {
+                    stmt.setBoolean(1, read);
+                    rows += stmt.executeUpdate();
+                } finally
+                {
+                    stmt.close();
+                }
+
+                ids.setLength(0);
+                count = 0;
+            }
+        }
+
+        return rows;
+    }
+
     /**
      * Updates article in database.
      *
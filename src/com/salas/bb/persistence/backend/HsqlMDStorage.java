@@ -0,0 +1,253 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.persistence.backend;
+
+import com.salas.bb.discovery.IMDStorage;
+import com.salas.bb.discovery.MDRecord;
+import com.salas.bb.domain.FeedMetaDataHolder;
+import com.salas.bb.utils.i18n.Strings;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Storage of discovered meta-data based on HSQL database.
+ */
+class HsqlMDStorage implements IMDStorage
+{
+    private static final Logger LOG = Logger.getLogger(HsqlMDStorage.class.getName());
+
+    private final HsqlPersistenceManager context;
+
+    /**
+     * Creates storage.
+     *
+     * @param aContext context.
+     */
+    public HsqlMDStorage(HsqlPersistenceManager aContext)
+    {
+        context = aContext;
+    }
+
+    /**
+     * Loads all records.
+     *
+     * @return records.
+     */
+    public List<MDRecord> load()
+    {
+        List<MDRecord> records = new ArrayList<MDRecord>();
+
+        // Assuring single-threaded access to the database
+        synchronized (context)
+        {
+            try
+            {
+                PreparedStatement stmt = context.getPreparedStatement("SELECT * FROM METADATA");
+                try
+                {
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next())
+                    {
+                        FeedMetaDataHolder holder = new FeedMetaDataHolder();
+                        holder.setXmlURL(toURL(rs.getString("XMLURL")));
+                        holder.setHtmlURL(toURL(rs.getString("HTMLURL")));
+                        holder.setTitle(rs.getString("TITLE"));
+                        holder.setAuthor(rs.getString("AUTHOR"));
+                        holder.setDescription(rs.getString("DESCRIPTION"));
+                        int inlinks = rs.getInt("INLINKS");
+                        if (!rs.wasNull()) holder.setInboundLinks(inlinks);
+                        holder.setInvalid(rs.getBoolean("INVALID"));
+                        holder.setLastUpdateTime(rs.getLong("LASTCHECKED"));
+                        holder.setComplete(true);
+
+                        records.add(new MDRecord(rs.getString("URL"), holder, rs.getLong("TTL")));
+                    }
+                } finally
+                {
+                    stmt.close();
+                }
+            } catch (Exception e)
+            {
+                LOG.log(Level.SEVERE, Strings.error("db.failed.to.load.metadata"), e);
+            }
+        }
+
+        return records;
+    }
+
+    /**
+     * Stores the record replacing the previous record for the same URL.
+     *
+     * @param record record.
+     */
+    public void store(MDRecord record)
+    {
+        FeedMetaDataHolder holder = record.getHolder();
+
+        // Assuring single-threaded access to the database
+        synchronized (context)
+        {
+            try
+            {
+                PreparedStatement stmt = context.getPreparedStatement(
+                    "DELETE FROM METADATA WHERE URL = ?");
+                try
+                {
+                    stmt.setString(1, record.getUrl());
+                    stmt.executeUpdate();
+                    stmt.close();
+
+                    stmt = context.getPreparedStatement("INSERT INTO METADATA " +
+                        "(URL, XMLURL, HTMLURL, TITLE, AUTHOR, DESCRIPTION, INLINKS, INVALID, " +
+                        "LASTCHECKED, TTL) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                    stmt.setString(1, record.getUrl());
+                    stmt.setString(2, toString(holder.getXmlURL()));
+                    stmt.setString(3, toString(holder.getHtmlURL()));
+                    stmt.setString(4, limit(holder.getTitle(), 250));
+                    stmt.setString(5, limit(holder.getAuthor(), 100));
+                    stmt.setString(6, limit(holder.getDescription(), 250));
+                    Integer inlinks = holder.getInboundLinks();
+                    if (inlinks == null)
+                    {
+                        stmt.setNull(7, Types.INTEGER);
+                    } else
+                    {
+                        stmt.setInt(7, inlinks);
+                    }
+                    stmt.setBoolean(8, holder.isDiscoveredInvalid());
+                    stmt.setLong(9, record.getLastChecked());
+                    stmt.setLong(10, record.getTtl());
+                    stmt.executeUpdate();
+
+                    context.commit();
+                } finally
+                {
+                    stmt.close();
+                }
+            } catch (Exception e)
+            {
+                LOG.log(Level.SEVERE, MessageFormat.format(
+                    Strings.error("db.failed.to.store.metadata.for.0"), record.getUrl()), e);
+                context.rollback();
+            }
+        }
+    }
+
+    /**
+     * Removes records for the URL's.
+     *
+     * @param urls URL's.
+     */
+    public void remove(Collection<String> urls)
+    {
+        // Assuring single-threaded access to the database
+        synchronized (context)
+        {
+            try
+            {
+                PreparedStatement stmt = context.getPreparedStatement(
+                    "DELETE FROM METADATA WHERE URL = ?");
+                try
+                {
+                    for (String url : urls)
+                    {
+                        stmt.setString(1, url);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+
+                    context.commit();
+                } finally
+                {
+                    stmt.close();
+                }
+            } catch (Exception e)
+            {
+                LOG.log(Level.SEVERE, Strings.error("db.failed.to.remove.metadata"), e);
+                context.rollback();
+            }
+        }
+    }
+
+    /**
+     * Converts string to URL.
+     *
+     * @param str string.
+     *
+     * @return URL or <code>NULL</code> if string is empty or malformed.
+     */
+    private static URL toURL(String str)
+    {
+        URL url = null;
+
+        if (str != null)
+        {
+            try
+            {
+                url = new URL(str);
+            } catch (MalformedURLException e)
+            {
+                LOG.warning(MessageFormat.format(Strings.error("invalid.url"), str));
+            }
+        }
+
+        return url;
+    }
+
+    /**
+     * Converts URL to string.
+     *
+     * @param url URL.
+     *
+     * @return string or <code>NULL</code>.
+     */
+    private static String toString(URL url)
+    {
+        return url == null ? null : url.toString();
+    }
+
+    /**
+     * Limits the length of the string to fit in the column.
+     *
+     * @param str   string.
+     * @param max   maximum length.
+     *
+     * @return string.
+     */
+    private static String limit(String str, int max)
+    {
+        return str == null || str.length() <= max ? str : str.substring(0, max);
+    }
+}
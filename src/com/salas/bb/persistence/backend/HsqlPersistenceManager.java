@@ -25,6 +25,7 @@
 package com.salas.bb.persistence.backend;
 
 import com.jgoodies.uif.application.Application;
+import com.salas.bb.discovery.IMDStorage;
 import com.salas.bb.domain.*;
 import com.salas.bb.domain.query.articles.Query;
 import com.salas.bb.domain.querytypes.QueryType;
@@ -36,7 +37,12 @@ import com.salas.bb.persistence.domain.CountStats;
 import com.salas.bb.persistence.domain.ReadStats;
 import com.salas.bb.persistence.domain.VisitStats;
 import com.salas.bb.utils.*;
+import com.salas.bb.utils.concurrency.Lane;
+import com.salas.bb.utils.concurrency.ScheduledTask;
+import com.salas.bb.utils.concurrency.Scheduler;
 import com.salas.bb.utils.i18n.Strings;
+import com.salas.bb.utils.metrics.Histogram;
+import com.salas.bb.utils.metrics.Metrics;
 import com.salas.bb.utils.net.auth.IPasswordsRepository;
 
 import javax.swing.*;
@@ -51,6 +57,10 @@ import java.sql.*;
 import java.sql.Date;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -62,6 +72,9 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
     /** Default logger. */
     private static final Logger LOG = Logger.getLogger(HsqlPersistenceManager.class.getName());
 
+    /** Time spent committing transactions. */
+    private static final Histogram COMMIT_TIME = Metrics.histogram("db.commit.time");
+
     /** Database driver name. */
     private static final String DRIVER = "org.hsqldb.jdbcDriver";
 
@@ -79,8 +92,22 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
     /** Path to fresh database properties. */
     private static final String RES_PROPERTIES = "resources/blogbridge.properties";
 
+    /** Name of the savepoint marking the last successful operation of a batch. */
+    private static final String BATCH_SAVEPOINT = "BATCH";
+
     /** Application Property: Schema Version. */
     private static final String AP_SCHEMA_VERSION = "schemaVersion";
+    /** Application Property: Stamp of the model snapshot matching the database. */
+    private static final String AP_SNAPSHOT_STAMP = "snapshotStamp";
+
+    /** Name of the model snapshot file. */
+    private static final String SNAPSHOT_FILE = "model.snapshot";
+    /** Name of the lane for periodic database maintenance tasks. */
+    private static final String MAINTENANCE_LANE = "Database Maintenance";
+    /** Period of background model snapshots. */
+    private static final long SNAPSHOT_PERIOD = 10 * Constants.MILLIS_IN_MINUTE;
+    /** Time to wait for the EDT to capture the last snapshot during shutdown. */
+    private static final long SHUTDOWN_CAPTURE_WAIT = 500;
 
     /**
      * The collection of migration steps. Each item in the list represent the step to
@@ -95,7 +122,7 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
         null,
         new Schema01(), new Schema02(), new Schema03(), new Schema04(), new Schema05(),
         new Schema06(), new Schema07(), new Schema08(), new Schema09(), new Schema10(),
-        new Schema11(), new Schema12()
+        new Schema11(), new Schema12(), new Schema13()
     };
 
     /** <code>TRUE</code> if there's GUI and it's OK to display messages in dialog boxes. */
@@ -126,8 +153,31 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
     private final IArticleTextProvider  articleTextProvider;
 
     private final IPasswordsRepository  passwordsRepository;
+    private final IMDStorage            metaDataStorage;
     private Connection                  con;
 
+    /**
+     * Thread running the batch of updates mapped to the number of nested batches. There's one
+     * at most, as other threads wait for the batch to finish. Changed under the lock, but each
+     * thread can look up itself without it.
+     */
+    private final Map<Thread, Integer>  batchDepths = new ConcurrentHashMap<Thread, Integer>();
+    /** The point after the last successful operation while there are batches running. */
+    private Savepoint                   batchSavepoint;
+
+    /** The set loaded from the database which is written to snapshots. */
+    private GuidesSet                   loadedSet;
+    /** Stamp of the snapshot recorded in the database or <code>NULL</code>. */
+    private String                      snapshotStamp;
+    /** Number of committed transactions. */
+    private long                        commits;
+    /** Number of committed transactions when the last snapshot was taken. */
+    private long                        snapshotCommits = -1;
+    /** Number of operations holding the writes back, while the snapshot isn't recorded. */
+    private final AtomicInteger         snapshotHolds = new AtomicInteger();
+    /** Task writing snapshots in the background. */
+    private ScheduledTask               snapshotTask;
+
     private boolean                     databaseReset;
 
     // The cache of prepared statements used during the database loading.
@@ -148,7 +198,7 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
     public static final int STAT_LAST_N_DAYS = 30;
 
     /** Statistics manager. */
-    private IStatisticsManager statisticsManager;
+    private AggregatingStatisticsManager statisticsManager;
 
 //    private static final int SAVE_EVERY = 100;
 //    private int cnt;
@@ -190,6 +240,7 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
         feedsManager = new HsqlFeedsPM(this);
         articlesManager = new HsqlArticlesPM(this);
         passwordsRepository = new HsqlPasswordsRepository(this);
+        metaDataStorage = new HsqlMDStorage(this);
         articleTextProvider = new ArticleTextProvider();
     }
 
@@ -337,6 +388,42 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
     {
         if (LOG.isLoggable(Level.FINEST)) LOG.finest("loadGuidesSet");
 
+        // The snapshot is much faster to load if it's still in sync with the database
+        long start = System.currentTimeMillis();
+        snapshotStamp = getApplicationProperty(AP_SNAPSHOT_STAMP);
+        List<StandardGuide> snapshot = snapshotStamp == null ? null : ModelSnapshot.read(
+            getSnapshotFile(), snapshotStamp, MIGRATION_STEPS.length - 1, articleTextProvider);
+
+        if (snapshot != null)
+        {
+            for (int i = 0; i < snapshot.size(); i++)
+            {
+                set.add(-1, snapshot.get(i), i + 1 == snapshot.size());
+            }
+
+            snapshotCommits = commits;
+        } else loadGuidesSetFromDatabase(set);
+
+        if (LOG.isLoggable(Level.FINE))
+        {
+            LOG.fine("Loaded " + set.getGuidesCount() + " guides from the " +
+                (snapshot != null ? "snapshot" : "database") + " in " +
+                (System.currentTimeMillis() - start) + " ms");
+        }
+
+        startSnapshots(set);
+    }
+
+    /**
+     * Loads the list of guides and feeds into the set from database.
+     *
+     * @param set set to load data into.
+     *
+     * @throws PersistenceException if database operation fails.
+     */
+    private void loadGuidesSetFromDatabase(GuidesSet set)
+        throws PersistenceException
+    {
         try
         {
             loadAllArticles();
@@ -1701,6 +1788,29 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
         }
     }
 
+    /**
+     * Removes many articles from database in one transaction. Articles not in database
+     * are skipped.
+     *
+     * @param articles articles to remove.
+     *
+     * @throws PersistenceException if database operation fails.
+     */
+    public synchronized void removeArticles(IArticle[] articles)
+        throws PersistenceException
+    {
+        if (LOG.isLoggable(Level.FINEST)) LOG.finest("removeArticles");
+        try
+        {
+            articlesManager.removeArticles(articles);
+            commit();
+        } catch (SQLException e)
+        {
+            rollback();
+            throw new PersistenceException(Strings.error("db.failed.to.remove.articles"), e);
+        }
+    }
+
     /**
      * Updates article in database.
      *
@@ -1766,6 +1876,34 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
         }
     }
 
+    /**
+     * Updates the read state of many articles at once with single statement and commit.
+     * Articles not in database are skipped.
+     *
+     * @param articles  articles to update.
+     * @param read      <code>TRUE</code> if the articles are read.
+     *
+     * @throws PersistenceException if database operation fails.
+     */
+    public void updateArticlesRead(IArticle[] articles, boolean read)
+        throws PersistenceException
+    {
+        if (LOG.isLoggable(Level.FINEST)) LOG.finest("updateArticlesRead");
+
+        synchronized (this)
+        {
+            try
+            {
+                articlesManager.updateArticlesRead(articles, read);
+                commit();
+            } catch (SQLException e)
+            {
+                rollback();
+                throw new PersistenceException(Strings.error("db.failed.to.update.articles"), e);
+            }
+        }
+    }
+
     // Common --------------------------------------------------------------------------------------
 
     /**
@@ -1789,6 +1927,18 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
         // This object (HsqlPersistenceManager) is a lock for this connection. If
         // some code requires to use the connection it should establish the monitor
         // of this object first and then continue with database operations.
+        //
+        // While a batch is running, other threads wait for it to finish before using the
+        // connection, so that their operations don't get into the batch transaction.
+        try
+        {
+            waitForOtherBatches();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException(Strings.error("interrupted"));
+        }
+
         if (con == null || con.isClosed())
         {
             con = getConnection0(false);
@@ -1882,19 +2032,117 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
     }
 
     /**
-     * Commits the transaction or forces reconnect.
+     * Starts the batch of updates. Until the batch is finished the operations of the calling
+     * thread aren't committed, so they go into a single transaction. An operation failing in
+     * the middle of the batch is rolled back alone leaving the successful ones in place. The
+     * calling thread can nest batches, the outermost one defines the transaction.
+     * <p>
+     * The batch belongs to the calling thread only. As all threads share the connection,
+     * other threads wait for the batch to finish before using the database, and then
+     * commit their operations as usual. The batch of another thread starts only after the
+     * running one finishes.
+     *
+     * @throws PersistenceException if database operation fails or the thread is interrupted
+     *                              while waiting for the batch of another thread.
+     */
+    public synchronized void beginBatch()
+        throws PersistenceException
+    {
+        Thread thread = Thread.currentThread();
+        Integer depth = batchDepths.get(thread);
+        if (depth == null) waitForBatch();
+
+        if (batchDepths.isEmpty())
+        {
+            try
+            {
+                batchSavepoint = getConnection().setSavepoint(BATCH_SAVEPOINT);
+            } catch (SQLException e)
+            {
+                throw new PersistenceException(Strings.error("db.failed.to.commit.the.transaction"), e);
+            }
+        }
+
+        batchDepths.put(thread, depth == null ? 1 : depth + 1);
+    }
+
+    /**
+     * Finishes the batch of updates and commits the transaction when the outermost
+     * batch of the calling thread is finished.
      */
-    void commit()
+    public synchronized void endBatch()
+    {
+        Thread thread = Thread.currentThread();
+        Integer depth = batchDepths.get(thread);
+        if (depth == null) return;
+
+        if (depth > 1)
+        {
+            batchDepths.put(thread, depth - 1);
+        } else
+        {
+            batchDepths.remove(thread);
+            commit();
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns <code>TRUE</code> if the calling thread runs a batch of updates. Only the calling
+     * thread changes its entry, so the lock isn't needed and the call never waits for the
+     * database.
+     *
+     * @return <code>TRUE</code> if in batch.
+     */
+    public boolean isInBatch()
+    {
+        return batchDepths.containsKey(Thread.currentThread());
+    }
+
+    /**
+     * Commits the transaction or forces reconnect. Within the batch of the calling thread
+     * only marks the successful end of the operation.
+     */
+    synchronized void commit()
     {
         try
         {
-            getConnection().commit();
+            commitTransaction();
         } catch (Exception e)
         {
             LOG.log(Level.SEVERE, Strings.error("db.failed.to.commit.the.transaction"), e);
 
             // Force reconnect
-            resetConnection();
+            if (batchDepths.isEmpty()) resetConnection();
+        }
+    }
+
+    /**
+     * Commits the transaction. Within the batch of the calling thread only marks the
+     * successful end of the operation. All commits go through here, as the snapshot is
+     * valid only while their count stays the same. The first commit after the snapshot
+     * was taken invalidates it.
+     *
+     * @throws SQLException         if committing fails.
+     * @throws PersistenceException if the snapshot can't be invalidated.
+     */
+    private synchronized void commitTransaction()
+        throws SQLException, PersistenceException
+    {
+        Connection connection = getConnection();
+        if (isInBatch())
+        {
+            batchSavepoint = connection.setSavepoint(BATCH_SAVEPOINT);
+        } else
+        {
+            if (snapshotStamp != null) setApplicationProperty(AP_SNAPSHOT_STAMP, null);
+
+            long start = COMMIT_TIME.start();
+            connection.commit();
+            COMMIT_TIME.stop(start);
+
+            snapshotStamp = null;
+            commits++;
         }
     }
 
@@ -1914,10 +2162,27 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
     }
 
     /**
-     * Rolls back the transaction or forces reconnect.
+     * Rolls back the transaction or forces reconnect. While there are batches running only
+     * the changes of the failed operation are rolled back.
      */
-    void rollback()
+    synchronized void rollback()
     {
+        // The operation failed waiting for the batch of another thread and changed nothing
+        if (!batchDepths.isEmpty() && !isInBatch()) return;
+
+        if (!batchDepths.isEmpty() && batchSavepoint != null)
+        {
+            try
+            {
+                getConnection().rollback(batchSavepoint);
+                return;
+            } catch (Exception e)
+            {
+                // The savepoint was lost, roll back everything
+                batchSavepoint = null;
+            }
+        }
+
         try
         {
             getConnection().rollback();
@@ -2162,29 +2427,224 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
     private void makeBackup(File directory)
         throws IOException
     {
-        File workingFolder = new File(contextPath);
-        File[] dbFiles = workingFolder.listFiles(new FilenameFilter()
+        File[] dbFiles = getDatabaseFiles();
+        if (dbFiles.length > 0)
         {
-            public boolean accept(File dir, String name)
+            if (!directory.exists()) directory.mkdir();
+
+            for (File file : dbFiles) FileUtils.copyFileToDir(file, directory);
+        }
+    }
+
+    /**
+     * Shutdown the database. All statistics recorded so far are written first.
+     */
+    public void shutdown()
+    {
+        AggregatingStatisticsManager sm;
+        ScheduledTask task;
+        synchronized (this)
+        {
+            sm = statisticsManager;
+            task = snapshotTask;
+            snapshotTask = null;
+        }
+
+        if (sm != null) sm.close();
+
+        // Next start will be fast if nothing changes the database after this point
+        if (task != null)
+        {
+            task.cancel();
+            storeSnapshot(true);
+        }
+
+        synchronized (this)
+        {
+            shutdown(false);
+        }
+    }
+
+    /**
+     * Starts writing snapshots of the loaded set in the background.
+     *
+     * @param set loaded set.
+     */
+    private synchronized void startSnapshots(GuidesSet set)
+    {
+        loadedSet = set;
+
+        if (snapshotTask == null)
+        {
+            snapshotTask = maintenanceLane().schedule(new Runnable()
             {
-                return name != null && name.startsWith("blogbridge.") && !name.endsWith(".lck");
+                public void run()
+                {
+                    storeSnapshot();
+                }
+            }, SNAPSHOT_PERIOD, SNAPSHOT_PERIOD);
+        }
+    }
+
+    /**
+     * Stops recording snapshots until {@link #releaseSnapshots()} is called. Used while the
+     * writes are held back, because the model is ahead of the database then. It doesn't
+     * take the lock, so it never waits for the database.
+     */
+    void holdSnapshots()
+    {
+        snapshotHolds.incrementAndGet();
+    }
+
+    /**
+     * Lets recording snapshots again. The held back writes should be performed by then.
+     */
+    void releaseSnapshots()
+    {
+        snapshotHolds.decrementAndGet();
+    }
+
+    /**
+     * Returns the lane for periodic database maintenance tasks.
+     *
+     * @return lane.
+     */
+    static Lane maintenanceLane()
+    {
+        return Scheduler.lane(MAINTENANCE_LANE, 1, Thread.NORM_PRIORITY);
+    }
+
+    /**
+     * Writes the snapshot of the loaded set unless there were no changes since the last
+     * one. The snapshot is recorded in the database only if no transaction was committed
+     * while it was being written, which guarantees that the snapshot matches the database.
+     *
+     * @return <code>TRUE</code> if the snapshot has been written and recorded.
+     */
+    boolean storeSnapshot()
+    {
+        return storeSnapshot(false);
+    }
+
+    /**
+     * Writes the snapshot of the loaded set unless there were no changes since the last
+     * one. The set is captured in the EDT and only written here.
+     *
+     * @param shuttingDown <code>TRUE</code> if the application is shutting down.
+     *
+     * @return <code>TRUE</code> if the snapshot has been written and recorded.
+     */
+    private boolean storeSnapshot(boolean shuttingDown)
+    {
+        GuidesSet set;
+        long mark;
+        synchronized (this)
+        {
+            set = loadedSet;
+            mark = commits;
+            if (set == null || mark == snapshotCommits || snapshotHolds.get() > 0) return false;
+        }
+
+        String stamp = Long.toHexString(System.currentTimeMillis()) + "-" +
+            Long.toHexString(Double.doubleToLongBits(Math.random()));
+        ModelSnapshot snapshot = captureSnapshot(set, shuttingDown);
+        if (snapshot == null) return false;
+
+        try
+        {
+            snapshot.write(stamp, MIGRATION_STEPS.length - 1, getSnapshotFile());
+        } catch (IOException e)
+        {
+            LOG.log(Level.WARNING, Strings.error("db.failed.to.write.snapshot"), e);
+            return false;
+        }
+
+        boolean stored = false;
+        synchronized (this)
+        {
+            if (commits == mark && batchDepths.isEmpty() && snapshotHolds.get() == 0)
+            {
+                try
+                {
+                    Connection connection = getConnection();
+                    setApplicationProperty(AP_SNAPSHOT_STAMP, stamp);
+                    connection.commit();
+
+                    snapshotStamp = stamp;
+                    snapshotCommits = mark;
+                    stored = true;
+                } catch (Exception e)
+                {
+                    LOG.log(Level.WARNING, Strings.error("db.failed.to.write.snapshot"), e);
+                    rollback();
+                }
             }
-        });
+        }
+
+        return stored;
+    }
 
-        if (dbFiles != null)
+    /**
+     * Captures the snapshot of the set in the EDT. During shutdown the EDT is given only a
+     * short time, because when the application is closed from the EDT, it's parked in
+     * <code>System.exit()</code> and doesn't change the model any more. The set is captured
+     * in the current thread then.
+     *
+     * @param set           set to capture.
+     * @param shuttingDown  <code>TRUE</code> if the application is shutting down.
+     *
+     * @return snapshot or <code>NULL</code> if the capture failed or was interrupted.
+     */
+    private static ModelSnapshot captureSnapshot(final GuidesSet set, boolean shuttingDown)
+    {
+        if (SwingUtilities.isEventDispatchThread()) return ModelSnapshot.capture(set);
+
+        FutureTask<ModelSnapshot> capture = new FutureTask<ModelSnapshot>(new Callable<ModelSnapshot>()
         {
-            if (!directory.exists()) directory.mkdir();
+            public ModelSnapshot call()
+            {
+                return ModelSnapshot.capture(set);
+            }
+        });
+        SwingUtilities.invokeLater(capture);
 
-            for (File file : dbFiles) FileUtils.copyFileToDir(file, directory);
+        ModelSnapshot snapshot = null;
+        try
+        {
+            if (!shuttingDown)
+            {
+                snapshot = capture.get();
+            } else
+            {
+                try
+                {
+                    snapshot = capture.get(SHUTDOWN_CAPTURE_WAIT, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e)
+                {
+                    // Once cancelled, the capture will never run in the EDT
+                    snapshot = capture.cancel(false) ? ModelSnapshot.capture(set) : capture.get();
+                }
+            }
+        } catch (InterruptedException e)
+        {
+            capture.cancel(false);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e)
+        {
+            LOG.log(Level.WARNING, Strings.error("db.failed.to.write.snapshot"), e.getCause());
         }
+
+        return snapshot;
     }
 
     /**
-     * Shutdown the database.
+     * Returns the file of the model snapshot.
+     *
+     * @return file.
      */
-    public synchronized void shutdown()
+    private File getSnapshotFile()
     {
-        shutdown(false);
+        return new File(contextPath + SNAPSHOT_FILE);
     }
 
     /**
@@ -2217,6 +2677,16 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
         return passwordsRepository;
     }
 
+    /**
+     * Returns storage of discovered meta-data.
+     *
+     * @return meta-data storage.
+     */
+    public IMDStorage getMetaDataStorage()
+    {
+        return metaDataStorage;
+    }
+
     /**
      * Removes feed only if there are no guides and reading lists referring to it.
      *
@@ -2528,19 +2998,70 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
      *
      * @throws PersistenceException if database operation fails.
      */
-    public synchronized void compact() throws PersistenceException
+    public void compact() throws PersistenceException
     {
+        checkpoint(true);
+    }
+
+    /**
+     * Writes all changes to the data file and clears the log. The batch in progress is
+     * allowed to finish first.
+     *
+     * @param defrag <code>TRUE</code> to defragment the data file.
+     *
+     * @throws PersistenceException if database operation fails.
+     */
+    synchronized void checkpoint(boolean defrag)
+        throws PersistenceException
+    {
+        Statement stmt = null;
         try
         {
-            getConnection().createStatement().execute("CHECKPOINT DEFRAG");
+            waitForBatch();
+
+            stmt = getConnection().createStatement();
+            stmt.execute(defrag ? "CHECKPOINT DEFRAG" : "CHECKPOINT");
         } catch (SQLException e)
         {
-            throw new PersistenceException("Compacting failed.", e);
+            throw new PersistenceException(Strings.error("db.compacting.failed"), e);
+        } finally
+        {
+            close(stmt);
         }
     }
 
     /**
-     * Creates complete database backup.
+     * Waits for the batches of other threads to finish.
+     *
+     * @throws PersistenceException if interrupted.
+     */
+    private synchronized void waitForBatch()
+        throws PersistenceException
+    {
+        try
+        {
+            waitForOtherBatches();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException(Strings.error("interrupted"), e);
+        }
+    }
+
+    /**
+     * Waits for the batches of other threads to finish. The lock is released while waiting.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    private synchronized void waitForOtherBatches()
+        throws InterruptedException
+    {
+        while (batchDepths.size() > (isInBatch() ? 1 : 0)) wait();
+    }
+
+    /**
+     * Creates complete database backup. The database stays open. All changes are written
+     * to the data file first and nothing is written until the files are copied.
      *
      * @param directory destination directory.
      *
@@ -2549,17 +3070,35 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
     public synchronized void backup(File directory)
         throws PersistenceException
     {
-        shutdown();
+        checkpoint(false);
 
         try
         {
             makeBackup(directory);
         } catch (IOException e)
         {
-            throw new PersistenceException("Failed to backup the database.", e);
+            throw new PersistenceException(Strings.error("db.failed.to.backup.database"), e);
         }
     }
 
+    /**
+     * Returns the database files which go into the backup.
+     *
+     * @return files.
+     */
+    File[] getDatabaseFiles()
+    {
+        File[] files = new File(contextPath).listFiles(new FilenameFilter()
+        {
+            public boolean accept(File dir, String name)
+            {
+                return name != null && name.startsWith("blogbridge.") && !name.endsWith(".lck");
+            }
+        });
+
+        return files == null ? new File[0] : files;
+    }
+
     // --- Debugging ----------------------------------------------------------
 
     /**
@@ -2692,10 +3231,181 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
      */
     public synchronized IStatisticsManager getStatisticsManager()
     {
-        if (statisticsManager == null) statisticsManager = new ThreadedStatisticsManager(this);
+        if (statisticsManager == null)
+        {
+            statisticsManager = new AggregatingStatisticsManager(this, AggregatingStatisticsManager.FLUSH_PERIOD);
+        }
         return statisticsManager;
     }
 
+    /**
+     * Writes aggregated statistics counts to the database. All updates are sent in
+     * batches and committed in a single transaction.
+     *
+     * @param delta counts to write.
+     *
+     * @return <code>TRUE</code> if written successfully.
+     */
+    synchronized boolean flushStatistics(StatisticsDelta delta)
+    {
+        try
+        {
+            flushVisits("UPDATE GUIDESTATS SET " +
+                "COUNT_TOTAL = COUNT_TOTAL + ?, " +
+                "COUNT_RESET = COUNT_RESET + ? " +
+                "WHERE GUIDEID = ?", delta.getGuideVisits());
+            flushVisits("UPDATE FEEDSTATS SET " +
+                "COUNT_TOTAL = COUNT_TOTAL + ?, " +
+                "COUNT_RESET = COUNT_RESET + ? " +
+                "WHERE FEEDID = ?", delta.getFeedVisits());
+
+            flushBuckets("UPDATE READSTATS_HOUR SET " +
+                "COUNT_TOTAL = COUNT_TOTAL + ?, " +
+                "COUNT_RESET = COUNT_RESET + ? " +
+                "WHERE HOUR = ?", delta.getReadsPerHour());
+            flushBuckets("UPDATE READSTATS_DAY SET " +
+                "COUNT_TOTAL = COUNT_TOTAL + ?, " +
+                "COUNT_RESET = COUNT_RESET + ? " +
+                "WHERE DAY = ?", delta.getReadsPerWeekday());
+
+            flushDayCounts("FEEDREADSTATS", delta.getFeedReads());
+            flushDayCounts("GUIDEREADSTATS", delta.getGuideReads());
+            flushDayCounts("FEEDPINSTATS", delta.getFeedPins());
+            flushDayCounts("GUIDEPINSTATS", delta.getGuidePins());
+
+            // Cleanup (once a day)
+            statRemoveOldEntityRecords();
+
+            commitTransaction();
+            return true;
+        } catch (Exception e)
+        {
+            rollback();
+            LOG.log(Level.SEVERE, "Failed to write stats", e);
+            return false;
+        }
+    }
+
+    /**
+     * Adds visits to the guide / feed stats table in one batch.
+     *
+     * @param update    update statement taking total count, reset count and ID.
+     * @param visits    ID to visits map.
+     *
+     * @throws SQLException if database operation fails.
+     */
+    private void flushVisits(String update, Map<Long, AtomicLong> visits)
+        throws SQLException
+    {
+        if (visits.isEmpty()) return;
+
+        PreparedStatement stmt = getPreparedStatement(update);
+        try
+        {
+            for (Map.Entry<Long, AtomicLong> entry : visits.entrySet())
+            {
+                long count = entry.getValue().get();
+                stmt.setLong(1, count);
+                stmt.setLong(2, count);
+                stmt.setLong(3, entry.getKey());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } finally
+        {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Adds counts to the hour / day read stats table in one batch.
+     *
+     * @param update    update statement taking total count, reset count and bucket index.
+     * @param counts    counts per bucket.
+     *
+     * @throws SQLException if database operation fails.
+     */
+    private void flushBuckets(String update, AtomicLongArray counts)
+        throws SQLException
+    {
+        PreparedStatement stmt = getPreparedStatement(update);
+        try
+        {
+            boolean any = false;
+            for (int i = 0; i < counts.length(); i++)
+            {
+                long count = counts.get(i);
+                if (count == 0) continue;
+
+                stmt.setLong(1, count);
+                stmt.setLong(2, count);
+                stmt.setInt(3, i);
+                stmt.addBatch();
+                any = true;
+            }
+            if (any) stmt.executeBatch();
+        } finally
+        {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Adds counts to the read / pin stats table. The rows which are missing are
+     * inserted in the second batch.
+     *
+     * @param table     table name.
+     * @param counts    object / day to count map.
+     *
+     * @throws SQLException if database operation fails.
+     */
+    private void flushDayCounts(String table, Map<StatisticsDelta.DayKey, AtomicLong> counts)
+        throws SQLException
+    {
+        if (counts.isEmpty()) return;
+
+        List<Map.Entry<StatisticsDelta.DayKey, AtomicLong>> entries =
+            new ArrayList<Map.Entry<StatisticsDelta.DayKey, AtomicLong>>(counts.entrySet());
+
+        int[] rows;
+        PreparedStatement stmt = getPreparedStatement("UPDATE " + table + " SET CNT=CNT+? WHERE ID=? AND TS=?");
+        try
+        {
+            for (Map.Entry<StatisticsDelta.DayKey, AtomicLong> entry : entries)
+            {
+                stmt.setLong(1, entry.getValue().get());
+                stmt.setLong(2, entry.getKey().id);
+                stmt.setLong(3, entry.getKey().day);
+                stmt.addBatch();
+            }
+            rows = stmt.executeBatch();
+        } finally
+        {
+            stmt.close();
+        }
+
+        stmt = getPreparedStatement("INSERT INTO " + table + " (ID, TS, CNT) VALUES (?, ?, ?)");
+        try
+        {
+            boolean any = false;
+            for (int i = 0; i < rows.length; i++)
+            {
+                if (rows[i] != 0) continue;
+
+                Map.Entry<StatisticsDelta.DayKey, AtomicLong> entry = entries.get(i);
+                stmt.setLong(1, entry.getKey().id);
+                stmt.setLong(2, entry.getKey().day);
+                stmt.setLong(3, entry.getValue().get());
+                stmt.addBatch();
+                any = true;
+            }
+            if (any) stmt.executeBatch();
+        } finally
+        {
+            stmt.close();
+        }
+    }
+
     /**
      * Records visit to a guide.
      *
@@ -2950,7 +3660,23 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
      *
      * @throws PersistenceException if fails to query records from database.
      */
-    public synchronized List<VisitStats> getMostVisitedGuides(int max)
+    public List<VisitStats> getMostVisitedGuides(int max)
+        throws PersistenceException
+    {
+        return getMostVisitedGuides(max, false);
+    }
+
+    /**
+     * Returns the list of top most visited guides.
+     *
+     * @param max           maximum number to return.
+     * @param withUnvisited <code>TRUE</code> to include records without visits.
+     *
+     * @return records.
+     *
+     * @throws PersistenceException if fails to query records from database.
+     */
+    synchronized List<VisitStats> getMostVisitedGuides(int max, boolean withUnvisited)
         throws PersistenceException
     {
         long now = System.currentTimeMillis();
@@ -2966,7 +3692,7 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
                 stmt = getPreparedStatement(
                     "SELECT GS.*, G.TITLE " +
                     "FROM GUIDESTATS GS LEFT JOIN GUIDES G ON G.ID=GS.GUIDEID " +
-                    "WHERE COUNT_RESET > 0 OR COUNT_TOTAL > 0 " +
+                    (withUnvisited ? "" : "WHERE COUNT_RESET > 0 OR COUNT_TOTAL > 0 ") +
                     "ORDER BY (COUNT_RESET * 10000.0 / (? - RESET_TIME)) DESC, COUNT_RESET DESC, COUNT_TOTAL DESC, TITLE " +
                     "LIMIT ?");
 
@@ -3009,7 +3735,23 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
      *
      * @throws PersistenceException if fails to query records from database.
      */
-    public synchronized List<VisitStats> getMostVisitedFeeds(int max)
+    public List<VisitStats> getMostVisitedFeeds(int max)
+        throws PersistenceException
+    {
+        return getMostVisitedFeeds(max, false);
+    }
+
+    /**
+     * Returns the list of top most visited feeds.
+     *
+     * @param max           maximum number to return.
+     * @param withUnvisited <code>TRUE</code> to include records without visits.
+     *
+     * @return records.
+     *
+     * @throws PersistenceException if fails to query records from database.
+     */
+    synchronized List<VisitStats> getMostVisitedFeeds(int max, boolean withUnvisited)
         throws PersistenceException
     {
         long now = System.currentTimeMillis();
@@ -3027,7 +3769,7 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
                     "FROM FEEDSTATS FS LEFT JOIN DIRECTFEEDS DF ON DF.FEEDID=FS.FEEDID " +
                         "LEFT JOIN QUERYFEEDS QF ON QF.FEEDID=FS.FEEDID " +
                         "LEFT JOIN SEARCHFEEDS SF ON SF.FEEDID=FS.FEEDID " +
-                    "WHERE COUNT_RESET > 0 OR COUNT_TOTAL > 0 " +
+                    (withUnvisited ? "" : "WHERE COUNT_RESET > 0 OR COUNT_TOTAL > 0 ") +
                     "ORDER BY (COUNT_RESET * 10000.0 / (? - RESET_TIME)) DESC, COUNT_RESET DESC, COUNT_TOTAL DESC, TITLE " +
                     "LIMIT ?");
 
@@ -3239,11 +3981,7 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
         throws PersistenceException
     {
         long time = DateUtils.getTodayTime() - STAT_LAST_N_DAYS * Constants.MILLIS_IN_DAY;
-
-        // Initialize times array
-        long[] times = new long[STAT_LAST_N_DAYS];
-        times[0] = time + Constants.MILLIS_IN_DAY;
-        for (int i = 1; i < STAT_LAST_N_DAYS; i++) times[i] = times[i - 1] + Constants.MILLIS_IN_DAY;
+        long[] times = getStatTimes();
 
         // Create storages
         Map<Long, Map<Long, Integer>> stats = new HashMap<Long, Map<Long, Integer>>();
@@ -3304,6 +4042,22 @@ public final class HsqlPersistenceManager implements IPersistenceManager, IStati
         return rstats;
     }
 
+    /**
+     * Returns the times of days reported in read / pin stats, the last being today.
+     *
+     * @return times of days in ascending order.
+     */
+    static long[] getStatTimes()
+    {
+        long time = DateUtils.getTodayTime() - STAT_LAST_N_DAYS * Constants.MILLIS_IN_DAY;
+
+        long[] times = new long[STAT_LAST_N_DAYS];
+        times[0] = time + Constants.MILLIS_IN_DAY;
+        for (int i = 1; i < STAT_LAST_N_DAYS; i++) times[i] = times[i - 1] + Constants.MILLIS_IN_DAY;
+
+        return times;
+    }
+
     /**
      * Removes records from the read / pin stats tables older than 30 days.
      */
@@ -0,0 +1,57 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.persistence.backend;
+
+import com.salas.bb.persistence.PersistenceException;
+
+/**
+ * Listener of database maintenance operations.
+ */
+public interface IMaintenanceListener
+{
+    /**
+     * Invoked when the operation starts.
+     *
+     * @param operation operation name.
+     */
+    void maintenanceStarted(String operation);
+
+    /**
+     * Invoked when the operation makes progress. Only the operations which can measure it
+     * report progress.
+     *
+     * @param operation operation name.
+     * @param percent   percents [0 - 100].
+     */
+    void maintenanceProgress(String operation, int percent);
+
+    /**
+     * Invoked when the operation finishes and the writes queued during it are performed.
+     *
+     * @param operation operation name.
+     * @param error     error or <code>NULL</code> if succeeded.
+     */
+    void maintenanceFinished(String operation, PersistenceException error);
+}
@@ -0,0 +1,921 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.persistence.backend;
+
+import com.salas.bb.domain.*;
+import com.salas.bb.domain.query.articles.Query;
+import com.salas.bb.domain.querytypes.QueryType;
+import com.salas.bb.utils.i18n.Strings;
+
+import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary snapshot of the guides, feeds, reading lists and article headers --
+ * everything {@link HsqlPersistenceManager#loadGuidesSet(GuidesSet)} reads from the
+ * database. The snapshot is versioned and checksummed and carries the stamp which is
+ * also recorded in the database when the snapshot is written. The snapshot is good for
+ * loading only while the stamps match.
+ * <p>
+ * The snapshot is taken in two steps. {@link #capture(GuidesSet)} copies the lists of
+ * guides, feeds, reading lists and the article snapshots of the feeds in the EDT, where
+ * the model is changed, and {@link #write(String, int, File)} serializes them and writes
+ * the file in background.
+ */
+final class ModelSnapshot
+{
+    private static final Logger LOG = Logger.getLogger(ModelSnapshot.class.getName());
+
+    /** Snapshot file signature. */
+    private static final int MAGIC = 0x42425353;
+    /** Version of the format. */
+    private static final int VERSION = 1;
+
+    private static final int KIND_DIRECT = 0;
+    private static final int KIND_QUERY = 1;
+    private static final int KIND_SEARCH = 2;
+
+    private static final String UTF8 = "UTF-8";
+
+    /** Captured guides in the order of the set. */
+    private final List<CapturedGuide> guides;
+    /** Feeds of the captured guides by their IDs. Each feed is written once. */
+    private final Map<Long, IFeed> feeds;
+    /** Article snapshots of the captured data feeds. */
+    private final Map<IFeed, IArticle[]> articles;
+
+    /**
+     * Creates the snapshot of the set.
+     *
+     * @param set set.
+     */
+    private ModelSnapshot(GuidesSet set)
+    {
+        guides = new ArrayList<CapturedGuide>();
+        feeds = new LinkedHashMap<Long, IFeed>();
+        articles = new HashMap<IFeed, IArticle[]>();
+
+        // Only standard guides are stored in the database
+        for (StandardGuide guide : set.getStandardGuides(null))
+        {
+            if (guide.getID() == -1) continue;
+
+            CapturedGuide captured = new CapturedGuide(guide);
+            guides.add(captured);
+
+            for (IFeed feed : captured.feeds)
+            {
+                if (feed.getID() == -1 || feeds.containsKey(feed.getID())) continue;
+
+                feeds.put(feed.getID(), feed);
+                if (feed instanceof DataFeed) articles.put(feed, ((DataFeed)feed).getArticles());
+            }
+        }
+    }
+
+    /**
+     * Captures the guides, feeds, reading lists and articles of the set. Should be called
+     * in the EDT, so that no guide or feed is added or removed while they are copied. The
+     * properties are read later by {@link #write(String, int, File)}; if any of them
+     * changes meanwhile, the change is committed to the database and the snapshot isn't
+     * recorded there.
+     *
+     * @param set set to capture.
+     *
+     * @return snapshot.
+     */
+    static ModelSnapshot capture(GuidesSet set)
+    {
+        return new ModelSnapshot(set);
+    }
+
+    /**
+     * Writes the snapshot to the file. The file is replaced only when the snapshot is
+     * completely written.
+     *
+     * @param stamp         stamp of the snapshot.
+     * @param schemaVersion version of the database schema.
+     * @param file          file to write to.
+     *
+     * @throws IOException if writing fails.
+     */
+    void write(String stamp, int schemaVersion, File file)
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(schemaVersion);
+        writeString(out, stamp);
+
+        // Guides refer to the feeds by IDs
+        out.writeInt(feeds.size());
+        for (IFeed feed : feeds.values()) writeFeed(out, feed, articles.get(feed));
+
+        out.writeInt(guides.size());
+        for (CapturedGuide guide : guides) writeGuide(out, guide);
+
+        out.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tmp);
+        try
+        {
+            bytes.writeTo(fos);
+        } finally
+        {
+            fos.close();
+        }
+
+        if (file.exists() && !file.delete()) throw new IOException("Failed to replace " + file);
+        if (!tmp.renameTo(file)) throw new IOException("Failed to rename " + tmp);
+    }
+
+    /**
+     * Reads the snapshot from the file.
+     *
+     * @param file          file to read from.
+     * @param stamp         expected stamp of the snapshot.
+     * @param schemaVersion expected version of the database schema.
+     * @param provider      provider of article texts.
+     *
+     * @return guides in the order of the set or <code>NULL</code> if the file is missing,
+     *         corrupted or doesn't match the database.
+     */
+    static List<StandardGuide> read(File file, String stamp, int schemaVersion, IArticleTextProvider provider)
+    {
+        if (!file.isFile()) return null;
+
+        List<StandardGuide> guides = null;
+        try
+        {
+            byte[] data = readFile(file);
+            if (data.length < 8) throw new IOException("Truncated");
+
+            Input in = new Input(data, data.length - 8);
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length - 8);
+            if (new Input(data, data.length).skip(data.length - 8).readLong() != crc.getValue())
+            {
+                throw new IOException("Checksum mismatch");
+            }
+
+            if (in.readInt() == MAGIC && in.readInt() == VERSION && in.readInt() == schemaVersion &&
+                stamp.equals(in.readString()))
+            {
+                int count = in.readInt();
+                Map<Long, IFeed> feeds = new HashMap<Long, IFeed>(count * 2);
+                for (int i = 0; i < count; i++)
+                {
+                    IFeed feed = readFeed(in, provider);
+                    feeds.put(feed.getID(), feed);
+                }
+
+                count = in.readInt();
+                guides = new ArrayList<StandardGuide>(count);
+                for (int i = 0; i < count; i++) guides.add(readGuide(in, feeds));
+            }
+        } catch (Exception e)
+        {
+            LOG.log(Level.WARNING, Strings.error("db.failed.to.read.snapshot"), e);
+            guides = null;
+        }
+
+        return guides;
+    }
+
+    // --------------------------------------------------------------------------------------------
+    // Writing
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Writes the guide with its reading lists and feed links.
+     *
+     * @param out       output.
+     * @param captured  captured guide.
+     *
+     * @throws IOException if writing fails.
+     */
+    private static void writeGuide(DataOutputStream out, CapturedGuide captured)
+        throws IOException
+    {
+        StandardGuide guide = captured.guide;
+        out.writeLong(guide.getID());
+        writeString(out, guide.getTitle());
+        writeString(out, guide.getIconKey());
+        out.writeBoolean(guide.isAutoFeedsDiscovery());
+        out.writeBoolean(guide.isPublishingEnabled());
+        writeString(out, guide.getPublishingTitle());
+        writeString(out, guide.getPublishingTags());
+        out.writeBoolean(guide.isPublishingPublic());
+        writeString(out, guide.getPublishingURL());
+        out.writeLong(guide.getLastPublishingTime());
+        out.writeInt(guide.getPublishingRating());
+        out.writeBoolean(guide.isNotificationsAllowed());
+        out.writeBoolean(guide.isMobile());
+        out.writeLong(guide.getLastUpdateTime());
+
+        ReadingList[] lists = captured.lists;
+        out.writeInt(lists.length);
+        for (int i = 0; i < lists.length; i++)
+        {
+            ReadingList list = lists[i];
+            out.writeLong(list.getID());
+            writeString(out, list.getTitle());
+            writeString(out, list.getURL().toString());
+            out.writeLong(list.getLastPollTime());
+            out.writeLong(list.getLastUpdateServerTime());
+            out.writeLong(list.getLastSyncTime());
+
+            DirectFeed[] listFeeds = captured.listFeeds[i];
+            out.writeInt(listFeeds.length);
+            for (DirectFeed feed : listFeeds) out.writeLong(feed.getID());
+        }
+
+        // Feeds in their order and the direct links
+        IFeed[] feeds = captured.feeds;
+        out.writeInt(feeds.length);
+        for (int i = 0; i < feeds.length; i++)
+        {
+            out.writeLong(feeds[i].getID());
+
+            StandardGuide.FeedLinkInfo info = captured.links[i];
+            out.writeBoolean(info != null);
+            if (info != null) out.writeLong(info.getLastSyncTime());
+        }
+    }
+
+    /**
+     * Writes the feed.
+     *
+     * @param out       output.
+     * @param feed      feed.
+     * @param articles  captured articles of the data feed.
+     *
+     * @throws IOException if writing fails.
+     */
+    private static void writeFeed(DataOutputStream out, IFeed feed, IArticle[] articles)
+        throws IOException
+    {
+        out.writeLong(feed.getID());
+
+        if (feed instanceof DirectFeed)
+        {
+            DirectFeed dfeed = (DirectFeed)feed;
+            out.writeByte(KIND_DIRECT);
+            writeURL(out, dfeed.getSiteURL());
+            writeURL(out, dfeed.getXmlURL());
+            writeString(out, dfeed.getBaseTitle());
+            writeString(out, dfeed.getBaseAuthor());
+            writeString(out, dfeed.getBaseDescription());
+            writeString(out, dfeed.getCustomTitle());
+            writeString(out, dfeed.getCustomAuthor());
+            writeString(out, dfeed.getCustomDescription());
+            out.writeBoolean(dfeed.isDead());
+            out.writeInt(dfeed.getInLinks());
+            out.writeLong(dfeed.getLastMetaDataUpdateTime());
+            writeStrings(out, dfeed.getUserTags());
+            out.writeBoolean(dfeed.hasUnsavedUserTags());
+            writeString(out, dfeed.getTagsDescription());
+            writeString(out, dfeed.getTagsExtended());
+            out.writeBoolean(dfeed.isDisabled());
+            out.writeInt(dfeed.getSyncHash());
+            writeDataFeedPart(out, dfeed, articles);
+        } else if (feed instanceof QueryFeed)
+        {
+            QueryFeed qfeed = (QueryFeed)feed;
+            out.writeByte(KIND_QUERY);
+            writeDataFeedPart(out, qfeed, articles);
+            QueryType type = qfeed.getQueryType();
+            out.writeInt(type == null ? -1 : type.getType());
+            writeString(out, qfeed.getBaseTitle());
+            writeString(out, qfeed.getParameter());
+            out.writeBoolean(qfeed.isDedupEnabled());
+            out.writeInt(qfeed.getDedupFrom());
+            out.writeInt(qfeed.getDedupTo());
+        } else
+        {
+            SearchFeed sfeed = (SearchFeed)feed;
+            out.writeByte(KIND_SEARCH);
+            writeString(out, sfeed.getBaseTitle());
+            writeString(out, sfeed.getQuery().serializeToString());
+            out.writeInt(sfeed.getArticlesLimit());
+            out.writeInt(sfeed.getRating());
+            out.writeBoolean(sfeed.isDedupEnabled());
+            out.writeInt(sfeed.getDedupFrom());
+            out.writeInt(sfeed.getDedupTo());
+        }
+
+        writeString(out, feed.getInvalidnessReason());
+        out.writeLong(feed.getLastVisitTime());
+        out.writeBoolean(feed.isCustomViewModeEnabled());
+        out.writeInt(feed.getCustomViewMode());
+        out.writeInt(feed.getType().getType());
+        out.writeInt(feed.getViews());
+        out.writeInt(feed.getClickthroughs());
+        Boolean ascending = feed.getAscendingSorting();
+        out.writeByte(ascending == null ? -1 : ascending ? 1 : 0);
+        out.writeBoolean(feed.isAutoSaveArticles());
+        writeString(out, feed.getAutoSaveArticlesFolder());
+        writeString(out, feed.getAutoSaveArticlesNameFormat());
+        out.writeBoolean(feed.isAutoSaveEnclosures());
+        writeString(out, feed.getAutoSaveEnclosuresFolder());
+        writeString(out, feed.getAutoSaveEnclosuresNameFormat());
+        out.writeLong(feed.getLastUpdateTime());
+        FeedHandlingType handlingType = feed.getHandlingType();
+        out.writeInt(handlingType == null ? FeedHandlingType.DEFAULT.toInteger() : handlingType.toInteger());
+    }
+
+    /**
+     * Writes the data feed part with article headers.
+     *
+     * @param out       output.
+     * @param feed      feed.
+     * @param articles  captured articles of the feed.
+     *
+     * @throws IOException if writing fails.
+     */
+    private static void writeDataFeedPart(DataOutputStream out, DataFeed feed, IArticle[] articles)
+        throws IOException
+    {
+        out.writeLong(feed.getInitTime());
+        out.writeLong(feed.getLastPollTime());
+        out.writeLong(feed.getLastUpdateServerTime());
+        out.writeInt(feed.getRetrievals());
+        writeString(out, feed.getFormat());
+        writeString(out, feed.getLanguage());
+        out.writeInt(feed.getPurgeLimit());
+        out.writeLong(feed.getUpdatePeriod());
+        out.writeInt(feed.getTotalPolledArticles());
+        out.writeInt(feed.getRating());
+        writeStrings(out, feed.getLastFetchArticleKeys());
+
+        int count = 0;
+        for (IArticle article : articles) if (article.getID() != -1) count++;
+
+        out.writeInt(count);
+        for (IArticle article : articles)
+        {
+            if (article.getID() == -1) continue;
+
+            out.writeLong(article.getID());
+            writeString(out, article.getAuthor());
+            Date date = article.getPublicationDate();
+            out.writeLong(date == null ? -1 : date.getTime());
+            writeString(out, article.getTitle());
+            writeString(out, article.getSubject());
+            out.writeBoolean(article.isRead());
+            out.writeBoolean(article.isPinned());
+            writeURL(out, article.getLink());
+            writeString(out, article.getSimpleMatchKey());
+            out.writeInt(article.getPositiveSentimentsCount());
+            out.writeInt(article.getNegativeSentimentsCount());
+        }
+    }
+
+    /**
+     * Writes the URL.
+     *
+     * @param out   output.
+     * @param url   URL or <code>NULL</code>.
+     *
+     * @throws IOException if writing fails.
+     */
+    private static void writeURL(DataOutputStream out, URL url)
+        throws IOException
+    {
+        writeString(out, url == null ? null : url.toString());
+    }
+
+    /**
+     * Writes the array of strings.
+     *
+     * @param out       output.
+     * @param strings   strings or <code>NULL</code>.
+     *
+     * @throws IOException if writing fails.
+     */
+    private static void writeStrings(DataOutputStream out, String[] strings)
+        throws IOException
+    {
+        out.writeInt(strings == null ? -1 : strings.length);
+        if (strings != null) for (String string : strings) writeString(out, string);
+    }
+
+    /**
+     * Writes the string in UTF-8.
+     *
+     * @param out       output.
+     * @param string    string or <code>NULL</code>.
+     *
+     * @throws IOException if writing fails.
+     */
+    private static void writeString(DataOutputStream out, String string)
+        throws IOException
+    {
+        if (string == null)
+        {
+            out.writeInt(-1);
+        } else
+        {
+            byte[] bytes = string.getBytes(UTF8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------
+    // Reading
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Reads the guide in the same way the database loader does.
+     *
+     * @param in    input.
+     * @param feeds ID to feed map.
+     *
+     * @return guide.
+     *
+     * @throws IOException if reading fails.
+     */
+    private static StandardGuide readGuide(Input in, Map<Long, IFeed> feeds)
+        throws IOException
+    {
+        StandardGuide guide = new StandardGuide();
+        guide.setID(in.readLong());
+        guide.setTitle(in.readString());
+        guide.setIconKey(in.readString());
+        guide.setAutoFeedsDiscovery(in.readBoolean());
+        guide.setPublishingEnabled(in.readBoolean());
+        guide.setPublishingTitle(in.readString());
+        guide.setPublishingTags(in.readString());
+        guide.setPublishingPublic(in.readBoolean());
+        guide.setPublishingURL(in.readString());
+        guide.setLastPublishingTime(in.readLong());
+        guide.setPublishingRating(in.readInt());
+        guide.setNotificationsAllowed(in.readBoolean());
+        guide.setMobile(in.readBoolean());
+
+        // Should be the last, see HsqlPersistenceManager.loadGuidesSet()
+        guide.setLastUpdateTime(in.readLong());
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++)
+        {
+            long id = in.readLong();
+            String title = in.readString();
+            ReadingList list = new ReadingList(new URL(in.readString()));
+            list.setID(id);
+            list.setTitle(title);
+            list.setLastPollTime(in.readLong());
+            list.setLastUpdateServerTime(in.readLong());
+            list.setLastSyncTime(in.readLong());
+
+            int feedsCount = in.readInt();
+            for (int j = 0; j < feedsCount; j++) list.add((DirectFeed)getFeed(feeds, in.readLong()));
+
+            guide.add(list);
+        }
+
+        count = in.readInt();
+        Map<IFeed, Integer> positions = new IdentityHashMap<IFeed, Integer>(count);
+        for (int i = 0; i < count; i++)
+        {
+            IFeed feed = getFeed(feeds, in.readLong());
+            positions.put(feed, i);
+
+            if (in.readBoolean())
+            {
+                long lastSyncTime = in.readLong();
+                guide.add(feed);
+                guide.getFeedLinkInfo(feed).setLastSyncTime(lastSyncTime);
+            }
+        }
+        guide.initPositions(positions);
+
+        return guide;
+    }
+
+    /**
+     * Returns the feed with the ID.
+     *
+     * @param feeds feeds map.
+     * @param id    ID.
+     *
+     * @return feed.
+     *
+     * @throws IOException if there's no such feed.
+     */
+    private static IFeed getFeed(Map<Long, IFeed> feeds, long id)
+        throws IOException
+    {
+        IFeed feed = feeds.get(id);
+        if (feed == null) throw new IOException("Unknown feed: " + id);
+        return feed;
+    }
+
+    /**
+     * Reads the feed in the same way the database loader does.
+     *
+     * @param in        input.
+     * @param provider  provider of article texts.
+     *
+     * @return feed.
+     *
+     * @throws IOException if reading fails.
+     */
+    private static IFeed readFeed(Input in, IArticleTextProvider provider)
+        throws IOException
+    {
+        long id = in.readLong();
+        IFeed feed;
+
+        int kind = in.readByte();
+        if (kind == KIND_DIRECT)
+        {
+            DirectFeed dfeed = new DirectFeed();
+            dfeed.setSiteURL(readURL(in));
+            dfeed.setXmlURL(readURL(in));
+            dfeed.setBaseTitle(in.readString());
+            dfeed.setBaseAuthor(in.readString());
+            dfeed.setBaseDescription(in.readString());
+            dfeed.setCustomTitle(in.readString());
+            dfeed.setCustomAuthor(in.readString());
+            dfeed.setCustomDescription(in.readString());
+            dfeed.setDead(in.readBoolean());
+            dfeed.setInLinks(in.readInt());
+            dfeed.setLastMetaDataUpdateTime(in.readLong());
+            dfeed.setUserTags(readStrings(in));
+            dfeed.setUnsavedUserTags(in.readBoolean());
+            dfeed.setTagsDescription(in.readString());
+            dfeed.setTagsExtended(in.readString());
+            dfeed.setDisabled(in.readBoolean());
+            dfeed.setSyncHash(in.readInt());
+            readDataFeedPart(in, dfeed, provider);
+            feed = dfeed;
+        } else if (kind == KIND_QUERY)
+        {
+            QueryFeed qfeed = new QueryFeed();
+            readDataFeedPart(in, qfeed, provider);
+            qfeed.setQueryType(QueryType.getQueryType(in.readInt()));
+            qfeed.setBaseTitle(in.readString());
+            qfeed.setParameter(in.readString());
+            qfeed.setDedupEnabled(in.readBoolean());
+            qfeed.setDedupFrom(in.readInt());
+            qfeed.setDedupTo(in.readInt());
+            feed = qfeed;
+        } else if (kind == KIND_SEARCH)
+        {
+            SearchFeed sfeed = new SearchFeed();
+            sfeed.setBaseTitle(in.readString());
+            sfeed.setQuery(Query.deserializeFromString(in.readString()));
+            sfeed.setArticlesLimit(in.readInt());
+            sfeed.setRating(in.readInt());
+            sfeed.setDedupProperties(in.readBoolean(), in.readInt(), in.readInt());
+            feed = sfeed;
+        } else throw new IOException("Unknown feed kind: " + kind);
+
+        feed.setID(id);
+        feed.setInvalidnessReason(in.readString());
+        feed.setLastVisitTime(in.readLong());
+        feed.setCustomViewModeEnabled(in.readBoolean());
+        feed.setCustomViewMode(in.readInt());
+        feed.setType(FeedType.toObject(in.readInt()));
+        feed.setViews(in.readInt());
+        feed.setClickthroughs(in.readInt());
+        byte ascending = in.readByte();
+        feed.setAscendingSorting(ascending == -1 ? null : ascending == 1);
+        feed.setAutoSaveArticles(in.readBoolean());
+        feed.setAutoSaveArticlesFolder(in.readString());
+        feed.setAutoSaveArticlesNameFormat(in.readString());
+        feed.setAutoSaveEnclosures(in.readBoolean());
+        feed.setAutoSaveEnclosuresFolder(in.readString());
+        feed.setAutoSaveEnclosuresNameFormat(in.readString());
+
+        // Should be the last, see HsqlPersistenceManager.loadFeeds()
+        feed.setLastUpdateTime(in.readLong());
+        feed.setHandlingType(FeedHandlingType.toObject(in.readInt()));
+
+        return feed;
+    }
+
+    /**
+     * Reads the data feed part with article headers.
+     *
+     * @param in        input.
+     * @param feed      feed.
+     * @param provider  provider of article texts.
+     *
+     * @throws IOException if reading fails.
+     */
+    private static void readDataFeedPart(Input in, DataFeed feed, IArticleTextProvider provider)
+        throws IOException
+    {
+        feed.setInitTime(in.readLong());
+        feed.setLastPollTime(in.readLong());
+        feed.setLastUpdateServerTime(in.readLong());
+        feed.setRetrievals(in.readInt());
+        feed.setFormat(in.readString());
+        feed.setLanguage(in.readString());
+        feed.setPurgeLimit(in.readInt());
+        feed.setUpdatePeriod(in.readLong());
+        feed.setTotalPolledArticles(in.readInt());
+        feed.setRating(in.readInt());
+
+        String[] keys = readStrings(in);
+        if (keys == null) keys = new String[0];
+        for (int i = 0; i < keys.length; i++) keys[i] = keys[i].intern();
+        feed.setLastFetchArticleKeys(keys);
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++)
+        {
+            LazyArticle article = new LazyArticle(null);
+            article.setProvider(provider);
+            article.setID(in.readLong());
+            article.setAuthor(in.readString());
+            long publicationDate = in.readLong();
+            article.setPublicationDate(publicationDate == -1 ? null : new Date(publicationDate));
+            article.setTitle(in.readString());
+            article.setSubject(in.readString());
+            article.setRead(in.readBoolean());
+            article.setPinned(in.readBoolean());
+            article.setLink(readURL(in));
+            article.setSimpleMatchKey(in.readString());
+            article.setSentimentsCounts(in.readInt(), in.readInt());
+
+            feed.appendArticle(article);
+        }
+    }
+
+    /**
+     * Reads the URL.
+     *
+     * @param in input.
+     *
+     * @return URL or <code>NULL</code>.
+     *
+     * @throws IOException if reading fails.
+     */
+    private static URL readURL(Input in)
+        throws IOException
+    {
+        String url = in.readString();
+
+        try
+        {
+            return url == null ? null : new URL(url);
+        } catch (MalformedURLException e)
+        {
+            // The URL was taken from the URL object, so it's a corruption
+            IOException ex = new IOException("Invalid URL: " + url);
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads the array of strings.
+     *
+     * @param in input.
+     *
+     * @return strings or <code>NULL</code>.
+     *
+     * @throws IOException if reading fails.
+     */
+    private static String[] readStrings(Input in)
+        throws IOException
+    {
+        int count = in.readInt();
+        if (count == -1) return null;
+
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) strings[i] = in.readString();
+        return strings;
+    }
+
+    /**
+     * Reads the whole file.
+     *
+     * @param file file.
+     *
+     * @return contents.
+     *
+     * @throws IOException if reading fails.
+     */
+    private static byte[] readFile(File file)
+        throws IOException
+    {
+        byte[] data = new byte[(int)file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try
+        {
+            new DataInputStream(in).readFully(data);
+        } finally
+        {
+            in.close();
+        }
+
+        return data;
+    }
+
+    /**
+     * Guide with the copies of its feeds, feed links and reading lists.
+     */
+    private static final class CapturedGuide
+    {
+        /** Guide. */
+        final StandardGuide guide;
+        /** Feeds in their order. */
+        final IFeed[] feeds;
+        /** Direct links of the feeds or <code>NULL</code>s where there's no link. */
+        final StandardGuide.FeedLinkInfo[] links;
+        /** Reading lists. */
+        final ReadingList[] lists;
+        /** Feeds of the reading lists. */
+        final DirectFeed[][] listFeeds;
+
+        /**
+         * Captures the guide.
+         *
+         * @param guide guide.
+         */
+        CapturedGuide(StandardGuide guide)
+        {
+            this.guide = guide;
+
+            feeds = guide.getFeeds();
+            links = new StandardGuide.FeedLinkInfo[feeds.length];
+            for (int i = 0; i < feeds.length; i++)
+            {
+                if (guide.hasDirectLinkWith(feeds[i])) links[i] = guide.getFeedLinkInfo(feeds[i]);
+            }
+
+            lists = guide.getReadingLists();
+            listFeeds = new DirectFeed[lists.length][];
+            for (int i = 0; i < lists.length; i++) listFeeds[i] = lists[i].getFeeds();
+        }
+    }
+
+    /**
+     * Reader of the snapshot data decoding values in place, without intermediate
+     * streams and copies.
+     */
+    private static final class Input
+    {
+        private final byte[] data;
+        private final int limit;
+        private int pos;
+
+        /**
+         * Creates the reader.
+         *
+         * @param data  data.
+         * @param limit number of bytes to read.
+         */
+        Input(byte[] data, int limit)
+        {
+            this.data = data;
+            this.limit = limit;
+        }
+
+        /**
+         * Skips bytes.
+         *
+         * @param count number of bytes.
+         *
+         * @return this reader.
+         *
+         * @throws IOException if there are not enough bytes.
+         */
+        Input skip(int count)
+            throws IOException
+        {
+            ensure(count);
+            pos += count;
+            return this;
+        }
+
+        /**
+         * Reads a byte.
+         *
+         * @return byte.
+         *
+         * @throws IOException if there's no more data.
+         */
+        byte readByte()
+            throws IOException
+        {
+            ensure(1);
+            return data[pos++];
+        }
+
+        /**
+         * Reads a boolean.
+         *
+         * @return boolean.
+         *
+         * @throws IOException if there's no more data.
+         */
+        boolean readBoolean()
+            throws IOException
+        {
+            return readByte() != 0;
+        }
+
+        /**
+         * Reads an integer.
+         *
+         * @return integer.
+         *
+         * @throws IOException if there's no more data.
+         */
+        int readInt()
+            throws IOException
+        {
+            ensure(4);
+            int value = ((data[pos] & 0xff) << 24) | ((data[pos + 1] & 0xff) << 16) |
+                ((data[pos + 2] & 0xff) << 8) | (data[pos + 3] & 0xff);
+            pos += 4;
+            return value;
+        }
+
+        /**
+         * Reads a long.
+         *
+         * @return long.
+         *
+         * @throws IOException if there's no more data.
+         */
+        long readLong()
+            throws IOException
+        {
+            return ((long)readInt() << 32) | (readInt() & 0xffffffffL);
+        }
+
+        /**
+         * Reads the string in UTF-8.
+         *
+         * @return string or <code>NULL</code>.
+         *
+         * @throws IOException if there's no more data.
+         */
+        String readString()
+            throws IOException
+        {
+            int length = readInt();
+            if (length == -1) return null;
+
+            ensure(length);
+            String string = new String(data, pos, length, UTF8);
+            pos += length;
+            return string;
+        }
+
+        /**
+         * Checks that there are enough bytes.
+         *
+         * @param count number of bytes.
+         *
+         * @throws IOException if there are not enough bytes.
+         */
+        private void ensure(int count)
+            throws IOException
+        {
+            if (count < 0 || limit - pos < count) throw new EOFException();
+        }
+    }
+}
@@ -0,0 +1,331 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.persistence.backend;
+
+import com.salas.bb.utils.Constants;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The set of statistics counters which weren't written to the database yet. Counters
+ * are kept per object (and per day for read / pin stats) so that concurrent recorders
+ * touching different objects never contend on the same counter.
+ */
+final class StatisticsDelta
+{
+    /** Guide ID to number of visits. */
+    private final ConcurrentMap<Long, AtomicLong> guideVisits = new ConcurrentHashMap<Long, AtomicLong>();
+    /** Feed ID to number of visits. */
+    private final ConcurrentMap<Long, AtomicLong> feedVisits = new ConcurrentHashMap<Long, AtomicLong>();
+
+    /** Number of articles read per hour of a day. */
+    private final AtomicLongArray readsPerHour = new AtomicLongArray(Constants.HOURS_IN_DAY);
+    /** Number of articles read per day of a week. */
+    private final AtomicLongArray readsPerWeekday = new AtomicLongArray(Constants.DAYS_IN_WEEK);
+
+    /** Guide / day to the number of articles read. */
+    private final ConcurrentMap<DayKey, AtomicLong> guideReads = new ConcurrentHashMap<DayKey, AtomicLong>();
+    /** Feed / day to the number of articles read. */
+    private final ConcurrentMap<DayKey, AtomicLong> feedReads = new ConcurrentHashMap<DayKey, AtomicLong>();
+    /** Guide / day to the number of articles pinned. */
+    private final ConcurrentMap<DayKey, AtomicLong> guidePins = new ConcurrentHashMap<DayKey, AtomicLong>();
+    /** Feed / day to the number of articles pinned. */
+    private final ConcurrentMap<DayKey, AtomicLong> feedPins = new ConcurrentHashMap<DayKey, AtomicLong>();
+
+    /** Titles of guides mentioned in read / pin stats. */
+    private final ConcurrentMap<Long, String> guideTitles = new ConcurrentHashMap<Long, String>();
+    /** Titles of feeds mentioned in read / pin stats. */
+    private final ConcurrentMap<Long, String> feedTitles = new ConcurrentHashMap<Long, String>();
+
+    /** Becomes <code>TRUE</code> when the first count is recorded. */
+    private volatile boolean dirty;
+
+    /**
+     * Returns <code>TRUE</code> if nothing was recorded.
+     *
+     * @return <code>TRUE</code> if nothing was recorded.
+     */
+    boolean isEmpty()
+    {
+        return !dirty;
+    }
+
+    /**
+     * Records a visit to a guide.
+     *
+     * @param id guide ID.
+     */
+    void guideVisited(long id)
+    {
+        increment(guideVisits, id, 1);
+    }
+
+    /**
+     * Records a visit to a feed.
+     *
+     * @param id feed ID.
+     */
+    void feedVisited(long id)
+    {
+        increment(feedVisits, id, 1);
+    }
+
+    /**
+     * Records reading of articles in the hour and weekday buckets.
+     *
+     * @param hour      hour of a day.
+     * @param weekday   day of a week (starting from Sunday = 0).
+     * @param count     number of articles.
+     */
+    void articlesRead(int hour, int weekday, int count)
+    {
+        readsPerHour.addAndGet(hour, count);
+        readsPerWeekday.addAndGet(weekday, count);
+        dirty = true;
+    }
+
+    /**
+     * Records reading of articles in a guide.
+     *
+     * @param id    guide ID.
+     * @param title guide title.
+     * @param day   time of the day start.
+     * @param count number of articles.
+     */
+    void guideRead(long id, String title, long day, int count)
+    {
+        if (title != null) guideTitles.put(id, title);
+        increment(guideReads, new DayKey(id, day), count);
+    }
+
+    /**
+     * Records reading of articles in a feed.
+     *
+     * @param id    feed ID.
+     * @param title feed title.
+     * @param day   time of the day start.
+     * @param count number of articles.
+     */
+    void feedRead(long id, String title, long day, int count)
+    {
+        if (title != null) feedTitles.put(id, title);
+        increment(feedReads, new DayKey(id, day), count);
+    }
+
+    /**
+     * Records pinning of articles in a guide.
+     *
+     * @param id    guide ID.
+     * @param title guide title.
+     * @param day   time of the day start.
+     * @param count number of articles.
+     */
+    void guidePinned(long id, String title, long day, int count)
+    {
+        if (title != null) guideTitles.put(id, title);
+        increment(guidePins, new DayKey(id, day), count);
+    }
+
+    /**
+     * Records pinning of articles in a feed.
+     *
+     * @param id    feed ID.
+     * @param title feed title.
+     * @param day   time of the day start.
+     * @param count number of articles.
+     */
+    void feedPinned(long id, String title, long day, int count)
+    {
+        if (title != null) feedTitles.put(id, title);
+        increment(feedPins, new DayKey(id, day), count);
+    }
+
+    /**
+     * Adds all counts from the other delta to this one. Used to put back the
+     * counts which failed to be written.
+     *
+     * @param other other delta.
+     */
+    void addAll(StatisticsDelta other)
+    {
+        addAll(guideVisits, other.guideVisits);
+        addAll(feedVisits, other.feedVisits);
+        for (int i = 0; i < readsPerHour.length(); i++) readsPerHour.addAndGet(i, other.readsPerHour.get(i));
+        for (int i = 0; i < readsPerWeekday.length(); i++) readsPerWeekday.addAndGet(i, other.readsPerWeekday.get(i));
+        addAll(guideReads, other.guideReads);
+        addAll(feedReads, other.feedReads);
+        addAll(guidePins, other.guidePins);
+        addAll(feedPins, other.feedPins);
+        guideTitles.putAll(other.guideTitles);
+        feedTitles.putAll(other.feedTitles);
+        dirty |= other.dirty;
+    }
+
+    // --------------------------------------------------------------------------------------------
+    // Accessors
+    // --------------------------------------------------------------------------------------------
+
+    /** @return guide ID to number of visits. */
+    Map<Long, AtomicLong> getGuideVisits()
+    {
+        return guideVisits;
+    }
+
+    /** @return feed ID to number of visits. */
+    Map<Long, AtomicLong> getFeedVisits()
+    {
+        return feedVisits;
+    }
+
+    /** @return number of articles read per hour of a day. */
+    AtomicLongArray getReadsPerHour()
+    {
+        return readsPerHour;
+    }
+
+    /** @return number of articles read per day of a week. */
+    AtomicLongArray getReadsPerWeekday()
+    {
+        return readsPerWeekday;
+    }
+
+    /** @return guide / day to the number of articles read. */
+    Map<DayKey, AtomicLong> getGuideReads()
+    {
+        return guideReads;
+    }
+
+    /** @return feed / day to the number of articles read. */
+    Map<DayKey, AtomicLong> getFeedReads()
+    {
+        return feedReads;
+    }
+
+    /** @return guide / day to the number of articles pinned. */
+    Map<DayKey, AtomicLong> getGuidePins()
+    {
+        return guidePins;
+    }
+
+    /** @return feed / day to the number of articles pinned. */
+    Map<DayKey, AtomicLong> getFeedPins()
+    {
+        return feedPins;
+    }
+
+    /** @return titles of guides mentioned in read / pin stats. */
+    Map<Long, String> getGuideTitles()
+    {
+        return guideTitles;
+    }
+
+    /** @return titles of feeds mentioned in read / pin stats. */
+    Map<Long, String> getFeedTitles()
+    {
+        return feedTitles;
+    }
+
+    // --------------------------------------------------------------------------------------------
+    // Helpers
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Adds a number to the counter of a given key, creating the counter if necessary.
+     *
+     * @param map   counters map.
+     * @param key   key.
+     * @param count number to add.
+     */
+    private <K> void increment(ConcurrentMap<K, AtomicLong> map, K key, long count)
+    {
+        AtomicLong counter = map.get(key);
+        if (counter == null)
+        {
+            AtomicLong newCounter = new AtomicLong();
+            counter = map.putIfAbsent(key, newCounter);
+            if (counter == null) counter = newCounter;
+        }
+
+        counter.addAndGet(count);
+        dirty = true;
+    }
+
+    /**
+     * Adds all counters from one map to the other.
+     *
+     * @param dest      destination map.
+     * @param source    source map.
+     */
+    private <K> void addAll(ConcurrentMap<K, AtomicLong> dest, Map<K, AtomicLong> source)
+    {
+        for (Map.Entry<K, AtomicLong> entry : source.entrySet())
+        {
+            increment(dest, entry.getKey(), entry.getValue().get());
+        }
+    }
+
+    /**
+     * The key of object / day counter.
+     */
+    static final class DayKey
+    {
+        /** Object ID. */
+        final long id;
+        /** Time of the day start. */
+        final long day;
+
+        /**
+         * Creates a key.
+         *
+         * @param id    object ID.
+         * @param day   time of the day start.
+         */
+        DayKey(long id, long day)
+        {
+            this.id = id;
+            this.day = day;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            DayKey key = (DayKey)o;
+            return id == key.id && day == key.day;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * (int)(id ^ (id >>> 32)) + (int)(day ^ (day >>> 32));
+        }
+    }
+}
@@ -36,10 +36,7 @@ import org.jdom.Document;
 import org.jdom.Element;
 import org.jdom.input.SAXBuilder;
 
-import java.io.File;
-import java.io.FilenameFilter;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.net.URLConnection;
@@ -47,10 +44,16 @@ import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.prefs.Preferences;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * Central manager component. It's responsible for loading plug-in packages when
  * asked and reporting what's loaded.
+ * <p/>
+ * Package descriptors are kept in the {@link PackageIndex} in the plug-ins directory,
+ * so the packages which weren't changed since the last start aren't opened to find
+ * out what's in them.
  */
 public class Manager
 {
@@ -59,10 +62,11 @@ public class Manager
     static final String KEY_PLUGINS_PACKAGES                = "plugins.packages";
     static final String KEY_PLUGINS_PACKAGES_TS             = "plugins.packages.ts";
 
-    private static final String KEY_PLUGINS_UNINSTALL       = "plugins.uninstall";
+    static final String KEY_PLUGINS_UNINSTALL               = "plugins.uninstall";
     private static final String PACKAGE_NAME_SEPARATOR      = ";";
 
-    private static final String PACKAGE_XML                 = "package.xml";
+    static final String PACKAGE_XML                         = "package.xml";
+    private static final String INDEX_FILENAME              = "packages.index";
     private static final String PACKAGE_FILENAME_PATTERN    = ".*\\.(jar|zip)\\s*$";
 
     private static final String NODE_PACKAGE                = "package";
@@ -87,6 +91,7 @@ public class Manager
 
     private static File pluginDirectory;
     private static Preferences prefs;
+    private static PackageIndex index;
 
     private static List<String> uninstallFilenames;
     private static List<Package> enabledPackages;
@@ -104,9 +109,17 @@ public class Manager
         
         if (!pluginDirectory.exists()) pluginDirectory.mkdirs();
 
+        index = new PackageIndex(new File(pluginDirectory, INDEX_FILENAME));
+        index.load();
+
         doAutoDeployment();
         doUninstall();
         uninstallFilenames = new ArrayList<String>();
+
+        synchronized (INSTALLED_PACKAGES)
+        {
+            installedPackagesLoaded = false;
+        }
     }
 
     /**
@@ -133,6 +146,8 @@ public class Manager
                 enabledPackages.add(p);
             }
         }
+
+        index.store();
     }
 
     /**
@@ -175,16 +190,23 @@ public class Manager
                 installedPackagesLoaded = true;
 
                 INSTALLED_PACKAGES.clear();
+                List<File> packageFiles = new ArrayList<File>();
                 File[] files = pluginDirectory.listFiles();
                 for (File file : files)
                 {
                     if ((file.isDirectory() || file.getName().matches(PACKAGE_FILENAME_PATTERN)) &&
                         !uninstallFilenames.contains(file.getName()))
                     {
+                        packageFiles.add(file);
+
                         Package p = load(file);
                         if (p != null) INSTALLED_PACKAGES.add(p);
                     }
                 }
+
+                // Forget removed packages
+                index.retainAll(packageFiles);
+                index.store();
             }
         }
 
@@ -475,20 +497,11 @@ public class Manager
     {
         boolean is = false;
 
-        if (file.exists())
+        if (file.exists() && (file.isDirectory() || file.getName().matches(PACKAGE_FILENAME_PATTERN)))
         {
             try
             {
-                // Evaluate package XML URL
-                if (file.isDirectory())
-                {
-                    is = new File(file, PACKAGE_XML).exists();
-                } else if (file.getName().matches(PACKAGE_FILENAME_PATTERN))
-                {
-                    URL fileURL = file.toURL();
-                    ClassLoader loader = new URLClassLoader(new URL[] { fileURL }, Manager.class.getClassLoader());
-                    is = loader.getResourceAsStream(PACKAGE_XML) != null;
-                }
+                is = readDescriptor(file).length > 0;
             } catch (IOException e)
             {
                 // Incorrect package
@@ -500,7 +513,8 @@ public class Manager
     }
 
     /**
-     * Makes and attempt to load a package from file.
+     * Makes and attempt to load a package from file. The descriptor is taken from the
+     * index if the package wasn't changed since it was indexed.
      *
      * @param packageFile   package file.
      *
@@ -509,20 +523,26 @@ public class Manager
     private static Package load(File packageFile)
     {
         Package p = null;
-        InputStream is = null;
 
         try
         {
-            // Create loader for the package and initialize the stream
-            ClassLoader loader = new URLClassLoader(new URL[] { packageFile.toURL() }, Manager.class.getClassLoader());
-            is = loader.getResourceAsStream(PACKAGE_XML);
+            byte[] descriptor = index.get(packageFile);
+            if (descriptor == null)
+            {
+                descriptor = readDescriptor(packageFile);
+                index.put(packageFile, descriptor);
+            }
 
-            if (is != null)
+            if (descriptor.length > 0)
             {
                 // Parse the descriptor file
                 SAXBuilder b = new SAXBuilder(false);
                 b.setEntityResolver(EmptyEntityResolver.INSTANCE);
-                Document doc = b.build(XmlReaderFactory.create(is));
+                Document doc = b.build(XmlReaderFactory.create(new ByteArrayInputStream(descriptor)));
+
+                // Create loader for the package. It doesn't look into the package
+                // until the first class or resource is requested.
+                ClassLoader loader = new URLClassLoader(new URL[] { packageFile.toURL() }, Manager.class.getClassLoader());
 
                 // Convert the descriptor into the package
                 p = descriptorToPackage(doc, packageFile, loader);
@@ -530,18 +550,70 @@ public class Manager
         } catch (Exception e)
         {
             LOG.log(Level.WARNING, "Failed to load plug-in package: " + packageFile, e);
-        } finally
+        }
+
+        return p;
+    }
+
+    /**
+     * Reads the descriptor from the package directory or archive.
+     *
+     * @param packageFile   package file or directory.
+     *
+     * @return descriptor or empty array if the package has none.
+     *
+     * @throws IOException if reading fails.
+     */
+    private static byte[] readDescriptor(File packageFile)
+        throws IOException
+    {
+        byte[] descriptor = new byte[0];
+
+        if (packageFile.isDirectory())
+        {
+            File xml = new File(packageFile, PACKAGE_XML);
+            if (xml.exists()) descriptor = readFully(new FileInputStream(xml));
+        } else
         {
+            ZipFile zip = new ZipFile(packageFile);
             try
             {
-                if (is != null) is.close();
-            } catch (IOException e)
+                ZipEntry entry = zip.getEntry(PACKAGE_XML);
+                if (entry != null) descriptor = readFully(zip.getInputStream(entry));
+            } finally
             {
-                // Nothing to do here
+                zip.close();
             }
         }
 
-        return p;
+        return descriptor;
+    }
+
+    /**
+     * Reads the stream to the end and closes it.
+     *
+     * @param is stream.
+     *
+     * @return bytes.
+     *
+     * @throws IOException if reading fails.
+     */
+    private static byte[] readFully(InputStream is)
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try
+        {
+            byte[] buf = new byte[4096];
+            int read;
+            while ((read = is.read(buf)) != -1) bytes.write(buf, 0, read);
+        } finally
+        {
+            is.close();
+        }
+
+        return bytes.toByteArray();
     }
 
     /**
@@ -0,0 +1,231 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+
+package com.salas.bb.plugins;
+
+import com.salas.bb.utils.i18n.Strings;
+
+import java.io.*;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent index of installed packages. For every package file it remembers the size
+ * and the modification time along with the package descriptor read from it, so that the
+ * unchanged packages aren't opened at all when the list of packages is built.
+ * <p/>
+ * The packages without the descriptor are indexed with the empty one to avoid looking
+ * into them again.
+ */
+final class PackageIndex
+{
+    private static final Logger LOG = Logger.getLogger(PackageIndex.class.getName());
+
+    /** Version of the file format. */
+    private static final int FILE_VERSION = 1;
+
+    /** Path of the package file to its entry. */
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    /** File to store index in or <code>NULL</code>. */
+    private final File file;
+
+    /** <code>TRUE</code> when there are changes not yet stored. */
+    private boolean dirty;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param aFile file to store index in or <code>NULL</code> to keep it in memory.
+     */
+    PackageIndex(File aFile)
+    {
+        file = aFile;
+    }
+
+    /**
+     * Returns the descriptor of the package if it wasn't changed since it was indexed.
+     *
+     * @param packageFile package file or directory.
+     *
+     * @return descriptor (empty if the package has none) or <code>NULL</code> if the package
+     *         isn't indexed or was changed.
+     */
+    synchronized byte[] get(File packageFile)
+    {
+        Entry entry = entries.get(packageFile.getAbsolutePath());
+
+        File stamp = getStampFile(packageFile);
+        return entry != null && entry.size == stamp.length() && entry.modified == stamp.lastModified()
+            ? entry.descriptor : null;
+    }
+
+    /**
+     * Records the descriptor of the package.
+     *
+     * @param packageFile   package file or directory.
+     * @param descriptor    descriptor or empty array if the package has none.
+     */
+    synchronized void put(File packageFile, byte[] descriptor)
+    {
+        File stamp = getStampFile(packageFile);
+        entries.put(packageFile.getAbsolutePath(), new Entry(stamp.length(), stamp.lastModified(), descriptor));
+        dirty = true;
+    }
+
+    /**
+     * Removes the entries of all packages except the given.
+     *
+     * @param packageFiles package files to keep.
+     */
+    synchronized void retainAll(Collection<File> packageFiles)
+    {
+        Set<String> paths = new HashSet<String>();
+        for (File packageFile : packageFiles) paths.add(packageFile.getAbsolutePath());
+
+        dirty |= entries.keySet().retainAll(paths);
+    }
+
+    /**
+     * Returns the file, which size and modification time tell if the package was changed.
+     * For the directory it's the descriptor in it as the directory itself isn't touched when
+     * the descriptor changes.
+     *
+     * @param packageFile package file or directory.
+     *
+     * @return stamp file.
+     */
+    private static File getStampFile(File packageFile)
+    {
+        return packageFile.isDirectory() ? new File(packageFile, Manager.PACKAGE_XML) : packageFile;
+    }
+
+    // --------------------------------------------------------------------------------------------
+    // Persistence
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Loads the index from the file. If the file is damaged, the index stays empty.
+     */
+    synchronized void load()
+    {
+        entries.clear();
+        dirty = false;
+
+        if (file == null || !file.exists()) return;
+
+        try
+        {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try
+            {
+                if (in.readInt() != FILE_VERSION) return;
+
+                int count = in.readInt();
+                for (int i = 0; i < count; i++)
+                {
+                    String path = in.readUTF();
+                    long size = in.readLong();
+                    long modified = in.readLong();
+                    byte[] descriptor = new byte[in.readInt()];
+                    in.readFully(descriptor);
+
+                    entries.put(path, new Entry(size, modified, descriptor));
+                }
+            } finally
+            {
+                in.close();
+            }
+        } catch (IOException e)
+        {
+            LOG.log(Level.WARNING, Strings.error("plugins.failed.to.load.index"), e);
+            entries.clear();
+        }
+    }
+
+    /**
+     * Stores the index in the file if there are changes.
+     */
+    synchronized void store()
+    {
+        if (file == null || !dirty) return;
+
+        File temp = new File(file.getPath() + ".tmp");
+        try
+        {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try
+            {
+                out.writeInt(FILE_VERSION);
+
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> entry : entries.entrySet())
+                {
+                    Entry en = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(en.size);
+                    out.writeLong(en.modified);
+                    out.writeInt(en.descriptor.length);
+                    out.write(en.descriptor);
+                }
+            } finally
+            {
+                out.close();
+            }
+
+            if (file.exists() && !file.delete()) throw new IOException("Can't delete " + file);
+            if (!temp.renameTo(file)) throw new IOException("Can't rename " + temp);
+
+            dirty = false;
+        } catch (IOException e)
+        {
+            LOG.log(Level.WARNING, Strings.error("plugins.failed.to.store.index"), e);
+        }
+    }
+
+    /**
+     * Indexed package.
+     */
+    private static class Entry
+    {
+        private final long size;
+        private final long modified;
+        private final byte[] descriptor;
+
+        /**
+         * Creates an entry.
+         *
+         * @param aSize         size of the stamp file.
+         * @param aModified     modification time of the stamp file.
+         * @param aDescriptor   descriptor.
+         */
+        Entry(long aSize, long aModified, byte[] aDescriptor)
+        {
+            size = aSize;
+            modified = aModified;
+            descriptor = aDescriptor;
+        }
+    }
+}
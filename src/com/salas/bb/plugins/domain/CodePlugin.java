@@ -27,10 +27,16 @@ package com.salas.bb.plugins.domain;
 import com.salas.bb.utils.StringUtils;
 import org.jdom.Element;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
  * A plug-in based on Java code.
+ * <p/>
+ * The plug-in with <code>activation="lazy"</code> isn't loaded at startup. It lists the
+ * actions it serves in <code>action</code> sub-elements and is loaded when one of them
+ * is performed for the first time (see {@link LazyCodePlugin}).
  */
 public class CodePlugin
 {
@@ -51,6 +57,32 @@ public class CodePlugin
         String className = element.getAttributeValue("class");
         if (StringUtils.isEmpty(className)) throw new LoaderException("Class name isn't specified");
 
+        Map<String,String> props = PluginUtils.getPluginProperties(element);
+        if (PluginUtils.isLazy(element))
+        {
+            List<String> actions = getActionNames(element);
+            if (actions.isEmpty()) throw new LoaderException("Lazy plug-in " + className + " has no actions");
+
+            return new LazyCodePlugin(className, loader, props, actions);
+        }
+
+        return instantiate(className, loader, props);
+    }
+
+    /**
+     * Loads the class of the plug-in and creates an instance.
+     *
+     * @param className name of the plug-in class.
+     * @param loader    loader to use.
+     * @param props     plug-in parameters.
+     *
+     * @return a plug-in.
+     *
+     * @throws LoaderException if something wrong happens.
+     */
+    static ICodePlugin instantiate(String className, ClassLoader loader, Map<String, String> props)
+        throws LoaderException
+    {
         // Load class
         Class<ICodePlugin> clazz;
         try
@@ -68,8 +100,6 @@ public class CodePlugin
         {
             pl = clazz.newInstance();
             pl.setPackageLoader(loader);
-
-            Map<String,String> props = PluginUtils.getPluginProperties(element);
             pl.setParameters(props);
         } catch (Exception e)
         {
@@ -78,4 +108,24 @@ public class CodePlugin
 
         return pl;
     }
+
+    /**
+     * Returns the names of actions listed in the element.
+     *
+     * @param element   XML element to parse.
+     *
+     * @return names.
+     */
+    private static List<String> getActionNames(Element element)
+    {
+        List<String> names = new ArrayList<String>();
+
+        for (Object o : element.getChildren("action"))
+        {
+            String name = ((Element)o).getAttributeValue("name");
+            if (StringUtils.isNotEmpty(name)) names.add(name);
+        }
+
+        return names;
+    }
 }
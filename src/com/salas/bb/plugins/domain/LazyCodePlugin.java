@@ -0,0 +1,206 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+
+package com.salas.bb.plugins.domain;
+
+import com.jgoodies.uif.action.ActionManager;
+import com.salas.bb.utils.i18n.Strings;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.text.MessageFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Code plug-in which class isn't loaded until it's really needed. On initialization it
+ * only registers placeholder actions under the names listed in the descriptor. When one
+ * of them is performed for the first time, the plug-in class is loaded, instantiated and
+ * initialized. The plug-in receives the events of the placeholders if it implements
+ * <code>ActionListener</code>. The command of the event is the name of the action.
+ */
+public class LazyCodePlugin implements ICodePlugin
+{
+    private static final Logger LOG = Logger.getLogger(LazyCodePlugin.class.getName());
+
+    private final String className;
+    private final Map<String, Action> actions;
+
+    private ClassLoader loader;
+    private Map<String, String> params;
+    private ICodePlugin plugin;
+
+    /**
+     * Creates the plug-in.
+     *
+     * @param className     name of the plug-in class.
+     * @param loader        package loader.
+     * @param params        plug-in parameters.
+     * @param actionNames   names of actions activating the plug-in.
+     */
+    LazyCodePlugin(String className, ClassLoader loader, Map<String, String> params, List<String> actionNames)
+    {
+        this.className = className;
+        this.loader = loader;
+        this.params = params;
+
+        actions = new LinkedHashMap<String, Action>();
+        for (String name : actionNames) actions.put(name, new ActivatingAction(name));
+    }
+
+    /**
+     * Returns the name of plug-in type (Theme, Actions ...).
+     *
+     * @return the name of plug-in type.
+     */
+    public String getTypeName()
+    {
+        return "Code";
+    }
+
+    /**
+     * Sets the package loader to use for resources access.
+     *
+     * @param loader loader
+     */
+    public void setPackageLoader(ClassLoader loader)
+    {
+        this.loader = loader;
+    }
+
+    /**
+     * Sets the parameters before the initialization.
+     *
+     * @param params parameters.
+     */
+    public void setParameters(Map<String, String> params)
+    {
+        this.params = params;
+    }
+
+    /** Initializes plug-in by registering the placeholder actions. */
+    public void initialize()
+    {
+        for (Map.Entry<String, Action> entry : actions.entrySet())
+        {
+            ActionManager.register(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Returns the name of the plug-in class.
+     *
+     * @return class name.
+     */
+    public String getClassName()
+    {
+        return className;
+    }
+
+    /**
+     * Returns the placeholder action.
+     *
+     * @param name name of the action.
+     *
+     * @return action or <code>NULL</code> if the plug-in doesn't serve it.
+     */
+    public Action getAction(String name)
+    {
+        return actions.get(name);
+    }
+
+    /**
+     * Returns <code>TRUE</code> if the plug-in class is loaded and initialized.
+     *
+     * @return <code>TRUE</code> if activated.
+     */
+    public synchronized boolean isActivated()
+    {
+        return plugin != null;
+    }
+
+    /**
+     * Loads and initializes the plug-in unless it's done already.
+     *
+     * @return plug-in.
+     *
+     * @throws LoaderException if the plug-in can't be loaded.
+     */
+    public synchronized ICodePlugin activate()
+        throws LoaderException
+    {
+        if (plugin == null)
+        {
+            ICodePlugin pl = CodePlugin.instantiate(className, loader, params);
+            pl.initialize();
+            plugin = pl;
+        }
+
+        return plugin;
+    }
+
+    /**
+     * Placeholder action activating the plug-in.
+     */
+    private class ActivatingAction extends AbstractAction
+    {
+        private final String name;
+
+        /**
+         * Creates the action.
+         *
+         * @param name name of the action.
+         */
+        ActivatingAction(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Invoked when an action occurs.
+         *
+         * @param e event.
+         */
+        public void actionPerformed(ActionEvent e)
+        {
+            try
+            {
+                ICodePlugin pl = activate();
+                if (pl instanceof ActionListener)
+                {
+                    ((ActionListener)pl).actionPerformed(new ActionEvent(e.getSource(), e.getID(), name,
+                        e.getWhen(), e.getModifiers()));
+                }
+            } catch (LoaderException ex)
+            {
+                LOG.log(Level.WARNING, MessageFormat.format(Strings.error("plugins.failed.to.activate"), className), ex);
+            }
+        }
+    }
+}
@@ -36,6 +36,24 @@ import java.util.Map;
  */
 public abstract class PluginUtils
 {
+    /** Attribute telling when the plug-in is activated. */
+    private static final String ATTR_ACTIVATION = "activation";
+    /** Activation deferred until the first use. */
+    private static final String ACTIVATION_LAZY = "lazy";
+
+    /**
+     * Returns <code>TRUE</code> if the plug-in declares lazy activation
+     * (<code>activation="lazy"</code>).
+     *
+     * @param element   plug-in element.
+     *
+     * @return <code>TRUE</code> if the plug-in is activated on the first use.
+     */
+    protected static boolean isLazy(Element element)
+    {
+        return ACTIVATION_LAZY.equalsIgnoreCase(element.getAttributeValue(ATTR_ACTIVATION));
+    }
+
     /**
      * Takes the properties from the XML element.
      *
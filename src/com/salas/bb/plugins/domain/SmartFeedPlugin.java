@@ -161,17 +161,20 @@ public class SmartFeedPlugin extends DefaultQueryType implements IPlugin
         Integer modeI = MODES.get(mode.trim().toLowerCase());
         if (modeI == null) throw new LoaderException("Mode can be: mini, brief or full");
 
-        // Icon check
+        // Icon check. The lazy plug-in doesn't look into the package until the icon is shown.
         if (StringUtils.isEmpty(icon)) throw new LoaderException("Icon can't be empty");
-        InputStream is = loader.getResourceAsStream(icon);
-        if (is == null) throw new LoaderException("Icon file cannot be found"); else
+        if (!PluginUtils.isLazy(element))
         {
-            try
+            InputStream is = loader.getResourceAsStream(icon);
+            if (is == null) throw new LoaderException("Icon file cannot be found"); else
             {
-                is.close();
-            } catch (IOException e)
-            {
-                // Fall through
+                try
+                {
+                    is.close();
+                } catch (IOException e)
+                {
+                    // Fall through
+                }
             }
         }
 
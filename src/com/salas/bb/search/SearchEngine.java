@@ -166,6 +166,37 @@ public class SearchEngine
         }
     }
 
+    /**
+     * Finds articles matching the text right away in the calling thread.
+     *
+     * @param set   guides set to look in.
+     * @param text  text.
+     * @param limit maximum number of articles to return.
+     *
+     * @return matching articles.
+     */
+    public static List<IArticle> findArticles(GuidesSet set, String text, int limit)
+    {
+        SearchMatcher matcher = createMatcher(text.trim(), false);
+        List<IArticle> found = new ArrayList<IArticle>();
+
+        FeedsList feedsList = set.getFeedsList();
+        for (int f = 0; f < feedsList.getFeedsCount() && found.size() < limit; f++)
+        {
+            IFeed feed = feedsList.getFeedAt(f);
+            if (feed instanceof DataFeed)
+            {
+                IArticle[] articles = feed.getArticles();
+                for (int a = 0; a < articles.length && found.size() < limit; a++)
+                {
+                    if (matcher.matches(articles[a])) found.add(articles[a]);
+                }
+            }
+        }
+
+        return found;
+    }
+
     /**
      * Reports finish of search.
      */
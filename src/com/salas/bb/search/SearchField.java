@@ -24,11 +24,12 @@
 
 package com.salas.bb.search;
 
+import com.salas.bb.utils.concurrency.ScheduledTask;
+import com.salas.bb.utils.concurrency.Scheduler;
+
 import javax.swing.*;
 import java.awt.event.*;
 import java.awt.*;
-import java.util.*;
-import java.util.Timer;
 
 /**
  * Search field with tpye selector. It fires action event with the search
@@ -40,7 +41,7 @@ public class SearchField extends JTextField
     private static final int PRE_FIRE_DELAY = 750;
 
     private String lastFiredText;
-    private java.util.Timer timer;
+    private ScheduledTask fireTask;
 
     /**
      * Creates search field.
@@ -87,8 +88,7 @@ public class SearchField extends JTextField
      */
     private void setTimer()
     {
-        timer = new Timer();
-        timer.schedule(new TimerTask()
+        fireTask = Scheduler.interfaceLane().schedule(new Runnable()
         {
             public void run()
             {
@@ -108,7 +108,7 @@ public class SearchField extends JTextField
      */
     private void resetTimer()
     {
-        if (timer != null) timer.cancel();
+        if (fireTask != null) fireTask.cancel();
     }
 
     /**
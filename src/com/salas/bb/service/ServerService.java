@@ -68,6 +68,11 @@ public final class ServerService
     private static ServerService instance;
     private static final int OPML_VERSION = 1;
 
+    /** Key of the service sequence in the result of delta restoring. */
+    public static final String KEY_DELTA_SEQUENCE = "sequence";
+    /** Key of the delta data in the result of delta restoring. */
+    public static final String KEY_DELTA_DATA = "delta";
+
     private final static Object opmlURLsLock = new Object();
     private static Map opmlURLs = null;
 
@@ -406,6 +411,118 @@ public final class ServerService
         return prefs;
     }
 
+    /**
+     * Stores the compressed delta of changes made after the given service sequence.
+     *
+     * @param email     user's account email.
+     * @param password  user's account password.
+     * @param base      service sequence the client has seen last.
+     * @param delta     compressed delta.
+     *
+     * @return new service sequence or <code>-1</code> if the full snapshot should be stored.
+     *
+     * @throws ServerServiceException in case of errors with communication or account.
+     */
+    public static int syncStoreDelta(String email, String password, int base, byte[] delta)
+        throws ServerServiceException
+    {
+        Integer sessionId = getSessionId(email, password);
+
+        XmlRpcHandler cl = getClient();
+        Vector<Object> params = new Vector<Object>(3);
+        params.add(sessionId);
+        params.add(base);
+        params.add(delta);
+
+        Integer sequence;
+        try
+        {
+            sequence = (Integer)cl.execute("sync.storeDelta", params);
+        } catch (XmlRpcException e)
+        {
+            throw new ServerServiceException(MSG_COM_PROBLEM, e);
+        } catch (Exception e)
+        {
+            logError(MSG_UNABLE_TO_STORE_DATA, e);
+            throw new ServerServiceException(MSG_PROCESSING_ERROR, e);
+        }
+
+        return sequence == null ? -1 : sequence;
+    }
+
+    /**
+     * Restores the compressed delta of changes made after the given service sequence.
+     *
+     * @param email     user's account email.
+     * @param password  user's account password.
+     * @param since     service sequence the client has seen last.
+     *
+     * @return map with the current service sequence ({@link #KEY_DELTA_SEQUENCE}) and the delta
+     *         ({@link #KEY_DELTA_DATA}), which is missing if the full snapshot should be restored.
+     *
+     * @throws ServerServiceException in case of errors with communication or account.
+     */
+    public static Map syncRestoreDelta(String email, String password, int since)
+        throws ServerServiceException
+    {
+        Integer sessionId = getSessionId(email, password);
+
+        XmlRpcHandler cl = getClient();
+        Vector<Object> params = new Vector<Object>(2);
+        params.add(sessionId);
+        params.add(since);
+
+        Map result;
+        try
+        {
+            result = (Map)cl.execute("sync.restoreDelta", params);
+        } catch (XmlRpcException e)
+        {
+            throw new ServerServiceException(MSG_COM_PROBLEM, e);
+        } catch (Exception e)
+        {
+            logError("Unable to restore delta from the server.", e);
+            throw new ServerServiceException(MSG_PROCESSING_ERROR, e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Resets the log of deltas after the full snapshot was stored.
+     *
+     * @param email     user's account email.
+     * @param password  user's account password.
+     *
+     * @return service sequence of the snapshot.
+     *
+     * @throws ServerServiceException in case of errors with communication or account.
+     */
+    public static int syncResetDelta(String email, String password)
+        throws ServerServiceException
+    {
+        Integer sessionId = getSessionId(email, password);
+
+        XmlRpcHandler cl = getClient();
+        Vector<Object> params = new Vector<Object>(1);
+        params.add(sessionId);
+
+        Integer sequence;
+        try
+        {
+            sequence = (Integer)cl.execute("sync.resetDelta", params);
+        } catch (XmlRpcException e)
+        {
+            throw new ServerServiceException(MSG_COM_PROBLEM, e);
+        } catch (Exception e)
+        {
+            logError(MSG_UNABLE_TO_STORE_DATA, e);
+            throw new ServerServiceException(MSG_PROCESSING_ERROR, e);
+        }
+
+        return sequence == null ? -1 : sequence;
+    }
+
     /**
      * Takes session id using account information.
      *
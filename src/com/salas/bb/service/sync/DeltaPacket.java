@@ -0,0 +1,66 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.service.sync;
+
+/**
+ * Changes restored from the delta synchronization service.
+ */
+public final class DeltaPacket
+{
+    private final int       sequence;
+    private final byte[]    data;
+
+    /**
+     * Creates the packet.
+     *
+     * @param aSequence current service sequence.
+     * @param aData     encoded delta or <code>NULL</code> if the full snapshot should be restored.
+     */
+    public DeltaPacket(int aSequence, byte[] aData)
+    {
+        sequence = aSequence;
+        data = aData;
+    }
+
+    /**
+     * Returns current service sequence.
+     *
+     * @return sequence.
+     */
+    public int getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * Returns encoded delta.
+     *
+     * @return delta or <code>NULL</code> if the full snapshot should be restored.
+     */
+    public byte[] getData()
+    {
+        return data;
+    }
+}
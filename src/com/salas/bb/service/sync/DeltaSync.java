@@ -0,0 +1,254 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.service.sync;
+
+import com.salas.bb.domain.GuidesSet;
+import com.salas.bb.service.ServerServiceException;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Incremental synchronization. Pushes the changes recorded in the journal since the last
+ * acknowledgement and pulls the changes made by other clients since the last seen service
+ * sequence. When either side has diverged, or the service doesn't support deltas, the
+ * methods report it and the caller exchanges the full snapshot instead.
+ */
+public class DeltaSync
+{
+    private static final Logger LOG = Logger.getLogger(DeltaSync.class.getName());
+
+    private final SyncJournal       journal;
+    private final IDeltaSyncService service;
+
+    /** <code>TRUE</code> when the service has failed to handle deltas. */
+    private volatile boolean unsupported;
+    /** Service sequence reported during the last pull. */
+    private int pulledSequence = -1;
+
+    /**
+     * Creates the synchronization.
+     *
+     * @param aJournal  journal of local changes.
+     * @param aService  service to exchange deltas with.
+     */
+    public DeltaSync(SyncJournal aJournal, IDeltaSyncService aService)
+    {
+        journal = aJournal;
+        service = aService;
+    }
+
+    /**
+     * Returns the journal of local changes.
+     *
+     * @return journal.
+     */
+    public SyncJournal getJournal()
+    {
+        return journal;
+    }
+
+    /**
+     * Returns <code>TRUE</code> if only the full snapshot can bring the service up to date:
+     * the service has failed to handle deltas during this session or the journal has
+     * diverged. The journal stays diverged until the service confirms the snapshot with
+     * the delta sequence, so a service without delta support always gets snapshots.
+     *
+     * @return <code>TRUE</code> if the full snapshot should be exchanged.
+     */
+    public boolean isSnapshotRequired()
+    {
+        return unsupported || journal.isDiverged();
+    }
+
+    /**
+     * Pushes local changes to the service.
+     *
+     * @param email     account email.
+     * @param password  account password.
+     *
+     * @return <code>TRUE</code> if the service has all local changes (pushed now or nothing to
+     *         push), <code>FALSE</code> if the full snapshot should be stored.
+     */
+    public boolean push(String email, String password)
+    {
+        if (isSnapshotRequired()) return false;
+
+        long sequence = journal.getSequence();
+        SyncDelta delta = journal.getPending();
+
+        // The service has acknowledged everything up to here
+        if (delta.isEmpty()) return true;
+
+        int base = journal.getServerSequence();
+        int head;
+        try
+        {
+            head = service.storeDelta(email, password, base, delta.encode());
+        } catch (ServerServiceException e)
+        {
+            serviceFailed(e);
+            return false;
+        }
+
+        if (head < 0)
+        {
+            journal.markDiverged();
+            return false;
+        }
+
+        journal.acknowledge(sequence);
+
+        // If nobody else has pushed changes in between, we know everything up to the
+        // new sequence. Otherwise the next pull will bring the missing changes along
+        // with ours, which is harmless.
+        if (head == base + 1) journal.setServerSequence(head);
+
+        return true;
+    }
+
+    /**
+     * Returns the mark to pass to {@link #snapshotStored} when the full snapshot is taken.
+     *
+     * @return mark.
+     */
+    public long getSnapshotMark()
+    {
+        return journal.getSequence();
+    }
+
+    /**
+     * Invoked when the full snapshot was stored on the service.
+     *
+     * @param email     account email.
+     * @param password  account password.
+     * @param mark      mark taken with {@link #getSnapshotMark()} before the snapshot was made.
+     */
+    public void snapshotStored(String email, String password, long mark)
+    {
+        if (!unsupported)
+        {
+            try
+            {
+                journal.snapshotTaken(mark, service.resetDelta(email, password));
+                return;
+            } catch (ServerServiceException e)
+            {
+                serviceFailed(e);
+            }
+        }
+
+        // Keep the journal short even if there's nobody to send it to
+        journal.acknowledge(mark);
+    }
+
+    /**
+     * Pulls the changes from the service.
+     *
+     * @param email     account email.
+     * @param password  account password.
+     *
+     * @return changes to apply with {@link #apply} or <code>NULL</code> if the full snapshot
+     *         should be restored.
+     */
+    public SyncDelta pull(String email, String password)
+    {
+        pulledSequence = -1;
+        if (unsupported) return null;
+
+        DeltaPacket packet;
+        try
+        {
+            packet = service.restoreDelta(email, password, journal.getServerSequence());
+        } catch (ServerServiceException e)
+        {
+            serviceFailed(e);
+            return null;
+        }
+
+        pulledSequence = packet.getSequence();
+
+        SyncDelta delta = null;
+        if (packet.getData() != null && journal.getServerSequence() != -1)
+        {
+            try
+            {
+                delta = SyncDelta.decode(packet.getData());
+            } catch (IOException e)
+            {
+                LOG.log(Level.WARNING, "Failed to decode the delta.", e);
+            }
+        }
+
+        return delta;
+    }
+
+    /**
+     * Applies the pulled changes to the set without recording them in the journal.
+     *
+     * @param delta changes.
+     * @param set   set to update.
+     *
+     * @return number of changes applied.
+     */
+    public int apply(SyncDelta delta, GuidesSet set)
+    {
+        int applied;
+
+        journal.suspend();
+        try
+        {
+            applied = delta.apply(set);
+        } finally
+        {
+            journal.resume();
+        }
+
+        journal.setServerSequence(pulledSequence);
+
+        return applied;
+    }
+
+    /**
+     * Invoked when the full snapshot was restored after the {@link #pull} has asked for it.
+     */
+    public void snapshotRestored()
+    {
+        if (pulledSequence != -1) journal.setServerSequence(pulledSequence);
+    }
+
+    /**
+     * Records that the service can't handle deltas. It happens when the service doesn't
+     * support them, so we don't try again until the next start.
+     *
+     * @param e error.
+     */
+    private void serviceFailed(ServerServiceException e)
+    {
+        LOG.log(Level.FINE, "Delta synchronization is unavailable.", e);
+        unsupported = true;
+    }
+}
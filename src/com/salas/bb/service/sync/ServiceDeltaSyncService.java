@@ -0,0 +1,92 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.service.sync;
+
+import com.salas.bb.service.ServerService;
+import com.salas.bb.service.ServerServiceException;
+
+import java.util.Map;
+
+/**
+ * Delta synchronization through the BlogBridge service.
+ */
+public class ServiceDeltaSyncService implements IDeltaSyncService
+{
+    /**
+     * Stores the delta of changes.
+     *
+     * @param email     account email.
+     * @param password  account password.
+     * @param base      service sequence the client has seen last.
+     * @param data      encoded delta.
+     *
+     * @return new service sequence or <code>-1</code> if the delta can't be accepted.
+     *
+     * @throws ServerServiceException in case of service error.
+     */
+    public int storeDelta(String email, String password, int base, byte[] data)
+        throws ServerServiceException
+    {
+        return ServerService.syncStoreDelta(email, password, base, data);
+    }
+
+    /**
+     * Restores all changes made after the given sequence.
+     *
+     * @param email     account email.
+     * @param password  account password.
+     * @param since     service sequence the client has seen last.
+     *
+     * @return packet with the current sequence and the merged delta.
+     *
+     * @throws ServerServiceException in case of service error.
+     */
+    public DeltaPacket restoreDelta(String email, String password, int since)
+        throws ServerServiceException
+    {
+        Map result = ServerService.syncRestoreDelta(email, password, since);
+
+        Integer sequence = (Integer)result.get(ServerService.KEY_DELTA_SEQUENCE);
+        byte[] data = (byte[])result.get(ServerService.KEY_DELTA_DATA);
+
+        return new DeltaPacket(sequence == null ? -1 : sequence, data);
+    }
+
+    /**
+     * Resets the log of deltas after the full snapshot was stored.
+     *
+     * @param email     account email.
+     * @param password  account password.
+     *
+     * @return service sequence of the snapshot.
+     *
+     * @throws ServerServiceException in case of service error.
+     */
+    public int resetDelta(String email, String password)
+        throws ServerServiceException
+    {
+        return ServerService.syncResetDelta(email, password);
+    }
+}
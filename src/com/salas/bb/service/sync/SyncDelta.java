@@ -0,0 +1,633 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.service.sync;
+
+import com.salas.bb.domain.*;
+import com.salas.bb.utils.StringUtils;
+
+import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The set of changes exchanged with the service during incremental synchronization. Each
+ * entry describes the latest state of a single object: the presence of a guide, a feed in a
+ * guide or a reading list in a guide, or read / pinned flags of an article. Since entries
+ * carry states and not operations, applying the same delta twice is harmless.
+ */
+public final class SyncDelta
+{
+    /** Guide entry. The key is the guide title. */
+    public static final int TYPE_GUIDE          = 0;
+    /** Feed entry. The key is the guide title and the feed XML URL. */
+    public static final int TYPE_FEED           = 1;
+    /** Reading list entry. The key is the guide title and the list URL. */
+    public static final int TYPE_READING_LIST   = 2;
+    /** Article entry. The key is the feed XML URL and the article match key. */
+    public static final int TYPE_ARTICLE        = 3;
+
+    /** Version of the encoding. */
+    private static final int VERSION = 1;
+    /** Separator of compound key parts. */
+    private static final char SEPARATOR = '\n';
+
+    private final List<Entry> entries;
+
+    /**
+     * Creates an empty delta.
+     */
+    public SyncDelta()
+    {
+        entries = new ArrayList<Entry>();
+    }
+
+    /**
+     * Adds an entry to the end of the delta.
+     *
+     * @param entry entry.
+     */
+    public void add(Entry entry)
+    {
+        entries.add(entry);
+    }
+
+    /**
+     * Returns entries in the order of changes.
+     *
+     * @return entries.
+     */
+    public List<Entry> getEntries()
+    {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Returns <code>TRUE</code> if there are no entries.
+     *
+     * @return <code>TRUE</code> if there are no entries.
+     */
+    public boolean isEmpty()
+    {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Encodes the delta into the compressed binary form.
+     *
+     * @return bytes.
+     */
+    public byte[] encode()
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try
+        {
+            DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes));
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) entry.write(out);
+            out.close();
+        } catch (IOException e)
+        {
+            // Writing to memory never fails
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes the delta from the compressed binary form.
+     *
+     * @param data bytes.
+     *
+     * @return delta.
+     *
+     * @throws IOException if the data is corrupt or of unsupported version.
+     */
+    public static SyncDelta decode(byte[] data)
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(data)));
+        try
+        {
+            if (in.readInt() != VERSION) throw new IOException("Unsupported delta version.");
+
+            SyncDelta delta = new SyncDelta();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) delta.add(Entry.read(in));
+
+            return delta;
+        } finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Applies the delta to the set.
+     *
+     * @param set set to update.
+     *
+     * @return number of entries which have changed something.
+     */
+    public int apply(GuidesSet set)
+    {
+        int applied = 0;
+
+        for (Entry entry : entries)
+        {
+            try
+            {
+                if (entry.apply(set)) applied++;
+            } catch (MalformedURLException e)
+            {
+                // Skip the entry we can't understand
+            }
+        }
+
+        return applied;
+    }
+
+    /**
+     * Builds the compound key.
+     *
+     * @param first     first part.
+     * @param second    second part.
+     *
+     * @return key.
+     */
+    static String key(String first, String second)
+    {
+        return first + SEPARATOR + second;
+    }
+
+    /**
+     * Single change in delta.
+     */
+    public static final class Entry
+    {
+        private final int     type;
+        private final String  key;
+        private final boolean present;
+        private final boolean read;
+        private final boolean pinned;
+
+        /**
+         * Creates an entry.
+         *
+         * @param aType     type of the object.
+         * @param aKey      key of the object.
+         * @param aPresent  <code>TRUE</code> if object is present, <code>FALSE</code> if removed.
+         * @param aRead     read flag of an article.
+         * @param aPinned   pinned flag of an article.
+         */
+        public Entry(int aType, String aKey, boolean aPresent, boolean aRead, boolean aPinned)
+        {
+            type = aType;
+            key = aKey;
+            present = aPresent;
+            read = aRead;
+            pinned = aPinned;
+        }
+
+        /**
+         * Creates the entry for a guide.
+         *
+         * @param title     title of the guide.
+         * @param present   <code>TRUE</code> if guide is present.
+         *
+         * @return entry.
+         */
+        public static Entry guide(String title, boolean present)
+        {
+            return new Entry(TYPE_GUIDE, title, present, false, false);
+        }
+
+        /**
+         * Creates the entry for a feed in the guide.
+         *
+         * @param guide     guide title.
+         * @param xmlURL    feed URL.
+         * @param present   <code>TRUE</code> if feed is in the guide.
+         *
+         * @return entry.
+         */
+        public static Entry feed(String guide, URL xmlURL, boolean present)
+        {
+            return new Entry(TYPE_FEED, key(guide, xmlURL.toString()), present, false, false);
+        }
+
+        /**
+         * Creates the entry for a reading list in the guide.
+         *
+         * @param guide     guide title.
+         * @param url       reading list URL.
+         * @param present   <code>TRUE</code> if reading list is in the guide.
+         *
+         * @return entry.
+         */
+        public static Entry readingList(String guide, URL url, boolean present)
+        {
+            return new Entry(TYPE_READING_LIST, key(guide, url.toString()), present, false, false);
+        }
+
+        /**
+         * Creates the entry for an article.
+         *
+         * @param xmlURL    feed URL.
+         * @param matchKey  simple match key of the article.
+         * @param read      read flag.
+         * @param pinned    pinned flag.
+         *
+         * @return entry.
+         */
+        public static Entry article(URL xmlURL, String matchKey, boolean read, boolean pinned)
+        {
+            return new Entry(TYPE_ARTICLE, key(xmlURL.toString(), matchKey), true, read, pinned);
+        }
+
+        /**
+         * Returns the type of object.
+         *
+         * @return type.
+         */
+        public int getType()
+        {
+            return type;
+        }
+
+        /**
+         * Returns the key of object.
+         *
+         * @return key.
+         */
+        public String getKey()
+        {
+            return key;
+        }
+
+        /**
+         * Returns <code>TRUE</code> if object is present.
+         *
+         * @return <code>TRUE</code> if object is present.
+         */
+        public boolean isPresent()
+        {
+            return present;
+        }
+
+        /**
+         * Returns read flag of an article.
+         *
+         * @return read flag.
+         */
+        public boolean isRead()
+        {
+            return read;
+        }
+
+        /**
+         * Returns pinned flag of an article.
+         *
+         * @return pinned flag.
+         */
+        public boolean isPinned()
+        {
+            return pinned;
+        }
+
+        /**
+         * Writes the entry to the stream.
+         *
+         * @param out stream.
+         *
+         * @throws IOException if writing fails.
+         */
+        void write(DataOutputStream out)
+            throws IOException
+        {
+            out.writeByte(type);
+            out.writeUTF(key);
+            out.writeBoolean(present);
+            out.writeBoolean(read);
+            out.writeBoolean(pinned);
+        }
+
+        /**
+         * Reads the entry from the stream.
+         *
+         * @param in stream.
+         *
+         * @return entry.
+         *
+         * @throws IOException if reading fails.
+         */
+        static Entry read(DataInputStream in)
+            throws IOException
+        {
+            int type = in.readByte();
+            if (type < TYPE_GUIDE || type > TYPE_ARTICLE) throw new IOException("Unknown entry type.");
+
+            return new Entry(type, in.readUTF(), in.readBoolean(), in.readBoolean(), in.readBoolean());
+        }
+
+        /**
+         * Applies the entry to the set.
+         *
+         * @param set set.
+         *
+         * @return <code>TRUE</code> if the set has changed.
+         *
+         * @throws MalformedURLException if the URL in key is invalid.
+         */
+        boolean apply(GuidesSet set)
+            throws MalformedURLException
+        {
+            boolean changed;
+
+            if (type == TYPE_GUIDE)
+            {
+                if (present)
+                {
+                    changed = findGuide(set, key) == null;
+                    if (changed) findOrCreateGuide(set, key);
+                } else changed = removeGuides(set, key);
+            } else
+            {
+                int separator = key.indexOf(SEPARATOR);
+                String first = key.substring(0, separator);
+                String second = key.substring(separator + 1);
+
+                if (type == TYPE_FEED)
+                {
+                    changed = applyFeed(set, first, new URL(second));
+                } else if (type == TYPE_READING_LIST)
+                {
+                    changed = applyReadingList(set, first, new URL(second));
+                } else
+                {
+                    changed = applyArticle(set, new URL(first), second);
+                }
+            }
+
+            return changed;
+        }
+
+        /**
+         * Adds or removes the feed in the guide.
+         *
+         * @param set       set.
+         * @param title     guide title.
+         * @param xmlURL    feed URL.
+         *
+         * @return <code>TRUE</code> if the set has changed.
+         */
+        private boolean applyFeed(GuidesSet set, String title, URL xmlURL)
+        {
+            boolean changed = false;
+
+            StandardGuide guide = present ? findOrCreateGuide(set, title) : findGuide(set, title);
+            if (guide != null)
+            {
+                DirectFeed feed = findFeed(guide, xmlURL);
+                if (present && (feed == null || !guide.hasDirectLinkWith(feed)))
+                {
+                    if (feed == null) feed = set.findDirectFeed(xmlURL);
+                    if (feed == null)
+                    {
+                        feed = new DirectFeed();
+                        feed.setXmlURL(xmlURL);
+                    }
+
+                    guide.add(feed);
+                    changed = true;
+                } else if (!present && feed != null)
+                {
+                    changed = guide.remove(feed);
+                }
+            }
+
+            return changed;
+        }
+
+        /**
+         * Adds or removes the reading list in the guide.
+         *
+         * @param set       set.
+         * @param title     guide title.
+         * @param url       reading list URL.
+         *
+         * @return <code>TRUE</code> if the set has changed.
+         */
+        private boolean applyReadingList(GuidesSet set, String title, URL url)
+        {
+            boolean changed = false;
+
+            StandardGuide guide = present ? findOrCreateGuide(set, title) : findGuide(set, title);
+            if (guide != null)
+            {
+                ReadingList list = findReadingList(guide, url);
+                if (present && list == null)
+                {
+                    guide.add(new ReadingList(url));
+                    changed = true;
+                } else if (!present && list != null)
+                {
+                    guide.remove(list, true);
+                    changed = true;
+                }
+            }
+
+            return changed;
+        }
+
+        /**
+         * Updates the read and pinned flags of the article.
+         *
+         * @param set       set.
+         * @param xmlURL    feed URL.
+         * @param matchKey  article match key.
+         *
+         * @return <code>TRUE</code> if the set has changed.
+         */
+        private boolean applyArticle(GuidesSet set, URL xmlURL, String matchKey)
+        {
+            DirectFeed feed = set.findDirectFeed(xmlURL);
+            if (feed == null) return false;
+
+            IArticle article = null;
+            IArticle[] articles = feed.getArticles();
+            for (int i = 0; article == null && i < articles.length; i++)
+            {
+                if (matchKey.equals(articles[i].getSimpleMatchKey())) article = articles[i];
+            }
+
+            boolean changed = false;
+            if (article != null)
+            {
+                changed = article.isRead() != read || article.isPinned() != pinned;
+                article.setRead(read);
+                article.setPinned(pinned);
+            } else if (!feed.isInitialized())
+            {
+                // Articles aren't loaded yet, so we put the keys on the lists to be
+                // taken in account when they are
+                feed.setReadArticlesKeys(updateKeys(feed.getReadArticlesKeys(), matchKey, read));
+                feed.setPinnedArticlesKeys(updateKeys(feed.getPinnedArticlesKeys(), matchKey, pinned));
+                changed = true;
+            }
+
+            return changed;
+        }
+    }
+
+    /**
+     * Adds the key to or removes from the comma-delimited list of keys.
+     *
+     * @param keys  list of keys.
+     * @param key   key.
+     * @param add   <code>TRUE</code> to add.
+     *
+     * @return new list.
+     */
+    private static String updateKeys(String keys, String key, boolean add)
+    {
+        List<String> list = new ArrayList<String>();
+        for (String k : StringUtils.split(keys, ","))
+        {
+            if (k.length() > 0 && !k.equals(key)) list.add(k);
+        }
+        if (add) list.add(key);
+
+        return StringUtils.join(list.iterator(), ",");
+    }
+
+    /**
+     * Finds the first standard guide with the title.
+     *
+     * @param set   set.
+     * @param title title.
+     *
+     * @return guide or <code>NULL</code>.
+     */
+    private static StandardGuide findGuide(GuidesSet set, String title)
+    {
+        for (IGuide guide : set.findGuidesByTitle(title))
+        {
+            if (guide instanceof StandardGuide) return (StandardGuide)guide;
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds the first standard guide with the title or creates new one.
+     *
+     * @param set   set.
+     * @param title title.
+     *
+     * @return guide.
+     */
+    private static StandardGuide findOrCreateGuide(GuidesSet set, String title)
+    {
+        StandardGuide guide = findGuide(set, title);
+        if (guide == null)
+        {
+            guide = new StandardGuide();
+            guide.setTitle(title);
+            set.add(guide);
+        }
+
+        return guide;
+    }
+
+    /**
+     * Removes all standard guides with the title.
+     *
+     * @param set   set.
+     * @param title title.
+     *
+     * @return <code>TRUE</code> if anything was removed.
+     */
+    private static boolean removeGuides(GuidesSet set, String title)
+    {
+        Collection<IGuide> guides = set.findGuidesByTitle(title);
+        boolean removed = false;
+        for (IGuide guide : guides)
+        {
+            if (guide instanceof StandardGuide) removed |= set.remove(guide) != -1;
+        }
+
+        return removed;
+    }
+
+    /**
+     * Finds the direct feed in the guide.
+     *
+     * @param guide     guide.
+     * @param xmlURL    feed URL.
+     *
+     * @return feed or <code>NULL</code>.
+     */
+    private static DirectFeed findFeed(StandardGuide guide, URL xmlURL)
+    {
+        String url = xmlURL.toString();
+        for (IFeed feed : guide.getFeeds())
+        {
+            if (feed instanceof DirectFeed)
+            {
+                URL feedURL = ((DirectFeed)feed).getXmlURL();
+                if (feedURL != null && url.equals(feedURL.toString())) return (DirectFeed)feed;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds the reading list in the guide.
+     *
+     * @param guide guide.
+     * @param url   reading list URL.
+     *
+     * @return list or <code>NULL</code>.
+     */
+    private static ReadingList findReadingList(StandardGuide guide, URL url)
+    {
+        String str = url.toString();
+        for (ReadingList list : guide.getReadingLists())
+        {
+            if (list.getURL() != null && str.equals(list.getURL().toString())) return list;
+        }
+
+        return null;
+    }
+}
@@ -34,10 +34,12 @@ import com.salas.bb.core.GlobalModel;
 import com.salas.bb.domain.*;
 import com.salas.bb.domain.prefs.StarzPreferences;
 import com.salas.bb.domain.prefs.UserPreferences;
-import com.salas.bb.domain.querytypes.QueryType;
 import com.salas.bb.domain.utils.FeedCheckBox;
 import com.salas.bb.domain.utils.ReadingListCheckBox;
 import com.salas.bb.imageblocker.ImageBlocker;
+import com.salas.bb.persistence.IPersistenceManager;
+import com.salas.bb.persistence.PersistenceException;
+import com.salas.bb.persistence.PersistenceManagerConfig;
 import com.salas.bb.plugins.Manager;
 import com.salas.bb.sentiments.SentimentsConfig;
 import com.salas.bb.service.ServerService;
@@ -235,6 +237,15 @@ public class SyncIn extends AbstractSynchronization
     private void loadFeeds(String email, String password, final SyncInStats stats)
         throws ServerServiceException, ImporterException
     {
+        // Try pulling only the changes made since the last sync first
+        final DeltaSync deltaSync = GlobalController.SINGLETON.getDeltaSync();
+        final SyncDelta delta = deltaSync == null ? null : deltaSync.pull(email, password);
+        if (delta != null)
+        {
+            applyDelta(deltaSync, delta);
+            return;
+        }
+
         String opml = ServerService.syncRestore(email, password);
 
         // parse output from server w/ possible empty guides
@@ -259,11 +270,22 @@ public class SyncIn extends AbstractSynchronization
                         IGuide selectedGuide = model.getSelectedGuide();
                         IFeed selectedFeed = model.getSelectedFeed();
 
-                        performChanges(localSet, changes, stats);
+                        // Changes coming from the service aren't journaled
+                        if (deltaSync != null) deltaSync.getJournal().suspend();
+                        boolean batch = startBatch();
+                        try
+                        {
+                            performChanges(localSet, changes, stats);
+                        } finally
+                        {
+                            finishBatch(batch);
+                            if (deltaSync != null) deltaSync.getJournal().resume();
+                        }
                         restoreSelection(selectedGuide, selectedFeed);
 
                         // Update synchronization times
                         localSet.onSyncInCompletion();
+                        if (deltaSync != null) deltaSync.snapshotRestored();
                     }
                 }
             });
@@ -274,6 +296,85 @@ public class SyncIn extends AbstractSynchronization
         }
     }
 
+    /**
+     * Applies the changes pulled from the service to the local set.
+     *
+     * @param deltaSync delta synchronization.
+     * @param delta     changes.
+     */
+    private void applyDelta(final DeltaSync deltaSync, final SyncDelta delta)
+    {
+        final GuidesSet localSet = model.getGuidesSet();
+
+        // EDT
+        try
+        {
+            SwingUtilities.invokeAndWait(new Runnable()
+            {
+                public void run()
+                {
+                    IGuide selectedGuide = model.getSelectedGuide();
+                    IFeed selectedFeed = model.getSelectedFeed();
+
+                    boolean batch = startBatch();
+                    try
+                    {
+                        deltaSync.apply(delta, localSet);
+                    } finally
+                    {
+                        finishBatch(batch);
+                    }
+                    restoreSelection(selectedGuide, selectedFeed);
+
+                    // Update synchronization times
+                    localSet.onSyncInCompletion();
+                }
+            });
+        } catch (Throwable e)
+        {
+            if (e instanceof InvocationTargetException) e = e.getCause();
+            LOG.log(Level.SEVERE, MSG_ERROR_DURING_SYNC_IN, e);
+        }
+    }
+
+    /**
+     * Starts the batch update of the model and database, so that all the changes are
+     * written in one transaction and the guide model is rebuilt once.
+     *
+     * @return <code>TRUE</code> if the database batch has been started.
+     */
+    private boolean startBatch()
+    {
+        model.batchUpdateStarted();
+
+        boolean started = false;
+        IPersistenceManager manager = PersistenceManagerConfig.getManager();
+        if (manager != null)
+        {
+            try
+            {
+                manager.beginBatch();
+                started = true;
+            } catch (PersistenceException e)
+            {
+                LOG.log(Level.WARNING, MSG_ERROR_DURING_SYNC_IN, e);
+            }
+        }
+
+        return started;
+    }
+
+    /**
+     * Finishes the batch update started with {@link #startBatch()}.
+     *
+     * @param databaseBatch <code>TRUE</code> if the database batch has been started.
+     */
+    private void finishBatch(boolean databaseBatch)
+    {
+        if (databaseBatch) PersistenceManagerConfig.getManager().endBatch();
+        model.batchUpdateFinished();
+    }
+
     /**
      * Shows alert and allows user to adjust his.
      *
@@ -330,9 +431,10 @@ public class SyncIn extends AbstractSynchronization
     static void performChanges(GuidesSet set, Changes changes, SyncInStats stats)
     {
         int oldGuidesCount = set.getGuidesCount();
+        SyncIndex index = new SyncIndex(set);
 
-        performChangesAddFeeds(set, changes.getAddFeeds(), stats);
-        performChangesAddReadingLists(set, changes.getAddReadingLists(), stats);
+        performChangesAddFeeds(set, index, changes.getAddFeeds(), stats);
+        performChangesAddReadingLists(set, index, changes.getAddReadingLists(), stats);
         performChangesRemoveReadingLists(changes.getRemoveReadingLists());
         performChangesRemoveFeeds(changes.getRemoveFeeds());
 
@@ -472,15 +574,16 @@ public class SyncIn extends AbstractSynchronization
      * Adds reading lists and connects required feeds in the guide.
      *
      * @param aSet          guides set.
+     * @param aIndex        index of the set.
      * @param aReadingLists reading lists.
      * @param aStats        statistics.
      */
-    private static void performChangesAddReadingLists(GuidesSet aSet, List<ReadingList> aReadingLists,
-                                                      SyncInStats aStats)
+    private static void performChangesAddReadingLists(GuidesSet aSet, SyncIndex aIndex,
+                                                      List<ReadingList> aReadingLists, SyncInStats aStats)
     {
         for (ReadingList list : aReadingLists)
         {
-            performChangesAddReadingList(aSet, list, aStats);
+            performChangesAddReadingList(aSet, aIndex, list, aStats);
         }
     }
 
@@ -488,13 +591,14 @@ public class SyncIn extends AbstractSynchronization
      * Adds reading list to the guide and associates all required feeds.
      *
      * @param aSet      guides set.
+     * @param aIndex    index of the set.
      * @param aList     reading list.
      * @param aStats    statistics.
      */
-    private static void performChangesAddReadingList(GuidesSet aSet, ReadingList aList,
+    private static void performChangesAddReadingList(GuidesSet aSet, SyncIndex aIndex, ReadingList aList,
                                                      SyncInStats aStats)
     {
-        StandardGuide guide = findOrCreateGuide(aSet, aList.getParentGuide());
+        StandardGuide guide = findOrCreateGuide(aSet, aIndex, aList.getParentGuide());
 
         ReadingList newList = new ReadingList(aList.getURL());
         newList.setTitle(aList.getTitle());
@@ -504,7 +608,7 @@ public class SyncIn extends AbstractSynchronization
         DirectFeed[] feedsToConnect = aList.getFeeds();
         for (DirectFeed feed : feedsToConnect)
         {
-            DirectFeed existingFeed = aSet.findDirectFeed(feed.getXmlURL());
+            DirectFeed existingFeed = (DirectFeed)aIndex.findFeed(feed);
             boolean existing = true;
             if (existingFeed == null)
             {
@@ -518,6 +622,7 @@ public class SyncIn extends AbstractSynchronization
             }
 
             newList.add(existingFeed);
+            aIndex.addFeed(existingFeed);
 
             if (!existing) GlobalController.SINGLETON.getPoller().update(existingFeed, false);
         }
@@ -541,10 +646,11 @@ public class SyncIn extends AbstractSynchronization
      * Moves feeds marked for addition to the guides.
      *
      * @param aSet      local set.
+     * @param aIndex    index of the local set.
      * @param aFeeds    feeds list.
      * @param aStats    stats to fill in.
      */
-    private static void performChangesAddFeeds(GuidesSet aSet, List<IFeed> aFeeds,
+    private static void performChangesAddFeeds(GuidesSet aSet, SyncIndex aIndex, List<IFeed> aFeeds,
                                                SyncInStats aStats)
     {
         for (IFeed feed : aFeeds)
@@ -552,17 +658,18 @@ public class SyncIn extends AbstractSynchronization
             IGuide guide = feed.getParentGuides()[0];
             if (guide.hasDirectLinkWith(feed))
             {
-                StandardGuide localGuide = findOrCreateGuide(aSet, guide);
+                StandardGuide localGuide = findOrCreateGuide(aSet, aIndex, guide);
 
                 // Disconnect feed from its old parent guide
                 feed.removeParentGuide(guide);
                 if (feed instanceof DirectFeed) ((DirectFeed)feed).removeAllReadingLists();
 
                 // Find existing feed
-                IFeed existingFeed = aSet.findFeed(feed);
+                IFeed existingFeed = aIndex.findFeed(feed);
                 if (existingFeed != null) feed = existingFeed;
 
                 localGuide.add(feed);
+                aIndex.addFeed(feed);
                 StandardGuide.FeedLinkInfo info = localGuide.getFeedLinkInfo(feed);
                 info.setLastSyncTime(System.currentTimeMillis());
 
@@ -575,15 +682,16 @@ public class SyncIn extends AbstractSynchronization
      * Finds a guide in the set of local guides or create a new one.
      *
      * @param aSet          set.
+     * @param aIndex        index of the set.
      * @param aPatternGuide pattern-guide.
      *
      * @return guide.
      */
-    static StandardGuide findOrCreateGuide(GuidesSet aSet, IGuide aPatternGuide)
+    static StandardGuide findOrCreateGuide(GuidesSet aSet, SyncIndex aIndex, IGuide aPatternGuide)
     {
         String title = aPatternGuide.getTitle();
 
-        StandardGuide guide = findGuideByName(aSet.getStandardGuides(null), title);
+        StandardGuide guide = aIndex.findGuide(title);
         if (guide == null)
         {
             guide = new StandardGuide();
@@ -591,6 +699,7 @@ public class SyncIn extends AbstractSynchronization
             transferGuideProperties(guide, aPatternGuide);
 
             aSet.add(guide);
+            aIndex.addGuide(guide);
         }
 
         return guide;
@@ -644,6 +753,10 @@ public class SyncIn extends AbstractSynchronization
         StandardGuide[] localGuides = aLocalSet.getStandardGuides(null);
         StandardGuide[] remoteGuides = aRemoteSet.getStandardGuides(null);
 
+        // Index both sides to match guides and feeds without scanning
+        SyncIndex localIndex = new SyncIndex(aLocalSet);
+        SyncIndex remoteIndex = new SyncIndex(aRemoteSet);
+
         DeletedObjectsRepository dfr = GlobalController.SINGLETON.getDeletedFeedsRepository();
 
         // Scan through remote guides and verify each guide user has.
@@ -655,7 +768,7 @@ public class SyncIn extends AbstractSynchronization
         {
             String remoteGuideTitle = remoteGuide.getTitle();
 
-            StandardGuide localGuide = findGuideByName(localGuides, remoteGuideTitle);
+            StandardGuide localGuide = localIndex.findGuide(remoteGuideTitle);
 
             if (localGuide == null)
             {
@@ -682,7 +795,10 @@ public class SyncIn extends AbstractSynchronization
                     changes.updateGuide(localGuide, remoteGuide);
                 }
 
-                evaluateChangesInGuide(localGuide, remoteGuide, changes, copyServiceLayout);
+                evaluateChangesInReadingLists(localGuide, localIndex.getGuideIndex(localGuide),
+                    remoteGuide, remoteIndex.getGuideIndex(remoteGuide), changes, copyServiceLayout);
+                evaluateChangesInFeeds(localGuide, localIndex.getGuideIndex(localGuide),
+                    remoteGuide, remoteIndex.getGuideIndex(remoteGuide), changes, copyServiceLayout);
             }
         }
 
@@ -690,7 +806,7 @@ public class SyncIn extends AbstractSynchronization
         // mentioned in the list of remote.
         for (StandardGuide localGuide : localGuides)
         {
-            StandardGuide remoteGuide = findGuideByName(remoteGuides, localGuide.getTitle());
+            StandardGuide remoteGuide = remoteIndex.findGuide(localGuide.getTitle());
 
             if (remoteGuide == null)
             {
@@ -724,7 +840,7 @@ public class SyncIn extends AbstractSynchronization
         for (int i = 0; i < localFeeds.getFeedsCount(); i++)
         {
             IFeed localFeed = localFeeds.getFeedAt(i);
-            IFeed remoteFeed = aRemoteSet.findFeed(localFeed);
+            IFeed remoteFeed = remoteIndex.findFeed(localFeed);
             if (remoteFeed != null && (copyServiceLayout ||
                 localFeed.getLastUpdateTime() < remoteFeed.getLastUpdateTime()))
             {
@@ -736,57 +852,57 @@ public class SyncIn extends AbstractSynchronization
     }
 
     /**
-     * Looks for a guide with the given name.
-     *
-     * @param aGuides   guides list.
-     * @param aName     name.
+     * Evaluates changes within single guide.
      *
-     * @return target guide.
+     * @param aLocalGuide   local guide.
+     * @param aRemoteGuide  remote guide.
+     * @param aChanges      changes.
+     * @param aClearNew     <code>TRUE</code> to remove any local feeds which aren't on the service.
      */
-    private static StandardGuide findGuideByName(StandardGuide[] aGuides, String aName)
+    static void evaluateChangesInGuide(StandardGuide aLocalGuide,
+                                       StandardGuide aRemoteGuide, Changes aChanges, boolean aClearNew)
     {
-        StandardGuide guide = null;
-
-        for (int i = 0; guide == null && i < aGuides.length; i++)
-        {
-            StandardGuide standardGuide = aGuides[i];
-            if (aName.equals(standardGuide.getTitle())) guide = standardGuide;
-        }
+        SyncIndex.GuideIndex localIndex = new SyncIndex.GuideIndex(aLocalGuide);
+        SyncIndex.GuideIndex remoteIndex = new SyncIndex.GuideIndex(aRemoteGuide);
 
-        return guide;
+        evaluateChangesInReadingLists(aLocalGuide, localIndex, aRemoteGuide, remoteIndex, aChanges, aClearNew);
+        evaluateChangesInFeeds(aLocalGuide, localIndex, aRemoteGuide, remoteIndex, aChanges, aClearNew);
     }
 
     /**
-     * Evaluates changes within single guide.
+     * Evaluates changes within single guide reading lists.
      *
      * @param aLocalGuide   local guide.
      * @param aRemoteGuide  remote guide.
      * @param aChanges      changes.
      * @param aClearNew     <code>TRUE</code> to remove any local feeds which aren't on the service.
      */
-    static void evaluateChangesInGuide(StandardGuide aLocalGuide,
-                                       StandardGuide aRemoteGuide, Changes aChanges, boolean aClearNew)
+    static void evaluateChangesInReadingLists(StandardGuide aLocalGuide,
+                                              StandardGuide aRemoteGuide, Changes aChanges, boolean aClearNew)
     {
-        evaluateChangesInReadingLists(aLocalGuide, aRemoteGuide, aChanges, aClearNew);
-        evaluateChangesInFeeds(aLocalGuide, aRemoteGuide, aChanges, aClearNew);
+        evaluateChangesInReadingLists(aLocalGuide, new SyncIndex.GuideIndex(aLocalGuide),
+            aRemoteGuide, new SyncIndex.GuideIndex(aRemoteGuide), aChanges, aClearNew);
     }
 
     /**
      * Evaluates changes within single guide reading lists.
      *
      * @param aLocalGuide   local guide.
+     * @param aLocalIndex   index of the local guide.
      * @param aRemoteGuide  remote guide.
+     * @param aRemoteIndex  index of the remote guide.
      * @param aChanges      changes.
      * @param aClearNew     <code>TRUE</code> to remove any local feeds which aren't on the service.
      */
-    static void evaluateChangesInReadingLists(StandardGuide aLocalGuide,
-                                              StandardGuide aRemoteGuide, Changes aChanges, boolean aClearNew)
+    private static void evaluateChangesInReadingLists(StandardGuide aLocalGuide,
+        SyncIndex.GuideIndex aLocalIndex, StandardGuide aRemoteGuide, SyncIndex.GuideIndex aRemoteIndex,
+        Changes aChanges, boolean aClearNew)
     {
         // Add new reading lists from the remote source
         ReadingList[] listsR = aRemoteGuide.getReadingLists();
         for (ReadingList listR : listsR)
         {
-            ReadingList listL = findReadingList(aLocalGuide, listR);
+            ReadingList listL = aLocalIndex.findReadingList(listR);
 
             // A reading list has been added remotely
             if (listL == null) aChanges.addReadingList(listR);
@@ -796,7 +912,7 @@ public class SyncIn extends AbstractSynchronization
         ReadingList[] listsL = aLocalGuide.getReadingLists();
         for (ReadingList listL : listsL)
         {
-            ReadingList listR = findReadingList(aRemoteGuide, listL);
+            ReadingList listR = aRemoteIndex.findReadingList(listL);
 
             // A reading list has been removed remotely or has not been sent to the service yet
             if (listR == null && (aClearNew || listL.getLastSyncTime() != -1))
@@ -807,57 +923,33 @@ public class SyncIn extends AbstractSynchronization
     }
 
     /**
-     * Looks for the same list in the guide.
-     *
-     * @param aGuide    guide.
-     * @param aList     target list.
+     * Evaluates changes within single guide.
      *
-     * @return list object or <code>NULL</code>.
+     * @param aLocalGuide   local guide.
+     * @param aRemoteGuide  remote guide.
+     * @param aChanges      changes.
+     * @param aClearNew     <code>TRUE</code> to remove any local feeds which aren't on the service.
      */
-    private static ReadingList findReadingList(StandardGuide aGuide, ReadingList aList)
+    static void evaluateChangesInFeeds(StandardGuide aLocalGuide,
+                                       StandardGuide aRemoteGuide, Changes aChanges, boolean aClearNew)
     {
-        ReadingList[] lists = aGuide.getReadingLists();
-        return findReadingList(lists, aList);
+        evaluateChangesInFeeds(aLocalGuide, new SyncIndex.GuideIndex(aLocalGuide),
+            aRemoteGuide, new SyncIndex.GuideIndex(aRemoteGuide), aChanges, aClearNew);
     }
 
     /**
-     * Looks for the same list in the list.
-     *
-     * @param aLists        list of lists.
-     * @param targetList    target list.
-     *
-     * @return list object or <code>NULL</code>.
-     */
-    private static ReadingList findReadingList(ReadingList[] aLists, ReadingList targetList)
-    {
-        ReadingList list = null;
-
-        URL urlT = targetList.getURL();
-        if (urlT != null)
-        {
-            String urlTS = urlT.toString();
-
-            for (int i = 0; list == null && i < aLists.length; i++)
-            {
-                ReadingList readingList = aLists[i];
-                URL url = readingList.getURL();
-                if (url != null && url.toString().equals(urlTS)) list = readingList;
-            }
-        }
-
-        return list;
-    }
-
-    /**
-     * Evaluates changes within single guide.
+     * Evaluates changes within single guide feeds.
      *
      * @param aLocalGuide   local guide.
+     * @param aLocalIndex   index of the local guide.
      * @param aRemoteGuide  remote guide.
+     * @param aRemoteIndex  index of the remote guide.
      * @param aChanges      changes.
      * @param aClearNew     <code>TRUE</code> to remove any local feeds which aren't on the service.
      */
-    static void evaluateChangesInFeeds(StandardGuide aLocalGuide,
-                                       StandardGuide aRemoteGuide, Changes aChanges, boolean aClearNew)
+    private static void evaluateChangesInFeeds(StandardGuide aLocalGuide,
+        SyncIndex.GuideIndex aLocalIndex, StandardGuide aRemoteGuide, SyncIndex.GuideIndex aRemoteIndex,
+        Changes aChanges, boolean aClearNew)
     {
         DeletedObjectsRepository dfr = GlobalController.SINGLETON.getDeletedFeedsRepository();
 
@@ -867,7 +959,7 @@ public class SyncIn extends AbstractSynchronization
             IFeed remoteFeed = aRemoteGuide.getFeedAt(i);
             if (!aRemoteGuide.hasDirectLinkWith(remoteFeed)) continue;
 
-            IFeed localFeed = findFeed(aLocalGuide, remoteFeed);
+            IFeed localFeed = aLocalIndex.findFeed(remoteFeed);
             if (!aLocalGuide.hasDirectLinkWith(localFeed)) localFeed = null;
 
             // A feed has been added remotely
@@ -892,7 +984,7 @@ public class SyncIn extends AbstractSynchronization
             IFeed localFeed = aLocalGuide.getFeedAt(i);
             if (!aLocalGuide.hasDirectLinkWith(localFeed)) continue;
 
-            IFeed remoteFeed = findFeed(aRemoteGuide, localFeed);
+            IFeed remoteFeed = aRemoteIndex.findFeed(localFeed);
             if (!aRemoteGuide.hasDirectLinkWith(remoteFeed)) remoteFeed = null;
 
             StandardGuide.FeedLinkInfo info;
@@ -907,95 +999,6 @@ public class SyncIn extends AbstractSynchronization
         }
     }
 
-    /**
-     * Finds a feed in the guide which is the same as the pattern-feed.
-     * The similarity depends on the type of a feed.
-     *
-     * @param aGuide        guide.
-     * @param aPatternFeed  pattern-feed.
-     *
-     * @return similar feed or <code>NULL</code>.
-     */
-    private static IFeed findFeed(StandardGuide aGuide, IFeed aPatternFeed)
-    {
-        IFeed targetFeed = null;
-        for (int i = 0; targetFeed == null && i < aGuide.getFeedsCount(); i++)
-        {
-            IFeed feed = aGuide.getFeedAt(i);
-            if (feedsAreTheSame(feed, aPatternFeed)) targetFeed = feed;
-        }
-
-        return targetFeed;
-    }
-
-    /**
-     * Finds all feeds in the guide which is the same as the pattern-feed.
-     * The similarity depends on the type of a feed.
-     *
-     * @param aGuide        guide.
-     * @param aPatternFeed  pattern-feed.
-     *
-     * @return similar feeds.
-     */
-//    private static List findFeeds(StandardGuide aGuide, IFeed aPatternFeed)
-//    {
-//        List feeds = new ArrayList();
-//        for (int i = 0; i < aGuide.getFeedsCount(); i++)
-//        {
-//            IFeed feed = aGuide.getFeedAt(i);
-//            if (feedsAreTheSame(feed, aPatternFeed)) feeds.add(feed);
-//        }
-//
-//        return feeds;
-//    }
-
-    /**
-     * Compares two feeds and says if they are similar by their properties.
-     *
-     * @param aFeed         first feed.
-     * @param aPatternFeed  second feed.
-     *
-     * @return <code>TRUE</code> if similar.
-     */
-    private static boolean feedsAreTheSame(IFeed aFeed, IFeed aPatternFeed)
-    {
-        boolean similar = false;
-
-        if (aPatternFeed instanceof DirectFeed)
-        {
-            if (aFeed instanceof DirectFeed)
-            {
-                similar = feedsAreTheSameDirect((DirectFeed)aPatternFeed, (DirectFeed)aFeed);
-            }
-        } else if (aPatternFeed instanceof QueryFeed)
-        {
-            if (aFeed instanceof QueryFeed)
-            {
-                QueryFeed patFeed = (QueryFeed)aPatternFeed;
-                QueryFeed matFeed = (QueryFeed)aFeed;
-
-                QueryType patType = patFeed.getQueryType();
-                QueryType matType = matFeed.getQueryType();
-
-                String patParam = patFeed.getParameter();
-                String matParam = matFeed.getParameter();
-
-                similar = patType == matType && patParam.equals(matParam);
-            }
-        } else if (aPatternFeed instanceof SearchFeed)
-        {
-            if (aFeed instanceof SearchFeed)
-            {
-                String patQuery = ((SearchFeed)aPatternFeed).getQuery().serializeToString();
-                String matQuery = ((SearchFeed)aFeed).getQuery().serializeToString();
-
-                similar = patQuery.equals(matQuery);
-            }
-        }
-
-        return similar;
-    }
-
     /**
      * Checks if two direct feeds are the same.
      *
@@ -0,0 +1,311 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.service.sync;
+
+import com.salas.bb.domain.*;
+import com.salas.bb.domain.querytypes.QueryType;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Hash index of guides, feeds and reading lists of a guides set used during synchronization
+ * to match local and remote objects in constant time instead of scanning the lists. The
+ * matching rules are the same as those of the linear lookups it replaces: the first object
+ * matching the pattern wins.
+ */
+final class SyncIndex
+{
+    private final GuidesSet set;
+
+    /** Guide title to the first standard guide with this title. */
+    private final Map<String, StandardGuide> guides = new HashMap<String, StandardGuide>();
+    /** Indexes of guides' contents built on demand. */
+    private final Map<StandardGuide, GuideIndex> guideIndexes = new IdentityHashMap<StandardGuide, GuideIndex>();
+    /** Set-wide key to the first feed, built on demand. */
+    private Map<String, IFeed> feeds;
+
+    /**
+     * Indexes the set.
+     *
+     * @param aSet set.
+     */
+    SyncIndex(GuidesSet aSet)
+    {
+        set = aSet;
+        for (StandardGuide guide : aSet.getStandardGuides(null)) addGuide(guide);
+    }
+
+    /**
+     * Finds the first standard guide with the title.
+     *
+     * @param title title.
+     *
+     * @return guide or <code>NULL</code>.
+     */
+    StandardGuide findGuide(String title)
+    {
+        return guides.get(title);
+    }
+
+    /**
+     * Registers the guide added to the set.
+     *
+     * @param guide guide.
+     */
+    void addGuide(StandardGuide guide)
+    {
+        if (!guides.containsKey(guide.getTitle())) guides.put(guide.getTitle(), guide);
+    }
+
+    /**
+     * Returns the index of the guide contents.
+     *
+     * @param guide guide.
+     *
+     * @return index.
+     */
+    GuideIndex getGuideIndex(StandardGuide guide)
+    {
+        GuideIndex index = guideIndexes.get(guide);
+        if (index == null)
+        {
+            index = new GuideIndex(guide);
+            guideIndexes.put(guide, index);
+        }
+
+        return index;
+    }
+
+    /**
+     * Finds the feed in the set which is similar to the pattern. The same as
+     * {@link GuidesSet#findFeed(IFeed)}.
+     *
+     * @param pattern pattern feed.
+     *
+     * @return feed or <code>NULL</code>.
+     */
+    IFeed findFeed(IFeed pattern)
+    {
+        // Search feeds are few and compared by queries
+        if (pattern instanceof SearchFeed) return set.findFeed(pattern);
+
+        if (feeds == null)
+        {
+            feeds = new HashMap<String, IFeed>();
+            FeedsList list = set.getFeedsList();
+            for (int i = 0; i < list.getFeedsCount(); i++) addFeed(list.getFeedAt(i));
+        }
+
+        String key = setKey(pattern);
+        return key == null ? null : feeds.get(key);
+    }
+
+    /**
+     * Registers the feed added to the set.
+     *
+     * @param feed feed.
+     */
+    void addFeed(IFeed feed)
+    {
+        if (feeds == null) return;
+
+        String key = setKey(feed);
+        if (key != null && !feeds.containsKey(key)) feeds.put(key, feed);
+    }
+
+    /**
+     * Returns the set-wide key of the feed.
+     *
+     * @param feed feed.
+     *
+     * @return key or <code>NULL</code> if the feed can't be matched by key.
+     */
+    private static String setKey(IFeed feed)
+    {
+        String key = null;
+
+        if (feed instanceof DirectFeed)
+        {
+            URL url = ((DirectFeed)feed).getXmlURL();
+            if (url != null) key = "d" + url.toString();
+        } else if (feed instanceof QueryFeed)
+        {
+            key = queryKey((QueryFeed)feed);
+        }
+
+        return key;
+    }
+
+    /**
+     * Returns the key of the query feed.
+     *
+     * @param feed feed.
+     *
+     * @return key or <code>NULL</code> if the feed has no query type.
+     */
+    private static String queryKey(QueryFeed feed)
+    {
+        QueryType type = feed.getQueryType();
+        return type == null ? null : "q" + type.getType() + "\n" + feed.getParameter();
+    }
+
+    /**
+     * Index of the guide contents.
+     */
+    static final class GuideIndex
+    {
+        /** Lower-case XML URL to the position of the first direct feed with it. */
+        private final Map<String, Integer> directByURL = new HashMap<String, Integer>();
+        /** Sync hash to the position of the first direct feed with it. */
+        private final Map<Integer, Integer> directByHash = new HashMap<Integer, Integer>();
+        /** Query or search key to the first feed with it. */
+        private final Map<String, IFeed> others = new HashMap<String, IFeed>();
+        /** Reading list URL to the first list with it. */
+        private final Map<String, ReadingList> readingLists = new HashMap<String, ReadingList>();
+
+        private final IFeed[] guideFeeds;
+
+        /**
+         * Indexes the guide.
+         *
+         * @param guide guide.
+         */
+        GuideIndex(StandardGuide guide)
+        {
+            guideFeeds = guide.getFeeds();
+            for (int i = 0; i < guideFeeds.length; i++)
+            {
+                IFeed feed = guideFeeds[i];
+                if (feed instanceof DirectFeed)
+                {
+                    DirectFeed dfeed = (DirectFeed)feed;
+                    URL url = dfeed.getXmlURL();
+                    if (url != null)
+                    {
+                        putFirst(directByURL, url.toString().toLowerCase(), i);
+                        putFirst(directByHash, dfeed.getSyncHash(), i);
+                    }
+                } else
+                {
+                    String key = guideKey(feed);
+                    if (key != null && !others.containsKey(key)) others.put(key, feed);
+                }
+            }
+
+            for (ReadingList list : guide.getReadingLists())
+            {
+                URL url = list.getURL();
+                if (url != null && !readingLists.containsKey(url.toString()))
+                {
+                    readingLists.put(url.toString(), list);
+                }
+            }
+        }
+
+        /**
+         * Finds the first feed in the guide which is the same as the pattern.
+         *
+         * @param pattern pattern feed.
+         *
+         * @return feed or <code>NULL</code>.
+         */
+        IFeed findFeed(IFeed pattern)
+        {
+            IFeed feed = null;
+
+            if (pattern instanceof DirectFeed)
+            {
+                DirectFeed dpattern = (DirectFeed)pattern;
+                URL url = dpattern.getXmlURL();
+                if (url != null)
+                {
+                    // The same hash or URL -- whichever comes first
+                    Integer byURL = directByURL.get(url.toString().toLowerCase());
+                    Integer byHash = directByHash.get(dpattern.calcSyncHash());
+
+                    Integer position = byURL;
+                    if (position == null || (byHash != null && byHash < position)) position = byHash;
+                    if (position != null) feed = guideFeeds[position];
+                }
+            } else
+            {
+                String key = guideKey(pattern);
+                if (key != null) feed = others.get(key);
+            }
+
+            return feed;
+        }
+
+        /**
+         * Finds the reading list with the same URL.
+         *
+         * @param pattern pattern list.
+         *
+         * @return list or <code>NULL</code>.
+         */
+        ReadingList findReadingList(ReadingList pattern)
+        {
+            URL url = pattern.getURL();
+            return url == null ? null : readingLists.get(url.toString());
+        }
+
+        /**
+         * Returns the key of a query or search feed within a guide.
+         *
+         * @param feed feed.
+         *
+         * @return key or <code>NULL</code>.
+         */
+        private static String guideKey(IFeed feed)
+        {
+            String key = null;
+
+            if (feed instanceof QueryFeed)
+            {
+                key = queryKey((QueryFeed)feed);
+            } else if (feed instanceof SearchFeed)
+            {
+                key = "s" + ((SearchFeed)feed).getQuery().serializeToString();
+            }
+
+            return key;
+        }
+
+        /**
+         * Puts the value unless the key is already there.
+         *
+         * @param map   map.
+         * @param key   key.
+         * @param value value.
+         */
+        private static <K> void putFirst(Map<K, Integer> map, K key, int value)
+        {
+            if (!map.containsKey(key)) map.put(key, value);
+        }
+    }
+}
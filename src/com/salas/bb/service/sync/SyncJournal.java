@@ -0,0 +1,331 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.service.sync;
+
+import com.salas.bb.utils.i18n.Strings;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Journal of local changes not yet acknowledged by the service. Every change gets the next
+ * local sequence number and replaces the earlier change of the same object, so the journal
+ * holds at most one entry per object no matter how many times it was changed.
+ * <p/>
+ * The journal also remembers the last service sequence applied locally and whether it has
+ * diverged from the service -- lost some changes or saw the changes it can't express. When
+ * diverged, the next synchronization has to exchange the full snapshot.
+ * <p/>
+ * The journal is stored in a file. Until it is stored on a clean shutdown, the file is marked
+ * as dirty, so that after a crash the journal is considered diverged.
+ */
+public class SyncJournal
+{
+    private static final Logger LOG = Logger.getLogger(SyncJournal.class.getName());
+
+    /** Version of the file format. */
+    private static final int FILE_VERSION = 1;
+
+    /** Object key to its latest change in the order of sequences. */
+    private final Map<String, Change> changes = new LinkedHashMap<String, Change>();
+    /** File to store journal in or <code>NULL</code>. */
+    private final File file;
+
+    /** The sequence number of the latest local change. */
+    private long sequence;
+    /** The sequence number of the latest service change applied locally. */
+    private int serverSequence;
+    /** <code>TRUE</code> when the full snapshot should be exchanged. */
+    private boolean diverged;
+    /** The thread applying service changes, which mustn't be recorded. */
+    private Thread suspendedThread;
+
+    /**
+     * Creates new journal. Until synchronized with the service for the first time the
+     * journal is diverged.
+     *
+     * @param aFile file to store journal in or <code>NULL</code> to keep it in memory.
+     */
+    public SyncJournal(File aFile)
+    {
+        file = aFile;
+        serverSequence = -1;
+        diverged = true;
+    }
+
+    /**
+     * Records the change of an object.
+     *
+     * @param entry entry describing the new state of the object.
+     */
+    public synchronized void record(SyncDelta.Entry entry)
+    {
+        if (isSuspended()) return;
+
+        String key = entry.getType() + entry.getKey();
+        changes.remove(key);
+        changes.put(key, new Change(entry, ++sequence));
+    }
+
+    /**
+     * Marks the journal as diverged. Called when there's a change which can't be expressed
+     * with a delta.
+     */
+    public synchronized void markDiverged()
+    {
+        if (!isSuspended()) diverged = true;
+    }
+
+    /**
+     * Returns <code>TRUE</code> if the full snapshot should be exchanged.
+     *
+     * @return <code>TRUE</code> if the full snapshot should be exchanged.
+     */
+    public synchronized boolean isDiverged()
+    {
+        return diverged;
+    }
+
+    /**
+     * Returns the sequence number of the latest local change.
+     *
+     * @return sequence.
+     */
+    public synchronized long getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * Returns the sequence number of the latest service change applied locally.
+     *
+     * @return sequence or <code>-1</code> if never synchronized.
+     */
+    public synchronized int getServerSequence()
+    {
+        return serverSequence;
+    }
+
+    /**
+     * Sets the sequence number of the latest service change applied locally.
+     *
+     * @param aSequence sequence.
+     */
+    public synchronized void setServerSequence(int aSequence)
+    {
+        serverSequence = aSequence;
+    }
+
+    /**
+     * Returns the number of changes not yet acknowledged.
+     *
+     * @return number of changes.
+     */
+    public synchronized int getPendingCount()
+    {
+        return changes.size();
+    }
+
+    /**
+     * Returns the delta with all changes not yet acknowledged.
+     *
+     * @return delta.
+     */
+    public synchronized SyncDelta getPending()
+    {
+        SyncDelta delta = new SyncDelta();
+        for (Change change : changes.values()) delta.add(change.entry);
+
+        return delta;
+    }
+
+    /**
+     * Removes all changes up to the sequence as the service has accepted them.
+     *
+     * @param aSequence last accepted local sequence.
+     */
+    public synchronized void acknowledge(long aSequence)
+    {
+        Iterator<Change> it = changes.values().iterator();
+        while (it.hasNext() && it.next().sequence <= aSequence) it.remove();
+    }
+
+    /**
+     * Records that the full snapshot was exchanged with the service.
+     *
+     * @param aSequence         last local sequence included in the snapshot.
+     * @param aServerSequence   service sequence of the snapshot.
+     */
+    public synchronized void snapshotTaken(long aSequence, int aServerSequence)
+    {
+        acknowledge(aSequence);
+        serverSequence = aServerSequence;
+        diverged = false;
+    }
+
+    /**
+     * Stops recording changes made by the current thread. Used when the changes from the
+     * service are applied.
+     */
+    public synchronized void suspend()
+    {
+        suspendedThread = Thread.currentThread();
+    }
+
+    /**
+     * Resumes recording changes.
+     */
+    public synchronized void resume()
+    {
+        suspendedThread = null;
+    }
+
+    /**
+     * Returns <code>TRUE</code> if the changes of the current thread aren't recorded.
+     *
+     * @return <code>TRUE</code> if the changes of the current thread aren't recorded.
+     */
+    private boolean isSuspended()
+    {
+        return suspendedThread == Thread.currentThread();
+    }
+
+    // --------------------------------------------------------------------------------------------
+    // Persistence
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Loads the journal from the file and marks the file dirty until the next {@link #store()}.
+     */
+    public synchronized void load()
+    {
+        if (file == null || !file.exists()) return;
+
+        try
+        {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try
+            {
+                if (in.readInt() != FILE_VERSION) return;
+
+                boolean clean = in.readBoolean();
+                diverged = in.readBoolean() || !clean;
+                sequence = in.readLong();
+                serverSequence = in.readInt();
+
+                int count = in.readInt();
+                for (int i = 0; i < count; i++)
+                {
+                    long seq = in.readLong();
+                    SyncDelta.Entry entry = SyncDelta.Entry.read(in);
+                    changes.put(entry.getType() + entry.getKey(), new Change(entry, seq));
+                }
+            } finally
+            {
+                in.close();
+            }
+        } catch (IOException e)
+        {
+            LOG.log(Level.WARNING, Strings.error("sync.failed.to.load.journal"), e);
+            changes.clear();
+            diverged = true;
+        }
+
+        write(false);
+    }
+
+    /**
+     * Stores the journal in the file and marks it clean.
+     */
+    public synchronized void store()
+    {
+        write(true);
+    }
+
+    /**
+     * Writes the journal to the file.
+     *
+     * @param clean <code>TRUE</code> to mark the file clean.
+     */
+    private void write(boolean clean)
+    {
+        if (file == null) return;
+
+        File temp = new File(file.getPath() + ".tmp");
+        try
+        {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try
+            {
+                out.writeInt(FILE_VERSION);
+                out.writeBoolean(clean);
+                out.writeBoolean(diverged);
+                out.writeLong(sequence);
+                out.writeInt(serverSequence);
+
+                out.writeInt(changes.size());
+                for (Change change : changes.values())
+                {
+                    out.writeLong(change.sequence);
+                    change.entry.write(out);
+                }
+            } finally
+            {
+                out.close();
+            }
+
+            if (file.exists() && !file.delete()) throw new IOException("Can't delete " + file);
+            if (!temp.renameTo(file)) throw new IOException("Can't rename " + temp);
+        } catch (IOException e)
+        {
+            LOG.log(Level.WARNING, Strings.error("sync.failed.to.store.journal"), e);
+        }
+    }
+
+    /**
+     * Change of an object.
+     */
+    private static class Change
+    {
+        private final SyncDelta.Entry entry;
+        private final long sequence;
+
+        /**
+         * Creates a change.
+         *
+         * @param aEntry    new state of the object.
+         * @param aSequence local sequence.
+         */
+        Change(SyncDelta.Entry aEntry, long aSequence)
+        {
+            entry = aEntry;
+            sequence = aSequence;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.service.sync;
+
+import com.salas.bb.domain.*;
+import com.salas.bb.domain.utils.DomainAdapter;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Listens to the same domain events as the persistence changes monitor and records the
+ * changes in the synchronization journal. Structural changes (guides, feeds and reading lists)
+ * and read / pinned states of articles are recorded as delta entries. Changes of the properties
+ * which only the full snapshot carries mark the journal diverged.
+ */
+public class SyncJournalMonitor extends DomainAdapter
+{
+    /** Guide properties which are synchronized only with the snapshot. */
+    private static final Set<String> SNAPSHOT_GUIDE_PROPERTIES = new HashSet<String>(Arrays.asList(
+        IGuide.PROP_TITLE, IGuide.PROP_ICON_KEY, IGuide.PROP_AUTO_FEEDS_DISCOVERY,
+        IGuide.PROP_PUBLISHING_ENABLED, IGuide.PROP_PUBLISHING_PUBLIC, IGuide.PROP_PUBLISHING_TAGS,
+        IGuide.PROP_PUBLISHING_TITLE, IGuide.PROP_PUBLISHING_RATING, IGuide.PROP_NOTIFICATIONS_ALLOWED,
+        IGuide.PROP_MOBILE));
+
+    /** Feed properties which are synchronized only with the snapshot. */
+    private static final Set<String> SNAPSHOT_FEED_PROPERTIES = new HashSet<String>(Arrays.asList(
+        IFeed.PROP_RATING, IFeed.PROP_TYPE, IFeed.PROP_HANDLING_TYPE,
+        IFeed.PROP_CUSTOM_VIEW_MODE_ENABLED, IFeed.PROP_CUSTOM_VIEW_MODE, IFeed.PROP_ASCENDING_SORTING,
+        IFeed.PROP_AUTO_SAVE_ARTICLES, IFeed.PROP_AUTO_SAVE_ARTICLES_FOLDER,
+        IFeed.PROP_AUTO_SAVE_ARTICLES_NAME_FORMAT, IFeed.PROP_AUTO_SAVE_ENCLOSURES,
+        IFeed.PROP_AUTO_SAVE_ENCLOSURES_FOLDER, IFeed.PROP_AUTO_SAVE_ENCLOSURES_NAME_FORMAT,
+        DataFeed.PROP_PURGE_LIMIT, DataFeed.PROP_UPDATE_PERIOD, DataFeed.PROP_MARK_READ_WHEN_NO_KEYWORDS,
+        DirectFeed.PROP_XML_URL, DirectFeed.PROP_CUSTOM_TITLE, DirectFeed.PROP_CUSTOM_AUTHOR,
+        DirectFeed.PROP_CUSTOM_DESCRIPTION, DirectFeed.PROP_DISABLED));
+
+    private final SyncJournal journal;
+
+    /**
+     * Creates the monitor.
+     *
+     * @param aJournal journal to record changes in.
+     */
+    public SyncJournalMonitor(SyncJournal aJournal)
+    {
+        journal = aJournal;
+    }
+
+    /**
+     * Invoked when new guide has been added to the set.
+     *
+     * @param set           guides set.
+     * @param guide         added guide.
+     * @param lastInBatch   <code>TRUE</code> when this is the last even in batch.
+     */
+    public void guideAdded(GuidesSet set, IGuide guide, boolean lastInBatch)
+    {
+        if (!(guide instanceof StandardGuide))
+        {
+            journal.markDiverged();
+            return;
+        }
+
+        StandardGuide sguide = (StandardGuide)guide;
+        journal.record(SyncDelta.Entry.guide(guide.getTitle(), true));
+
+        for (IFeed feed : sguide.getFeeds())
+        {
+            if (sguide.hasDirectLinkWith(feed)) recordFeed(guide, feed, true);
+        }
+
+        for (ReadingList list : sguide.getReadingLists()) readingListAdded(guide, list);
+    }
+
+    /**
+     * Invoked when the guide has been removed from the set.
+     *
+     * @param set   guides set.
+     * @param guide removed guide.
+     * @param index old guide index.
+     */
+    public void guideRemoved(GuidesSet set, IGuide guide, int index)
+    {
+        journal.record(SyncDelta.Entry.guide(guide.getTitle(), false));
+    }
+
+    /**
+     * Invoked when the guide has been moved to a new location in list.
+     *
+     * @param set      guides set.
+     * @param guide    guide which has been removed.
+     * @param oldIndex old guide index.
+     * @param newIndex new guide index.
+     */
+    public void guideMoved(GuidesSet set, IGuide guide, int oldIndex, int newIndex)
+    {
+        journal.markDiverged();
+    }
+
+    /**
+     * Invoked when the property of the guide has been changed.
+     *
+     * @param guide    guide owning the property.
+     * @param property property name.
+     * @param oldValue old property value.
+     * @param newValue new property value.
+     */
+    public void propertyChanged(IGuide guide, String property, Object oldValue, Object newValue)
+    {
+        if (SNAPSHOT_GUIDE_PROPERTIES.contains(property)) journal.markDiverged();
+    }
+
+    /**
+     * Invoked when the feed is directly linked to the guide.
+     *
+     * @param guide guide.
+     * @param feed  feed.
+     */
+    public void feedLinkAdded(IGuide guide, IFeed feed)
+    {
+        recordFeed(guide, feed, true);
+    }
+
+    /**
+     * Invoked when the direct link between the feed and the guide is removed.
+     *
+     * @param guide guide.
+     * @param feed  feed.
+     */
+    public void feedLinkRemoved(IGuide guide, IFeed feed)
+    {
+        recordFeed(guide, feed, false);
+    }
+
+    /**
+     * Invoked when a feed is moved from one position to another.
+     *
+     * @param guide       source guide.
+     * @param feed        feed moved.
+     * @param oldPosition old position.
+     * @param newPosition new position.
+     */
+    public void feedRepositioned(IGuide guide, IFeed feed, int oldPosition, int newPosition)
+    {
+        journal.markDiverged();
+    }
+
+    /**
+     * Invoked when the property of the feed has been changed.
+     *
+     * @param feed     feed.
+     * @param property property of the feed.
+     * @param oldValue old property value.
+     * @param newValue new property value.
+     */
+    public void propertyChanged(IFeed feed, String property, Object oldValue, Object newValue)
+    {
+        if (SNAPSHOT_FEED_PROPERTIES.contains(property) && feed.getParentGuides().length > 0)
+        {
+            journal.markDiverged();
+        }
+    }
+
+    /**
+     * Invoked when new reading list has been added to the guide.
+     *
+     * @param guide guide.
+     * @param list  reading list.
+     */
+    public void readingListAdded(IGuide guide, ReadingList list)
+    {
+        journal.record(SyncDelta.Entry.readingList(guide.getTitle(), list.getURL(), true));
+    }
+
+    /**
+     * Invoked when the reading list has been removed from the guide.
+     *
+     * @param guide guide.
+     * @param list  reading list.
+     */
+    public void readingListRemoved(IGuide guide, ReadingList list)
+    {
+        journal.record(SyncDelta.Entry.readingList(guide.getTitle(), list.getURL(), false));
+    }
+
+    /**
+     * Invoked when the property of the list has been changed.
+     *
+     * @param list      list owning the property.
+     * @param property  property name.
+     * @param oldValue  old property value.
+     * @param newValue  new property value.
+     */
+    public void propertyChanged(ReadingList list, String property, Object oldValue, Object newValue)
+    {
+        if (ReadingList.PROP_TITLE.equals(property)) journal.markDiverged();
+    }
+
+    /**
+     * Invoked when the property of the article has been changed.
+     *
+     * @param article  article.
+     * @param property property of the article.
+     * @param oldValue old property value.
+     * @param newValue new property value.
+     */
+    public void propertyChanged(IArticle article, String property, Object oldValue, Object newValue)
+    {
+        if (!IArticle.PROP_READ.equals(property) && !IArticle.PROP_PINNED.equals(property)) return;
+
+        IFeed feed = article.getFeed();
+        if (feed instanceof DirectFeed)
+        {
+            URL xmlURL = ((DirectFeed)feed).getXmlURL();
+            if (xmlURL != null)
+            {
+                journal.record(SyncDelta.Entry.article(xmlURL, article.getSimpleMatchKey(),
+                    article.isRead(), article.isPinned()));
+            }
+        }
+    }
+
+    /**
+     * Records the feed link change.
+     *
+     * @param guide     guide.
+     * @param feed      feed.
+     * @param present   <code>TRUE</code> if the feed is now in the guide.
+     */
+    private void recordFeed(IGuide guide, IFeed feed, boolean present)
+    {
+        URL xmlURL = feed instanceof DirectFeed ? ((DirectFeed)feed).getXmlURL() : null;
+        if (xmlURL == null)
+        {
+            // Search and query feeds are the part of the snapshot only
+            journal.markDiverged();
+        } else
+        {
+            journal.record(SyncDelta.Entry.feed(guide.getTitle(), xmlURL, present));
+        }
+    }
+}
@@ -196,14 +196,23 @@ public class SyncOut extends AbstractSynchronization
         // Calculate feed hashes basing on their present XML URLs for later updates upon successful completion
         Map<DirectFeed, Integer> feedHashes = calculateFeedHashes(guidesSet);
 
-        OPMLGuideSet opmlSet = Converter.convertToOPML(guidesSet, "BlogBridge Feeds");
-        Document doc = new Exporter(true).export(opmlSet);
+        // Push only the changes made since the last sync if the service and the journal allow
+        DeltaSync deltaSync = GlobalController.SINGLETON.getDeltaSync();
+        if (deltaSync == null || !deltaSync.push(aEmail, aPassword))
+        {
+            long mark = deltaSync == null ? 0 : deltaSync.getSnapshotMark();
+
+            OPMLGuideSet opmlSet = Converter.convertToOPML(guidesSet, "BlogBridge Feeds");
+            Document doc = new Exporter(true).export(opmlSet);
 
-        // prepare parameters for server call
-        String opml = Transformation.documentToString(doc);
+            // prepare parameters for server call
+            String opml = Transformation.documentToString(doc);
 
-        int userId = ServerService.syncStore(aEmail, aPassword, opml);
-        updatePublishedListsURLs(guidesSet, userId);
+            int userId = ServerService.syncStore(aEmail, aPassword, opml);
+            updatePublishedListsURLs(guidesSet, userId);
+
+            if (deltaSync != null) deltaSync.snapshotStored(aEmail, aPassword, mark);
+        }
 
         // Update synchronization times
         guidesSet.onSyncOutCompletion();
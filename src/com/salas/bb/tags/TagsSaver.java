@@ -25,28 +25,41 @@
 package com.salas.bb.tags;
 
 import com.salas.bb.domain.*;
+import com.salas.bb.domain.utils.DomainAdapter;
+import com.salas.bb.domain.utils.IDomainListener;
 import com.salas.bb.tags.net.ITagsStorage;
+import com.salas.bb.tags.net.WrappingStorage;
 import com.salas.bb.utils.i18n.Strings;
 
+import java.io.*;
+import java.net.URL;
 import java.text.MessageFormat;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Tags saver is a task, which is scanning for unsaved user tags across all savable
- * objects in given guides set and sends them to the appropriate services using
- * networker.
+ * Tags saver is a task, which is sending unsaved user tags of feeds and articles to
+ * the appropriate services using networker. Taggables are put in the queue of dirty
+ * objects by the domain listener when their tags become unsaved, so that the saver
+ * never has to scan the guides set for them. The queue is written to the file between
+ * runs to let the tags of articles (which aren't kept in database) survive restarts.
  */
 public class TagsSaver implements Runnable
 {
     private static final Logger LOG = Logger.getLogger(TagsSaver.class.getName());
 
+    /** Version of the pending file format. */
+    private static final int PENDING_FILE_VERSION = 1;
+
     private final ITagsStorage netHandler;
+    private final Queue<ITaggable> dirty;
+    private final IDomainListener domainListener;
+
     private GuidesSet       guidesSet;
+    private File            pendingFile;
+    private volatile boolean pendingChanged;
 
     /**
      * Creates tags saver.
@@ -56,16 +69,80 @@ public class TagsSaver implements Runnable
     public TagsSaver(ITagsStorage aNetHandler)
     {
         netHandler = aNetHandler;
+        dirty = new ConcurrentLinkedQueue<ITaggable>();
+        domainListener = new DirtyTracker();
+    }
+
+    /**
+     * Returns the listener which should be registered to receive domain events.
+     *
+     * @return listener.
+     */
+    public IDomainListener getDomainListener()
+    {
+        return domainListener;
     }
 
     /**
-     * Sets the guides set to operate.
+     * Sets the guides set to operate. Feeds of the set having unsaved user tags
+     * (the flag is persistent for feeds) are queued for saving.
      *
      * @param aGuidesSet guides set.
      */
     public void setGuidesSet(GuidesSet aGuidesSet)
     {
         guidesSet = aGuidesSet;
+
+        if (guidesSet != null)
+        {
+            for (IFeed feed : guidesSet.getFeeds()) checkObject(feed);
+        }
+    }
+
+    /**
+     * Sets the file to keep the unsaved user tags of articles in between the sessions and
+     * queues everything found in it.
+     *
+     * @param aPendingFile file.
+     */
+    public void setPendingFile(File aPendingFile)
+    {
+        pendingFile = aPendingFile;
+
+        if (pendingFile != null && pendingFile.exists())
+        {
+            try
+            {
+                dirty.addAll(readPending(pendingFile));
+            } catch (IOException e)
+            {
+                LOG.log(Level.WARNING, "Failed to read pending user tags.", e);
+            }
+        }
+    }
+
+    /**
+     * Puts taggable in the queue of objects to save if it has unsaved user tags.
+     *
+     * @param aObject object to check.
+     */
+    void checkObject(Object aObject)
+    {
+        if (aObject instanceof ITaggable && ((ITaggable)aObject).hasUnsavedUserTags())
+        {
+            dirty.add((ITaggable)aObject);
+            pendingChanged = true;
+        }
+    }
+
+    /**
+     * Returns the number of objects in the queue.
+     *
+     * @return number of objects.
+     */
+    int getQueueSize()
+    {
+        return dirty.size();
     }
 
     /**
@@ -73,76 +150,83 @@ public class TagsSaver implements Runnable
      */
     public void run()
     {
-        if (guidesSet != null) saveTaggables(collectUnsavedTaggables(guidesSet));
+        if (guidesSet != null) saveTaggables(drainUnsavedTaggables());
+        if (pendingChanged) savePending();
     }
 
     /**
-     * Collect unsaved taggable objects from the guides set. We take only feeds and
-     * articles from data feeds. Any of above should implement {@link com.salas.bb.domain.ITaggable}
-     * interface.
-     *
-     * @param guidesSet the set to scan.
+     * Takes all objects from the queue skipping duplicates and those which were saved
+     * since they have been queued.
      *
-     * @return collection of unsaved untaggables.
+     * @return list of objects to save.
      */
-    static Collection<ITaggable> collectUnsavedTaggables(GuidesSet guidesSet)
+    private List<ITaggable> drainUnsavedTaggables()
     {
-        Set<ITaggable> unsavedTaggables = new HashSet<ITaggable>();
+        List<ITaggable> unsaved = new ArrayList<ITaggable>();
+        Map<ITaggable, Boolean> seen = new IdentityHashMap<ITaggable, Boolean>();
 
-        Collection<IFeed> feeds = guidesSet.getFeeds();
-        for (IFeed feed : feeds)
+        ITaggable taggable;
+        while ((taggable = dirty.poll()) != null)
         {
-            checkObject(feed, unsavedTaggables);
-
-            if (feed instanceof DataFeed)
+            if (taggable.hasUnsavedUserTags() && seen.put(taggable, Boolean.TRUE) == null)
             {
-                IArticle[] articles = feed.getArticles();
-                for (IArticle article : articles) checkObject(article, unsavedTaggables);
+                unsaved.add(taggable);
             }
         }
 
-        return unsavedTaggables;
+        if (!unsaved.isEmpty()) pendingChanged = true;
+
+        return unsaved;
     }
 
     /**
-     * Checks if object is {@link com.salas.bb.domain.ITaggable} implemenation
-     * and having unsaved user tags. If it is, then it will be added to
-     * <code>aUnsavedTaggables</code> set.
+     * Save all unsaved user tags to the storage which takes them at the moment. If saving
+     * fails, the rest of the objects are put back in the queue for the next run.
      *
-     * @param aObject               object to verify.
-     * @param aUnsavedTaggables     set to save unsaved taggables to.
+     * @param aUnsavedTaggables collection of taggable objects with unsaved user tags.
      */
-    private static void checkObject(Object aObject, Set<ITaggable> aUnsavedTaggables)
+    private void saveTaggables(Collection<ITaggable> aUnsavedTaggables)
     {
-        if (aObject instanceof ITaggable && ((ITaggable)aObject).hasUnsavedUserTags())
+        ITagsStorage storage = getBackend();
+
+        Iterator<ITaggable> it = aUnsavedTaggables.iterator();
+        while (it.hasNext())
         {
-            aUnsavedTaggables.add((ITaggable)aObject);
+            if (!saveTaggable(storage, it.next()))
+            {
+                while (it.hasNext()) dirty.add(it.next());
+            }
         }
     }
 
     /**
-     * Save all unsaved user tags.
+     * Returns the storage which actually takes the tags at the moment.
      *
-     * @param aUnsavedTaggables collection of taggable objects with unsaved user tags.
+     * @return storage.
      */
-    private void saveTaggables(Collection<ITaggable> aUnsavedTaggables)
+    private ITagsStorage getBackend()
     {
-        for (ITaggable taggable : aUnsavedTaggables) saveTaggable(taggable);
+        return netHandler instanceof WrappingStorage
+            ? ((WrappingStorage)netHandler).getCurrentStorage() : netHandler;
     }
 
     /**
      * Saves user tags to the service and marks object as having no unsaved tags.
      *
+     * @param aStorage  storage to save to.
      * @param aTaggable taggble object to save user tag for.
+     *
+     * @return <code>FALSE</code> if saving failed and the object is back in the queue.
      */
-    private void saveTaggable(ITaggable aTaggable)
+    private boolean saveTaggable(ITagsStorage aStorage, ITaggable aTaggable)
     {
         if (LOG.isLoggable(Level.FINE)) LOG.fine("Saving user tags: " + aTaggable);
 
+        boolean saved = true;
         try
         {
             String[] beforeSaving = aTaggable.getUserTags();
-            netHandler.storeUserTags(aTaggable);
+            aStorage.storeUserTags(aTaggable);
             String[] afterSaving = aTaggable.getUserTags();
 
             // Mark user tags as saved only if the tags we were saving didn't change
@@ -150,6 +234,10 @@ public class TagsSaver implements Runnable
             if (Arrays.equals(beforeSaving, afterSaving))
             {
                 aTaggable.setUnsavedUserTags(false);
+            } else
+            {
+                // Changed tags don't fire the event once again as they are still unsaved
+                dirty.add(aTaggable);
             }
         } catch (Exception e)
         {
@@ -158,6 +246,385 @@ public class TagsSaver implements Runnable
                 LOG.log(Level.WARNING, MessageFormat.format(
                     Strings.error("tags.could.not.store.user.tags"), aTaggable), e);
             }
+
+            dirty.add(aTaggable);
+            saved = false;
+        }
+
+        return saved;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Pending file
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Writes the queued articles to the pending file or removes the file if there's none.
+     * Feeds aren't written as their unsaved flag is stored in database.
+     */
+    private void savePending()
+    {
+        if (pendingFile == null) return;
+        pendingChanged = false;
+
+        List<ITaggable> articles = new ArrayList<ITaggable>();
+        Map<ITaggable, Boolean> seen = new IdentityHashMap<ITaggable, Boolean>();
+        for (ITaggable taggable : dirty)
+        {
+            if (!(taggable instanceof IFeed) && taggable.getTaggableLink() != null &&
+                seen.put(taggable, Boolean.TRUE) == null) articles.add(taggable);
+        }
+
+        try
+        {
+            writePending(pendingFile, articles);
+        } catch (IOException e)
+        {
+            LOG.log(Level.WARNING, "Failed to write pending user tags.", e);
+        }
+    }
+
+    /**
+     * Writes taggables to the file. If there are none, the file is deleted.
+     *
+     * @param aFile         file.
+     * @param aTaggables    taggables to write.
+     *
+     * @throws IOException if writing fails.
+     */
+    static void writePending(File aFile, Collection<ITaggable> aTaggables)
+        throws IOException
+    {
+        if (aTaggables.isEmpty())
+        {
+            if (aFile.exists() && !aFile.delete()) throw new IOException("Can't delete " + aFile);
+            return;
+        }
+
+        File temp = new File(aFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try
+        {
+            out.writeInt(PENDING_FILE_VERSION);
+            out.writeInt(aTaggables.size());
+            for (ITaggable taggable : aTaggables)
+            {
+                out.writeUTF(taggable.getTaggableLink().toString());
+                writeString(out, taggable.getTitle());
+                writeString(out, taggable.getTagsDescription());
+                writeString(out, taggable.getTagsExtended());
+
+                String[] tags = taggable.getUserTags();
+                out.writeInt(tags == null ? 0 : tags.length);
+                if (tags != null) for (String tag : tags) out.writeUTF(tag);
+            }
+        } finally
+        {
+            out.close();
+        }
+
+        if (aFile.exists() && !aFile.delete()) throw new IOException("Can't delete " + aFile);
+        if (!temp.renameTo(aFile)) throw new IOException("Can't rename " + temp);
+    }
+
+    /**
+     * Reads taggables from the file.
+     *
+     * @param aFile file.
+     *
+     * @return taggables.
+     *
+     * @throws IOException if reading fails.
+     */
+    static List<ITaggable> readPending(File aFile)
+        throws IOException
+    {
+        List<ITaggable> taggables = new ArrayList<ITaggable>();
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(aFile)));
+        try
+        {
+            if (in.readInt() != PENDING_FILE_VERSION) return taggables;
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++)
+            {
+                PendingTaggable taggable = new PendingTaggable(new URL(in.readUTF()), readString(in));
+                taggable.setTagsDescription(readString(in));
+                taggable.setTagsExtended(readString(in));
+
+                String[] tags = new String[in.readInt()];
+                for (int j = 0; j < tags.length; j++) tags[j] = in.readUTF();
+                taggable.setUserTags(tags);
+
+                taggables.add(taggable);
+            }
+        } finally
+        {
+            in.close();
+        }
+
+        return taggables;
+    }
+
+    /**
+     * Writes optional string.
+     *
+     * @param out   stream.
+     * @param str   string or <code>NULL</code>.
+     *
+     * @throws IOException if writing fails.
+     */
+    private static void writeString(DataOutputStream out, String str)
+        throws IOException
+    {
+        out.writeBoolean(str != null);
+        if (str != null) out.writeUTF(str);
+    }
+
+    /**
+     * Reads optional string.
+     *
+     * @param in    stream.
+     *
+     * @return string or <code>NULL</code>.
+     *
+     * @throws IOException if reading fails.
+     */
+    private static String readString(DataInputStream in)
+        throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Unsaved user tags of the article restored from the pending file. The article itself
+     * may be long gone, but the tags are still sent.
+     */
+    static class PendingTaggable implements ITaggable
+    {
+        private final URL       link;
+        private final String    title;
+        private String[]        userTags;
+        private String[]        sharedTags;
+        private String          description;
+        private String          extended;
+        private boolean         unsaved;
+
+        /**
+         * Creates the taggable with unsaved user tags.
+         *
+         * @param aLink     link to the article.
+         * @param aTitle    title of the article.
+         */
+        PendingTaggable(URL aLink, String aTitle)
+        {
+            link = aLink;
+            title = aTitle;
+            unsaved = true;
+        }
+
+        /**
+         * Sets user tags.
+         *
+         * @param tags tags.
+         */
+        public void setUserTags(String[] tags)
+        {
+            userTags = tags;
+        }
+
+        /**
+         * Returns user tags.
+         *
+         * @return tags.
+         */
+        public String[] getUserTags()
+        {
+            return userTags;
+        }
+
+        /**
+         * Returns shared tags.
+         *
+         * @return tags.
+         */
+        public String[] getSharedTags()
+        {
+            return sharedTags;
+        }
+
+        /**
+         * Sets shared tags.
+         *
+         * @param tags tags.
+         */
+        public void setSharedTags(String[] tags)
+        {
+            sharedTags = tags;
+        }
+
+        /**
+         * Returns author tags. There are none.
+         *
+         * @return <code>NULL</code>.
+         */
+        public String[] getAuthorTags()
+        {
+            return null;
+        }
+
+        /**
+         * Returns the name of the type.
+         *
+         * @return name.
+         */
+        public String getTaggableTypeName()
+        {
+            return Strings.message("taggable.article");
+        }
+
+        /**
+         * Returns link which is tagged at the service.
+         *
+         * @return link.
+         */
+        public URL getTaggableLink()
+        {
+            return link;
+        }
+
+        /**
+         * Sets the flag of unsaved user tags.
+         *
+         * @param aUnsaved <code>TRUE</code> if unsaved.
+         */
+        public void setUnsavedUserTags(boolean aUnsaved)
+        {
+            unsaved = aUnsaved;
+        }
+
+        /**
+         * Returns <code>TRUE</code> if user tags are still unsaved.
+         *
+         * @return <code>TRUE</code> if unsaved.
+         */
+        public boolean hasUnsavedUserTags()
+        {
+            return unsaved;
+        }
+
+        /**
+         * Returns the description.
+         *
+         * @return description.
+         */
+        public String getTagsDescription()
+        {
+            return description;
+        }
+
+        /**
+         * Returns the title.
+         *
+         * @return title.
+         */
+        public String getTitle()
+        {
+            return title;
+        }
+
+        /**
+         * Sets the description.
+         *
+         * @param aDescription description.
+         */
+        public void setTagsDescription(String aDescription)
+        {
+            description = aDescription;
+        }
+
+        /**
+         * Returns the extended description.
+         *
+         * @return extended description.
+         */
+        public String getTagsExtended()
+        {
+            return extended;
+        }
+
+        /**
+         * Sets the extended description.
+         *
+         * @param aExtended extended description.
+         */
+        public void setTagsExtended(String aExtended)
+        {
+            extended = aExtended;
+        }
+
+        /**
+         * Returns string representation.
+         *
+         * @return string.
+         */
+        public String toString()
+        {
+            return link.toString();
+        }
+    }
+
+    /**
+     * Listens to the domain and queues feeds and articles as soon as they get unsaved
+     * user tags.
+     */
+    private class DirtyTracker extends DomainAdapter
+    {
+        /**
+         * Invoked when new guide has been added to the set. The guides are added this way
+         * when the set is loaded from database, and their feeds may have unsaved tags.
+         *
+         * @param set           guides set.
+         * @param guide         added guide.
+         * @param lastInBatch   <code>TRUE</code> when this is the last even in batch.
+         */
+        public void guideAdded(GuidesSet set, IGuide guide, boolean lastInBatch)
+        {
+            for (IFeed feed : guide.getFeeds()) checkObject(feed);
+        }
+
+        /**
+         * Invoked when the property of the feed has been changed.
+         *
+         * @param feed     feed.
+         * @param property property of the feed.
+         * @param oldValue old property value.
+         * @param newValue new property value.
+         */
+        public void propertyChanged(IFeed feed, String property, Object oldValue, Object newValue)
+        {
+            if (ITaggable.PROP_UNSAVED_USER_TAGS.equals(property) && Boolean.TRUE.equals(newValue))
+            {
+                checkObject(feed);
+            }
+        }
+
+        /**
+         * Invoked when the property of the article has been changed.
+         *
+         * @param article  article.
+         * @param property property of the article.
+         * @param oldValue old property value.
+         * @param newValue new property value.
+         */
+        public void propertyChanged(IArticle article, String property, Object oldValue,
+                                    Object newValue)
+        {
+            if (ITaggable.PROP_UNSAVED_USER_TAGS.equals(property) && Boolean.TRUE.equals(newValue))
+            {
+                checkObject(article);
+            }
         }
     }
 }
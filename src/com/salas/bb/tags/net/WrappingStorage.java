@@ -58,6 +58,16 @@ public class WrappingStorage implements ITagsStorage
         currentStorage = aStorage;
     }
 
+    /**
+     * Returns the storage being wrapped.
+     *
+     * @return storage.
+     */
+    public ITagsStorage getCurrentStorage()
+    {
+        return currentStorage;
+    }
+
     /**
      * Loads shared tags in the way, specific to this storage.
      *
@@ -30,6 +30,7 @@ import com.jgoodies.uif.util.ResourceUtils;
 import com.salas.bb.core.GlobalController;
 import com.salas.bb.utils.ResourceID;
 import com.salas.bb.utils.StringUtils;
+import com.salas.bb.utils.concurrency.Scheduler;
 import com.salas.bb.utils.i18n.Strings;
 import com.salas.bb.utils.net.LinkShortener;
 import com.salas.bb.utils.net.LinkShorteningException;
@@ -55,6 +56,7 @@ public class TweetThisDialog extends AbstractDialog
     private static final int WIDTH_AVAILABLE = 400;
     private static final int WIDTH_UNAVAILABLE = 450;
     private static final String THREAD_SHORTEN_LINK = "Shorten Link";
+    private static final String THREAD_SEND = "Sending To Twitter";
 
     private JTextArea   taMessage;
     private JButton     btnPasteLink;
@@ -244,7 +246,7 @@ public class TweetThisDialog extends AbstractDialog
         btnSend.setEnabled(false);
         btnSend.setText("sending ...");
 
-        new Thread("Sending To Twitter")
+        Scheduler.lane(THREAD_SEND, 1, Thread.NORM_PRIORITY).execute(new Runnable()
         {
             public void run()
             {
@@ -260,7 +262,7 @@ public class TweetThisDialog extends AbstractDialog
                     onFailedToSend(e.getMessage());
                 }
             }
-        }.start();
+        });
     }
 
     /**
@@ -329,7 +331,7 @@ public class TweetThisDialog extends AbstractDialog
         // If not compressed, compress and do pasting
         componentsEnabled(false);
 
-        new Thread(THREAD_SHORTEN_LINK)
+        Scheduler.lane(THREAD_SHORTEN_LINK, 1, Thread.NORM_PRIORITY).execute(new Runnable()
         {
             public void run()
             {
@@ -368,7 +370,7 @@ public class TweetThisDialog extends AbstractDialog
                     }
                 });
             }
-        }.start();
+        });
     }
 
     /**
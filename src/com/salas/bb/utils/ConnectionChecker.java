@@ -26,9 +26,9 @@ package com.salas.bb.utils;
 
 import com.salas.bb.service.ServerService;
 import com.salas.bb.service.ServerServiceException;
+import com.salas.bb.utils.concurrency.ScheduledTask;
+import com.salas.bb.utils.concurrency.Scheduler;
 
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -68,8 +68,7 @@ public final class ConnectionChecker
     // info to pass.
     private boolean     infoSent;
 
-    private Timer       timer;
-    private TimerTask   task;
+    private ScheduledTask task;
 
     /**
      * Creates connection checker.
@@ -99,7 +98,6 @@ public final class ConnectionChecker
             if (LOG.isLoggable(Level.FINE)) LOG.fine("Account Email=" + accountEmail);
         }
 
-        timer = new Timer(true);
         task = new IntervalCheckTask();
 
         checkInterval = DEFAULT_CHECK_INTERVAL;
@@ -116,7 +114,8 @@ public final class ConnectionChecker
         if (started) return;
 
         // Register new checker task
-        timer.scheduleAtFixedRate(task, 1, checkInterval * Constants.MILLIS_IN_SECOND);
+        Scheduler.lane("Connection Checker", 1, Thread.NORM_PRIORITY).scheduleAtFixedRate(task, 1,
+            checkInterval * Constants.MILLIS_IN_SECOND);
         started = true;
     }
 
@@ -126,7 +125,7 @@ public final class ConnectionChecker
      * Runs once per defined interval of time and tries to get
      * measure file from defined URL.
      */
-    private class IntervalCheckTask extends TimerTask
+    private class IntervalCheckTask extends ScheduledTask
     {
         /**
          * The action to be performed by this timer task.
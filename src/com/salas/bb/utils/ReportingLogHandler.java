@@ -26,7 +26,7 @@ package com.salas.bb.utils;
 
 import EDU.oswego.cs.dl.util.concurrent.Executor;
 import com.salas.bb.service.ServerService;
-import com.salas.bb.utils.concurrency.ExecutorFactory;
+import com.salas.bb.utils.concurrency.Scheduler;
 
 import java.util.logging.Handler;
 import java.util.logging.LogRecord;
@@ -38,7 +38,7 @@ import java.util.logging.LogRecord;
 public class ReportingLogHandler extends Handler
 {
     private static final Executor EXECUTOR =
-        ExecutorFactory.createPooledExecutor("Reporting Log Handler", 1, 2000);
+        Scheduler.lane("Reporting Log Handler", 1, Thread.NORM_PRIORITY);
 
     /**
      * Close the <tt>Handler</tt> and free all associated resources.
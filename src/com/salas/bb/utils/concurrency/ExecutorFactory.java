@@ -24,10 +24,8 @@
 
 package com.salas.bb.utils.concurrency;
 
-import EDU.oswego.cs.dl.util.concurrent.*;
-
 /**
- * Factory for different excutors.
+ * Settings shared by the executors of lanes.
  */
 public final class ExecutorFactory
 {
@@ -38,101 +36,4 @@ public final class ExecutorFactory
     private ExecutorFactory()
     {
     }
-
-    /**
-     * Creates pooled executor which is capable of spawning 'threads' number of threads max.
-     * Each thread will live <code>keepAliveTime</code> milliseconds without tasks before
-     * termination.
-     *
-     * @param name          name of all new threads.
-     * @param threads       maximum number of threads.
-     * @param keepAliveTime time to live idle before termination.
-     *
-     * @return executor.
-     */
-    public static Executor createPooledExecutor(String name, int threads, long keepAliveTime)
-    {
-        return createPooledExecutor(name, threads, Thread.NORM_PRIORITY, keepAliveTime);
-    }
-
-    /**
-     * Creates pooled executor which is capable of spawning 'threads' number of threads max.
-     * Each thread will live <code>keepAliveTime</code> milliseconds without tasks before
-     * termination.
-     *
-     * @param name          name of all new threads.
-     * @param threads       maximum number of threads.
-     * @param priority      thread priority.
-     * @param keepAliveTime time to live idle before termination.
-     *
-     * @return executor.
-     */
-    public static Executor createPooledExecutor(String name, int threads, int priority, long keepAliveTime)
-    {
-        return createPooledExecutor(new NamingThreadFactory(name, priority), threads, keepAliveTime);
-    }
-
-    /**
-     * Creates pooled executor which is capable of spawning 'threads' number of threads max.
-     * Each thread will live <code>keepAliveTime</code> milliseconds without tasks before
-     * termination.
-     *
-     * @param threadFactory thread factory to use for new threads creation.
-     * @param threads       maximum number of threads.
-     * @param keepAliveTime time to live idle before termination.
-     *
-     * @return executor.
-     */
-    public static Executor createPooledExecutor(ThreadFactory threadFactory, int threads, long keepAliveTime)
-    {
-        return createPooledExecutor(threadFactory, threads, keepAliveTime, new LinkedQueue());
-    }
-
-    /**
-     * Creates pooled executor which is capable of spawning 'threads' number of threads max.
-     * Each thread will live <code>keepAliveTime</code> milliseconds without tasks before
-     * termination.
-     *
-     * @param threadFactory thread factory to use for new threads creation.
-     * @param threads       maximum number of threads.
-     * @param keepAliveTime time to live idle before termination.
-     * @param queue         queue to use for scheduling.
-     *
-     * @return executor.
-     */
-    public static Executor createPooledExecutor(ThreadFactory threadFactory, int threads, long keepAliveTime,
-                                                Channel queue)
-    {
-        return createPooledExecutor(threadFactory, threads, keepAliveTime, queue, BlockedPolicy.WAIT);
-    }
-
-    /**
-     * Creates pooled executor which is capable of spawning 'threads' number of threads max.
-     * Each thread will live <code>keepAliveTime</code> milliseconds without tasks before
-     * termination.
-     *
-     * @param threadFactory thread factory to use for new threads creation.
-     * @param threads       maximum number of threads.
-     * @param keepAliveTime time to live idle before termination.
-     * @param queue         queue to use for scheduling.
-     * @param blockedPolicy policy of processing blocked requests (when all threads are busy
-     *                      and there's no room in the queue).
-     *
-     * @return executor.
-     */
-    public static Executor createPooledExecutor(ThreadFactory threadFactory, int threads, long keepAliveTime,
-                                                Channel queue, BlockedPolicy blockedPolicy)
-    {
-        PooledExecutor pooledExecutor = new PooledExecutor(queue, threads);
-        pooledExecutor.setThreadFactory(threadFactory);
-        pooledExecutor.setMinimumPoolSize(threads);
-        pooledExecutor.setKeepAliveTime(keepAliveTime);
-
-        if (blockedPolicy == BlockedPolicy.RUN) pooledExecutor.runWhenBlocked();
-        if (blockedPolicy == BlockedPolicy.WAIT) pooledExecutor.waitWhenBlocked();
-        if (blockedPolicy == BlockedPolicy.DISCARD) pooledExecutor.discardWhenBlocked();
-        if (blockedPolicy == BlockedPolicy.DISCARD_OLDEST) pooledExecutor.discardOldestWhenBlocked();
-
-        return pooledExecutor;
-    }
 }
@@ -0,0 +1,607 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.concurrency;
+
+import EDU.oswego.cs.dl.util.concurrent.*;
+import com.salas.bb.utils.i18n.Strings;
+
+import java.text.MessageFormat;
+import java.util.Comparator;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Named lane of the {@link Scheduler}. Each lane has its own pool of threads of a given
+ * priority, which are started on demand and die after some time without tasks, and its own
+ * queue, which can be bounded. When the queue is full, the overload policy decides what
+ * to do with the new task.
+ * <p/>
+ * The lane counts everything passing through it: the number of tasks submitted, completed,
+ * failed and rejected, the depth of the queue, the time tasks spend waiting and running.
+ */
+public final class Lane implements Executor, java.util.concurrent.Executor
+{
+    private static final Logger LOG = Logger.getLogger(Lane.class.getName());
+
+    /** Time an idle thread lives before termination (ms). */
+    private static final long KEEP_ALIVE_TIME = 10000;
+    /** Delay before a timed task is handed over to the overloaded lane again (ms). */
+    private static final long RETRY_DELAY = 250;
+    /** Nanoseconds in millisecond. */
+    private static final long NANOS_IN_MILLI = 1000000L;
+
+    /** Set while the timer thread hands a timed task over to a lane. */
+    private static final ThreadLocal<Boolean> DISPATCHING = new ThreadLocal<Boolean>();
+
+    private final String        name;
+    private final int           threads;
+    private final int           priority;
+    private final int           capacity;
+    private final ExecutorFactory.BlockedPolicy policy;
+
+    private final Channel       queue;
+    private final PooledExecutor executor;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong    submitted = new AtomicLong();
+    private final AtomicLong    completed = new AtomicLong();
+    private final AtomicLong    failed = new AtomicLong();
+    private final AtomicLong    rejected = new AtomicLong();
+    private final AtomicLong    waitTime = new AtomicLong();
+    private final AtomicLong    maxWaitTime = new AtomicLong();
+    private final AtomicLong    runTime = new AtomicLong();
+    private final AtomicLong    maxRunTime = new AtomicLong();
+
+    /**
+     * Creates lane.
+     *
+     * @param aName     name of the lane and its threads.
+     * @param aThreads  maximum number of threads.
+     * @param aPriority threads priority.
+     * @param aCapacity maximum number of waiting tasks or <code>0</code> for unbounded queue.
+     * @param aPolicy   what to do with a new task when the queue is full.
+     * @param ordering  order of waiting tasks or <code>NULL</code> for FIFO. Requires capacity.
+     */
+    Lane(String aName, int aThreads, int aPriority, int aCapacity, ExecutorFactory.BlockedPolicy aPolicy,
+         final Comparator ordering)
+    {
+        name = aName;
+        threads = aThreads;
+        priority = aPriority;
+        capacity = aCapacity;
+        policy = aPolicy;
+
+        if (ordering != null)
+        {
+            queue = new BoundedPriorityQueue(capacity, new Comparator()
+            {
+                public int compare(Object o1, Object o2)
+                {
+                    return ordering.compare(((Job)o1).task.getTask(), ((Job)o2).task.getTask());
+                }
+            });
+        } else
+        {
+            queue = capacity > 0 ? new BoundedLinkedQueue(capacity) : new LinkedQueue();
+        }
+
+        executor = new PooledExecutor(queue, threads);
+        executor.setThreadFactory(new NamingThreadFactory(name, priority));
+        executor.setMinimumPoolSize(threads);
+        executor.setKeepAliveTime(KEEP_ALIVE_TIME);
+        executor.setBlockedExecutionHandler(new OverloadHandler());
+    }
+
+    // --------------------------------------------------------------------------------------------
+    // Scheduling
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Queues the task for execution.
+     *
+     * @param task task.
+     */
+    public void execute(Runnable task)
+    {
+        ScheduledTask st = new ScheduledTask.RunnableTask(task);
+        st.markBusy();
+        enqueue(st);
+    }
+
+    /**
+     * Queues the task for execution.
+     *
+     * @param task task.
+     *
+     * @return task handle which can be used for cancelling.
+     */
+    public ScheduledTask submit(Runnable task)
+    {
+        ScheduledTask st = toScheduledTask(task);
+        st.scheduled(this, null);
+        st.markBusy();
+        enqueue(st);
+
+        return st;
+    }
+
+    /**
+     * Queues the task for execution after a delay.
+     *
+     * @param task  task.
+     * @param delay delay (ms).
+     *
+     * @return task handle which can be used for cancelling.
+     */
+    public ScheduledTask schedule(Runnable task, long delay)
+    {
+        ScheduledTask st = toScheduledTask(task);
+        Trigger trigger = new Trigger(st);
+        st.scheduled(this, trigger);
+        Scheduler.getTimer().schedule(trigger, delay);
+
+        return st;
+    }
+
+    /**
+     * Queues the task for repeated execution after a delay. The period is counted from the
+     * moment the previous run was queued.
+     *
+     * @param task      task.
+     * @param delay     delay before the first run (ms).
+     * @param period    period between runs (ms).
+     *
+     * @return task handle which can be used for cancelling.
+     */
+    public ScheduledTask schedule(Runnable task, long delay, long period)
+    {
+        ScheduledTask st = toScheduledTask(task);
+        Trigger trigger = new Trigger(st);
+        st.scheduled(this, trigger);
+        Scheduler.getTimer().schedule(trigger, delay, period);
+
+        return st;
+    }
+
+    /**
+     * Queues the task for repeated execution at a fixed rate.
+     *
+     * @param task      task.
+     * @param delay     delay before the first run (ms).
+     * @param period    period between runs (ms).
+     *
+     * @return task handle which can be used for cancelling.
+     */
+    public ScheduledTask scheduleAtFixedRate(Runnable task, long delay, long period)
+    {
+        ScheduledTask st = toScheduledTask(task);
+        Trigger trigger = new Trigger(st);
+        st.scheduled(this, trigger);
+        Scheduler.getTimer().scheduleAtFixedRate(trigger, delay, period);
+
+        return st;
+    }
+
+    /**
+     * Returns the task as is if it's already a scheduled task, or wraps it.
+     *
+     * @param task task.
+     *
+     * @return scheduled task.
+     */
+    private static ScheduledTask toScheduledTask(Runnable task)
+    {
+        return task instanceof ScheduledTask ? (ScheduledTask)task : new ScheduledTask.RunnableTask(task);
+    }
+
+    /**
+     * Hands a timed task over to the lane. Called by the timer.
+     *
+     * @param task task.
+     */
+    private void dispatch(ScheduledTask task)
+    {
+        // Skip the period if the previous run isn't finished yet
+        if (task.isCancelled() || !task.markBusy()) return;
+
+        DISPATCHING.set(Boolean.TRUE);
+        try
+        {
+            enqueue(task);
+        } finally
+        {
+            DISPATCHING.remove();
+        }
+    }
+
+    /**
+     * Puts the task in the queue.
+     *
+     * @param task task.
+     */
+    private void enqueue(ScheduledTask task)
+    {
+        submitted.incrementAndGet();
+        queued.incrementAndGet();
+
+        Job job = new Job(task);
+        try
+        {
+            executor.execute(job);
+        } catch (InterruptedException e)
+        {
+            reject(job);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Drops the task.
+     *
+     * @param job job of the task.
+     */
+    private void reject(Job job)
+    {
+        queued.decrementAndGet();
+        rejected.incrementAndGet();
+        job.task.markIdle();
+
+        if (LOG.isLoggable(Level.FINE)) LOG.fine(MessageFormat.format(Strings.error("scheduler.task.rejected"), name));
+    }
+
+    // --------------------------------------------------------------------------------------------
+    // Statistics
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the name of the lane.
+     *
+     * @return name.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the maximum number of threads.
+     *
+     * @return threads.
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Returns the priority of threads.
+     *
+     * @return priority.
+     */
+    public int getPriority()
+    {
+        return priority;
+    }
+
+    /**
+     * Returns the maximum number of waiting tasks.
+     *
+     * @return capacity or <code>0</code> if unbounded.
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Returns the overload policy.
+     *
+     * @return policy.
+     */
+    public ExecutorFactory.BlockedPolicy getPolicy()
+    {
+        return policy;
+    }
+
+    /**
+     * Returns the number of threads currently alive.
+     *
+     * @return threads.
+     */
+    public int getPoolSize()
+    {
+        return executor.getPoolSize();
+    }
+
+    /**
+     * Returns the number of tasks waiting in the queue.
+     *
+     * @return tasks.
+     */
+    public int getQueueDepth()
+    {
+        return queued.get();
+    }
+
+    /**
+     * Returns the number of tasks running now.
+     *
+     * @return tasks.
+     */
+    public int getRunningCount()
+    {
+        return running.get();
+    }
+
+    /**
+     * Returns the number of tasks put in the lane.
+     *
+     * @return tasks.
+     */
+    public long getSubmittedCount()
+    {
+        return submitted.get();
+    }
+
+    /**
+     * Returns the number of tasks completed successfully.
+     *
+     * @return tasks.
+     */
+    public long getCompletedCount()
+    {
+        return completed.get();
+    }
+
+    /**
+     * Returns the number of tasks which failed with an exception.
+     *
+     * @return tasks.
+     */
+    public long getFailedCount()
+    {
+        return failed.get();
+    }
+
+    /**
+     * Returns the number of tasks dropped because of overload.
+     *
+     * @return tasks.
+     */
+    public long getRejectedCount()
+    {
+        return rejected.get();
+    }
+
+    /**
+     * Returns the average time tasks spent in the queue.
+     *
+     * @return time (ms).
+     */
+    public long getAverageWaitTime()
+    {
+        long runs = completed.get() + failed.get() + running.get();
+        return runs == 0 ? 0 : waitTime.get() / runs / NANOS_IN_MILLI;
+    }
+
+    /**
+     * Returns the longest time a task spent in the queue.
+     *
+     * @return time (ms).
+     */
+    public long getMaxWaitTime()
+    {
+        return maxWaitTime.get() / NANOS_IN_MILLI;
+    }
+
+    /**
+     * Returns the average run time of tasks.
+     *
+     * @return time (ms).
+     */
+    public long getAverageRunTime()
+    {
+        long runs = completed.get() + failed.get();
+        return runs == 0 ? 0 : runTime.get() / runs / NANOS_IN_MILLI;
+    }
+
+    /**
+     * Returns the longest run time of a task.
+     *
+     * @return time (ms).
+     */
+    public long getMaxRunTime()
+    {
+        return maxRunTime.get() / NANOS_IN_MILLI;
+    }
+
+    /**
+     * Returns the summary of the lane statistics.
+     *
+     * @return summary.
+     */
+    public String toString()
+    {
+        return name + ": threads=" + getPoolSize() + "/" + threads +
+            " queued=" + getQueueDepth() + " running=" + getRunningCount() +
+            " submitted=" + getSubmittedCount() + " completed=" + getCompletedCount() +
+            " failed=" + getFailedCount() + " rejected=" + getRejectedCount() +
+            " wait=" + getAverageWaitTime() + "/" + getMaxWaitTime() + "ms" +
+            " run=" + getAverageRunTime() + "/" + getMaxRunTime() + "ms";
+    }
+
+    /**
+     * Adds time to the total and updates the maximum.
+     *
+     * @param total total time.
+     * @param max   maximum time.
+     * @param time  time to add.
+     */
+    private static void record(AtomicLong total, AtomicLong max, long time)
+    {
+        total.addAndGet(time);
+
+        long current;
+        while ((current = max.get()) < time && !max.compareAndSet(current, time));
+    }
+
+    // --------------------------------------------------------------------------------------------
+    // Internal classes
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Task in the queue.
+     */
+    private class Job implements Runnable
+    {
+        private final ScheduledTask task;
+        private final long          queuedAt;
+
+        /**
+         * Creates job.
+         *
+         * @param aTask task.
+         */
+        public Job(ScheduledTask aTask)
+        {
+            task = aTask;
+            queuedAt = System.nanoTime();
+        }
+
+        /** Runs the task and records statistics. */
+        public void run()
+        {
+            queued.decrementAndGet();
+            if (task.isCancelled())
+            {
+                task.markIdle();
+                return;
+            }
+
+            long start = System.nanoTime();
+            record(waitTime, maxWaitTime, start - queuedAt);
+            running.incrementAndGet();
+
+            try
+            {
+                task.run();
+                completed.incrementAndGet();
+            } catch (Throwable e)
+            {
+                failed.incrementAndGet();
+                LOG.log(Level.SEVERE, MessageFormat.format(Strings.error("scheduler.task.failed"), name), e);
+            } finally
+            {
+                record(runTime, maxRunTime, System.nanoTime() - start);
+                running.decrementAndGet();
+                task.markIdle();
+            }
+        }
+    }
+
+    /**
+     * Timer task handing the scheduled task over to the lane.
+     */
+    private class Trigger extends TimerTask
+    {
+        private final ScheduledTask task;
+
+        /**
+         * Creates trigger.
+         *
+         * @param aTask task.
+         */
+        public Trigger(ScheduledTask aTask)
+        {
+            task = aTask;
+        }
+
+        /** Hands the task over. */
+        public void run()
+        {
+            dispatch(task);
+        }
+    }
+
+    /**
+     * Applies the overload policy when there's no room in the queue. The timer thread is
+     * never blocked and never runs tasks itself: the next period of a periodic task is
+     * waited for, and a delayed task is retried a bit later.
+     */
+    private class OverloadHandler implements PooledExecutor.BlockedExecutionHandler
+    {
+        /**
+         * Invoked when the queue is full.
+         *
+         * @param command job.
+         *
+         * @return <code>TRUE</code> as the job is always taken care of.
+         *
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        public boolean blockedAction(Runnable command)
+            throws InterruptedException
+        {
+            Job job = (Job)command;
+
+            if (DISPATCHING.get() != null &&
+                (policy == ExecutorFactory.BlockedPolicy.RUN || policy == ExecutorFactory.BlockedPolicy.WAIT))
+            {
+                ScheduledTask task = job.task;
+                queued.decrementAndGet();
+                submitted.decrementAndGet();
+                task.markIdle();
+                if (!task.isCancelled()) Scheduler.getTimer().schedule(new Trigger(task), RETRY_DELAY);
+                return true;
+            }
+
+            switch (policy)
+            {
+                case RUN:
+                    job.run();
+                    break;
+
+                case WAIT:
+                    queue.put(job);
+                    break;
+
+                case DISCARD_OLDEST:
+                    Object oldest = queue.poll(0);
+                    if (oldest != null) reject((Job)oldest);
+                    if (!queue.offer(job, 0)) reject(job);
+                    break;
+
+                default:
+                    reject(job);
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.concurrency;
+
+import com.salas.bb.utils.i18n.Strings;
+import com.salas.bb.utils.metrics.Metrics;
+
+import java.text.MessageFormat;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Graph of named phases with dependencies between them. When the graph is started, every
+ * phase runs in its lane as soon as all the phases it depends on are finished, so that the
+ * independent phases run in parallel. The phases have to be added in the order of
+ * dependencies, which rules out cycles.
+ * <p/>
+ * The failure of a phase is logged and the phase counts as finished, so that the rest of the
+ * graph is still run. The time of every phase is logged and recorded in the histogram named
+ * after the graph and the phase (<code>startup.user.interface</code>).
+ */
+public final class PhaseGraph
+{
+    private static final Logger LOG = Logger.getLogger(PhaseGraph.class.getName());
+
+    private final String name;
+    private final Lane lane;
+
+    /** Phases by name in the order of definition. */
+    private final Map<String, Phase> phases;
+    /** Time of the start or <code>-1</code> if not started. */
+    private long started;
+
+    /**
+     * Creates graph.
+     *
+     * @param aName     name of the graph and its lane.
+     * @param threads   maximum number of phases running in parallel.
+     */
+    public PhaseGraph(String aName, int threads)
+    {
+        name = aName;
+        lane = Scheduler.lane(aName, threads, Thread.NORM_PRIORITY);
+        phases = new LinkedHashMap<String, Phase>();
+        started = -1;
+    }
+
+    /**
+     * Adds the phase.
+     *
+     * @param phaseName     name of the phase.
+     * @param body          work of the phase.
+     * @param dependencies  names of the phases which should finish before this phase starts.
+     *
+     * @throws IllegalArgumentException if the name is taken or some dependency is not defined.
+     * @throws IllegalStateException    if the graph is already started.
+     */
+    public synchronized void add(String phaseName, Runnable body, String ... dependencies)
+    {
+        if (started != -1) throw new IllegalStateException(Strings.error("phase.graph.started"));
+        if (phases.containsKey(phaseName))
+        {
+            throw new IllegalArgumentException(MessageFormat.format(
+                Strings.error("phase.already.defined"), phaseName));
+        }
+
+        Phase phase = new Phase(phaseName, body);
+        for (String dependency : dependencies)
+        {
+            Phase required = phases.get(dependency);
+            if (required == null)
+            {
+                throw new IllegalArgumentException(MessageFormat.format(
+                    Strings.error("phase.unknown.dependency"), phaseName, dependency));
+            }
+
+            if (required.dependents.add(phase)) phase.pending++;
+        }
+
+        phases.put(phaseName, phase);
+    }
+
+    /**
+     * Starts all phases which don't depend on others. The rest follow when ready.
+     *
+     * @throws IllegalStateException if the graph is already started.
+     */
+    public synchronized void start()
+    {
+        if (started != -1) throw new IllegalStateException(Strings.error("phase.graph.started"));
+
+        started = System.currentTimeMillis();
+        for (Phase phase : phases.values())
+        {
+            if (phase.pending == 0) submit(phase);
+        }
+    }
+
+    /**
+     * Waits for the phase to finish.
+     *
+     * @param phaseName name of the phase.
+     *
+     * @throws InterruptedException if interrupted.
+     * @throws IllegalArgumentException if there's no such phase.
+     */
+    public void await(String phaseName)
+        throws InterruptedException
+    {
+        getPhase(phaseName).done.await();
+    }
+
+    /**
+     * Waits for all phases to finish.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    public void awaitAll()
+        throws InterruptedException
+    {
+        List<Phase> all;
+        synchronized (this)
+        {
+            all = new ArrayList<Phase>(phases.values());
+        }
+
+        for (Phase phase : all) phase.done.await();
+    }
+
+    /**
+     * Returns <code>TRUE</code> if the phase is finished.
+     *
+     * @param phaseName name of the phase.
+     *
+     * @return <code>TRUE</code> if finished.
+     *
+     * @throws IllegalArgumentException if there's no such phase.
+     */
+    public boolean isFinished(String phaseName)
+    {
+        return getPhase(phaseName).done.getCount() == 0;
+    }
+
+    /**
+     * Returns the time the phase took.
+     *
+     * @param phaseName name of the phase.
+     *
+     * @return time (ms) or <code>-1</code> if the phase isn't finished yet.
+     *
+     * @throws IllegalArgumentException if there's no such phase.
+     */
+    public long getDuration(String phaseName)
+    {
+        return getPhase(phaseName).duration;
+    }
+
+    /**
+     * Returns the phase.
+     *
+     * @param phaseName name.
+     *
+     * @return phase.
+     *
+     * @throws IllegalArgumentException if there's no such phase.
+     */
+    private synchronized Phase getPhase(String phaseName)
+    {
+        Phase phase = phases.get(phaseName);
+        if (phase == null)
+        {
+            throw new IllegalArgumentException(MessageFormat.format(
+                Strings.error("phase.unknown"), phaseName));
+        }
+
+        return phase;
+    }
+
+    /**
+     * Puts the phase in the lane.
+     *
+     * @param phase phase.
+     */
+    private void submit(final Phase phase)
+    {
+        lane.execute(new Runnable()
+        {
+            public void run()
+            {
+                runPhase(phase);
+            }
+        });
+    }
+
+    /**
+     * Runs the phase, records its time and starts the phases which are ready to go.
+     *
+     * @param phase phase.
+     */
+    private void runPhase(Phase phase)
+    {
+        long start = System.currentTimeMillis();
+        try
+        {
+            phase.body.run();
+        } catch (Throwable e)
+        {
+            LOG.log(Level.SEVERE, MessageFormat.format(Strings.error("phase.failed"), phase.name), e);
+        }
+
+        long finish = System.currentTimeMillis();
+        phase.duration = finish - start;
+        Metrics.histogram(getMetricName(phase.name)).record((finish - start) * 1000000L);
+        if (LOG.isLoggable(Level.INFO))
+        {
+            LOG.info(MessageFormat.format(Strings.error("phase.finished"),
+                name, phase.name, phase.duration, finish - started));
+        }
+
+        phase.done.countDown();
+
+        synchronized (this)
+        {
+            for (Phase dependent : phase.dependents)
+            {
+                if (--dependent.pending == 0) submit(dependent);
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the phase histogram.
+     *
+     * @param phaseName name of the phase.
+     *
+     * @return name of the histogram.
+     */
+    private String getMetricName(String phaseName)
+    {
+        return (name + "." + phaseName).toLowerCase().replace(' ', '.');
+    }
+
+    /**
+     * Phase of the graph.
+     */
+    private static final class Phase
+    {
+        private final String name;
+        private final Runnable body;
+        private final CountDownLatch done;
+
+        /** Phases which depend on this one. */
+        private final Set<Phase> dependents;
+        /** Number of unfinished phases this one depends on. */
+        private int pending;
+        /** Time the phase took or <code>-1</code> if not finished. */
+        private volatile long duration;
+
+        /**
+         * Creates phase.
+         *
+         * @param aName name.
+         * @param aBody work.
+         */
+        Phase(String aName, Runnable aBody)
+        {
+            name = aName;
+            body = aBody;
+            done = new CountDownLatch(1);
+            dependents = new LinkedHashSet<Phase>();
+            duration = -1;
+        }
+    }
+}
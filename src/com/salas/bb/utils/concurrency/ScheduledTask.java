@@ -0,0 +1,172 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.concurrency;
+
+import com.salas.bb.utils.i18n.Strings;
+
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Task which can be scheduled for one-time or repeated execution in a {@link Lane}. It's used
+ * much like <code>TimerTask</code>, but the shared timer of the {@link Scheduler} only hands it
+ * over to the lane, so a long run never holds other tasks back.
+ * <p/>
+ * A periodic task is never queued twice. If it's still waiting or running when the next
+ * period comes, that period is skipped.
+ */
+public abstract class ScheduledTask implements Runnable
+{
+    /** Lane this task is scheduled in. */
+    private Lane lane;
+    /** Timer trigger of a delayed or periodic task. */
+    private TimerTask trigger;
+    /** TRUE when cancelled. */
+    private volatile boolean cancelled;
+
+    /** TRUE while the task is waiting in the lane or running. */
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    /**
+     * Cancels the task. If it's waiting in the lane, it won't run. If it's running, the run
+     * is completed, but there won't be any more.
+     *
+     * @return <code>TRUE</code> if the task was scheduled and not cancelled yet.
+     */
+    public boolean cancel()
+    {
+        TimerTask tt;
+        boolean active;
+        synchronized (this)
+        {
+            active = lane != null && !cancelled;
+            cancelled = true;
+            tt = trigger;
+        }
+
+        if (tt != null) tt.cancel();
+
+        return active;
+    }
+
+    /**
+     * Returns <code>TRUE</code> if the task was cancelled.
+     *
+     * @return <code>TRUE</code> if the task was cancelled.
+     */
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * Returns the lane this task is scheduled in.
+     *
+     * @return lane or <code>NULL</code> if not scheduled yet.
+     */
+    public synchronized Lane getLane()
+    {
+        return lane;
+    }
+
+    /**
+     * Returns the task which is actually performed. Used for ordering in priority lanes.
+     *
+     * @return task.
+     */
+    Runnable getTask()
+    {
+        return this;
+    }
+
+    /**
+     * Registers the task in the lane.
+     *
+     * @param aLane     lane.
+     * @param aTrigger  timer trigger or <code>NULL</code> if the task is queued immediately.
+     *
+     * @throws IllegalStateException if the task is already scheduled or cancelled.
+     */
+    synchronized void scheduled(Lane aLane, TimerTask aTrigger)
+    {
+        if (lane != null || cancelled) throw new IllegalStateException(
+            Strings.error("scheduler.task.already.scheduled"));
+
+        lane = aLane;
+        trigger = aTrigger;
+    }
+
+    /**
+     * Marks the task as waiting in the lane.
+     *
+     * @return <code>FALSE</code> if the task is already waiting or running.
+     */
+    boolean markBusy()
+    {
+        return busy.compareAndSet(false, true);
+    }
+
+    /**
+     * Marks the task as no longer waiting or running.
+     */
+    void markIdle()
+    {
+        busy.set(false);
+    }
+
+    /**
+     * Task wrapping some runnable.
+     */
+    static final class RunnableTask extends ScheduledTask
+    {
+        private final Runnable runnable;
+
+        /**
+         * Creates task wrapping some runnable.
+         *
+         * @param aRunnable runnable.
+         */
+        RunnableTask(Runnable aRunnable)
+        {
+            runnable = aRunnable;
+        }
+
+        /** Runs the runnable. */
+        public void run()
+        {
+            runnable.run();
+        }
+
+        /**
+         * Returns the runnable.
+         *
+         * @return task.
+         */
+        Runnable getTask()
+        {
+            return runnable;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.concurrency;
+
+import java.util.*;
+
+/**
+ * Registry of lanes all background work goes through. Each subsystem takes the lane it
+ * needs by name, so the lanes and the threads behind them can be seen and counted in
+ * one place. Delayed and periodic tasks are triggered by the single timer which only
+ * hands them over to their lanes.
+ *
+ * @see Lane
+ * @see ScheduledTask
+ */
+public final class Scheduler
+{
+    /** Lane for short periodic tasks which pass the results to the user interface. */
+    public static final String LANE_INTERFACE = "Interface Tasks";
+    /** Lane for general periodic background jobs. */
+    public static final String LANE_BACKGROUND = "Background Tasks";
+
+    /** Lanes by names in the order of definition. */
+    private static final Map<String, Lane> LANES = new LinkedHashMap<String, Lane>();
+
+    /** Timer triggering delayed and periodic tasks. */
+    private static Timer timer;
+
+    /** Hidden constructor of utility class. */
+    private Scheduler()
+    {
+    }
+
+    /**
+     * Returns the lane with unbounded queue, creating it if necessary.
+     *
+     * @param name      name of the lane and its threads.
+     * @param threads   maximum number of threads.
+     * @param priority  threads priority.
+     *
+     * @return lane.
+     */
+    public static Lane lane(String name, int threads, int priority)
+    {
+        return lane(name, threads, priority, 0, ExecutorFactory.BlockedPolicy.WAIT);
+    }
+
+    /**
+     * Returns the lane, creating it if necessary.
+     *
+     * @param name      name of the lane and its threads.
+     * @param threads   maximum number of threads.
+     * @param priority  threads priority.
+     * @param capacity  maximum number of waiting tasks or <code>0</code> for unbounded queue.
+     * @param policy    what to do with a new task when the queue is full.
+     *
+     * @return lane.
+     */
+    public static Lane lane(String name, int threads, int priority, int capacity,
+                            ExecutorFactory.BlockedPolicy policy)
+    {
+        return lane(name, threads, priority, capacity, policy, null);
+    }
+
+    /**
+     * Returns the lane, creating it if necessary. If the lane is already there, it's returned
+     * as is, whatever parameters are given.
+     *
+     * @param name      name of the lane and its threads.
+     * @param threads   maximum number of threads.
+     * @param priority  threads priority.
+     * @param capacity  maximum number of waiting tasks or <code>0</code> for unbounded queue.
+     * @param policy    what to do with a new task when the queue is full.
+     * @param ordering  order of waiting tasks or <code>NULL</code> for FIFO. Requires capacity.
+     *
+     * @return lane.
+     */
+    public static synchronized Lane lane(String name, int threads, int priority, int capacity,
+                                         ExecutorFactory.BlockedPolicy policy, Comparator ordering)
+    {
+        Lane lane = LANES.get(name);
+        if (lane == null)
+        {
+            lane = new Lane(name, threads, priority, capacity, policy, ordering);
+            LANES.put(name, lane);
+        }
+
+        return lane;
+    }
+
+    /**
+     * Returns the lane for short periodic tasks which pass the results to the user interface.
+     *
+     * @return lane.
+     */
+    public static Lane interfaceLane()
+    {
+        return lane(LANE_INTERFACE, 1, Thread.NORM_PRIORITY + 1);
+    }
+
+    /**
+     * Returns the lane for general periodic background jobs.
+     *
+     * @return lane.
+     */
+    public static Lane backgroundLane()
+    {
+        return lane(LANE_BACKGROUND, 2, Thread.NORM_PRIORITY);
+    }
+
+    /**
+     * Returns all lanes in the order they were defined.
+     *
+     * @return lanes.
+     */
+    public static synchronized List<Lane> getLanes()
+    {
+        return new ArrayList<Lane>(LANES.values());
+    }
+
+    /**
+     * Returns the timer triggering delayed and periodic tasks.
+     *
+     * @return timer.
+     */
+    static synchronized Timer getTimer()
+    {
+        if (timer == null) timer = new Timer("Scheduler", true);
+        return timer;
+    }
+}
@@ -163,8 +163,7 @@ class CTree extends JTree
          */
         private IRule getRule(String el, String[] tags)
         {
-            // NOTE: to further improve the performance (?) we can save the rules we get
-            //       in some cache
+            // The stylesheet caches the resolved rules
             return stylesheet.getRule(el, tags);
         }
     }
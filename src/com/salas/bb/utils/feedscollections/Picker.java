@@ -25,7 +25,7 @@
 package com.salas.bb.utils.feedscollections;
 
 import EDU.oswego.cs.dl.util.concurrent.Executor;
-import com.salas.bb.utils.concurrency.ExecutorFactory;
+import com.salas.bb.utils.concurrency.Scheduler;
 import com.salas.bb.utils.i18n.Strings;
 
 import javax.swing.*;
@@ -48,7 +48,7 @@ public class Picker extends JPanel
     private List collections;
 
     static {
-        execLoader = ExecutorFactory.createPooledExecutor("Collections Loader", 2, 100);
+        execLoader = Scheduler.lane("Collections Loader", 2, Thread.NORM_PRIORITY);
     }
 
     /**
@@ -25,9 +25,10 @@
 package com.salas.bb.utils.ipc;
 
 import java.net.URL;
+import java.util.List;
 
 /**
- * Listener of IPC events.
+ * Listener of IPC events. The methods are called from the IPC connection threads.
  */
 public interface IIPCListener
 {
@@ -37,4 +38,38 @@ public interface IIPCListener
      * @param url URL to subscribe to.
      */
     void subscribe(URL url);
+
+    /**
+     * Starts updating of the feed.
+     *
+     * @param url XML URL of the feed.
+     *
+     * @return <code>TRUE</code> if the feed is known.
+     */
+    boolean update(URL url);
+
+    /**
+     * Marks all articles of the feed as read.
+     *
+     * @param url XML URL of the feed.
+     *
+     * @return <code>TRUE</code> if the feed is known.
+     */
+    boolean markRead(URL url);
+
+    /**
+     * Finds articles matching the text.
+     *
+     * @param text text to search for.
+     *
+     * @return matching articles as the lines with the link and the title separated by tab.
+     */
+    List<String> search(String text);
+
+    /**
+     * Exports all guides.
+     *
+     * @return OPML document or <code>NULL</code> if there's nothing to export.
+     */
+    String export();
 }
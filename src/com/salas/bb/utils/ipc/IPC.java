@@ -27,38 +27,55 @@ package com.salas.bb.utils.ipc;
 import EDU.oswego.cs.dl.util.concurrent.CopyOnWriteArrayList;
 
 import java.io.*;
-import java.nio.channels.FileChannel;
-import java.nio.ByteBuffer;
 import java.util.logging.Logger;
 import java.util.logging.Level;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Iterator;
-import java.net.URL;
+import java.net.InetAddress;
 import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.security.SecureRandom;
 import java.text.MessageFormat;
 
 import com.salas.bb.utils.StringUtils;
 
 /**
- * File-based IPC implementation.
+ * Socket-based IPC implementation. The endpoint listens on the loopback interface and
+ * publishes its port along with a random token in the socket file. Clients read the
+ * file, connect and send batches of commands (see {@link Protocol}), getting a
+ * response to each. The listener thread blocks in <code>accept()</code> and doesn't
+ * wake up while nobody talks to it.
+ * <p/>
+ * The socket file is overwritten, so the endpoint should only be created by the instance
+ * holding the single-instance lock (see {@link com.salas.bb.utils.locker.Locker}).
  */
 public class IPC
 {
     private final static Logger LOG = Logger.getLogger(IPC.class.getName());
 
+    /** Maximum number of pending connections. */
+    private static final int BACKLOG = 10;
+    /** Time in ms an idle connection is kept open. */
+    private static final int CONNECTION_TIMEOUT = 60000;
+
     private final File socketFile;
-    private final FileChannel socketChannel;
+    private final ServerSocket serverSocket;
+    private final String token;
     private final List listeners;
 
     private SocketListener socketListener;
 
     /**
-     * Creates IPC channel for a given socket file. All the data in the file
-     * is removed.
+     * Creates IPC endpoint and publishes it in a given socket file. The previous contents
+     * of the file are replaced.
      *
      * @param socketFile socket file.
      *
-     * @throws java.io.IOException in case when it's not possible to create a file.
+     * @throws java.io.IOException in case when it's not possible to open the socket or
+     *                             to create a file.
      */
     public IPC(File socketFile)
         throws IOException
@@ -67,16 +84,23 @@ public class IPC
 
         this.socketFile = socketFile;
         this.listeners = new CopyOnWriteArrayList();
+        this.token = Long.toHexString(new SecureRandom().nextLong());
 
-        configureSocketFile();
-
-        socketChannel = new FileInputStream(socketFile).getChannel();
+        serverSocket = new ServerSocket(0, BACKLOG, InetAddress.getByName(null));
+        try
+        {
+            configureSocketFile();
+        } catch (IOException e)
+        {
+            serverSocket.close();
+            throw e;
+        }
 
         configureSocketListener();
     }
 
     /**
-     * Initializes socket file.
+     * Writes the port and the token of the endpoint to the socket file.
      *
      * @throws IOException if failed to create the socket file.
      */
@@ -84,7 +108,16 @@ public class IPC
         throws IOException
     {
         socketFile.delete();
-        socketFile.createNewFile();
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(socketFile), "UTF-8");
+        try
+        {
+            writer.write(serverSocket.getLocalPort() + " " + token);
+        } finally
+        {
+            writer.close();
+        }
+
         socketFile.deleteOnExit();
     }
 
@@ -98,31 +131,43 @@ public class IPC
     }
 
     /**
-     * Closes active socket channel which lets the listener thread terminate.
+     * Returns the port the endpoint listens to.
+     *
+     * @return port.
+     */
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Closes the server socket which lets the listener thread terminate and removes
+     * the socket file.
      */
     public void close()
     {
         try
         {
-            if (socketChannel != null && socketChannel.isOpen())
+            if (!serverSocket.isClosed())
             {
-                socketChannel.close();
+                serverSocket.close();
                 socketListener = null;
+                socketFile.delete();
             }
         } catch (IOException e)
         {
-            LOG.log(Level.WARNING, "Failed to close socket channel.", e);
+            LOG.log(Level.WARNING, "Failed to close server socket.", e);
         }
     }
 
     /**
-     * Sends command using the given socket file.
+     * Sends command to the endpoint published in the given socket file.
      *
      * @param socketFile socket file.
      * @param cmd        command.
      * @param args       command arguments.
      *
-     * @return <code>TRUE</code> if sent.
+     * @return <code>TRUE</code> if sent and accepted.
      */
     public static boolean sendCommand(File socketFile, String cmd, String[] args)
     {
@@ -130,15 +175,19 @@ public class IPC
 
         if (socketFile.exists() && !StringUtils.isEmpty(cmd) && args != null)
         {
-            String command = cmd + " " + StringUtils.join(args, " ") + "\n";
             try
             {
-                RandomAccessFile raf = new RandomAccessFile(socketFile, "rws");
-                raf.seek(raf.length());
-                raf.getChannel().write(ByteBuffer.wrap(command.getBytes()));
-                raf.close();
+                IPCClient client = new IPCClient(socketFile);
+                try
+                {
+                    IPCResponse response = client.execute(new IPCCommand(cmd, args)).get(0);
+                    if (!response.isOk()) LOG.warning("IPC command failed: " + response.getData());
 
-                sent = true;
+                    sent = response.isOk();
+                } finally
+                {
+                    client.close();
+                }
             } catch (IOException e)
             {
                 LOG.log(Level.WARNING, "Failed to send IPC command.", e);
@@ -148,6 +197,32 @@ public class IPC
         return sent;
     }
 
+    /**
+     * Reads the port and the token from the socket file.
+     *
+     * @param socketFile socket file.
+     *
+     * @return port and token.
+     *
+     * @throws IOException if the file can't be read or is invalid.
+     */
+    static String[] readEndpoint(File socketFile)
+        throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(socketFile), "UTF-8"));
+        try
+        {
+            String line = reader.readLine();
+            String[] endpoint = line == null ? new String[0] : line.trim().split(" ");
+            if (endpoint.length != 2) throw new IOException("Invalid socket file: " + socketFile);
+
+            return endpoint;
+        } finally
+        {
+            reader.close();
+        }
+    }
+
     /**
      * Adds a listener to the list.
      *
@@ -190,44 +265,139 @@ public class IPC
     }
 
     /**
-     * Invoked when new command string arrives.
+     * Invoked when new command arrives.
      *
      * @param cmd command.
+     *
+     * @return response.
      */
-    private void onCommand(String cmd)
+    IPCResponse onCommand(IPCCommand cmd)
     {
-        // Collapse multi-spaces
-        cmd = cmd.replaceAll("\\s+", " ").trim();
+        if (listeners.isEmpty()) return IPCResponse.error("Application isn't ready");
 
-        // Break the command into pieces
-        String[] chunks = cmd.split(" ");
+        String op = cmd.getOperation();
+        List<String> args = cmd.getArguments();
 
-        if (chunks.length > 0)
+        IPCResponse response;
+        if (IPCCommand.SUBSCRIBE.equals(op) || IPCCommand.UPDATE.equals(op) || IPCCommand.MARK_READ.equals(op))
+        {
+            URL url = args.size() == 1 ? argToURL(args.get(0)) : null;
+            if (args.size() != 1)
+            {
+                response = IPCResponse.error(MessageFormat.format(
+                    "Invalid number of arguments for ''{0}'': {1} expected 1",
+                    new Object[] { op, new Integer(args.size()) }));
+            } else if (url == null)
+            {
+                response = IPCResponse.error("Invalid URL '" + args.get(0) + "' for '" + op + "' command");
+            } else if (IPCCommand.SUBSCRIBE.equals(op))
+            {
+                fireSubscribe(url);
+                response = IPCResponse.ok();
+            } else
+            {
+                response = fireFeedCommand(op, url)
+                    ? IPCResponse.ok() : IPCResponse.error("Unknown feed '" + url + "'");
+            }
+        } else if (IPCCommand.SEARCH.equals(op))
         {
-            String op = chunks[0];
+            String text = StringUtils.join(args.iterator(), " ").trim();
+            response = text.length() == 0
+                ? IPCResponse.error("Search text should be specified")
+                : new IPCResponse(true, fireSearch(text));
+        } else if (IPCCommand.EXPORT.equals(op))
+        {
+            String opml = fireExport();
+            response = opml == null ? IPCResponse.error("Nothing to export") : IPCResponse.ok(opml);
+        } else
+        {
+            response = IPCResponse.error("Unknown command '" + op + "'");
+        }
 
-            if ("subscribe".equalsIgnoreCase(op))
+        if (!response.isOk()) LOG.warning(response.getData().get(0));
+
+        return response;
+    }
+
+    /**
+     * Fires update or mark read command for the feed.
+     *
+     * @param op    operation.
+     * @param url   XML URL of the feed.
+     *
+     * @return <code>TRUE</code> if any listener knows the feed.
+     */
+    private boolean fireFeedCommand(String op, URL url)
+    {
+        boolean known = false;
+
+        Iterator it = listeners.iterator();
+        while (it.hasNext())
+        {
+            IIPCListener l = (IIPCListener)it.next();
+            try
             {
-                if (chunks.length == 2)
-                {
-                    String arg = chunks[1];
-                    
-                    URL url = argToURL(arg);
-                    if (url != null)
-                    {
-                        fireSubscribe(url);
-                    } else
-                    {
-                        LOG.warning("Invalid URL '" + arg + "' for 'subscribe' command");
-                    }
-                } else
-                {
-                    LOG.warning(MessageFormat.format(
-                        "Invalid number of arguments for ''subscribe'': {0} expected 1",
-                        new Object[] { new Integer(chunks.length - 1) }));
-                }
+                known |= IPCCommand.UPDATE.equals(op) ? l.update(url) : l.markRead(url);
+            } catch (Throwable e)
+            {
+                LOG.log(Level.SEVERE, "Unhandled exception", e);
             }
         }
+
+        return known;
+    }
+
+    /**
+     * Fires search and collects the results.
+     *
+     * @param text text to search for.
+     *
+     * @return results of all listeners.
+     */
+    private List<String> fireSearch(String text)
+    {
+        List<String> results = new ArrayList<String>();
+
+        Iterator it = listeners.iterator();
+        while (it.hasNext())
+        {
+            IIPCListener l = (IIPCListener)it.next();
+            try
+            {
+                List<String> found = l.search(text);
+                if (found != null) results.addAll(found);
+            } catch (Throwable e)
+            {
+                LOG.log(Level.SEVERE, "Unhandled exception", e);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Fires export.
+     *
+     * @return the first exported document or <code>NULL</code>.
+     */
+    private String fireExport()
+    {
+        String opml = null;
+
+        Iterator it = listeners.iterator();
+        while (opml == null && it.hasNext())
+        {
+            IIPCListener l = (IIPCListener)it.next();
+            try
+            {
+                opml = l.export();
+            } catch (Throwable e)
+            {
+                LOG.log(Level.SEVERE, "Unhandled exception", e);
+            }
+        }
+
+        return opml;
     }
 
     /**
@@ -265,15 +435,10 @@ public class IPC
     }
 
     /**
-     * Listener of socket commands.
+     * Listener of socket connections.
      */
     private class SocketListener extends Thread
     {
-        /** Time in ms to sleep between socket channel checks. */
-        private static final int SLEEP_TIME = 1000;
-        /** The size of a buffer for commands. */
-        private static final int BUFFER_SIZE = 2048;
-
         /**
          * Initializes socket listener thread.
          */
@@ -285,39 +450,73 @@ public class IPC
 
         public void run()
         {
-            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
-            buffer.clear();
-            int bytes;
-
-            while (socketChannel != null && socketChannel.isOpen())
+            while (!serverSocket.isClosed())
             {
                 try
                 {
-                    bytes = socketChannel.read(buffer);
-//                    socketChannel.truncate(0);
+                    Socket socket = serverSocket.accept();
+                    socket.setSoTimeout(CONNECTION_TIMEOUT);
+                    new Connection(socket).start();
+                } catch (IOException e)
+                {
+                    if (!serverSocket.isClosed()) LOG.log(Level.SEVERE, "Failed to accept IPC connection.", e);
+                }
+            }
+        }
+    }
 
-                    if (bytes != -1)
-                    {
-                        byte[] strb = new byte[bytes];
-                        buffer.position(0);
-                        buffer.get(strb, 0, bytes);
-                        String str = new String(strb);
-                        String[] cmds = str.split("\\n");
+    /**
+     * Connection serving the requests of a single client.
+     */
+    private class Connection extends Thread
+    {
+        private final Socket socket;
+
+        /**
+         * Creates connection thread.
+         *
+         * @param socket client socket.
+         */
+        public Connection(Socket socket)
+        {
+            super("IPC Connection");
+            setDaemon(true);
 
-                        for (int i = 0; i < cmds.length; i++)
-                        {
-                            onCommand(cmds[i]);
-                        }
+            this.socket = socket;
+        }
 
-                        buffer.clear();
-                    } else Thread.sleep(SLEEP_TIME);
+        public void run()
+        {
+            try
+            {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
 
-                } catch (IOException e)
+                Protocol.Request request;
+                while ((request = Protocol.readRequest(in)) != null)
+                {
+                    if (!token.equals(request.token))
+                    {
+                        LOG.warning("IPC request with invalid token was rejected.");
+                        break;
+                    }
+
+                    List<IPCResponse> responses = new ArrayList<IPCResponse>(request.commands.size());
+                    for (IPCCommand command : request.commands) responses.add(onCommand(command));
+
+                    Protocol.writeResponses(out, responses);
+                }
+            } catch (IOException e)
+            {
+                LOG.log(Level.WARNING, "IPC connection failed.", e);
+            } finally
+            {
+                try
                 {
-                    LOG.log(Level.SEVERE, "Failed to work with socket file.", e);
-                } catch (InterruptedException e)
+                    socket.close();
+                } catch (IOException e)
                 {
-                    LOG.warning("Interruption.");
+                    // Nothing to do here
                 }
             }
         }
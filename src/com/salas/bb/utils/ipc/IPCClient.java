@@ -0,0 +1,138 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+
+package com.salas.bb.utils.ipc;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Client of the IPC endpoint of the running application. It finds the endpoint through
+ * the socket file, connects to it and sends batches of commands:
+ * <pre>
+ *   IPCClient client = new IPCClient(socketFile);
+ *   try
+ *   {
+ *       List&lt;IPCResponse&gt; responses = client.execute(
+ *           new IPCCommand(IPCCommand.UPDATE, feedURL),
+ *           new IPCCommand(IPCCommand.SEARCH, "java"));
+ *   } finally
+ *   {
+ *       client.close();
+ *   }
+ * </pre>
+ */
+public class IPCClient
+{
+    /** Time in ms to wait for the response. */
+    private static final int TIMEOUT = 60000;
+
+    private final Socket socket;
+    private final String token;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    /**
+     * Connects to the endpoint described in the socket file.
+     *
+     * @param socketFile socket file.
+     *
+     * @throws IOException if the file is missing or invalid, or the endpoint isn't there.
+     */
+    public IPCClient(File socketFile)
+        throws IOException
+    {
+        String[] endpoint = IPC.readEndpoint(socketFile);
+        int port;
+        try
+        {
+            port = Integer.parseInt(endpoint[0]);
+        } catch (NumberFormatException e)
+        {
+            throw new IOException("Invalid socket file: " + socketFile);
+        }
+
+        token = endpoint[1];
+        socket = new Socket(InetAddress.getByName(null), port);
+        socket.setSoTimeout(TIMEOUT);
+
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Sends the batch of commands and waits for responses.
+     *
+     * @param commands commands.
+     *
+     * @return responses in the order of commands.
+     *
+     * @throws IOException if communication fails.
+     */
+    public List<IPCResponse> execute(IPCCommand ... commands)
+        throws IOException
+    {
+        return execute(Arrays.asList(commands));
+    }
+
+    /**
+     * Sends the batch of commands and waits for responses.
+     *
+     * @param commands commands.
+     *
+     * @return responses in the order of commands.
+     *
+     * @throws IOException if communication fails.
+     */
+    public List<IPCResponse> execute(List<IPCCommand> commands)
+        throws IOException
+    {
+        Protocol.writeRequest(out, token, commands);
+        List<IPCResponse> responses = Protocol.readResponses(in);
+        if (responses.size() != commands.size())
+        {
+            throw new IOException("Expected " + commands.size() + " responses, got " + responses.size());
+        }
+
+        return responses;
+    }
+
+    /**
+     * Closes the connection.
+     */
+    public void close()
+    {
+        try
+        {
+            socket.close();
+        } catch (IOException e)
+        {
+            // Nothing to do here
+        }
+    }
+}
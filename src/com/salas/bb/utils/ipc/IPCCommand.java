@@ -0,0 +1,98 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+
+package com.salas.bb.utils.ipc;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Command sent to the running application. A command has the name of the operation
+ * and the list of arguments.
+ */
+public class IPCCommand
+{
+    /** Subscribes to the URL given as the argument. */
+    public static final String SUBSCRIBE    = "subscribe";
+    /** Updates the feed with the XML URL given as the argument. */
+    public static final String UPDATE       = "update";
+    /** Marks the feed with the XML URL given as the argument as read. */
+    public static final String MARK_READ    = "markread";
+    /** Finds the articles matching the text given in the arguments. */
+    public static final String SEARCH       = "search";
+    /** Exports all guides in OPML. */
+    public static final String EXPORT       = "export";
+
+    private final String operation;
+    private final List<String> arguments;
+
+    /**
+     * Creates a command.
+     *
+     * @param operation operation name.
+     * @param arguments arguments.
+     */
+    public IPCCommand(String operation, String ... arguments)
+    {
+        if (operation == null || operation.trim().length() == 0)
+        {
+            throw new IllegalArgumentException("Operation should be specified.");
+        }
+
+        this.operation = operation.trim().toLowerCase();
+        this.arguments = Collections.unmodifiableList(Arrays.asList(arguments));
+    }
+
+    /**
+     * Returns the name of the operation in lower case.
+     *
+     * @return operation.
+     */
+    public String getOperation()
+    {
+        return operation;
+    }
+
+    /**
+     * Returns the arguments.
+     *
+     * @return arguments.
+     */
+    public List<String> getArguments()
+    {
+        return arguments;
+    }
+
+    /**
+     * Returns the string representation of the command.
+     *
+     * @return string representation.
+     */
+    public String toString()
+    {
+        return operation + " " + arguments;
+    }
+}
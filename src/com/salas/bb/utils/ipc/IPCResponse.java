@@ -0,0 +1,106 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+
+package com.salas.bb.utils.ipc;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Response of the running application to a command. It tells if the command succeeded
+ * and carries the resulting data or the error message.
+ */
+public class IPCResponse
+{
+    private final boolean ok;
+    private final List<String> data;
+
+    /**
+     * Creates a response.
+     *
+     * @param ok    <code>TRUE</code> if the command succeeded.
+     * @param data  resulting data or the error message.
+     */
+    public IPCResponse(boolean ok, List<String> data)
+    {
+        this.ok = ok;
+        this.data = Collections.unmodifiableList(data);
+    }
+
+    /**
+     * Creates a successful response.
+     *
+     * @param data resulting data.
+     *
+     * @return response.
+     */
+    public static IPCResponse ok(String ... data)
+    {
+        return new IPCResponse(true, Arrays.asList(data));
+    }
+
+    /**
+     * Creates an error response.
+     *
+     * @param message error message.
+     *
+     * @return response.
+     */
+    public static IPCResponse error(String message)
+    {
+        return new IPCResponse(false, Collections.singletonList(message));
+    }
+
+    /**
+     * Returns <code>TRUE</code> if the command succeeded.
+     *
+     * @return <code>TRUE</code> if the command succeeded.
+     */
+    public boolean isOk()
+    {
+        return ok;
+    }
+
+    /**
+     * Returns the resulting data or the error message.
+     *
+     * @return data.
+     */
+    public List<String> getData()
+    {
+        return data;
+    }
+
+    /**
+     * Returns the string representation of the response.
+     *
+     * @return string representation.
+     */
+    public String toString()
+    {
+        return (ok ? "OK " : "ERROR ") + data;
+    }
+}
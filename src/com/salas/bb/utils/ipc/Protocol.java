@@ -0,0 +1,324 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+
+package com.salas.bb.utils.ipc;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format of the IPC channel. Every message is a frame -- the length of the payload
+ * followed by the payload. The client sends the request frame with the channel token and
+ * a batch of commands, and the endpoint answers with the frame holding a response to
+ * every command in the same order. A connection can carry any number of such exchanges.
+ * <p/>
+ * Strings are written as the length followed by UTF-8 bytes, so they aren't limited to
+ * 64K like with <code>writeUTF</code>.
+ */
+final class Protocol
+{
+    /** Version of the protocol. */
+    static final int VERSION = 1;
+    /** Maximum size of a frame. */
+    static final int MAX_FRAME_SIZE = 16 << 20;
+
+    /** Hidden utility class constructor. */
+    private Protocol()
+    {
+    }
+
+    /**
+     * Writes the request frame.
+     *
+     * @param out       output stream.
+     * @param token     channel token.
+     * @param commands  commands.
+     *
+     * @throws IOException if writing fails.
+     */
+    static void writeRequest(DataOutputStream out, String token, List<IPCCommand> commands)
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream frame = new DataOutputStream(bytes);
+
+        frame.writeInt(VERSION);
+        writeString(frame, token);
+        frame.writeInt(commands.size());
+        for (IPCCommand command : commands)
+        {
+            writeString(frame, command.getOperation());
+            writeStrings(frame, command.getArguments());
+        }
+
+        writeFrame(out, bytes.toByteArray());
+    }
+
+    /**
+     * Reads the request frame.
+     *
+     * @param in input stream.
+     *
+     * @return request or <code>NULL</code> if the stream ended.
+     *
+     * @throws IOException if reading fails or the frame is invalid.
+     */
+    static Request readRequest(DataInputStream in)
+        throws IOException
+    {
+        byte[] bytes = readFrame(in);
+        if (bytes == null) return null;
+
+        DataInputStream frame = new DataInputStream(new ByteArrayInputStream(bytes));
+        int version = frame.readInt();
+        if (version != VERSION) throw new IOException("Unsupported protocol version: " + version);
+
+        String token = readString(frame);
+        int count = readCount(frame);
+        List<IPCCommand> commands = new ArrayList<IPCCommand>(count);
+        for (int i = 0; i < count; i++)
+        {
+            String operation = readString(frame);
+            if (operation.trim().length() == 0) throw new IOException("Operation isn't specified");
+
+            List<String> arguments = readStrings(frame);
+            commands.add(new IPCCommand(operation, arguments.toArray(new String[arguments.size()])));
+        }
+
+        return new Request(token, commands);
+    }
+
+    /**
+     * Writes the response frame.
+     *
+     * @param out       output stream.
+     * @param responses responses.
+     *
+     * @throws IOException if writing fails.
+     */
+    static void writeResponses(DataOutputStream out, List<IPCResponse> responses)
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream frame = new DataOutputStream(bytes);
+
+        frame.writeInt(responses.size());
+        for (IPCResponse response : responses)
+        {
+            frame.writeBoolean(response.isOk());
+            writeStrings(frame, response.getData());
+        }
+
+        writeFrame(out, bytes.toByteArray());
+    }
+
+    /**
+     * Reads the response frame.
+     *
+     * @param in input stream.
+     *
+     * @return responses.
+     *
+     * @throws IOException if reading fails, the frame is invalid or the stream ended.
+     */
+    static List<IPCResponse> readResponses(DataInputStream in)
+        throws IOException
+    {
+        byte[] bytes = readFrame(in);
+        if (bytes == null) throw new EOFException("Connection closed by the endpoint.");
+
+        DataInputStream frame = new DataInputStream(new ByteArrayInputStream(bytes));
+        int count = readCount(frame);
+        List<IPCResponse> responses = new ArrayList<IPCResponse>(count);
+        for (int i = 0; i < count; i++)
+        {
+            boolean ok = frame.readBoolean();
+            responses.add(new IPCResponse(ok, readStrings(frame)));
+        }
+
+        return responses;
+    }
+
+    // --------------------------------------------------------------------------------------------
+    // Helpers
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Writes the frame.
+     *
+     * @param out   output stream.
+     * @param bytes payload.
+     *
+     * @throws IOException if writing fails or the payload is too large.
+     */
+    private static void writeFrame(DataOutputStream out, byte[] bytes)
+        throws IOException
+    {
+        if (bytes.length > MAX_FRAME_SIZE) throw new IOException("Frame is too large: " + bytes.length);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+    }
+
+    /**
+     * Reads the frame.
+     *
+     * @param in input stream.
+     *
+     * @return payload or <code>NULL</code> if the stream ended before the frame.
+     *
+     * @throws IOException if reading fails or the frame is invalid.
+     */
+    private static byte[] readFrame(DataInputStream in)
+        throws IOException
+    {
+        int length;
+        try
+        {
+            length = in.readInt();
+        } catch (EOFException e)
+        {
+            return null;
+        }
+
+        if (length < 0 || length > MAX_FRAME_SIZE) throw new IOException("Invalid frame size: " + length);
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        return bytes;
+    }
+
+    /**
+     * Reads the number of the following items.
+     *
+     * @param in input stream.
+     *
+     * @return count.
+     *
+     * @throws IOException if reading fails or the count is invalid.
+     */
+    private static int readCount(DataInputStream in)
+        throws IOException
+    {
+        int count = in.readInt();
+        if (count < 0 || count > in.available()) throw new IOException("Invalid count: " + count);
+
+        return count;
+    }
+
+    /**
+     * Writes the list of strings.
+     *
+     * @param out       output stream.
+     * @param strings   strings.
+     *
+     * @throws IOException if writing fails.
+     */
+    private static void writeStrings(DataOutputStream out, List<String> strings)
+        throws IOException
+    {
+        out.writeInt(strings.size());
+        for (String string : strings) writeString(out, string);
+    }
+
+    /**
+     * Reads the list of strings.
+     *
+     * @param in input stream.
+     *
+     * @return strings.
+     *
+     * @throws IOException if reading fails.
+     */
+    private static List<String> readStrings(DataInputStream in)
+        throws IOException
+    {
+        int count = readCount(in);
+        List<String> strings = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) strings.add(readString(in));
+
+        return strings;
+    }
+
+    /**
+     * Writes the string. <code>NULL</code> is written as empty string.
+     *
+     * @param out       output stream.
+     * @param string    string.
+     *
+     * @throws IOException if writing fails.
+     */
+    private static void writeString(DataOutputStream out, String string)
+        throws IOException
+    {
+        byte[] bytes = string == null ? new byte[0] : string.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads the string.
+     *
+     * @param in input stream.
+     *
+     * @return string.
+     *
+     * @throws IOException if reading fails.
+     */
+    private static String readString(DataInputStream in)
+        throws IOException
+    {
+        byte[] bytes = new byte[readCount(in)];
+        in.readFully(bytes);
+
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Request read from the client.
+     */
+    static final class Request
+    {
+        /** Channel token. */
+        final String token;
+        /** Commands. */
+        final List<IPCCommand> commands;
+
+        /**
+         * Creates the request.
+         *
+         * @param token     channel token.
+         * @param commands  commands.
+         */
+        Request(String token, List<IPCCommand> commands)
+        {
+            this.token = token;
+            this.commands = commands;
+        }
+    }
+}
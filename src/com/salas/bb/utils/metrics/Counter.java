@@ -0,0 +1,84 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter of events.
+ */
+public final class Counter
+{
+    private final String name;
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Creates counter.
+     *
+     * @param aName name.
+     */
+    Counter(String aName)
+    {
+        name = aName;
+    }
+
+    /**
+     * Returns the name.
+     *
+     * @return name.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Counts one event.
+     */
+    public void inc()
+    {
+        count.incrementAndGet();
+    }
+
+    /**
+     * Counts several events.
+     *
+     * @param events number of events.
+     */
+    public void add(long events)
+    {
+        count.addAndGet(events);
+    }
+
+    /**
+     * Returns the number of events counted.
+     *
+     * @return number of events.
+     */
+    public long get()
+    {
+        return count.get();
+    }
+}
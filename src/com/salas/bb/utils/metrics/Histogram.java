@@ -0,0 +1,176 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies. Durations are put in buckets by the powers of two of nanoseconds,
+ * so recording is a couple of atomic increments and percentiles are accurate within
+ * a factor of two, which is enough to tell what's slow.
+ */
+public final class Histogram
+{
+    /** Number of buckets. Bucket <code>i</code> holds durations below <code>2^i</code> ns. */
+    private static final int BUCKETS = 64;
+    /** Nanoseconds in millisecond. */
+    private static final double NANOS_IN_MILLI = 1000000.0;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Creates histogram.
+     *
+     * @param aName name.
+     */
+    Histogram(String aName)
+    {
+        name = aName;
+    }
+
+    /**
+     * Returns the name.
+     *
+     * @return name.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the start time of an operation to pass to {@link #stop(long)} when it's over.
+     *
+     * @return start time.
+     */
+    public long start()
+    {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the duration of an operation.
+     *
+     * @param start start time returned by {@link #start()}.
+     */
+    public void stop(long start)
+    {
+        record(System.nanoTime() - start);
+    }
+
+    /**
+     * Records the duration.
+     *
+     * @param nanos duration (ns).
+     */
+    public void record(long nanos)
+    {
+        if (nanos < 0) nanos = 0;
+
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+
+        long current;
+        while ((current = max.get()) < nanos && !max.compareAndSet(current, nanos));
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return count.
+     */
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    /**
+     * Returns the average duration.
+     *
+     * @return duration (ms).
+     */
+    public double getMean()
+    {
+        long cnt = count.get();
+        return cnt == 0 ? 0 : total.get() / NANOS_IN_MILLI / cnt;
+    }
+
+    /**
+     * Returns the longest duration.
+     *
+     * @return duration (ms).
+     */
+    public double getMax()
+    {
+        return max.get() / NANOS_IN_MILLI;
+    }
+
+    /**
+     * Returns the duration which the given share of recorded durations doesn't exceed.
+     *
+     * @param share share (0 - 1).
+     *
+     * @return duration (ms), the upper bound of the bucket.
+     */
+    public double getPercentile(double share)
+    {
+        long cnt = count.get();
+        if (cnt == 0) return 0;
+
+        long rank = (long)Math.ceil(cnt * share);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += buckets.get(i);
+            if (seen >= rank)
+            {
+                return Math.min(Math.pow(2, i), max.get()) / NANOS_IN_MILLI;
+            }
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Returns the summary of the histogram.
+     *
+     * @return summary.
+     */
+    public String toString()
+    {
+        return "count=" + getCount() +
+            " mean=" + Metrics.format(getMean()) +
+            " p50=" + Metrics.format(getPercentile(0.5)) +
+            " p95=" + Metrics.format(getPercentile(0.95)) +
+            " p99=" + Metrics.format(getPercentile(0.99)) +
+            " max=" + Metrics.format(getMax()) + "ms";
+    }
+}
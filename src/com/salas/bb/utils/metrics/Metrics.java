@@ -0,0 +1,240 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.metrics;
+
+import com.salas.bb.utils.concurrency.Lane;
+import com.salas.bb.utils.concurrency.Scheduler;
+import com.salas.bb.utils.i18n.Strings;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registry of runtime metrics: counters, gauges and latency histograms. Hot paths take their
+ * metrics once and then only record into them, which is cheap enough to stay on all the time.
+ * Along with the lanes of the {@link Scheduler}, the metrics can be seen through JMX, in the
+ * diagnostics dialog and in the dump file.
+ */
+public final class Metrics
+{
+    private static final Logger LOG = Logger.getLogger(Metrics.class.getName());
+
+    /** Name of the JMX bean. */
+    public static final String MBEAN_NAME = "com.salas.bb:type=Metrics";
+
+    private static final Map<String, Counter> COUNTERS = new TreeMap<String, Counter>();
+    private static final Map<String, IGauge> GAUGES = new TreeMap<String, IGauge>();
+    private static final Map<String, Histogram> HISTOGRAMS = new TreeMap<String, Histogram>();
+
+    /** Hidden constructor of utility class. */
+    private Metrics()
+    {
+    }
+
+    /**
+     * Returns the counter, creating it if necessary.
+     *
+     * @param name name.
+     *
+     * @return counter.
+     */
+    public static synchronized Counter counter(String name)
+    {
+        Counter counter = COUNTERS.get(name);
+        if (counter == null)
+        {
+            counter = new Counter(name);
+            COUNTERS.put(name, counter);
+        }
+
+        return counter;
+    }
+
+    /**
+     * Returns the histogram, creating it if necessary.
+     *
+     * @param name name.
+     *
+     * @return histogram.
+     */
+    public static synchronized Histogram histogram(String name)
+    {
+        Histogram histogram = HISTOGRAMS.get(name);
+        if (histogram == null)
+        {
+            histogram = new Histogram(name);
+            HISTOGRAMS.put(name, histogram);
+        }
+
+        return histogram;
+    }
+
+    /**
+     * Registers the gauge replacing the one with the same name.
+     *
+     * @param name  name.
+     * @param gauge gauge.
+     */
+    public static synchronized void gauge(String name, IGauge gauge)
+    {
+        GAUGES.put(name, gauge);
+    }
+
+    /**
+     * Returns all metrics and lane statistics as names and values in the order of names.
+     * Histograms and lanes are summarized in one line.
+     *
+     * @return names to values.
+     */
+    public static Map<String, String> getReport()
+    {
+        Map<String, String> report = new LinkedHashMap<String, String>();
+
+        synchronized (Metrics.class)
+        {
+            for (Counter counter : COUNTERS.values())
+            {
+                report.put(counter.getName(), Long.toString(counter.get()));
+            }
+            for (Map.Entry<String, IGauge> entry : GAUGES.entrySet())
+            {
+                report.put(entry.getKey(), Long.toString(entry.getValue().getValue()));
+            }
+            for (Histogram histogram : HISTOGRAMS.values())
+            {
+                report.put(histogram.getName(), histogram.toString());
+            }
+        }
+
+        for (Lane lane : Scheduler.getLanes())
+        {
+            String summary = lane.toString();
+            report.put("lane." + lane.getName(), summary.substring(summary.indexOf(':') + 2));
+        }
+
+        return report;
+    }
+
+    /**
+     * Writes the report to the stream.
+     *
+     * @param out stream.
+     */
+    public static void dump(PrintWriter out)
+    {
+        out.println("# " + new Date());
+        for (Map.Entry<String, String> entry : getReport().entrySet())
+        {
+            out.println(entry.getKey() + " " + entry.getValue());
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the report to the file.
+     *
+     * @param file file.
+     *
+     * @throws IOException if writing failed.
+     */
+    public static void dump(File file)
+        throws IOException
+    {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+        try
+        {
+            dump(out);
+            if (out.checkError()) throw new IOException(file.getAbsolutePath());
+        } finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Registers the metrics bean in the platform JMX server.
+     */
+    public static void registerMBean()
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            if (!server.isRegistered(name)) server.registerMBean(new MetricsMBean(), name);
+        } catch (Exception e)
+        {
+            LOG.log(Level.WARNING, Strings.error("metrics.failed.to.register.mbean"), e);
+        }
+    }
+
+    /**
+     * Returns all counters.
+     *
+     * @return counters.
+     */
+    static synchronized List<Counter> getCounters()
+    {
+        return new ArrayList<Counter>(COUNTERS.values());
+    }
+
+    /**
+     * Returns all gauges by name.
+     *
+     * @return gauges.
+     */
+    static synchronized Map<String, IGauge> getGauges()
+    {
+        return new TreeMap<String, IGauge>(GAUGES);
+    }
+
+    /**
+     * Returns all histograms.
+     *
+     * @return histograms.
+     */
+    static synchronized List<Histogram> getHistograms()
+    {
+        return new ArrayList<Histogram>(HISTOGRAMS.values());
+    }
+
+    /**
+     * Formats the duration.
+     *
+     * @param millis duration (ms).
+     *
+     * @return text.
+     */
+    static String format(double millis)
+    {
+        return new DecimalFormat("0.###", new DecimalFormatSymbols(Locale.US)).format(millis);
+    }
+}
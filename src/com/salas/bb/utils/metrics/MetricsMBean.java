@@ -0,0 +1,203 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.metrics;
+
+import com.salas.bb.utils.concurrency.Lane;
+import com.salas.bb.utils.concurrency.Scheduler;
+
+import javax.management.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * JMX view of the {@link Metrics}. Every counter and gauge is an attribute, and every
+ * histogram and lane is a group of attributes with names made of the metric name and
+ * the property. As the set of metrics grows while the application runs, the bean is
+ * dynamic.
+ */
+class MetricsMBean implements DynamicMBean
+{
+    private static final String OP_DUMP = "dump";
+
+    /**
+     * Returns the value of the attribute.
+     *
+     * @param attribute attribute name.
+     *
+     * @return value.
+     *
+     * @throws AttributeNotFoundException if there's no such attribute.
+     */
+    public Object getAttribute(String attribute)
+        throws AttributeNotFoundException
+    {
+        Object value = getValues().get(attribute);
+        if (value == null) throw new AttributeNotFoundException(attribute);
+
+        return value;
+    }
+
+    /**
+     * Attributes are read-only.
+     *
+     * @param attribute attribute.
+     *
+     * @throws AttributeNotFoundException always.
+     */
+    public void setAttribute(Attribute attribute)
+        throws AttributeNotFoundException
+    {
+        throw new AttributeNotFoundException(attribute.getName());
+    }
+
+    /**
+     * Returns the values of the attributes.
+     *
+     * @param attributes attribute names.
+     *
+     * @return values.
+     */
+    public AttributeList getAttributes(String[] attributes)
+    {
+        Map<String, Object> values = getValues();
+
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes)
+        {
+            Object value = values.get(attribute);
+            if (value != null) list.add(new Attribute(attribute, value));
+        }
+
+        return list;
+    }
+
+    /**
+     * Attributes are read-only.
+     *
+     * @param attributes attributes.
+     *
+     * @return empty list.
+     */
+    public AttributeList setAttributes(AttributeList attributes)
+    {
+        return new AttributeList();
+    }
+
+    /**
+     * Invokes the operation. The only one is dumping the metrics into the file.
+     *
+     * @param actionName    operation name.
+     * @param params        parameters.
+     * @param signature     signature.
+     *
+     * @return path of the file.
+     *
+     * @throws MBeanException       if dumping failed.
+     * @throws ReflectionException  if there's no such operation.
+     */
+    public Object invoke(String actionName, Object[] params, String[] signature)
+        throws MBeanException, ReflectionException
+    {
+        if (!OP_DUMP.equals(actionName) || params == null || params.length != 1)
+        {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        File file = new File((String)params[0]);
+        try
+        {
+            Metrics.dump(file);
+        } catch (IOException e)
+        {
+            throw new MBeanException(e);
+        }
+
+        return file.getAbsolutePath();
+    }
+
+    /**
+     * Returns the description of the current attributes and operations.
+     *
+     * @return info.
+     */
+    public MBeanInfo getMBeanInfo()
+    {
+        List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+        for (Map.Entry<String, Object> entry : getValues().entrySet())
+        {
+            attributes.add(new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+                entry.getKey(), true, false, false));
+        }
+
+        MBeanOperationInfo dump = new MBeanOperationInfo(OP_DUMP, "Dumps the metrics into the file",
+            new MBeanParameterInfo[] { new MBeanParameterInfo("file", String.class.getName(), "File path") },
+            String.class.getName(), MBeanOperationInfo.ACTION);
+
+        return new MBeanInfo(getClass().getName(), "BlogBridge runtime metrics",
+            attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null,
+            new MBeanOperationInfo[] { dump }, null);
+    }
+
+    /**
+     * Collects the values of all attributes.
+     *
+     * @return attribute names to values.
+     */
+    static Map<String, Object> getValues()
+    {
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+
+        for (Counter counter : Metrics.getCounters()) values.put(counter.getName(), counter.get());
+        for (Map.Entry<String, IGauge> entry : Metrics.getGauges().entrySet())
+        {
+            values.put(entry.getKey(), entry.getValue().getValue());
+        }
+        for (Histogram histogram : Metrics.getHistograms())
+        {
+            String name = histogram.getName();
+            values.put(name + ".count", histogram.getCount());
+            values.put(name + ".mean", histogram.getMean());
+            values.put(name + ".p95", histogram.getPercentile(0.95));
+            values.put(name + ".max", histogram.getMax());
+        }
+        for (Lane lane : Scheduler.getLanes())
+        {
+            String name = "lane." + lane.getName();
+            values.put(name + ".threads", lane.getPoolSize());
+            values.put(name + ".queued", lane.getQueueDepth());
+            values.put(name + ".running", lane.getRunningCount());
+            values.put(name + ".completed", lane.getCompletedCount());
+            values.put(name + ".failed", lane.getFailedCount());
+            values.put(name + ".rejected", lane.getRejectedCount());
+            values.put(name + ".wait.mean", lane.getAverageWaitTime());
+            values.put(name + ".wait.max", lane.getMaxWaitTime());
+            values.put(name + ".run.mean", lane.getAverageRunTime());
+            values.put(name + ".run.max", lane.getMaxRunTime());
+        }
+
+        return values;
+    }
+}
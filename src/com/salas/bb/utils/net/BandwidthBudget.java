@@ -0,0 +1,140 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+
+package com.salas.bb.utils.net;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Bandwidth budget shared by several <code>BandwidthInputStream</code>'s. While each stream
+ * limits its own bandwidth, the budget limits the total bandwidth used by all streams
+ * using it. It works in the same synchronization periods as the streams do: when the
+ * bytes allowed for the current period are taken, readers wait for the next period.
+ */
+public class BandwidthBudget
+{
+    // Number of milliseconds in the synchronization period.
+    private static final long SYNC_PERIOD_MS = 75;
+
+    // Bytes per second (0 unlimited)
+    private long bandwidth;
+
+    // Number of bytes allowed per synchronization period.
+    private long bytesAllowed;
+
+    // Number of bytes taken in the current period.
+    private long bytesTaken;
+
+    // Timestamp of the current period start.
+    private long periodStart;
+
+    /**
+     * Creates a budget.
+     *
+     * @param bandwidth bandwidth in bytes/sec (or &lt;=0 for unlimited).
+     */
+    public BandwidthBudget(long bandwidth)
+    {
+        setBandwidth(bandwidth);
+    }
+
+    /**
+     * Sets the total bandwidth.
+     *
+     * @param bandwidth bandwidth in bytes/sec (or &lt;=0 for unlimited).
+     */
+    public synchronized void setBandwidth(long bandwidth)
+    {
+        this.bandwidth = Math.max(0, bandwidth);
+        bytesAllowed = Math.max(1, this.bandwidth * SYNC_PERIOD_MS / 1000);
+        notifyAll();
+    }
+
+    /**
+     * Returns the total bandwidth.
+     *
+     * @return bandwidth or 0 for unlimited.
+     */
+    public synchronized long getBandwidth()
+    {
+        return bandwidth;
+    }
+
+    /**
+     * Takes up to the given number of bytes from the budget, waiting for the next
+     * synchronization period if everything is taken in this one.
+     *
+     * @param wanted number of bytes a reader wants to read.
+     *
+     * @return number of bytes the reader is allowed to read (at least one if wanted).
+     *
+     * @throws InterruptedIOException if the reader is interrupted while waiting.
+     */
+    public synchronized int acquire(int wanted)
+        throws InterruptedIOException
+    {
+        if (wanted <= 0) return wanted;
+
+        while (bandwidth > 0)
+        {
+            long now = System.currentTimeMillis();
+            if (now - periodStart >= SYNC_PERIOD_MS)
+            {
+                periodStart = now;
+                bytesTaken = 0;
+            }
+
+            long left = bytesAllowed - bytesTaken;
+            if (left > 0)
+            {
+                int granted = (int)Math.min(wanted, left);
+                bytesTaken += granted;
+                return granted;
+            }
+
+            try
+            {
+                wait(Math.max(1, SYNC_PERIOD_MS - (now - periodStart)));
+            } catch (InterruptedException e)
+            {
+                // Someone interrupts us -- keep the flag for the caller and give up reading
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+
+        return wanted;
+    }
+
+    /**
+     * Returns the bytes which were acquired, but not read, back to the budget.
+     *
+     * @param unused number of bytes.
+     */
+    public synchronized void refund(int unused)
+    {
+        if (unused > 0 && bytesTaken > 0) bytesTaken = Math.max(0, bytesTaken - unused);
+    }
+}
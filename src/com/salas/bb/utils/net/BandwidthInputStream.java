@@ -54,6 +54,9 @@ public class BandwidthInputStream extends FilterInputStream
     // Number of bytes read in current synchronization block.
     private int     bytesRead;
 
+    // Budget shared with other streams (can be null).
+    private BandwidthBudget budget;
+
     /**
      * Creates input stream non-limiting bandwidth. Limitation can be set later.
      *
@@ -99,6 +102,17 @@ public class BandwidthInputStream extends FilterInputStream
         }
     }
 
+    /**
+     * Sets the budget this stream shares with others. The stream never reads faster than
+     * its own bandwidth and the budget allow.
+     *
+     * @param budget budget or <code>NULL</code> to read independently.
+     */
+    public void setBudget(BandwidthBudget budget)
+    {
+        this.budget = budget;
+    }
+
     /**
      * Returns currently selected bandwidth.
      *
@@ -120,8 +134,11 @@ public class BandwidthInputStream extends FilterInputStream
     {
         blockIfNecessary();
 
+        BandwidthBudget bb = budget;
+        if (bb != null) bb.acquire(1);
+
         int ch = super.read();
-        if (ch != -1) bytesRead++;
+        if (ch != -1) bytesRead++; else if (bb != null) bb.refund(1);
 
         return ch;
     }
@@ -143,8 +160,12 @@ public class BandwidthInputStream extends FilterInputStream
 
         len = Math.min(len, (int)(bytesAllowed - bytesRead));
 
+        BandwidthBudget bb = budget;
+        if (bb != null) len = bb.acquire(len);
+
         int read = super.read(b, off, len);
         if (read > 0) bytesRead += read;
+        if (bb != null) bb.refund(len - Math.max(read, 0));
 
         return read;
     }
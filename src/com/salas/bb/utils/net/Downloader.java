@@ -26,6 +26,7 @@ package com.salas.bb.utils.net;
 
 import com.jgoodies.uif.application.Application;
 import com.salas.bb.networking.manager.NetManager;
+import com.salas.bb.utils.concurrency.Scheduler;
 import com.salas.bb.utils.i18n.Strings;
 
 import javax.swing.*;
@@ -141,7 +142,7 @@ public class Downloader
         URLInputStream is;
         try
         {
-            is = new URLInputStream(aLocation, (int)position, 0);
+            is = new URLInputStream(aLocation, position, 0);
             NetManager.register(NetManager.TYPE_DOWNLOADS, aLocation.toString(), null, is);
             if (listener != null) is.addListener(listener);
 
@@ -254,7 +255,7 @@ public class Downloader
             lastSaveDir = directory;
 
             final Downloader downloader = new Downloader(null);
-            Thread thread = new Thread(THREAD_NAME)
+            Scheduler.lane(THREAD_NAME, 2, Thread.NORM_PRIORITY).execute(new Runnable()
             {
                 public void run()
                 {
@@ -281,9 +282,7 @@ public class Downloader
                             JOptionPane.ERROR_MESSAGE);
                     }
                 }
-            };
-
-            thread.start();
+            });
         }
     }
 }
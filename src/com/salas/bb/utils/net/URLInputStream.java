@@ -137,8 +137,11 @@ public class URLInputStream extends InputStream
     // Number of bytes which could be read per second (-1 means unlimited).
     private int                 bandwidth;
 
+    // Bandwidth budget shared with other streams (can be null).
+    private BandwidthBudget     bandwidthBudget;
+
     // Bytes read
-    private int                 read;
+    private long                read;
 
     // Length of the content
     private int                 contentLength;
@@ -221,7 +224,7 @@ public class URLInputStream extends InputStream
      * @param aResumeFrom       position to resume from.
      * @param aLastFetchingTime when this URL was fetched for the last time (-1 if never).
      */
-    public URLInputStream(URL aSourceUrl, int aResumeFrom, long aLastFetchingTime)
+    public URLInputStream(URL aSourceUrl, long aResumeFrom, long aLastFetchingTime)
     {
         if (aSourceUrl == null) throw new NullPointerException(Strings.error("unspecified.url"));
 
@@ -330,6 +333,17 @@ public class URLInputStream extends InputStream
         if (bis != null) bis.setBandwidth(aBandwidth);
     }
 
+    /**
+     * Sets the bandwidth budget this stream shares with other streams.
+     *
+     * @param aBudget budget or <code>NULL</code> for no shared limit.
+     */
+    public void setBandwidthBudget(BandwidthBudget aBudget)
+    {
+        bandwidthBudget = aBudget;
+        if (bis != null) bis.setBudget(aBudget);
+    }
+
     /**
      * Increments number of read bytes.
      *
@@ -680,6 +694,7 @@ public class URLInputStream extends InputStream
         {
             bis = new BandwidthInputStream(makeConnection(read));
             bis.setBandwidth(bandwidth);
+            bis.setBudget(bandwidthBudget);
         } catch (IOException e)
         {
             failure = new IRetriesPolicy.Failure(attempt, start,
@@ -27,8 +27,10 @@ package com.salas.bb.utils.parser;
 import com.salas.bb.utils.i18n.Strings;
 
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Item of the channel taken from feed. Each item has several optional fields
@@ -45,6 +47,7 @@ public class Item
     private Date    publicationDate;
     private URL     link;
     private String  uri;
+    private List<String> enclosures;
 
     /**
      * Creates channel item.
@@ -190,6 +193,27 @@ public class Item
         this.uri = uri;
     }
 
+    /**
+     * Adds an enclosure location.
+     *
+     * @param location enclosure URL (can be relative to the item link).
+     */
+    public void addEnclosure(String location)
+    {
+        if (enclosures == null) enclosures = new ArrayList<String>();
+        enclosures.add(location);
+    }
+
+    /**
+     * Returns the locations of enclosures in order of appearance.
+     *
+     * @return enclosure URLs.
+     */
+    public String[] getEnclosures()
+    {
+        return enclosures == null ? new String[0] : enclosures.toArray(new String[enclosures.size()]);
+    }
+
     /**
      * Compares two items by dates.
      */
@@ -28,6 +28,8 @@ import com.salas.bb.networking.manager.NetManager;
 import com.salas.bb.utils.Constants;
 import com.salas.bb.utils.StringUtils;
 import com.salas.bb.utils.i18n.Strings;
+import com.salas.bb.utils.metrics.Histogram;
+import com.salas.bb.utils.metrics.Metrics;
 import com.salas.bb.utils.net.IPermanentRedirectionListener;
 import com.salas.bb.utils.net.URLInputStream;
 import com.salas.bb.utils.parser.impl.BBSyndFeedInput;
@@ -61,6 +63,9 @@ public class RomeFeedParser implements IFeedParser
     private static final String TYPE_HTML = "html";
     private static final String TYPE_TEXT_HTML = "text/html";
 
+    /** Time of parsing a feed. */
+    private static final Histogram PARSE_TIME = Metrics.histogram("parser.parse.time");
+
     static
     {
         CONTENT_TYPE_PREFERENCE = Arrays.asList(TYPE_TEXT_HTML, TYPE_HTML, "text/plain", "text", "text/xhtml", "xhtml");
@@ -161,6 +166,7 @@ public class RomeFeedParser implements IFeedParser
     protected FeedParserResult parse(InputStream aStream, FeedParserResult aResult, URL aFeedURL)
         throws IOException, FeedParserException
     {
+        long start = PARSE_TIME.start();
         try
         {
             SyndFeedInput input = new BBSyndFeedInput();
@@ -177,6 +183,9 @@ public class RomeFeedParser implements IFeedParser
         } catch (FeedException e)
         {
             throw new FeedParserException(Strings.error("failed.to.parse.the.feed"), e);
+        } finally
+        {
+            PARSE_TIME.stop(start);
         }
 
         return aResult;
@@ -289,6 +298,7 @@ public class RomeFeedParser implements IFeedParser
         if (title != null && title.equals("<No Title>")) title = null;
 
         // Append enclosure to the end of the article
+        List<String> locations = new ArrayList<String>();
         List enclosures = anEntry.getEnclosures();
         if (enclosures != null && enclosures.size() > 0)
         {
@@ -300,6 +310,7 @@ public class RomeFeedParser implements IFeedParser
                 {
                     long length = enclosure.getLength();
                     text += formatEnclosure(location, length);
+                    locations.add(location);
                 }
             }
         } else
@@ -323,12 +334,14 @@ public class RomeFeedParser implements IFeedParser
                     StringUtils.isNotEmpty(location))
                 {
                     text += formatEnclosure(location, length);
+                    locations.add(location);
                 }
             }
         }
 
         Item item = new Item(text);
         item.setAuthor(anEntry.getAuthor());
+        for (String location : locations) item.addEnclosure(location);
 
         URL itemLink;
         try
@@ -23,14 +23,14 @@
 //
 package com.salas.bb.utils.poller;
 
-import EDU.oswego.cs.dl.util.concurrent.BoundedPriorityQueue;
-import EDU.oswego.cs.dl.util.concurrent.Executor;
 import com.salas.bb.core.GlobalController;
 import com.salas.bb.core.GlobalModel;
 import com.salas.bb.domain.*;
 import com.salas.bb.utils.ConnectionState;
 import com.salas.bb.utils.concurrency.ExecutorFactory;
-import com.salas.bb.utils.concurrency.NamingThreadFactory;
+import com.salas.bb.utils.concurrency.Lane;
+import com.salas.bb.utils.concurrency.ScheduledTask;
+import com.salas.bb.utils.concurrency.Scheduler;
 import com.salas.bb.utils.concurrency.SimpleLock;
 import com.salas.bb.utils.i18n.Strings;
 import com.salas.bb.utils.net.auth.AuthCancelException;
@@ -90,13 +90,14 @@ public final class Poller implements Runnable
 {
     private static final Logger LOG = Logger.getLogger(Poller.class.getName());
 
-    /** Maximum time to live for worker thread in a pool (ms). */
-    private static final int THREAD_KEEP_ALIVE_TIME = 15000;
-
     /** Number of worker threads. */
     private static final int WORKERS = 5;
     /** Polling queue size. */
     private static final int QUEUE_SIZE = 5000;
+    /** Number of new feeds let in the polling per ramp-up step. */
+    private static final int RAMP_UP_FEEDS = 10;
+    /** Period of ramp-up steps (ms). */
+    private static final long RAMP_UP_PERIOD = 2000;
 
     /** Guides set which is under scan. */
     private GuidesSet guidesSet;
@@ -108,7 +109,12 @@ public final class Poller implements Runnable
     private final SimpleLock feedUpdateLock;
 
     /** Polling tasks executor. */
-    private final Executor   executor;
+    private final Lane       executor;
+
+    /** New feeds waiting for the ramp-up step to let them in. Guarded by itself. */
+    private final Map<DataFeed, Boolean> rampUpFeeds = new LinkedHashMap<DataFeed, Boolean>();
+    /** Task running ramp-up steps while there are feeds waiting. Guarded by rampUpFeeds. */
+    private ScheduledTask rampUpTask;
 
     /** Connection state interface. */
     private final ConnectionState connectionState;
@@ -148,11 +154,8 @@ public final class Poller implements Runnable
         if (LOG.isLoggable(Level.CONFIG)) LOG.config("Number of worker threads: " + threads);
 
         // Create a pool of executors with minimum thread priority
-        executor = ExecutorFactory.createPooledExecutor(
-            new NamingThreadFactory("Poller", Thread.MIN_PRIORITY),
-            threads, THREAD_KEEP_ALIVE_TIME,
-            new BoundedPriorityQueue(QUEUE_SIZE, new PollerTaskPrioritizer()),
-            ExecutorFactory.BlockedPolicy.DISCARD);
+        executor = Scheduler.lane("Poller", threads, Thread.MIN_PRIORITY, QUEUE_SIZE,
+            ExecutorFactory.BlockedPolicy.DISCARD, new PollerTaskPrioritizer());
 
         // Note: The policy is "Discard" a requst if the queue is full
         // (will be retried in 10 seconds)
@@ -250,6 +253,94 @@ public final class Poller implements Runnable
         }
     }
 
+    /**
+     * Orders to update the newly added guides. Unlike {@link #update(IGuide)}, which puts
+     * all feeds in the polling queue at once, the feeds are let in at a controlled rate
+     * by small portions, so that the import of thousands of feeds doesn't flood the network
+     * and the database. Until its turn comes, the feed is skipped by regular scans.
+     * Reading lists are updated at once if manual updates of them are allowed.
+     *
+     * @param guides new guides.
+     */
+    public void rampUp(IGuide[] guides)
+    {
+        synchronized (rampUpFeeds)
+        {
+            for (IGuide guide : guides)
+            {
+                for (IFeed feed : guide.getFeeds())
+                {
+                    if (feed instanceof DataFeed) rampUpFeeds.put((DataFeed)feed, Boolean.TRUE);
+                }
+            }
+
+            if (rampUpTask == null && !rampUpFeeds.isEmpty())
+            {
+                rampUpTask = new RampUpTask();
+                executor.scheduleAtFixedRate(rampUpTask, 0, RAMP_UP_PERIOD);
+            }
+        }
+
+        if (updateReadingListsManually)
+        {
+            for (IGuide guide : guides)
+            {
+                if (!(guide instanceof StandardGuide)) continue;
+
+                ReadingList[] readingLists = ((StandardGuide)guide).getReadingLists();
+                for (ReadingList list : readingLists) update(list, true);
+            }
+        }
+    }
+
+    /**
+     * Lets the next portion of the new feeds in the polling.
+     *
+     * @return number of feeds still waiting.
+     */
+    int rampUpStep()
+    {
+        List<DataFeed> feeds = new ArrayList<DataFeed>(RAMP_UP_FEEDS);
+        int waiting;
+
+        synchronized (rampUpFeeds)
+        {
+            Iterator<DataFeed> it = rampUpFeeds.keySet().iterator();
+            while (feeds.size() < RAMP_UP_FEEDS && it.hasNext())
+            {
+                feeds.add(it.next());
+                it.remove();
+            }
+
+            waiting = rampUpFeeds.size();
+            if (waiting == 0 && rampUpTask != null)
+            {
+                rampUpTask.cancel();
+                rampUpTask = null;
+            }
+        }
+
+        // When manual updates are off, the feeds are updated as the schedule says
+        for (DataFeed feed : feeds) update(feed, updateFeedsManually);
+
+        return waiting;
+    }
+
+    /**
+     * Returns <code>TRUE</code> if the feed waits for its ramp-up step.
+     *
+     * @param feed feed.
+     *
+     * @return <code>TRUE</code> if the feed waits for its ramp-up step.
+     */
+    boolean isRampingUp(DataFeed feed)
+    {
+        synchronized (rampUpFeeds)
+        {
+            return rampUpFeeds.containsKey(feed);
+        }
+    }
+
     /**
      * Orders to perform update of the selected feed.
      *
@@ -277,6 +368,9 @@ public final class Poller implements Runnable
         if (noFeedPolling) return;
         if (feed == null) throw new NullPointerException(Strings.error("unspecified.feed"));
 
+        // New feeds wait for their turn unless the user asks for them
+        if (!manual && isRampingUp(feed)) return;
+
         feedUpdateLock.lock();
         try
         {
@@ -313,20 +407,13 @@ public final class Poller implements Runnable
     }
 
     /**
-     * Schedule or execute task immediately.
+     * Schedules the task. The lane never blocks the caller.
      *
      * @param aPollerTask task.
      */
     private void scheduleTask(Runnable aPollerTask)
     {
-        try
-        {
-            executor.execute(aPollerTask);
-        } catch (InterruptedException e)
-        {
-            LOG.severe(Strings.error("interrupted"));
-            aPollerTask.run();
-        }
+        executor.execute(aPollerTask);
     }
 
     /**
@@ -343,6 +430,18 @@ public final class Poller implements Runnable
         }
     }
 
+    /**
+     * Lets the new feeds in the polling portion by portion.
+     */
+    private class RampUpTask extends ScheduledTask
+    {
+        /** Invoked when it's time to let the next portion in. */
+        public void run()
+        {
+            rampUpStep();
+        }
+    }
+
     /**
      * Listens for connection to go online.
      */
@@ -28,6 +28,9 @@ import com.salas.bb.domain.DataFeed;
 import com.salas.bb.views.ActivityTicket;
 import com.salas.bb.views.ActivityIndicatorView;
 import com.salas.bb.utils.i18n.Strings;
+import com.salas.bb.utils.metrics.Counter;
+import com.salas.bb.utils.metrics.Histogram;
+import com.salas.bb.utils.metrics.Metrics;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -39,6 +42,11 @@ public final class PollerTask implements Runnable
 {
     private static final Logger LOG = Logger.getLogger(PollerTask.class.getName());
 
+    /** Time of polling a feed. */
+    private static final Histogram POLL_TIME = Metrics.histogram("poller.poll.time");
+    /** Number of failed polls. */
+    private static final Counter POLL_ERRORS = Metrics.counter("poller.poll.errors");
+
     /**
      * Feed which should be updated.
      */
@@ -69,10 +77,25 @@ public final class PollerTask implements Runnable
             if (feed.getID() != -1)
             {
                 activityTicket = startPolling(feed);
-                feed.update();
+
+                // Failed polls count too
+                long start = POLL_TIME.start();
+                try
+                {
+                    feed.update();
+                } finally
+                {
+                    POLL_TIME.stop(start);
+                }
+
+                if (LOG.isLoggable(Level.FINE))
+                {
+                    LOG.fine("Updated in " + (System.nanoTime() - start) / 1000000 + "ms: " + feed);
+                }
             }
         } catch (Exception e)
         {
+            POLL_ERRORS.inc();
             LOG.log(Level.SEVERE, Strings.error("unhandled.exception"), e);
         } finally
         {
@@ -24,14 +24,13 @@
 
 package com.salas.bb.utils.swingworker;
 
-import sun.awt.AppContext;
+import com.salas.bb.utils.concurrency.Lane;
+import com.salas.bb.utils.concurrency.Scheduler;
 
 import javax.swing.*;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.util.concurrent.*;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * An abstract class to perform lengthy GUI-interacting tasks in a dedicated thread.
@@ -666,135 +665,13 @@ public abstract class SwingWorker<T, V> implements RunnableFuture<T>
     /**
      * returns workersExecutorService.
      * <p/>
-     * returns the service stored in the appContext or creates it if necessary. If the last one it triggers autoShutdown
-     * thread to get started.
+     * returns the lane of the scheduler all {@code SwingWorkers} run in.
      *
-     * @return ExecutorService for the {@code SwingWorkers}
+     * @return Lane for the {@code SwingWorkers}
      */
-    private static synchronized ExecutorService getWorkersExecutorService()
+    private static Lane getWorkersExecutorService()
     {
-        final AppContext appContext = AppContext.getAppContext();
-        Object obj = appContext.get(SwingWorker.class);
-        if (obj == null)
-        {
-            //this creates non-daemon threads.
-            ThreadFactory threadFactory =
-                    new ThreadFactory()
-                    {
-                        final ThreadFactory defaultFactory =
-                                Executors.defaultThreadFactory();
-
-                        public Thread newThread(final Runnable r)
-                        {
-                            Thread thread =
-                                    defaultFactory.newThread(r);
-                            thread.setName("SwingWorker-"
-                                    + thread.getName());
-                            return thread;
-                        }
-                    };
-
-            /*
-             * We want a to have no more than MAX_WORKER_THREADS
-             * running threads.
-             *
-             * We want a worker thread to wait no longer than 1 second
-             * for new tasks before terminating.
-             */
-            obj = new ThreadPoolExecutor(0, MAX_WORKER_THREADS,
-                    1L, TimeUnit.SECONDS,
-                    new LinkedBlockingQueue<Runnable>(),
-                    threadFactory)
-            {
-
-                private final ReentrantLock pauseLock = new ReentrantLock();
-                private final Condition unpaused = pauseLock.newCondition();
-                private boolean isPaused;
-                private final ReentrantLock executeLock = new ReentrantLock();
-
-                @Override
-                public void execute(Runnable command)
-                {
-                    /*
-                    * ThreadPoolExecutor first tries to run task
-                    * in a corePool. If all threads are busy it
-                    * tries to add task to the waiting queue. If it
-                    * fails it run task in maximumPool.
-                    *
-                    * We want corePool to be 0 and
-                    * maximumPool to be MAX_WORKER_THREADS
-                    * We need to change the order of the execution.
-                    * First try corePool then try maximumPool
-                    * pool and only then store to the waiting
-                    * queue. We can not do that because we would
-                    * need access to the private methods.
-                    *
-                    * Instead we enlarge corePool to
-                    * MAX_WORKER_THREADS before the execution and
-                    * shrink it back to 0 after.
-                    * It does pretty much what we need.
-                    *
-                    * While we changing the corePoolSize we need
-                    * to stop running worker threads from accepting new
-                    * tasks.
-                    */
-
-                    //we need atomicity for the execute method.
-                    executeLock.lock();
-                    try
-                    {
-
-                        pauseLock.lock();
-                        try
-                        {
-                            isPaused = true;
-                        } finally
-                        {
-                            pauseLock.unlock();
-                        }
-
-                        setCorePoolSize(MAX_WORKER_THREADS);
-                        super.execute(command);
-                        setCorePoolSize(0);
-
-                        pauseLock.lock();
-                        try
-                        {
-                            isPaused = false;
-                            unpaused.signalAll();
-                        } finally
-                        {
-                            pauseLock.unlock();
-                        }
-                    } finally
-                    {
-                        executeLock.unlock();
-                    }
-                }
-
-                @Override
-                protected void afterExecute(Runnable r, Throwable t)
-                {
-                    super.afterExecute(r, t);
-                    pauseLock.lock();
-                    try
-                    {
-                        while (isPaused)
-                        {
-                            unpaused.await();
-                        }
-                    } catch (InterruptedException ignore)
-                    {
-
-                    } finally
-                    {
-                        pauseLock.unlock();
-                    }
-                }
-            };
-            appContext.put(SwingWorker.class, obj);
-        }
-        return (ExecutorService)obj;
+        return Scheduler.lane("SwingWorker", MAX_WORKER_THREADS, Thread.NORM_PRIORITY);
     }
 }
 
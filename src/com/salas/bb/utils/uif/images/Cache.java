@@ -24,26 +24,89 @@
 
 package com.salas.bb.utils.uif.images;
 
+import com.salas.bb.utils.metrics.Counter;
+import com.salas.bb.utils.metrics.IGauge;
+import com.salas.bb.utils.metrics.Metrics;
+
 import java.awt.*;
-import java.io.File;
+import java.io.*;
 import java.net.URL;
-import java.util.Arrays;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Cache of images. The cache is disk-based, but it also has memory map of images which are
- * currently loaded by someone. The cache uses separate thread for flushing of images to disk.
- * The maximum disk usage amount can be specified and the writer thread will check if current
- * saved data is not exceeding the limit after writing the next image. If the limits are exceeded
- * it will remove several last-used images to get back into the limits.
+ * Cache of images. The cache is disk-based. Every image is stored in a file named after the
+ * SHA-1 digest of its URL in one of 256 subdirectories (selected by the first two digits of
+ * the digest), so that no directory grows too large and different URL's never share a file.
+ *
+ * <p>The cache keeps an in-memory index of all entries in the order of access along with
+ * their sizes. The index is used to answer lookups without touching the disk and to evict
+ * least recently used entries when the size limit is exceeded. The index is persisted in a
+ * small append-only journal in the cache folder which is compacted when it grows too large.
+ * If the journal is missing, the index is rebuilt by scanning the folder once.</p>
  */
 public class Cache
 {
     private static final Logger LOG = Logger.getLogger(Cache.class.getName());
 
-    private File cacheFolder;
-    private long sizeLimit;
+    /** Name of the index journal file. */
+    static final String JOURNAL = "journal";
+
+    /** Journal record: entry was put. */
+    private static final char REC_PUT = 'P';
+    /** Journal record: entry was read. */
+    private static final char REC_READ = 'R';
+    /** Journal record: entry was deleted. */
+    private static final char REC_DELETE = 'D';
+
+    /** Minimum number of records in journal before compaction is considered. */
+    private static final int MIN_COMPACT_RECORDS = 2000;
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /** Number of lookups which found an entry. */
+    private static final Counter HITS = Metrics.counter("image.cache.hits");
+    /** Number of lookups which found nothing. */
+    private static final Counter MISSES = Metrics.counter("image.cache.misses");
+
+    static
+    {
+        Metrics.gauge("image.cache.hit.rate", new IGauge()
+        {
+            public long getValue()
+            {
+                long hits = HITS.get();
+                long total = hits + MISSES.get();
+                return total == 0 ? 0 : hits * 100 / total;
+            }
+        });
+    }
+
+    private final File cacheFolder;
+    private final long sizeLimit;
+
+    /** Key to entry size in the order of access (least recently used first). */
+    private final LinkedHashMap<String, Long> index;
+    /** Total size of all entries in the index. */
+    private long size;
+
+    /** Journal writer. */
+    private Writer journal;
+    /** Number of records in the journal. */
+    private int journalRecords;
+    /** Keys read since the last journal write. Written in one go with the next record. */
+    private final Set<String> pendingReads;
 
     /**
      * Creates cache.
@@ -55,7 +118,18 @@ public class Cache
     {
         cacheFolder = aCacheFolder;
         sizeLimit = aSizeLimit;
+        index = new LinkedHashMap<String, Long>(256, 0.75f, true);
+        pendingReads = new LinkedHashSet<String>();
+
         if (!cacheFolder.exists()) cacheFolder.mkdir();
+
+        synchronized (this)
+        {
+            File journalFile = new File(cacheFolder, JOURNAL);
+            if (journalFile.exists()) readJournal(journalFile); else rebuildIndex();
+            compactJournal();
+            evict();
+        }
     }
 
     /**
@@ -69,16 +143,48 @@ public class Cache
     {
         if (url == null || isLocal(url)) return null;
 
-        Image image = null;
+        File file = lookup(urlToFilename(url));
+        return file == null ? null : ImageFetcher.loadImage(file);
+    }
 
-        File file = new File(cacheFolder, urlToFilename(url));
+    /**
+     * Looks up the file of a cached entry and marks the entry as recently used. The lock is
+     * held only to touch the index. The read is journaled with the next journal write and
+     * the file is checked without the lock.
+     *
+     * @param key entry key.
+     *
+     * @return file or <code>NULL</code> if not cached.
+     */
+    File lookup(String key)
+    {
+        synchronized (this)
+        {
+            if (index.get(key) == null)
+            {
+                MISSES.inc();
+                return null;
+            }
+
+            pendingReads.add(key);
+        }
+
+        File file = getFile(key);
         if (file.exists())
         {
-            image = ImageFetcher.loadImage(file);
-            file.setLastModified(System.currentTimeMillis());
+            HITS.inc();
+        } else
+        {
+            // Someone removed the file behind our back
+            synchronized (this)
+            {
+                remove(key);
+            }
+            MISSES.inc();
+            file = null;
         }
 
-        return image;
+        return file;
     }
 
     private static boolean isLocal(URL url)
@@ -86,9 +192,30 @@ public class Cache
         return url.getProtocol().equals("file");
     }
 
+    /**
+     * Returns the file to store the image data for the given URL in.
+     *
+     * @param url URL.
+     *
+     * @return file.
+     */
     public File getCachedFile(URL url)
     {
-        return new File(cacheFolder, urlToFilename(url));
+        File file = getFile(urlToFilename(url));
+        file.getParentFile().mkdir();
+        return file;
+    }
+
+    /**
+     * Returns the file for the given key.
+     *
+     * @param key key.
+     *
+     * @return file.
+     */
+    File getFile(String key)
+    {
+        return new File(new File(cacheFolder, key.substring(0, 2)), key);
     }
 
     /**
@@ -100,54 +227,355 @@ public class Cache
      */
     public String urlToFilename(URL url)
     {
-        int hashCode = url.toString().toLowerCase().hashCode();
-        return Integer.toHexString(hashCode).toUpperCase();
+        return digest(url.toString());
+    }
+
+    /**
+     * Returns hex SHA-1 digest of a string.
+     *
+     * @param str string.
+     *
+     * @return digest.
+     */
+    static String digest(String str)
+    {
+        byte[] bytes;
+        try
+        {
+            bytes = MessageDigest.getInstance("SHA-1").digest(str.getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException(e);
+        }
+
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0x0f];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0x0f];
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Invoked when the data for the entry has been written to its file. Registers the
+     * entry in the index and evicts old entries if the limit is exceeded.
+     *
+     * @param key key of the entry.
+     */
+    public synchronized void stored(String key)
+    {
+        File file = getFile(key);
+        if (!file.exists()) return;
+
+        long length = file.length();
+        Long old = index.put(key, length);
+        if (old != null) size -= old;
+        size += length;
+
+        writeRecord(REC_PUT, key, length, true);
+        evict();
+    }
+
+    /** Checks if we still in limits and removes some old entries if we aren't. */
+    public synchronized void verifyLimits()
+    {
+        evict();
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     *
+     * @return entries.
+     */
+    synchronized int getEntriesCount()
+    {
+        return index.size();
+    }
+
+    /**
+     * Returns the total size of entries.
+     *
+     * @return size in bytes.
+     */
+    synchronized long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Flushes and closes the journal.
+     */
+    public synchronized void close()
+    {
+        if (journal == null) return;
+
+        try
+        {
+            writePendingReads();
+            journal.close();
+        } catch (IOException e)
+        {
+            LOG.log(Level.WARNING, "Failed to close the images cache journal", e);
+        }
+
+        journal = null;
     }
 
-    /** Checks if we still in limits and removes some old files if we aren't. */
-    public void verifyLimits()
+    // --------------------------------------------------------------------------------------------
+    // Index
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Removes least recently used entries while the total size is over the limit. The most
+     * recent entry always stays.
+     */
+    private void evict()
     {
-        long size = calcSize();
-        if (size > sizeLimit)
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (size > sizeLimit && index.size() > 1 && it.hasNext())
         {
-            removeOldEntries(size - sizeLimit);
+            Map.Entry<String, Long> entry = it.next();
+            String key = entry.getKey();
+
+            it.remove();
+            size -= entry.getValue();
+            getFile(key).delete();
+            writeRecord(REC_DELETE, key, -1, false);
         }
+
+        flushJournal();
     }
 
     /**
-     * Removes some entries to free minimum <code>size</code> number of bytes.
+     * Removes the entry from the index and disk.
      *
-     * @param size amount to free.
+     * @param key key.
      */
-    private void removeOldEntries(long size)
+    private void remove(String key)
     {
-        File[] files = cacheFolder.listFiles();
-        Arrays.sort(files, new FileAccessComparator());
+        Long length = index.remove(key);
+        if (length != null)
+        {
+            size -= length;
+            getFile(key).delete();
+            writeRecord(REC_DELETE, key, -1, true);
+        }
+    }
 
-        long leftToFree = size;
-        for (int i = 0; leftToFree > 0 && i < files.length - 1; i++)
+    /**
+     * Reads the journal into the index.
+     *
+     * @param file journal file.
+     */
+    private void readJournal(File file)
+    {
+        try
         {
-            File file = files[i];
-            if (file.isFile() && file.exists())
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            try
             {
-                if (file.delete()) leftToFree -= file.length();
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    journalRecords++;
+                    if (line.length() < 3) continue;
+
+                    char type = line.charAt(0);
+                    int sp = line.indexOf(' ', 2);
+                    String key = sp == -1 ? line.substring(2) : line.substring(2, sp);
+
+                    if (type == REC_PUT && sp != -1)
+                    {
+                        Long length = parseLength(line.substring(sp + 1));
+                        if (length == null) continue;
+
+                        Long old = index.put(key, length);
+                        if (old != null) size -= old;
+                        size += length;
+                    } else if (type == REC_READ)
+                    {
+                        index.get(key);
+                    } else if (type == REC_DELETE)
+                    {
+                        Long old = index.remove(key);
+                        if (old != null) size -= old;
+                    }
+                }
+            } finally
+            {
+                reader.close();
             }
+        } catch (IOException e)
+        {
+            LOG.log(Level.WARNING, "Failed to read the images cache journal, rebuilding", e);
+            rebuildIndex();
         }
     }
 
     /**
-     * Returns the size of directory contents.
+     * Parses the length.
      *
-     * @return size.
+     * @param str string.
+     *
+     * @return length or <code>NULL</code> if the record is broken.
      */
-    private long calcSize()
+    private static Long parseLength(String str)
     {
-        long size = 0;
+        try
+        {
+            return Long.parseLong(str);
+        } catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
 
-        File[] files = cacheFolder.listFiles();
-        for (File file : files) size += file.length();
+    /**
+     * Rebuilds the index by scanning the shard directories. Files left by the previous
+     * flat layout and incomplete downloads are removed.
+     */
+    private void rebuildIndex()
+    {
+        index.clear();
+        size = 0;
 
-        return size;
+        List<File> files = new ArrayList<File>();
+        File[] entries = cacheFolder.listFiles();
+        if (entries != null)
+        {
+            for (File entry : entries)
+            {
+                if (entry.isDirectory())
+                {
+                    File[] shard = entry.listFiles();
+                    if (shard != null)
+                    {
+                        for (File file : shard)
+                        {
+                            if (file.getName().endsWith(".tmp")) file.delete(); else files.add(file);
+                        }
+                    }
+                } else if (!entry.getName().equals(JOURNAL))
+                {
+                    entry.delete();
+                }
+            }
+        }
+
+        // Order by the time of use
+        Collections.sort(files, new FileAccessComparator());
+        for (File file : files)
+        {
+            long length = file.length();
+            index.put(file.getName(), length);
+            size += length;
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------
+    // Journal
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Writes the complete index into the new journal and replaces the old one.
+     */
+    private void compactJournal()
+    {
+        close();
+
+        // The index is written in the order of use, so the reads are recorded too
+        pendingReads.clear();
+
+        File file = new File(cacheFolder, JOURNAL);
+        File temp = new File(cacheFolder, JOURNAL + ".tmp");
+        try
+        {
+            Writer writer = new BufferedWriter(new FileWriter(temp));
+            try
+            {
+                for (Map.Entry<String, Long> entry : index.entrySet())
+                {
+                    writer.write(REC_PUT + " " + entry.getKey() + " " + entry.getValue() + "\n");
+                }
+            } finally
+            {
+                writer.close();
+            }
+
+            file.delete();
+            if (!temp.renameTo(file)) throw new IOException("Failed to rename " + temp);
+
+            journalRecords = index.size();
+            journal = new BufferedWriter(new FileWriter(file, true));
+        } catch (IOException e)
+        {
+            LOG.log(Level.WARNING, "Failed to write the images cache journal", e);
+        }
+    }
+
+    /**
+     * Appends the record to the journal. Compacts the journal when it becomes much larger
+     * than the index.
+     *
+     * @param type      type of the record.
+     * @param key       key.
+     * @param length    length of the entry or <code>-1</code> when not applicable.
+     * @param flush     <code>TRUE</code> to flush the journal immediately.
+     */
+    private void writeRecord(char type, String key, long length, boolean flush)
+    {
+        if (journal == null) return;
+
+        try
+        {
+            writePendingReads();
+            journal.write(length < 0 ? type + " " + key + "\n" : type + " " + key + " " + length + "\n");
+            journalRecords++;
+            if (flush) journal.flush();
+        } catch (IOException e)
+        {
+            LOG.log(Level.WARNING, "Failed to write to the images cache journal", e);
+        }
+
+        if (journalRecords > MIN_COMPACT_RECORDS && journalRecords > index.size() * 2) compactJournal();
+    }
+
+    /**
+     * Writes the reads collected since the last write to the journal.
+     *
+     * @throws IOException if writing fails.
+     */
+    private void writePendingReads()
+        throws IOException
+    {
+        for (String key : pendingReads)
+        {
+            journal.write(REC_READ + " " + key + "\n");
+            journalRecords++;
+        }
+
+        pendingReads.clear();
+    }
+
+    /**
+     * Flushes the journal.
+     */
+    private void flushJournal()
+    {
+        if (journal == null) return;
+
+        try
+        {
+            journal.flush();
+        } catch (IOException e)
+        {
+            LOG.log(Level.WARNING, "Failed to write to the images cache journal", e);
+        }
     }
 
     /**
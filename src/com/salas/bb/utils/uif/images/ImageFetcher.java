@@ -24,12 +24,15 @@
 
 package com.salas.bb.utils.uif.images;
 
+import com.salas.bb.networking.manager.NetManager;
+import com.salas.bb.networking.manager.NetTask;
+import com.salas.bb.utils.net.URLInputStream;
+
 import java.awt.*;
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,12 +59,19 @@ public final class ImageFetcher
 {
     private static final Logger LOG = Logger.getLogger(ImageFetcher.class.getName());
 
-    private static Cache cache;
-    private static Map<String, Image> downloadedImages;
+    /** Number of locks guarding the start of downloads. */
+    private static final int LOCK_STRIPES = 32;
+
+    private static volatile Cache cache;
+    private static final ConcurrentMap<String, Image> downloadedImages;
+    private static final Object[] locks;
 
     static
     {
-        downloadedImages = new HashMap<String, Image>();
+        downloadedImages = new ConcurrentHashMap<String, Image>();
+
+        locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) locks[i] = new Object();
     }
 
     /**
@@ -74,6 +84,16 @@ public final class ImageFetcher
         cache = aCache;
     }
 
+    /**
+     * Returns the cache in use.
+     *
+     * @return cache or <code>NULL</code> if not set.
+     */
+    static Cache getCache()
+    {
+        return cache;
+    }
+
     /**
      * Clears the images loading queue.
      */
@@ -82,27 +102,35 @@ public final class ImageFetcher
         // Removes everything from the queue
         SavingImageSource.clearQueues();
         downloadedImages.clear();
-        cache.verifyLimits();
+        if (cache != null) cache.verifyLimits();
     }
 
     /**
-     * Loads image from the source URL.
+     * Loads image from the source URL. Concurrent requests for the same image share
+     * the single download, while requests for different images never block each other.
      *
      * @param source source URL.
      *
      * @return image.
      */
-    public static synchronized Image load(URL source)
+    public static Image load(URL source)
     {
-        Image img;
+        // The cache is still being indexed during the startup
+        Cache cache = ImageFetcher.cache;
+        if (cache == null) return Toolkit.getDefaultToolkit().createImage(source);
+
+        String cacheFN = cache.urlToFilename(source);
 
-        // See if we have an image in cache
-        img = cache.get(source);
-        if (img == null)
+        // See if we are downloading it or have it in cache
+        Image img = getDownloadedImage(cacheFN);
+        if (img == null) img = cache.get(source);
+        if (img != null) return img;
+
+        synchronized (locks[(cacheFN.hashCode() & 0x7fffffff) % LOCK_STRIPES])
         {
-            // There's no cached image, see if we are downloading something
-            String cacheFN = cache.urlToFilename(source);
+            // Someone could start or finish the download while we were waiting
             img = getDownloadedImage(cacheFN);
+            if (img == null) img = cache.get(source);
             if (img == null)
             {
                 // Image is not being downloaded, create a temp file and start downloading
@@ -116,7 +144,7 @@ public final class ImageFetcher
                     img = loadImage(source, tempFile, cacheFile);
 
                     // Register the download
-                    registerDownloadedImage(cacheFN, img);
+                    if (img != null) registerDownloadedImage(cacheFN, img);
                 } catch (IOException e)
                 {
                     LOG.log(Level.WARNING, "Error loading image", e);
@@ -205,11 +233,85 @@ public final class ImageFetcher
      */
     public static void unregisterDownloadedImage(String fn)
     {
-        synchronized (ImageFetcher.class)
+        // Register the data in cache first so that there's no gap
+        cache.stored(fn);
+        downloadedImages.remove(fn);
+    }
+
+    /**
+     * Downloads the image data directly into the cache, registering the activity in
+     * <code>NetManager</code>, and returns the cached file. If the image is already in
+     * cache, it's returned without downloading.
+     *
+     * @param cache     cache.
+     * @param url       image URL.
+     * @param maxBytes  maximum number of bytes to download.
+     *
+     * @return file or <code>NULL</code> if the image is bigger than allowed.
+     *
+     * @throws IOException if downloading fails.
+     */
+    static File fetch(Cache cache, URL url, long maxBytes)
+        throws IOException
+    {
+        String key = cache.urlToFilename(url);
+        File file = cache.lookup(key);
+        if (file != null) return file;
+
+        file = cache.getCachedFile(url);
+        File temp = File.createTempFile("fetch", ".tmp", file.getParentFile());
+
+        boolean complete = false;
+        URLInputStream in = new URLInputStream(url);
+        NetTask task = NetManager.register(NetManager.TYPE_ARTICLE_IMAGE, url.toString(), "", in);
+        try
+        {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+            try
+            {
+                byte[] buf = new byte[8192];
+                long total = 0;
+                int read;
+                while ((read = in.read(buf)) != -1 && (total += read) <= maxBytes) out.write(buf, 0, read);
+                complete = read == -1;
+            } finally
+            {
+                out.close();
+            }
+        } catch (IOException e)
+        {
+            if (task != null) task.abort();
+            temp.delete();
+            throw e;
+        } finally
+        {
+            in.close();
+        }
+
+        if (!complete)
         {
-            downloadedImages.remove(fn);
+            if (task != null) task.abort();
+            temp.delete();
+            return null;
         }
-        
-        cache.verifyLimits();
+
+        // The image could be saved by someone else meanwhile
+        if (file.exists() || !temp.renameTo(file)) temp.delete();
+        cache.stored(key);
+
+        return file;
+    }
+
+    /**
+     * Returns <code>TRUE</code> if the image is loaded from network and should be cached.
+     *
+     * @param url URL.
+     *
+     * @return <code>TRUE</code> if remote.
+     */
+    static boolean isRemote(URL url)
+    {
+        String protocol = url.getProtocol();
+        return "http".equals(protocol) || "https".equals(protocol);
     }
 }
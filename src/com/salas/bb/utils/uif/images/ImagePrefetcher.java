@@ -0,0 +1,372 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+
+package com.salas.bb.utils.uif.images;
+
+import EDU.oswego.cs.dl.util.concurrent.Executor;
+import com.salas.bb.imageblocker.ImageBlocker;
+import com.salas.bb.utils.StringUtils;
+import com.salas.bb.utils.concurrency.Scheduler;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Prefetches images into the images cache in background, so that articles are displayed
+ * without waiting for the network when they are opened. Downloads run at the lowest
+ * priority and are limited in three ways:
+ * <ul>
+ *  <li>not more than a given number of simultaneous downloads from the same host;</li>
+ *  <li>not more than a given number of bytes per cycle (the rest of the queue is dropped
+ *      when the budget is exhausted and the new cycle starts after the cycle period);</li>
+ *  <li>images blocked by the <code>ImageBlocker</code> are never fetched.</li>
+ * </ul>
+ */
+public class ImagePrefetcher
+{
+    private static final Logger LOG = Logger.getLogger(ImagePrefetcher.class.getName());
+
+    private static final Pattern PAT_IMAGE_URL =
+        Pattern.compile("<img\\s[^>]*src\\s*=\\s*(\"([^\"]+)\"|'([^']+)')[^>]*>", Pattern.CASE_INSENSITIVE);
+
+    /** Number of downloading threads. */
+    private static final int THREADS = 4;
+    /** Maximum number of queued images. */
+    private static final int MAX_QUEUE = 1000;
+
+    private final Executor executor;
+    private final int maxPerHost;
+
+    /** Images waiting for download. */
+    private final LinkedList<URL> queue;
+    /** Keys of images queued or downloaded at the moment. */
+    private final Set<String> scheduled;
+    /** Host name to the number of running downloads. */
+    private final Map<String, Integer> activeHosts;
+    /** Number of running downloads. */
+    private int running;
+
+    private long budget;
+    private long cyclePeriod;
+    private long cycleStart;
+    private long spent;
+
+    /**
+     * Creates the prefetcher.
+     *
+     * @param aMaxPerHost   maximum number of simultaneous downloads from a host.
+     * @param aBudget       maximum number of bytes to download per cycle.
+     * @param aCyclePeriod  cycle period (ms).
+     */
+    public ImagePrefetcher(int aMaxPerHost, long aBudget, long aCyclePeriod)
+    {
+        maxPerHost = aMaxPerHost;
+        budget = aBudget;
+        cyclePeriod = aCyclePeriod;
+
+        queue = new LinkedList<URL>();
+        scheduled = new HashSet<String>();
+        activeHosts = new HashMap<String, Integer>();
+
+        executor = Scheduler.lane("Image Prefetcher", THREADS, Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Sets the cycle period.
+     *
+     * @param period period (ms).
+     */
+    public synchronized void setCyclePeriod(long period)
+    {
+        cyclePeriod = period;
+    }
+
+    /**
+     * Finds all images in the HTML text.
+     *
+     * @param base base URL to resolve relative links against.
+     * @param html text to scan.
+     *
+     * @return URLs of images in the order of appearance without duplicates.
+     */
+    public static List<URL> collectImageURLs(URL base, String html)
+    {
+        if (html == null) return Collections.emptyList();
+
+        Set<URL> urls = new LinkedHashSet<URL>();
+        Matcher matcher = PAT_IMAGE_URL.matcher(html);
+        while (matcher.find())
+        {
+            String strURL = matcher.group(2);
+            if (strURL == null) strURL = matcher.group(3);
+            strURL = StringUtils.quickUnescape(strURL.trim()).replaceAll(" ", "%20");
+
+            try
+            {
+                urls.add(new URL(base, strURL));
+            } catch (MalformedURLException e)
+            {
+                // Skip invalid URL
+            }
+        }
+
+        return new ArrayList<URL>(urls);
+    }
+
+    /**
+     * Queues the images for download. Images which are blocked, cached, already queued or
+     * being downloaded by the viewer are skipped.
+     *
+     * @param urls image URLs.
+     */
+    public void prefetch(Collection<URL> urls)
+    {
+        Cache cache = ImageFetcher.getCache();
+        if (cache == null) return;
+
+        List<URL> fresh = new ArrayList<URL>(urls.size());
+        for (URL url : urls)
+        {
+            if (!ImageFetcher.isRemote(url) || ImageBlocker.isBlocked(url)) continue;
+
+            String key = cache.urlToFilename(url);
+            if (cache.lookup(key) == null && ImageFetcher.getDownloadedImage(key) == null) fresh.add(url);
+        }
+
+        if (fresh.isEmpty()) return;
+
+        synchronized (this)
+        {
+            if (isBudgetExhausted()) return;
+
+            for (URL url : fresh)
+            {
+                if (queue.size() < MAX_QUEUE && scheduled.add(cache.urlToFilename(url))) queue.add(url);
+            }
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Starts downloads of queued images while the limits allow.
+     */
+    private void dispatch()
+    {
+        List<PrefetchTask> tasks = new ArrayList<PrefetchTask>();
+
+        synchronized (this)
+        {
+            if (isBudgetExhausted())
+            {
+                dropQueue();
+            } else
+            {
+                Iterator<URL> it = queue.iterator();
+                while (running < THREADS && it.hasNext())
+                {
+                    URL url = it.next();
+                    String host = url.getHost();
+                    Integer active = activeHosts.get(host);
+                    if (active == null) active = 0;
+
+                    if (active < maxPerHost)
+                    {
+                        it.remove();
+                        activeHosts.put(host, active + 1);
+                        running++;
+                        tasks.add(new PrefetchTask(url));
+                    }
+                }
+            }
+        }
+
+        boolean interrupted = false;
+        for (PrefetchTask task : tasks)
+        {
+            // The calling thread may be EDT, so the interrupted downloads are dropped
+            if (!interrupted)
+            {
+                try
+                {
+                    executor.execute(task);
+                    continue;
+                } catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+
+            finished(task.url, 0);
+        }
+
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Returns <code>TRUE</code> if the budget of the current cycle is spent. Starts
+     * the new cycle if it's time.
+     *
+     * @return <code>TRUE</code> if the budget is spent.
+     */
+    private synchronized boolean isBudgetExhausted()
+    {
+        long now = System.currentTimeMillis();
+        if (now - cycleStart >= cyclePeriod)
+        {
+            cycleStart = now;
+            spent = 0;
+        }
+
+        return spent >= budget;
+    }
+
+    /**
+     * Removes all queued images.
+     */
+    private synchronized void dropQueue()
+    {
+        if (!queue.isEmpty())
+        {
+            if (LOG.isLoggable(Level.FINE)) LOG.fine("Budget is spent, dropping " + queue.size() + " images");
+
+            Cache cache = ImageFetcher.getCache();
+            for (URL url : queue) scheduled.remove(cache.urlToFilename(url));
+            queue.clear();
+        }
+    }
+
+    /**
+     * Invoked when the download finishes.
+     *
+     * @param url   image URL.
+     * @param bytes number of bytes spent.
+     */
+    private synchronized void finished(URL url, long bytes)
+    {
+        String host = url.getHost();
+        int active = activeHosts.get(host) - 1;
+        if (active == 0) activeHosts.remove(host); else activeHosts.put(host, active);
+
+        running--;
+        spent += bytes;
+        scheduled.remove(ImageFetcher.getCache().urlToFilename(url));
+    }
+
+    /**
+     * Returns the number of bytes remaining in the budget of the current cycle.
+     *
+     * @return bytes.
+     */
+    private synchronized long getRemainingBudget()
+    {
+        return isBudgetExhausted() ? 0 : budget - spent;
+    }
+
+    /**
+     * Returns the number of images waiting for download.
+     *
+     * @return count.
+     */
+    synchronized int getQueueSize()
+    {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of bytes downloaded during the current cycle.
+     *
+     * @return bytes.
+     */
+    synchronized long getSpent()
+    {
+        return spent;
+    }
+
+    /**
+     * Downloads the image into the cache.
+     *
+     * @param cache     cache.
+     * @param url       image URL.
+     * @param maxBytes  maximum number of bytes to download.
+     *
+     * @return the number of bytes spent.
+     *
+     * @throws Exception if downloading fails.
+     */
+    long download(Cache cache, URL url, long maxBytes)
+        throws Exception
+    {
+        File file = ImageFetcher.fetch(cache, url, maxBytes);
+        return file == null ? maxBytes : file.length();
+    }
+
+    /**
+     * Downloads single image.
+     */
+    private class PrefetchTask implements Runnable
+    {
+        private final URL url;
+
+        /**
+         * Creates the task.
+         *
+         * @param aUrl image URL.
+         */
+        PrefetchTask(URL aUrl)
+        {
+            url = aUrl;
+        }
+
+        /** Downloads the image and starts the next. */
+        public void run()
+        {
+            long bytes = 0;
+            try
+            {
+                long remaining = getRemainingBudget();
+                Cache cache = ImageFetcher.getCache();
+                String key = cache.urlToFilename(url);
+                if (remaining > 0 && cache.lookup(key) == null && ImageFetcher.getDownloadedImage(key) == null)
+                {
+                    bytes = download(cache, url, remaining);
+                }
+            } catch (Throwable e)
+            {
+                LOG.log(Level.FINE, "Failed to prefetch the image: " + url, e);
+            } finally
+            {
+                finished(url, bytes);
+                dispatch();
+            }
+        }
+    }
+}
@@ -26,6 +26,8 @@ package com.salas.bb.utils.uif.images;
 
 import com.salas.bb.networking.manager.NetManager;
 import com.salas.bb.networking.manager.NetTask;
+import com.salas.bb.utils.concurrency.Lane;
+import com.salas.bb.utils.concurrency.Scheduler;
 import com.salas.bb.utils.net.URLInputStream;
 import sun.awt.image.ImageDecoder;
 import sun.awt.image.URLImageSource;
@@ -34,8 +36,9 @@ import java.awt.image.ColorModel;
 import java.awt.image.ImageConsumer;
 import java.io.*;
 import java.net.URL;
+import java.util.HashSet;
 import java.util.Hashtable;
-import java.util.concurrent.*;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,10 +49,9 @@ public class SavingImageSource extends URLImageSource implements Runnable
 {
     private static final Logger LOG = Logger.getLogger(SavingImageSource.class.getName());
 
-    private static LinkedBlockingQueue<Runnable>    queue;
-    private static Executor                         executor;         // Running remote producers
-    private static LinkedBlockingQueue<Runnable>    queueLocals;
-    private static Executor                         executorLocals;   // Running local producers
+    private static final Set<SavingImageSource> queued;         // Sources waiting for producers
+    private static final Lane                   executor;       // Running remote producers
+    private static final Lane                   executorLocals; // Running local producers
 
     private File                    fileSource; // Source file (input is created from it)
     private URL                     urlSource;  // Source URL (input is created from it)
@@ -68,29 +70,9 @@ public class SavingImageSource extends URLImageSource implements Runnable
     // Initialize the executor
     static
     {
-        queue = new LinkedBlockingQueue<Runnable>();
-        executor = new ThreadPoolExecutor(5, 5, 0L, TimeUnit.MILLISECONDS, queue, new ThreadFactory()
-        {
-            public Thread newThread(Runnable r)
-            {
-                Thread th = new Thread(r, "Image Loader NG");
-                th.setDaemon(true);
-                th.setPriority(Thread.MIN_PRIORITY);
-                return th;
-            }
-        });
-
-        queueLocals = new LinkedBlockingQueue<Runnable>();
-        executorLocals = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, queueLocals, new ThreadFactory()
-        {
-            public Thread newThread(Runnable r)
-            {
-                Thread th = new Thread(r, "Image Loader NG (Locals)");
-                th.setDaemon(true);
-                th.setPriority(Thread.MIN_PRIORITY);
-                return th;
-            }
-        });
+        queued = new HashSet<SavingImageSource>();
+        executor = Scheduler.lane("Image Loader NG", 5, Thread.MIN_PRIORITY);
+        executorLocals = Scheduler.lane("Image Loader NG (Locals)", 1, Thread.MIN_PRIORITY);
     }
 
     /**
@@ -135,8 +117,8 @@ public class SavingImageSource extends URLImageSource implements Runnable
     {
         synchronized (SavingImageSource.class)
         {
-            for (Runnable runnable : queue) ((SavingImageSource)runnable).abort();
-            for (Runnable runnable : queueLocals) ((SavingImageSource)runnable).abort();
+            for (SavingImageSource source : queued) source.abort();
+            queued.clear();
         }
     }
 
@@ -184,9 +166,10 @@ public class SavingImageSource extends URLImageSource implements Runnable
             addConsumer(new Consumer());
 
             // Choose the right executor
-            Executor ex = fileSource == null ? executor : executorLocals;
+            Lane ex = fileSource == null ? executor : executorLocals;
             synchronized (SavingImageSource.class)
             {
+                queued.add(this);
                 ex.execute(this);
             }
         } catch (FileNotFoundException e)
@@ -237,6 +220,11 @@ public class SavingImageSource extends URLImageSource implements Runnable
      */
     public void run()
     {
+        synchronized (SavingImageSource.class)
+        {
+            queued.remove(this);
+        }
+
         try
         {
             if (abort)
@@ -0,0 +1,373 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.uif.images;
+
+import EDU.oswego.cs.dl.util.concurrent.Executor;
+import com.salas.bb.utils.concurrency.Scheduler;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.net.URL;
+import java.util.*;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads images as thumbnails of a given size in background. Images are decoded with
+ * <code>ImageIO</code> subsampling, so that large pictures are never decoded in full
+ * resolution, and then scaled to the exact size. Both original image data and the
+ * resulting thumbnails are kept in the images cache, so that the next request for the
+ * same picture and size is served from disk without decoding the original.
+ */
+public final class ThumbnailLoader
+{
+    private static final Logger LOG = Logger.getLogger(ThumbnailLoader.class.getName());
+
+    /** Number of decoding threads. */
+    private static final int THREADS = 2;
+
+    private static final Executor EXECUTOR =
+        Scheduler.lane("Thumbnail Decoder", THREADS, Thread.MIN_PRIORITY);
+
+    /** Thumbnail key to the listeners waiting for it. */
+    private static final Map<String, List<IThumbnailListener>> PENDING =
+        new HashMap<String, List<IThumbnailListener>>();
+
+    /** Hidden utility class constructor. */
+    private ThumbnailLoader()
+    {
+    }
+
+    /**
+     * Starts loading of a thumbnail. The listener is notified from the event dispatch thread
+     * when the thumbnail is ready. Concurrent requests for the same image and size are served
+     * by a single decoding.
+     *
+     * @param url       URL of the image.
+     * @param maxWidth  maximum thumbnail width.
+     * @param maxHeight maximum thumbnail height.
+     * @param listener  listener to notify.
+     */
+    public static void load(URL url, int maxWidth, int maxHeight, IThumbnailListener listener)
+    {
+        String key = thumbnailKey(url, maxWidth, maxHeight);
+
+        synchronized (PENDING)
+        {
+            List<IThumbnailListener> listeners = PENDING.get(key);
+            if (listeners != null)
+            {
+                listeners.add(listener);
+                return;
+            }
+
+            listeners = new ArrayList<IThumbnailListener>();
+            listeners.add(listener);
+            PENDING.put(key, listeners);
+        }
+
+        try
+        {
+            EXECUTOR.execute(new LoadTask(key, url, maxWidth, maxHeight));
+        } catch (InterruptedException e)
+        {
+            // Never decode on the calling thread, it may be the EDT. Drop the request instead.
+            Thread.currentThread().interrupt();
+            finished(key, url, null);
+        }
+    }
+
+    /**
+     * Removes the pending request and notifies its listeners on the EDT.
+     *
+     * @param key       thumbnail key.
+     * @param url       image URL.
+     * @param image     thumbnail or <code>NULL</code> if failed.
+     */
+    private static void finished(String key, final URL url, final BufferedImage image)
+    {
+        final List<IThumbnailListener> listeners;
+        synchronized (PENDING)
+        {
+            listeners = PENDING.remove(key);
+        }
+
+        if (listeners == null) return;
+
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                for (IThumbnailListener listener : listeners)
+                {
+                    if (image == null) listener.thumbnailFailed(url); else listener.thumbnailLoaded(url, image);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the key of the thumbnail in cache.
+     *
+     * @param url       image URL.
+     * @param maxWidth  maximum width.
+     * @param maxHeight maximum height.
+     *
+     * @return key.
+     */
+    static String thumbnailKey(URL url, int maxWidth, int maxHeight)
+    {
+        return Cache.digest(url + "#" + maxWidth + "x" + maxHeight);
+    }
+
+    /**
+     * Produces the thumbnail taking it from cache if possible.
+     *
+     * @param key       thumbnail key.
+     * @param url       image URL.
+     * @param maxWidth  maximum width.
+     * @param maxHeight maximum height.
+     *
+     * @return thumbnail or <code>NULL</code> if the image can't be decoded.
+     *
+     * @throws IOException if loading fails.
+     */
+    static BufferedImage produce(String key, URL url, int maxWidth, int maxHeight)
+        throws IOException
+    {
+        Cache cache = ImageFetcher.getCache();
+
+        if (cache != null)
+        {
+            File file = cache.lookup(key);
+            if (file != null)
+            {
+                BufferedImage thumbnail = ImageIO.read(file);
+                if (thumbnail != null) return thumbnail;
+            }
+        }
+
+        BufferedImage thumbnail;
+        File original = cache == null || !ImageFetcher.isRemote(url) ? null : ImageFetcher.fetch(cache, url, Long.MAX_VALUE);
+        if (original != null)
+        {
+            thumbnail = decode(ImageIO.createImageInputStream(original), maxWidth, maxHeight);
+        } else
+        {
+            InputStream in = url.openStream();
+            try
+            {
+                thumbnail = decode(ImageIO.createImageInputStream(in), maxWidth, maxHeight);
+            } finally
+            {
+                in.close();
+            }
+        }
+
+        if (thumbnail != null && cache != null) store(cache, key, thumbnail);
+
+        return thumbnail;
+    }
+
+    /**
+     * Decodes the image from the stream subsampling it to the size just above the target
+     * and scaling to the final size.
+     *
+     * @param iis       image stream.
+     * @param maxWidth  maximum width.
+     * @param maxHeight maximum height.
+     *
+     * @return thumbnail or <code>NULL</code> if there's no decoder for the image.
+     *
+     * @throws IOException if decoding fails.
+     */
+    static BufferedImage decode(ImageInputStream iis, int maxWidth, int maxHeight)
+        throws IOException
+    {
+        if (iis == null) return null;
+
+        try
+        {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try
+            {
+                reader.setInput(iis, true, true);
+
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                Dimension size = fit(width, height, maxWidth, maxHeight);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.min(width / size.width, height / size.height));
+                if (subsampling > 1) param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+                return scale(reader.read(0, param), size.width, size.height);
+            } finally
+            {
+                reader.dispose();
+            }
+        } finally
+        {
+            iis.close();
+        }
+    }
+
+    /**
+     * Calculates the size of the image fitting into the box without changing proportions.
+     * Images which fit already aren't enlarged.
+     *
+     * @param width     image width.
+     * @param height    image height.
+     * @param maxWidth  box width.
+     * @param maxHeight box height.
+     *
+     * @return size.
+     */
+    static Dimension fit(int width, int height, int maxWidth, int maxHeight)
+    {
+        int picWidth = width;
+        int picHeight = height;
+
+        if (picWidth > maxWidth || picHeight > maxHeight)
+        {
+            double ratio = Math.min((double)maxWidth / width, (double)maxHeight / height);
+            picWidth = (int)(width * ratio);
+            picHeight = (int)(height * ratio);
+        }
+
+        return new Dimension(Math.max(1, picWidth), Math.max(1, picHeight));
+    }
+
+    /**
+     * Scales the image to the given size.
+     *
+     * @param image     image.
+     * @param width     target width.
+     * @param height    target height.
+     *
+     * @return scaled image.
+     */
+    private static BufferedImage scale(BufferedImage image, int width, int height)
+    {
+        boolean alpha = image.getColorModel().hasAlpha();
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        if (image.getWidth() == width && image.getHeight() == height && image.getType() == type) return image;
+
+        BufferedImage scaled = new BufferedImage(width, height, type);
+        Graphics2D g = scaled.createGraphics();
+        try
+        {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally
+        {
+            g.dispose();
+        }
+
+        return scaled;
+    }
+
+    /**
+     * Saves the thumbnail in cache.
+     *
+     * @param cache     cache.
+     * @param key       thumbnail key.
+     * @param thumbnail thumbnail.
+     */
+    private static void store(Cache cache, String key, BufferedImage thumbnail)
+    {
+        File file = cache.getFile(key);
+        file.getParentFile().mkdir();
+
+        try
+        {
+            File temp = File.createTempFile("thumb", ".tmp", file.getParentFile());
+            String format = thumbnail.getColorModel().hasAlpha() ? "PNG" : "JPEG";
+            if (ImageIO.write(thumbnail, format, temp) && temp.renameTo(file))
+            {
+                cache.stored(key);
+            } else
+            {
+                temp.delete();
+            }
+        } catch (IOException e)
+        {
+            LOG.log(Level.WARNING, "Failed to save the thumbnail", e);
+        }
+    }
+
+    /**
+     * Loads the thumbnail and notifies listeners.
+     */
+    private static class LoadTask implements Runnable
+    {
+        private final String key;
+        private final URL url;
+        private final int maxWidth;
+        private final int maxHeight;
+
+        /**
+         * Creates the task.
+         *
+         * @param key       thumbnail key.
+         * @param url       image URL.
+         * @param maxWidth  maximum width.
+         * @param maxHeight maximum height.
+         */
+        LoadTask(String key, URL url, int maxWidth, int maxHeight)
+        {
+            this.key = key;
+            this.url = url;
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+        }
+
+        /** Loads the thumbnail. */
+        public void run()
+        {
+            BufferedImage thumbnail = null;
+            try
+            {
+                thumbnail = produce(key, url, maxWidth, maxHeight);
+            } catch (Throwable e)
+            {
+                LOG.log(Level.FINE, "Failed to load the thumbnail: " + url, e);
+            }
+
+            finished(key, url, thumbnail);
+        }
+    }
+}
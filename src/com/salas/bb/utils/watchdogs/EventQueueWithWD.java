@@ -24,12 +24,14 @@
 
 package com.salas.bb.utils.watchdogs;
 
+import com.salas.bb.utils.concurrency.Lane;
+import com.salas.bb.utils.concurrency.ScheduledTask;
+import com.salas.bb.utils.concurrency.Scheduler;
 import com.salas.bb.utils.i18n.Strings;
 
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.TimerTask;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -61,6 +63,9 @@ import java.util.logging.Level;
  *  queue.addWatchdog(10000, edtOverloadReport, false);
  *  
  * </pre>
+ * <p/>
+ * The queue can also have a {@link StallProfiler} installed, which records the durations of
+ * all events and samples the stack of the events which take too long to dispatch.
  */
 public final class EventQueueWithWD extends EventQueue
 {
@@ -68,20 +73,23 @@ public final class EventQueueWithWD extends EventQueue
 
     private static final String MSG_EXCEPTION = Strings.error("failed.to.dispatch.event");
 
-    // Main timer
-    private java.util.Timer     timer;
+    // Lane running the watchdogs
+    private Lane                lane;
 
     // Group of informational fields for describing the event
     private Object              eventChangeLock;
     private long                eventDispatchingStart;
     private AWTEvent            event;
 
+    // Profiler of the stalls or NULL
+    private volatile StallProfiler profiler;
+
     /**
      * Hidden utility constructor.
      */
     private EventQueueWithWD()
     {
-        timer = new java.util.Timer(true);
+        lane = Scheduler.lane("Event Queue Watchdog", 1, Thread.MAX_PRIORITY);
 
         eventDispatchingStart = -1;
         event = null;
@@ -109,7 +117,10 @@ public final class EventQueueWithWD extends EventQueue
      */
     protected void dispatchEvent(AWTEvent anEvent)
     {
+        StallProfiler stallProfiler = profiler;
+
         setEventDispatchingStart(anEvent, System.currentTimeMillis());
+        if (stallProfiler != null) stallProfiler.dispatchStarted(anEvent, Thread.currentThread());
 
         try
         {
@@ -119,6 +130,7 @@ public final class EventQueueWithWD extends EventQueue
             LOG.log(Level.SEVERE, MSG_EXCEPTION, e);
         }
 
+        if (stallProfiler != null) stallProfiler.dispatchFinished();
         setEventDispatchingStart(null, -1);
     }
 
@@ -151,14 +163,52 @@ public final class EventQueueWithWD extends EventQueue
     public void addWatchdog(long maxProcessingTime, ActionListener listener, boolean repetitive)
     {
         Watchdog checker = new Watchdog(maxProcessingTime, listener, repetitive);
-        timer.schedule(checker, maxProcessingTime, maxProcessingTime);
+        lane.schedule(checker, maxProcessingTime, maxProcessingTime);
+    }
+
+    /**
+     * Installs the stall profiler. The profiler samples the stack of the dispatching thread
+     * every <code>samplePeriod</code> while the event is dispatched longer than the
+     * <code>budget</code>.
+     *
+     * @param budget        maximum event processing time before it's considered slow (ms).
+     * @param samplePeriod  period of stack sampling (ms).
+     *
+     * @return profiler.
+     */
+    public StallProfiler installProfiler(long budget, long samplePeriod)
+    {
+        if (samplePeriod <= 0)
+            throw new IllegalArgumentException(Strings.error("sample.period.should.be.greater.than.zero"));
+
+        final StallProfiler stallProfiler = new StallProfiler(budget);
+        lane.schedule(new ScheduledTask()
+        {
+            public void run()
+            {
+                stallProfiler.sample();
+            }
+        }, samplePeriod, samplePeriod);
+
+        profiler = stallProfiler;
+        return stallProfiler;
+    }
+
+    /**
+     * Returns the installed stall profiler.
+     *
+     * @return profiler or <code>NULL</code>.
+     */
+    public StallProfiler getProfiler()
+    {
+        return profiler;
     }
 
     /**
      * Checks if the processing of the event is longer than the specified
      * <code>maxProcessingTime</code>. If so then listener is notified.
      */
-    private class Watchdog extends TimerTask
+    private class Watchdog extends ScheduledTask
     {
         // Settings
         private long            maxProcessingTime;
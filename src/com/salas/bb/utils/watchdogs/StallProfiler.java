@@ -0,0 +1,482 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.watchdogs;
+
+import com.salas.bb.utils.metrics.Counter;
+import com.salas.bb.utils.metrics.Histogram;
+import com.salas.bb.utils.metrics.Metrics;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Profiler of the Event Dispatch Thread stalls. It's fed by the {@link EventQueueWithWD}
+ * with the start and finish of every event dispatching and records the durations in the
+ * histograms by event type (<code>edt.dispatch.&lt;type&gt;</code>).
+ * <p/>
+ * While an event is being dispatched longer than the budget, the sampler periodically
+ * takes the stack of the dispatching thread. The samples are aggregated by frame into
+ * the hot spots report and kept with the event in the buffer of the most recent slow
+ * events, so that every freeze can be traced down to the code which caused it.
+ */
+public final class StallProfiler
+{
+    private static final Logger LOG = Logger.getLogger(StallProfiler.class.getName());
+
+    /** Number of the most recent slow events to keep. */
+    static final int SLOW_EVENTS = 20;
+    /** Number of hot spots to put in the report. */
+    private static final int REPORT_HOT_SPOTS = 20;
+    /** Number of top frames of a slow event sample to put in the report. */
+    private static final int REPORT_FRAMES = 10;
+
+    private static final long NANOS_IN_MILLI = 1000000L;
+
+    private final long budget;
+    private final Counter stalls;
+
+    /** Event class to histogram. Used by the dispatching thread only. */
+    private final Map<Class, Histogram> histograms;
+
+    // Current dispatching. Guarded by the lock.
+    private final Object    lock;
+    private long            dispatch;
+    private Thread          thread;
+    private AWTEvent        event;
+    private long            start;
+    private List<StackTraceElement[]> samples;
+
+    /** The most recent slow events, the oldest first. */
+    private final LinkedList<SlowEvent> slowEvents;
+    /** Frame to hot spot. */
+    private final Map<String, HotSpot> hotSpots;
+
+    /**
+     * Creates profiler.
+     *
+     * @param aBudget maximum time of event dispatching (ms), after which the event is
+     *                considered slow and its dispatching is sampled.
+     */
+    StallProfiler(long aBudget)
+    {
+        budget = aBudget * NANOS_IN_MILLI;
+        stalls = Metrics.counter("edt.stalls");
+        histograms = new HashMap<Class, Histogram>();
+
+        lock = new Object();
+        slowEvents = new LinkedList<SlowEvent>();
+        hotSpots = new HashMap<String, HotSpot>();
+    }
+
+    /**
+     * Invoked by the queue before the event is dispatched.
+     *
+     * @param anEvent   event.
+     * @param aThread   dispatching thread.
+     */
+    void dispatchStarted(AWTEvent anEvent, Thread aThread)
+    {
+        synchronized (lock)
+        {
+            dispatch++;
+            thread = aThread;
+            event = anEvent;
+            samples = null;
+            start = System.nanoTime();
+        }
+    }
+
+    /**
+     * Invoked by the queue when the event is dispatched.
+     */
+    void dispatchFinished()
+    {
+        AWTEvent finished;
+        long duration;
+        List<StackTraceElement[]> eventSamples;
+
+        synchronized (lock)
+        {
+            finished = event;
+            duration = System.nanoTime() - start;
+            eventSamples = samples;
+
+            thread = null;
+            event = null;
+            samples = null;
+        }
+
+        if (finished == null) return;
+
+        getHistogram(finished.getClass()).record(duration);
+
+        if (duration > budget)
+        {
+            stalls.inc();
+
+            if (eventSamples == null) eventSamples = Collections.emptyList();
+            SlowEvent slowEvent = new SlowEvent(finished.toString(), getType(finished.getClass()),
+                System.currentTimeMillis() - duration / NANOS_IN_MILLI, duration / NANOS_IN_MILLI,
+                eventSamples);
+
+            synchronized (slowEvents)
+            {
+                slowEvents.add(slowEvent);
+                if (slowEvents.size() > SLOW_EVENTS) slowEvents.removeFirst();
+            }
+
+            if (LOG.isLoggable(Level.FINE)) LOG.fine("Slow event: " + slowEvent);
+        }
+    }
+
+    /**
+     * Takes the sample of the dispatching thread stack if the current event is over budget.
+     * Invoked periodically by the sampler.
+     */
+    void sample()
+    {
+        long sampledDispatch;
+        Thread sampledThread;
+
+        synchronized (lock)
+        {
+            if (event == null || System.nanoTime() - start <= budget) return;
+
+            sampledDispatch = dispatch;
+            sampledThread = thread;
+        }
+
+        StackTraceElement[] stack = sampledThread.getStackTrace();
+        if (stack.length == 0) return;
+
+        synchronized (lock)
+        {
+            // The event could have finished while we were taking the stack
+            if (dispatch != sampledDispatch || event == null) return;
+
+            if (samples == null) samples = new ArrayList<StackTraceElement[]>();
+            samples.add(stack);
+        }
+
+        synchronized (hotSpots)
+        {
+            Set<String> seen = new HashSet<String>();
+            for (int i = 0; i < stack.length; i++)
+            {
+                String frame = stack[i].toString();
+                if (!seen.add(frame)) continue;
+
+                HotSpot spot = hotSpots.get(frame);
+                if (spot == null)
+                {
+                    spot = new HotSpot(frame);
+                    hotSpots.put(frame, spot);
+                }
+
+                spot.totalSamples++;
+                if (i == 0) spot.selfSamples++;
+                spot.depth = Math.min(spot.depth, i);
+            }
+        }
+    }
+
+    /**
+     * Returns the most recent slow events.
+     *
+     * @return events, the oldest first.
+     */
+    public List<SlowEvent> getSlowEvents()
+    {
+        synchronized (slowEvents)
+        {
+            return new ArrayList<SlowEvent>(slowEvents);
+        }
+    }
+
+    /**
+     * Returns the frames seen in the samples of slow events. The frames where the most
+     * samples were taken go first, then the frames seen in the most samples, then the frames
+     * closer to the top of the stack. Frames equal in all of that are ordered by name.
+     *
+     * @return hot spots.
+     */
+    public List<HotSpot> getHotSpots()
+    {
+        List<HotSpot> spots;
+        synchronized (hotSpots)
+        {
+            spots = new ArrayList<HotSpot>(hotSpots.size());
+            for (HotSpot spot : hotSpots.values()) spots.add(spot.copy());
+        }
+
+        Collections.sort(spots);
+        return spots;
+    }
+
+    /**
+     * Returns the text report with the most recent slow events and the hot spots.
+     *
+     * @return report.
+     */
+    public String getReport()
+    {
+        StringBuffer buf = new StringBuffer();
+
+        buf.append("Slow events:\n");
+        for (SlowEvent slowEvent : getSlowEvents())
+        {
+            buf.append(slowEvent).append("\n");
+
+            List<StackTraceElement[]> eventSamples = slowEvent.getSamples();
+            if (!eventSamples.isEmpty())
+            {
+                StackTraceElement[] stack = eventSamples.get(eventSamples.size() - 1);
+                for (int i = 0; i < Math.min(REPORT_FRAMES, stack.length); i++)
+                {
+                    buf.append("\tat ").append(stack[i]).append("\n");
+                }
+            }
+        }
+
+        buf.append("\nHot spots (self / total samples):\n");
+        List<HotSpot> spots = getHotSpots();
+        for (int i = 0; i < Math.min(REPORT_HOT_SPOTS, spots.size()); i++)
+        {
+            buf.append(spots.get(i)).append("\n");
+        }
+
+        return buf.toString();
+    }
+
+    /**
+     * Returns the histogram of dispatching durations for the event class.
+     *
+     * @param eventClass class.
+     *
+     * @return histogram.
+     */
+    private Histogram getHistogram(Class eventClass)
+    {
+        Histogram histogram = histograms.get(eventClass);
+        if (histogram == null)
+        {
+            histogram = Metrics.histogram("edt.dispatch." + getType(eventClass));
+            histograms.put(eventClass, histogram);
+        }
+
+        return histogram;
+    }
+
+    /**
+     * Returns the short name of the event type.
+     *
+     * @param eventClass class.
+     *
+     * @return type.
+     */
+    private static String getType(Class eventClass)
+    {
+        String type = eventClass.getSimpleName();
+        return type.length() == 0 ? eventClass.getName() : type;
+    }
+
+    /**
+     * Slow event record.
+     */
+    public static final class SlowEvent
+    {
+        private final String event;
+        private final String type;
+        private final long time;
+        private final long duration;
+        private final List<StackTraceElement[]> samples;
+
+        /**
+         * Creates record.
+         *
+         * @param anEvent       event description.
+         * @param aType         event type.
+         * @param aTime         time of the dispatching start.
+         * @param aDuration     duration of the dispatching (ms).
+         * @param aSamples      stacks sampled during the dispatching.
+         */
+        SlowEvent(String anEvent, String aType, long aTime, long aDuration,
+                  List<StackTraceElement[]> aSamples)
+        {
+            event = anEvent;
+            type = aType;
+            time = aTime;
+            duration = aDuration;
+            samples = Collections.unmodifiableList(aSamples);
+        }
+
+        /**
+         * Returns the event description.
+         *
+         * @return description.
+         */
+        public String getEvent()
+        {
+            return event;
+        }
+
+        /**
+         * Returns the event type.
+         *
+         * @return type.
+         */
+        public String getType()
+        {
+            return type;
+        }
+
+        /**
+         * Returns the time of the dispatching start.
+         *
+         * @return time.
+         */
+        public long getTime()
+        {
+            return time;
+        }
+
+        /**
+         * Returns the duration of the dispatching.
+         *
+         * @return duration (ms).
+         */
+        public long getDuration()
+        {
+            return duration;
+        }
+
+        /**
+         * Returns the stacks sampled during the dispatching, the oldest first.
+         *
+         * @return stacks.
+         */
+        public List<StackTraceElement[]> getSamples()
+        {
+            return samples;
+        }
+
+        public String toString()
+        {
+            return new Date(time) + " " + type + " " + duration + "ms, " + samples.size() +
+                " samples: " + event;
+        }
+    }
+
+    /**
+     * Frame seen in the samples.
+     */
+    public static final class HotSpot implements Comparable<HotSpot>
+    {
+        private final String frame;
+        private int selfSamples;
+        private int totalSamples;
+        private int depth = Integer.MAX_VALUE;
+
+        /**
+         * Creates hot spot.
+         *
+         * @param aFrame frame.
+         */
+        HotSpot(String aFrame)
+        {
+            frame = aFrame;
+        }
+
+        /**
+         * Returns the frame.
+         *
+         * @return frame.
+         */
+        public String getFrame()
+        {
+            return frame;
+        }
+
+        /**
+         * Returns the number of samples taken in this frame.
+         *
+         * @return samples.
+         */
+        public int getSelfSamples()
+        {
+            return selfSamples;
+        }
+
+        /**
+         * Returns the number of samples with this frame on the stack.
+         *
+         * @return samples.
+         */
+        public int getTotalSamples()
+        {
+            return totalSamples;
+        }
+
+        /**
+         * Returns the smallest distance from the top of the stack this frame was seen at.
+         *
+         * @return depth (0 - the top).
+         */
+        public int getDepth()
+        {
+            return depth;
+        }
+
+        /**
+         * Returns the copy of the hot spot.
+         *
+         * @return copy.
+         */
+        HotSpot copy()
+        {
+            HotSpot copy = new HotSpot(frame);
+            copy.selfSamples = selfSamples;
+            copy.totalSamples = totalSamples;
+            copy.depth = depth;
+            return copy;
+        }
+
+        public int compareTo(HotSpot other)
+        {
+            if (selfSamples != other.selfSamples) return other.selfSamples - selfSamples;
+            if (totalSamples != other.totalSamples) return other.totalSamples - totalSamples;
+            if (depth != other.depth) return depth < other.depth ? -1 : 1;
+            return frame.compareTo(other.frame);
+        }
+
+        public String toString()
+        {
+            return selfSamples + " / " + totalSamples + "\t" + frame;
+        }
+    }
+}
@@ -0,0 +1,417 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.xml;
+
+import java.io.CharConversionException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reader decoding the stream with the standard charset decoder. The bytes are read in
+ * blocks into the buffer and decoded right into the arrays of the caller. Buffers and
+ * decoders are taken from the pools when the reader is created and returned back when
+ * it's closed or reaches the end of the stream, so that parsing of many feeds one after
+ * another doesn't allocate them over and over again.
+ */
+public final class DecodingReader extends Reader
+{
+    /** Size of the input buffer. */
+    static final int BUFFER_SIZE = 8192;
+
+    /** Maximum number of buffers kept in the pool. */
+    private static final int POOL_SIZE = 16;
+
+    /** Pooled input buffers. */
+    private static final Queue<byte[]> BUFFERS = new ConcurrentLinkedQueue<byte[]>();
+    /** Number of buffers in the pool. */
+    private static final AtomicInteger BUFFERS_COUNT = new AtomicInteger();
+    /** Pooled decoders per charset. */
+    private static final ConcurrentMap<Charset, Queue<CharsetDecoder>> DECODERS =
+        new ConcurrentHashMap<Charset, Queue<CharsetDecoder>>();
+
+    /**
+     * What to do with the bytes which aren't valid in the encoding.
+     */
+    public enum Malformed
+    {
+        /** Each invalid byte becomes the ISO-8859-1 character and decoding goes on from the next byte. */
+        AS_LATIN1,
+        /** Invalid byte fails the reading with <code>CharConversionException</code>. */
+        FAIL,
+        /** Invalid bytes are replaced with the replacement character. */
+        REPLACE
+    }
+
+    private final Charset       charset;
+    private final Malformed     malformed;
+
+    private InputStream         stream;
+    private byte[]              buffer;
+    private ByteBuffer          input;
+    private CharsetDecoder      decoder;
+    private boolean             endOfInput;
+
+    /** Characters decoded, but not returned yet (second half of a surrogate pair). */
+    private final CharBuffer    pending = CharBuffer.allocate(2);
+
+    /**
+     * Creates a reader for the stream.
+     *
+     * @param aStream   stream to wrap.
+     * @param aCharset  charset to decode.
+     * @param aMalformed what to do with invalid bytes.
+     */
+    public DecodingReader(InputStream aStream, Charset aCharset, Malformed aMalformed)
+    {
+        this(aStream, aCharset, aMalformed, takeBuffer(), 0, 0);
+    }
+
+    /**
+     * Creates a reader for the stream with some first bytes already in the buffer.
+     *
+     * @param aStream   stream to wrap.
+     * @param aCharset  charset to decode.
+     * @param aMalformed what to do with invalid bytes.
+     * @param aBuffer   pooled buffer.
+     * @param offset    offset of the first byte to decode.
+     * @param length    number of bytes in the buffer starting from offset.
+     */
+    DecodingReader(InputStream aStream, Charset aCharset, Malformed aMalformed,
+                   byte[] aBuffer, int offset, int length)
+    {
+        super(aStream);
+
+        stream = aStream;
+        charset = aCharset;
+        malformed = aMalformed;
+        buffer = aBuffer;
+        input = ByteBuffer.wrap(buffer, offset, length);
+        decoder = takeDecoder(charset, malformed);
+        pending.flip();
+    }
+
+    /**
+     * Detects the encoding of the stream from its first block and creates the reader decoding it.
+     *
+     * @param is    stream.
+     *
+     * @return reader.
+     *
+     * @throws IOException if reading failed or encoding isn't supported.
+     */
+    static DecodingReader open(InputStream is)
+        throws IOException
+    {
+        byte[] block = takeBuffer();
+
+        try
+        {
+            int length = fill(is, block, EncodingDetector.BUFFER_SIZE);
+            String encoding = EncodingDetector.detectEncoding(block, length);
+
+            // UTF-16 decoder takes the endianness from the byte order mark, so we leave it
+            int offset = encoding.equals("UTF-16") ? 0 : EncodingDetector.getBOMLength(block, length);
+
+            return XmlReaderFactory.createDecodingReader(is, encoding, block, offset, length - offset);
+        } catch (IOException e)
+        {
+            releaseBuffer(block);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the name of the charset this reader decodes.
+     *
+     * @return charset name.
+     */
+    public String getEncoding()
+    {
+        return charset.name();
+    }
+
+    /**
+     * Read characters into a portion of an array.  This method will block until some input is
+     * available, an I/O error occurs, or the end of the stream is reached.
+     *
+     * @param cbuf Destination buffer
+     * @param off  Offset at which to start storing characters
+     * @param len  Maximum number of characters to read
+     *
+     * @return The number of characters read, or -1 if the end of the stream has been reached
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public int read(char cbuf[], int off, int len)
+        throws IOException
+    {
+        if (off < 0 || len < 0 || off + len > cbuf.length) throw new IndexOutOfBoundsException();
+        if (len == 0) return 0;
+
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while (pending.hasRemaining() && out.hasRemaining()) out.put(pending.get());
+
+        while (out.hasRemaining() && decoder != null)
+        {
+            CoderResult result = decoder.decode(input, out, endOfInput);
+
+            if (result.isUnderflow())
+            {
+                if (endOfInput)
+                {
+                    decoder.flush(out);
+                    release();
+                } else if (out.position() > off && stream.available() == 0)
+                {
+                    // Return what we have rather than block for more
+                    break;
+                } else readBlock();
+            } else if (result.isOverflow())
+            {
+                // The output is too short for a surrogate pair
+                if (out.position() == off) decodePair(out);
+                break;
+            } else malformed(result, out);
+        }
+
+        int read = out.position() - off;
+        return read == 0 && decoder == null ? -1 : read;
+    }
+
+    /**
+     * Decodes the pair of characters into the pending buffer and puts the first of them in output.
+     *
+     * @param out   output buffer.
+     *
+     * @throws IOException if bytes are invalid.
+     */
+    private void decodePair(CharBuffer out)
+        throws IOException
+    {
+        pending.clear();
+        CoderResult result = decoder.decode(input, pending, endOfInput);
+        if (result.isError()) malformed(result, pending);
+        pending.flip();
+
+        if (pending.hasRemaining()) out.put(pending.get());
+    }
+
+    /**
+     * Handles the invalid sequence of bytes.
+     *
+     * @param result    decoding result.
+     * @param out       output buffer.
+     *
+     * @throws CharConversionException if the reader doesn't accept invalid bytes.
+     */
+    private void malformed(CoderResult result, CharBuffer out)
+        throws CharConversionException
+    {
+        if (!out.hasRemaining()) return;
+
+        int ch = input.get(input.position()) & 0xff;
+
+        if (malformed == Malformed.FAIL)
+        {
+            throw new CharConversionException("Illegal " + charset.name() + " character, 0x" +
+                Integer.toHexString(ch));
+        }
+
+        // The first byte goes as it is, the rest is decoded again
+        out.put((char)ch);
+        input.position(input.position() + 1);
+    }
+
+    /**
+     * Moves the undecoded bytes to the start of the buffer and reads more after them.
+     *
+     * @throws IOException if reading failed.
+     */
+    private void readBlock()
+        throws IOException
+    {
+        input.compact();
+
+        int read = stream.read(buffer, input.position(), input.remaining());
+        if (read == -1) endOfInput = true; else input.position(input.position() + read);
+
+        input.flip();
+    }
+
+    /**
+     * Tell whether this stream is ready to be read.
+     *
+     * @return True if the next read() is guaranteed not to block for input, false otherwise.  Note
+     *         that returning false does not guarantee that the next read will block.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public boolean ready()
+        throws IOException
+    {
+        return pending.hasRemaining() || decoder == null || input.hasRemaining() ||
+            stream.available() != 0;
+    }
+
+    /**
+     * Close the stream. Closing a previously-closed stream has no effect.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void close()
+        throws IOException
+    {
+        release();
+        if (stream != null)
+        {
+            stream.close();
+            stream = null;
+        }
+    }
+
+    /**
+     * Returns the buffer and the decoder to the pools.
+     */
+    private void release()
+    {
+        if (decoder != null)
+        {
+            releaseDecoder(charset, decoder);
+            releaseBuffer(buffer);
+            decoder = null;
+            buffer = null;
+            input = ByteBuffer.allocate(0);
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------
+    // Pools
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Reads from the stream until the buffer has at least the given number of bytes or
+     * the stream ends.
+     *
+     * @param is        stream.
+     * @param buf       buffer.
+     * @param min       minimum number of bytes.
+     *
+     * @return number of bytes read.
+     *
+     * @throws IOException if reading failed.
+     */
+    private static int fill(InputStream is, byte[] buf, int min)
+        throws IOException
+    {
+        int length = 0;
+        int read = 0;
+
+        while (length < min && read != -1)
+        {
+            read = is.read(buf, length, buf.length - length);
+            if (read > 0) length += read;
+        }
+
+        return length;
+    }
+
+    /**
+     * Takes the buffer from the pool or creates new one.
+     *
+     * @return buffer.
+     */
+    private static byte[] takeBuffer()
+    {
+        byte[] buf = BUFFERS.poll();
+        if (buf == null) buf = new byte[BUFFER_SIZE]; else BUFFERS_COUNT.decrementAndGet();
+
+        return buf;
+    }
+
+    /**
+     * Returns the buffer to the pool unless it's full.
+     *
+     * @param buf   buffer.
+     */
+    private static void releaseBuffer(byte[] buf)
+    {
+        if (BUFFERS_COUNT.incrementAndGet() <= POOL_SIZE)
+        {
+            BUFFERS.offer(buf);
+        } else BUFFERS_COUNT.decrementAndGet();
+    }
+
+    /**
+     * Takes the decoder for the charset from the pool or creates new one.
+     *
+     * @param charset   charset.
+     * @param malformed what to do with invalid bytes.
+     *
+     * @return decoder.
+     */
+    private static CharsetDecoder takeDecoder(Charset charset, Malformed malformed)
+    {
+        Queue<CharsetDecoder> pool = DECODERS.get(charset);
+        CharsetDecoder decoder = pool == null ? null : pool.poll();
+        if (decoder == null) decoder = charset.newDecoder();
+
+        CodingErrorAction action = malformed == Malformed.REPLACE
+            ? CodingErrorAction.REPLACE : CodingErrorAction.REPORT;
+
+        return decoder.onMalformedInput(action).onUnmappableCharacter(action);
+    }
+
+    /**
+     * Resets the decoder and returns it to the pool unless it's full.
+     *
+     * @param charset   charset.
+     * @param decoder   decoder.
+     */
+    private static void releaseDecoder(Charset charset, CharsetDecoder decoder)
+    {
+        Queue<CharsetDecoder> pool = DECODERS.get(charset);
+        if (pool == null)
+        {
+            Queue<CharsetDecoder> newPool = new ConcurrentLinkedQueue<CharsetDecoder>();
+            pool = DECODERS.putIfAbsent(charset, newPool);
+            if (pool == null) pool = newPool;
+        }
+
+        // Counting the queue is cheap for the small pools
+        if (pool.size() < POOL_SIZE) pool.offer(decoder.reset());
+    }
+}
@@ -34,7 +34,8 @@ import java.io.ByteArrayInputStream;
  */
 public final class EncodingDetector
 {
-    private static final int BUFFER_SIZE = 256;
+    /** Number of bytes the encoding is detected from. */
+    static final int BUFFER_SIZE = 256;
 
     /**
      * Hidden utility class constructor.
@@ -57,23 +58,40 @@ public final class EncodingDetector
     public static DetectionResult detectEncoding(InputStream is)
         throws IOException
     {
-        String encoding = "UTF-8";
-        byte[] buf = new byte[4];
+        byte[] block = new byte[BUFFER_SIZE];
 
         PushbackInputStream pb = new PushbackInputStream(is, BUFFER_SIZE);
-        int len = pb.read(buf);
+        int len = fillBuffer(pb, block);
 
-        int unread = len;
-        if (len == 4)
-        {
-            // Convert first four bytes of the buffer into the 32-bit integer
-            // and compare to all known signatures. The comments within the if-blocks
-            // show what the signature means.
+        String encoding = detectEncoding(block, len);
+        int bom = getBOMLength(block, len);
+
+        // Put back all but the byte order mark
+        pb.unread(block, bom, len - bom);
 
-            int nmb = (buf[0] & 0xff) << 24;
-            nmb |= (buf[1] & 0xff) << 16;
-            nmb |= (buf[2] & 0xff) << 8;
-            nmb |= (buf[3] & 0xff);
+        return new DetectionResult(encoding, pb);
+    }
+
+    /**
+     * Detects encoding from the first block of the stream.
+     *
+     * @param block     first bytes of the stream.
+     * @param len       number of bytes in the block.
+     *
+     * @return encoding.
+     *
+     * @throws IOException in case of errors.
+     */
+    static String detectEncoding(byte[] block, int len)
+        throws IOException
+    {
+        String encoding = "UTF-8";
+
+        int nmb = getSignature(block, len);
+        if (nmb != 0)
+        {
+            // Compare the first four bytes to all known signatures. The comments within
+            // the if-blocks show what the signature means.
 
             int tempNmb;
 
@@ -81,9 +99,7 @@ public final class EncodingDetector
             {
                 // <?xm
                 // The start of <?xml version...?> declaration. We can get encoding from it.
-                unread = 0;
-                pb.unread(buf, 0, 4);
-                encoding = detectEncodingByDeclaration(pb, "UTF-8");
+                encoding = detectEncodingByDeclaration(block, len, "UTF-8");
             } else if ((nmb & 0xff00ff00) == 0)
             {
                 // Standard "UTF-16 BE" signature.
@@ -95,47 +111,78 @@ public final class EncodingDetector
             } else if (nmb == 0x4c6fa794)
             {
                 // Standard "EBCDIC" signature.
-                unread = 0;
-                encoding = detectEncodingByDeclaration(pb, "CP037");
-            } else if ((nmb & 0xffffff00) == 0xefbbbf00)
-            {
-                // Standard "UTF-8" signature.
-                unread = 1;
+                encoding = detectEncodingByDeclaration(block, len, "CP037");
             } else if ((tempNmb = nmb & 0xffff0000) == 0xfeff0000 || tempNmb == 0xfffe0000)
             {
                 // Standard "UTF-16" signature.
                 encoding = "UTF-16";
-                unread = 2;
             }
         }
 
-        // Unread only these from tail
-        if (unread > 0) pb.unread(buf, len - unread, unread);
+        return encoding;
+    }
 
-        return new DetectionResult(encoding, pb);
+    /**
+     * Returns the length of the byte order mark in the start of the block.
+     *
+     * @param block     first bytes of the stream.
+     * @param len       number of bytes in the block.
+     *
+     * @return length of the mark or <code>0</code> if there's no mark.
+     */
+    static int getBOMLength(byte[] block, int len)
+    {
+        int nmb = getSignature(block, len);
+        int bom = 0;
+
+        if ((nmb & 0xffffff00) == 0xefbbbf00)
+        {
+            // UTF-8
+            bom = 3;
+        } else if ((nmb & 0xff00ff00) != 0 && (nmb & 0x00ff00ff) != 0 &&
+            ((nmb & 0xffff0000) == 0xfeff0000 || (nmb & 0xffff0000) == 0xfffe0000))
+        {
+            // UTF-16
+            bom = 2;
+        }
+
+        return bom;
+    }
+
+    /**
+     * Converts the first four bytes of the block into the 32-bit integer.
+     *
+     * @param block     first bytes of the stream.
+     * @param len       number of bytes in the block.
+     *
+     * @return signature or <code>0</code> if the block is shorter than four bytes.
+     */
+    private static int getSignature(byte[] block, int len)
+    {
+        if (len < 4) return 0;
+
+        return (block[0] & 0xff) << 24 | (block[1] & 0xff) << 16 | (block[2] & 0xff) << 8 |
+            (block[3] & 0xff);
     }
 
     /**
      * Detects encoding from XML declaration header.
      *
-     * @param pb        pushback input stream.
+     * @param block     first bytes of the stream.
+     * @param len       number of bytes in the block.
      * @param encoding  default encoding to return.
      *
      * @return detected or default encoding.
      *
      * @throws IOException in case of errors.
      */
-    static String detectEncodingByDeclaration(PushbackInputStream pb, String encoding)
+    static String detectEncodingByDeclaration(byte[] block, int len, String encoding)
         throws IOException
     {
-        byte[] buffer = new byte[BUFFER_SIZE];
-
-        int read = fillBuffer(pb, buffer);
-        pb.unread(buffer, 0, read);
-
-        if (read > 0)
+        if (len > 0)
         {
-            String detected = readEncodingDeclaration(new ByteArrayInputStream(buffer, 0, read));
+            String detected = readEncodingDeclaration(
+                new ByteArrayInputStream(block, 0, Math.min(len, BUFFER_SIZE)));
             if (detected != null) encoding = detected.trim();
         }
 
@@ -152,7 +199,7 @@ public final class EncodingDetector
      *
      * @throws IOException I/O error.
      */
-    private static int fillBuffer(InputStream is, byte[] buf)
+    static int fillBuffer(InputStream is, byte[] buf)
         throws IOException
     {
         int pos;
@@ -29,8 +29,10 @@ import org.apache.commons.lang.StringUtils;
 import java.io.Reader;
 import java.io.InputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Constructor;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.Properties;
@@ -50,6 +52,12 @@ public final class XmlReaderFactory
     private static Map readers;
     private static Map aliases;
 
+    /** Charsets decoding the same as the readers from <code>mapping.properties</code>. */
+    private static final Map<String, Charset> READER_CHARSETS = new HashMap<String, Charset>();
+    /** What the readers from <code>mapping.properties</code> do with invalid bytes. */
+    private static final Map<String, DecodingReader.Malformed> READER_MALFORMED =
+        new HashMap<String, DecodingReader.Malformed>();
+
     static
     {
         String pckg = XmlReaderFactory.class.getPackage().getName().replaceAll("\\.", "/") + "/";
@@ -62,6 +70,13 @@ public final class XmlReaderFactory
         {
             LOG.log(Level.SEVERE, Strings.error("failed.to.initialize.maps"), e);
         }
+
+        READER_CHARSETS.put("UTF8Reader", Charset.forName("UTF-8"));
+        READER_MALFORMED.put("UTF8Reader", DecodingReader.Malformed.AS_LATIN1);
+        READER_CHARSETS.put("ASCIIReader", Charset.forName("US-ASCII"));
+        READER_MALFORMED.put("ASCIIReader", DecodingReader.Malformed.FAIL);
+        READER_CHARSETS.put("ISO88591Reader", Charset.forName("ISO-8859-1"));
+        READER_MALFORMED.put("ISO88591Reader", DecodingReader.Malformed.REPLACE);
     }
 
     /**
@@ -86,18 +101,86 @@ public final class XmlReaderFactory
     {
         if (encoding == null || is == null) return null;
 
-        // First try to get reader from mapping
-        Reader reader = createReaderForMappedEncoding(is, encoding);
+        return new DecodingReader(is, getCharset(encoding), getMalformed(encoding));
+    }
 
-        // If reader wasn't found, create standard one for given encoding
-        if (reader == null) reader = new InputStreamReader(is, convertEncodingAlias(encoding));
+    /**
+     * Creates decoding reader for given encoding with the first block of the stream
+     * already read.
+     *
+     * @param is        input stream to wrap.
+     * @param encoding  encoding to use.
+     * @param block     pooled buffer with the first block.
+     * @param offset    offset of the first byte to decode.
+     * @param length    number of bytes in the block starting from offset.
+     *
+     * @return reader.
+     *
+     * @throws UnsupportedEncodingException if encoding isn't supported.
+     */
+    static DecodingReader createDecodingReader(InputStream is, String encoding, byte[] block,
+                                               int offset, int length)
+        throws UnsupportedEncodingException
+    {
+        return new DecodingReader(is, getCharset(encoding), getMalformed(encoding),
+            block, offset, length);
+    }
 
-        return reader;
+    /**
+     * Returns the charset for the encoding. The encodings of the readers from
+     * <code>mapping.properties</code> are decoded the same way the readers do it, all
+     * others are de-aliased first.
+     *
+     * @param encoding  encoding name or alias.
+     *
+     * @return charset.
+     *
+     * @throws UnsupportedEncodingException if encoding isn't supported.
+     */
+    static Charset getCharset(String encoding)
+        throws UnsupportedEncodingException
+    {
+        Charset charset = READER_CHARSETS.get(readers.get(encoding.toLowerCase()));
+
+        if (charset == null)
+        {
+            String name = convertEncodingAlias(encoding);
+            try
+            {
+                charset = Charset.forName(name);
+            } catch (IllegalCharsetNameException e)
+            {
+                throw new UnsupportedEncodingException(name);
+            } catch (IllegalArgumentException e)
+            {
+                // Unsupported charset exception is one of those
+                throw new UnsupportedEncodingException(name);
+            }
+        }
+
+        return charset;
+    }
+
+    /**
+     * Returns what to do with invalid bytes in the encoding. The readers from
+     * <code>mapping.properties</code> have their own rules, all other encodings
+     * replace invalid bytes.
+     *
+     * @param encoding  encoding name or alias.
+     *
+     * @return policy.
+     */
+    static DecodingReader.Malformed getMalformed(String encoding)
+    {
+        DecodingReader.Malformed malformed = READER_MALFORMED.get(readers.get(encoding.toLowerCase()));
+
+        return malformed == null ? DecodingReader.Malformed.REPLACE : malformed;
     }
 
     /**
      * Create reader for mapped encoding. If the encoding is present in
-     * <code>mapping.properties</code> then the reader will be created.
+     * <code>mapping.properties</code> then the reader will be created. These readers
+     * aren't used for parsing any more, but they define how their encodings are decoded.
      *
      * @param is        input stream to wrap.
      * @param encoding  encoding to use.
@@ -214,9 +297,6 @@ public final class XmlReaderFactory
     {
         if (is == null) return null;
 
-        EncodingDetector.DetectionResult result = EncodingDetector.detectEncoding(is);
-        String encoding = result.getEncoding();
-
-        return createReaderForEncoding(result.getStream(), encoding);
+        return DecodingReader.open(is);
     }
 }
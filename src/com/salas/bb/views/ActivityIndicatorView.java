@@ -28,6 +28,8 @@ import com.jgoodies.uif.util.ResourceUtils;
 import com.salas.bb.utils.ConnectionState;
 import com.salas.bb.utils.ResourceID;
 import com.salas.bb.utils.StringUtils;
+import com.salas.bb.utils.concurrency.ScheduledTask;
+import com.salas.bb.utils.concurrency.Scheduler;
 import com.salas.bb.utils.i18n.Strings;
 import com.salas.bb.utils.uif.ActivityIndicatorBox;
 
@@ -36,7 +38,6 @@ import java.awt.*;
 import java.awt.event.MouseListener;
 import java.text.MessageFormat;
 import java.util.List;
-import java.util.TimerTask;
 import java.util.Vector;
 
 /**
@@ -83,8 +84,7 @@ public final class ActivityIndicatorView extends JPanel
         add(indDisk);
         add(indNetwork);
 
-        java.util.Timer blinker = new java.util.Timer(true);
-        blinker.scheduleAtFixedRate(new Blinker(), 0, BLINK_PERIOD);
+        Scheduler.interfaceLane().scheduleAtFixedRate(new Blinker(), 0, BLINK_PERIOD);
 
         INSTANCE = this;
     }
@@ -128,6 +128,35 @@ public final class ActivityIndicatorView extends JPanel
             Strings.message("activity.opening.database"));
     }
 
+    /**
+     * Indicate the start of database maintenance operation.
+     *
+     * @param operation name of the operation.
+     *
+     * @return task ticket.
+     */
+    public static synchronized ActivityTicket startDatabaseMaintenance(String operation)
+    {
+        return INSTANCE.startActivity(ActivityTicket.TYPE_DISK, operation);
+    }
+
+    /**
+     * Updates the progress of database maintenance operation.
+     *
+     * @param ticket    task ticket.
+     * @param operation name of the operation.
+     * @param percent   percent complete.
+     */
+    public static synchronized void updateDatabaseMaintenance(ActivityTicket ticket, String operation,
+                                                              int percent)
+    {
+        ticket.setTitle(MessageFormat.format(Strings.message("activity.database.maintenance"),
+            new Object[] { operation, new Integer(percent) }));
+
+        int type = ticket.getType();
+        if (INSTANCE.getTicketsByType(type).contains(ticket)) INSTANCE.updateBox(type);
+    }
+
     /**
      * Starts displaying activity of a given type with specified message.
      *
@@ -237,7 +266,7 @@ public final class ActivityIndicatorView extends JPanel
      * change icon the the one, which corresponds to the specified
      * state to emulate blink effect.
      */
-    private class Blinker extends TimerTask
+    private class Blinker extends ScheduledTask
     {
         private final Blink active = new Blink(true);
         private final Blink passive = new Blink(false);
@@ -60,6 +60,16 @@ public class ActivityTicket
         return type;
     }
 
+    /**
+     * Changes the title of the activity.
+     *
+     * @param aTitle title of the activity.
+     */
+    void setTitle(String aTitle)
+    {
+        title = aTitle;
+    }
+
     /**
      * Returns text ready to display as description.
      *
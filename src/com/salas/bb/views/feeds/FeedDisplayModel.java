@@ -29,6 +29,7 @@ import com.jgoodies.binding.value.ValueModel;
 import com.salas.bb.domain.FeedAdapter;
 import com.salas.bb.domain.IArticle;
 import com.salas.bb.domain.IArticleListener;
+import com.salas.bb.domain.IArticlesReadListener;
 import com.salas.bb.domain.IFeed;
 import com.salas.bb.domain.utils.ArticleDateComparator;
 import com.salas.bb.utils.IdentityList;
@@ -789,21 +790,28 @@ public class FeedDisplayModel
     }
 
     /**
-     * Invoked when article changes.
+     * Invoked when articles change. The page is updated once for all of them.
      *
-     * @param article article
+     * @param articles articles.
      */
-    private void onArticleChanged(IArticle article)
+    private void onArticlesChanged(IArticle ... articles)
     {
-        if ((filter == FILTER_UNREAD && (hideArticlesWhenRead || !article.isRead())) ||
-            filter == FILTER_NEGATIVE || filter == FILTER_NON_NEGATIVE || filter == FILTER_POSITIVE)
+        boolean updated = false;
+
+        for (IArticle article : articles)
         {
-            if (reviewArticle(article))
+            if ((filter == FILTER_UNREAD && (hideArticlesWhenRead || !article.isRead())) ||
+                filter == FILTER_NEGATIVE || filter == FILTER_NON_NEGATIVE || filter == FILTER_POSITIVE)
             {
-                updatePageCount();
-                updatePage();
+                updated |= reviewArticle(article);
             }
         }
+
+        if (updated)
+        {
+            updatePageCount();
+            updatePage();
+        }
     }
 
     /**
@@ -1082,7 +1090,7 @@ public class FeedDisplayModel
     /**
      * Listener for article read/unread state changes.
      */
-    private class ArticleListener implements IArticleListener
+    private class ArticleListener implements IArticlesReadListener
     {
         private List<String> interestingProperties;
 
@@ -1112,10 +1120,35 @@ public class FeedDisplayModel
             {
                 if (UifUtilities.isEDT())
                 {
-                    onArticleChanged(article);
+                    onArticlesChanged(article);
                 } else SwingUtilities.invokeLater(new UpdateModel(article, UpdateAction.CHANGED));
             }
         }
+
+        /**
+         * Invoked when articles have changed their read state in bulk.
+         *
+         * @param feed      feed the articles belong to.
+         * @param articles  articles which changed the state.
+         * @param read      <code>TRUE</code> if they are read now.
+         */
+        public void articlesReadChanged(IFeed feed, final IArticle[] articles, boolean read)
+        {
+            if (UifUtilities.isEDT())
+            {
+                onArticlesChanged(articles);
+            } else
+            {
+                final long timestamp = System.currentTimeMillis();
+                SwingUtilities.invokeLater(new Runnable()
+                {
+                    public void run()
+                    {
+                        if (timestamp >= feedChangeTime) onArticlesChanged(articles);
+                    }
+                });
+            }
+        }
     }
 
     /**
@@ -1162,7 +1195,7 @@ public class FeedDisplayModel
                         onArticleRemoved(article);
                         break;
                     default:
-                        onArticleChanged(article);
+                        onArticlesChanged(article);
                 }
             }
         }
@@ -39,6 +39,8 @@ import com.salas.bb.sentiments.Calculator;
 import com.salas.bb.sentiments.SentimentsConfig;
 import com.salas.bb.sentiments.SentimentsFeature;
 import com.salas.bb.utils.StringUtils;
+import com.salas.bb.utils.concurrency.Lane;
+import com.salas.bb.utils.concurrency.Scheduler;
 import com.salas.bb.utils.i18n.Strings;
 import com.salas.bb.utils.swinghtml.TextProcessor;
 import com.salas.bb.utils.uif.*;
@@ -64,9 +66,6 @@ import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -80,7 +79,7 @@ public class HTMLArticleDisplay extends AbstractArticleDisplay implements IArtic
     private static final String MSG_SIZING_DATE;
     private static final String MSG_SIZING_TIME;
 
-    private static final ExecutorService executor;
+    private static final Lane executor;
 
     public  static final Color COLOR_BORDER_LINE = Color.decode("#dfdfdf"); //bfbfbf
 
@@ -147,16 +146,7 @@ public class HTMLArticleDisplay extends AbstractArticleDisplay implements IArtic
         MSG_SIZING_DATE = getDateFormat().format(c.getTime()) + "2";
         MSG_SIZING_TIME = getTimeFormat().format(c.getTime()) + "2";
 
-        executor = Executors.newFixedThreadPool(2, new ThreadFactory()
-        {
-            public Thread newThread(Runnable r)
-            {
-                Thread th = new Thread(r, "Article Tasks");
-                th.setDaemon(true);
-                th.setPriority(Thread.MIN_PRIORITY);
-                return th;
-            }
-        });
+        executor = Scheduler.lane("Article Tasks", 2, Thread.MIN_PRIORITY);
     }
 
     /**
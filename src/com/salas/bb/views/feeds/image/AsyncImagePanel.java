@@ -25,17 +25,19 @@
 package com.salas.bb.views.feeds.image;
 
 import com.salas.bb.utils.i18n.Strings;
-import com.salas.bb.utils.uif.images.ImageFetcher;
+import com.salas.bb.utils.uif.images.IThumbnailListener;
+import com.salas.bb.utils.uif.images.ThumbnailLoader;
 
 import javax.swing.*;
 import javax.swing.border.Border;
 import java.awt.*;
 import java.awt.event.MouseEvent;
-import java.awt.image.ImageObserver;
+import java.awt.image.BufferedImage;
 import java.net.URL;
 
 /**
- * Image icon with asynchronous load of data.
+ * Image icon with asynchronous load of data. The image is decoded in background right at
+ * the size of the panel and painted as is.
  */
 class AsyncImagePanel extends JComponent
 {
@@ -59,8 +61,7 @@ class AsyncImagePanel extends JComponent
     private int                 maxWidth;
     private int                 maxHeight;
 
-    private Image               image;
-    private Image               rescaledImage;
+    private BufferedImage       image;
     private Image               badge;
 
     private int                 status;
@@ -86,7 +87,6 @@ class AsyncImagePanel extends JComponent
 
         imageURL = aImageURL;
         image = null;
-        rescaledImage = null;
         observer = new ImageHandler();
 
         secondMode = aSecondMode;
@@ -145,11 +145,7 @@ class AsyncImagePanel extends JComponent
 
         setPreferredSize(new Dimension(width, height));
 
-        if (STATUS_LOADED == status)
-        {
-            rescaledImage = null;
-            loadImage();
-        }
+        if (STATUS_INCEPTION != status) loadImage();
     }
 
     /**
@@ -158,8 +154,7 @@ class AsyncImagePanel extends JComponent
     private void loadImage()
     {
         status = STATUS_LOADING;
-        image = ImageFetcher.load(imageURL);
-        if (image.getHeight(observer) != -1) status = STATUS_LOADED;
+        ThumbnailLoader.load(imageURL, maxWidth, maxHeight, observer);
     }
 
     /**
@@ -267,83 +262,34 @@ class AsyncImagePanel extends JComponent
     /** Paint loaded state. */
     private void paintLoaded(Graphics g)
     {
-        if (rescaledImage == null)
-        {
-            rescaledImage = rescaleImage(image);
-            if (rescaledImage != null) image = null;
-        }
-
-        if (rescaledImage != null)
-        {
-            int width = rescaledImage.getWidth(observer);
-            int height = rescaledImage.getHeight(observer);
+        int width = image.getWidth();
+        int height = image.getHeight();
 
-            if (width == -1 || height == -1)
-            {
-                paintLoading(g);
-            } else
-            {
-                Border border = getBorder();
-                Insets insets = border.getBorderInsets(this);
-
-                int picX = (maxWidth - width) / 2 + insets.left;
-                int picY = (maxHeight - height) / 2 + insets.top;
-
-                g.drawImage(rescaledImage, picX, picY, width, height, observer);
-
-                if (INDICATION_TYPE == INDICATION_BORDER && g instanceof Graphics2D)
-                {
-                    ((Graphics2D)g).setComposite(!overrideFirstMode && secondMode
-                        ? COMPOSITE_MODE_2 : COMPOSITE_MODE_1);
-                }
+        Border border = getBorder();
+        Insets insets = border.getBorderInsets(this);
 
-                border.paintBorder(this, g, picX, picY, width, height);
+        int picX = (maxWidth - width) / 2 + insets.left;
+        int picY = (maxHeight - height) / 2 + insets.top;
 
-                if (INDICATION_TYPE == INDICATION_FRAME && !secondMode)
-                {
-                    g.setColor(Color.WHITE);
-                    g.drawRect(picX + 1, picY + 1, width - 2, height - 2);
-                    g.setColor(Color.BLACK);
-                    g.drawRect(picX, picY, width, height);
-                }
+        g.drawImage(image, picX, picY, null);
 
-                paintBadge(g, width, height);
-            }
+        if (INDICATION_TYPE == INDICATION_BORDER && g instanceof Graphics2D)
+        {
+            ((Graphics2D)g).setComposite(!overrideFirstMode && secondMode
+                ? COMPOSITE_MODE_2 : COMPOSITE_MODE_1);
         }
-    }
 
-    /**
-     * Rescales an image to fit the desired dimensions.
-     *
-     * @param src source image.
-     *
-     * @return destination image.
-     */
-    private Image rescaleImage(Image src)
-    {
-        Image dest = null;
+        border.paintBorder(this, g, picX, picY, width, height);
 
-        int imgWidth = src.getWidth(observer);
-        if (imgWidth != -1)
+        if (INDICATION_TYPE == INDICATION_FRAME && !secondMode)
         {
-            int imgHeight = src.getHeight(observer);
-
-            if (imgHeight != -1)
-            {
-                int picWidth = imgWidth;
-                int picHeight = imgHeight;
-
-                if (picWidth > maxWidth || picHeight > maxHeight)
-                {
-                    picWidth = imgWidth > imgHeight ? maxWidth : (imgWidth * maxHeight / imgHeight);
-                    picHeight = imgWidth > imgHeight ? (imgHeight * maxWidth / imgWidth) : maxHeight;
-                }
-
-                dest = src.getScaledInstance(picWidth, picHeight, Image.SCALE_SMOOTH);
-            }
+            g.setColor(Color.WHITE);
+            g.drawRect(picX + 1, picY + 1, width - 2, height - 2);
+            g.setColor(Color.BLACK);
+            g.drawRect(picX, picY, width, height);
         }
 
-        return dest;
+        paintBadge(g, width, height);
     }
 
     /**
@@ -390,37 +336,36 @@ class AsyncImagePanel extends JComponent
     }
 
     /**
-     * Keeps an eye on loading of images.
+     * Receives loaded thumbnails.
      */
-    private class ImageHandler implements ImageObserver
+    private class ImageHandler implements IThumbnailListener
     {
         /**
-         * Invoked when loading of image brought some new bits or has been finished.
+         * Invoked when the thumbnail is ready.
          *
-         * @param img       the image being observed.
-         * @param infoflags the bitwise inclusive OR of the following flags:  <code>WIDTH</code>,
-         *                  <code>HEIGHT</code>, <code>PROPERTIES</code>, <code>SOMEBITS</code>,
-         *                  <code>FRAMEBITS</code>, <code>ALLBITS</code>, <code>ERROR</code>,
-         *                  <code>ABORT</code>.
-         * @param x         the <i>x</i> coordinate.
-         * @param y         the <i>y</i> coordinate.
-         * @param width     the width.
-         * @param height    the height.
-         *
-         * @return <code>false</code> if the infoflags indicate that the image is completely loaded;
-         *         <code>true</code> otherwise.
+         * @param url       URL of the source image.
+         * @param thumbnail thumbnail fitting the requested size.
          */
-        public boolean imageUpdate(Image img, int infoflags, int x, int y, int width, int height)
+        public void thumbnailLoaded(URL url, BufferedImage thumbnail)
         {
-            boolean loaded = (infoflags & (ALLBITS | ERROR | ABORT)) != 0;
+            // Ignore the thumbnails of sizes requested before the last resize
+            if (thumbnail.getWidth() > maxWidth || thumbnail.getHeight() > maxHeight) return;
 
-            if (loaded)
-            {
-                status = (infoflags & ALLBITS) != 0 ? STATUS_LOADED : STATUS_FAILED;
-                repaint(0);
-            }
+            image = thumbnail;
+            status = STATUS_LOADED;
+            repaint();
+        }
 
-            return !loaded;
+        /**
+         * Invoked when the image can't be loaded or decoded.
+         *
+         * @param url URL of the source image.
+         */
+        public void thumbnailFailed(URL url)
+        {
+            image = null;
+            status = STATUS_FAILED;
+            repaint();
         }
     }
 }
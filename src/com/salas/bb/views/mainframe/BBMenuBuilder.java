@@ -99,6 +99,7 @@ public class BBMenuBuilder
 
         menu.add(buildGuideMarkReadSubmenu());
         menu.add(buildGuideMarkUnreadSubmenu());
+        menu.add(ActionManager.get(ActionsTable.CMD_GUIDE_UNDO_MARKING));
         bld.addSeparator();
 
         menu.add(ActionManager.get(ActionsTable.CMD_GUIDE_IMPORT));
@@ -327,6 +328,7 @@ public class BBMenuBuilder
 
         menu.addSeparator();
         menu.add(ActionManager.get(ActionsTable.CMD_BB_ACTIVITY));
+        menu.add(ActionManager.get(ActionsTable.CMD_BB_DIAGNOSTICS));
         menu.add(ActionManager.get(ActionsTable.CMD_BB_ONLINEOFFLINE));
         menu.add(ActionManager.get(ActionsTable.CMD_BB_FORGET_PASSWORDS));
         // We don't do any updates checks when under JWS
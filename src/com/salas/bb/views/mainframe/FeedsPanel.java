@@ -34,6 +34,8 @@ import com.salas.bb.core.*;
 import com.salas.bb.domain.*;
 import com.salas.bb.domain.prefs.UserPreferences;
 import com.salas.bb.utils.StringUtils;
+import com.salas.bb.utils.concurrency.ScheduledTask;
+import com.salas.bb.utils.concurrency.Scheduler;
 import com.salas.bb.utils.dnd.DNDList;
 import com.salas.bb.utils.dnd.DNDListContext;
 import com.salas.bb.utils.dnd.IDNDObject;
@@ -55,7 +57,6 @@ import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.net.URL;
 import java.text.MessageFormat;
-import java.util.TimerTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -1416,7 +1417,6 @@ public class FeedsPanel extends CoolInternalFrame
 class FeedSelectionListener extends MouseAdapter
     implements ListSelectionListener, PropertyChangeListener
 {
-    private java.util.Timer     timer;
     private FeedSelector        task;
 
     private final Object        eventLock;
@@ -1429,11 +1429,10 @@ class FeedSelectionListener extends MouseAdapter
     public FeedSelectionListener(long aFeedSelectionDelay)
     {
         eventLock = new Object();
-        timer = new java.util.Timer(true);
         setFeedSelectionDelay(aFeedSelectionDelay);
     }
 
-    // Sets the delay and reschedules the timer.
+    // Sets the delay and reschedules the selector.
     private void setFeedSelectionDelay(long aDelay)
     {
         if (task != null) task.cancel();
@@ -1443,7 +1442,7 @@ class FeedSelectionListener extends MouseAdapter
         if (feedSelectionDelayed)
         {
             task = new FeedSelector(aDelay);
-            timer.schedule(task, 1, aDelay);
+            Scheduler.interfaceLane().schedule(task, 1, aDelay);
         }
     }
 
@@ -1552,7 +1551,7 @@ class FeedSelectionListener extends MouseAdapter
     }
 
     /** Feed selector with delay. */
-    private class FeedSelector extends TimerTask
+    private class FeedSelector extends ScheduledTask
     {
         private long lastProcessedTime;
         private long feedSelectionDelay;
@@ -35,8 +35,11 @@ import javax.swing.*;
 import java.awt.*;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The stylesheet that knows how to update itself.
@@ -45,9 +48,17 @@ abstract class AbstractStylesheet implements IStylesheet
 {
     /** Default font, color and icon */
     private static final IRule EMPTY_RULE = new Rule();
+    /** Empty list of classes. */
+    private static final String[] NO_CLASSES = new String[0];
 
     /** The map [element_name:map[class:rule]] */
-    private Map rules = new HashMap();
+    private volatile Map rules = new HashMap();
+
+    /**
+     * Resolved rules by element and classes. It's replaced after the rules, and read
+     * before them, so that it never holds the rules resolved from the previous map.
+     */
+    private volatile ConcurrentMap<RuleKey, IRule> resolved = new ConcurrentHashMap<RuleKey, IRule>();
 
     /** Default loader. */
     private static final ILoader DEFAULT_LOADER = new DirectLoader();
@@ -81,6 +92,15 @@ abstract class AbstractStylesheet implements IStylesheet
     protected void applyChanges(String newSS)
     {
         rules = Parser.parse(newSS);
+        invalidateRules();
+    }
+
+    /**
+     * Forgets all resolved rules, so that they are resolved again on the next use.
+     */
+    public void invalidateRules()
+    {
+        resolved = new ConcurrentHashMap<RuleKey, IRule>();
     }
 
     /**
@@ -122,8 +142,7 @@ abstract class AbstractStylesheet implements IStylesheet
     public Icon getIcon(String el, String[] classes)
         throws IOException
     {
-        IRule rule = getRule(el, classes);
-        return rule != null ? rule.getIcon() : null;
+        return getRule(el, classes).getIcon();
     }
 
     /**
@@ -151,7 +170,8 @@ abstract class AbstractStylesheet implements IStylesheet
     // ----------------------------------------------------------------------------------
 
     /**
-     * Returns the consolidated rule for the given set of classes.
+     * Returns the consolidated rule for the given set of classes. The rules are resolved
+     * once and then taken from the cache until the stylesheet changes.
      *
      * @param el        element.
      * @param classes   classes.
@@ -159,6 +179,33 @@ abstract class AbstractStylesheet implements IStylesheet
      * @return rule.
      */
     public IRule getRule(String el, String[] classes)
+    {
+        if (classes == null) classes = NO_CLASSES;
+
+        ConcurrentMap<RuleKey, IRule> cache = resolved;
+        IRule rule = cache.get(new RuleKey(el, classes));
+
+        if (rule == null)
+        {
+            rule = new ResolvedRule(resolveRule(el, classes));
+
+            // Classes array belongs to the caller, so the key keeps a copy
+            IRule existing = cache.putIfAbsent(new RuleKey(el, classes.clone()), rule);
+            if (existing != null) rule = existing;
+        }
+
+        return rule;
+    }
+
+    /**
+     * Merges the rules for the given set of classes.
+     *
+     * @param el        element.
+     * @param classes   classes.
+     *
+     * @return rule.
+     */
+    private IRule resolveRule(String el, String[] classes)
     {
         IRule rule;
 
@@ -194,7 +241,7 @@ abstract class AbstractStylesheet implements IStylesheet
             }
         }
 
-        return rule == null ? null : new AutoImageRule(rule);
+        return rule;
     }
 
     /**
@@ -302,7 +349,7 @@ abstract class AbstractStylesheet implements IStylesheet
     }
 
     /**
-     * Resets the cache.
+     * Resets the cache. The resolved rules holding the icons are forgotten too.
      */
     public void resetIconsCache()
     {
@@ -310,6 +357,8 @@ abstract class AbstractStylesheet implements IStylesheet
         {
             cachedIcons.clear();
         }
+
+        invalidateRules();
     }
 
     // ----------------------------------------------------------------------------------
@@ -317,23 +366,30 @@ abstract class AbstractStylesheet implements IStylesheet
     // ----------------------------------------------------------------------------------
 
     /**
-     * The automatic image loading rule.
+     * The rule resolved for some element and classes. It never changes once created and
+     * loads its icon only once, so renderers may use it freely.
      */
-    private class AutoImageRule implements IRule
+    private class ResolvedRule implements IRule
     {
-        private IRule subrule;
+        private final Font      font;
+        private final Color     color;
+        private final String    iconURL;
+
+        private volatile Icon   icon;
+        private volatile boolean iconLoaded;
 
         /**
          * Creates a rule.
          *
-         * @param subrule sub-rule.
+         * @param rule merged rule.
          */
-        public AutoImageRule(IRule subrule)
+        public ResolvedRule(IRule rule)
         {
-            this.subrule = subrule;
+            font = rule.getFont();
+            color = rule.getColor();
+            iconURL = rule.getIconURL();
         }
 
-
         /**
          * Returns the font.
          *
@@ -341,7 +397,7 @@ abstract class AbstractStylesheet implements IStylesheet
          */
         public Font getFont()
         {
-            return subrule == null ? null : subrule.getFont();
+            return font;
         }
 
         /**
@@ -351,7 +407,7 @@ abstract class AbstractStylesheet implements IStylesheet
          */
         public Color getColor()
         {
-            return subrule == null ? null : subrule.getColor();
+            return color;
         }
 
         /**
@@ -361,7 +417,7 @@ abstract class AbstractStylesheet implements IStylesheet
          */
         public String getIconURL()
         {
-            return subrule == null ? null : subrule.getIconURL();
+            return iconURL;
         }
 
         /**
@@ -373,34 +429,27 @@ abstract class AbstractStylesheet implements IStylesheet
          */
         public IRule overrideWith(IRule rule)
         {
-            if (subrule == null) subrule = rule; else subrule.overrideWith(rule);
-            return this;
+            return new Rule(font, color, iconURL).overrideWith(rule);
         }
 
         /**
-         * Returns icon from cached storage.
+         * Returns icon loading it on the first call.
          *
          * @return icon.
          */
         public Icon getIcon()
         {
-            Icon icon = subrule.getIcon();
-
-            if (icon == null)
+            if (!iconLoaded)
             {
-                String url = subrule.getIconURL();
-                if (url != null)
-                {
-                    icon = loadIcon(url);
-                    subrule.setIcon(icon);
-                }
+                icon = loadIcon(iconURL);
+                iconLoaded = true;
             }
 
             return icon;
         }
 
         /**
-         * Sets icon for cached storage.
+         * The rule is immutable and the icon is loaded automatically.
          *
          * @param icon icon.
          */
@@ -408,4 +457,44 @@ abstract class AbstractStylesheet implements IStylesheet
         {
         }
     }
+
+    /**
+     * The key of resolved rule: element and the list of classes in order.
+     */
+    private static final class RuleKey
+    {
+        private final String    el;
+        private final String[]  classes;
+        private final int       hash;
+
+        /**
+         * Creates a key.
+         *
+         * @param el        element.
+         * @param classes   classes.
+         */
+        RuleKey(String el, String[] classes)
+        {
+            this.el = el;
+            this.classes = classes;
+            hash = 31 * (el == null ? 0 : el.hashCode()) + Arrays.hashCode(classes);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) return true;
+            if (!(o instanceof RuleKey)) return false;
+
+            RuleKey key = (RuleKey)o;
+            return hash == key.hash && (el == null ? key.el == null : el.equals(key.el)) &&
+                Arrays.equals(classes, key.classes);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
 }
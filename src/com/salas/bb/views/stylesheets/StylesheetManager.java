@@ -25,7 +25,11 @@
 package com.salas.bb.views.stylesheets;
 
 import com.salas.bb.utils.FileUtils;
+import com.salas.bb.views.settings.RenderingManager;
+import com.salas.bb.views.settings.RenderingSettingsNames;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.net.URL;
 
@@ -56,6 +60,15 @@ public class StylesheetManager
     {
         StylesheetManager.baseURL = baseURL;
         StylesheetManager.cacheDir = cacheDir;
+
+        // Resolve the rules again when the theme changes
+        RenderingManager.addPropertyChangeListener(RenderingSettingsNames.THEME, new PropertyChangeListener()
+        {
+            public void propertyChange(PropertyChangeEvent evt)
+            {
+                invalidateRules();
+            }
+        });
     }
 
     /**
@@ -88,6 +101,14 @@ public class StylesheetManager
         return new RemoteStylesheet(baseURL, name, cacheDir);
     }
 
+    /**
+     * Forgets the rules resolved by the stylesheets, so that they are resolved again.
+     */
+    public static synchronized void invalidateRules()
+    {
+        if (suggestionsStylesheet != null) suggestionsStylesheet.invalidateRules();
+    }
+
     /**
      * Updates all registered stylesheets. Flushes caches etc.
      */
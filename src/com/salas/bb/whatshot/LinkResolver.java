@@ -26,8 +26,7 @@ package com.salas.bb.whatshot;
 
 import EDU.oswego.cs.dl.util.concurrent.Executor;
 import com.salas.bb.utils.StringUtils;
-import com.salas.bb.utils.concurrency.ExecutorFactory;
-import com.salas.bb.utils.concurrency.NamingThreadFactory;
+import com.salas.bb.utils.concurrency.Scheduler;
 import org.apache.commons.collections.ReferenceMap;
 
 import java.io.BufferedInputStream;
@@ -93,8 +92,7 @@ public class LinkResolver
         
         this.listener = listener;
 
-        executor = ExecutorFactory.createPooledExecutor(new NamingThreadFactory("Link Resolver", Thread.MIN_PRIORITY),
-                5, 1000);
+        executor = Scheduler.lane("Link Resolver", 5, Thread.MIN_PRIORITY);
     }
 
     /**
@@ -0,0 +1,165 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.core;
+
+import com.salas.bb.domain.DirectFeed;
+import com.salas.bb.domain.FeedsSortOrder;
+import com.salas.bb.domain.IFeed;
+import com.salas.bb.domain.StandardGuide;
+
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.util.Random;
+
+/**
+ * Measures the cost of keeping the 2000-feed guide list in order while the ratings of
+ * feeds change continuously, as they do during polling. The incremental repositioning is
+ * compared to the full rebuild the model used to do after every change.
+ */
+public final class GuideModelBenchmark
+{
+    private static final int FEEDS = 2000;
+    private static final int UPDATES = 20000;
+    private static final int UPDATES_PER_TICK = 50;
+
+    /** Hidden utility class constructor. */
+    private GuideModelBenchmark()
+    {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args arguments (unused).
+     */
+    public static void main(String[] args)
+    {
+        StandardGuide guide = new StandardGuide();
+        DirectFeed[] feeds = new DirectFeed[FEEDS];
+        for (int i = 0; i < FEEDS; i++)
+        {
+            feeds[i] = new DirectFeed();
+            feeds[i].setID(i);
+            feeds[i].setRating(i % 5);
+            guide.add(feeds[i]);
+        }
+
+        EventsCounter counter = new EventsCounter();
+        BenchmarkModel model = new BenchmarkModel();
+        model.setOptions(0, FeedsSortOrder.RATING, false, FeedsSortOrder.RATING, false, true);
+        model.setGuide(guide);
+        model.addListDataListener(counter);
+
+        Random random = new Random(1);
+        long start = System.nanoTime();
+        for (int i = 0; i < UPDATES / 10; i++)
+        {
+            feeds[random.nextInt(FEEDS)].setRating(random.nextInt(5));
+            model.rebuild(true);
+        }
+        report("Full rebuild per change", start, UPDATES / 10, counter);
+
+        random = new Random(1);
+        start = System.nanoTime();
+        for (int i = 0; i < UPDATES; i++)
+        {
+            IFeed feed = feeds[random.nextInt(FEEDS)];
+            feed.setRating(random.nextInt(5));
+            model.contentsChangedAt(feed);
+            model.repositionChangedFeeds();
+        }
+        report("Reposition per change", start, UPDATES, counter);
+
+        start = System.nanoTime();
+        for (int i = 0; i < UPDATES; i++)
+        {
+            IFeed feed = feeds[random.nextInt(FEEDS)];
+            feed.setRating(random.nextInt(5));
+            model.contentsChangedAt(feed);
+            if (i % UPDATES_PER_TICK == 0) model.repositionChangedFeeds();
+        }
+        model.repositionChangedFeeds();
+        report("Reposition " + UPDATES_PER_TICK + " changes per tick", start, UPDATES, counter);
+
+        System.exit(0);
+    }
+
+    private static void report(String name, long start, int ops, EventsCounter counter)
+    {
+        long time = System.nanoTime() - start;
+        System.out.println(name + ": " + (time / 1000000) + " ms total, " + (time / ops / 1000) +
+            " us/op, " + counter.rows / ops + " rows reported/op");
+        counter.rows = 0;
+    }
+
+    /**
+     * Model taking ratings and alphabetical order of feeds from the feeds directly.
+     */
+    private static class BenchmarkModel extends GuideModel
+    {
+        public BenchmarkModel()
+        {
+            super(null, true, null);
+        }
+
+        int getFeedRating(IFeed feed)
+        {
+            return feed.getRating();
+        }
+
+        int getFeedAlphaOrder(IFeed feed)
+        {
+            return (int)feed.getID();
+        }
+    }
+
+    /**
+     * Counts the rows reported in events.
+     */
+    private static class EventsCounter implements ListDataListener
+    {
+        private long rows;
+
+        public void intervalAdded(ListDataEvent e)
+        {
+            count(e);
+        }
+
+        public void intervalRemoved(ListDataEvent e)
+        {
+            count(e);
+        }
+
+        public void contentsChanged(ListDataEvent e)
+        {
+            count(e);
+        }
+
+        private void count(ListDataEvent e)
+        {
+            rows += Math.abs(e.getIndex1() - e.getIndex0()) + 1;
+        }
+    }
+}
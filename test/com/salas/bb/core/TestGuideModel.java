@@ -27,6 +27,12 @@ package com.salas.bb.core;
 import com.salas.bb.domain.*;
 import junit.framework.TestCase;
 
+import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * This suite contains tests for <code>GuideModel</code> unit.
  * It covers:
@@ -191,6 +197,166 @@ public class TestGuideModel extends TestCase
         model.ensureVisibilityOf(null);
     }
 
+    /**
+     * Changed feeds are moved to the same places the full rebuild would put them, and
+     * only the moved rows are reported.
+     *
+     * @throws Exception if something fails.
+     */
+    public void testReposition()
+        throws Exception
+    {
+        StandardGuide guide = new StandardGuide();
+        VisibilityFeed[] feeds = new VisibilityFeed[5];
+        for (int i = 0; i < feeds.length; i++)
+        {
+            feeds[i] = new VisibilityFeed(i, i % 3);
+            guide.add(feeds[i]);
+        }
+
+        CustomScoreCalculationsModel model = new CustomScoreCalculationsModel(true);
+        model.setOptions(0, FeedsSortOrder.RATING, false, FeedsSortOrder.RATING, false, true);
+        model.setGuide(guide);
+        assertOrder(guide, model, true);
+
+        EventsRecorder recorder = new EventsRecorder();
+        model.addListDataListener(recorder);
+
+        // Move the last feed to the top
+        int from = model.indexOf(feeds[3]);
+        feeds[3].setRating(4);
+        changed(model, recorder, feeds[3]);
+        assertOrder(guide, model, true);
+        assertEquals(0, model.indexOf(feeds[3]));
+        assertEquals(1, recorder.events.size());
+        assertEvent(recorder.events.get(0), ListDataEvent.CONTENTS_CHANGED, 0, from);
+
+        // Nothing moves
+        recorder.events.clear();
+        changed(model, recorder, feeds[3]);
+        assertEquals(0, recorder.events.size());
+
+        // Hide and show
+        int index = model.indexOf(feeds[1]);
+        feeds[1].visible = false;
+        changed(model, recorder, feeds[1]);
+        assertEquals(-1, model.indexOf(feeds[1]));
+        assertEquals(4, model.getSize());
+        assertEquals(1, recorder.events.size());
+        assertEvent(recorder.events.get(0), ListDataEvent.INTERVAL_REMOVED, index, index);
+
+        recorder.events.clear();
+        feeds[1].visible = true;
+        feeds[1].setRating(0);
+        changed(model, recorder, feeds[1]);
+        assertOrder(guide, model, true);
+        assertEquals(1, recorder.events.size());
+        assertEvent(recorder.events.get(0), ListDataEvent.INTERVAL_ADDED, model.indexOf(feeds[1]),
+            model.indexOf(feeds[1]));
+
+        // Several changes are applied together
+        recorder.events.clear();
+        feeds[0].setRating(3);
+        feeds[2].setRating(0);
+        feeds[4].setRating(1);
+        changed(model, recorder, feeds[0], feeds[2], feeds[4], feeds[0]);
+        assertOrder(guide, model, true);
+        assertEquals(1, recorder.events.size());
+    }
+
+    /**
+     * Repositioning works with sorting disabled.
+     *
+     * @throws Exception if something fails.
+     */
+    public void testRepositionUnsorted()
+        throws Exception
+    {
+        StandardGuide guide = new StandardGuide();
+        VisibilityFeed[] feeds = new VisibilityFeed[4];
+        for (int i = 0; i < feeds.length; i++)
+        {
+            feeds[i] = new VisibilityFeed(i, 4 - i);
+            guide.add(feeds[i]);
+        }
+
+        CustomScoreCalculationsModel model = new CustomScoreCalculationsModel(true);
+        model.setOptions(0, FeedsSortOrder.RATING, false, FeedsSortOrder.RATING, false, false);
+        model.setGuide(guide);
+
+        EventsRecorder recorder = new EventsRecorder();
+        model.addListDataListener(recorder);
+
+        feeds[2].visible = false;
+        feeds[0].setRating(0);
+        changed(model, recorder, feeds[0], feeds[2]);
+        assertOrder(guide, model, false);
+        assertEquals(3, model.getSize());
+        assertSame(feeds[3], model.getElementAt(2));
+
+        feeds[2].visible = true;
+        changed(model, recorder, feeds[2]);
+        assertSame(feeds[2], model.getElementAt(2));
+
+        // Sorting is still consistent after repositioning
+        model.setSortingEnabled(true);
+        assertOrder(guide, model, true);
+    }
+
+    /**
+     * Reports the change of feeds as it comes from outside and waits for the model to
+     * reposition them. The events fired before that are skipped.
+     *
+     * @param model     model.
+     * @param recorder  recorder.
+     * @param feeds     feeds.
+     *
+     * @throws Exception if something fails.
+     */
+    private static void changed(GuideModel model, EventsRecorder recorder, IFeed ... feeds)
+        throws Exception
+    {
+        synchronized (model)
+        {
+            for (IFeed feed : feeds) model.contentsChangedAt(feed);
+            recorder.events.clear();
+        }
+
+        SwingUtilities.invokeAndWait(new Runnable()
+        {
+            public void run()
+            {
+            }
+        });
+    }
+
+    /**
+     * Checks that the model has the feeds in the order of the full rebuild.
+     *
+     * @param guide   guide.
+     * @param model   model.
+     * @param sorted  <code>TRUE</code> if sorting is enabled.
+     */
+    private static void assertOrder(IGuide guide, GuideModel model, boolean sorted)
+    {
+        CustomScoreCalculationsModel reference = new CustomScoreCalculationsModel(false);
+        reference.setOptions(0, FeedsSortOrder.RATING, false, FeedsSortOrder.RATING, false, sorted);
+        reference.setGuide(guide);
+
+        assertEquals(reference.getSize(), model.getSize());
+        for (int i = 0; i < model.getSize(); i++)
+        {
+            assertSame("Wrong feed at " + i, reference.getElementAt(i), model.getElementAt(i));
+        }
+    }
+
+    private static void assertEvent(ListDataEvent event, int type, int index0, int index1)
+    {
+        assertEquals(type, event.getType());
+        assertEquals(index0, event.getIndex0());
+        assertEquals(index1, event.getIndex1());
+    }
+
     /** Verifies that the given combination of feedClass and sortOrder produces right bit shift. */
     private void checkShift(int feedClass, int sortOrder)
     {
@@ -225,6 +391,16 @@ public class TestGuideModel extends TestCase
             super(null, null);
         }
 
+        /**
+         * Constructs the model.
+         *
+         * @param visual <code>TRUE</code> to fire events.
+         */
+        public CustomScoreCalculationsModel(boolean visual)
+        {
+            super(null, visual, null);
+        }
+
         /**
          * Returns rating of the feed for further math.
          *
@@ -249,4 +425,46 @@ public class TestGuideModel extends TestCase
             return (int)feed.getID();
         }
     }
+
+    /**
+     * Feed with visibility set from outside. Its ID is its alphabetical order.
+     */
+    private static class VisibilityFeed extends DirectFeed
+    {
+        private boolean visible = true;
+
+        public VisibilityFeed(long id, int rating)
+        {
+            setID(id);
+            setRating(rating);
+        }
+
+        public boolean isVisible()
+        {
+            return visible;
+        }
+    }
+
+    /**
+     * Records list events.
+     */
+    private static class EventsRecorder implements ListDataListener
+    {
+        private final List<ListDataEvent> events = new ArrayList<ListDataEvent>();
+
+        public void intervalAdded(ListDataEvent e)
+        {
+            events.add(e);
+        }
+
+        public void intervalRemoved(ListDataEvent e)
+        {
+            events.add(e);
+        }
+
+        public void contentsChanged(ListDataEvent e)
+        {
+            events.add(e);
+        }
+    }
 }
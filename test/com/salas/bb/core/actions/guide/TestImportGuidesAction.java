@@ -41,8 +41,10 @@ import junit.framework.TestCase;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -355,6 +357,58 @@ public class TestImportGuidesAction extends TestCase
         assertEquals(1, feed2.getPurgeLimit());
     }
 
+    /**
+     * Staged guides are added in one batch and share feeds with existing guides and
+     * with each other.
+     *
+     * @see ImportGuidesAction#publishGuides
+     */
+    public void testPublishGuides()
+    {
+        initDB();
+
+        GuidesSet cgs = GlobalModel.SINGLETON.getGuidesSet();
+        StandardGuide existing = new StandardGuide();
+        existing.setTitle("e");
+        DirectFeed df1 = directFeed(1);
+        existing.add(df1);
+        cgs.add(existing);
+
+        OPMLGuide g1 = new OPMLGuide("g1", null, false, null, null, false, 0, false, false, false);
+        ArrayList<DefaultOPMLFeed> a1 = new ArrayList<DefaultOPMLFeed>();
+        a1.add(new DirectOPMLFeed("1", "file://1", null, 0, null, null, -1, null, null, null, null, null, null, false, 1, false, 0, false, 0));
+        a1.add(new DirectOPMLFeed("2", "file://2", null, 0, null, null, -1, null, null, null, null, null, null, false, 1, false, 0, false, 0));
+        g1.setFeeds(a1);
+        OPMLGuide g2 = new OPMLGuide("g2", null, false, null, null, false, 0, false, false, false);
+        ArrayList<DefaultOPMLFeed> a2 = new ArrayList<DefaultOPMLFeed>();
+        a2.add(new DirectOPMLFeed("2", "file://2", null, 0, null, null, -1, null, null, null, null, null, null, false, 1, false, 0, false, 0));
+        g2.setFeeds(a2);
+
+        IGuide[] staged = ImportGuidesAction.stageGuides(null, new OPMLGuide[] { g1, g2 });
+        assertEquals(1, cgs.getGuidesCount());
+
+        final List<Boolean> batchFlags = new ArrayList<Boolean>();
+        cgs.addListener(new GuidesSetAdapter()
+        {
+            public void guideAdded(GuidesSet set, IGuide guide, boolean lastInBatch)
+            {
+                batchFlags.add(lastInBatch);
+            }
+        });
+
+        ImportGuidesAction.publishGuides(GlobalModel.SINGLETON, staged, cgs, false);
+
+        // Single batch of events
+        assertEquals(Arrays.asList(false, true), batchFlags);
+        assertEquals(3, cgs.getGuidesCount());
+
+        // Existing feed is shared with the first guide, the new one -- between new guides
+        assertTrue(df1 == cgs.getGuideAt(1).getFeedAt(1));
+        IFeed df2 = cgs.getGuideAt(1).getFeedAt(0);
+        assertEquals("file://2", ((DirectFeed)df2).getXmlURL().toString());
+        assertTrue(df2 == cgs.getGuideAt(2).getFeedAt(0));
+    }
+
     // ------------------------------------------------------------------------
     // Testing deduplication during import
     // ------------------------------------------------------------------------
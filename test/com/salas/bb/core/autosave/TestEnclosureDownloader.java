@@ -0,0 +1,335 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2007 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+
+package com.salas.bb.core.autosave;
+
+import com.salas.bb.utils.FileUtils;
+import com.salas.bb.utils.TUtils;
+import junit.framework.TestCase;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This suite contains tests for <code>EnclosureDownloader</code> unit.
+ */
+public class TestEnclosureDownloader extends TestCase
+{
+    private static final int LENGTH = 3 * 1024 * 1024 + 17;
+
+    private File dir;
+    private File source;
+    private File journalFile;
+    private byte[] data;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        dir = TUtils.resetDir("enclosures-test");
+        journalFile = new File(dir, "journal");
+
+        data = new byte[LENGTH];
+        new Random(1).nextBytes(data);
+        source = new File(dir, "source.mp3");
+        write(source, data);
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        FileUtils.rmdir(dir);
+        super.tearDown();
+    }
+
+    /** Long download is split in several contiguous segments. */
+    public void testSplit()
+        throws Exception
+    {
+        DownloadJournal.Download download = new DownloadJournal.Download(source.toURL(), new File(dir, "t"));
+        DownloadJournal.Segment first = new DownloadJournal.Segment(0, 0, -1);
+        download.segments.add(first);
+        download.length = LENGTH;
+
+        List<DownloadJournal.Segment> rest = EnclosureDownloader.split(download, first, true);
+        assertEquals(EnclosureDownloader.MAX_SEGMENTS - 1, rest.size());
+        assertEquals(EnclosureDownloader.MAX_SEGMENTS, download.segments.size());
+
+        long expected = 0;
+        for (DownloadJournal.Segment segment : download.segments)
+        {
+            assertEquals(expected, segment.start);
+            assertEquals(segment.start, segment.position);
+            assertTrue(segment.end > segment.start);
+            expected = segment.end;
+        }
+        assertEquals(LENGTH, expected);
+    }
+
+    /** Short or not seekable download is a single segment. */
+    public void testNoSplit()
+        throws Exception
+    {
+        DownloadJournal.Download download = new DownloadJournal.Download(source.toURL(), new File(dir, "t"));
+        DownloadJournal.Segment first = new DownloadJournal.Segment(0, 0, -1);
+        download.segments.add(first);
+        download.length = LENGTH;
+
+        assertEquals(0, EnclosureDownloader.split(download, first, false).size());
+        assertEquals(LENGTH, first.end);
+
+        download.length = EnclosureDownloader.MIN_SEGMENT_SIZE;
+        first.end = -1;
+        assertEquals(0, EnclosureDownloader.split(download, first, true).size());
+        assertEquals(EnclosureDownloader.MIN_SEGMENT_SIZE, first.end);
+    }
+
+    /** Download longer than 2 GB is split too. */
+    public void testSplitLarge()
+        throws Exception
+    {
+        long length = Integer.MAX_VALUE + 1024L * 1024;
+        DownloadJournal.Download download = new DownloadJournal.Download(source.toURL(), new File(dir, "t"));
+        DownloadJournal.Segment first = new DownloadJournal.Segment(0, 0, -1);
+        download.segments.add(first);
+        download.length = length;
+
+        assertEquals(EnclosureDownloader.MAX_SEGMENTS - 1, EnclosureDownloader.split(download, first, true).size());
+        assertEquals(length, download.segments.get(EnclosureDownloader.MAX_SEGMENTS - 1).end);
+    }
+
+    /** The journal is saved and loaded. */
+    public void testJournal()
+        throws Exception
+    {
+        DownloadJournal journal = new DownloadJournal(journalFile);
+        DownloadJournal.Download download = new DownloadJournal.Download(source.toURL(), new File(dir, "a b.mp3"));
+        download.length = 100;
+        download.attempts = 1;
+        download.segments.add(new DownloadJournal.Segment(0, 10, 50));
+        download.segments.add(new DownloadJournal.Segment(50, 60, 100));
+        journal.add(download);
+
+        List<DownloadJournal.Download> loaded = new DownloadJournal(journalFile).load();
+        assertEquals(1, loaded.size());
+        DownloadJournal.Download copy = loaded.get(0);
+        assertEquals(source.toURL(), copy.source);
+        assertEquals(download.target, copy.target);
+        assertEquals(100, copy.length);
+        assertEquals(1, copy.attempts);
+        assertEquals(2, copy.segments.size());
+        assertEquals(60, copy.segments.get(1).position);
+
+        journal.remove(download);
+        assertFalse(journalFile.exists());
+    }
+
+    /**
+     * Complete download in several segments.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testDownload()
+        throws Exception
+    {
+        File target = new File(new File(dir, "sub"), "target.mp3");
+
+        EnclosureDownloader downloader = new EnclosureDownloader(journalFile, 0);
+        downloader.download(source.toURL(), target);
+        waitForDownloads(downloader);
+
+        assertTrue(Arrays.equals(data, read(target)));
+        assertFalse(new File(target.getPath() + ".part").exists());
+        assertFalse(journalFile.exists());
+    }
+
+    /**
+     * Unfinished download is resumed from the journal without downloading what is there.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testResume()
+        throws Exception
+    {
+        File target = new File(dir, "target.mp3");
+        int half = LENGTH / 2;
+
+        // The first half is downloaded up to the middle, the second is untouched
+        DownloadJournal journal = new DownloadJournal(journalFile);
+        DownloadJournal.Download download = new DownloadJournal.Download(source.toURL(), target);
+        download.length = LENGTH;
+        download.segments.add(new DownloadJournal.Segment(0, half / 2, half));
+        download.segments.add(new DownloadJournal.Segment(half, half, LENGTH));
+        journal.add(download);
+
+        // The downloaded part is zeroes to see that it isn't downloaded again
+        byte[] part = new byte[half / 2];
+        write(download.getPartFile(), part);
+
+        EnclosureDownloader downloader = new EnclosureDownloader(journalFile, 0);
+        downloader.resume();
+        waitForDownloads(downloader);
+
+        byte[] expected = data.clone();
+        Arrays.fill(expected, 0, half / 2, (byte)0);
+        assertTrue(Arrays.equals(expected, read(target)));
+        assertFalse(journalFile.exists());
+    }
+
+    /**
+     * Unfinished download is resumed past 2 GB without downloading what is there. The source
+     * and the part are sparse files, so only the tail takes space.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testResumeLarge()
+        throws Exception
+    {
+        int tail = 64 * 1024;
+        long length = Integer.MAX_VALUE + 1024L * 1024;
+        long position = length - tail;
+
+        File large = new File(dir, "large.mp3");
+        RandomAccessFile raf = new RandomAccessFile(large, "rw");
+        try
+        {
+            raf.write(data, 0, 16);
+            raf.seek(position);
+            raf.write(data, 0, tail);
+        } finally
+        {
+            raf.close();
+        }
+
+        File target = new File(dir, "target.mp3");
+        DownloadJournal journal = new DownloadJournal(journalFile);
+        DownloadJournal.Download download = new DownloadJournal.Download(large.toURL(), target);
+        download.length = length;
+        download.segments.add(new DownloadJournal.Segment(0, position, length));
+        journal.add(download);
+
+        raf = new RandomAccessFile(download.getPartFile(), "rw");
+        try
+        {
+            raf.setLength(position);
+        } finally
+        {
+            raf.close();
+        }
+
+        EnclosureDownloader downloader = new EnclosureDownloader(journalFile, 0);
+        downloader.resume();
+        waitForDownloads(downloader);
+
+        assertEquals(length, target.length());
+        assertFalse(journalFile.exists());
+
+        raf = new RandomAccessFile(target, "r");
+        try
+        {
+            // The head isn't downloaded again
+            byte[] head = new byte[16];
+            raf.readFully(head);
+            assertTrue(Arrays.equals(new byte[16], head));
+
+            byte[] bytes = new byte[tail];
+            raf.seek(position);
+            raf.readFully(bytes);
+            assertTrue(Arrays.equals(Arrays.copyOf(data, tail), bytes));
+        } finally
+        {
+            raf.close();
+        }
+    }
+
+    /**
+     * Missing source is given up right away.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testMissing()
+        throws Exception
+    {
+        final boolean[] reported = new boolean[1];
+        EnclosureDownloader downloader = new EnclosureDownloader(journalFile, 0)
+        {
+            @Override
+            void reportFailure(DownloadJournal.Download download)
+            {
+                reported[0] = true;
+            }
+        };
+
+        File target = new File(dir, "target.mp3");
+        downloader.download(new File(dir, "missing").toURL(), target);
+        waitForDownloads(downloader);
+
+        assertTrue(reported[0]);
+        assertFalse(target.exists());
+        assertFalse(journalFile.exists());
+    }
+
+    private static void waitForDownloads(EnclosureDownloader downloader)
+        throws InterruptedException
+    {
+        long end = System.currentTimeMillis() + 20000;
+        while (downloader.isBusy() && System.currentTimeMillis() < end) Thread.sleep(50);
+        assertFalse("Downloads take too long", downloader.isBusy());
+    }
+
+    private static void write(File file, byte[] bytes)
+        throws IOException
+    {
+        OutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(bytes);
+        } finally
+        {
+            out.close();
+        }
+    }
+
+    private static byte[] read(File file)
+        throws IOException
+    {
+        byte[] bytes = new byte[(int)file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try
+        {
+            in.readFully(bytes);
+        } finally
+        {
+            in.close();
+        }
+
+        return bytes;
+    }
+}
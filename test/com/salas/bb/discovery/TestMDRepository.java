@@ -28,6 +28,7 @@ import junit.framework.TestCase;
 
 import java.net.URL;
 import java.net.MalformedURLException;
+import java.util.*;
 
 import com.salas.bb.domain.FeedMetaDataHolder;
 
@@ -122,6 +123,46 @@ public class TestMDRepository extends TestCase
         assertTrue("The only record should be returned.",
             validHolders[0] == holder2);
     }
+    /**
+     * Tests loading the records from the storage and writing complete discoveries to it.
+     */
+    public void testStorage()
+        throws MalformedURLException
+    {
+        URL url1 = new URL("file://1");
+        URL url2 = new URL("file://2");
+
+        FeedMetaDataHolder stored = createHolder(true, false);
+        stored.setXmlURL(url1);
+        stored.setLastUpdateTime(System.currentTimeMillis() - MDRepository.TTL_VALID - 1);
+
+        MemoryStorage storage = new MemoryStorage();
+        storage.store(new MDRecord(url1.toString(), stored, MDRepository.TTL_VALID));
+
+        repository.setStorage(storage);
+        assertTrue(repository.lookup(url1) == stored);
+        assertTrue("TTL has passed.", repository.isStale(url1));
+
+        // Incomplete holders aren't written
+        FeedMetaDataHolder holder = createHolder(false, false);
+        repository.record(holder, url2);
+        repository.discovered(url2);
+        assertNull(storage.records.get(url2.toString()));
+
+        holder.setComplete(true);
+        holder.setInvalid(true);
+        holder.setLastUpdateTime(System.currentTimeMillis());
+        repository.discovered(url2);
+        MDRecord record = storage.records.get(url2.toString());
+        assertTrue(record.getHolder() == holder);
+        assertEquals(MDRepository.TTL_INVALID, record.getTtl());
+        assertFalse(repository.isStale(url2));
+
+        repository.forget(new FeedMetaDataHolder[] { stored });
+        assertNull(storage.records.get(url1.toString()));
+        assertNull(repository.lookup(url1));
+    }
+
     /**
      * Creates holder.
      *
@@ -139,4 +180,42 @@ public class TestMDRepository extends TestCase
 
         return holder;
     }
+
+    /**
+     * Storage keeping records in memory.
+     */
+    private static class MemoryStorage implements IMDStorage
+    {
+        private final Map<String, MDRecord> records = new HashMap<String, MDRecord>();
+
+        /**
+         * Loads all records.
+         *
+         * @return records.
+         */
+        public List<MDRecord> load()
+        {
+            return new ArrayList<MDRecord>(records.values());
+        }
+
+        /**
+         * Stores the record.
+         *
+         * @param record record.
+         */
+        public void store(MDRecord record)
+        {
+            records.put(record.getUrl(), record);
+        }
+
+        /**
+         * Removes records.
+         *
+         * @param urls URL's.
+         */
+        public void remove(Collection<String> urls)
+        {
+            for (String url : urls) records.remove(url);
+        }
+    }
 }
@@ -0,0 +1,174 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.discovery;
+
+import EDU.oswego.cs.dl.util.concurrent.Executor;
+import com.salas.bb.domain.*;
+import com.salas.bb.domain.utils.DomainEventsListener;
+import com.salas.bb.utils.ConnectionState;
+import junit.framework.TestCase;
+
+import java.net.URL;
+
+/**
+ * This suite contains tests for <code>MDUpdater</code> unit.
+ */
+public class TestMDUpdater extends TestCase
+{
+    private CountingExecutor    executor;
+    private MDUpdater           updater;
+    private GuidesSet           set;
+    private StandardGuide       guide;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        ConnectionState connectionState = new ConnectionState();
+        executor = new CountingExecutor();
+        MDManager manager = new MDManager(new MDDiscoverer(executor, connectionState),
+            new MDRepository(), connectionState);
+        updater = new MDUpdater(manager, connectionState);
+
+        guide = new StandardGuide();
+        set = new GuidesSet();
+        set.add(guide);
+    }
+
+    /**
+     * Only outdated feeds are updated and only due feeds are looked at.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testOnlyDueFeeds()
+        throws Exception
+    {
+        createFeed("fresh", System.currentTimeMillis());
+        createFeed("stale1", 0);
+        createFeed("stale2", 0);
+
+        updater.setGuidesSet(set);
+        assertEquals(3, updater.getQueueSize());
+
+        CountingFeed.checks = 0;
+        updater.update();
+        assertEquals("Stale feeds should be updated.", 2, executor.executions);
+        assertEquals("Only due feeds should be checked.", 2, CountingFeed.checks);
+        assertEquals(3, updater.getQueueSize());
+
+        CountingFeed.checks = 0;
+        updater.update();
+        assertEquals("Nothing is due.", 0, CountingFeed.checks);
+        assertEquals(2, executor.executions);
+    }
+
+    /**
+     * Feeds added later are put in the queue and removed feeds are dropped from it.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testAddedAndRemovedFeeds()
+        throws Exception
+    {
+        updater.setGuidesSet(set);
+        new DomainEventsListener(set).addDomainListener(updater.getDomainListener());
+
+        CountingFeed feed = createFeed("new", 0);
+        assertEquals(1, updater.getQueueSize());
+
+        // Adding to the other guide doesn't make a duplicate
+        StandardGuide guide2 = new StandardGuide();
+        set.add(guide2);
+        guide2.add(feed);
+        assertEquals(1, updater.getQueueSize());
+
+        guide.remove(feed);
+        guide2.remove(feed);
+        updater.update();
+        assertEquals(0, executor.executions);
+        assertEquals(0, updater.getQueueSize());
+    }
+
+    /**
+     * Creates the feed in the guide.
+     *
+     * @param name              name.
+     * @param lastUpdateTime    last meta-data update time.
+     *
+     * @return feed.
+     *
+     * @throws Exception in case of error.
+     */
+    private CountingFeed createFeed(String name, long lastUpdateTime)
+        throws Exception
+    {
+        CountingFeed feed = new CountingFeed();
+        feed.setXmlURL(new URL("http://localhost/" + name));
+        FeedMetaDataHolder holder = new FeedMetaDataHolder();
+        holder.setLastUpdateTime(lastUpdateTime);
+        feed.setMetaData(holder);
+        guide.add(feed);
+
+        return feed;
+    }
+
+    /**
+     * Feed counting the checks of the last meta-data update time.
+     */
+    private static class CountingFeed extends DirectFeed
+    {
+        private static int checks;
+
+        /**
+         * Returns last update time of meta-data.
+         *
+         * @return last update time.
+         */
+        public long getLastMetaDataUpdateTime()
+        {
+            checks++;
+            return super.getLastMetaDataUpdateTime();
+        }
+    }
+
+    /**
+     * Executor which isn't doing any actions, but counting them.
+     */
+    private static class CountingExecutor implements Executor
+    {
+        private int executions = 0;
+
+        /**
+         * No action is executed.
+         *
+         * @param runnable runnable to skip.
+         */
+        public void execute(Runnable runnable)
+        {
+            executions++;
+        }
+    }
+}
@@ -30,9 +30,10 @@ import junit.framework.TestCase;
 
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.GregorianCalendar;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This suite contains tests for <code>DataFeed</code> unit.
@@ -997,6 +998,412 @@ public class TestDataFeed extends TestCase
         assertTrue(article3 == feed.getArticleAt(1));
     }
 
+    /**
+     * Tests removal of articles in bulk. The listeners capable of taking bulk removals
+     * get single event, the order of remaining articles is kept.
+     */
+    public void testRemoveArticles()
+    {
+        StandardArticle a1 = article(1);
+        StandardArticle a2 = article(2);
+        StandardArticle a3 = article(3);
+        StandardArticle a4 = article(4);
+        a2.setRead(true);
+
+        feed.appendArticle(a1);
+        feed.appendArticle(a2);
+        feed.appendArticle(a3);
+        feed.appendArticle(a4);
+        assertEquals(3, feed.getUnreadArticlesCount());
+
+        final List<IArticle[]> events = new ArrayList<IArticle[]>();
+        final List<IArticle> singleEvents = new ArrayList<IArticle>();
+        feed.addListener(new BulkRemovalListener(events));
+        feed.addListener(new FeedAdapter()
+        {
+            public void articleRemoved(IFeed feed, IArticle article)
+            {
+                singleEvents.add(article);
+            }
+        });
+
+        IArticle[] removed = feed.removeArticles(a3, a2, article(5));
+
+        assertEquals("Foreign article should be skipped.", 2, removed.length);
+        assertEquals(2, feed.getArticlesCount());
+        assertTrue(a1 == feed.getArticleAt(0));
+        assertTrue(a4 == feed.getArticleAt(1));
+        assertEquals(2, feed.getUnreadArticlesCount());
+
+        assertEquals("There should be one bulk event.", 1, events.size());
+        assertEquals(2, events.get(0).length);
+        assertEquals("Others should be notified per article.", 2, singleEvents.size());
+
+        assertEquals("Nothing to remove.", 0, feed.removeArticles(a2).length);
+        assertEquals(1, events.size());
+    }
+
+    /**
+     * Tests that the cleaner removes the oldest articles allowed for removal in one batch.
+     */
+    public void testCleanInBatch()
+    {
+        DataFeed.setGlobalPurgeUnread(true);
+
+        long time = System.currentTimeMillis();
+        IArticle a1 = articleWithTime(time - 1000);
+        IArticle a2 = articleWithTime(time - 3000);
+        IArticle a3 = articleWithTime(time - 2000);
+        IArticle a4 = articleWithTime(time);
+        a2.setPinned(true);
+
+        feed.appendArticle(a1);
+        feed.appendArticle(a2);
+        feed.appendArticle(a3);
+        feed.appendArticle(a4);
+
+        List<IArticle[]> events = new ArrayList<IArticle[]>();
+        feed.addListener(new BulkRemovalListener(events));
+
+        feed.clean(2, false);
+
+        assertEquals(1, events.size());
+        assertEquals(3, feed.getArticlesCount());
+        assertTrue("Pinned article should stay.", a2 == feed.getArticleAt(1));
+        assertTrue("The oldest unpinned article should go.", a3 == events.get(0)[0]);
+    }
+
+    /**
+     * Tests finding of the articles to purge by limit, age and flags.
+     */
+    public void testFindArticlesToPurge()
+    {
+        long time = System.currentTimeMillis();
+        IArticle a1 = articleWithTime(time - 4000);
+        IArticle a2 = articleWithTime(time - 3000);
+        IArticle a3 = articleWithTime(time - 2000);
+        IArticle a4 = articleWithTime(time - 1000);
+        IArticle noDate = article(5);
+
+        feed.appendArticle(noDate);
+        feed.appendArticle(a4);
+        feed.appendArticle(a3);
+        feed.appendArticle(a2);
+        feed.appendArticle(a1);
+        a1.setRead(true);
+        a2.setPinned(true);
+        a3.setRead(true);
+
+        assertEquals(0, feed.findArticlesToPurge(-1, -1, true, true).length);
+        assertEquals(0, feed.findArticlesToPurge(5, -1, true, true).length);
+
+        // Limit only, oldest first, articles without date go last
+        assertArticles(feed.findArticlesToPurge(2, -1, true, true), a1, a2, a3);
+        assertArticles(feed.findArticlesToPurge(0, -1, true, true), a1, a2, a3, a4, noDate);
+
+        // Flags skip articles
+        assertArticles(feed.findArticlesToPurge(2, -1, true, false), a1, a3, a4);
+        assertArticles(feed.findArticlesToPurge(2, -1, false, false), a1, a3);
+
+        // Age takes everything older even above the limit
+        assertArticles(feed.findArticlesToPurge(-1, time - 1500, true, true), a1, a2, a3);
+        assertArticles(feed.findArticlesToPurge(4, time - 2500, true, true), a1, a2);
+        assertArticles(feed.findArticlesToPurge(2, time - 3500, true, true), a1, a2, a3);
+    }
+
+    /**
+     * Tests that the listeners are notified when the lock is released and see the
+     * published snapshot.
+     */
+    public void testEventsOutsideOfLock()
+    {
+        final StandardArticle a1 = article(1);
+        final List<String> events = new ArrayList<String>();
+        feed.addListener(new FeedAdapter()
+        {
+            public void articleAdded(IFeed aFeed, IArticle article)
+            {
+                assertFalse("Lock is held.", Thread.holdsLock(feed));
+                assertTrue("Article should be new.", article.isNew());
+                assertTrue(Arrays.asList(feed.getArticles()).contains(article));
+                events.add("+" + article.getTitle());
+            }
+
+            public void articleRemoved(IFeed aFeed, IArticle article)
+            {
+                assertFalse("Lock is held.", Thread.holdsLock(feed));
+                assertEquals(0, feed.getArticlesCount());
+                events.add("-" + article.getTitle());
+            }
+
+            public void propertyChanged(IFeed aFeed, String property, Object oldValue, Object newValue)
+            {
+                if (!DataFeed.PROP_UNREAD_ARTICLES_COUNT.equals(property)) return;
+                assertFalse("Lock is held.", Thread.holdsLock(feed));
+                events.add(oldValue + ">" + newValue);
+            }
+        });
+
+        IArticle[] before = feed.getArticles();
+        feed.appendArticle(a1);
+        a1.setRead(true);
+        feed.removeArticle(a1);
+
+        assertEquals("Old snapshot should stay intact.", 0, before.length);
+        assertFalse(a1.isNew());
+        assertEquals(Arrays.asList("0>1", "+1", "1>0", "-1"), events);
+    }
+
+    /**
+     * Tests that the listener failing on one event doesn't stop firing of the events
+     * queued after it.
+     */
+    public void testFailingListener()
+    {
+        final List<String> events = new ArrayList<String>();
+        feed.addListener(new FeedAdapter()
+        {
+            public void articleAdded(IFeed aFeed, IArticle article)
+            {
+                events.add("+" + article.getTitle());
+            }
+
+            public void propertyChanged(IFeed aFeed, String property, Object oldValue, Object newValue)
+            {
+                if (DataFeed.PROP_UNREAD_ARTICLES_COUNT.equals(property))
+                {
+                    throw new IllegalStateException("Failed.");
+                }
+            }
+        });
+
+        try
+        {
+            feed.appendArticle(article(1));
+            fail("Listener failure should be thrown.");
+        } catch (IllegalStateException e)
+        {
+            // Expected
+        }
+
+        try
+        {
+            feed.appendArticle(article(2));
+            fail("Listener failure should be thrown.");
+        } catch (IllegalStateException e)
+        {
+            // Expected
+        }
+
+        assertEquals(Arrays.asList("+1", "+2"), events);
+    }
+
+    /**
+     * Tests that the change returns when its events are fired, even if the other thread
+     * fires them.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    public void testWaitingForEvents()
+        throws InterruptedException
+    {
+        final CountDownLatch firing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        feed.addListener(new FeedAdapter()
+        {
+            public void articleAdded(IFeed aFeed, IArticle article)
+            {
+                if ("1".equals(article.getTitle()))
+                {
+                    firing.countDown();
+                    try
+                    {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                events.add("+" + article.getTitle());
+            }
+        });
+
+        Thread first = new Thread()
+        {
+            public void run()
+            {
+                feed.appendArticle(article(1));
+            }
+        };
+        first.start();
+        assertTrue(firing.await(5, TimeUnit.SECONDS));
+
+        final List<String> seen = new ArrayList<String>();
+        Thread second = new Thread()
+        {
+            public void run()
+            {
+                feed.appendArticle(article(2));
+                seen.addAll(events);
+            }
+        };
+        second.start();
+
+        second.join(300);
+        assertTrue("Should wait for the events.", second.isAlive());
+
+        release.countDown();
+        second.join();
+        first.join();
+
+        assertEquals(Arrays.asList("+1", "+2"), seen);
+    }
+
+    /**
+     * Tests concurrent changes and reads. The readers never see the pair of articles removed
+     * in one change partially, and the listeners get all events in the order of changes, so
+     * the articles and unread count they track match the feed in the end.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    public void testConcurrentChanges()
+        throws InterruptedException
+    {
+        final int writers = 4;
+        final int pairs = 200;
+
+        // Pairs of articles to be removed in one change
+        final IArticle[][] pairsList = new IArticle[writers * pairs][];
+        for (int i = 0; i < pairsList.length; i++)
+        {
+            pairsList[i] = new IArticle[] { article(i * 2), article(i * 2 + 1) };
+            feed.appendArticle(pairsList[i][0]);
+            feed.appendArticle(pairsList[i][1]);
+        }
+
+        final Set<IArticle> tracked = new HashSet<IArticle>(Arrays.asList(feed.getArticles()));
+        final int[] unread = new int[] { feed.getUnreadArticlesCount() };
+        final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+        feed.addListener(new FeedAdapter()
+        {
+            public void articleAdded(IFeed aFeed, IArticle article)
+            {
+                if (!tracked.add(article)) errors.add("Added twice: " + article);
+            }
+
+            public void articleRemoved(IFeed aFeed, IArticle article)
+            {
+                if (!tracked.remove(article)) errors.add("Removed unknown: " + article);
+            }
+
+            public void propertyChanged(IFeed aFeed, String property, Object oldValue, Object newValue)
+            {
+                if (!DataFeed.PROP_UNREAD_ARTICLES_COUNT.equals(property)) return;
+                if (unread[0] != (Integer)oldValue) errors.add("Unread " + oldValue + " after " + unread[0]);
+                unread[0] = (Integer)newValue;
+            }
+        });
+
+        final AtomicBoolean done = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int w = 0; w < writers; w++)
+        {
+            final int writer = w;
+            threads.add(new Thread()
+            {
+                public void run()
+                {
+                    for (int i = 0; i < pairs; i++)
+                    {
+                        IArticle[] pair = pairsList[writer * pairs + i];
+                        feed.removeArticles(pair);
+                        StandardArticle extra = article(-1 - writer * pairs - i);
+                        feed.appendArticle(extra);
+                        if (i % 2 == 0) extra.setRead(true); else feed.removeArticle(extra);
+                    }
+                }
+            });
+        }
+
+        for (int r = 0; r < 2; r++)
+        {
+            threads.add(new Thread()
+            {
+                public void run()
+                {
+                    while (!done.get())
+                    {
+                        IArticle[] snapshot = feed.getArticles();
+                        Set<IArticle> present = new HashSet<IArticle>(Arrays.asList(snapshot));
+                        if (present.size() != snapshot.length) errors.add("Duplicates in snapshot");
+                        for (IArticle[] pair : pairsList)
+                        {
+                            if (present.contains(pair[0]) != present.contains(pair[1]))
+                            {
+                                errors.add("Torn read of " + pair[0]);
+                            }
+                        }
+                    }
+                }
+            });
+        }
+
+        for (Thread thread : threads) thread.start();
+        for (int w = 0; w < writers; w++) threads.get(w).join();
+        done.set(true);
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(Collections.<String>emptyList(), errors);
+        assertEquals(writers * pairs / 2, feed.getArticlesCount());
+        assertEquals(new HashSet<IArticle>(Arrays.asList(feed.getArticles())), tracked);
+        assertEquals(0, feed.getUnreadArticlesCount());
+        assertEquals(0, unread[0]);
+    }
+
+    /**
+     * Checks that the articles are exactly the expected.
+     *
+     * @param actual    actual articles.
+     * @param expected  expected articles.
+     */
+    private static void assertArticles(IArticle[] actual, IArticle ... expected)
+    {
+        assertEquals("Wrong number of articles.", expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++)
+        {
+            assertTrue("Wrong article at " + i, expected[i] == actual[i]);
+        }
+    }
+
+    /**
+     * Records bulk removal events.
+     */
+    private static class BulkRemovalListener extends FeedAdapter implements IArticlesRemovedListener
+    {
+        private final List<IArticle[]> events;
+
+        /**
+         * Creates listener.
+         *
+         * @param aEvents list to record the events to.
+         */
+        BulkRemovalListener(List<IArticle[]> aEvents)
+        {
+            events = aEvents;
+        }
+
+        public void articleRemoved(IFeed feed, IArticle article)
+        {
+            fail("Bulk listener should not get single events.");
+        }
+
+        public void articlesRemoved(IFeed feed, IArticle[] articles)
+        {
+            events.add(articles);
+        }
+    }
+
     /**
      * Creates a simple test article with the title and text equal to the given index.
      *
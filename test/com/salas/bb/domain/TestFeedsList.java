@@ -120,6 +120,99 @@ public class TestFeedsList extends TestCase
         assertNull("No such feed.", list.findSearchFeed(query2));
     }
 
+    /**
+     * Looking for direct feeds after the change of URL.
+     */
+    public void testLookingForDirectFeedsAfterURLChange()
+        throws MalformedURLException
+    {
+        URL url1 = new URL("file://a");
+        URL url2 = new URL("file://B");
+
+        DirectFeed feed = new DirectFeed();
+        feed.setXmlURL(url1);
+        list.add(feed);
+
+        feed.setXmlURL(url2);
+        assertNull("Feed is found by the old URL.", list.findDirectFeed(url1));
+        assertTrue("Wrong feed.", feed == list.findDirectFeed(url2));
+        assertNull("Case should matter.", list.findDirectFeed(new URL("file://b")));
+        assertTrue("Wrong feed.", feed == list.findDirectFeed(new URL("file://b"), true));
+
+        list.remove(feed);
+        assertNull("Feed is removed.", list.findDirectFeed(url2));
+
+        feed.setXmlURL(url1);
+        assertNull("Removed feed is found.", list.findDirectFeed(url1));
+    }
+
+    /**
+     * The first of the feeds with the same URL is found.
+     */
+    public void testLookingForDirectFeedsOrder()
+        throws MalformedURLException
+    {
+        URL url1 = new URL("file://1");
+        URL url2 = new URL("file://2");
+
+        DirectFeed feed1 = new DirectFeed();
+        feed1.setXmlURL(url2);
+        DirectFeed feed2 = new DirectFeed();
+        feed2.setXmlURL(url1);
+        list.add(feed1);
+        list.add(feed2);
+
+        feed1.setXmlURL(url1);
+        assertTrue("The first feed should be found.", feed1 == list.findDirectFeed(url1));
+
+        DirectFeed feed3 = new DirectFeed();
+        list.add(feed3);
+        assertTrue("Feed without URL should be found.", feed3 == list.findDirectFeed(null));
+    }
+
+    /**
+     * Looking for query feeds after the change of parameter.
+     */
+    public void testLookingForQueryFeedsAfterChange()
+    {
+        QueryType type = QueryType.getQueryType(QueryType.TYPE_AMAZON_BOOKS);
+        QueryType type2 = QueryType.getQueryType(QueryType.TYPE_CONNOTEA);
+
+        QueryFeed feed = new QueryFeed();
+        feed.setQueryType(type);
+        feed.setParameter("a");
+        list.add(feed);
+
+        feed.setParameter("b");
+        assertNull("Feed is found by the old parameter.", list.findQueryFeed(type, "a"));
+        assertTrue("Wrong feed.", feed == list.findQueryFeed(type, "b"));
+
+        feed.setQueryType(type2);
+        assertNull("Feed is found by the old type.", list.findQueryFeed(type, "b"));
+        assertTrue("Wrong feed.", feed == list.findQueryFeed(type2, "b"));
+    }
+
+    /**
+     * Looking for feeds by ID.
+     */
+    public void testLookingForFeedsByID()
+    {
+        DirectFeed feed1 = new DirectFeed();
+        DirectFeed feed2 = new DirectFeed();
+        feed2.setID(2);
+        list.add(feed1);
+        list.add(feed2);
+
+        assertTrue("Wrong feed.", feed2 == list.findFeedByID(2));
+        assertNull("No such feed.", list.findFeedByID(1));
+
+        feed1.setID(1);
+        assertTrue("Feed should be found by the new ID.", feed1 == list.findFeedByID(1));
+
+        list.remove(feed1);
+        assertNull("Feed is removed.", list.findFeedByID(1));
+    }
+
     // ---------------------------------------------------------------------------------------------
     // Unit tests
     // ---------------------------------------------------------------------------------------------
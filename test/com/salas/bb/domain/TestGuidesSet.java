@@ -419,6 +419,77 @@ public class TestGuidesSet extends TestCase
         assertTrue("Missing guide.", guides.contains(guide3));
     }
 
+    /**
+     * Tests finding the guides after renaming and moving them.
+     */
+    public void testFindGuidesByTitleRenamed()
+    {
+        IGuide guide1 = new DummyEmptyGuide();
+        guide1.setTitle("1");
+        IGuide guide2 = new DummyEmptyGuide();
+        guide2.setTitle("2");
+        set.add(guide1);
+        set.add(guide2);
+
+        guide2.setTitle("1");
+        guide1.setTitle("3");
+        guide1.setTitle("1");
+        assertEquals("Guide isn't found by the new title.",
+            Arrays.asList(guide1, guide2), set.findGuidesByTitle("1"));
+        assertEquals("Guide is found by the old title.", 0, set.findGuidesByTitle("2").size());
+
+        set.relocateGuide(guide2, 0);
+        assertEquals("Wrong order of guides.",
+            Arrays.asList(guide2, guide1), set.findGuidesByTitle("1"));
+
+        set.remove(guide2);
+        guide2.setTitle("2");
+        assertEquals("Removed guide is found.", Arrays.asList(guide1), set.findGuidesByTitle("1"));
+    }
+
+    /**
+     * Tests finding the guides by publishing title.
+     */
+    public void testGetGuideByPublishingTitle()
+    {
+        IGuide guide1 = new DummyEmptyGuide();
+        IGuide guide2 = new DummyEmptyGuide();
+        guide2.setPublishingTitle("Public");
+        set.add(guide1);
+        set.add(guide2);
+
+        assertTrue("Wrong guide.", guide2 == set.getGuideByPublishingTitle("PUBLIC"));
+        assertNull("No such guide.", set.getGuideByPublishingTitle("a"));
+        assertNull("No such guide.", set.getGuideByPublishingTitle(null));
+
+        guide1.setPublishingTitle("public");
+        assertTrue("The first guide should be found.", guide1 == set.getGuideByPublishingTitle("Public"));
+    }
+
+    /**
+     * Tests finding the guides and feeds by ID assigned after the addition.
+     */
+    public void testFindByID()
+    {
+        StandardGuide guide = new StandardGuide();
+        DirectFeed feed = new DirectFeed();
+        guide.add(feed);
+        set.add(guide);
+
+        assertNull("Guide has no ID yet.", set.findGuideByID(1L));
+        assertNull("Feed has no ID yet.", set.findFeedByID(2));
+
+        guide.setID(1);
+        feed.setID(2);
+        assertTrue("Wrong guide.", guide == set.findGuideByID(1L));
+        assertTrue("Wrong feed.", feed == set.findFeedByID(2));
+        assertNull("No such guide.", set.findGuideByID(null));
+
+        set.remove(guide);
+        assertNull("Guide is removed.", set.findGuideByID(1L));
+        assertNull("Feed is removed.", set.findFeedByID(2));
+    }
+
     /**
      * Tests handling of the incorrect input.
      */
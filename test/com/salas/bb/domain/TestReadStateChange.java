@@ -0,0 +1,185 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.domain;
+
+import com.salas.bb.domain.query.ICriteria;
+import com.salas.bb.domain.query.articles.ArticleStatusProperty;
+import com.salas.bb.domain.query.articles.Query;
+import com.salas.bb.domain.query.general.StringEqualsCO;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Tests bulk changes of the read state of articles.
+ */
+public class TestReadStateChange extends TestCase
+{
+    private DirectFeed feed1;
+    private DirectFeed feed2;
+    private StandardArticle[] articles;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        feed1 = new DirectFeed();
+        feed2 = new DirectFeed();
+        articles = new StandardArticle[5];
+        for (int i = 0; i < articles.length; i++)
+        {
+            articles[i] = new StandardArticle(Integer.toString(i));
+            articles[i].setTitle(Integer.toString(i));
+            articles[i].setPublicationDate(new Date(i * 1000L));
+            (i < 3 ? feed1 : feed2).appendArticle(articles[i]);
+        }
+    }
+
+    /**
+     * Bulk listeners get one call per feed and other listeners get the usual events.
+     */
+    public void testSingleEventPerFeed()
+    {
+        articles[0].setRead(true);
+
+        BulkListener bulkListener = new BulkListener();
+        PlainListener plainListener = new PlainListener();
+        CountListener countListener = new CountListener();
+        feed1.addListener(countListener);
+        for (StandardArticle article : articles)
+        {
+            article.addListener(bulkListener);
+            article.addListener(plainListener);
+        }
+
+        ReadStateChange change = new ReadStateChange(true);
+        assertEquals("Wrong number of changed articles.", 4, change.addFeeds(feed1, feed2));
+        assertEquals(4, change.getCount());
+
+        assertEquals("One call per feed expected.", 2, bulkListener.calls.size());
+        assertEquals("Already read article shouldn't be reported.", 2, bulkListener.calls.get(0).length);
+        assertEquals(2, bulkListener.calls.get(1).length);
+        assertEquals("Plain listeners get event per article.", 4, plainListener.events);
+        assertEquals("Unread count should change once.", 1, countListener.events);
+        assertEquals(0, feed1.getUnreadArticlesCount());
+        assertEquals(0, feed2.getUnreadArticlesCount());
+    }
+
+    /**
+     * Undoing the change restores the state of changed articles only.
+     */
+    public void testUndo()
+    {
+        articles[1].setRead(true);
+
+        ReadStateChange change = new ReadStateChange(true);
+        assertEquals(3, change.addArticles(articles[0], articles[1], articles[3], articles[4]));
+        assertTrue(articles[0].isRead());
+        assertFalse("Article wasn't in the change.", articles[2].isRead());
+
+        ReadStateChange reverse = change.undo();
+        assertEquals(3, reverse.getCount());
+        assertFalse(reverse.isRead());
+        assertFalse(articles[0].isRead());
+        assertTrue("Article was read before the change.", articles[1].isRead());
+        assertFalse(articles[3].isRead());
+        assertEquals(2, feed1.getUnreadArticlesCount());
+        assertEquals(2, feed2.getUnreadArticlesCount());
+    }
+
+    /**
+     * Marking the search feed marks the articles in their own feeds and the search feed
+     * reviews its articles after the batch.
+     */
+    public void testSearchFeed()
+    {
+        Query query = new Query();
+        ICriteria criteria = query.addCriteria();
+        criteria.setProperty(ArticleStatusProperty.INSTANCE);
+        criteria.setComparisonOperation(StringEqualsCO.INSTANCE);
+        criteria.setValue("unread");
+
+        SearchFeed feed = new SearchFeed();
+        feed.setArticlesLimit(10);
+        feed.setQuery(query);
+        feed.addArticleIfMatching(articles[1]);
+        feed.addArticleIfMatching(articles[4]);
+        assertEquals(2, feed.getArticlesCount());
+
+        feed.setRead(true);
+        assertTrue(articles[1].isRead());
+        assertTrue(articles[4].isRead());
+        assertEquals(2, feed1.getUnreadArticlesCount());
+        assertEquals(1, feed2.getUnreadArticlesCount());
+        assertEquals("Read articles should leave the feed.", 0, feed.getArticlesCount());
+    }
+
+    /**
+     * Records bulk calls.
+     */
+    private static class BulkListener implements IArticlesReadListener
+    {
+        private final List<IArticle[]> calls = new ArrayList<IArticle[]>();
+
+        public void articlesReadChanged(IFeed feed, IArticle[] articles, boolean read)
+        {
+            calls.add(articles);
+        }
+
+        public void propertyChanged(IArticle article, String property, Object oldValue, Object newValue)
+        {
+            if (IArticle.PROP_READ.equals(property)) fail("Bulk listener shouldn't get single events.");
+        }
+    }
+
+    /**
+     * Counts read events.
+     */
+    private static class PlainListener implements IArticleListener
+    {
+        private int events;
+
+        public void propertyChanged(IArticle article, String property, Object oldValue, Object newValue)
+        {
+            if (IArticle.PROP_READ.equals(property)) events++;
+        }
+    }
+
+    /**
+     * Counts unread articles count events.
+     */
+    private static class CountListener extends FeedAdapter
+    {
+        private int events;
+
+        public void propertyChanged(IFeed feed, String property, Object oldValue, Object newValue)
+        {
+            if (IFeed.PROP_UNREAD_ARTICLES_COUNT.equals(property)) events++;
+        }
+    }
+}
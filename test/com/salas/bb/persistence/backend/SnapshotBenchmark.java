@@ -0,0 +1,142 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.persistence.backend;
+
+import com.salas.bb.domain.*;
+import com.salas.bb.persistence.PersistenceException;
+import com.salas.bb.utils.TUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Date;
+
+/**
+ * Compares the startup loading of a synthetic 100k articles database through SQL and
+ * through the model snapshot.
+ */
+public final class SnapshotBenchmark
+{
+    private static final int GUIDES = 20;
+    private static final int FEEDS_PER_GUIDE = 50;
+    private static final int ARTICLES_PER_FEED = 100;
+
+    /** Hidden utility class constructor. */
+    private SnapshotBenchmark()
+    {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args arguments (unused).
+     *
+     * @throws IOException if I/O fails.
+     * @throws PersistenceException if database fails.
+     */
+    public static void main(String[] args)
+        throws IOException, PersistenceException
+    {
+        HsqlPersistenceManager.hasGUI = false;
+        File dir = TUtils.resetDir("snapshot-benchmark");
+        String contextPath = dir.getPath() + "/";
+
+        long start = System.nanoTime();
+        HsqlPersistenceManager pm = new HsqlPersistenceManager(contextPath, false);
+        pm.init();
+        GuidesSet set = new GuidesSet();
+        pm.loadGuidesSet(set);
+        for (int g = 0; g < GUIDES; g++)
+        {
+            StandardGuide guide = createGuide(g);
+            set.add(guide);
+            pm.insertGuide(guide, g);
+        }
+        pm.shutdown();
+        report("Create " + GUIDES * FEEDS_PER_GUIDE * ARTICLES_PER_FEED + " articles and snapshot", start);
+
+        File snapshot = new File(contextPath + "model.snapshot");
+        System.out.println("Snapshot size: " + snapshot.length() / 1024 + " KB");
+
+        load(contextPath, "Load from snapshot");
+
+        // Without the snapshot the manager falls back to SQL
+        if (!snapshot.delete()) throw new IOException("Failed to delete " + snapshot);
+        load(contextPath, "Load from database");
+    }
+
+    private static void load(String contextPath, String name)
+        throws PersistenceException
+    {
+        long start = System.nanoTime();
+        HsqlPersistenceManager pm = new HsqlPersistenceManager(contextPath, false);
+        pm.init();
+        GuidesSet set = new GuidesSet();
+        pm.loadGuidesSet(set);
+        long time = System.nanoTime() - start;
+
+        int articles = 0;
+        FeedsList feeds = set.getFeedsList();
+        for (int i = 0; i < feeds.getFeedsCount(); i++) articles += feeds.getFeedAt(i).getArticlesCount();
+        System.out.println(name + " (" + articles + " articles): " + time / 1000000 + " ms");
+
+        pm.shutdown();
+    }
+
+    private static StandardGuide createGuide(int g)
+        throws IOException
+    {
+        StandardGuide guide = new StandardGuide();
+        guide.setTitle("Guide " + g);
+
+        for (int f = 0; f < FEEDS_PER_GUIDE; f++)
+        {
+            String feedURL = "http://feeds" + g + ".com/" + f + "/";
+            DirectFeed feed = new DirectFeed();
+            feed.setXmlURL(new URL(feedURL + "rss.xml"));
+            feed.setBaseTitle("Feed " + g + "-" + f);
+
+            for (int a = 0; a < ARTICLES_PER_FEED; a++)
+            {
+                StandardArticle article = new StandardArticle("Text of the article " + a);
+                article.setTitle("Article " + a + " of feed " + f);
+                article.setAuthor("Author " + (a % 10));
+                article.setPublicationDate(new Date(System.currentTimeMillis() - a * 60000L));
+                article.setLink(new URL(feedURL + "articles/" + a + ".html"));
+                article.setRead(a % 3 == 0);
+                feed.appendArticle(article);
+            }
+
+            guide.add(feed);
+        }
+
+        return guide;
+    }
+
+    private static void report(String name, long start)
+    {
+        System.out.println(name + ": " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+}
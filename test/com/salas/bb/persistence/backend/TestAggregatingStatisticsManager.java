@@ -0,0 +1,208 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2007 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.persistence.backend;
+
+import com.salas.bb.domain.DirectFeed;
+import com.salas.bb.domain.StandardGuide;
+import com.salas.bb.persistence.PersistenceException;
+import com.salas.bb.persistence.domain.CountStats;
+import com.salas.bb.persistence.domain.ReadStats;
+import com.salas.bb.persistence.domain.VisitStats;
+
+import java.net.URL;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+/**
+ * Tests aggregation of statistics in memory and flushing to the database.
+ */
+public class TestAggregatingStatisticsManager extends AbstractHsqlPersistenceTestCase
+{
+    private DirectFeed feed;
+    private DirectFeed feed2;
+    private StandardGuide guide;
+    private AggregatingStatisticsManager sm;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        initManager("/resources");
+
+        feed = new DirectFeed();
+        feed.setXmlURL(new URL("http://localhost/1"));
+        feed2 = new DirectFeed();
+        feed2.setXmlURL(new URL("http://localhost/2"));
+
+        guide = new StandardGuide();
+        guide.setTitle("1");
+        guide.add(feed);
+        guide.add(feed2);
+
+        pm.insertGuide(guide, 0);
+
+        // The timer should never kick in during the test
+        sm = new AggregatingStatisticsManager(pm, Long.MAX_VALUE / 2);
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        sm.close();
+        super.tearDown();
+    }
+
+    /**
+     * Visits aren't written until flush, but reports see them.
+     *
+     * @throws PersistenceException if database fails.
+     */
+    public void testVisitsMergedBeforeFlush()
+        throws PersistenceException
+    {
+        sm.feedVisited(feed2);
+        sm.feedVisited(feed2);
+        sm.feedVisited(feed);
+
+        // Nothing in the database yet
+        assertEquals(0, pm.getMostVisitedFeeds(10).size());
+
+        // Merged in the report and sorted
+        List<VisitStats> stats = sm.getMostVisitedFeeds(10);
+        assertEquals(2, stats.size());
+        assertEquals(feed2.getID(), stats.get(0).getObjectId());
+        assertEquals(2, stats.get(0).getCountTotal());
+        assertEquals(2, stats.get(0).getCountReset());
+        assertEquals(feed.getID(), stats.get(1).getObjectId());
+        assertEquals(1, stats.get(1).getCountTotal());
+
+        // Limit is respected
+        assertEquals(1, sm.getMostVisitedFeeds(1).size());
+    }
+
+    /**
+     * Flushing writes everything in the database and reports don't count anything twice.
+     *
+     * @throws PersistenceException if database fails.
+     */
+    public void testFlush()
+        throws PersistenceException
+    {
+        sm.guideVisited(guide);
+        sm.feedVisited(feed);
+        sm.flush();
+        sm.guideVisited(guide);
+
+        List<VisitStats> dbStats = pm.getMostVisitedGuides(10);
+        assertEquals(1, dbStats.size());
+        assertEquals(1, dbStats.get(0).getCountTotal());
+
+        List<VisitStats> stats = sm.getMostVisitedGuides(10);
+        assertEquals(1, stats.size());
+        assertEquals(2, stats.get(0).getCountTotal());
+
+        sm.close();
+        assertEquals(2, pm.getMostVisitedGuides(10).get(0).getCountTotal());
+        assertEquals(1, pm.getMostVisitedFeeds(10).get(0).getCountTotal());
+    }
+
+    /**
+     * Read and pin counts are merged and written.
+     *
+     * @throws PersistenceException if database fails.
+     */
+    public void testReadAndPinStats()
+        throws PersistenceException
+    {
+        int hour = new GregorianCalendar().get(Calendar.HOUR_OF_DAY);
+
+        sm.articlesRead(guide, feed, 2);
+        sm.articlesPinned(guide, feed2, 1);
+
+        assertEquals(2, sm.getItemsReadPerHour()[hour].getCountTotal());
+        assertEquals(0, pm.getItemsReadPerHour()[hour].getCountTotal());
+        assertReadTotal(sm.getFeedsReadStats(), feed.getID(), 2);
+        assertReadTotal(sm.getGuidesReadStats(), guide.getID(), 2);
+        assertReadTotal(sm.getFeedsPinStats(), feed2.getID(), 1);
+        assertEquals(0, pm.getFeedsReadStats().size());
+
+        sm.flush();
+        sm.articlesRead(guide, feed, 3);
+
+        CountStats[] perHour = sm.getItemsReadPerHour();
+        assertEquals(5, perHour[hour].getCountTotal());
+        assertEquals(5, perHour[hour].getCountReset());
+        assertReadTotal(pm.getFeedsReadStats(), feed.getID(), 2);
+        assertReadTotal(sm.getFeedsReadStats(), feed.getID(), 5);
+        assertReadTotal(sm.getGuidesPinStats(), guide.getID(), 1);
+    }
+
+    /**
+     * Reset writes pending counts first and then resets them.
+     *
+     * @throws PersistenceException if database fails.
+     */
+    public void testReset()
+        throws PersistenceException
+    {
+        sm.feedVisited(feed);
+        sm.reset();
+
+        VisitStats stats = pm.getMostVisitedFeeds(10).get(0);
+        assertEquals(1, stats.getCountTotal());
+        assertEquals(0, stats.getCountReset());
+    }
+
+    /**
+     * Transient objects are ignored.
+     *
+     * @throws PersistenceException if database fails.
+     */
+    public void testTransientObjects()
+        throws PersistenceException
+    {
+        sm.feedVisited(new DirectFeed());
+        sm.guideVisited(new StandardGuide());
+        sm.flush();
+
+        assertEquals(0, sm.getMostVisitedFeeds(10).size());
+        assertEquals(0, sm.getMostVisitedGuides(10).size());
+    }
+
+    private static void assertReadTotal(List<ReadStats> stats, long id, int total)
+    {
+        for (ReadStats st : stats)
+        {
+            if (st.getObjectId() == id)
+            {
+                assertEquals(total, st.getTotal());
+                return;
+            }
+        }
+
+        fail("No stats for " + id);
+    }
+}
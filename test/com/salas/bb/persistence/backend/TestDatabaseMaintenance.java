@@ -0,0 +1,270 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.persistence.backend;
+
+import com.salas.bb.domain.StandardGuide;
+import com.salas.bb.persistence.PersistenceException;
+import com.salas.bb.persistence.WriteQueue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests online database maintenance.
+ */
+public class TestDatabaseMaintenance extends AbstractHsqlPersistenceTestCase
+{
+    private WriteQueue queue;
+    private DatabaseMaintenance maintenance;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        initManager("/resources");
+
+        queue = new WriteQueue(pm);
+        maintenance = new DatabaseMaintenance(pm, queue, 0, 0.25, Long.MAX_VALUE, 0);
+    }
+
+    /**
+     * Measurement reports sizes of the files.
+     *
+     * @throws PersistenceException if database fails.
+     */
+    public void testMeasure()
+        throws PersistenceException
+    {
+        DatabaseMaintenance.Measurement m = maintenance.measure();
+
+        assertTrue(m.getDataSize() > 0);
+        assertTrue(m.getLostBytes() >= 0);
+        assertTrue(m.getLogSize() >= 0);
+        assertTrue(m.getFragmentation() >= 0 && m.getFragmentation() <= 1);
+    }
+
+    /**
+     * Updates coming during maintenance return immediately and are performed afterwards.
+     * Inserts wait for them.
+     *
+     * @throws Exception if something fails.
+     */
+    public void testWritesQueuedDuringCompaction()
+        throws Exception
+    {
+        final Throwable[] error = new Throwable[1];
+        Thread compaction = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    maintenance.compact(true);
+                } catch (Throwable e)
+                {
+                    error[0] = e;
+                }
+            }
+        };
+
+        StandardGuide guide = new StandardGuide();
+        guide.setTitle("stored");
+        pm.insertGuide(guide, 0);
+
+        final StandardGuide inserted = new StandardGuide();
+        inserted.setTitle("inserted");
+        Thread insert = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    queue.getManager().insertGuide(inserted, 1);
+                } catch (Throwable e)
+                {
+                    error[0] = e;
+                }
+            }
+        };
+
+        synchronized (pm)
+        {
+            // Compaction pauses the queue and waits for the database
+            compaction.start();
+            for (int i = 0; i < 100 && !queue.isPaused(); i++) Thread.sleep(50);
+            assertTrue(queue.isPaused());
+
+            long start = System.currentTimeMillis();
+            guide.setTitle("queued");
+            queue.getManager().updateGuide(guide, 0);
+            assertTrue(System.currentTimeMillis() - start < 1000);
+            assertEquals(1, queue.getPendingCount());
+
+            // The insert needs the ID at once and waits
+            insert.start();
+            insert.join(500);
+            assertTrue(insert.isAlive());
+            assertEquals(-1, inserted.getID());
+        }
+
+        compaction.join();
+        insert.join();
+        assertNull(error[0]);
+
+        assertFalse(queue.isPaused());
+        assertEquals(0, queue.getPendingCount());
+        assertTrue(inserted.getID() != -1);
+    }
+
+    /**
+     * The writes of the thread running the batch go straight to the manager, so they stay
+     * within the batch.
+     *
+     * @throws PersistenceException if database fails.
+     */
+    public void testBatchWritesNotQueued()
+        throws PersistenceException
+    {
+        StandardGuide guide = new StandardGuide();
+        guide.setTitle("batch");
+
+        pm.beginBatch();
+        queue.pause();
+        try
+        {
+            queue.getManager().insertGuide(guide, 0);
+            assertTrue(guide.getID() != -1);
+
+            guide.setTitle("updated");
+            queue.getManager().updateGuide(guide, 0);
+            assertEquals(0, queue.getPendingCount());
+        } finally
+        {
+            queue.resume();
+            pm.endBatch();
+        }
+    }
+
+    /**
+     * Listeners hear of start and finish of checkpoint, which has no progress to report.
+     *
+     * @throws PersistenceException if database fails.
+     */
+    public void testListener()
+        throws PersistenceException
+    {
+        RecordingListener l = new RecordingListener();
+        maintenance.addListener(l);
+
+        maintenance.compact(false);
+
+        assertEquals(2, l.events.size());
+        assertEquals("started " + DatabaseMaintenance.OP_CHECKPOINT, l.events.get(0));
+        assertEquals("finished " + DatabaseMaintenance.OP_CHECKPOINT + " null", l.events.get(1));
+    }
+
+    /**
+     * Backup copies the files and leaves the database open.
+     *
+     * @throws PersistenceException if database fails.
+     */
+    public void testBackup()
+        throws PersistenceException
+    {
+        RecordingListener l = new RecordingListener();
+        maintenance.addListener(l);
+
+        File dir = new File(pm.getContextPath() + "backup-test");
+        maintenance.backup(dir);
+
+        assertTrue(new File(dir, "blogbridge.script").exists());
+        assertTrue(new File(dir, "blogbridge.properties").exists());
+        assertFalse(new File(dir, "blogbridge.lck").exists());
+        assertEquals("finished " + DatabaseMaintenance.OP_BACKUP + " null", l.events.get(l.events.size() - 1));
+        assertEquals("progress " + DatabaseMaintenance.OP_BACKUP + " 100", l.events.get(l.events.size() - 2));
+
+        StandardGuide guide = new StandardGuide();
+        guide.setTitle("after backup");
+        pm.insertGuide(guide, 0);
+        assertTrue(guide.getID() != -1);
+    }
+
+    /**
+     * Checks act only when the user is idle.
+     *
+     * @throws PersistenceException if database fails.
+     */
+    public void testCheck()
+        throws PersistenceException
+    {
+        maintenance = new DatabaseMaintenance(pm, queue, 0, 0, 0, 0);
+        assertTrue(maintenance.check());
+
+        maintenance = new DatabaseMaintenance(pm, queue, 60000, 0, 0, 0);
+        maintenance.userActive();
+        assertFalse(maintenance.check());
+    }
+
+    /**
+     * Automatic backups are made once per period.
+     *
+     * @throws PersistenceException if database fails.
+     */
+    public void testPeriodicBackup()
+        throws PersistenceException
+    {
+        maintenance = new DatabaseMaintenance(pm, queue, 0, 1, Long.MAX_VALUE, 60000);
+
+        assertTrue(maintenance.check());
+        assertTrue(new File(pm.getContextPath() + DatabaseMaintenance.BACKUP_FOLDER, "blogbridge.script").exists());
+        assertNotNull(pm.getApplicationProperty(DatabaseMaintenance.AP_LAST_BACKUP));
+
+        assertFalse(maintenance.check());
+    }
+
+    /**
+     * Records events.
+     */
+    private static class RecordingListener implements IMaintenanceListener
+    {
+        private final List<String> events = new ArrayList<String>();
+
+        public void maintenanceStarted(String operation)
+        {
+            events.add("started " + operation);
+        }
+
+        public void maintenanceProgress(String operation, int percent)
+        {
+            events.add("progress " + operation + " " + percent);
+        }
+
+        public void maintenanceFinished(String operation, PersistenceException error)
+        {
+            events.add("finished " + operation + " " + error);
+        }
+    }
+}
@@ -225,6 +225,96 @@ public class TestHsqlArticlesPM extends AbstractHsqlPersistenceTestCase
         checkLoadedArticleProperties(article);
     }
 
+    /**
+     * Tests updating the read state of many articles at once.
+     */
+    public void testUpdateArticlesRead()
+        throws SQLException
+    {
+        StandardArticle[] articles = new StandardArticle[3];
+        for (int i = 0; i < articles.length; i++)
+        {
+            articles[i] = new StandardArticle(Integer.toString(i));
+            articles[i].setTitle(Integer.toString(i));
+            feed.appendArticle(articles[i]);
+            manager.insertArticle(articles[i]);
+        }
+        pm.commit();
+
+        StandardArticle article1 = articles[0];
+        StandardArticle article2 = articles[1];
+        StandardArticle article3 = articles[2];
+        StandardArticle unsaved = new StandardArticle("E");
+
+        assertEquals("Wrong number of rows.", 2,
+            manager.updateArticlesRead(new IArticle[] { article1, article3, unsaved }, true));
+        pm.commit();
+
+        assertTrue("Article should be read.", isReadInDatabase(article1));
+        assertFalse("Article should be unread.", isReadInDatabase(article2));
+        assertTrue("Article should be read.", isReadInDatabase(article3));
+
+        assertEquals("Nothing to update.", 0, manager.updateArticlesRead(new IArticle[] { unsaved }, false));
+    }
+
+    /**
+     * Tests removing of many articles at once.
+     *
+     * @throws SQLException in case of database error.
+     */
+    public void testRemoveArticles()
+        throws SQLException
+    {
+        StandardArticle[] articles = new StandardArticle[3];
+        for (int i = 0; i < articles.length; i++)
+        {
+            articles[i] = new StandardArticle(Integer.toString(i));
+            articles[i].setTitle(Integer.toString(i));
+            feed.appendArticle(articles[i]);
+            manager.insertArticle(articles[i]);
+        }
+        pm.commit();
+
+        long id2 = articles[1].getID();
+        StandardArticle unsaved = new StandardArticle("E");
+
+        assertEquals("Wrong number of rows.", 2,
+            manager.removeArticles(new IArticle[] { articles[0], unsaved, articles[2] }));
+        pm.commit();
+
+        assertEquals(-1L, articles[0].getID());
+        assertEquals(-1L, articles[2].getID());
+        assertEquals(id2, articles[1].getID());
+
+        PreparedStatement stmt = pm.getPreparedStatement("SELECT COUNT(*) FROM ARTICLES");
+        ResultSet rs = stmt.executeQuery();
+        rs.next();
+        assertEquals("Wrong number of articles left.", 1, rs.getInt(1));
+        stmt.close();
+
+        assertEquals("Nothing to remove.", 0, manager.removeArticles(new IArticle[] { unsaved }));
+    }
+
+    /**
+     * Returns the read state of the article in database.
+     *
+     * @param article article.
+     *
+     * @return read state.
+     *
+     * @throws SQLException if database fails.
+     */
+    private boolean isReadInDatabase(IArticle article)
+        throws SQLException
+    {
+        PreparedStatement stmt = pm.getPreparedStatement("SELECT READ FROM ARTICLES WHERE ID=?");
+        stmt.setLong(1, article.getID());
+        ResultSet rs = stmt.executeQuery();
+        assertTrue("Article isn't in database.", rs.next());
+
+        return rs.getBoolean(1);
+    }
+
     /**
      * Adds a sample article.
      *
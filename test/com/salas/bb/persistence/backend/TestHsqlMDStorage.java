@@ -0,0 +1,93 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.persistence.backend;
+
+import com.salas.bb.discovery.IMDStorage;
+import com.salas.bb.discovery.MDRecord;
+import com.salas.bb.domain.FeedMetaDataHolder;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This suite contains tests for <code>HsqlMDStorage</code> unit.
+ */
+public class TestHsqlMDStorage extends AbstractHsqlPersistenceTestCase
+{
+    private IMDStorage storage;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        initManager("/resources");
+
+        storage = pm.getMetaDataStorage();
+    }
+
+    /**
+     * Tests storing, replacing and loading of records.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testStoreLoad()
+        throws Exception
+    {
+        FeedMetaDataHolder holder = new FeedMetaDataHolder();
+        holder.setComplete(true);
+        holder.setInvalid(false);
+        holder.setXmlURL(new URL("http://localhost/rss"));
+        holder.setHtmlURL(new URL("http://localhost/"));
+        holder.setTitle("title");
+        holder.setInboundLinks(5);
+        holder.setLastUpdateTime(10);
+
+        storage.store(new MDRecord("http://localhost/", holder, 100));
+        storage.store(new MDRecord("http://localhost/", holder, 200));
+        storage.store(new MDRecord("http://localhost/bad", new FeedMetaDataHolder(), 300));
+
+        List<MDRecord> records = storage.load();
+        assertEquals(2, records.size());
+
+        MDRecord record = records.get(0).getUrl().equals("http://localhost/") ? records.get(0) : records.get(1);
+        FeedMetaDataHolder loaded = record.getHolder();
+        assertEquals(200, record.getTtl());
+        assertEquals(10, record.getLastChecked());
+        assertTrue(loaded.isComplete());
+        assertTrue(loaded.isDiscoveredValid());
+        assertEquals(holder.getXmlURL(), loaded.getXmlURL());
+        assertEquals(holder.getHtmlURL(), loaded.getHtmlURL());
+        assertEquals("title", loaded.getTitle());
+        assertNull(loaded.getAuthor());
+        assertEquals(new Integer(5), loaded.getInboundLinks());
+
+        storage.remove(Arrays.asList("http://localhost/", "http://localhost/missing"));
+        records = storage.load();
+        assertEquals(1, records.size());
+        assertEquals("http://localhost/bad", records.get(0).getUrl());
+        assertNull(records.get(0).getHolder().getInboundLinks());
+    }
+}
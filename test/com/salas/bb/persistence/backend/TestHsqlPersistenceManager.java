@@ -327,4 +327,113 @@ public class TestHsqlPersistenceManager extends AbstractHsqlPersistenceTestCase
         // Check if the record is there
         assertFalse(pm.isDeletedObjectRecordPresent(gt, fk));
     }
+
+    // --------------------------------------------------------------------------------------------
+    // Batches
+    // --------------------------------------------------------------------------------------------
+
+    /**
+     * Tests that the failed operation within the batch is rolled back alone.
+     *
+     * @throws Exception error.
+     */
+    public void testBatchRollsBackFailedOperationOnly() throws Exception
+    {
+        initManager("/resources");
+        pm.purgeDeletedObjectRecords();
+
+        pm.beginBatch();
+        pm.addDeletedObjectRecord("_gt", "_a");
+
+        // The failing operation
+        Statement stmt = pm.getConnection().createStatement();
+        stmt.executeUpdate("INSERT INTO DELETEDOBJECTS VALUES ('_gt', '_b')");
+        stmt.close();
+        pm.rollback();
+
+        pm.endBatch();
+
+        assertTrue(pm.isDeletedObjectRecordPresent("_gt", "_a"));
+        assertFalse(pm.isDeletedObjectRecordPresent("_gt", "_b"));
+    }
+
+    /**
+     * Tests that the batch isn't committed until the end.
+     *
+     * @throws Exception error.
+     */
+    public void testBatchIsSingleTransaction() throws Exception
+    {
+        initManager("/resources");
+        pm.purgeDeletedObjectRecords();
+
+        pm.beginBatch();
+        pm.beginBatch();
+        pm.addDeletedObjectRecord("_gt", "_a");
+        pm.endBatch();
+        pm.addDeletedObjectRecord("_gt", "_b");
+
+        // Nothing is committed yet
+        pm.getConnection().rollback();
+        pm.endBatch();
+
+        assertFalse(pm.isDeletedObjectRecordPresent("_gt", "_a"));
+        assertFalse(pm.isDeletedObjectRecordPresent("_gt", "_b"));
+
+        // Operations are committed as usual after the batch
+        pm.addDeletedObjectRecord("_gt", "_c");
+        pm.getConnection().rollback();
+        assertTrue(pm.isDeletedObjectRecordPresent("_gt", "_c"));
+    }
+
+    /**
+     * Tests that other threads wait for the batch, so their commits don't commit the
+     * operations of the batch and the batch doesn't take theirs.
+     *
+     * @throws Exception error.
+     */
+    public void testBatchBelongsToThread() throws Exception
+    {
+        initManager("/resources");
+        pm.purgeDeletedObjectRecords();
+
+        pm.beginBatch();
+        pm.addDeletedObjectRecord("_gt", "_a");
+
+        final Exception[] error = new Exception[1];
+        Thread other = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    pm.addDeletedObjectRecord("_gt", "_b");
+                    pm.beginBatch();
+                    pm.addDeletedObjectRecord("_gt", "_c");
+                    pm.endBatch();
+                } catch (Exception e)
+                {
+                    error[0] = e;
+                }
+            }
+        };
+        other.start();
+        other.join(500);
+        assertTrue("Other thread doesn't wait for the batch", other.isAlive());
+
+        pm.addDeletedObjectRecord("_gt", "_d");
+
+        // Nothing of the batch is committed by the other thread
+        pm.getConnection().rollback();
+        pm.endBatch();
+
+        other.join(5000);
+        assertFalse(other.isAlive());
+        assertNull(error[0]);
+
+        assertFalse(pm.isDeletedObjectRecordPresent("_gt", "_a"));
+        assertFalse(pm.isDeletedObjectRecordPresent("_gt", "_d"));
+        assertTrue(pm.isDeletedObjectRecordPresent("_gt", "_b"));
+        assertTrue(pm.isDeletedObjectRecordPresent("_gt", "_c"));
+    }
 }
@@ -0,0 +1,314 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.persistence.backend;
+
+import com.salas.bb.domain.*;
+import com.salas.bb.persistence.PersistenceException;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests loading of the guides set from the binary snapshot.
+ */
+public class TestModelSnapshot extends AbstractHsqlPersistenceTestCase
+{
+    private GuidesSet set;
+    private StandardGuide guide;
+    private DirectFeed feed1;
+    private DirectFeed feed2;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        initManager("/resources");
+
+        set = new GuidesSet();
+        pm.loadGuidesSet(set);
+
+        feed1 = new DirectFeed();
+        feed1.setXmlURL(new URL("http://localhost/1"));
+        feed1.setCustomTitle("Feed 1");
+        feed1.setAscendingSorting(Boolean.TRUE);
+        StandardArticle article = new StandardArticle("text");
+        article.setTitle("Article");
+        article.setAuthor("Author");
+        article.setPublicationDate(new Date(1000));
+        article.setLink(new URL("http://localhost/1/a"));
+        article.setRead(true);
+        feed1.appendArticle(article);
+
+        feed2 = new DirectFeed();
+        feed2.setXmlURL(new URL("http://localhost/2"));
+        ReadingList list = new ReadingList(new URL("http://localhost/list"));
+        list.add(feed2);
+
+        guide = new StandardGuide();
+        guide.setTitle("Guide");
+        guide.setPublishingTitle("Published");
+        guide.add(list);
+        guide.add(feed1);
+        guide.getFeedLinkInfo(feed1).setLastSyncTime(5);
+
+        set.add(guide);
+        pm.insertGuide(guide, 0);
+    }
+
+    /**
+     * The snapshot brings back the same model.
+     *
+     * @throws Exception if something fails.
+     */
+    public void testRoundTrip() throws Exception
+    {
+        assertTrue(pm.storeSnapshot());
+        assertFalse("Nothing changed", pm.storeSnapshot());
+
+        GuidesSet loaded = reopen();
+        assertEquals(1, loaded.getGuidesCount());
+
+        StandardGuide lguide = (StandardGuide)loaded.getGuideAt(0);
+        assertEquals(guide.getID(), lguide.getID());
+        assertEquals("Guide", lguide.getTitle());
+        assertEquals("Published", lguide.getPublishingTitle());
+        assertEquals(2, lguide.getFeedsCount());
+        assertEquals(1, lguide.getReadingLists().length);
+
+        DirectFeed lfeed2 = (DirectFeed)lguide.getFeedAt(guide.indexOf(feed2));
+        assertEquals(feed2.getID(), lfeed2.getID());
+        assertTrue(lguide.getReadingLists()[0].contains(lfeed2));
+        assertFalse(lguide.hasDirectLinkWith(lfeed2));
+
+        DirectFeed lfeed1 = (DirectFeed)lguide.getFeedAt(guide.indexOf(feed1));
+        assertEquals(feed1.getXmlURL(), lfeed1.getXmlURL());
+        assertEquals("Feed 1", lfeed1.getTitle());
+        assertEquals(Boolean.TRUE, lfeed1.getAscendingSorting());
+        assertEquals(5, lguide.getFeedLinkInfo(lfeed1).getLastSyncTime());
+
+        IArticle larticle = lfeed1.getArticleAt(0);
+        IArticle article = feed1.getArticleAt(0);
+        assertTrue(larticle instanceof LazyArticle);
+        assertEquals(article.getID(), larticle.getID());
+        assertEquals("Article", larticle.getTitle());
+        assertEquals("Author", larticle.getAuthor());
+        assertEquals(new Date(1000), larticle.getPublicationDate());
+        assertEquals(article.getLink(), larticle.getLink());
+        assertEquals(article.getSimpleMatchKey(), larticle.getSimpleMatchKey());
+        assertTrue(larticle.isRead());
+        assertEquals("text", ((LazyArticle)larticle).getText());
+    }
+
+    /**
+     * The snapshot is taken from the database and not the database itself.
+     *
+     * @throws Exception if something fails.
+     */
+    public void testSnapshotIsUsed() throws Exception
+    {
+        assertTrue(pm.storeSnapshot());
+        executeBehindTheScenes("DELETE FROM GUIDES");
+
+        assertEquals(1, reopen().getGuidesCount());
+    }
+
+    /**
+     * Any committed change makes the snapshot stale.
+     *
+     * @throws Exception if something fails.
+     */
+    public void testChangeInvalidatesSnapshot() throws Exception
+    {
+        assertTrue(pm.storeSnapshot());
+        assertNotNull(pm.getApplicationProperty("snapshotStamp"));
+
+        pm.removeGuide(guide);
+        assertNull(pm.getApplicationProperty("snapshotStamp"));
+    }
+
+    /**
+     * Commits of the statistics are counted as any other commits.
+     *
+     * @throws Exception if something fails.
+     */
+    public void testStatisticsInvalidateSnapshot() throws Exception
+    {
+        assertTrue(pm.storeSnapshot());
+
+        AggregatingStatisticsManager sm = (AggregatingStatisticsManager)pm.getStatisticsManager();
+        sm.guideVisited(guide);
+        sm.flush();
+        assertNull(pm.getApplicationProperty("snapshotStamp"));
+    }
+
+    /**
+     * The snapshot isn't recorded while the writes are held back.
+     *
+     * @throws Exception if something fails.
+     */
+    public void testHeldSnapshot() throws Exception
+    {
+        pm.holdSnapshots();
+        assertFalse(pm.storeSnapshot());
+
+        pm.releaseSnapshots();
+        assertTrue(pm.storeSnapshot());
+    }
+
+    /**
+     * Corrupted snapshot isn't used.
+     *
+     * @throws Exception if something fails.
+     */
+    public void testCorruptedSnapshot() throws Exception
+    {
+        assertTrue(pm.storeSnapshot());
+        executeBehindTheScenes("DELETE FROM GUIDES");
+
+        RandomAccessFile file = new RandomAccessFile(new File(contextPath + "model.snapshot"), "rw");
+        file.seek(file.length() / 2);
+        int b = file.read();
+        file.seek(file.length() / 2);
+        file.write(b ^ 0xff);
+        file.close();
+
+        assertEquals(0, reopen().getGuidesCount());
+    }
+
+    /**
+     * The snapshot is written on shutdown.
+     *
+     * @throws Exception if something fails.
+     */
+    public void testShutdown() throws Exception
+    {
+        pm.shutdown();
+        pm = new HsqlPersistenceManager(contextPath, false);
+        executeBehindTheScenes("DELETE FROM GUIDES");
+
+        GuidesSet loaded = new GuidesSet();
+        pm.loadGuidesSet(loaded);
+        assertEquals(1, loaded.getGuidesCount());
+    }
+
+    /**
+     * The set is captured in the EDT, where the guides are added and removed.
+     *
+     * @throws Exception if something fails.
+     */
+    public void testCapturedInEDT() throws Exception
+    {
+        final boolean[] inEDT = new boolean[] { true };
+        set = new GuidesSet()
+        {
+            public synchronized StandardGuide[] getStandardGuides(StandardGuide guide)
+            {
+                inEDT[0] &= SwingUtilities.isEventDispatchThread();
+                return super.getStandardGuides(guide);
+            }
+        };
+        pm.loadGuidesSet(set);
+
+        assertTrue(pm.storeSnapshot());
+        assertTrue(inEDT[0]);
+        assertEquals(1, reopen().getGuidesCount());
+    }
+
+    /**
+     * The snapshot is written on shutdown even when the EDT doesn't respond, as it happens
+     * when the application exits from the EDT.
+     *
+     * @throws Exception if something fails.
+     */
+    public void testShutdownWithBlockedEDT() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    release.await();
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        try
+        {
+            pm.shutdown();
+        } finally
+        {
+            release.countDown();
+        }
+
+        pm = new HsqlPersistenceManager(contextPath, false);
+        executeBehindTheScenes("DELETE FROM GUIDES");
+
+        GuidesSet loaded = new GuidesSet();
+        pm.loadGuidesSet(loaded);
+        assertEquals(1, loaded.getGuidesCount());
+    }
+
+    /**
+     * Closes the manager and loads the set with the new one.
+     *
+     * @return loaded set.
+     *
+     * @throws PersistenceException if loading fails.
+     */
+    private GuidesSet reopen() throws PersistenceException
+    {
+        pm.shutdown();
+
+        pm = new HsqlPersistenceManager(contextPath, false);
+        GuidesSet loaded = new GuidesSet();
+        pm.loadGuidesSet(loaded);
+        return loaded;
+    }
+
+    /**
+     * Changes the database without letting the manager know.
+     *
+     * @param sql statement.
+     *
+     * @throws Exception if something fails.
+     */
+    private void executeBehindTheScenes(String sql) throws Exception
+    {
+        Statement stmt = pm.getConnection().createStatement();
+        stmt.executeUpdate(sql);
+        stmt.close();
+        pm.getConnection().commit();
+    }
+}
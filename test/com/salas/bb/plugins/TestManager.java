@@ -26,21 +26,35 @@ package com.salas.bb.plugins;
 
 import static com.salas.bb.plugins.Manager.KEY_PLUGINS_PACKAGES;
 import static com.salas.bb.plugins.Manager.KEY_PLUGINS_PACKAGES_TS;
+import static com.salas.bb.plugins.Manager.KEY_PLUGINS_UNINSTALL;
+import com.salas.bb.plugins.domain.ICodePlugin;
+import com.salas.bb.plugins.domain.LazyCodePlugin;
+import com.salas.bb.plugins.domain.Package;
+import com.salas.bb.utils.FileUtils;
 import com.salas.bb.utils.StringUtils;
 import junit.framework.TestCase;
 
-import java.io.File;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.jar.JarOutputStream;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
+import java.util.zip.ZipEntry;
 
 /**
  * Tests plug-ins manager.
  */
 public class TestManager extends TestCase
 {
+    private static final String SYNTHETIC_PLUGIN = SyntheticPlugin.class.getName();
+
     private Preferences prefs;
+    private File dir;
 
     @Override
     protected void setUp() throws Exception
@@ -49,6 +63,20 @@ public class TestManager extends TestCase
 
         prefs = Preferences.userNodeForPackage(TestManager.class);
         prefs.clear();
+
+        dir = File.createTempFile("plugins", "");
+        dir.delete();
+        dir.mkdirs();
+
+        SyntheticPlugin.created = 0;
+        SyntheticPlugin.commands.clear();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        FileUtils.rmdir(dir);
+        super.tearDown();
     }
 
     public void testStoreState()
@@ -108,6 +136,181 @@ public class TestManager extends TestCase
         assertPrefs(pk1, ts1);
     }
 
+    /**
+     * Unchanged packages are taken from the index without opening them.
+     *
+     * @throws IOException if I/O fails.
+     */
+    public void testIndexedPackagesAreNotReopened()
+        throws IOException
+    {
+        File a = createJar("a.jar", descriptor("A", ""));
+        createJar("b.jar", null);
+
+        initialize();
+        List<Package> installed = Manager.getInstalledPackages();
+        assertEquals(1, installed.size());
+        assertEquals("A", installed.get(0).getName());
+        assertTrue(new File(dir, "packages.index").exists());
+
+        // Damage the package keeping its size and time, so it can only be read from the index
+        long modified = a.lastModified();
+        byte[] garbage = new byte[(int)a.length()];
+        OutputStream os = new FileOutputStream(a);
+        os.write(garbage);
+        os.close();
+        a.setLastModified(modified);
+
+        initialize();
+        installed = Manager.getInstalledPackages();
+        assertEquals(1, installed.size());
+        assertEquals("A", installed.get(0).getName());
+
+        // Changed package is read again
+        a.setLastModified(modified + 2000);
+        initialize();
+        assertEquals(0, Manager.getInstalledPackages().size());
+    }
+
+    /**
+     * Changes in packages are picked up.
+     *
+     * @throws IOException if I/O fails.
+     */
+    public void testChangedPackagesAreReindexed()
+        throws IOException
+    {
+        File a = createJar("a.jar", descriptor("A", ""));
+
+        initialize();
+        assertEquals("A", Manager.getInstalledPackages().get(0).getName());
+
+        a.delete();
+        createJar("a.jar", descriptor("A2", ""));
+        a.setLastModified(a.lastModified() + 2000);
+        createJar("c.jar", descriptor("C", ""));
+
+        initialize();
+        List<String> names = new ArrayList<String>();
+        for (Package p : Manager.getInstalledPackages()) names.add(p.getName());
+        assertEquals(2, names.size());
+        assertTrue(names.contains("A2"));
+        assertTrue(names.contains("C"));
+    }
+
+    /**
+     * Lazy code plug-in isn't instantiated until its action is performed.
+     *
+     * @throws IOException if I/O fails.
+     */
+    public void testLazyActivation()
+        throws IOException
+    {
+        createJar("lazy.jar", descriptor("Lazy",
+            "<code class='" + SYNTHETIC_PLUGIN + "' activation='lazy'><action name='synthetic.run'/></code>"));
+        createJar("eager.jar", descriptor("Eager", "<code class='" + SYNTHETIC_PLUGIN + "'/>"));
+        prefs.put(KEY_PLUGINS_PACKAGES, "lazy.jar;eager.jar");
+
+        initialize();
+        Manager.loadPackages();
+
+        List<Package> enabled = Manager.getEnabledPackages();
+        assertEquals(2, enabled.size());
+        assertEquals("Only eager plug-in is created", 1, SyntheticPlugin.created);
+
+        LazyCodePlugin lazy = (LazyCodePlugin)enabled.get(0).get(0);
+        assertFalse(lazy.isActivated());
+
+        lazy.getAction("synthetic.run").actionPerformed(new ActionEvent(this, ActionEvent.ACTION_PERFORMED, "x"));
+        assertTrue(lazy.isActivated());
+        assertEquals(2, SyntheticPlugin.created);
+        assertEquals(1, SyntheticPlugin.commands.size());
+        assertEquals("synthetic.run", SyntheticPlugin.commands.get(0));
+
+        lazy.getAction("synthetic.run").actionPerformed(new ActionEvent(this, ActionEvent.ACTION_PERFORMED, "x"));
+        assertEquals("Activated only once", 2, SyntheticPlugin.created);
+        assertEquals(2, SyntheticPlugin.commands.size());
+    }
+
+    /**
+     * Lazy code plug-in without actions can never be activated and is rejected.
+     *
+     * @throws IOException if I/O fails.
+     */
+    public void testLazyActivationWithoutActions()
+        throws IOException
+    {
+        createJar("lazy.jar", descriptor("Lazy", "<code class='" + SYNTHETIC_PLUGIN + "' activation='lazy'/>"));
+
+        initialize();
+        List<Package> installed = Manager.getInstalledPackages();
+        assertEquals(1, installed.size());
+        assertEquals(0, installed.get(0).size());
+    }
+
+    /**
+     * Initializes the manager with the test directory. The bundled package is
+     * scheduled for uninstallation to keep it out of the way.
+     */
+    private void initialize()
+    {
+        prefs.put(KEY_PLUGINS_UNINSTALL, "bb-connect.zip");
+        Manager.initialize(dir, prefs);
+    }
+
+    /**
+     * Creates the package descriptor.
+     *
+     * @param name      package name.
+     * @param plugins   plug-in elements.
+     *
+     * @return descriptor.
+     */
+    private static String descriptor(String name, String plugins)
+    {
+        return "<package name='" + name + "' description='Synthetic'>" + plugins + "</package>";
+    }
+
+    /**
+     * Creates the synthetic package with the plug-in class in the test directory.
+     *
+     * @param name          file name.
+     * @param descriptor    descriptor or <code>NULL</code> to skip it.
+     *
+     * @return file.
+     *
+     * @throws IOException if I/O fails.
+     */
+    private File createJar(String name, String descriptor)
+        throws IOException
+    {
+        File file = new File(dir, name);
+        JarOutputStream jar = new JarOutputStream(new FileOutputStream(file));
+        try
+        {
+            if (descriptor != null)
+            {
+                jar.putNextEntry(new ZipEntry("package.xml"));
+                jar.write(descriptor.getBytes("UTF-8"));
+                jar.closeEntry();
+            }
+
+            String classFile = SYNTHETIC_PLUGIN.replace('.', '/') + ".class";
+            jar.putNextEntry(new ZipEntry(classFile));
+            InputStream is = TestManager.class.getClassLoader().getResourceAsStream(classFile);
+            byte[] buf = new byte[4096];
+            int read;
+            while ((read = is.read(buf)) != -1) jar.write(buf, 0, read);
+            is.close();
+            jar.closeEntry();
+        } finally
+        {
+            jar.close();
+        }
+
+        return file;
+    }
+
     private void assertPrefs(String pkgs, long ts)
     {
         assertEquals(pkgs, prefs.get(KEY_PLUGINS_PACKAGES, null));
@@ -127,4 +330,41 @@ public class TestManager extends TestCase
         prefs.put(KEY_PLUGINS_PACKAGES, pkgs);
         prefs.putLong(KEY_PLUGINS_PACKAGES_TS, ts);
     }
+
+    /**
+     * Code plug-in packed in synthetic packages. Counts instances and received actions.
+     */
+    public static class SyntheticPlugin implements ICodePlugin, ActionListener
+    {
+        static int created;
+        static final List<String> commands = new ArrayList<String>();
+
+        /** Creates the plug-in. */
+        public SyntheticPlugin()
+        {
+            created++;
+        }
+
+        public String getTypeName()
+        {
+            return "Code";
+        }
+
+        public void initialize()
+        {
+        }
+
+        public void setPackageLoader(ClassLoader loader)
+        {
+        }
+
+        public void setParameters(Map<String, String> params)
+        {
+        }
+
+        public void actionPerformed(ActionEvent e)
+        {
+            commands.add(e.getActionCommand());
+        }
+    }
 }
@@ -0,0 +1,386 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.service.sync;
+
+import com.salas.bb.domain.*;
+import com.salas.bb.domain.utils.DomainEventsListener;
+import com.salas.bb.service.ServerServiceException;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests incremental synchronization of two clients through the in-process service.
+ */
+public class TestDeltaSync extends TestCase
+{
+    private FakeDeltaService service;
+    private Client a;
+    private Client b;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        service = new FakeDeltaService();
+        a = new Client(service);
+        b = new Client(service);
+
+        // New journals have no history, so both clients exchange the snapshots first
+        snapshot(a);
+        snapshot(b);
+        assertNull(a.sync.pull("", ""));
+        a.sync.snapshotRestored();
+    }
+
+    /**
+     * Structural changes travel as deltas.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testGuidesFeedsAndReadingLists()
+        throws Exception
+    {
+        StandardGuide guide = guide(a.set, "g");
+        guide.add(feed("http://localhost/1"));
+        guide.add(new ReadingList(new URL("http://localhost/list")));
+
+        assertTrue(a.sync.push("", ""));
+        assertEquals(0, a.journal.getPendingCount());
+
+        SyncDelta delta = b.sync.pull("", "");
+        assertNotNull(delta);
+        assertEquals(3, b.sync.apply(delta, b.set));
+
+        StandardGuide remote = (StandardGuide)b.set.findGuidesByTitle("g").iterator().next();
+        assertEquals(1, remote.getFeedsCount());
+        assertEquals(1, remote.getReadingLists().length);
+        assertEquals(0, b.journal.getPendingCount());
+
+        // Removal
+        guide.remove(guide.getFeedAt(0));
+        assertTrue(a.sync.push("", ""));
+        b.sync.apply(b.sync.pull("", ""), b.set);
+        assertEquals(0, remote.getFeedsCount());
+
+        // Nothing new
+        assertTrue(b.sync.pull("", "").isEmpty());
+    }
+
+    /**
+     * Read and pinned states travel as deltas and repeated changes of the same article are
+     * coalesced.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testArticleStates()
+        throws Exception
+    {
+        IArticle local = article(guide(a.set, "g"));
+        IArticle remote = article(guide(b.set, "g"));
+        a.sync.push("", "");
+        b.sync.apply(b.sync.pull("", ""), b.set);
+
+        for (int i = 0; i <= 100; i++) local.setRead(i % 2 == 0);
+        local.setPinned(true);
+        assertEquals(1, a.journal.getPendingCount());
+
+        int before = service.bytesStored;
+        assertTrue(a.sync.push("", ""));
+        assertTrue("Delta is too big", service.bytesStored - before < 100);
+
+        b.sync.apply(b.sync.pull("", ""), b.set);
+        assertTrue(remote.isRead());
+        assertTrue(remote.isPinned());
+    }
+
+    /**
+     * Changes from both clients are merged.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testConcurrentChanges()
+        throws Exception
+    {
+        guide(a.set, "a");
+        guide(b.set, "b");
+
+        assertTrue(a.sync.push("", ""));
+        assertTrue(b.sync.push("", ""));
+
+        a.sync.apply(a.sync.pull("", ""), a.set);
+        b.sync.apply(b.sync.pull("", ""), b.set);
+
+        assertEquals(2, a.set.getGuidesCount());
+        assertEquals(2, b.set.getGuidesCount());
+    }
+
+    /**
+     * The change which can't be expressed as delta leads to the snapshot exchange on both sides.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testDivergence()
+        throws Exception
+    {
+        guide(a.set, "g").setTitle("h");
+        assertTrue(a.journal.isDiverged());
+        assertFalse(a.sync.push("", ""));
+
+        a.sync.snapshotStored("", "", a.sync.getSnapshotMark());
+        assertFalse(a.journal.isDiverged());
+        assertEquals(0, a.journal.getPendingCount());
+
+        assertNull(b.sync.pull("", ""));
+        b.sync.snapshotRestored();
+        assertNotNull(b.sync.pull("", ""));
+    }
+
+    /**
+     * When the service doesn't support deltas, snapshots are used.
+     */
+    public void testUnsupportedService()
+    {
+        service.broken = true;
+        guide(a.set, "g");
+
+        assertFalse(a.sync.push("", ""));
+        assertNull(a.sync.pull("", ""));
+
+        a.sync.snapshotStored("", "", a.sync.getSnapshotMark());
+        assertEquals(0, a.journal.getPendingCount());
+    }
+
+    /**
+     * A service without delta support gets the full snapshot on every synchronization, even
+     * when the journal has nothing new and after a clean restart.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testSnapshotFallback()
+        throws Exception
+    {
+        FakeDeltaService legacy = new FakeDeltaService();
+        legacy.broken = true;
+
+        File file = File.createTempFile("sync", ".journal");
+        try
+        {
+            Client client = new Client(legacy, file);
+            guide(client.set, "g");
+
+            assertTrue(storeFeeds(client));
+            assertEquals(0, client.journal.getPendingCount());
+            assertTrue(client.sync.isSnapshotRequired());
+
+            // Nothing new in the journal
+            assertTrue(storeFeeds(client));
+            assertNull(client.sync.pull("", ""));
+
+            client.journal.store();
+            Client restarted = new Client(legacy, file);
+            restarted.journal.load();
+            assertTrue(restarted.sync.isSnapshotRequired());
+            assertTrue(storeFeeds(restarted));
+
+            assertEquals(0, legacy.bytesStored);
+        } finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * The journal survives a clean restart and diverges after a crash.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testJournalFile()
+        throws Exception
+    {
+        File file = File.createTempFile("sync", ".journal");
+        try
+        {
+            SyncJournal journal = new SyncJournal(file);
+            journal.snapshotTaken(0, 5);
+            journal.record(SyncDelta.Entry.guide("g", true));
+            journal.store();
+
+            SyncJournal loaded = new SyncJournal(file);
+            loaded.load();
+            assertFalse(loaded.isDiverged());
+            assertEquals(5, loaded.getServerSequence());
+            assertEquals(1, loaded.getPendingCount());
+
+            // Not stored on exit
+            SyncJournal crashed = new SyncJournal(file);
+            crashed.load();
+            assertTrue(crashed.isDiverged());
+        } finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * Stores the feeds the way <code>SyncOut</code> does.
+     *
+     * @param client client.
+     *
+     * @return <code>TRUE</code> if the full snapshot was stored.
+     */
+    private static boolean storeFeeds(Client client)
+    {
+        if (client.sync.push("", "")) return false;
+
+        client.sync.snapshotStored("", "", client.sync.getSnapshotMark());
+        return true;
+    }
+
+    private static void snapshot(Client client)
+    {
+        assertNull(client.sync.pull("", ""));
+        client.sync.snapshotRestored();
+        assertFalse(client.sync.push("", ""));
+        client.sync.snapshotStored("", "", client.sync.getSnapshotMark());
+    }
+
+    private static StandardGuide guide(GuidesSet set, String title)
+    {
+        StandardGuide guide = new StandardGuide();
+        guide.setTitle(title);
+        set.add(guide);
+        return guide;
+    }
+
+    private static DirectFeed feed(String url)
+        throws Exception
+    {
+        DirectFeed feed = new DirectFeed();
+        feed.setXmlURL(new URL(url));
+        return feed;
+    }
+
+    private static IArticle article(StandardGuide guide)
+        throws Exception
+    {
+        DirectFeed feed = feed("http://localhost/feed");
+        guide.add(feed);
+
+        StandardArticle article = new StandardArticle("text");
+        article.setTitle("title");
+        article.setLink(new URL("http://localhost/article"));
+        feed.appendArticle(article);
+
+        return article;
+    }
+
+    /**
+     * Client with its own set and journal.
+     */
+    private static class Client
+    {
+        private final GuidesSet     set = new GuidesSet();
+        private final SyncJournal   journal;
+        private final DeltaSync     sync;
+
+        Client(IDeltaSyncService service)
+        {
+            this(service, null);
+        }
+
+        Client(IDeltaSyncService service, File file)
+        {
+            journal = new SyncJournal(file);
+            DomainEventsListener listener = new DomainEventsListener(set);
+            listener.addDomainListener(new SyncJournalMonitor(journal));
+            sync = new DeltaSync(journal, service);
+        }
+    }
+
+    /**
+     * In-process service keeping the log of deltas since the last snapshot.
+     */
+    private static class FakeDeltaService implements IDeltaSyncService
+    {
+        private final List<byte[]> log = new ArrayList<byte[]>();
+        private int snapshot;
+        private int bytesStored;
+        private boolean broken;
+
+        public int storeDelta(String email, String password, int base, byte[] data)
+            throws ServerServiceException
+        {
+            check();
+            if (base < snapshot) return -1;
+
+            log.add(data);
+            bytesStored += data.length;
+            return snapshot + log.size();
+        }
+
+        public DeltaPacket restoreDelta(String email, String password, int since)
+            throws ServerServiceException
+        {
+            check();
+            int head = snapshot + log.size();
+            if (since < snapshot || since > head) return new DeltaPacket(head, null);
+
+            SyncDelta merged = new SyncDelta();
+            try
+            {
+                for (byte[] data : log.subList(since - snapshot, log.size()))
+                {
+                    for (SyncDelta.Entry entry : SyncDelta.decode(data).getEntries()) merged.add(entry);
+                }
+            } catch (IOException e)
+            {
+                throw new ServerServiceException("Corrupt delta", e);
+            }
+
+            return new DeltaPacket(head, merged.encode());
+        }
+
+        public int resetDelta(String email, String password)
+            throws ServerServiceException
+        {
+            check();
+            snapshot += log.size() + 1;
+            log.clear();
+            return snapshot;
+        }
+
+        private void check()
+            throws ServerServiceException
+        {
+            if (broken) throw new ServerServiceException("No delta support");
+        }
+    }
+}
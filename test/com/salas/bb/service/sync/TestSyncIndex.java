@@ -0,0 +1,148 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.service.sync;
+
+import com.salas.bb.domain.*;
+import com.salas.bb.domain.querytypes.QueryType;
+import junit.framework.TestCase;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * Tests hash index of guides set objects used during synchronization.
+ */
+public class TestSyncIndex extends TestCase
+{
+    /**
+     * The first guide with the title wins, added guides are found.
+     */
+    public void testGuides()
+    {
+        GuidesSet set = new GuidesSet();
+        StandardGuide g1 = guide("a");
+        set.add(g1);
+        set.add(guide("a"));
+
+        SyncIndex index = new SyncIndex(set);
+        assertSame(g1, index.findGuide("a"));
+        assertNull(index.findGuide("b"));
+
+        StandardGuide g2 = guide("b");
+        index.addGuide(g2);
+        assertSame(g2, index.findGuide("b"));
+    }
+
+    /**
+     * Direct feeds are matched by URL ignoring case or by the sync hash -- whichever
+     * is the first in the guide, just like the linear comparison does.
+     */
+    public void testGuideDirectFeeds()
+    {
+        StandardGuide guide = guide("a");
+        DirectFeed byHash = directFeed("http://localhost/2");
+        byHash.setSyncHash(directFeed("http://localhost/1").calcSyncHash());
+        DirectFeed byURL = directFeed("http://LOCALHOST/1");
+        guide.add(byHash);
+        guide.add(byURL);
+
+        SyncIndex.GuideIndex index = new SyncIndex.GuideIndex(guide);
+        DirectFeed pattern = directFeed("http://localhost/1");
+        assertSame(byHash, index.findFeed(pattern));
+        assertTrue(SyncIn.feedsAreTheSameDirect(pattern, byHash));
+        assertTrue(SyncIn.feedsAreTheSameDirect(pattern, byURL));
+
+        assertNull(index.findFeed(directFeed("http://localhost/3")));
+    }
+
+    /**
+     * Query feeds and reading lists are matched by their keys.
+     *
+     * @throws MalformedURLException if URL is bad.
+     */
+    public void testGuideQueryFeedsAndReadingLists()
+        throws MalformedURLException
+    {
+        StandardGuide guide = guide("a");
+        QueryFeed feed = queryFeed("test");
+        ReadingList list = new ReadingList(new URL("http://localhost/list"));
+        guide.add(feed);
+        guide.add(list);
+
+        SyncIndex.GuideIndex index = new SyncIndex.GuideIndex(guide);
+        assertSame(feed, index.findFeed(queryFeed("test")));
+        assertNull(index.findFeed(queryFeed("other")));
+        assertSame(list, index.findReadingList(new ReadingList(new URL("http://localhost/list"))));
+        assertNull(index.findReadingList(new ReadingList(new URL("http://localhost/other"))));
+    }
+
+    /**
+     * Set-wide lookup finds feeds of any guide and those added to the index.
+     */
+    public void testSetFeeds()
+    {
+        GuidesSet set = new GuidesSet();
+        StandardGuide guide = guide("a");
+        DirectFeed feed = directFeed("http://localhost/1");
+        guide.add(feed);
+        set.add(guide);
+
+        SyncIndex index = new SyncIndex(set);
+        assertSame(feed, index.findFeed(directFeed("http://localhost/1")));
+        assertNull(index.findFeed(directFeed("http://localhost/2")));
+
+        DirectFeed added = directFeed("http://localhost/2");
+        index.addFeed(added);
+        assertSame(added, index.findFeed(directFeed("http://localhost/2")));
+    }
+
+    private static StandardGuide guide(String title)
+    {
+        StandardGuide guide = new StandardGuide();
+        guide.setTitle(title);
+        return guide;
+    }
+
+    private static DirectFeed directFeed(String url)
+    {
+        DirectFeed feed = new DirectFeed();
+        try
+        {
+            feed.setXmlURL(new URL(url));
+        } catch (MalformedURLException e)
+        {
+            fail(e.getMessage());
+        }
+        return feed;
+    }
+
+    private static QueryFeed queryFeed(String parameter)
+    {
+        QueryFeed feed = new QueryFeed();
+        feed.setQueryType(QueryType.getQueryType(QueryType.TYPE_AMAZON_BOOKS));
+        feed.setParameter(parameter);
+        return feed;
+    }
+}
@@ -0,0 +1,309 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.tags;
+
+import com.salas.bb.domain.*;
+import com.salas.bb.domain.utils.DomainEventsListener;
+import com.salas.bb.tags.net.EmptyStorage;
+import com.salas.bb.tags.net.ITagsStorage;
+import com.salas.bb.tags.net.WrappingStorage;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the saving of user tags.
+ */
+public class TestTagsSaver extends TestCase
+{
+    private RecordingStorage    storage;
+    private TagsSaver           saver;
+    private File                pendingFile;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        storage = new RecordingStorage();
+        saver = new TagsSaver(storage);
+
+        pendingFile = File.createTempFile("tags", ".pending");
+        pendingFile.delete();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        pendingFile.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Only the objects which were tagged are checked and saved no matter how many articles
+     * are there.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testCostDoesNotScaleWithArticles()
+        throws Exception
+    {
+        int small = checksPerRun(100);
+        assertTrue("Too many checks: " + small, small <= 4);
+        assertEquals(small, checksPerRun(10000));
+    }
+
+    /**
+     * Builds the set with the given number of articles, tags two of them and returns the
+     * number of articles checked during the saving.
+     *
+     * @param articles number of articles.
+     *
+     * @return number of checks.
+     *
+     * @throws Exception in case of error.
+     */
+    private int checksPerRun(int articles)
+        throws Exception
+    {
+        storage = new RecordingStorage();
+        saver = new TagsSaver(storage);
+
+        StandardGuide guide = new StandardGuide();
+        List<CountingArticle> all = new ArrayList<CountingArticle>();
+        for (int f = 0; f < 20; f++)
+        {
+            DirectFeed feed = new DirectFeed();
+            for (int i = 0; i < articles / 20; i++)
+            {
+                CountingArticle article = new CountingArticle(all.size());
+                feed.appendArticle(article);
+                all.add(article);
+            }
+            guide.add(feed);
+        }
+
+        GuidesSet set = new GuidesSet();
+        set.add(guide);
+        DomainEventsListener listener = new DomainEventsListener(set);
+        listener.addDomainListener(saver.getDomainListener());
+        saver.setGuidesSet(set);
+
+        tag(all.get(3), "a");
+        tag(all.get(articles - 1), "b");
+
+        CountingArticle.checks = 0;
+        saver.run();
+
+        assertEquals(2, storage.stored.size());
+        assertFalse(all.get(3).hasUnsavedUserTags());
+        assertEquals(0, saver.getQueueSize());
+
+        return CountingArticle.checks;
+    }
+
+    /**
+     * Feeds of guides added after the set was installed (which happens when the set is
+     * loaded from database) are checked for unsaved tags.
+     */
+    public void testFeedsOfAddedGuide()
+    {
+        GuidesSet set = new GuidesSet();
+        saver.setGuidesSet(set);
+        new DomainEventsListener(set).addDomainListener(saver.getDomainListener());
+
+        DirectFeed feed = new DirectFeed();
+        tag(feed, "a");
+        StandardGuide guide = new StandardGuide();
+        guide.add(feed);
+        set.add(guide);
+
+        assertEquals(1, saver.getQueueSize());
+        saver.run();
+        assertSame(feed, storage.stored.get(0));
+    }
+
+    /**
+     * If saving fails, the object stays in the queue along with the rest of its group.
+     */
+    public void testFailureKeepsQueued()
+    {
+        saver.setGuidesSet(new GuidesSet());
+
+        StandardArticle a1 = article("1");
+        StandardArticle a2 = article("2");
+        tag(a1, "a");
+        tag(a2, "b");
+        saver.checkObject(a1);
+        saver.checkObject(a2);
+
+        storage.fail = true;
+        saver.run();
+        assertEquals(2, saver.getQueueSize());
+        assertTrue(a1.hasUnsavedUserTags());
+
+        storage.fail = false;
+        saver.run();
+        assertEquals(2, storage.stored.size());
+        assertEquals(0, saver.getQueueSize());
+    }
+
+    /**
+     * Tags go to the storage selected at the moment of saving.
+     */
+    public void testCurrentBackend()
+    {
+        WrappingStorage wrapping = new WrappingStorage(new EmptyStorage());
+        saver = new TagsSaver(wrapping);
+        saver.setGuidesSet(new GuidesSet());
+
+        StandardArticle a1 = article("1");
+        tag(a1, "a");
+        saver.checkObject(a1);
+
+        wrapping.setCurrentStorage(storage);
+        saver.run();
+
+        assertEquals(1, storage.stored.size());
+        assertSame(a1, storage.stored.get(0));
+    }
+
+    /**
+     * Unsaved tags of articles are restored from the file.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testPendingSurvivesRestart()
+        throws Exception
+    {
+        saver.setPendingFile(pendingFile);
+        saver.setGuidesSet(new GuidesSet());
+
+        StandardArticle a1 = article("1");
+        a1.setTagsDescription("desc");
+        tag(a1, "a");
+        saver.checkObject(a1);
+
+        storage.fail = true;
+        saver.run();
+        assertTrue(pendingFile.exists());
+
+        // Restart
+        storage = new RecordingStorage();
+        saver = new TagsSaver(storage);
+        saver.setPendingFile(pendingFile);
+        saver.setGuidesSet(new GuidesSet());
+        saver.run();
+
+        assertEquals(1, storage.stored.size());
+        ITaggable restored = storage.stored.get(0);
+        assertEquals(a1.getLink(), restored.getTaggableLink());
+        assertEquals("desc", restored.getTagsDescription());
+        assertEquals(1, restored.getUserTags().length);
+        assertEquals("a", restored.getUserTags()[0]);
+        assertFalse("Nothing is pending.", pendingFile.exists());
+    }
+
+    private static StandardArticle article(String id)
+    {
+        StandardArticle article = new StandardArticle(id);
+        try
+        {
+            article.setLink(new URL("http://localhost/" + id));
+        } catch (Exception e)
+        {
+            fail(e.getMessage());
+        }
+        return article;
+    }
+
+    private static void tag(ITaggable taggable, String tag)
+    {
+        taggable.setUserTags(new String[] { tag });
+        taggable.setUnsavedUserTags(true);
+    }
+
+    /**
+     * Article counting the checks of the unsaved tags flag.
+     */
+    private static class CountingArticle extends StandardArticle
+    {
+        private static int checks;
+
+        /**
+         * Creates article.
+         *
+         * @param id ID.
+         */
+        public CountingArticle(int id)
+        {
+            super(Integer.toString(id));
+            setID(id + 1);
+        }
+
+        /**
+         * Returns <code>TRUE</code> if user tags are unsaved.
+         *
+         * @return <code>TRUE</code> if user tags are unsaved.
+         */
+        public boolean hasUnsavedUserTags()
+        {
+            checks++;
+            return super.hasUnsavedUserTags();
+        }
+    }
+
+    /**
+     * Storage recording what's stored.
+     */
+    private static class RecordingStorage implements ITagsStorage
+    {
+        private final List<ITaggable> stored = new ArrayList<ITaggable>();
+        private boolean fail;
+
+        /**
+         * Does nothing.
+         *
+         * @param aTaggable taggable object.
+         */
+        public void loadSharedTags(ITaggable aTaggable)
+        {
+        }
+
+        /**
+         * Records the object or fails.
+         *
+         * @param aTaggable taggable object.
+         */
+        public void storeUserTags(ITaggable aTaggable)
+        {
+            if (fail) throw new RuntimeException("Failed");
+            stored.add(aTaggable);
+        }
+    }
+}
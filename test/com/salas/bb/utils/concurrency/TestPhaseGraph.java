@@ -0,0 +1,182 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.concurrency;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This suite contains tests for <code>PhaseGraph</code>.
+ */
+public class TestPhaseGraph extends TestCase
+{
+    private List<String> log;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        log = Collections.synchronizedList(new ArrayList<String>());
+    }
+
+    /**
+     * Phases run after their dependencies and independent phases run in parallel.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    public void testOrderAndParallelism()
+        throws InterruptedException
+    {
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+
+        PhaseGraph graph = new PhaseGraph("Test Order", 3);
+        graph.add("a", new Logging("a", null));
+        graph.add("b", new Logging("b", barrier), "a");
+        graph.add("c", new Logging("c", barrier), "a");
+        graph.add("d", new Logging("d", null), "b", "c");
+
+        graph.start();
+        graph.awaitAll();
+
+        // Both b and c have passed the barrier, which is possible only when they run together
+        assertEquals(4, log.size());
+        assertEquals("a", log.get(0));
+        assertTrue(log.subList(1, 3).contains("b"));
+        assertTrue(log.subList(1, 3).contains("c"));
+        assertEquals("d", log.get(3));
+
+        assertTrue(graph.isFinished("d"));
+        assertTrue(graph.getDuration("a") >= 0);
+    }
+
+    /**
+     * Failed phase counts as finished and the dependent phases still run.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    public void testFailure()
+        throws InterruptedException
+    {
+        PhaseGraph graph = new PhaseGraph("Test Failure", 1);
+        graph.add("failing", new Runnable()
+        {
+            public void run()
+            {
+                throw new RuntimeException("Expected");
+            }
+        });
+        graph.add("dependent", new Logging("dependent", null), "failing");
+
+        assertFalse(graph.isFinished("failing"));
+        assertEquals(-1, graph.getDuration("failing"));
+
+        graph.start();
+        graph.await("dependent");
+
+        assertTrue(graph.isFinished("failing"));
+        assertEquals(1, log.size());
+    }
+
+    /**
+     * The graph can be built in the order of dependencies only and only before the start.
+     */
+    public void testDefinition()
+    {
+        PhaseGraph graph = new PhaseGraph("Test Definition", 1);
+        graph.add("a", new Logging("a", null));
+
+        try
+        {
+            graph.add("b", new Logging("b", null), "c");
+            fail("Unknown dependency");
+        } catch (IllegalArgumentException e)
+        {
+            // Expected
+        }
+
+        try
+        {
+            graph.add("a", new Logging("a", null));
+            fail("Duplicate phase");
+        } catch (IllegalArgumentException e)
+        {
+            // Expected
+        }
+
+        graph.start();
+
+        try
+        {
+            graph.add("c", new Logging("c", null), "a");
+            fail("Graph is started");
+        } catch (IllegalStateException e)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * Phase logging its name after passing the optional barrier.
+     */
+    private class Logging implements Runnable
+    {
+        private final String name;
+        private final CyclicBarrier barrier;
+
+        /**
+         * Creates phase.
+         *
+         * @param aName     name to log.
+         * @param aBarrier  barrier to pass first or <code>NULL</code>.
+         */
+        Logging(String aName, CyclicBarrier aBarrier)
+        {
+            name = aName;
+            barrier = aBarrier;
+        }
+
+        public void run()
+        {
+            if (barrier != null)
+            {
+                try
+                {
+                    barrier.await(5, TimeUnit.SECONDS);
+                } catch (Exception e)
+                {
+                    log.add("timeout");
+                }
+            }
+
+            log.add(name);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.concurrency;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This suite contains tests for <code>Scheduler</code> and its lanes.
+ */
+public class TestScheduler extends TestCase
+{
+    /** Lanes are registered by name and listed. */
+    public void testRegistry()
+    {
+        Lane lane = Scheduler.lane("Test Registry", 1, Thread.MIN_PRIORITY);
+
+        assertSame(lane, Scheduler.lane("Test Registry", 5, Thread.MAX_PRIORITY));
+        assertEquals(1, lane.getThreads());
+        assertTrue(Scheduler.getLanes().contains(lane));
+    }
+
+    /**
+     * Failing task is counted and doesn't stop the lane.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    public void testStatistics()
+        throws InterruptedException
+    {
+        Lane lane = Scheduler.lane("Test Statistics", 1, Thread.NORM_PRIORITY);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        lane.execute(new Runnable()
+        {
+            public void run()
+            {
+                throw new IllegalStateException("Expected");
+            }
+        });
+        lane.execute(new Runnable()
+        {
+            public void run()
+            {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        waitFor(lane, 2);
+
+        assertEquals(2, lane.getSubmittedCount());
+        assertEquals(1, lane.getCompletedCount());
+        assertEquals(1, lane.getFailedCount());
+        assertEquals(0, lane.getQueueDepth());
+    }
+
+    /**
+     * Periodic task is never queued twice and stops after cancelling.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    public void testPeriodicAndCancel()
+        throws InterruptedException
+    {
+        Lane lane = Scheduler.lane("Test Periodic", 2, Thread.NORM_PRIORITY);
+        final AtomicInteger runs = new AtomicInteger();
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        ScheduledTask task = lane.schedule(new Runnable()
+        {
+            public void run()
+            {
+                maxConcurrent.set(Math.max(maxConcurrent.get(), concurrent.incrementAndGet()));
+                runs.incrementAndGet();
+                sleep(50);
+                concurrent.decrementAndGet();
+            }
+        }, 0, 5);
+
+        Thread.sleep(300);
+        assertTrue(task.cancel());
+        assertTrue(task.isCancelled());
+        assertFalse(task.cancel());
+        Thread.sleep(100);
+
+        int count = runs.get();
+        assertTrue(count > 1);
+        assertEquals(1, maxConcurrent.get());
+
+        Thread.sleep(200);
+        assertEquals(count, runs.get());
+
+        try
+        {
+            lane.submit(task);
+            fail("Cancelled task can't be scheduled");
+        } catch (IllegalStateException e)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * Queued task which is cancelled never runs.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    public void testCancelQueued()
+        throws InterruptedException
+    {
+        Lane lane = Scheduler.lane("Test Cancel", 1, Thread.NORM_PRIORITY);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger runs = new AtomicInteger();
+
+        lane.execute(new Runnable()
+        {
+            public void run()
+            {
+                started.countDown();
+                await(release);
+            }
+        });
+        await(started);
+        ScheduledTask task = lane.submit(new Runnable()
+        {
+            public void run()
+            {
+                runs.incrementAndGet();
+            }
+        });
+
+        assertEquals(1, lane.getQueueDepth());
+        task.cancel();
+        release.countDown();
+        waitFor(lane, 1);
+        Thread.sleep(50);
+
+        assertEquals(0, runs.get());
+        assertEquals(0, lane.getQueueDepth());
+    }
+
+    /**
+     * Bounded lane drops the tasks it has no room for and orders the waiting ones.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    public void testOverloadAndOrdering()
+        throws InterruptedException
+    {
+        Lane lane = Scheduler.lane("Test Overload", 1, Thread.NORM_PRIORITY, 3,
+            ExecutorFactory.BlockedPolicy.DISCARD, new Comparator()
+        {
+            public int compare(Object o1, Object o2)
+            {
+                return ((Item)o1).priority - ((Item)o2).priority;
+            }
+        });
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+
+        lane.execute(new Item(0, order)
+        {
+            public void run()
+            {
+                await(release);
+            }
+        });
+        // Let the first task start running
+        while (lane.getRunningCount() == 0) Thread.sleep(5);
+
+        lane.execute(new Item(3, order));
+        lane.execute(new Item(1, order));
+        lane.execute(new Item(2, order));
+        lane.execute(new Item(4, order));
+
+        assertEquals(3, lane.getQueueDepth());
+        assertEquals(1, lane.getRejectedCount());
+
+        release.countDown();
+        waitFor(lane, 4);
+
+        assertEquals("[1, 2, 3]", order.toString());
+    }
+
+    /**
+     * Waits until the lane completes or fails the given number of tasks.
+     *
+     * @param lane  lane.
+     * @param tasks number of tasks.
+     *
+     * @throws InterruptedException if interrupted.
+     */
+    private static void waitFor(Lane lane, int tasks)
+        throws InterruptedException
+    {
+        long till = System.currentTimeMillis() + 5000;
+        while (lane.getCompletedCount() + lane.getFailedCount() < tasks && System.currentTimeMillis() < till)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(tasks, lane.getCompletedCount() + lane.getFailedCount());
+    }
+
+    private static void sleep(long ms)
+    {
+        try
+        {
+            Thread.sleep(ms);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Task with priority recording its run.
+     */
+    private static class Item implements Runnable
+    {
+        private final int priority;
+        private final List<Integer> order;
+
+        public Item(int aPriority, List<Integer> aOrder)
+        {
+            priority = aPriority;
+            order = aOrder;
+        }
+
+        public void run()
+        {
+            order.add(priority);
+        }
+    }
+}
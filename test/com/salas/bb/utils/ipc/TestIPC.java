@@ -26,7 +26,13 @@ package com.salas.bb.utils.ipc;
 
 import junit.framework.TestCase;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Tests IPC parts.
@@ -70,4 +76,213 @@ public class TestIPC extends TestCase
     {
         assertNull(IPC.argToURL("c:/invalid"));
     }
+
+    /**
+     * Two endpoints in the same JVM serve their own clients.
+     *
+     * @throws IOException if I/O fails.
+     */
+    public void testTwoEndpoints()
+        throws IOException
+    {
+        File file1 = createSocketFile();
+        File file2 = createSocketFile();
+        IPC ipc1 = new IPC(file1);
+        IPC ipc2 = new IPC(file2);
+        try
+        {
+            assertTrue(ipc1.getPort() != ipc2.getPort());
+
+            RecordingListener l1 = new RecordingListener();
+            RecordingListener l2 = new RecordingListener();
+            ipc1.addListener(l1);
+            ipc2.addListener(l2);
+
+            // Batch of commands to the first endpoint
+            IPCClient client = new IPCClient(file1);
+            List<IPCResponse> responses;
+            try
+            {
+                responses = client.execute(
+                    new IPCCommand(IPCCommand.SUBSCRIBE, "http://localhost/a"),
+                    new IPCCommand(IPCCommand.UPDATE, RecordingListener.KNOWN),
+                    new IPCCommand(IPCCommand.MARK_READ, "http://localhost/unknown"),
+                    new IPCCommand(IPCCommand.SEARCH, "two", "words"),
+                    new IPCCommand(IPCCommand.EXPORT));
+
+                // The connection is reused for the next batch
+                assertTrue(client.execute(new IPCCommand(IPCCommand.MARK_READ, RecordingListener.KNOWN)).get(0).isOk());
+            } finally
+            {
+                client.close();
+            }
+
+            assertEquals(5, responses.size());
+            assertTrue(responses.get(0).isOk());
+            assertTrue(responses.get(1).isOk());
+            assertFalse(responses.get(2).isOk());
+            assertEquals(Arrays.asList("http://localhost/1\ttwo words"), responses.get(3).getData());
+            assertEquals(Arrays.asList("<opml/>"), responses.get(4).getData());
+
+            assertEquals(Arrays.asList(
+                "subscribe http://localhost/a",
+                "update " + RecordingListener.KNOWN,
+                "markRead http://localhost/unknown",
+                "search two words",
+                "export",
+                "markRead " + RecordingListener.KNOWN), l1.calls);
+            assertTrue(l2.calls.isEmpty());
+
+            // The second endpoint
+            assertTrue(IPC.sendCommand(file2, IPCCommand.SUBSCRIBE, new String[] { "http://localhost/b" }));
+            assertEquals(Arrays.asList("subscribe http://localhost/b"), l2.calls);
+            assertEquals(6, l1.calls.size());
+        } finally
+        {
+            ipc1.close();
+            ipc2.close();
+        }
+    }
+
+    /**
+     * Invalid commands get errors without breaking the connection.
+     *
+     * @throws IOException if I/O fails.
+     */
+    public void testInvalidCommands()
+        throws IOException
+    {
+        File file = createSocketFile();
+        IPC ipc = new IPC(file);
+        try
+        {
+            // Nobody listens yet
+            assertFalse(IPC.sendCommand(file, IPCCommand.SUBSCRIBE, new String[] { "http://localhost/a" }));
+
+            RecordingListener l = new RecordingListener();
+            ipc.addListener(l);
+
+            IPCClient client = new IPCClient(file);
+            try
+            {
+                List<IPCResponse> responses = client.execute(
+                    new IPCCommand("unknown"),
+                    new IPCCommand(IPCCommand.SUBSCRIBE),
+                    new IPCCommand(IPCCommand.UPDATE, "not-a-url"),
+                    new IPCCommand(IPCCommand.SEARCH),
+                    new IPCCommand(IPCCommand.SUBSCRIBE, "http://localhost/a"));
+
+                assertFalse(responses.get(0).isOk());
+                assertFalse(responses.get(1).isOk());
+                assertFalse(responses.get(2).isOk());
+                assertFalse(responses.get(3).isOk());
+                assertTrue(responses.get(4).isOk());
+                assertEquals(Arrays.asList("subscribe http://localhost/a"), l.calls);
+            } finally
+            {
+                client.close();
+            }
+        } finally
+        {
+            ipc.close();
+        }
+    }
+
+    /**
+     * Requests with a wrong token are rejected.
+     *
+     * @throws IOException if I/O fails.
+     */
+    public void testInvalidToken()
+        throws IOException
+    {
+        File file = createSocketFile();
+        IPC ipc = new IPC(file);
+        try
+        {
+            RecordingListener l = new RecordingListener();
+            ipc.addListener(l);
+
+            FileWriter writer = new FileWriter(file);
+            writer.write(ipc.getPort() + " wrong");
+            writer.close();
+
+            assertFalse(IPC.sendCommand(file, IPCCommand.SUBSCRIBE, new String[] { "http://localhost/a" }));
+            assertTrue(l.calls.isEmpty());
+        } finally
+        {
+            ipc.close();
+        }
+    }
+
+    /**
+     * Closed endpoint removes the socket file and doesn't accept commands.
+     *
+     * @throws IOException if I/O fails.
+     */
+    public void testClose()
+        throws IOException
+    {
+        File file = createSocketFile();
+        IPC ipc = new IPC(file);
+        int port = ipc.getPort();
+        ipc.close();
+
+        assertFalse(file.exists());
+
+        // Even if the file is left from the crashed instance
+        FileWriter writer = new FileWriter(file);
+        writer.write(port + " token");
+        writer.close();
+
+        assertFalse(IPC.sendCommand(file, IPCCommand.SUBSCRIBE, new String[] { "http://localhost/a" }));
+        file.delete();
+    }
+
+    private static File createSocketFile()
+        throws IOException
+    {
+        File file = File.createTempFile("application", ".sock");
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Records the calls.
+     */
+    private static class RecordingListener implements IIPCListener
+    {
+        static final String KNOWN = "http://localhost/known";
+
+        final List<String> calls = new ArrayList<String>();
+
+        public synchronized void subscribe(URL url)
+        {
+            calls.add("subscribe " + url);
+        }
+
+        public synchronized boolean update(URL url)
+        {
+            calls.add("update " + url);
+            return KNOWN.equals(url.toString());
+        }
+
+        public synchronized boolean markRead(URL url)
+        {
+            calls.add("markRead " + url);
+            return KNOWN.equals(url.toString());
+        }
+
+        public synchronized List<String> search(String text)
+        {
+            calls.add("search " + text);
+            return Arrays.asList("http://localhost/1\t" + text);
+        }
+
+        public synchronized String export()
+        {
+            calls.add("export");
+            return "<opml/>";
+        }
+    }
 }
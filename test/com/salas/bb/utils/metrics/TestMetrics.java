@@ -0,0 +1,125 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.metrics;
+
+import junit.framework.TestCase;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * Tests the metrics registry.
+ */
+public class TestMetrics extends TestCase
+{
+    private static final long MILLI = 1000000L;
+
+    /**
+     * Counters are shared by name and count events.
+     */
+    public void testCounter()
+    {
+        Counter counter = Metrics.counter("test.counter");
+        long initial = counter.get();
+
+        counter.inc();
+        Metrics.counter("test.counter").add(4);
+
+        assertSame(counter, Metrics.counter("test.counter"));
+        assertEquals(initial + 5, counter.get());
+    }
+
+    /**
+     * Histogram reports count, mean, maximum and percentiles within the bucket precision.
+     */
+    public void testHistogram()
+    {
+        Histogram histogram = new Histogram("test");
+        assertEquals(0.0, histogram.getPercentile(0.5));
+
+        for (int i = 0; i < 99; i++) histogram.record(MILLI);
+        histogram.record(100 * MILLI);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(1.99, histogram.getMean(), 0.001);
+        assertEquals(100.0, histogram.getMax(), 0.001);
+
+        // Buckets are powers of two, so percentiles can't be off more than twice
+        double p50 = histogram.getPercentile(0.5);
+        assertTrue(Double.toString(p50), p50 >= 1 && p50 < 2);
+        double p99 = histogram.getPercentile(0.99);
+        assertTrue(Double.toString(p99), p99 >= 1 && p99 < 2);
+        assertEquals(100.0, histogram.getPercentile(1), 0.001);
+    }
+
+    /**
+     * Report lists all kinds of metrics and the dump writes them out.
+     */
+    public void testReportAndDump()
+    {
+        Metrics.counter("test.dump.counter").inc();
+        Metrics.histogram("test.dump.time").record(2 * MILLI);
+        Metrics.gauge("test.dump.gauge", new IGauge()
+        {
+            public long getValue()
+            {
+                return 42;
+            }
+        });
+
+        Map<String, String> report = Metrics.getReport();
+        assertEquals("42", report.get("test.dump.gauge"));
+        assertTrue(report.get("test.dump.time").startsWith("count=1 mean=2 "));
+
+        StringWriter out = new StringWriter();
+        Metrics.dump(new PrintWriter(out));
+        String dump = out.toString();
+        assertTrue(dump, dump.contains("test.dump.counter "));
+        assertTrue(dump, dump.contains("test.dump.gauge 42"));
+    }
+
+    /**
+     * Metrics are visible through the platform JMX server.
+     *
+     * @throws Exception if JMX fails.
+     */
+    public void testMBean()
+        throws Exception
+    {
+        Metrics.counter("test.jmx.counter").add(3);
+        Metrics.histogram("test.jmx.time").record(5 * MILLI);
+        Metrics.registerMBean();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Metrics.MBEAN_NAME);
+        assertEquals(3L, server.getAttribute(name, "test.jmx.counter"));
+        assertEquals(1L, server.getAttribute(name, "test.jmx.time.count"));
+        assertEquals(5.0, (Double)server.getAttribute(name, "test.jmx.time.max"), 0.001);
+    }
+}
@@ -27,6 +27,7 @@ package com.salas.bb.utils.net;
 import junit.framework.TestCase;
 
 import java.awt.*;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.IOException;
 
@@ -133,6 +134,49 @@ public class TestBandwidthInputStream extends TestCase
         bis.close();
     }
 
+    /**
+     * Tests that streams sharing the budget don't exceed it in total.
+     */
+    public void testSharedBudget() throws Exception
+    {
+        final BandwidthBudget budget = new BandwidthBudget(60000);
+        final long[] read = new long[2];
+
+        Thread[] threads = new Thread[2];
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < threads.length; i++)
+        {
+            final int n = i;
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    BandwidthInputStream bis = new BandwidthInputStream(new ByteArrayInputStream(new byte[30000]));
+                    bis.setBudget(budget);
+
+                    try
+                    {
+                        byte[] buf = new byte[1000];
+                        int cnt;
+                        while ((cnt = bis.read(buf)) != -1) read[n] += cnt;
+                    } catch (IOException e)
+                    {
+                        e.printStackTrace();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) thread.join();
+        long time = System.currentTimeMillis() - start;
+
+        assertEquals(30000, read[0]);
+        assertEquals(30000, read[1]);
+
+        long speed = (read[0] + read[1]) * 1000 / time;
+        assertTrue(Long.toString(speed), speed < 63000 && speed > 50000);
+    }
+
     // Measure single-step speed.
     private long measureSpeed(long bandwidth)
         throws IOException
@@ -0,0 +1,113 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.uif.images;
+
+import com.salas.bb.utils.TUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Measures the cost of the images cache operations with 50k cached images and compares
+ * it to the directory scan the cache used to do after every write.
+ */
+public final class CacheBenchmark
+{
+    private static final int IMAGES = 50000;
+    private static final int IMAGE_SIZE = 512;
+
+    /** Hidden utility class constructor. */
+    private CacheBenchmark()
+    {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args arguments (unused).
+     *
+     * @throws IOException if I/O fails.
+     */
+    public static void main(String[] args)
+        throws IOException
+    {
+        File dir = TUtils.resetDir("cache-benchmark");
+        Cache cache = new Cache(dir, (long)IMAGES * IMAGE_SIZE * 2);
+
+        byte[] data = new byte[IMAGE_SIZE];
+        URL[] urls = new URL[IMAGES];
+        for (int i = 0; i < IMAGES; i++) urls[i] = new URL("http://images" + (i % 50) + ".com/img/" + i + ".jpg");
+
+        long start = System.nanoTime();
+        for (URL url : urls)
+        {
+            FileOutputStream out = new FileOutputStream(cache.getCachedFile(url));
+            out.write(data);
+            out.close();
+            cache.stored(cache.urlToFilename(url));
+        }
+        report("Store " + IMAGES + " images", start, IMAGES);
+
+        start = System.nanoTime();
+        int found = 0;
+        for (URL url : urls) if (cache.lookup(cache.urlToFilename(url)) != null) found++;
+        report("Lookup " + found + " hits", start, IMAGES);
+
+        start = System.nanoTime();
+        for (int i = 0; i < IMAGES; i++) cache.lookup(Cache.digest("http://missing.com/" + i));
+        report("Lookup misses", start, IMAGES);
+
+        start = System.nanoTime();
+        for (int i = 0; i < 100; i++) cache.verifyLimits();
+        report("Verify limits", start, 100);
+        cache.close();
+
+        start = System.nanoTime();
+        cache = new Cache(dir, (long)IMAGES * IMAGE_SIZE * 2);
+        report("Open with journal (" + cache.getEntriesCount() + " entries)", start, 1);
+        cache.close();
+
+        // What the old cache did after every image write
+        start = System.nanoTime();
+        for (int i = 0; i < 10; i++) scanSize(dir);
+        report("Old directory scan", start, 10);
+    }
+
+    private static long scanSize(File dir)
+    {
+        long size = 0;
+        File[] files = dir.listFiles();
+        for (File file : files) size += file.isDirectory() ? scanSize(file) : file.length();
+        return size;
+    }
+
+    private static void report(String name, long start, int ops)
+    {
+        long time = System.nanoTime() - start;
+        System.out.println(name + ": " + (time / 1000000) + " ms total, " + (time / ops / 1000) + " us/op");
+    }
+}
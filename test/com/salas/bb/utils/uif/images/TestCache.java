@@ -0,0 +1,213 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.uif.images;
+
+import com.salas.bb.utils.TUtils;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * This suite contains tests for <code>Cache</code> unit.
+ */
+public class TestCache extends TestCase
+{
+    private File dir;
+    private Cache cache;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        dir = TUtils.resetDir("cache-test");
+        cache = new Cache(dir, 1000);
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        cache.close();
+        super.tearDown();
+    }
+
+    /**
+     * Keys differ for URL's differing only in case and are sharded.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testKeys()
+        throws Exception
+    {
+        String k1 = cache.urlToFilename(new URL("http://a.com/Image.png"));
+        String k2 = cache.urlToFilename(new URL("http://a.com/image.png"));
+        assertFalse(k1.equals(k2));
+        assertEquals(40, k1.length());
+
+        File file = cache.getCachedFile(new URL("http://a.com/Image.png"));
+        assertEquals(k1, file.getName());
+        assertEquals(k1.substring(0, 2), file.getParentFile().getName());
+        assertEquals(dir, file.getParentFile().getParentFile());
+    }
+
+    /**
+     * Stored entries are looked up from the index.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testStoreAndLookup()
+        throws Exception
+    {
+        URL url = new URL("http://a.com/1.png");
+        String key = cache.urlToFilename(url);
+        assertNull(cache.lookup(key));
+
+        write(url, 100);
+        assertNull("Not registered yet", cache.lookup(key));
+
+        cache.stored(key);
+        assertEquals(cache.getCachedFile(url), cache.lookup(key));
+        assertEquals(1, cache.getEntriesCount());
+        assertEquals(100, cache.getSize());
+    }
+
+    /**
+     * Least recently used entries are evicted when the limit is exceeded.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testEviction()
+        throws Exception
+    {
+        String k1 = put("http://a.com/1.png", 400);
+        String k2 = put("http://a.com/2.png", 400);
+
+        // Use the first to make the second the oldest
+        assertNotNull(cache.lookup(k1));
+
+        String k3 = put("http://a.com/3.png", 400);
+
+        assertNotNull(cache.lookup(k1));
+        assertNull(cache.lookup(k2));
+        assertNotNull(cache.lookup(k3));
+        assertEquals(800, cache.getSize());
+        assertFalse(cache.getFile(k2).exists());
+    }
+
+    /**
+     * The index is restored from the journal.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testJournal()
+        throws Exception
+    {
+        String k1 = put("http://a.com/1.png", 400);
+        String k2 = put("http://a.com/2.png", 300);
+        assertNotNull(cache.lookup(k1));
+        cache.close();
+
+        cache = new Cache(dir, 1000);
+        assertEquals(2, cache.getEntriesCount());
+        assertEquals(700, cache.getSize());
+
+        // The second is the oldest
+        put("http://a.com/3.png", 400);
+        assertNull(cache.lookup(k2));
+        assertNotNull(cache.lookup(k1));
+    }
+
+    /**
+     * The order of reads recorded before closing survives reopening, so the entries are
+     * evicted by their recency after restart.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testRecencyAfterReopen()
+        throws Exception
+    {
+        String k1 = put("http://a.com/1.png", 300);
+        String k2 = put("http://a.com/2.png", 300);
+        String k3 = put("http://a.com/3.png", 300);
+
+        // Reads only, the order is now 3, 2, 1 from the oldest
+        assertNotNull(cache.lookup(k2));
+        assertNotNull(cache.lookup(k1));
+        cache.close();
+
+        cache = new Cache(dir, 1000);
+        put("http://a.com/4.png", 300);
+        assertNull(cache.lookup(k3));
+
+        put("http://a.com/5.png", 300);
+        assertNull(cache.lookup(k2));
+        assertNotNull(cache.lookup(k1));
+    }
+
+    /**
+     * The index is rebuilt from disk if there's no journal. Files from the old layout are removed.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testRebuild()
+        throws Exception
+    {
+        String k1 = put("http://a.com/1.png", 400);
+        cache.close();
+
+        new File(dir, Cache.JOURNAL).delete();
+        File legacy = new File(dir, "1A2B3C");
+        new FileOutputStream(legacy).close();
+
+        cache = new Cache(dir, 1000);
+        assertEquals(1, cache.getEntriesCount());
+        assertNotNull(cache.lookup(k1));
+        assertFalse(legacy.exists());
+    }
+
+    private String put(String url, int size)
+        throws IOException
+    {
+        URL u = new URL(url);
+        write(u, size);
+
+        String key = cache.urlToFilename(u);
+        cache.stored(key);
+
+        return key;
+    }
+
+    private void write(URL url, int size)
+        throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(cache.getCachedFile(url));
+        out.write(new byte[size]);
+        out.close();
+    }
+}
@@ -0,0 +1,255 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+
+package com.salas.bb.utils.uif.images;
+
+import com.salas.bb.imageblocker.ImageBlocker;
+import com.salas.bb.utils.TUtils;
+import junit.framework.TestCase;
+
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.util.*;
+
+/**
+ * This suite contains tests for <code>ImagePrefetcher</code> unit.
+ */
+public class TestImagePrefetcher extends TestCase
+{
+    private Cache cache;
+    private Cache oldCache;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        oldCache = ImageFetcher.getCache();
+        cache = new Cache(TUtils.resetDir("prefetch-test"), 1000000);
+        ImageFetcher.setCache(cache);
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        ImageFetcher.setCache(oldCache);
+        cache.close();
+        super.tearDown();
+    }
+
+    /**
+     * Images are found in different forms of tags and resolved against the base.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testCollectImageURLs()
+        throws Exception
+    {
+        String html = "<p>Text <img src=\"/a.png\"> and <IMG alt='x' SRC='http://b.com/b.gif?x=1&amp;y=2'/>" +
+            " again <img src=\"/a.png\"> <img width=\"1\"></p>";
+
+        List<URL> urls = ImagePrefetcher.collectImageURLs(new URL("http://a.com/post/1"), html);
+        assertEquals(2, urls.size());
+        assertEquals(new URL("http://a.com/a.png"), urls.get(0));
+        assertEquals(new URL("http://b.com/b.gif?x=1&y=2"), urls.get(1));
+
+        assertEquals(0, ImagePrefetcher.collectImageURLs(null, null).size());
+    }
+
+    /**
+     * Blocked, cached and local images aren't fetched.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testSkipped()
+        throws Exception
+    {
+        URL cached = new URL("http://a.com/cached.png");
+        FileOutputStream out = new FileOutputStream(cache.getCachedFile(cached));
+        out.write(new byte[10]);
+        out.close();
+        cache.stored(cache.urlToFilename(cached));
+
+        RecordingPrefetcher prefetcher = new RecordingPrefetcher(2, 1000, false);
+        ImageBlocker.addExpression("blocked.com");
+        try
+        {
+            prefetcher.prefetch(Arrays.asList(cached, new URL("http://blocked.com/a.png"),
+                new URL("file:/tmp/a.png")));
+        } finally
+        {
+            ImageBlocker.clearExpressions();
+        }
+
+        Thread.sleep(200);
+        assertEquals(0, prefetcher.getDownloaded().size());
+    }
+
+    /**
+     * Number of simultaneous downloads from a single host is limited.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testPerHostConcurrency()
+        throws Exception
+    {
+        RecordingPrefetcher prefetcher = new RecordingPrefetcher(2, 1000, true);
+        prefetcher.prefetch(Arrays.asList(new URL("http://a.com/1.png"), new URL("http://a.com/2.png"),
+            new URL("http://a.com/3.png"), new URL("http://b.com/1.png")));
+
+        prefetcher.waitForStarted(3);
+        assertEquals(1, prefetcher.getQueueSize());
+        assertEquals(2, prefetcher.getMaxActive("a.com"));
+
+        prefetcher.release();
+        prefetcher.waitForDownloaded(4);
+        assertEquals(2, prefetcher.getMaxActive("a.com"));
+        assertEquals(0, prefetcher.getQueueSize());
+    }
+
+    /**
+     * The rest of the queue is dropped when the budget is spent.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testBudget()
+        throws Exception
+    {
+        RecordingPrefetcher prefetcher = new RecordingPrefetcher(1, 100, false);
+        prefetcher.prefetch(Arrays.asList(new URL("http://a.com/1.png"), new URL("http://a.com/2.png"),
+            new URL("http://a.com/3.png")));
+
+        prefetcher.waitForDownloaded(2);
+        Thread.sleep(200);
+
+        assertEquals(2, prefetcher.getDownloaded().size());
+        assertEquals(0, prefetcher.getQueueSize());
+        assertEquals(120, prefetcher.getSpent());
+
+        // Nothing is taken until the next cycle
+        prefetcher.prefetch(Arrays.asList(new URL("http://b.com/1.png")));
+        Thread.sleep(200);
+        assertEquals(2, prefetcher.getDownloaded().size());
+    }
+
+    /**
+     * Records downloads instead of fetching, spending 60 bytes per image.
+     */
+    private static class RecordingPrefetcher extends ImagePrefetcher
+    {
+        private final Object lock = new Object();
+        private final List<URL> downloaded = new ArrayList<URL>();
+        private final Map<String, Integer> active = new HashMap<String, Integer>();
+        private final Map<String, Integer> maxActive = new HashMap<String, Integer>();
+        private boolean blocked;
+        private int started;
+
+        /**
+         * Creates the prefetcher.
+         *
+         * @param maxPerHost    maximum downloads per host.
+         * @param budget        budget.
+         * @param block         <code>TRUE</code> to block downloads until released.
+         */
+        RecordingPrefetcher(int maxPerHost, long budget, boolean block)
+        {
+            super(maxPerHost, budget, Long.MAX_VALUE / 2);
+            blocked = block;
+        }
+
+        @Override
+        long download(Cache cache, URL url, long maxBytes)
+            throws Exception
+        {
+            String host = url.getHost();
+            synchronized (lock)
+            {
+                started++;
+                Integer cnt = active.get(host);
+                cnt = cnt == null ? 1 : cnt + 1;
+                active.put(host, cnt);
+                Integer max = maxActive.get(host);
+                if (max == null || max < cnt) maxActive.put(host, cnt);
+                lock.notifyAll();
+
+                while (blocked) lock.wait();
+
+                active.put(host, active.get(host) - 1);
+                downloaded.add(url);
+                lock.notifyAll();
+            }
+
+            return 60;
+        }
+
+        void release()
+        {
+            synchronized (lock)
+            {
+                blocked = false;
+                lock.notifyAll();
+            }
+        }
+
+        void waitForStarted(int count)
+            throws InterruptedException
+        {
+            synchronized (lock)
+            {
+                long end = System.currentTimeMillis() + 5000;
+                while (started < count && System.currentTimeMillis() < end) lock.wait(100);
+                assertEquals(count, started);
+            }
+        }
+
+        void waitForDownloaded(int count)
+            throws InterruptedException
+        {
+            synchronized (lock)
+            {
+                long end = System.currentTimeMillis() + 5000;
+                while (downloaded.size() < count && System.currentTimeMillis() < end) lock.wait(100);
+                assertEquals(count, downloaded.size());
+            }
+        }
+
+        List<URL> getDownloaded()
+        {
+            synchronized (lock)
+            {
+                return new ArrayList<URL>(downloaded);
+            }
+        }
+
+        int getMaxActive(String host)
+        {
+            synchronized (lock)
+            {
+                return maxActive.get(host);
+            }
+        }
+    }
+}
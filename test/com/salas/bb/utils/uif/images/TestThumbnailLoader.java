@@ -0,0 +1,110 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.uif.images;
+
+import junit.framework.TestCase;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+/**
+ * This suite contains tests for <code>ThumbnailLoader</code> unit.
+ */
+public class TestThumbnailLoader extends TestCase
+{
+    /** Fitting into the box keeps proportions and doesn't enlarge. */
+    public void testFit()
+    {
+        assertEquals(new Dimension(150, 112), ThumbnailLoader.fit(1600, 1200, 150, 150));
+        assertEquals(new Dimension(75, 150), ThumbnailLoader.fit(300, 600, 150, 150));
+        assertEquals(new Dimension(40, 30), ThumbnailLoader.fit(40, 30, 150, 150));
+        assertEquals(new Dimension(150, 1), ThumbnailLoader.fit(3000, 10, 150, 150));
+    }
+
+    /**
+     * Large image is decoded right into the thumbnail size.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testDecode()
+        throws Exception
+    {
+        BufferedImage thumb = ThumbnailLoader.decode(ImageIO.createImageInputStream(
+            new ByteArrayInputStream(createImage(1600, 1200, "JPEG"))), 150, 150);
+
+        assertEquals(150, thumb.getWidth());
+        assertEquals(112, thumb.getHeight());
+        assertEquals(BufferedImage.TYPE_INT_RGB, thumb.getType());
+    }
+
+    /**
+     * Not an image.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testDecodeGarbage()
+        throws Exception
+    {
+        assertNull(ThumbnailLoader.decode(ImageIO.createImageInputStream(
+            new ByteArrayInputStream("garbage".getBytes())), 150, 150));
+    }
+
+    /**
+     * Local image without cache.
+     *
+     * @throws Exception in case of error.
+     */
+    public void testProduceLocal()
+        throws Exception
+    {
+        File file = File.createTempFile("thumb", ".png");
+        file.deleteOnExit();
+        BufferedImage img = new BufferedImage(400, 200, BufferedImage.TYPE_INT_ARGB);
+        ImageIO.write(img, "PNG", file);
+
+        BufferedImage thumb = ThumbnailLoader.produce("key", file.toURI().toURL(), 100, 100);
+        assertEquals(100, thumb.getWidth());
+        assertEquals(50, thumb.getHeight());
+        assertTrue(thumb.getColorModel().hasAlpha());
+    }
+
+    private static byte[] createImage(int width, int height, String format)
+        throws Exception
+    {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics g = img.getGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, width / 2, height);
+        g.dispose();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(img, format, out);
+        return out.toByteArray();
+    }
+}
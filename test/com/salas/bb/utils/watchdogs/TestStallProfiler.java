@@ -0,0 +1,202 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.watchdogs;
+
+import com.salas.bb.utils.metrics.Histogram;
+import com.salas.bb.utils.metrics.Metrics;
+import junit.framework.TestCase;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @see StallProfiler
+ */
+public class TestStallProfiler extends TestCase
+{
+    private static EventQueueWithWD queue;
+    private static StallProfiler profiler;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        if (queue == null)
+        {
+            queue = EventQueueWithWD.install();
+            profiler = queue.installProfiler(100, 20);
+        }
+    }
+
+    /**
+     * Slow event is recorded with the stacks sampled while it was dispatched.
+     *
+     * @throws Exception in error case.
+     */
+    public void testSlowEvent()
+        throws Exception
+    {
+        int slowEvents = profiler.getSlowEvents().size();
+
+        SwingUtilities.invokeAndWait(new Runnable()
+        {
+            public void run()
+            {
+                slowMethod();
+            }
+        });
+        waitForDispatchFinish();
+
+        List<StallProfiler.SlowEvent> events = profiler.getSlowEvents();
+        assertEquals(slowEvents + 1, events.size());
+
+        StallProfiler.SlowEvent event = events.get(events.size() - 1);
+        assertEquals("InvocationEvent", event.getType());
+        assertTrue(Long.toString(event.getDuration()), event.getDuration() >= 400);
+
+        // Every sample is taken on the EDT within the slow method
+        List<StackTraceElement[]> samples = event.getSamples();
+        assertTrue(Integer.toString(samples.size()), samples.size() >= 5);
+        for (StackTraceElement[] sample : samples)
+        {
+            assertEquals("sleep", sample[0].getMethodName());
+            assertTrue(findSlowMethod(sample) > 0);
+        }
+
+        // The frames of this class are in every sample, so they go from the top of the stack
+        List<StallProfiler.HotSpot> spots = new ArrayList<StallProfiler.HotSpot>();
+        for (StallProfiler.HotSpot spot : profiler.getHotSpots())
+        {
+            if (spot.getFrame().contains(TestStallProfiler.class.getName())) spots.add(spot);
+        }
+
+        assertTrue(spots.toString(), spots.size() >= 3);
+        assertTrue(spots.get(0).getFrame(), spots.get(0).getFrame().contains(".sleep("));
+        assertTrue(spots.get(1).getFrame(), spots.get(1).getFrame().contains(".slowMethod("));
+        assertTrue(spots.get(2).getFrame(), spots.get(2).getFrame().contains("$1.run("));
+        assertTrue(spots.get(1).getTotalSamples() >= samples.size());
+        assertTrue(spots.get(0).getDepth() < spots.get(1).getDepth());
+
+        String report = profiler.getReport();
+        assertTrue(report, report.contains("InvocationEvent"));
+        assertTrue(report, report.contains("slowMethod"));
+    }
+
+    /**
+     * Fast events aren't sampled, but their durations are recorded.
+     *
+     * @throws Exception in error case.
+     */
+    public void testFastEvent()
+        throws Exception
+    {
+        Histogram histogram = Metrics.histogram("edt.dispatch.InvocationEvent");
+        long dispatched = histogram.getCount();
+        int slowEvents = profiler.getSlowEvents().size();
+
+        SwingUtilities.invokeAndWait(new Runnable()
+        {
+            public void run()
+            {
+            }
+        });
+        waitForDispatchFinish();
+
+        assertTrue(histogram.getCount() > dispatched);
+        assertEquals(slowEvents, profiler.getSlowEvents().size());
+        assertSame(profiler, queue.getProfiler());
+    }
+
+    /**
+     * Slow events buffer keeps only the most recent events.
+     */
+    public void testSlowEventsLimit()
+    {
+        StallProfiler local = new StallProfiler(0);
+        AWTEvent event = new AWTEvent(this, AWTEvent.RESERVED_ID_MAX + 1) {};
+
+        for (int i = 0; i < StallProfiler.SLOW_EVENTS + 5; i++)
+        {
+            local.dispatchStarted(event, Thread.currentThread());
+            sleep(1);
+            local.dispatchFinished();
+        }
+
+        List<StallProfiler.SlowEvent> events = local.getSlowEvents();
+        assertEquals(StallProfiler.SLOW_EVENTS, events.size());
+        assertTrue(events.get(0).getSamples().isEmpty());
+    }
+
+    /**
+     * Takes a while. Not private, so the event calls it without a synthetic accessor frame.
+     */
+    static void slowMethod()
+    {
+        sleep(500);
+    }
+
+    /**
+     * The waiting for the event dispatching ends when the event is processed, but before the
+     * queue records the finish. Dispatching of the other event guarantees the record is made.
+     *
+     * @throws Exception in error case.
+     */
+    private static void waitForDispatchFinish()
+        throws Exception
+    {
+        SwingUtilities.invokeAndWait(new Runnable()
+        {
+            public void run()
+            {
+            }
+        });
+    }
+
+    private static int findSlowMethod(StackTraceElement[] stack)
+    {
+        for (int i = 0; i < stack.length; i++)
+        {
+            if (stack[i].getMethodName().equals("slowMethod") &&
+                stack[i].getClassName().equals(TestStallProfiler.class.getName())) return i;
+        }
+
+        return -1;
+    }
+
+    private static void sleep(long ms)
+    {
+        try
+        {
+            Thread.sleep(ms);
+        } catch (InterruptedException e)
+        {
+            fail();
+        }
+    }
+}
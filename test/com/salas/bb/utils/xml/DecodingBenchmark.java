@@ -0,0 +1,177 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * Measures the decoding throughput over the corpus of feeds in different encodings. The
+ * decoding reader is compared to the reader per encoding the factory used to create.
+ */
+public final class DecodingBenchmark
+{
+    private static final int ITEMS = 100;
+    private static final int ROUNDS = 1000;
+
+    private static final String[] ENCODINGS =
+    {
+        "UTF-8", "utf-8-bom", "ISO-8859-1", "windows-1251", "US-ASCII", "UTF-16"
+    };
+
+    /** Hidden utility class constructor. */
+    private DecodingBenchmark()
+    {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args arguments (unused).
+     *
+     * @throws IOException if decoding fails.
+     */
+    public static void main(String[] args)
+        throws IOException
+    {
+        byte[][] corpus = new byte[ENCODINGS.length][];
+        long bytes = 0;
+        for (int i = 0; i < ENCODINGS.length; i++)
+        {
+            corpus[i] = createFeed(ENCODINGS[i]);
+            bytes += corpus[i].length;
+        }
+
+        System.out.println("Corpus: " + ENCODINGS.length + " feeds, " + bytes + " bytes");
+
+        // Warm up
+        run(corpus, true, ROUNDS);
+        run(corpus, false, ROUNDS);
+
+        for (int i = 0; i < 3; i++)
+        {
+            long start = System.nanoTime();
+            long chars = run(corpus, true, ROUNDS);
+            report("Legacy readers", start, bytes * ROUNDS, chars);
+
+            start = System.nanoTime();
+            chars = run(corpus, false, ROUNDS);
+            report("Decoding reader", start, bytes * ROUNDS, chars);
+        }
+    }
+
+    private static long run(byte[][] corpus, boolean legacy, int rounds)
+        throws IOException
+    {
+        char[] buf = new char[4096];
+        long chars = 0;
+
+        for (int i = 0; i < rounds; i++)
+        {
+            for (byte[] feed : corpus)
+            {
+                InputStream is = new ByteArrayInputStream(feed);
+                Reader reader = legacy ? createLegacy(is) : XmlReaderFactory.create(is);
+
+                int read;
+                while ((read = reader.read(buf)) != -1) chars += read;
+                reader.close();
+            }
+        }
+
+        return chars;
+    }
+
+    /**
+     * Creates the reader the way the factory did before the decoding reader.
+     *
+     * @param is    stream.
+     *
+     * @return reader.
+     *
+     * @throws IOException if encoding isn't supported.
+     */
+    private static Reader createLegacy(InputStream is)
+        throws IOException
+    {
+        EncodingDetector.DetectionResult result = EncodingDetector.detectEncoding(is);
+        String encoding = result.getEncoding();
+
+        Reader reader = XmlReaderFactory.createReaderForMappedEncoding(result.getStream(), encoding);
+        if (reader == null)
+        {
+            reader = new InputStreamReader(result.getStream(),
+                XmlReaderFactory.convertEncodingAlias(encoding));
+        }
+
+        return reader;
+    }
+
+    private static byte[] createFeed(String encoding)
+        throws IOException
+    {
+        boolean bom = encoding.equals("utf-8-bom");
+        if (bom) encoding = "UTF-8";
+
+        String text;
+        if (encoding.equals("US-ASCII"))
+        {
+            text = "Plain text article body. ";
+        } else if (encoding.equals("ISO-8859-1"))
+        {
+            text = "Caf\u00e9 cr\u00e8me br\u00fbl\u00e9e \u00e0 la fran\u00e7aise. ";
+        } else if (encoding.equals("windows-1251"))
+        {
+            text = "\u041d\u043e\u0432\u043e\u0441\u0442\u0438 \u0434\u043d\u044f. ";
+        } else
+        {
+            text = "Mixed text \u00a9 \u0416\u0443\u0440\u043d\u0430\u043b \u65b0\u805e \u20ac. ";
+        }
+
+        StringBuffer xml = new StringBuffer();
+        if (bom) xml.append('\ufeff');
+        xml.append("<?xml version=\"1.0\" encoding=\"").append(encoding).append("\"?>");
+        xml.append("<rss version=\"2.0\"><channel><title>Feed</title>");
+        for (int i = 0; i < ITEMS; i++)
+        {
+            xml.append("<item><title>Article ").append(i).append("</title><description>");
+            for (int j = 0; j < 5; j++) xml.append(text);
+            xml.append("</description></item>");
+        }
+        xml.append("</channel></rss>");
+
+        return xml.toString().getBytes(encoding);
+    }
+
+    private static void report(String name, long start, long bytes, long chars)
+    {
+        long time = System.nanoTime() - start;
+        System.out.println(name + ": " + (time / 1000000) + " ms total, " +
+            (bytes * 1000 / time) + " MB/s, " + chars + " chars");
+    }
+}
@@ -0,0 +1,219 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.utils.xml;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.CharConversionException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+
+/**
+ * @see DecodingReader
+ */
+public class TestDecodingReader extends TestCase
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Valid UTF-8 sequences are decoded.
+     *
+     * @throws IOException in case of I/O error.
+     */
+    public void testValidUTF8() throws IOException
+    {
+        check(new int[] { 't', 0xc2, 0xa9, 'e' }, new int[] { 't', 0xa9, 'e' });
+        check(new int[] { 't', 0xef, 0xbf, 0xbf, 'e' }, new int[] { 't', 0xffff, 'e' });
+        check(new int[] { 't', 0xf4, 0x8f, 0xbf, 0xbf, 'e' }, new int[] { 't', 0xdbff, 0xdfff, 'e' });
+    }
+
+    /**
+     * Invalid UTF-8 bytes are taken as ISO-8859-1 characters just like the
+     * <code>UTF8Reader</code> does it.
+     *
+     * @throws IOException in case of I/O error.
+     */
+    public void testInvalidUTF8() throws IOException
+    {
+        // Lonely continuation bytes
+        check(new int[] { 't', 0x80, 0xbf, 'e' }, new int[] { 't', 0x80, 0xbf, 'e' });
+
+        // First bytes not followed by continuation
+        check(new int[] { 0xc2, ' ', 0xe1, ' ', 0xf1, ' ' }, new int[] { 0xc2, ' ', 0xe1, ' ', 0xf1, ' ' });
+
+        // Sequences without last continuation byte
+        check(new int[] { 0xc0 }, new int[] { 0xc0 });
+        check(new int[] { 0xe0, 0x80 }, new int[] { 0xe0, 0x80 });
+        check(new int[] { 0xc0, 0xe0, 0x80, 0xf0, 0x80, 0x80 },
+            new int[] { 0xc0, 0xe0, 0x80, 0xf0, 0x80, 0x80 });
+
+        // Good and bad mixed
+        check(new int[] { 'a', 0xc2, 0xa9, 0xbb, 'b'}, new int[] { 'a', 0xa9, 0xbb, 'b' });
+    }
+
+    /**
+     * Sequences broken into several blocks of the stream.
+     *
+     * @throws IOException in case of I/O error.
+     */
+    public void testBrokenIntoBlocks() throws IOException
+    {
+        check(new int[][] { { 0xc2 }, { 0xa9 } }, new int[] { 0xa9 });
+        check(new int[][] { { 0xc2 }, { 0x09 } }, new int[] { 0xc2, 0x09 });
+        check(new int[][] { { 0xe2, 0x80 }, { 0x09 } }, new int[] { 0xe2, 0x80, 0x09 });
+        check(new int[][] { { 'a', 0xf4, 0x8f }, { 0xbf }, { 0xbf, 'b' } },
+            new int[] { 'a', 0xdbff, 0xdfff, 'b' });
+    }
+
+    /**
+     * Text longer than the buffer is decoded the same as by the standard decoder.
+     *
+     * @throws IOException in case of I/O error.
+     */
+    public void testLongText() throws IOException
+    {
+        StringBuffer buf = new StringBuffer();
+        for (int i = 0; buf.length() < DecodingReader.BUFFER_SIZE * 3; i++)
+        {
+            buf.append("a\u00a9\u0416\u20ac").append(i);
+        }
+        String text = buf.toString();
+
+        Reader reader = new DecodingReader(new ByteArrayInputStream(text.getBytes("UTF-8")),
+            UTF8, DecodingReader.Malformed.AS_LATIN1);
+        assertEquals(text, readAll(reader, 1000));
+        assertEquals(-1, reader.read());
+    }
+
+    /**
+     * Non-ASCII bytes fail the strict ASCII decoding.
+     *
+     * @throws IOException in case of I/O error.
+     */
+    public void testStrict() throws IOException
+    {
+        Reader reader = XmlReaderFactory.createReaderForEncoding(
+            new ByteArrayInputStream(new byte[] { 'a', (byte)0xa9 }), "us-ascii");
+
+        assertEquals('a', reader.read());
+        try
+        {
+            reader.read();
+            fail("Non-ASCII character should be reported.");
+        } catch (CharConversionException e)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * The byte order marks are respected.
+     *
+     * @throws IOException in case of I/O error.
+     */
+    public void testByteOrderMarks() throws IOException
+    {
+        String xml = "<?xml version=\"1.0\"?><root>\u0416</root>";
+
+        assertEquals(xml, readAll(XmlReaderFactory.create(stream("\ufeff" + xml, "UTF-8")), 10));
+        assertEquals(xml, readAll(XmlReaderFactory.create(stream(xml, "UTF-16BE")), 10));
+        assertEquals(xml, readAll(XmlReaderFactory.create(stream(xml, "UTF-16LE")), 10));
+        assertEquals(xml, readAll(XmlReaderFactory.create(stream("\ufeff" + xml, "UTF-16BE")), 10));
+        assertEquals(xml, readAll(XmlReaderFactory.create(stream("\ufeff" + xml, "UTF-16LE")), 10));
+    }
+
+    /**
+     * Encoding is taken from the declaration and de-aliased.
+     *
+     * @throws IOException in case of I/O error.
+     */
+    public void testDeclaredEncoding() throws IOException
+    {
+        String xml = "<?xml version=\"1.0\" encoding=\"windows-1251\"?><root>\u0416</root>";
+        assertEquals(xml, readAll(XmlReaderFactory.create(stream(xml, "windows-1251")), 10));
+
+        xml = "<?xml version=\"1.0\" encoding=\"ebcdic-cp-us\"?><root/>";
+        assertEquals(xml, readAll(XmlReaderFactory.create(stream(xml, "cp037")), 10));
+    }
+
+    /**
+     * Closed reader reports the end of the stream.
+     *
+     * @throws IOException in case of I/O error.
+     */
+    public void testClose() throws IOException
+    {
+        Reader reader = XmlReaderFactory.create(stream("<root/>", "UTF-8"));
+        assertEquals('<', reader.read());
+
+        reader.close();
+        reader.close();
+        assertEquals(-1, reader.read());
+    }
+
+    // --------------------------------------------------------------------------------------------
+
+    private static void check(int[] src, int[] dst) throws IOException
+    {
+        check(new int[][] { src }, dst);
+    }
+
+    private static void check(int[][] blocks, int[] dst) throws IOException
+    {
+        InputStream is = new ByteArrayInputStream(new byte[0]);
+        for (int[] block : blocks) is = new SequenceInputStream(is, new ByteArrayInputStream(bytes(block)));
+
+        Reader reader = new DecodingReader(is, UTF8, DecodingReader.Malformed.AS_LATIN1);
+        for (int i = 0; i < dst.length; i++) assertEquals("Pos: " + i, dst[i], reader.read());
+        assertEquals(-1, reader.read());
+    }
+
+    private static byte[] bytes(int[] src)
+    {
+        byte[] bytes = new byte[src.length];
+        for (int i = 0; i < src.length; i++) bytes[i] = (byte)src[i];
+        return bytes;
+    }
+
+    private static InputStream stream(String text, String encoding) throws IOException
+    {
+        return new ByteArrayInputStream(text.getBytes(encoding));
+    }
+
+    private static String readAll(Reader reader, int chunk) throws IOException
+    {
+        StringBuffer buf = new StringBuffer();
+        char[] chars = new char[chunk];
+
+        int read;
+        while ((read = reader.read(chars)) != -1) buf.append(chars, 0, read);
+
+        return buf.toString();
+    }
+}
@@ -120,17 +120,30 @@ public class TestXmlReaderFactory extends TestCase
         assertNull(XmlReaderFactory.createReaderForEncoding(null, "utf-8"));
 
         // Mapped readers
-        Reader reader;
-        reader = XmlReaderFactory.createReaderForEncoding(is, "utf-8");
-        assertTrue(reader instanceof UTF8Reader);
-        reader = XmlReaderFactory.createReaderForEncoding(is, "us-ascii");
-        assertTrue(reader instanceof ASCIIReader);
-        reader = XmlReaderFactory.createReaderForEncoding(is, "iso-8859-1");
-        assertTrue(reader instanceof ISO88591Reader);
+        assertEncoding("UTF-8", XmlReaderFactory.createReaderForEncoding(is, "utf-8"));
+        assertEncoding("US-ASCII", XmlReaderFactory.createReaderForEncoding(is, "us-ascii"));
+        assertEncoding("ISO-8859-1", XmlReaderFactory.createReaderForEncoding(is, "iso-8859-1"));
+        assertEncoding("ISO-8859-1", XmlReaderFactory.createReaderForEncoding(is, "MacRoman"));
 
         // Other readers
-        reader = XmlReaderFactory.createReaderForEncoding(is, "utf-16");
-        assertTrue(reader instanceof InputStreamReader);
+        assertEncoding("UTF-16", XmlReaderFactory.createReaderForEncoding(is, "utf-16"));
+        assertEncoding("IBM037", XmlReaderFactory.createReaderForEncoding(is, "ebcdic-cp-us"));
+
+        // Unknown encoding
+        try
+        {
+            XmlReaderFactory.createReaderForEncoding(is, "no-such-encoding");
+            fail("Unsupported encoding should be reported.");
+        } catch (UnsupportedEncodingException e)
+        {
+            // Expected
+        }
+    }
+
+    private static void assertEncoding(String encoding, Reader reader)
+    {
+        assertTrue(reader instanceof DecodingReader);
+        assertEquals(encoding, ((DecodingReader)reader).getEncoding());
     }
 
     /**
@@ -140,21 +153,20 @@ public class TestXmlReaderFactory extends TestCase
     {
         assertNull(XmlReaderFactory.create(null));
 
-        check(UTF8Reader.class, "<root/>");
-        check(UTF8Reader.class, "<?xml version='1.0'?><root/>");
-        check(InputStreamReader.class, "<?xml version=\"1.0\" encoding=\"windows-1251\"?><root/>");
-        check(ASCIIReader.class, "<?xml version=\"1.0\" encoding=\"us-ascii\"?><root/>");
-        check(ISO88591Reader.class, "<?xml version=\"1.0\" encoding=\"iso-8859-1\"?><root/>");
-        check(ISO88591Reader.class, "<?xml version=\"1.0\" encoding=\"MacRoman\"?><root/>");
+        check("UTF-8", "<root/>");
+        check("UTF-8", "<?xml version='1.0'?><root/>");
+        check("windows-1251", "<?xml version=\"1.0\" encoding=\"windows-1251\"?><root/>");
+        check("US-ASCII", "<?xml version=\"1.0\" encoding=\"us-ascii\"?><root/>");
+        check("ISO-8859-1", "<?xml version=\"1.0\" encoding=\"iso-8859-1\"?><root/>");
+        check("ISO-8859-1", "<?xml version=\"1.0\" encoding=\"MacRoman\"?><root/>");
     }
 
-    private void check(Class readerClass, String text)
+    private void check(String encoding, String text)
     {
         try
         {
             Reader reader = XmlReaderFactory.create(streamForString(text));
-            assertNotNull(reader);
-            assertTrue(reader.getClass() == readerClass);
+            assertEncoding(encoding, reader);
 
             SAXBuilder builder = new SAXBuilder();
             Document document = builder.build(reader);
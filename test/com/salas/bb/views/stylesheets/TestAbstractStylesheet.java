@@ -0,0 +1,145 @@
+// BlogBridge -- RSS feed reader, manager, and web based service
+// Copyright (C) 2002-2006 by R. Pito Salas
+//
+// This program is free software; you can redistribute it and/or modify it under
+// the terms of the GNU General Public License as published by the Free Software Foundation;
+// either version 2 of the License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+// without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along with this program;
+// if not, write to the Free Software Foundation, Inc., 59 Temple Place,
+// Suite 330, Boston, MA 02111-1307 USA
+//
+// Contact: R. Pito Salas
+// mailto:pitosalas@users.sourceforge.net
+// More information: about BlogBridge
+// http://www.blogbridge.com
+// http://sourceforge.net/projects/blogbridge
+//
+// $Id$
+//
+
+package com.salas.bb.views.stylesheets;
+
+import com.salas.bb.views.stylesheets.domain.IRule;
+import junit.framework.TestCase;
+
+import java.awt.*;
+
+/**
+ * Tests resolution and caching of rules.
+ */
+public class TestAbstractStylesheet extends TestCase
+{
+    private static final String CSS =
+        "~ { color: #000001; }\n" +
+        "el { color: #000002; }\n" +
+        ".cl { font: bold; }\n" +
+        ".c2 { color: #000005; }\n" +
+        "el.cl { color: #000004; }";
+
+    private StaticStylesheet ss;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        ss = new StaticStylesheet();
+        ss.setText(CSS);
+        ss.update();
+    }
+
+    /**
+     * Rules are merged from root and element classes in order.
+     */
+    public void testResolution()
+    {
+        assertEquals(new Color(1), ss.getColor(null, null));
+        assertEquals(new Color(2), ss.getColor("el", null));
+        assertEquals(new Color(2), ss.getColor("el", new String[0]));
+        assertEquals(new Color(4), ss.getColor("el", new String[] { "cl" }));
+        assertTrue(ss.getFont("el", new String[] { "cl" }).isBold());
+        assertNull(ss.getFont("el", null));
+
+        // The later classes win
+        assertEquals(new Color(5), ss.getColor(null, new String[] { "cl", "c2" }));
+        assertEquals(new Color(4), ss.getColor("el", new String[] { "c2", "cl" }));
+    }
+
+    /**
+     * The same rule is returned for the same element and classes.
+     */
+    public void testCaching()
+    {
+        String[] classes = { "cl" };
+        IRule rule = ss.getRule("el", classes);
+
+        assertSame(rule, ss.getRule("el", new String[] { "cl" }));
+        assertSame(rule, ss.getRule("el", classes));
+        assertNotSame(rule, ss.getRule("el", new String[] { "c2" }));
+        assertNotSame(rule, ss.getRule(null, classes));
+        assertSame(ss.getRule("el", null), ss.getRule("el", new String[0]));
+
+        // Changing the array of caller doesn't spoil the cache
+        classes[0] = "c2";
+        assertEquals(new Color(4), ss.getColor("el", new String[] { "cl" }));
+    }
+
+    /**
+     * Resolved rules don't change when they are overridden.
+     */
+    public void testImmutable()
+    {
+        IRule rule = ss.getRule("el", null);
+        IRule merged = rule.overrideWith(ss.getRule(null, new String[] { "cl" }));
+
+        assertTrue(merged.getFont().isBold());
+        assertNull(rule.getFont());
+        assertNull(ss.getFont("el", null));
+    }
+
+    /**
+     * New stylesheet and invalidation drop the resolved rules.
+     *
+     * @throws Exception if something fails.
+     */
+    public void testInvalidation()
+        throws Exception
+    {
+        IRule rule = ss.getRule("el", null);
+
+        ss.invalidateRules();
+        IRule rule2 = ss.getRule("el", null);
+        assertNotSame(rule, rule2);
+        assertEquals(rule.getColor(), rule2.getColor());
+
+        ss.setText("el { color: #000009; }");
+        ss.update();
+        assertEquals(new Color(9), ss.getColor("el", null));
+
+        ss.resetIconsCache();
+        assertEquals(new Color(9), ss.getColor("el", null));
+    }
+
+    /**
+     * Stylesheet with the text set from outside.
+     */
+    private static class StaticStylesheet extends AbstractStylesheet
+    {
+        private String text;
+
+        public void setText(String aText)
+        {
+            text = aText;
+        }
+
+        protected String getUpdatedStylesheet()
+        {
+            return text;
+        }
+    }
+}